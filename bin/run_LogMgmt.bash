@@ -22,6 +22,11 @@ fi
 if [ ! -z "$4" ] ; then
     COMMAND+=" -baseOverride=$4"
 fi
+# Any remaining arguments (e.g. -maxRuntime=60 -schedule=oldest) are passed
+# through unchanged.
+if [ $# -gt 4 ] ; then
+    COMMAND+=" ${@:5}"
+fi
 
 #echo $COMMAND
 $COMMAND
\ No newline at end of file
@@ -0,0 +1,23 @@
+#!/bin/bash
+
+if [ -z ${JAVA_HOME+x} ]; then JAVA_HOME=/usr/java/jdk1.8.0; fi
+SCRIPT_DIR=$(dirname `which $0`)
+LIB_DIR="${SCRIPT_DIR}/../target/lib/"
+
+for i in ${LIB_DIR}*.jar; do
+    CLASSPATH=$CLASSPATH:$i
+done
+
+COMMAND="$JAVA_HOME/bin/java -cp $CLASSPATH mil.nga.logmgmt.ReplicateArchives"
+
+if [ ! -z "$1" ] ; then
+    COMMAND+=" -path=$1"
+fi
+# Any remaining arguments (e.g. -target=/mnt/mirror/vhe -threads=8) are passed through
+# unchanged.
+if [ $# -gt 1 ] ; then
+    COMMAND+=" ${@:2}"
+fi
+
+#echo $COMMAND
+$COMMAND
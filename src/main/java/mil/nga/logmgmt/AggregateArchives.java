@@ -0,0 +1,1131 @@
+package mil.nga.logmgmt;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.logmgmt.exceptions.InputException;
+import mil.nga.util.ChecksumInputStream;
+import mil.nga.util.ContentDigest;
+import mil.nga.util.FileUtils;
+import mil.nga.util.Options;
+import mil.nga.util.Options.Multiplicity;
+import mil.nga.util.Options.Separator;
+
+/**
+ * Consolidates per-host spool directories into the central archive store.
+ * Each server runs LogMgmt with its <code>output.path</code> pointing at its
+ * own spool directory (<code>&lt;spool&gt;/&lt;host&gt;</code>), so the
+ * spool holds exactly the layout of the archive store.  This class is then
+ * the only writer of the central store, which replaces hundreds of small
+ * concurrent writers with a handful of large sequential ones.
+ *
+ * The files found in one directory of one host's spool form a batch.  A
+ * batch is committed atomically through a small journal kept in the spool
+ * (<code>&lt;spool&gt;/.aggregate</code>): every file is first written to
+ * a partial file in the central store and forced to disk, then the
+ * journal lists the renames, the manifest entries to merge and the spool
+ * files to remove and is forced, and only then are the renames, appends
+ * and removals carried out.  A journal found at start-up is rolled forward
+ * if it was completed and rolled back (its partial files removed)
+ * otherwise, so a batch is either wholly in the central store or not at
+ * all, and a spool file is never removed before its copy is durable.
+ *
+ * Batches are handed out to the worker threads by host, always to the host
+ * from which the fewest bytes have been taken so far, so that a host with
+ * a large backlog cannot starve the others.  No more than a configured
+ * number of batches are written to any one volume (file system) of the
+ * central store at a time, and only one to any one directory.
+ *
+ * Archives are deduplicated by content: an archive whose stored checksum
+ * and size are already recorded in the manifests of the same central
+ * directory (under any name in that directory) is removed from the spool
+ * without being written again, together with its sidecars, once the match
+ * is confirmed by the SHA-256 of the source recorded in both manifest
+ * entries or, failing that, by comparing the two archives byte for byte.
+ * An archive whose name is already used in
+ * the central store for different content is a conflict and is left in
+ * the spool, as is an archive that does not match its own manifest entry.
+ * Files without a manifest entry (sidecars) are only taken once they have
+ * gone unmodified for a settle period, as their archive may still be in
+ * the process of being written.  Spool manifests and reference files are
+ * read but never modified or removed, as the servers continue to append
+ * to them; the new lines of a reference file are merged into the central
+ * reference file of the same host like manifest entries.
+ */
+public class AggregateArchives {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(AggregateArchives.class);
+
+    /**
+     * Directory of the spool holding the batch journals.
+     */
+    public static final String STATE_DIR = ".aggregate";
+
+    /**
+     * Prefix used for all batch journal file names.
+     */
+    public static final String JOURNAL_PREFIX = "batch-";
+
+    /**
+     * Extension used for all batch journal file names.
+     */
+    public static final String JOURNAL_EXTENSION = ".log";
+
+    /**
+     * File locked for the duration of a run so that only one aggregator
+     * works on a spool at a time.
+     */
+    private static final String LOCK_FILE = ".lock";
+
+    /**
+     * Length of the random token used to make the journal name unique.
+     */
+    private static final int TOKEN_LENGTH = 6;
+
+    private static final String PARTIAL   = "P";
+    private static final String RENAME    = "R";
+    private static final String MANIFEST  = "M";
+    private static final String SPOOLED   = "S";
+    private static final String COMMITTED = "C";
+    private static final String DELIMITER = "\t";
+
+    /**
+     * Outcome of consolidating a single spool file.
+     */
+    public enum Result {
+        /** The file was written to the central store. */
+        AGGREGATED,
+        /** The central store already held the content; nothing written. */
+        DUPLICATE,
+        /** Archive does not match its manifest entry; left in the spool. */
+        CORRUPT,
+        /** The name is used in the central store for other content. */
+        CONFLICT,
+        /** The batch holding the file could not be committed. */
+        FAILED
+    }
+
+    private final Path spool;
+    private final Path target;
+    private final Path state;
+    private final int  threads;
+    private final int  perVolume;
+    private final long settle;
+    private final Map<Result, AtomicLong> counts =
+            new EnumMap<Result, AtomicLong>(Result.class);
+    private final AtomicLong bytes = new AtomicLong();
+
+    /**
+     * Scheduling state, guarded by <code>this</code>.
+     */
+    private final Map<String, Deque<Batch>> pending =
+            new LinkedHashMap<String, Deque<Batch>>();
+    private final Map<String, Long>    served = new HashMap<String, Long>();
+    private final Map<Object, Integer> busy   = new HashMap<Object, Integer>();
+    private final Set<Path>            active = new HashSet<Path>();
+
+    /**
+     * Constructor.
+     *
+     * @param spool The directory holding one spool directory per host.
+     * @param target The top of the central archive store.
+     * @param threads Number of batches consolidated concurrently.
+     * @param perVolume Number of batches written concurrently to any one
+     * volume of the central store.
+     * @param settleSeconds Time a file without a manifest entry must go
+     * unmodified before it is taken.
+     * @throws InputException Thrown if the spool does not exist.
+     */
+    public AggregateArchives(
+            String spool,
+            String target,
+            int    threads,
+            int    perVolume,
+            int    settleSeconds) throws InputException {
+
+        String method = "Constructor() - ";
+
+        if ((spool == null) || (!Files.isDirectory(Paths.get(spool)))) {
+            String msg = method
+                    + "The spool directory [ "
+                    + spool
+                    + " ] does not exist.";
+            LOGGER.error(msg);
+            throw new InputException(msg);
+        }
+        if ((target == null) || target.trim().isEmpty()) {
+            String msg = method + "No archive store was supplied.";
+            LOGGER.error(msg);
+            throw new InputException(msg);
+        }
+        this.spool     = Paths.get(spool).toAbsolutePath().normalize();
+        this.target    = Paths.get(target.trim()).toAbsolutePath().normalize();
+        this.state     = this.spool.resolve(STATE_DIR);
+        this.threads   = Math.max(1, threads);
+        this.perVolume = Math.max(1, perVolume);
+        this.settle    = TimeUnit.SECONDS.toMillis(Math.max(0, settleSeconds));
+        if (this.target.startsWith(this.spool) || this.spool.startsWith(this.target)) {
+            String msg = method
+                    + "The spool [ "
+                    + this.spool.toString()
+                    + " ] and the archive store [ "
+                    + this.target.toString()
+                    + " ] may not contain one another.";
+            LOGGER.error(msg);
+            throw new InputException(msg);
+        }
+        for (Result result : Result.values()) {
+            counts.put(result, new AtomicLong());
+        }
+    }
+
+    /**
+     * Recover any batches left behind by a run that died, then consolidate
+     * every batch found in the spool.
+     *
+     * @throws IOException Thrown if another aggregator holds the spool or
+     * the spool cannot be walked.
+     */
+    public void aggregate() throws IOException {
+
+        String method = "aggregate() - ";
+        long   start  = System.currentTimeMillis();
+
+        Files.createDirectories(state);
+        try (FileChannel fc = FileChannel.open(state.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE)) {
+            FileLock lock = fc.tryLock();
+            if (lock == null) {
+                throw new IOException("Spool [ " + spool.toString()
+                        + " ] is in use by another aggregator.");
+            }
+            try {
+                recover();
+                int count = plan();
+                LOGGER.info(method
+                        + "Found [ "
+                        + count
+                        + " ] batches from [ "
+                        + pending.size()
+                        + " ] hosts below [ "
+                        + spool.toString()
+                        + " ].  Consolidating into [ "
+                        + target.toString()
+                        + " ].");
+                run();
+            }
+            finally {
+                lock.release();
+            }
+        }
+
+        LOGGER.info(method
+                + "Aggregation complete in [ "
+                + (System.currentTimeMillis() - start)
+                + " ] ms.  Wrote [ "
+                + bytes.get()
+                + " ] bytes.  Results "
+                + counts.toString()
+                + ".");
+    }
+
+    /**
+     * Walk the spool of every host and queue one batch per directory
+     * holding files.
+     *
+     * @return The number of batches queued.
+     * @throws IOException Thrown if the spool cannot be listed.
+     */
+    private int plan() throws IOException {
+
+        int count = 0;
+
+        try (DirectoryStream<Path> hosts = Files.newDirectoryStream(spool)) {
+            for (Path hostDir : hosts) {
+                String host = hostDir.getFileName().toString();
+                if (host.startsWith(".") || !Files.isDirectory(hostDir)) {
+                    continue;
+                }
+                final Map<Path, List<Path>> dirs =
+                        new LinkedHashMap<Path, List<Path>>();
+                Files.walkFileTree(hostDir, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file,
+                            BasicFileAttributes attrs) {
+                        if (attrs.isRegularFile() &&
+                                !StagedFile.isPartial(file) &&
+                                !Manifest.isManifest(file)) {
+                            List<Path> files = dirs.get(file.getParent());
+                            if (files == null) {
+                                files = new ArrayList<Path>();
+                                dirs.put(file.getParent(), files);
+                            }
+                            files.add(file);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+                Deque<Batch> queue = new ArrayDeque<Batch>();
+                for (Map.Entry<Path, List<Path>> dir : dirs.entrySet()) {
+                    Batch batch = new Batch(host, dir.getKey(),
+                            centralOf(hostDir, dir.getKey()), dir.getValue());
+                    if (!batch.files.isEmpty()) {
+                        queue.add(batch);
+                    }
+                }
+                if (!queue.isEmpty()) {
+                    pending.put(host, queue);
+                    served.put(host, 0L);
+                    count += queue.size();
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Calculate the central directory corresponding to a directory of a
+     * host's spool.
+     *
+     * @param hostDir The spool directory of the host.
+     * @param dir A directory below it.
+     * @return The directory of the central store.
+     */
+    private Path centralOf(Path hostDir, Path dir) {
+        Path central = target;
+        for (Path name : hostDir.relativize(dir)) {
+            central = central.resolve(name.toString());
+        }
+        return central;
+    }
+
+    /**
+     * Identify the volume (file system) holding a directory of the central
+     * store, which need not exist yet.
+     *
+     * @param dir A directory of the central store.
+     * @return The volume, or the top of the store if it cannot be found.
+     */
+    private Object volumeOf(Path dir) {
+        Path existing = dir;
+        while ((existing != null) && !Files.exists(existing)) {
+            existing = existing.getParent();
+        }
+        if (existing != null) {
+            try {
+                FileStore store = Files.getFileStore(existing);
+                return store;
+            }
+            catch (IOException ioe) {
+                // Fall through.
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Run the configured number of workers until every batch has been
+     * consolidated.
+     */
+    private void run() {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    Batch batch = null;
+                    try {
+                        while ((batch = take()) != null) {
+                            try {
+                                consolidate(batch);
+                            }
+                            finally {
+                                release(batch);
+                            }
+                        }
+                    }
+                    catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        try {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException ie) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Hand out the next batch: the first batch, whose volume is not
+     * already busy, of the host from which the fewest bytes have been
+     * taken.  Batches for the same central directory are never handed out
+     * together, as they share manifests and must see one another's
+     * archives to deduplicate them.  Blocks while every remaining batch
+     * targets a busy volume or directory.
+     *
+     * @return The batch, or null once no batches remain.
+     * @throws InterruptedException Thrown if the worker is interrupted.
+     */
+    private synchronized Batch take() throws InterruptedException {
+        while (!pending.isEmpty()) {
+            String host   = null;
+            Batch  chosen = null;
+            for (Map.Entry<String, Deque<Batch>> entry : pending.entrySet()) {
+                if ((host != null) &&
+                        (served.get(entry.getKey()) >= served.get(host))) {
+                    continue;
+                }
+                for (Batch batch : entry.getValue()) {
+                    Integer inFlight = busy.get(batch.volume);
+                    if (((inFlight == null) || (inFlight < perVolume)) &&
+                            !active.contains(batch.central)) {
+                        host   = entry.getKey();
+                        chosen = batch;
+                        break;
+                    }
+                }
+            }
+            if (chosen != null) {
+                Deque<Batch> queue = pending.get(host);
+                queue.remove(chosen);
+                if (queue.isEmpty()) {
+                    pending.remove(host);
+                }
+                served.put(host, served.get(host) + chosen.size);
+                Integer inFlight = busy.get(chosen.volume);
+                busy.put(chosen.volume, (inFlight == null) ? 1 : inFlight + 1);
+                active.add(chosen.central);
+                return chosen;
+            }
+            wait();
+        }
+        return null;
+    }
+
+    /**
+     * Return the volume slot and directory held by a batch.
+     *
+     * @param batch The batch that was consolidated.
+     */
+    private synchronized void release(Batch batch) {
+        busy.put(batch.volume, busy.get(batch.volume) - 1);
+        active.remove(batch.central);
+        notifyAll();
+    }
+
+    /**
+     * Key identifying the content of an archive.
+     */
+    private static String contentOf(ManifestEntry entry) {
+        return entry.getStoredSize() + DELIMITER + entry.getStoredCrc();
+    }
+
+    /**
+     * Consolidate a single batch, counting the result of each of its files.
+     *
+     * @param batch The batch.
+     */
+    private void consolidate(Batch batch) {
+
+        String                  method  = "consolidate() - ";
+        Map<Result, Integer>    results = new EnumMap<Result, Integer>(Result.class);
+        Map<StagedFile, Path>   staged  = new LinkedHashMap<StagedFile, Path>();
+        List<ManifestEntry>     merged  = new ArrayList<ManifestEntry>();
+        List<Path>              taken   = new ArrayList<Path>();
+        Path                    journal = null;
+        FileChannel             channel = null;
+
+        try {
+            Map<String, ManifestEntry> central   = Manifest.read(batch.central);
+            Map<String, ManifestEntry> byContent =
+                    new HashMap<String, ManifestEntry>();
+            Map<String, Path>          copied    = new HashMap<String, Path>();
+            for (ManifestEntry entry : central.values()) {
+                byContent.put(contentOf(entry), entry);
+            }
+            Set<String> dropped = new HashSet<String>();
+            Set<String> held    = new HashSet<String>();
+
+            Files.createDirectories(batch.central);
+            journal = state.resolve(JOURNAL_PREFIX
+                    + batch.host
+                    + "-"
+                    + System.currentTimeMillis()
+                    + "-"
+                    + FileUtils.generateUniqueToken(TOKEN_LENGTH)
+                    + JOURNAL_EXTENSION);
+            channel = FileChannel.open(journal,
+                    StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+
+            // Archives first, so that their sidecars can follow them.
+            for (Path file : batch.files) {
+                String        name  = file.getFileName().toString();
+                ManifestEntry entry = batch.entries.get(name);
+                if (entry == null) {
+                    continue;
+                }
+                ManifestEntry match     = byContent.get(contentOf(entry));
+                String        duplicate = null;
+                Result        result    = null;
+                if (match != null) {
+                    duplicate = match.getDestination();
+                    Path existing = copied.containsKey(duplicate) ?
+                            copied.get(duplicate) :
+                            batch.central.resolve(duplicate);
+                    if (!sameArchive(file, entry, existing, match)) {
+                        duplicate = null;
+                    }
+                }
+                if (duplicate != null) {
+                    if (!duplicate.equals(name)) {
+                        dropped.add(name);
+                        LOGGER.info(method
+                                + "Archive [ "
+                                + file.toString()
+                                + " ] is already held as [ "
+                                + batch.central.resolve(duplicate).toString()
+                                + " ].  Dropping it.");
+                    }
+                    taken.add(file);
+                    result = Result.DUPLICATE;
+                }
+                else if (central.containsKey(name) ||
+                        Files.exists(batch.central.resolve(name))) {
+                    LOGGER.error(method
+                            + "Archive [ "
+                            + batch.central.resolve(name).toString()
+                            + " ] already exists with different content.  "
+                            + "Leaving [ "
+                            + file.toString()
+                            + " ] in the spool.");
+                    held.add(name);
+                    result = Result.CONFLICT;
+                }
+                else {
+                    ContentDigest digest = new ContentDigest(false,
+                            ContentDigest.algorithmOf(entry.getStoredCrc()));
+                    StagedFile    copy   = copy(channel, file,
+                            batch.central.resolve(name), digest);
+                    staged.put(copy, file);
+                    if ((digest.getSize() != entry.getStoredSize()) ||
+                            !digest.getCrc().equals(entry.getStoredCrc())) {
+                        LOGGER.error(method
+                                + "Archive [ "
+                                + file.toString()
+                                + " ] does not match its manifest entry.  "
+                                + "Leaving it in the spool.");
+                        staged.remove(copy);
+                        copy.close();
+                        held.add(name);
+                        result = Result.CORRUPT;
+                    }
+                    else {
+                        byContent.put(contentOf(entry), entry);
+                        copied.put(name, file);
+                        merged.add(entry);
+                        taken.add(file);
+                        result = Result.AGGREGATED;
+                    }
+                }
+                Integer count = results.get(result);
+                results.put(result, (count == null) ? 1 : count + 1);
+            }
+
+            // Sidecars and any other files.
+            for (Path file : batch.files) {
+                String name = file.getFileName().toString();
+                if (batch.entries.containsKey(name)) {
+                    continue;
+                }
+                if (Manifest.isReferences(file)) {
+                    merged.addAll(referencesOf(file, batch, held));
+                    continue;
+                }
+                String archive = archiveOf(name, batch.entries.keySet());
+                if ((archive != null) && (held.contains(archive) ||
+                        (!batch.holds(archive) &&
+                                !Files.exists(batch.central.resolve(archive))))) {
+                    // Follows its archive, which is not going anywhere.
+                    continue;
+                }
+                Path   destination = batch.central.resolve(name);
+                Result result      = null;
+                if (((archive != null) && dropped.contains(archive)) ||
+                        sameContent(file, destination)) {
+                    taken.add(file);
+                    result = Result.DUPLICATE;
+                }
+                else {
+                    staged.put(copy(channel, file, destination,
+                            new ContentDigest(false)), file);
+                    taken.add(file);
+                    result = Result.AGGREGATED;
+                }
+                Integer count = results.get(result);
+                results.put(result, (count == null) ? 1 : count + 1);
+            }
+
+            // The batch is durable in partial files.  Record what remains
+            // to be done, commit the journal, then do it.
+            for (StagedFile copy : staged.keySet()) {
+                write(channel, RENAME
+                        + DELIMITER + copy.getPartial().toString()
+                        + DELIMITER + copy.getDestination().toString());
+            }
+            for (ManifestEntry entry : merged) {
+                write(channel, MANIFEST
+                        + DELIMITER + centralManifestOf(batch.central, entry).toString()
+                        + DELIMITER + entry.toLine());
+            }
+            for (Path file : taken) {
+                write(channel, SPOOLED + DELIMITER + file.toString());
+            }
+            write(channel, COMMITTED);
+            channel.force(false);
+            channel.close();
+            channel = null;
+
+            try {
+                for (Map.Entry<StagedFile, Path> copy : staged.entrySet()) {
+                    Path destination = copy.getKey().getDestination();
+                    copy.getKey().commit();
+                    Files.setLastModifiedTime(destination,
+                            Files.getLastModifiedTime(copy.getValue()));
+                    bytes.addAndGet(Files.size(destination));
+                }
+                for (ManifestEntry entry : merged) {
+                    Manifest.append(centralManifestOf(batch.central, entry), entry);
+                }
+                for (Path file : taken) {
+                    Files.deleteIfExists(file);
+                }
+                Files.deleteIfExists(journal);
+            }
+            catch (IOException ioe) {
+                LOGGER.error(method
+                        + "Batch [ "
+                        + batch.toString()
+                        + " ] was committed but could not be completed.  "
+                        + "Journal [ "
+                        + journal.toString()
+                        + " ] will be rolled forward by the next run.  "
+                        + "Error message [ "
+                        + ioe.getMessage()
+                        + " ].");
+            }
+            for (Map.Entry<Result, Integer> result : results.entrySet()) {
+                counts.get(result.getKey()).addAndGet(result.getValue());
+            }
+        }
+        catch (IOException ioe) {
+            LOGGER.error(method
+                    + "Unable to consolidate batch [ "
+                    + batch.toString()
+                    + " ].  It will be retried by the next run.  Error "
+                    + "message [ "
+                    + ioe.getMessage()
+                    + " ].");
+            for (StagedFile copy : staged.keySet()) {
+                copy.close();
+            }
+            if (channel != null) {
+                try { channel.close(); } catch (IOException e) {}
+            }
+            if (journal != null) {
+                try { Files.deleteIfExists(journal); } catch (IOException e) {}
+            }
+            counts.get(Result.FAILED).addAndGet(batch.files.size());
+        }
+    }
+
+    /**
+     * Copy a spool file to a partial file of the central store and force
+     * it to disk, recording the partial file in the journal first so that
+     * it is removed if the run dies.
+     *
+     * @param channel The batch journal.
+     * @param file The spool file.
+     * @param destination The final location in the central store.
+     * @param digest Receives the digest of the content copied.
+     * @return The staged copy (not yet committed).
+     * @throws IOException Thrown if the copy fails.
+     */
+    private static StagedFile copy(FileChannel channel, Path file,
+            Path destination, ContentDigest digest) throws IOException {
+        StagedFile staged = new StagedFile(destination);
+        write(channel, PARTIAL + DELIMITER + staged.getPartial().toString());
+        try {
+            try (InputStream is = new ChecksumInputStream(
+                    new BufferedInputStream(Files.newInputStream(file),
+                            StagedFile.BUFFER_SIZE),
+                    digest)) {
+                OutputStream os     = staged.getOutputStream();
+                byte[]       buffer = new byte[StagedFile.BUFFER_SIZE];
+                int          count  = 0;
+                while ((count = is.read(buffer)) != -1) {
+                    os.write(buffer, 0, count);
+                }
+            }
+            staged.sync();
+            return staged;
+        }
+        catch (IOException ioe) {
+            staged.close();
+            throw ioe;
+        }
+    }
+
+    /**
+     * Read the references of a spool reference file that the central
+     * reference file of the same host does not hold yet.  A reference is
+     * only taken once the archive it names is in the central store (or
+     * is being written by the batch); the spool reference file itself is
+     * left in place, as the server continues to append to it.
+     *
+     * @param file The spool reference file.
+     * @param batch The batch.
+     * @param held Archives of the batch left in the spool.
+     * @return The new references, to be appended to the central file.
+     * @throws IOException Thrown if either reference file cannot be read.
+     */
+    private static List<ManifestEntry> referencesOf(Path file, Batch batch,
+            Set<String> held) throws IOException {
+        List<ManifestEntry> references = new ArrayList<ManifestEntry>();
+        Set<String>         known      = linesOf(
+                batch.central.resolve(file.getFileName().toString()));
+        for (String line : linesOf(file)) {
+            ManifestEntry entry = ManifestEntry.parse(line);
+            if ((entry == null) || known.contains(entry.toLine())) {
+                continue;
+            }
+            String archive = entry.getDestination();
+            if (Files.exists(batch.central.resolve(archive)) ||
+                    (batch.holds(archive) && !held.contains(archive))) {
+                entry.setManifest(file);
+                references.add(entry);
+            }
+        }
+        return references;
+    }
+
+    /**
+     * Read the lines of a manifest or reference file.
+     *
+     * @param file The file.
+     * @return The lines, empty if the file does not exist.
+     * @throws IOException Thrown if the file cannot be read.
+     */
+    private static Set<String> linesOf(Path file) throws IOException {
+        Set<String> lines = new HashSet<String>();
+        if (Files.exists(file)) {
+            lines.addAll(Files.readAllLines(file, StandardCharsets.UTF_8));
+        }
+        return lines;
+    }
+
+    /**
+     * Determine which archive of a batch a sidecar belongs to.  Sidecars
+     * are named <code>.&lt;archive&gt;.&lt;extension&gt;</code>.
+     *
+     * @param name The name of a file that is not an archive.
+     * @param archives The archives of the batch.
+     * @return The archive, or null if the file is not a sidecar of one.
+     */
+    private static String archiveOf(String name, Set<String> archives) {
+        if (name.startsWith(".")) {
+            for (String archive : archives) {
+                if (name.startsWith("." + archive + ".")) {
+                    return archive;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Confirm that a spool archive whose stored size and checksum match
+     * those of an archive already held has the same content: by the
+     * SHA-256 of the source when both manifest entries record one, and
+     * byte for byte otherwise.
+     *
+     * @param file The spool archive.
+     * @param entry The manifest entry of the spool archive.
+     * @param held The archive held (in the central store, or in the spool
+     * if it is being copied by the same batch).
+     * @param heldEntry The manifest entry of the archive held.
+     * @return True if the spool archive may be dropped.
+     * @throws IOException Thrown if either archive cannot be read.
+     */
+    private static boolean sameArchive(Path file, ManifestEntry entry,
+            Path held, ManifestEntry heldEntry) throws IOException {
+        if (!ContentDigest.NONE.equals(entry.getSourceSha256()) &&
+                !ContentDigest.NONE.equals(heldEntry.getSourceSha256())) {
+            return entry.getSourceSha256().equals(heldEntry.getSourceSha256());
+        }
+        return sameContent(file, held);
+    }
+
+    /**
+     * Compare a spool file with a file of the central store byte for byte.
+     *
+     * @return True if the central file exists and has the same content.
+     */
+    private static boolean sameContent(Path file, Path central) throws IOException {
+        if (!Files.isRegularFile(central) || (Files.size(central) != Files.size(file))) {
+            return false;
+        }
+        try (InputStream a = new BufferedInputStream(Files.newInputStream(file),
+                    StagedFile.BUFFER_SIZE);
+             InputStream b = new BufferedInputStream(Files.newInputStream(central),
+                    StagedFile.BUFFER_SIZE)) {
+            int c = 0;
+            while ((c = a.read()) != -1) {
+                if (c != b.read()) {
+                    return false;
+                }
+            }
+            return b.read() == -1;
+        }
+    }
+
+    /**
+     * The central manifest receiving an entry read from a spool manifest
+     * (or reference file): the file of the same name in the central
+     * directory.
+     */
+    private static Path centralManifestOf(Path central, ManifestEntry entry) {
+        return central.resolve(entry.getManifest().getFileName().toString());
+    }
+
+    /**
+     * Append a single record to a batch journal.
+     */
+    private static void write(FileChannel channel, String record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(
+                (record + "\n").getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Roll forward every batch journal that was committed and roll back
+     * every one that was not.
+     */
+    private void recover() {
+        String method = "recover() - ";
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(
+                state, JOURNAL_PREFIX + "*" + JOURNAL_EXTENSION)) {
+            for (Path journal : stream) {
+                try {
+                    LOGGER.warn(method
+                            + "Recovering batch journal [ "
+                            + journal.toString()
+                            + " ] left behind by an incomplete run.");
+                    replay(journal);
+                    Files.deleteIfExists(journal);
+                }
+                catch (IOException ioe) {
+                    LOGGER.error(method
+                            + "Unable to recover journal [ "
+                            + journal.toString()
+                            + " ].  It will be retried by the next run.  "
+                            + "Error message [ "
+                            + ioe.getMessage()
+                            + " ].");
+                }
+            }
+        }
+        catch (IOException ioe) {
+            LOGGER.error(method
+                    + "Unexpected IOException recovering journals in [ "
+                    + state.toString()
+                    + " ].  Error message [ "
+                    + ioe.getMessage()
+                    + " ].");
+        }
+    }
+
+    /**
+     * Replay a single batch journal.
+     *
+     * @param journal The journal.
+     * @throws IOException Thrown if the batch cannot be resolved.
+     */
+    private static void replay(Path journal) throws IOException {
+
+        List<String[]> records   = new ArrayList<String[]>();
+        boolean        committed = false;
+
+        try (BufferedReader reader = Files.newBufferedReader(
+                journal, StandardCharsets.UTF_8)) {
+            String line = null;
+            while ((line = reader.readLine()) != null) {
+                if (COMMITTED.equals(line)) {
+                    committed = true;
+                }
+                else {
+                    records.add(line.split(DELIMITER, 3));
+                }
+            }
+        }
+
+        for (String[] fields : records) {
+            if (!committed) {
+                if (PARTIAL.equals(fields[0]) && (fields.length == 2)) {
+                    Files.deleteIfExists(Paths.get(fields[1]));
+                }
+            }
+            else if (RENAME.equals(fields[0]) && (fields.length == 3)) {
+                Path partial = Paths.get(fields[1]);
+                if (Files.exists(partial)) {
+                    try {
+                        Files.move(partial, Paths.get(fields[2]),
+                                StandardCopyOption.ATOMIC_MOVE);
+                    }
+                    catch (AtomicMoveNotSupportedException amnse) {
+                        Files.move(partial, Paths.get(fields[2]),
+                                StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    StagedFile.syncDirectory(partial.getParent());
+                }
+            }
+            else if (MANIFEST.equals(fields[0]) && (fields.length == 3)) {
+                Path          manifest = Paths.get(fields[1]);
+                ManifestEntry entry    = ManifestEntry.parse(fields[2]);
+                if ((entry != null) &&
+                        !linesOf(manifest).contains(entry.toLine())) {
+                    Manifest.append(manifest, entry);
+                }
+            }
+            else if (SPOOLED.equals(fields[0]) && (fields.length == 2)) {
+                Files.deleteIfExists(Paths.get(fields[1]));
+            }
+        }
+    }
+
+    /**
+     * Accessor method for the number of files with the input result.
+     *
+     * @param result The result of interest.
+     * @return The number of files.
+     */
+    public long getCount(Result result) {
+        return counts.get(result).get();
+    }
+
+    /**
+     * Accessor method for the number of bytes written to the central
+     * store.
+     * @return The number of bytes.
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * Internal class holding the files of one directory of one host's
+     * spool.
+     */
+    private class Batch {
+
+        private final String                     host;
+        private final Path                       dir;
+        private final Path                       central;
+        private final Object                     volume;
+        private final Map<String, ManifestEntry> entries;
+        private final List<Path>                 files = new ArrayList<Path>();
+        private long                             size  = 0;
+
+        /**
+         * Constructor.  Keeps the archives listed in the spool manifests
+         * and any other file that has settled.
+         *
+         * @param host The host owning the spool.
+         * @param dir The directory of the spool.
+         * @param central The corresponding directory of the central store.
+         * @param found The files found in the directory.
+         * @throws IOException Thrown if the files cannot be examined.
+         */
+        Batch(String host, Path dir, Path central, List<Path> found)
+                throws IOException {
+            this.host    = host;
+            this.dir     = dir;
+            this.central = central;
+            this.volume  = volumeOf(central);
+            this.entries = Manifest.read(dir);
+            long settled = System.currentTimeMillis() - settle;
+            Collections.sort(found);
+            for (Path file : found) {
+                if (entries.containsKey(file.getFileName().toString()) ||
+                        Manifest.isReferences(file) ||
+                        (Files.getLastModifiedTime(file).toMillis() <= settled)) {
+                    files.add(file);
+                    size += Files.size(file);
+                }
+            }
+        }
+
+        /**
+         * Determine whether the batch holds the named file.
+         *
+         * @param name A file name.
+         * @return True if the file is one of the batch.
+         */
+        boolean holds(String name) {
+            for (Path file : files) {
+                if (file.getFileName().toString().equals(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return host + ":" + dir.toString();
+        }
+    }
+
+    /**
+     * Simple static method to print the help and usage String information.
+     */
+    private static void printHelp() {
+        System.out.println("");
+        System.out.println(AggregateArchivesI.HELP_STRING);
+        System.out.println("");
+        System.out.println(AggregateArchivesI.USAGE_STRING);
+    }
+
+    /**
+     * Driver method used to extract the command line parameters and
+     * initiate processing.
+     *
+     * @param args Input command line arguments
+     * @throws InputException Thrown if the input data does not make
+     * sense.
+     * @throws IOException Thrown if the spool cannot be consolidated.
+     */
+    public static void main(String[] args) throws InputException, IOException {
+
+        String method    = "main() - ";
+        String spool     = null;
+        String target    = null;
+        int    threads   = AggregateArchivesI.DEFAULT_THREADS;
+        int    perVolume = AggregateArchivesI.DEFAULT_PER_VOLUME;
+        int    settle    = AggregateArchivesI.DEFAULT_SETTLE_SECONDS;
+
+        // Set up the command line options
+        Options opt = new Options(args, 0);
+        opt.getSet().addOption("spool", Separator.EQUALS, Multiplicity.ONCE);
+        opt.getSet().addOption("target", Separator.EQUALS, Multiplicity.ONCE);
+        opt.getSet().addOption("threads", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("volume", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("settle", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("h", Multiplicity.ZERO_OR_MORE);
+        opt.getSet().addOption("help", Multiplicity.ZERO_OR_MORE);
+
+        // Make sure the options make sense
+        if (!opt.check(true, false)) {
+            System.out.println(AggregateArchivesI.USAGE_STRING);
+            System.exit(1);
+        }
+
+        // See if the user wanted the help message displayed.
+        if (opt.getSet().isSet("h") || opt.getSet().isSet("help")) {
+            AggregateArchives.printHelp();
+            System.exit(0);
+        }
+
+        spool  = opt.getSet().getOption("spool").getResultValue(0);
+        target = opt.getSet().getOption("target").getResultValue(0);
+        try {
+            if (opt.getSet().isSet("threads")) {
+                threads = Integer.parseInt(
+                        opt.getSet().getOption("threads").getResultValue(0).trim());
+            }
+            if (opt.getSet().isSet("volume")) {
+                perVolume = Integer.parseInt(
+                        opt.getSet().getOption("volume").getResultValue(0).trim());
+            }
+            if (opt.getSet().isSet("settle")) {
+                settle = Integer.parseInt(
+                        opt.getSet().getOption("settle").getResultValue(0).trim());
+            }
+        }
+        catch (NumberFormatException nfe) {
+            LOGGER.error(method
+                    + "ERROR: -threads, -volume and -settle must be "
+                    + "integers.  Error message [ "
+                    + nfe.getMessage()
+                    + " ].");
+            AggregateArchives.printHelp();
+            System.exit(1);
+        }
+
+        LOGGER.info(method
+                + "Consolidating spool [ "
+                + spool
+                + " ] into [ "
+                + target
+                + " ] with [ "
+                + threads
+                + " ] threads, [ "
+                + perVolume
+                + " ] per volume.");
+
+        new AggregateArchives(spool, target, threads, perVolume, settle)
+                .aggregate();
+    }
+}
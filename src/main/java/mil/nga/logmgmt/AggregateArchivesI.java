@@ -0,0 +1,68 @@
+package mil.nga.logmgmt;
+
+/**
+ * Simple interface containing the constants and help text used by the
+ * spool aggregator.
+ */
+public interface AggregateArchivesI {
+
+    /**
+     * Default number of batches consolidated concurrently.
+     */
+    public static final int DEFAULT_THREADS = 8;
+
+    /**
+     * Default number of batches written concurrently to any one volume of
+     * the central store.
+     */
+    public static final int DEFAULT_PER_VOLUME = 2;
+
+    /**
+     * Default number of seconds a file without a manifest entry (e.g. a
+     * sidecar) must go unmodified before it is taken from the spool.
+     */
+    public static final int DEFAULT_SETTLE_SECONDS = 60;
+
+    /**
+     * Usage String printed when incorrect arguments are supplied.
+     */
+    public static final String USAGE_STRING = new String(
+            "Usage: java mil.nga.logmgmt.AggregateArchives "
+            + "-spool=<spool-directory> "
+            + "-target=<archive-store> "
+            + "[ -threads=<count> ] "
+            + "[ -volume=<count> ] "
+            + "[ -settle=<seconds> ] "
+            + "[-h] [-help]");
+
+    /**
+     * Help string printed when -h or -help appear on the command line.
+     */
+    public static final String HELP_STRING = new String(
+            "This application consolidates the archives that each server "
+            + "writes to its own spool directory (<spool>/<host>, laid out "
+            + "exactly like the archive store) into the central archive "
+            + "store, so that the central store has one writer instead of "
+            + "one per server.  The files of one host's directory form a "
+            + "batch that is committed atomically: its archives, sidecars "
+            + "and manifest entries all appear in the central store or none "
+            + "do, and the spool copies are only removed once they have.  "
+            + "Hosts are served in turn by the number of bytes already "
+            + "taken from them, so one busy host cannot starve the others.  "
+            + "Archives already held by the central store (by checksum and "
+            + "size) are dropped from the spool without being written "
+            + "again.  Options supported are as follows:\n\n"
+            + "-spool=<spool-directory> Required.  The directory holding "
+            + "one spool directory per host.\n"
+            + "-target=<archive-store>  Required.  The top of the central "
+            + "archive store.\n"
+            + "[ -threads=<count> ]     Optional number of batches "
+            + "consolidated concurrently.  The default is 8.\n"
+            + "[ -volume=<count> ]      Optional number of batches written "
+            + "concurrently to any one volume (file system) of the central "
+            + "store.  The default is 2.\n"
+            + "[ -settle=<seconds> ]    Optional time a file without a "
+            + "manifest entry must go unmodified before it is taken.  The "
+            + "default is 60.\n"
+            + "[-h] [-help]    Prints this help message.\n\n");
+}
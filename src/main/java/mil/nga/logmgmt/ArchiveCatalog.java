@@ -0,0 +1,677 @@
+package mil.nga.logmgmt;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local catalog of every archive in the store, kept in the state directory
+ * so that questions such as "all openam audit logs from host X in March" 
+ * can be answered without walking the archive store.
+ *
+ * The catalog is held in two files:
+ *
+ * <li><code>catalog-&lt;n&gt;.dat</code> - the bulk of the records, sorted (see 
+ * <code>CatalogEntry</code>) and memory-mapped.  A lookup is a binary 
+ * search over the table of record offsets followed by a sequential scan
+ * of the matching range, so it costs O(log n) plus the size of the 
+ * result.</li>
+ * <li><code>catalog.log</code> - records added since the data file was 
+ * last written, appended as archives are created.  The log is merged into
+ * a new data file once it grows past a threshold.</li>
+ *
+ * Each merge writes the next generation <code>n</code> of the data file as
+ * a staged file and renames it into place before the log is truncated; a
+ * merge interrupted between the two leaves records in both, and 
+ * duplicates are dropped on the next merge.  A data file is never renamed
+ * over, as Windows does not allow a file that is mapped (by this or any 
+ * other process) to be replaced.  Older generations are removed once 
+ * replaced, or by a later merge if they are still mapped.  A torn final 
+ * line left in the log by a crash is removed when the catalog is opened.
+ * The catalog can always be rebuilt from the manifests in the store (see 
+ * <code>CatalogArchives -rebuild</code>).
+ *
+ * Data file layout (big-endian):
+ * <pre>
+ * magic (8 bytes) | record count (8) | offset table position (8) |
+ * records (UTF-8, each followed by a new line) | offset table (8 per record)
+ * </pre>
+ */
+public class ArchiveCatalog implements Closeable {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(ArchiveCatalog.class);
+
+    /**
+     * Name of the catalog directory within the state directory.
+     */
+    public static final String CATALOG_DIRECTORY = "catalog";
+
+    /**
+     * Prefix and extension of the sorted data files, which are numbered by
+     * generation in between.
+     */
+    public static final String DATA_PREFIX    = "catalog-";
+    public static final String DATA_EXTENSION = ".dat";
+
+    /**
+     * Name of the append log.
+     */
+    public static final String LOG_FILE = "catalog.log";
+
+    /**
+     * Size of the log (in bytes) beyond which it is merged into the data 
+     * file when the catalog is closed.
+     */
+    public static final long MERGE_THRESHOLD = 1024 * 1024;
+
+    private static final byte[] MAGIC = 
+            "LMCAT001".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int HEADER_LENGTH = 24;
+
+    /**
+     * Orders records by their bytes (unsigned), which is the order of the
+     * data file.
+     */
+    public static final Comparator<byte[]> ORDER = new Comparator<byte[]>() {
+        @Override
+        public int compare(byte[] a, byte[] b) {
+            int n = Math.min(a.length, b.length);
+            for (int i = 0; i < n; i++) {
+                int c = (a[i] & 0xff) - (b[i] & 0xff);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return a.length - b.length;
+        }
+    };
+
+    private final Path                 dir;
+    private final FileChannel          log;
+    private final NavigableSet<byte[]> recent = new TreeSet<byte[]>(ORDER);
+    private Data                       data;
+
+    /**
+     * Constructor.
+     */
+    private ArchiveCatalog(Path dir) throws IOException {
+        this.dir = dir;
+        this.log = FileChannel.open(dir.resolve(LOG_FILE),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        try {
+            FileLock lock = log.lock();
+            try {
+                trimLog();
+                this.data = Data.open(latest(dir));
+                recent.addAll(readLog(dir.resolve(LOG_FILE)));
+            }
+            finally {
+                lock.release();
+            }
+        }
+        catch (IOException ioe) {
+            log.close();
+            throw ioe;
+        }
+    }
+
+    /**
+     * Remove a torn final line (one without a new line) from the log, so
+     * that the next record is not appended to it.  Called with the log 
+     * lock held, so no other process is part way through a write.
+     */
+    private void trimLog() throws IOException {
+        String method = "trimLog() - ";
+        try (FileChannel channel = FileChannel.open(dir.resolve(LOG_FILE),
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            long       size   = channel.size();
+            long       end    = size;
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            while (end > 0) {
+                buffer.clear();
+                if ((channel.read(buffer, end - 1) == 1) && 
+                        (buffer.get(0) == '\n')) {
+                    break;
+                }
+                end--;
+            }
+            if (end < size) {
+                LOGGER.warn(method
+                        + "Removing a torn record of [ "
+                        + (size - end)
+                        + " ] bytes from [ "
+                        + dir.resolve(LOG_FILE).toString()
+                        + " ].");
+                channel.truncate(end);
+                channel.force(true);
+            }
+        }
+    }
+
+    /**
+     * Find the latest generation of the data file.
+     *
+     * @param dir The catalog directory.
+     * @return The data file, or null if none has been written.
+     */
+    private static Path latest(Path dir) throws IOException {
+        Path latest     = null;
+        long generation = -1;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(
+                dir, DATA_PREFIX + "*" + DATA_EXTENSION)) {
+            for (Path file : stream) {
+                long current = generationOf(file);
+                if (current > generation) {
+                    generation = current;
+                    latest     = file;
+                }
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Extract the generation from the name of a data file.
+     *
+     * @return The generation, or -1 if the file is not a data file.
+     */
+    private static long generationOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(DATA_PREFIX) || !name.endsWith(DATA_EXTENSION)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(DATA_PREFIX.length(),
+                    name.length() - DATA_EXTENSION.length()));
+        }
+        catch (NumberFormatException nfe) {
+            return -1;
+        }
+    }
+
+    /**
+     * Write the next generation of the data file and map it, then remove
+     * the older generations.  Called with the log lock held.
+     *
+     * @param records The records, in order.
+     */
+    private void replace(Iterator<byte[]> records) throws IOException {
+        String method     = "replace() - ";
+        Path   current    = latest(dir);
+        long   generation = (current == null) ? 0 : generationOf(current) + 1;
+        Path   next       = dir.resolve(
+                DATA_PREFIX + generation + DATA_EXTENSION);
+        write(next, records);
+        log.truncate(0);
+        log.force(true);
+        data = Data.open(next);
+        recent.clear();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(
+                dir, DATA_PREFIX + "*" + DATA_EXTENSION)) {
+            for (Path file : stream) {
+                if ((generationOf(file) >= 0) && (generationOf(file) < generation)) {
+                    try {
+                        Files.delete(file);
+                    }
+                    catch (IOException ioe) {
+                        LOGGER.debug(method
+                                + "Unable to remove [ "
+                                + file.toString()
+                                + " ], which may still be mapped.  It "
+                                + "will be removed by a later merge.");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Open (creating if necessary) the catalog kept in a state directory.
+     *
+     * @param stateDir The state directory.
+     * @return The catalog.
+     * @throws IOException Thrown if the catalog cannot be opened.
+     */
+    public static ArchiveCatalog open(Path stateDir) throws IOException {
+        Path dir = stateDir.resolve(CATALOG_DIRECTORY);
+        Files.createDirectories(dir);
+        return new ArchiveCatalog(dir);
+    }
+
+    /**
+     * Add a record.  The record is written to the log immediately but not
+     * forced to disk; a record lost in a crash is restored by a rebuild.
+     *
+     * @param entry The record.
+     * @throws IOException Thrown if the log cannot be written.
+     */
+    public synchronized void add(CatalogEntry entry) throws IOException {
+        byte[] record = entry.toBytes();
+        ByteBuffer buffer = ByteBuffer.allocate(record.length + 1);
+        buffer.put(record).put((byte)'\n').flip();
+        FileLock lock = log.lock();
+        try {
+            while (buffer.hasRemaining()) {
+                log.write(buffer);
+            }
+        }
+        finally {
+            lock.release();
+        }
+        recent.add(record);
+    }
+
+    /**
+     * Find the records matching the input key fields.  Fields are matched
+     * exactly, except that the date is matched as an inclusive range.  
+     * Any field may be null to match every value, but only the leading 
+     * non-null fields (in key order) narrow the range that is scanned.
+     *
+     * @param serverGroup The server group (or null).
+     * @param application The application (or null).
+     * @param host The host (or null).
+     * @param fromDate The earliest yyyyMMdd date (or null).
+     * @param toDate The latest yyyyMMdd date (or null).
+     * @return The matching records in key order.
+     */
+    public synchronized List<CatalogEntry> find(
+            String serverGroup,
+            String application,
+            String host,
+            String fromDate,
+            String toDate) {
+
+        // Build the prefix shared by every match and the key from which 
+        // to start scanning.
+        StringBuilder prefix = new StringBuilder();
+        String[]      fields = { serverGroup, application, host };
+        int           i      = 0;
+        while ((i < fields.length) && (fields[i] != null)) {
+            prefix.append(fields[i]).append(CatalogEntry.DELIMITER);
+            i++;
+        }
+        String start = prefix.toString();
+        if ((i == fields.length) && (fromDate != null)) {
+            start = start + fromDate;
+        }
+        byte[] prefixBytes = prefix.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] startBytes  = start.getBytes(StandardCharsets.UTF_8);
+
+        List<CatalogEntry> results = new ArrayList<CatalogEntry>();
+        Iterator<byte[]>   merged  = merge(data.iterator(startBytes), 
+                recent.tailSet(startBytes, true).iterator());
+        while (merged.hasNext()) {
+            byte[] record = merged.next();
+            if (!startsWith(record, prefixBytes)) {
+                break;
+            }
+            CatalogEntry entry = CatalogEntry.parse(
+                    new String(record, StandardCharsets.UTF_8));
+            if ((entry == null) ||
+                    ((serverGroup != null) && !serverGroup.equals(entry.getServerGroup())) ||
+                    ((application != null) && !application.equals(entry.getApplication())) ||
+                    ((host != null) && !host.equals(entry.getHost())) ||
+                    ((fromDate != null) && (entry.getDate().compareTo(fromDate) < 0))) {
+                continue;
+            }
+            if ((toDate != null) && (entry.getDate().compareTo(toDate) > 0)) {
+                if (i == fields.length) {
+                    // Dates are the next key field so nothing later matches.
+                    break;
+                }
+                continue;
+            }
+            results.add(entry);
+        }
+        return results;
+    }
+
+    /**
+     * Merge the log into a new data file.  Both files are re-read under 
+     * the log lock so that records added by other processes sharing the 
+     * state directory are kept.
+     *
+     * @throws IOException Thrown if the data file cannot be written.
+     */
+    public synchronized void merge() throws IOException {
+        FileLock lock = log.lock();
+        try {
+            Data current = Data.open(latest(dir));
+            List<byte[]> pending = readLog(dir.resolve(LOG_FILE));
+            pending.addAll(recent);
+            Collections.sort(pending, ORDER);
+            replace(merge(current.iterator(new byte[0]), pending.iterator()));
+        }
+        finally {
+            lock.release();
+        }
+    }
+
+    /**
+     * Replace the catalog with the input records.
+     *
+     * @param stateDir The state directory.
+     * @param entries Every record (in any order).
+     * @throws IOException Thrown if the catalog cannot be written.
+     */
+    public static void rebuild(Path stateDir, Collection<CatalogEntry> entries)
+            throws IOException {
+        List<byte[]> records = new ArrayList<byte[]>(entries.size());
+        for (CatalogEntry entry : entries) {
+            records.add(entry.toBytes());
+        }
+        Collections.sort(records, ORDER);
+        try (ArchiveCatalog catalog = open(stateDir)) {
+            FileLock lock = catalog.log.lock();
+            try {
+                catalog.replace(records.iterator());
+            }
+            finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Accessor method for the number of records in the catalog.
+     * @return The number of records (records added by other processes 
+     * since the catalog was opened are not counted).
+     */
+    public synchronized long size() {
+        return data.count + recent.size();
+    }
+
+    /**
+     * Merge the log into the data file if it has grown past the threshold
+     * and release the catalog.
+     */
+    @Override
+    public synchronized void close() {
+        String method = "close() - ";
+        try {
+            if (log.isOpen() && (log.size() > MERGE_THRESHOLD)) {
+                merge();
+            }
+        }
+        catch (IOException ioe) {
+            LOGGER.warn(method
+                    + "Unable to merge the catalog log in [ "
+                    + dir.toString()
+                    + " ].  Error message [ "
+                    + ioe.getMessage()
+                    + " ].");
+        }
+        try { log.close(); } catch (IOException e) {}
+    }
+
+    /**
+     * Read every record in a log file.
+     */
+    private static List<byte[]> readLog(Path file) throws IOException {
+        List<byte[]> records = new ArrayList<byte[]>();
+        if (!Files.exists(file)) {
+            return records;
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        int    start = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != '\n') {
+                continue;
+            }
+            String line = new String(bytes, start, i - start, 
+                    StandardCharsets.UTF_8);
+            if (CatalogEntry.parse(line) != null) {
+                records.add(line.getBytes(StandardCharsets.UTF_8));
+            }
+            start = i + 1;
+        }
+        // A torn final line (one without a new line) is dropped.
+        return records;
+    }
+
+    /**
+     * Write a data file from records supplied in order.  Duplicates 
+     * (adjacent equal records) are dropped.
+     */
+    private static void write(Path file, Iterator<byte[]> records) 
+            throws IOException {
+        StagedFile staged = new StagedFile(file);
+        try {
+            OutputStream os      = staged.getOutputStream();
+            long[]       offsets = new long[1024];
+            long         count   = 0;
+            long         pos     = HEADER_LENGTH;
+            byte[]       last    = null;
+            os.write(new byte[HEADER_LENGTH]);
+            while (records.hasNext()) {
+                byte[] record = records.next();
+                if ((last != null) && (ORDER.compare(last, record) == 0)) {
+                    continue;
+                }
+                last = record;
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                }
+                offsets[(int)count++] = pos;
+                os.write(record);
+                os.write('\n');
+                pos += record.length + 1;
+            }
+            ByteBuffer table = ByteBuffer.allocate(8 * 1024);
+            for (int i = 0; i < count; i++) {
+                if (!table.hasRemaining()) {
+                    os.write(table.array(), 0, table.position());
+                    table.clear();
+                }
+                table.putLong(offsets[i]);
+            }
+            os.write(table.array(), 0, table.position());
+            os.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            header.put(MAGIC).putLong(count).putLong(pos).flip();
+            staged.getChannel().write(header, 0);
+            staged.commit();
+        }
+        finally {
+            staged.close();
+        }
+    }
+
+    private static boolean startsWith(byte[] record, byte[] prefix) {
+        if (record.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (record[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Merge two iterators over records in order, dropping duplicates.
+     */
+    private static Iterator<byte[]> merge(final Iterator<byte[]> a, 
+            final Iterator<byte[]> b) {
+        return new Iterator<byte[]>() {
+            private byte[] nextA = a.hasNext() ? a.next() : null;
+            private byte[] nextB = b.hasNext() ? b.next() : null;
+            private byte[] last  = null;
+
+            @Override
+            public boolean hasNext() {
+                skipDuplicates();
+                return (nextA != null) || (nextB != null);
+            }
+
+            @Override
+            public byte[] next() {
+                skipDuplicates();
+                byte[] result;
+                if ((nextB == null) || 
+                        ((nextA != null) && (ORDER.compare(nextA, nextB) <= 0))) {
+                    result = nextA;
+                    nextA  = a.hasNext() ? a.next() : null;
+                }
+                else {
+                    result = nextB;
+                    nextB  = b.hasNext() ? b.next() : null;
+                }
+                last = result;
+                return result;
+            }
+
+            private void skipDuplicates() {
+                while ((nextA != null) && (last != null) && 
+                        (ORDER.compare(nextA, last) == 0)) {
+                    nextA = a.hasNext() ? a.next() : null;
+                }
+                while ((nextB != null) && (last != null) && 
+                        (ORDER.compare(nextB, last) == 0)) {
+                    nextB = b.hasNext() ? b.next() : null;
+                }
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Internal class wrapping the memory-mapped data file.
+     */
+    private static class Data {
+
+        private final MappedByteBuffer buffer;
+        private final long             count;
+        private final long             table;
+
+        private Data(MappedByteBuffer buffer, long count, long table) {
+            this.buffer = buffer;
+            this.count  = count;
+            this.table  = table;
+        }
+
+        static Data open(Path file) throws IOException {
+            if ((file == null) || !Files.exists(file)) {
+                return new Data(null, 0, 0);
+            }
+            try (FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (fc.size() > Integer.MAX_VALUE) {
+                    throw new IOException("Catalog [ " + file.toString() 
+                            + " ] exceeds the 2 GiB that can be mapped.");
+                }
+                MappedByteBuffer buffer = fc.map(
+                        FileChannel.MapMode.READ_ONLY, 0, fc.size());
+                byte[] magic = new byte[MAGIC.length];
+                if (buffer.limit() < HEADER_LENGTH) {
+                    throw new IOException("Catalog [ " + file.toString() 
+                            + " ] is truncated.");
+                }
+                buffer.get(magic);
+                if (!Arrays.equals(magic, MAGIC)) {
+                    throw new IOException("File [ " + file.toString() 
+                            + " ] is not a catalog.");
+                }
+                long count = buffer.getLong(MAGIC.length);
+                long table = buffer.getLong(MAGIC.length + 8);
+                if (table + count * 8 != buffer.limit()) {
+                    throw new IOException("Catalog [ " + file.toString() 
+                            + " ] is truncated.");
+                }
+                return new Data(buffer, count, table);
+            }
+        }
+
+        /**
+         * Read record i.
+         */
+        byte[] record(long i) {
+            int start = (int)buffer.getLong((int)(table + i * 8));
+            int end   = (i + 1 < count) ?
+                    (int)buffer.getLong((int)(table + (i + 1) * 8)) :
+                    (int)table;
+            byte[] record = new byte[end - start - 1];
+            for (int j = 0; j < record.length; j++) {
+                record[j] = buffer.get(start + j);
+            }
+            return record;
+        }
+
+        /**
+         * Binary search for the first record not less than the key.
+         */
+        long lowerBound(byte[] key) {
+            long low  = 0;
+            long high = count;
+            while (low < high) {
+                long mid = (low + high) >>> 1;
+                if (ORDER.compare(record(mid), key) < 0) {
+                    low = mid + 1;
+                }
+                else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Iterate over the records from the first not less than the key.
+         */
+        Iterator<byte[]> iterator(byte[] key) {
+            final long first = (buffer == null) ? 0 : lowerBound(key);
+            return new Iterator<byte[]>() {
+                private long next = first;
+
+                @Override
+                public boolean hasNext() {
+                    return next < count;
+                }
+
+                @Override
+                public byte[] next() {
+                    return record(next++);
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package mil.nga.logmgmt;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A monthly container holding the archives written by one host to one 
+ * month directory.  Compaction (see <code>CompactArchives</code>) moves the
+ * individual archives of a closed month into the container so that the 
+ * month directory holds one file per host rather than one per rotated log.
+ *
+ * The container is a ZIP file in which every member is STORED (not 
+ * compressed) under the archive's original file name.  The bytes of each
+ * member are therefore exactly the bytes of the original archive, so the
+ * manifest entries written when the archives were created remain valid 
+ * without change.  The ZIP central directory serves as the index of the
+ * container: a member is located by a hash lookup on its name and read 
+ * from its offset without touching the rest of the container.  Standard
+ * tools can list and extract members, e.g. 
+ * <code>unzip -p host_202601.pack host_app_20260101.zip</code>.
+ */
+public class ArchiveContainer implements Closeable {
+
+    /**
+     * Extension of every container file.
+     */
+    public static final String CONTAINER_EXTENSION = ".pack";
+
+    private final Path    file;
+    private final ZipFile zip;
+
+    /**
+     * Constructor.  Reads the index (central directory) of the container.
+     *
+     * @param file The container file.
+     * @throws IOException Thrown if the container cannot be opened.
+     */
+    public ArchiveContainer(Path file) throws IOException {
+        this.file = file;
+        this.zip  = new ZipFile(file.toFile());
+    }
+
+    /**
+     * Calculate the container holding the compacted archives of a host.
+     *
+     * @param monthDir The month directory.
+     * @param host The host name (as used in the manifest name).
+     * @return The container file.
+     */
+    public static Path containerOf(Path monthDir, String host) {
+        return monthDir.resolve(host + "_"
+                + String.format("%04d%02d",
+                        ArchiveStore.yearOf(monthDir),
+                        ArchiveStore.monthOf(monthDir) + 1)
+                + CONTAINER_EXTENSION);
+    }
+
+    /**
+     * Determine whether the input file is a container.
+     *
+     * @param file Any file.
+     * @return True if the file name has the container extension.
+     */
+    public static boolean isContainer(Path file) {
+        return (file.getFileName() != null) &&
+                file.getFileName().toString().endsWith(CONTAINER_EXTENSION);
+    }
+
+    /**
+     * List the containers in a month directory.
+     *
+     * @param dir A month directory.
+     * @return The containers in the directory, in sorted order.
+     * @throws IOException Thrown if the directory cannot be read.
+     */
+    public static List<Path> list(Path dir) throws IOException {
+        List<Path> containers = new ArrayList<Path>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(
+                dir, "*" + CONTAINER_EXTENSION)) {
+            for (Path container : stream) {
+                containers.add(container);
+            }
+        }
+        Collections.sort(containers);
+        return containers;
+    }
+
+    /**
+     * Open the stored bytes of an archive wherever they are held: the 
+     * archive itself if it is present in the month directory, otherwise 
+     * the member of that name in one of the month's containers.
+     *
+     * @param dir The month directory.
+     * @param destination The archive file name (as recorded in the 
+     * manifest).
+     * @return Stream over the stored bytes, or null if the archive is 
+     * neither present nor held in a container.
+     * @throws IOException Thrown if the archive or container cannot be 
+     * read.
+     */
+    public static InputStream openStored(Path dir, String destination)
+            throws IOException {
+        Path archive = dir.resolve(destination);
+        if (Files.exists(archive)) {
+            return Files.newInputStream(archive);
+        }
+        for (Path file : list(dir)) {
+            ArchiveContainer container = new ArchiveContainer(file);
+            if (container.contains(destination)) {
+                return container.open(destination, true);
+            }
+            container.close();
+        }
+        return null;
+    }
+
+    /**
+     * Accessor method for the container file.
+     * @return The container file.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * List the archives held in the container.
+     *
+     * @return The member names in container order.
+     */
+    public List<String> names() {
+        List<String> names = new ArrayList<String>();
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+            names.add(entries.nextElement().getName());
+        }
+        return names;
+    }
+
+    /**
+     * Determine whether the container holds an archive.
+     *
+     * @param name The archive file name.
+     * @return True if the container has a member of that name.
+     */
+    public boolean contains(String name) {
+        return zip.getEntry(name) != null;
+    }
+
+    /**
+     * Accessor method for the index entry of a member, which carries the 
+     * member's size, CRC-32 and modification time.
+     *
+     * @param name The archive file name.
+     * @return The entry, or null if there is no such member.
+     */
+    public ZipEntry getEntry(String name) {
+        return zip.getEntry(name);
+    }
+
+    /**
+     * Open the stored bytes of a member.  The bytes are not checked 
+     * against the CRC-32 held in the index; callers verify them against 
+     * the manifest as they would the archive itself.
+     *
+     * @param name The archive file name.
+     * @return Stream over the stored bytes of the archive.
+     * @throws IOException Thrown if there is no such member or it cannot
+     * be read.
+     */
+    public InputStream open(String name) throws IOException {
+        return open(name, false);
+    }
+
+    /**
+     * Open the stored bytes of a member, optionally closing the container
+     * when the stream is closed.
+     */
+    private InputStream open(String name, boolean closeContainer) 
+            throws IOException {
+        ZipEntry entry = zip.getEntry(name);
+        if (entry == null) {
+            throw new IOException("Container [ " + file.toString()
+                    + " ] holds no archive [ " + name + " ].");
+        }
+        if (!closeContainer) {
+            return zip.getInputStream(entry);
+        }
+        return new FilterInputStream(zip.getInputStream(entry)) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                }
+                finally {
+                    zip.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * Release the container.
+     */
+    @Override
+    public void close() throws IOException {
+        zip.close();
+    }
+}
@@ -0,0 +1,96 @@
+package mil.nga.logmgmt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Opens the original content held in an archive written by
+ * <code>OutputFile</code>, according to the encoding recorded in the
+ * manifest.
+ */
+public class ArchiveDecoder {
+
+    /**
+     * Extension used by files compressed with gzip.
+     */
+    public static final String GZIP_EXTENSION = ".gz";
+
+    /**
+     * Extension used by ZIP archives.
+     */
+    public static final String ZIP_EXTENSION = ".zip";
+
+    /**
+     * Extension used by archives compressed with a preset dictionary.
+     */
+    public static final String ZLIB_EXTENSION = ".zlib";
+
+    /**
+     * Infer the encoding of an archive that has no manifest entry.
+     *
+     * @param archive The archive.
+     * @return The most likely encoding.
+     */
+    public static String encodingOf(Path archive) {
+        if (archive.getFileName().toString().endsWith(ZIP_EXTENSION)) {
+            return ManifestEntry.ENCODING_ZIP;
+        }
+        if (archive.getFileName().toString().endsWith(ZLIB_EXTENSION)) {
+            return ManifestEntry.ENCODING_ZLIB;
+        }
+        return ManifestEntry.ENCODING_RAW;
+    }
+
+    /**
+     * Determine whether the input file is gzip compressed (e.g. a log
+     * compressed by logrotate and archived without further compression).
+     *
+     * @param file Any file.
+     * @return True if the file name has the gzip extension.
+     */
+    public static boolean isGzip(Path file) {
+        return file.getFileName().toString().endsWith(GZIP_EXTENSION);
+    }
+
+    /**
+     * Wrap the stored bytes of an archive in a stream returning the
+     * original content.  For ZIP archives the stream ends at the end of
+     * the (single) entry; reading it to the end verifies the CRC held in
+     * the ZIP archive itself.  For gzip archives reading to the end 
+     * verifies the CRC of every member, and for dictionary compressed 
+     * archives it verifies the Adler-32 held in the zlib trailer.
+     *
+     * @param archive The archive (used to locate any preset dictionary).
+     * @param stored Stream over the stored bytes.
+     * @param encoding The encoding recorded in the manifest.
+     * @return Stream over the original content.
+     * @throws IOException Thrown if the archive is not in the expected
+     * format.
+     */
+    public static InputStream openContent(
+            Path        archive, 
+            InputStream stored, 
+            String      encoding) throws IOException {
+        if (ManifestEntry.ENCODING_ZIP.equals(encoding)) {
+            ZipInputStream zis = new ZipInputStream(stored);
+            if (zis.getNextEntry() == null) {
+                throw new ZipException("Archive contains no entries.");
+            }
+            return zis;
+        }
+        if (ManifestEntry.ENCODING_GZIP.equals(encoding)) {
+            return new GZIPInputStream(stored, StagedFile.BUFFER_SIZE);
+        }
+        if (ManifestEntry.ENCODING_ZLIB.equals(encoding)) {
+            return PresetDictionary.decompress(archive, stored);
+        }
+        if (ManifestEntry.ENCODING_RAW.equals(encoding)) {
+            return stored;
+        }
+        throw new IOException("Unknown encoding [ " + encoding + " ].");
+    }
+}
@@ -0,0 +1,204 @@
+package mil.nga.logmgmt;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.DateFormatSymbols;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Utility methods for navigating the archive store created by
+ * <code>OutputFile</code>.  The store is laid out as follows:
+ *
+ * <pre>
+ * &lt;output.path&gt;/&lt;server group&gt;/&lt;application&gt;/&lt;yyyy&gt;/&lt;MMM&gt;/&lt;archives&gt;
+ * </pre>
+ *
+ * The application name may itself contain path separators (e.g.
+ * <code>openam/debug</code>), so month directories are identified by their
+ * last two path components rather than by their depth.
+ */
+public class ArchiveStore {
+
+    /**
+     * Month abbreviations as produced by the <code>MMM</code> date format
+     * used by <code>OutputFile</code> when building the destination path.
+     */
+    private static final String[] MONTHS =
+            new DateFormatSymbols().getShortMonths();
+
+    /**
+     * Find all of the month directories below the input base path.
+     *
+     * @param base The top of the archive store (or any directory below it).
+     * @return The month directories found, in sorted order.
+     * @throws IOException Thrown if the store cannot be walked.
+     */
+    public static List<Path> findMonthDirectories(Path base)
+            throws IOException {
+
+        final List<Path> results = new ArrayList<Path>();
+
+        Files.walkFileTree(base, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir,
+                    BasicFileAttributes attrs) {
+                if (isMonthDirectory(dir)) {
+                    results.add(dir);
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file,
+                    IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(results);
+        return results;
+    }
+
+    /**
+     * Determine whether the input directory is a month directory (i.e. a
+     * month abbreviation below a four digit year).
+     *
+     * @param dir Any directory.
+     * @return True if the directory is a month directory.
+     */
+    public static boolean isMonthDirectory(Path dir) {
+        return (monthOf(dir) >= 0) && (yearOf(dir) > 0);
+    }
+
+    /**
+     * Get the month (zero based, as used by <code>Calendar</code>) of a
+     * month directory.
+     *
+     * @param dir A month directory.
+     * @return The month, or -1 if the directory name is not a month.
+     */
+    public static int monthOf(Path dir) {
+        if ((dir == null) || (dir.getFileName() == null)) {
+            return -1;
+        }
+        String name = dir.getFileName().toString();
+        for (int i=0; i<12; i++) {
+            if (MONTHS[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the year of a month directory.
+     *
+     * @param dir A month directory.
+     * @return The year, or -1 if the parent directory name is not a year.
+     */
+    public static int yearOf(Path dir) {
+        if ((dir == null) || (dir.getParent() == null) ||
+                (dir.getParent().getFileName() == null)) {
+            return -1;
+        }
+        String name = dir.getParent().getFileName().toString();
+        if (!name.matches("\\d{4}")) {
+            return -1;
+        }
+        return Integer.parseInt(name);
+    }
+
+    /**
+     * Get the time at which the month covered by a month directory starts.
+     *
+     * @param dir A month directory.
+     * @return The first millisecond of the month in the local time zone.
+     */
+    public static long startOf(Path dir) {
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set(yearOf(dir), monthOf(dir), 1);
+        return cal.getTimeInMillis();
+    }
+
+    /**
+     * Get the time at which the month covered by a month directory ends.
+     *
+     * @param dir A month directory.
+     * @return The first millisecond of the following month in the local
+     * time zone.
+     */
+    public static long endOf(Path dir) {
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set(yearOf(dir), monthOf(dir), 1);
+        cal.add(Calendar.MONTH, 1);
+        return cal.getTimeInMillis();
+    }
+
+    /**
+     * Determine whether the input file is an archive, as opposed to one of
+     * the bookkeeping files kept alongside the archives (manifests, partial
+     * files and other hidden files) or the monthly containers into which
+     * archives are compacted.
+     *
+     * @param file Any file in a month directory.
+     * @return True if the file is an archive.
+     */
+    public static boolean isArchive(Path file) {
+        if (file.getFileName() == null) {
+            return false;
+        }
+        String name = file.getFileName().toString();
+        return !name.startsWith(".") &&
+                !StagedFile.isPartial(file) &&
+                !ArchiveContainer.isContainer(file) &&
+                Files.isRegularFile(file);
+    }
+
+    /**
+     * List the archives in a month directory.
+     *
+     * @param dir A month directory.
+     * @return The archives in the directory, in sorted order.
+     * @throws IOException Thrown if the directory cannot be read.
+     */
+    public static List<Path> listArchives(Path dir) throws IOException {
+        List<Path> archives = new ArrayList<Path>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path file : stream) {
+                if (isArchive(file)) {
+                    archives.add(file);
+                }
+            }
+        }
+        Collections.sort(archives);
+        return archives;
+    }
+
+    /**
+     * List the partial files left in a month directory.
+     *
+     * @param dir A month directory.
+     * @return The partial files in the directory.
+     * @throws IOException Thrown if the directory cannot be read.
+     */
+    public static List<Path> listPartials(Path dir) throws IOException {
+        List<Path> partials = new ArrayList<Path>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(
+                dir, "*" + StagedFile.PARTIAL_EXTENSION)) {
+            for (Path file : stream) {
+                partials.add(file);
+            }
+        }
+        return partials;
+    }
+}
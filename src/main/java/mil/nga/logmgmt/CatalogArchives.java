@@ -0,0 +1,176 @@
+package mil.nga.logmgmt;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.logmgmt.exceptions.InputException;
+import mil.nga.util.Options;
+import mil.nga.util.Options.Multiplicity;
+import mil.nga.util.Options.Separator;
+
+/**
+ * Command line access to the archive catalog (see 
+ * <code>ArchiveCatalog</code>): rebuilds the catalog from the manifests in 
+ * the archive store and answers queries by server group, application, 
+ * host and date range.
+ */
+public class CatalogArchives {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(CatalogArchives.class);
+
+    /**
+     * Build the catalog records for every archive recorded in the 
+     * manifests below the top of the archive store.  The server group and
+     * application are taken from the location of each month directory
+     * (<code>&lt;group&gt;/&lt;application&gt;/&lt;yyyy&gt;/&lt;MMM&gt;</code>)
+     * and the host from the manifest holding the entry.
+     *
+     * @param base The top of the archive store.
+     * @return The records.
+     * @throws IOException Thrown if the store cannot be walked.
+     */
+    public static List<CatalogEntry> scan(Path base) throws IOException {
+
+        String             method  = "scan() - ";
+        List<CatalogEntry> entries = new ArrayList<CatalogEntry>();
+
+        for (Path dir : ArchiveStore.findMonthDirectories(base)) {
+            Path relative = base.relativize(dir);
+            if (relative.getNameCount() < 4) {
+                LOGGER.warn(method
+                        + "Month directory [ "
+                        + dir.toString()
+                        + " ] is not below a server group and application.  "
+                        + "Skipping.");
+                continue;
+            }
+            String group       = relative.getName(0).toString();
+            String application = relative.subpath(
+                    1, relative.getNameCount() - 2).toString().replace('\\', '/');
+            for (ManifestEntry entry : Manifest.read(dir).values()) {
+                entries.add(CatalogEntry.of(group, application, 
+                        Manifest.hostOf(entry.getManifest()), dir, entry));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Simple static method to print the help and usage String information.
+     */
+    private static void printHelp() {
+        System.out.println("");
+        System.out.println(CatalogArchivesI.HELP_STRING);
+        System.out.println("");
+        System.out.println(CatalogArchivesI.USAGE_STRING);
+    }
+
+    /**
+     * Get the value of an optional argument.
+     *
+     * @param opt The parsed options.
+     * @param name The option name.
+     * @return The value, or null if the option was not supplied.
+     */
+    private static String valueOf(Options opt, String name) {
+        if (opt.getSet().isSet(name)) {
+            return opt.getSet().getOption(name).getResultValue(0).trim();
+        }
+        return null;
+    }
+
+    /**
+     * Driver method used to extract the command line parameters and
+     * initiate processing.
+     *
+     * @param args Input command line arguments
+     * @throws InputException Thrown if the input data does not make
+     * sense.
+     * @throws IOException Thrown if the catalog cannot be read or rebuilt.
+     */
+    public static void main(String[] args) throws InputException, IOException {
+
+        String method = "main() - ";
+        String state  = LogMgmtI.DEFAULT_STATE_PATH;
+
+        // Set up the command line options
+        Options opt = new Options(args, 0);
+        opt.getSet().addOption("rebuild", Multiplicity.ZERO_OR_ONE);
+        for (String name : new String[] { 
+                "path", "group", "application", "host", "from", "to", "state" }) {
+            opt.getSet().addOption(name, Separator.EQUALS,
+                    Multiplicity.ZERO_OR_ONE);
+        }
+        opt.getSet().addOption("h", Multiplicity.ZERO_OR_MORE);
+        opt.getSet().addOption("help", Multiplicity.ZERO_OR_MORE);
+
+        // Make sure the options make sense
+        if (!opt.check(true, false)) {
+            System.out.println(CatalogArchivesI.USAGE_STRING);
+            System.exit(1);
+        }
+
+        // See if the user wanted the help message displayed.
+        if (opt.getSet().isSet("h") || opt.getSet().isSet("help")) {
+            CatalogArchives.printHelp();
+            System.exit(0);
+        }
+
+        if (opt.getSet().isSet("state")) {
+            state = valueOf(opt, "state");
+        }
+        Path stateDir = Paths.get(state);
+
+        if (opt.getSet().isSet("rebuild")) {
+            String path = valueOf(opt, "path");
+            if ((path == null) || (!Files.isDirectory(Paths.get(path)))) {
+                String msg = method
+                        + "The archive store [ "
+                        + path
+                        + " ] does not exist.";
+                LOGGER.error(msg);
+                throw new InputException(msg);
+            }
+            long               start   = System.currentTimeMillis();
+            List<CatalogEntry> entries = scan(Paths.get(path));
+            ArchiveCatalog.rebuild(stateDir, entries);
+            LOGGER.info(method
+                    + "Rebuilt the catalog in [ "
+                    + stateDir.toString()
+                    + " ] with [ "
+                    + entries.size()
+                    + " ] archives in [ "
+                    + (System.currentTimeMillis() - start)
+                    + " ] ms.");
+        }
+
+        try (ArchiveCatalog catalog = ArchiveCatalog.open(stateDir)) {
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                    System.out, StandardCharsets.UTF_8));
+            for (CatalogEntry entry : catalog.find(
+                    valueOf(opt, "group"),
+                    valueOf(opt, "application"),
+                    valueOf(opt, "host"),
+                    valueOf(opt, "from"),
+                    valueOf(opt, "to"))) {
+                writer.write(entry.toLine());
+                writer.newLine();
+            }
+            writer.flush();
+        }
+    }
+}
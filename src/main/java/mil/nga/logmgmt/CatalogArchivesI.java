@@ -0,0 +1,50 @@
+package mil.nga.logmgmt;
+
+/**
+ * Simple interface containing the help text used by the archive catalog
+ * command.
+ */
+public interface CatalogArchivesI {
+    
+    /**
+     * Usage String printed when incorrect arguments are supplied.
+     */
+    public static final String USAGE_STRING = new String(
+            "Usage: java mil.nga.logmgmt.CatalogArchives "
+            + "[ -rebuild -path=<archive-store> ] "
+            + "[ -group=<server-group> ] "
+            + "[ -application=<application> ] "
+            + "[ -host=<host> ] "
+            + "[ -from=<yyyyMMdd> ] "
+            + "[ -to=<yyyyMMdd> ] "
+            + "[ -state=<directory> ] "
+            + "[-h] [-help]");
+    
+    /**
+     * Help string printed when -h or -help appear on the command line.
+     */
+    public static final String HELP_STRING = new String(
+            "This application queries the archive catalog kept in the "
+            + "state directory, printing one tab-separated line per "
+            + "matching archive (server group, application, host, date, "
+            + "original file name, archive location, original size and "
+            + "CRC).  The catalog is updated as archives are written; it "
+            + "can be rebuilt from the manifests in the archive store with "
+            + "-rebuild (e.g. after the state directory is lost or to "
+            + "include archives written by other hosts).  Queries are "
+            + "answered without walking the archive store.  Options "
+            + "supported are as follows:\n\n"
+            + "[ -rebuild ]           Replace the catalog with the content "
+            + "of the manifests below -path before querying.\n"
+            + "[ -path=<archive-store> ] The top of the archive store (the "
+            + "output.path property).  Required with -rebuild.\n"
+            + "[ -group=<server-group> ] Optional server group to match.\n"
+            + "[ -application=<application> ] Optional application to "
+            + "match.\n"
+            + "[ -host=<host> ]       Optional host to match.\n"
+            + "[ -from=<yyyyMMdd> ]   Optional first date to match.\n"
+            + "[ -to=<yyyyMMdd> ]     Optional last date to match.\n"
+            + "[ -state=<directory> ] Optional directory holding the "
+            + "catalog.\n"
+            + "[-h] [-help]    Prints this help message.\n\n");
+}
@@ -0,0 +1,230 @@
+package mil.nga.logmgmt;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * A single record in the archive catalog (see <code>ArchiveCatalog</code>).
+ * Records are tab-separated lines whose leading fields form the sort key:
+ *
+ * <li>server group</li>
+ * <li>application (may contain path separators)</li>
+ * <li>host</li>
+ * <li>date - the yyyyMMdd date used in the archive name</li>
+ * <li>name - file name of the original log</li>
+ *
+ * followed by:
+ *
+ * <li>location - absolute path of the archive (which may since have been
+ * moved into the monthly container of its directory)</li>
+ * <li>size - size of the original content in bytes</li>
+ * <li>checksum - CRC of the original content</li>
+ *
+ * As the tab character sorts below every printable character, ordering 
+ * records by their bytes orders them by each key field in turn.
+ */
+public class CatalogEntry {
+
+    /**
+     * Field delimiter.
+     */
+    public static final String DELIMITER = "\t";
+
+    /**
+     * Number of fields in a record.
+     */
+    private static final int FIELD_COUNT = 8;
+
+    private final String serverGroup;
+    private final String application;
+    private final String host;
+    private final String date;
+    private final String name;
+    private final String location;
+    private final long   size;
+    private final String checksum;
+
+    /**
+     * Constructor.
+     *
+     * @param serverGroup The server group.
+     * @param application The application.
+     * @param host The host that wrote the archive.
+     * @param date The yyyyMMdd date used in the archive name.
+     * @param name File name of the original log.
+     * @param location Absolute path of the archive.
+     * @param size Size of the original content.
+     * @param checksum CRC of the original content.
+     */
+    public CatalogEntry(
+            String serverGroup,
+            String application,
+            String host,
+            String date,
+            String name,
+            String location,
+            long   size,
+            String checksum) {
+        this.serverGroup = serverGroup;
+        this.application = application;
+        this.host        = host;
+        this.date        = date;
+        this.name        = name;
+        this.location    = location;
+        this.size        = size;
+        this.checksum    = checksum;
+    }
+
+    /**
+     * Build the catalog record of an archive from its manifest entry.
+     *
+     * @param serverGroup The server group.
+     * @param application The application.
+     * @param host The host that wrote the archive.
+     * @param monthDir The month directory holding the archive.
+     * @param entry The manifest entry of the archive.
+     * @return The catalog record.
+     */
+    public static CatalogEntry of(
+            String        serverGroup,
+            String        application,
+            String        host,
+            Path          monthDir,
+            ManifestEntry entry) {
+        String source = entry.getSource();
+        int    slash  = Math.max(source.lastIndexOf('/'), source.lastIndexOf('\\'));
+        return new CatalogEntry(
+                serverGroup,
+                application,
+                host,
+                dateOf(entry.getSourceMtime()),
+                source.substring(slash + 1),
+                monthDir.resolve(entry.getDestination()).toAbsolutePath().toString(),
+                entry.getSourceSize(),
+                entry.getSourceCrc());
+    }
+
+    /**
+     * Format a time as the yyyyMMdd date used in archive names.
+     *
+     * @param millis Epoch milliseconds.
+     * @return The date in the local time zone.
+     */
+    public static String dateOf(long millis) {
+        return new SimpleDateFormat("yyyyMMdd").format(new Date(millis));
+    }
+
+    /**
+     * Parse a catalog record.
+     *
+     * @param line The record.
+     * @return The entry, or null if the line is not a valid record.
+     */
+    public static CatalogEntry parse(String line) {
+        if (line == null) {
+            return null;
+        }
+        String[] fields = line.split(DELIMITER, -1);
+        if (fields.length != FIELD_COUNT) {
+            return null;
+        }
+        try {
+            return new CatalogEntry(fields[0], fields[1], fields[2], fields[3],
+                    fields[4], fields[5], Long.parseLong(fields[6]), fields[7]);
+        }
+        catch (NumberFormatException nfe) {
+            return null;
+        }
+    }
+
+    /**
+     * Convert the entry into a catalog record.
+     *
+     * @return The record (without a line terminator).
+     */
+    public String toLine() {
+        return serverGroup + DELIMITER + application + DELIMITER + host 
+                + DELIMITER + date + DELIMITER + name + DELIMITER + location 
+                + DELIMITER + size + DELIMITER + checksum;
+    }
+
+    /**
+     * Convert the entry into the bytes stored in the catalog.
+     *
+     * @return The UTF-8 record.
+     */
+    public byte[] toBytes() {
+        return toLine().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Accessor method for the server group.
+     * @return The server group.
+     */
+    public String getServerGroup() {
+        return serverGroup;
+    }
+
+    /**
+     * Accessor method for the application.
+     * @return The application.
+     */
+    public String getApplication() {
+        return application;
+    }
+
+    /**
+     * Accessor method for the host that wrote the archive.
+     * @return The host that wrote the archive.
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * Accessor method for the yyyyMMdd date used in the archive name.
+     * @return The yyyyMMdd date used in the archive name.
+     */
+    public String getDate() {
+        return date;
+    }
+
+    /**
+     * Accessor method for the file name of the original log.
+     * @return The file name of the original log.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Accessor method for the absolute path of the archive.
+     * @return The absolute path of the archive.
+     */
+    public String getLocation() {
+        return location;
+    }
+
+    /**
+     * Accessor method for the size of the original content.
+     * @return The size of the original content.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Accessor method for the CRC of the original content.
+     * @return The CRC of the original content.
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
+    @Override
+    public String toString() {
+        return toLine();
+    }
+}
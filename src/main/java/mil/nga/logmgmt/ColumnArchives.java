@@ -0,0 +1,441 @@
+package mil.nga.logmgmt;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.logmgmt.exceptions.InputException;
+import mil.nga.util.ColumnarFile;
+import mil.nga.util.ColumnarLog;
+import mil.nga.util.LogTimestamps;
+import mil.nga.util.Options;
+import mil.nga.util.Options.Multiplicity;
+import mil.nga.util.Options.Separator;
+
+/**
+ * Count the values of one field of archived structured logs by reading
+ * the columnar files written alongside the archives (see
+ * <code>ColumnarLog</code>).  Only the columns needed are read, and only
+ * the blocks of those columns that may hold matching rows.  Columnar files
+ * whose checksum does not match the manifest entry of their archive are
+ * ignored.
+ */
+public class ColumnArchives {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(ColumnArchives.class);
+
+    /**
+     * Rows of the time column are counted per hour.
+     */
+    private static final long MILLIS_PER_HOUR = 60L * 60L * 1000L;
+
+    private final Path        base;
+    private final String      column;
+    private final String      whereColumn;
+    private final String      whereValue;
+    private final long        from;
+    private final long        to;
+    private final int         top;
+    private final PrintStream out;
+    private final Map<String, long[]> counts = new HashMap<String, long[]>();
+    private final Map<Long, long[]>   hours  = new HashMap<Long, long[]>();
+    private long files     = 0;
+    private long stale     = 0;
+    private long matched   = 0;
+    private long bytesRead = 0;
+    private long fileBytes = 0;
+    private boolean timeColumn = false;
+
+    /**
+     * Constructor.
+     *
+     * @param path The directory to report on (the top of the archive
+     * store or any directory below it).
+     * @param column The name of the field counted.
+     * @param where A condition name=value restricting the rows counted, or
+     * null to count every row.
+     * @param from Start of the range of interest (inclusive, epoch
+     * milliseconds).
+     * @param to End of the range of interest (exclusive, epoch
+     * milliseconds).
+     * @param top The number of values listed.
+     * @param out Destination of the report.
+     * @throws InputException Thrown if the directory does not exist or the
+     * condition is not of the form name=value.
+     */
+    public ColumnArchives(
+            String      path,
+            String      column,
+            String      where,
+            long        from,
+            long        to,
+            int         top,
+            PrintStream out) throws InputException {
+
+        String method = "Constructor() - ";
+
+        if ((path == null) || (!Files.isDirectory(Paths.get(path)))) {
+            String msg = method
+                    + "The archive store [ "
+                    + path
+                    + " ] does not exist.";
+            LOGGER.error(msg);
+            throw new InputException(msg);
+        }
+        if ((where != null) && (where.indexOf('=') <= 0)) {
+            String msg = method
+                    + "Invalid condition [ "
+                    + where
+                    + " ].  Expected <name>=<value>.";
+            LOGGER.error(msg);
+            throw new InputException(msg);
+        }
+        this.base        = Paths.get(path);
+        this.column      = column;
+        this.whereColumn = (where == null) ? null : where.substring(0, where.indexOf('='));
+        this.whereValue  = (where == null) ? null : where.substring(where.indexOf('=') + 1);
+        this.from        = from;
+        this.to          = to;
+        this.top         = Math.max(1, top);
+        this.out         = out;
+    }
+
+    /**
+     * Read every columnar file below the directory covering the range of
+     * interest and print the report.
+     *
+     * @return The number of rows counted.
+     * @throws IOException Thrown if the store cannot be walked.
+     */
+    public long report() throws IOException {
+
+        String method = "report() - ";
+
+        for (Path dir : ArchiveStore.findMonthDirectories(base)) {
+            if ((ArchiveStore.endOf(dir) <= from) ||
+                    (ArchiveStore.startOf(dir) >= to)) {
+                continue;
+            }
+            for (ManifestEntry entry : Manifest.read(dir).values()) {
+                if (entry.getSourceMtime() < from) {
+                    continue;
+                }
+                Path sidecar = ColumnarLog.sidecarOf(
+                        dir.resolve(entry.getDestination()));
+                if (!Files.exists(sidecar)) {
+                    continue;
+                }
+                try (ColumnarFile file = ColumnarFile.open(
+                        sidecar, entry.getSourceCrc())) {
+                    if (file == null) {
+                        stale++;
+                    }
+                    else {
+                        files++;
+                        scan(file);
+                        bytesRead += file.getBytesRead();
+                        fileBytes += file.getSize();
+                    }
+                }
+                catch (IOException ioe) {
+                    stale++;
+                    LOGGER.warn(method
+                            + "Unable to read columnar file [ "
+                            + sidecar.toString()
+                            + " ].  Error message [ "
+                            + ioe.getMessage()
+                            + " ].");
+                }
+            }
+        }
+        print();
+
+        LOGGER.info(method
+                + "Read [ "
+                + files
+                + " ] columnar files, ignored [ "
+                + stale
+                + " ] that no longer match their archive.");
+        return matched;
+    }
+
+    /**
+     * Count the matching rows of a single file.
+     */
+    private void scan(ColumnarFile file) throws IOException {
+        ColumnarFile.Column counted = file.getColumn(column);
+        if (counted == null) {
+            return;
+        }
+        timeColumn = counted.isTime();
+        ColumnarFile.Column where = null;
+        int                 id    = -1;
+        if (whereColumn != null) {
+            where = file.getColumn(whereColumn);
+            if ((where == null) || where.isTime()) {
+                return;
+            }
+            String[] values = file.readDictionary(where);
+            for (int i = 0; (i < values.length) && (id < 0); i++) {
+                if (values[i].equals(whereValue)) {
+                    id = i;
+                }
+            }
+            if (id < 0) {
+                return;
+            }
+        }
+        ColumnarFile.Column time = null;
+        if ((from != Long.MIN_VALUE) || (to != Long.MAX_VALUE)) {
+            time = file.getTimeColumn();
+        }
+        String[] values = counted.isTime() ? null : file.readDictionary(counted);
+        long[]   local  = (values == null) ? null : new long[values.length];
+
+        List<ColumnarFile.Block> blocks = counted.getBlocks();
+        for (int i = 0; i < blocks.size(); i++) {
+            long[] times = null;
+            if (time != null) {
+                ColumnarFile.Block block = time.getBlocks().get(i);
+                if ((block.getMaxTime() < from) || (block.getMinTime() >= to)) {
+                    continue;
+                }
+                if ((block.getMinTime() < from) || (block.getMaxTime() >= to) ||
+                        (counted == time)) {
+                    times = file.readTimes(block);
+                }
+            }
+            int[] conditions = null;
+            if (where != null) {
+                ColumnarFile.Block block = where.getBlocks().get(i);
+                if (!block.mayContain(whereValue)) {
+                    continue;
+                }
+                conditions = file.readIds(block);
+            }
+            ColumnarFile.Block block = blocks.get(i);
+            int[]  ids  = counted.isTime() ? null : file.readIds(block);
+            long[] when = !counted.isTime() ? null :
+                    ((times != null) ? times : file.readTimes(block));
+            for (int row = 0; row < block.getRows(); row++) {
+                if ((times != null) && ((times[row] == LogTimestamps.NONE) ||
+                        (times[row] < from) || (times[row] >= to))) {
+                    continue;
+                }
+                if ((conditions != null) && (conditions[row] != id)) {
+                    continue;
+                }
+                matched++;
+                if (ids != null) {
+                    local[ids[row]]++;
+                }
+                else {
+                    Long   hour  = Long.valueOf(when[row] == LogTimestamps.NONE ?
+                            LogTimestamps.NONE : (when[row] / MILLIS_PER_HOUR) * MILLIS_PER_HOUR);
+                    long[] count = hours.get(hour);
+                    if (count == null) {
+                        count = new long[1];
+                        hours.put(hour, count);
+                    }
+                    count[0]++;
+                }
+            }
+        }
+        if (local != null) {
+            for (int i = 0; i < local.length; i++) {
+                if (local[i] > 0) {
+                    long[] count = counts.get(values[i]);
+                    if (count == null) {
+                        count = new long[1];
+                        counts.put(values[i], count);
+                    }
+                    count[0] += local[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Print the counts.
+     */
+    private void print() {
+        if (files == 0) {
+            out.println("No columnar files found.");
+            out.flush();
+            return;
+        }
+        out.println("Files           : " + files);
+        out.println("Rows counted    : " + matched);
+        out.println("Bytes read      : " + bytesRead + " of " + fileBytes
+                + String.format(" (%.1f%%)",
+                        (fileBytes == 0) ? 0.0 : (100.0 * bytesRead / fileBytes)));
+        out.println("");
+        if (timeColumn) {
+            SimpleDateFormat sdf  = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+            List<Long>       keys = new ArrayList<Long>(hours.keySet());
+            Collections.sort(keys);
+            out.println(String.format("%-16s %12s", "hour", "rows"));
+            for (Long hour : keys) {
+                out.println(String.format("%-16s %12d",
+                        (hour.longValue() == LogTimestamps.NONE) ? "-" :
+                            sdf.format(new Date(hour.longValue())),
+                        hours.get(hour)[0]));
+            }
+        }
+        else {
+            List<Map.Entry<String, long[]>> entries =
+                    new ArrayList<Map.Entry<String, long[]>>(counts.entrySet());
+            Collections.sort(entries, new Comparator<Map.Entry<String, long[]>>() {
+                @Override
+                public int compare(Map.Entry<String, long[]> a,
+                        Map.Entry<String, long[]> b) {
+                    int result = Long.compare(b.getValue()[0], a.getValue()[0]);
+                    return (result != 0) ? result : a.getKey().compareTo(b.getKey());
+                }
+            });
+            out.println("Distinct values : " + entries.size());
+            out.println("");
+            out.println(String.format("%5s %12s  %s", "rank", "rows", column));
+            for (int i = 0; (i < entries.size()) && (i < top); i++) {
+                out.println(String.format("%5d %12d  %s", i + 1,
+                        entries.get(i).getValue()[0], entries.get(i).getKey()));
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Convert a yyyyMMdd date into epoch milliseconds.
+     *
+     * @param date The date.
+     * @param next True for the start of the following day.
+     * @return The start of the day (local time).
+     * @throws InputException Thrown if the date is not valid.
+     */
+    private static long timeOf(String date, boolean next)
+            throws InputException {
+        String           method = "timeOf() - ";
+        SimpleDateFormat sdf    = new SimpleDateFormat("yyyyMMdd");
+        sdf.setLenient(false);
+        try {
+            Calendar cal = Calendar.getInstance();
+            cal.setTime(sdf.parse(date.trim()));
+            if (next) {
+                cal.add(Calendar.DAY_OF_MONTH, 1);
+            }
+            return cal.getTimeInMillis();
+        }
+        catch (ParseException pe) {
+            String msg = method
+                    + "Invalid date [ "
+                    + date
+                    + " ].  Expected yyyyMMdd.";
+            LOGGER.error(msg);
+            throw new InputException(msg);
+        }
+    }
+
+    /**
+     * Simple static method to print the help and usage String information.
+     */
+    private static void printHelp() {
+        System.out.println("");
+        System.out.println(ColumnArchivesI.HELP_STRING);
+        System.out.println("");
+        System.out.println(ColumnArchivesI.USAGE_STRING);
+    }
+
+    /**
+     * Driver method used to extract the command line parameters and
+     * initiate processing.
+     *
+     * @param args Input command line arguments
+     * @throws InputException Thrown if the input data does not make
+     * sense.
+     * @throws IOException Thrown if the store cannot be walked.
+     */
+    public static void main(String[] args) throws InputException, IOException {
+
+        String method = "main() - ";
+        String path   = null;
+        String where  = null;
+        long   from   = Long.MIN_VALUE;
+        long   to     = Long.MAX_VALUE;
+        int    top    = ColumnArchivesI.DEFAULT_TOP;
+
+        // Set up the command line options
+        Options opt = new Options(args, 0);
+        opt.getSet().addOption("path", Separator.EQUALS, Multiplicity.ONCE);
+        opt.getSet().addOption("column", Separator.EQUALS, Multiplicity.ONCE);
+        opt.getSet().addOption("where", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("from", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("to", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("top", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("h", Multiplicity.ZERO_OR_MORE);
+        opt.getSet().addOption("help", Multiplicity.ZERO_OR_MORE);
+
+        // Make sure the options make sense
+        if (!opt.check(true, false)) {
+            System.out.println(ColumnArchivesI.USAGE_STRING);
+            System.exit(1);
+        }
+
+        // See if the user wanted the help message displayed.
+        if (opt.getSet().isSet("h") || opt.getSet().isSet("help")) {
+            ColumnArchives.printHelp();
+            System.exit(0);
+        }
+
+        path = opt.getSet().getOption("path").getResultValue(0);
+        if (opt.getSet().isSet("where")) {
+            where = opt.getSet().getOption("where").getResultValue(0);
+        }
+        if (opt.getSet().isSet("from")) {
+            from = timeOf(opt.getSet().getOption("from").getResultValue(0), false);
+        }
+        if (opt.getSet().isSet("to")) {
+            to = timeOf(opt.getSet().getOption("to").getResultValue(0), true);
+        }
+        try {
+            if (opt.getSet().isSet("top")) {
+                top = Integer.parseInt(
+                        opt.getSet().getOption("top").getResultValue(0).trim());
+            }
+        }
+        catch (NumberFormatException nfe) {
+            LOGGER.error(method
+                    + "ERROR: -top must be numeric.  Error message [ "
+                    + nfe.getMessage()
+                    + " ].");
+            ColumnArchives.printHelp();
+            System.exit(1);
+        }
+
+        new ColumnArchives(path, 
+                opt.getSet().getOption("column").getResultValue(0).trim(), 
+                where, from, to, top, System.out).report();
+    }
+}
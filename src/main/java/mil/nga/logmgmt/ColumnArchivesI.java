@@ -0,0 +1,55 @@
+package mil.nga.logmgmt;
+
+/**
+ * Simple interface containing the constants and help text used by the 
+ * columnar query command.
+ */
+public interface ColumnArchivesI {
+    
+    /**
+     * Default number of values listed.
+     */
+    public static final int DEFAULT_TOP = 20;
+    
+    /**
+     * Usage String printed when incorrect arguments are supplied.
+     */
+    public static final String USAGE_STRING = new String(
+            "Usage: java mil.nga.logmgmt.ColumnArchives "
+            + "-path=<archive-store> "
+            + "-column=<name> "
+            + "[ -where=<name>=<value> ] "
+            + "[ -from=<yyyyMMdd> ] "
+            + "[ -to=<yyyyMMdd> ] "
+            + "[ -top=<count> ] "
+            + "[-h] [-help]");
+    
+    /**
+     * Help string printed when -h or -help appear on the command line.
+     */
+    public static final String HELP_STRING = new String(
+            "This application counts the values of one field of archived "
+            + "structured logs (the OpenAM audit and policy server logs) "
+            + "by reading the columnar files written when the logs were "
+            + "archived (output.columnar).  Only the column counted, and "
+            + "the time and -where columns if a date range or a value is "
+            + "given, are read; blocks outside the date range or that "
+            + "cannot hold the value are skipped.  The most frequent "
+            + "values are listed (for the time column, the number of rows "
+            + "per hour) along with the number of bytes read.  Options "
+            + "supported are as follows:\n\n"
+            + "-path=<archive-store>   Required.  The top of the archive "
+            + "store or any directory below it (e.g. a single server "
+            + "group or application).  All columnar files below it are "
+            + "read.\n"
+            + "-column=<name>          Required.  The field counted, as "
+            + "named on the #Fields line (e.g. LoginID).\n"
+            + "[ -where=<name>=<value> ] Optional.  Count only the rows "
+            + "in which a field holds a value (e.g. "
+            + "MessageID=AUTHENTICATION-201).\n"
+            + "[ -from=<yyyyMMdd> ]    Optional first date of interest.\n"
+            + "[ -to=<yyyyMMdd> ]      Optional last date of interest.\n"
+            + "[ -top=<count> ]        Optional number of values listed.  "
+            + "The default is 20.\n"
+            + "[-h] [-help]    Prints this help message.\n\n");
+}
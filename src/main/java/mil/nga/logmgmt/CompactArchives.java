@@ -0,0 +1,574 @@
+package mil.nga.logmgmt;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.logmgmt.exceptions.InputException;
+import mil.nga.util.ContentDigest;
+import mil.nga.util.Options;
+import mil.nga.util.Options.Multiplicity;
+import mil.nga.util.Options.Separator;
+import mil.nga.util.RateLimiter;
+import mil.nga.util.ThrottledInputStream;
+
+/**
+ * Compaction job moving the archives of closed months into monthly 
+ * containers (see <code>ArchiveContainer</code>), one per host and month 
+ * directory.  A busy server group otherwise leaves thousands of small 
+ * archives in each month directory, which makes listing, backup and NFS
+ * metadata operations slow.
+ *
+ * Compaction is crash safe and idempotent without a journal:
+ * <li>The new container (existing members plus the archives being added)
+ * is written as a staged file, forced to disk and read back before it is 
+ * renamed over the previous container.</li>
+ * <li>Archives are only removed once the new container is in place.  An 
+ * archive left behind by an interrupted run is found in the container by 
+ * the next run, compared with the member and removed.</li>
+ * <li>Until it is removed an archive takes precedence over a container 
+ * member of the same name, so readers see consistent content throughout.
+ * </li>
+ */
+public class CompactArchives {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(CompactArchives.class);
+
+    /**
+     * Number of bytes in a megabyte.
+     */
+    private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+
+    /**
+     * Outcome for a single archive.
+     */
+    public enum Result {
+        /** Archive moved into its container. */
+        COMPACTED,
+        /** Archive was already held in the container and was removed. */
+        DUPLICATE,
+        /** Archive has no manifest entry; left in place. */
+        UNRECORDED,
+        /** Archive does not match its manifest entry; left in place. */
+        CORRUPT,
+        /** Container could not be written; archive left in place. */
+        FAILED
+    }
+
+    private final Path        base;
+    private final int         ageMonths;
+    private final RateLimiter limiter;
+    private final Path        lockFile;
+    private final Map<Result, Long> counts =
+            new EnumMap<Result, Long>(Result.class);
+    private int               containers = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param path The top of the archive store.
+     * @param ageMonths Months since the end of a month before its archives
+     * are compacted.
+     * @param mbPerSecond Read bandwidth limit (less than or equal to zero
+     * for unlimited).
+     * @param stateDir Directory holding the lock file.
+     * @throws InputException Thrown if the archive store does not exist.
+     */
+    public CompactArchives(
+            String path,
+            int    ageMonths,
+            double mbPerSecond,
+            String stateDir) throws InputException {
+
+        String method = "Constructor() - ";
+
+        if ((path == null) || (!Files.isDirectory(Paths.get(path)))) {
+            String msg = method
+                    + "The archive store [ "
+                    + path
+                    + " ] does not exist.";
+            LOGGER.error(msg);
+            throw new InputException(msg);
+        }
+        this.base      = Paths.get(path);
+        this.ageMonths = Math.max(0, ageMonths);
+        this.limiter   = new RateLimiter(mbPerSecond * BYTES_PER_MB);
+        this.lockFile  = Paths.get(stateDir).resolve(CompactArchivesI.LOCK_NAME);
+        for (Result result : Result.values()) {
+            counts.put(result, 0L);
+        }
+    }
+
+    /**
+     * Compact every eligible month directory.
+     *
+     * @throws IOException Thrown if the store cannot be walked or the lock
+     * file cannot be opened.
+     */
+    public void compact() throws IOException {
+
+        String method = "compact() - ";
+        long   start  = System.currentTimeMillis();
+
+        Calendar cal = Calendar.getInstance();
+        cal.add(Calendar.MONTH, -ageMonths);
+        long cutoff = cal.getTimeInMillis();
+
+        Files.createDirectories(lockFile.getParent());
+        try (FileChannel channel = FileChannel.open(lockFile,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE)) {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                LOGGER.warn(method
+                        + "Another compaction run holds lock [ "
+                        + lockFile.toString()
+                        + " ].  Exiting.");
+                return;
+            }
+            try {
+                for (Path dir : ArchiveStore.findMonthDirectories(base)) {
+                    if (ArchiveStore.endOf(dir) <= cutoff) {
+                        compactDirectory(dir);
+                    }
+                }
+            }
+            finally {
+                lock.release();
+            }
+        }
+
+        LOGGER.info(method
+                + "Compaction complete in [ "
+                + (System.currentTimeMillis() - start)
+                + " ] ms.  Wrote [ "
+                + containers
+                + " ] containers.  Results "
+                + counts.toString()
+                + ".");
+    }
+
+    /**
+     * Compact a single month directory, one container per host.
+     *
+     * @param dir The month directory.
+     */
+    private void compactDirectory(Path dir) {
+
+        String                     method  = "compactDirectory() - ";
+        Map<String, ManifestEntry> entries = Manifest.read(dir);
+        Map<String, List<ManifestEntry>> byHost =
+                new LinkedHashMap<String, List<ManifestEntry>>();
+
+        try {
+            for (Path archive : ArchiveStore.listArchives(dir)) {
+                ManifestEntry entry = entries.get(
+                        archive.getFileName().toString());
+                if (entry == null) {
+                    count(Result.UNRECORDED);
+                    LOGGER.warn(method
+                            + "Archive [ "
+                            + archive.toString()
+                            + " ] has no manifest entry.  It has not been "
+                            + "compacted.");
+                    continue;
+                }
+                String host = Manifest.hostOf(entry.getManifest());
+                if (!byHost.containsKey(host)) {
+                    byHost.put(host, new ArrayList<ManifestEntry>());
+                }
+                byHost.get(host).add(entry);
+            }
+        }
+        catch (IOException ioe) {
+            LOGGER.error(method
+                    + "Unable to list directory [ "
+                    + dir.toString()
+                    + " ].  Error message [ "
+                    + ioe.getMessage()
+                    + " ].");
+            return;
+        }
+
+        for (Map.Entry<String, List<ManifestEntry>> host : byHost.entrySet()) {
+            compactHost(dir, host.getKey(), host.getValue());
+        }
+    }
+
+    /**
+     * Move the archives of one host into the host's container.
+     *
+     * @param dir The month directory.
+     * @param host The host.
+     * @param entries The manifest entries of the host's archives.
+     */
+    private void compactHost(Path dir, String host, List<ManifestEntry> entries) {
+
+        String             method     = "compactHost() - ";
+        Path               target     = ArchiveContainer.containerOf(dir, host);
+        Map<String, Long>  additions  = new LinkedHashMap<String, Long>();
+        List<Path>         duplicates = new ArrayList<Path>();
+        ArchiveContainer   existing   = null;
+
+        try {
+            if (Files.exists(target)) {
+                existing = new ArchiveContainer(target);
+            }
+
+            for (ManifestEntry entry : entries) {
+                Path archive = dir.resolve(entry.getDestination());
+                long crc     = check(archive, entry);
+                if (crc < 0) {
+                    continue;
+                }
+                ZipEntry member = (existing == null) ? null :
+                        existing.getEntry(entry.getDestination());
+                if ((member != null) &&
+                        (member.getSize() == entry.getStoredSize()) &&
+                        (member.getCrc() == crc)) {
+                    duplicates.add(archive);
+                }
+                else {
+                    // A member that differs from the archive was superseded
+                    // after the previous compaction and is replaced.
+                    additions.put(entry.getDestination(), crc);
+                }
+            }
+
+            if (!additions.isEmpty()) {
+                write(dir, target, existing, additions);
+                containers++;
+            }
+        }
+        catch (IOException ioe) {
+            count(Result.FAILED, additions.size() + duplicates.size());
+            LOGGER.error(method
+                    + "Unable to write container [ "
+                    + target.toString()
+                    + " ].  The archives have been left in place.  Error "
+                    + "message [ "
+                    + ioe.getMessage()
+                    + " ].");
+            return;
+        }
+        finally {
+            if (existing != null) {
+                try { existing.close(); } catch (IOException e) {}
+            }
+        }
+
+        for (String name : additions.keySet()) {
+            remove(dir.resolve(name), Result.COMPACTED);
+        }
+        for (Path archive : duplicates) {
+            remove(archive, Result.DUPLICATE);
+        }
+        StagedFile.syncDirectory(dir);
+    }
+
+    /**
+     * Verify an archive against its manifest entry, computing the CRC-32 
+     * required by the container index in the same pass.
+     *
+     * @param archive The archive.
+     * @param entry The manifest entry of the archive.
+     * @return The CRC-32 of the archive, or -1 if the archive does not 
+     * match its manifest entry.
+     */
+    private long check(Path archive, ManifestEntry entry) {
+
+        String        method = "check() - ";
+        ContentDigest digest = new ContentDigest(false,
+                ContentDigest.algorithmOf(entry.getStoredCrc()));
+        CRC32         crc    = new CRC32();
+        byte[]        buffer = new byte[StagedFile.BUFFER_SIZE];
+
+        try (InputStream is = throttled(archive)) {
+            int count = 0;
+            while ((count = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, count);
+                crc.update(buffer, 0, count);
+            }
+        }
+        catch (IOException ioe) {
+            count(Result.CORRUPT);
+            LOGGER.error(method
+                    + "Unable to read [ "
+                    + archive.toString()
+                    + " ].  It has not been compacted.  Error message [ "
+                    + ioe.getMessage()
+                    + " ].");
+            return -1;
+        }
+        if ((digest.getSize() != entry.getStoredSize()) ||
+                !digest.getCrc().equals(entry.getStoredCrc())) {
+            count(Result.CORRUPT);
+            LOGGER.error(method
+                    + "Archive [ "
+                    + archive.toString()
+                    + " ] does not match its manifest entry.  It has not "
+                    + "been compacted.");
+            return -1;
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Write the new container holding the existing members (other than 
+     * those being replaced) followed by the archives being added, verify 
+     * it and rename it into place.
+     *
+     * @param dir The month directory.
+     * @param target The container.
+     * @param existing The current container (null if none).
+     * @param additions The archives being added and their CRC-32.
+     * @throws IOException Thrown if the container cannot be written or 
+     * does not verify.
+     */
+    private void write(
+            Path              dir,
+            Path              target,
+            ArchiveContainer  existing,
+            Map<String, Long> additions) throws IOException {
+
+        StagedFile staged = new StagedFile(target);
+        try {
+            ZipOutputStream zos = new ZipOutputStream(staged.getOutputStream());
+            zos.setMethod(ZipOutputStream.STORED);
+            if (existing != null) {
+                for (String name : existing.names()) {
+                    if (!additions.containsKey(name)) {
+                        try (InputStream is = existing.open(name)) {
+                            copy(is, new ZipEntry(existing.getEntry(name)), zos);
+                        }
+                    }
+                }
+            }
+            for (Map.Entry<String, Long> addition : additions.entrySet()) {
+                Path     archive = dir.resolve(addition.getKey());
+                ZipEntry member  = new ZipEntry(addition.getKey());
+                member.setMethod(ZipEntry.STORED);
+                member.setSize(Files.size(archive));
+                member.setCompressedSize(member.getSize());
+                member.setCrc(addition.getValue());
+                member.setTime(Files.getLastModifiedTime(archive).toMillis());
+                try (InputStream is = throttled(archive)) {
+                    // ZipOutputStream rejects the member if the bytes no
+                    // longer match the CRC computed by check().
+                    copy(is, member, zos);
+                }
+            }
+            zos.close();
+            staged.sync();
+            verify(staged.getPartial());
+            if (existing != null) {
+                existing.close();
+            }
+            staged.commit();
+        }
+        finally {
+            staged.close();
+        }
+    }
+
+    /**
+     * Copy the stored bytes of one member into the container.
+     */
+    private void copy(InputStream is, ZipEntry member, ZipOutputStream zos) 
+            throws IOException {
+        byte[] buffer = new byte[StagedFile.BUFFER_SIZE];
+        int    count  = 0;
+        zos.putNextEntry(member);
+        while ((count = is.read(buffer)) != -1) {
+            zos.write(buffer, 0, count);
+        }
+        zos.closeEntry();
+    }
+
+    /**
+     * Read back every member of a newly written container and compare it
+     * with the CRC-32 held in the container index.
+     *
+     * @param container The container.
+     * @throws IOException Thrown if a member cannot be read or does not 
+     * match.
+     */
+    private void verify(Path container) throws IOException {
+        byte[] buffer = new byte[StagedFile.BUFFER_SIZE];
+        try (ArchiveContainer check = new ArchiveContainer(container)) {
+            for (String name : check.names()) {
+                CRC32 crc = new CRC32();
+                try (InputStream is = check.open(name)) {
+                    int count = 0;
+                    while ((count = is.read(buffer)) != -1) {
+                        crc.update(buffer, 0, count);
+                    }
+                }
+                if (crc.getValue() != check.getEntry(name).getCrc()) {
+                    throw new ZipException("Member [ " + name 
+                            + " ] of [ " + container.toString()
+                            + " ] does not match the container index.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Open an archive for reading within the bandwidth limit.
+     */
+    private InputStream throttled(Path archive) throws IOException {
+        return new ThrottledInputStream(
+                new BufferedInputStream(Files.newInputStream(archive),
+                        StagedFile.BUFFER_SIZE),
+                limiter);
+    }
+
+    /**
+     * Remove an archive now held in its container.
+     */
+    private void remove(Path archive, Result result) {
+        String method = "remove() - ";
+        try {
+            Files.deleteIfExists(archive);
+            count(result);
+        }
+        catch (IOException ioe) {
+            // Harmless: the next run finds the duplicate and removes it.
+            LOGGER.warn(method
+                    + "Unable to remove compacted archive [ "
+                    + archive.toString()
+                    + " ].  Error message [ "
+                    + ioe.getMessage()
+                    + " ].");
+        }
+    }
+
+    private void count(Result result) {
+        count(result, 1);
+    }
+
+    private void count(Result result, int n) {
+        counts.put(result, counts.get(result) + n);
+    }
+
+    /**
+     * Accessor method for the number of archives with the input result.
+     *
+     * @param result The result of interest.
+     * @return The number of archives.
+     */
+    public long getCount(Result result) {
+        return counts.get(result);
+    }
+
+    /**
+     * Simple static method to print the help and usage String information.
+     */
+    private static void printHelp() {
+        System.out.println("");
+        System.out.println(CompactArchivesI.HELP_STRING);
+        System.out.println("");
+        System.out.println(CompactArchivesI.USAGE_STRING);
+    }
+
+    /**
+     * Driver method used to extract the command line parameters and
+     * initiate processing.
+     *
+     * @param args Input command line arguments
+     * @throws InputException Thrown if the input data does not make
+     * sense.
+     * @throws IOException Thrown if the store cannot be walked.
+     */
+    public static void main(String[] args) throws InputException, IOException {
+
+        String method = "main() - ";
+        String path   = null;
+        String state  = LogMgmtI.DEFAULT_STATE_PATH;
+        int    age    = CompactArchivesI.DEFAULT_AGE_MONTHS;
+        double rate   = 0;
+
+        // Set up the command line options
+        Options opt = new Options(args, 0);
+        opt.getSet().addOption("path", Separator.EQUALS, Multiplicity.ONCE);
+        opt.getSet().addOption("age", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("rate", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("state", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("h", Multiplicity.ZERO_OR_MORE);
+        opt.getSet().addOption("help", Multiplicity.ZERO_OR_MORE);
+
+        // Make sure the options make sense
+        if (!opt.check(true, false)) {
+            System.out.println(CompactArchivesI.USAGE_STRING);
+            System.exit(1);
+        }
+
+        // See if the user wanted the help message displayed.
+        if (opt.getSet().isSet("h") || opt.getSet().isSet("help")) {
+            CompactArchives.printHelp();
+            System.exit(0);
+        }
+
+        path = opt.getSet().getOption("path").getResultValue(0);
+        if (opt.getSet().isSet("state")) {
+            state = opt.getSet().getOption("state").getResultValue(0);
+        }
+        try {
+            if (opt.getSet().isSet("age")) {
+                age = Integer.parseInt(
+                        opt.getSet().getOption("age").getResultValue(0).trim());
+            }
+            if (opt.getSet().isSet("rate")) {
+                rate = Double.parseDouble(
+                        opt.getSet().getOption("rate").getResultValue(0).trim());
+            }
+        }
+        catch (NumberFormatException nfe) {
+            LOGGER.error(method
+                    + "ERROR: -age and -rate must be numeric.  Error "
+                    + "message [ "
+                    + nfe.getMessage()
+                    + " ].");
+            CompactArchives.printHelp();
+            System.exit(1);
+        }
+
+        LOGGER.info(method
+                + "Compacting [ "
+                + path
+                + " ] months closed more than [ "
+                + age
+                + " ] months ago, rate limit [ "
+                + ((rate > 0) ? rate + " MB/s" : "none")
+                + " ].");
+
+        new CompactArchives(path, age, rate, state).compact();
+    }
+}
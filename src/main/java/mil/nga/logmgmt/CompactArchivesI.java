@@ -0,0 +1,59 @@
+package mil.nga.logmgmt;
+
+/**
+ * Simple interface containing the constants and help text used by the 
+ * monthly container compaction job.
+ */
+public interface CompactArchivesI {
+    
+    /**
+     * Default age (in whole months since the end of the month) at which 
+     * archives are compacted.  One month leaves time for late arrivals.
+     */
+    public static final int DEFAULT_AGE_MONTHS = 1;
+    
+    /**
+     * Name of the lock file kept in the state directory.
+     */
+    public static final String LOCK_NAME = "compact.lock";
+    
+    /**
+     * Usage String printed when incorrect arguments are supplied.
+     */
+    public static final String USAGE_STRING = new String(
+            "Usage: java mil.nga.logmgmt.CompactArchives "
+            + "-path=<archive-store> "
+            + "[ -age=<months> ] "
+            + "[ -rate=<MB-per-second> ] "
+            + "[ -state=<directory> ] "
+            + "[-h] [-help]");
+    
+    /**
+     * Help string printed when -h or -help appear on the command line.
+     */
+    public static final String HELP_STRING = new String(
+            "This application moves the archives of closed months into one "
+            + "container per host and month directory "
+            + "(<host>_<yyyyMM>.pack), reducing the number of files in the "
+            + "archive store.  Archives are stored in the container "
+            + "unchanged, so the manifest entries remain valid.  Each "
+            + "archive is verified against its manifest entry before it is "
+            + "moved and the container is verified before any archive is "
+            + "removed.  Running the job again after an interruption "
+            + "completes the interrupted work; archives arriving late for a "
+            + "compacted month are added to the existing container.  "
+            + "Individual archives can be extracted with standard tools "
+            + "(e.g. unzip -p <container> <archive>).  Tiering "
+            + "(TierArchives) should be run before compaction as it only "
+            + "processes archives that have not been compacted.  Options "
+            + "supported are as follows:\n\n"
+            + "-path=<archive-store>  Required.  The top of the archive "
+            + "store (the output.path property) or any directory below it.\n"
+            + "[ -age=<months> ]      Optional age threshold.  The default "
+            + "is 1.\n"
+            + "[ -rate=<MB-per-second> ] Optional limit on the read "
+            + "bandwidth.  The default is unlimited.\n"
+            + "[ -state=<directory> ] Optional directory holding the lock "
+            + "preventing concurrent runs on this host.\n"
+            + "[-h] [-help]    Prints this help message.\n\n");
+}
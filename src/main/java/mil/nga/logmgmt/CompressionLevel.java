@@ -0,0 +1,277 @@
+package mil.nga.logmgmt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.logmgmt.exceptions.InputException;
+
+/**
+ * Deflate compression levels offered for archives, together with the
+ * logic used to pick one per file when the level is set to
+ * <code>auto</code>.
+ *
+ * Automatic selection compresses a sample taken from the start of the file
+ * at increasing levels, measuring the size achieved and the CPU time
+ * spent.  Data that barely compresses is stored, and otherwise the highest
+ * level is chosen that still meets the configured minimum throughput (the
+ * CPU budget) and that buys a worthwhile reduction over the level below.
+ */
+public enum CompressionLevel {
+
+    /**
+     * No compression (Deflate stored blocks).
+     */
+    STORE(Deflater.NO_COMPRESSION),
+
+    /**
+     * Fastest compression.
+     */
+    FAST(Deflater.BEST_SPEED),
+
+    /**
+     * The zlib default, which was the only level used before levels could
+     * be selected.
+     */
+    DEFAULT(6),
+
+    /**
+     * Best compression.
+     */
+    MAX(Deflater.BEST_COMPRESSION);
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(CompressionLevel.class);
+
+    /**
+     * Value of the level property requesting per-file selection.
+     */
+    public static final String AUTO = "auto";
+
+    /**
+     * Number of bytes sampled from the start of each file.
+     */
+    public static final int SAMPLE_SIZE = 2 * 1024 * 1024;
+
+    /**
+     * Files smaller than this are not sampled; they cost little to
+     * compress at the default level.
+     */
+    public static final int MIN_SAMPLE_SIZE = 64 * 1024;
+
+    /**
+     * Data whose fast compressed size exceeds this fraction of the
+     * original is stored.
+     */
+    public static final double STORE_RATIO = 0.9;
+
+    /**
+     * A higher level is only chosen if it reduces the compressed size by
+     * at least this fraction relative to the level below.
+     */
+    public static final double MIN_GAIN = 0.03;
+
+    private final int level;
+
+    /**
+     * Constructor.
+     *
+     * @param level The Deflate level.
+     */
+    private CompressionLevel(int level) {
+        this.level = level;
+    }
+
+    /**
+     * Accessor method for the Deflate level.
+     * @return The Deflate level (0-9).
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Convert the (case insensitive) input String into a compression
+     * level.
+     *
+     * @param value The level name supplied by the caller.
+     * @return The matching level, or null if the value is
+     * <code>auto</code>.  DEFAULT is returned if the input is null or
+     * empty.
+     * @throws InputException Thrown if the input does not match any of the
+     * known levels.
+     */
+    public static CompressionLevel fromString(String value)
+            throws InputException {
+
+        String method = "fromString() - ";
+
+        if ((value == null) || (value.trim().isEmpty())) {
+            return DEFAULT;
+        }
+        if (AUTO.equalsIgnoreCase(value.trim())) {
+            return null;
+        }
+        for (CompressionLevel level : CompressionLevel.values()) {
+            if (level.name().equalsIgnoreCase(value.trim())) {
+                return level;
+            }
+        }
+        String msg = method
+                + "Unknown compression level [ "
+                + value
+                + " ].  Expected one of auto, store, fast, default or max.";
+        LOGGER.error(msg);
+        throw new InputException(msg);
+    }
+
+    /**
+     * Select the level for a single file by sampling its content.
+     *
+     * @param file The file to be compressed.
+     * @param minThroughput The slowest acceptable compression rate in
+     * bytes per CPU second.
+     * @param threads The number of threads the file will be compressed on
+     * (the measured single thread rate is scaled accordingly).
+     * @return The selected level.  DEFAULT is returned if the file cannot
+     * be sampled.
+     */
+    public static CompressionLevel select(Path file, double minThroughput,
+            int threads) {
+
+        String method = "select() - ";
+        byte[] sample = null;
+
+        try {
+            sample = readSample(file);
+        }
+        catch (IOException ioe) {
+            LOGGER.warn(method
+                    + "Unable to sample [ "
+                    + file.toString()
+                    + " ].  Using the default level.  Error message [ "
+                    + ioe.getMessage()
+                    + " ].");
+            return DEFAULT;
+        }
+        if (sample.length < MIN_SAMPLE_SIZE) {
+            return DEFAULT;
+        }
+
+        Probe            previous = new Probe(sample, FAST);
+        CompressionLevel selected = FAST;
+        if (previous.ratio() > STORE_RATIO) {
+            selected = STORE;
+        }
+        else {
+            for (CompressionLevel candidate : new CompressionLevel[] { DEFAULT, MAX }) {
+                Probe probe = new Probe(sample, candidate);
+                if ((probe.throughput() * Math.max(1, threads) < minThroughput) ||
+                        (probe.compressed > previous.compressed * (1.0 - MIN_GAIN))) {
+                    break;
+                }
+                selected = candidate;
+                previous = probe;
+            }
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(method
+                    + "Selected [ "
+                    + selected.name().toLowerCase()
+                    + " ] for [ "
+                    + file.toString()
+                    + " ].");
+        }
+        return selected;
+    }
+
+    /**
+     * Read the sample from the start of the file.
+     *
+     * @param file The file.
+     * @return Up to SAMPLE_SIZE bytes.
+     * @throws IOException Thrown if the file cannot be read.
+     */
+    private static byte[] readSample(Path file) throws IOException {
+        int    length = (int)Math.min(SAMPLE_SIZE, Files.size(file));
+        byte[] sample = new byte[length];
+        int    count  = 0;
+        try (InputStream is = Files.newInputStream(file)) {
+            int read = 0;
+            while ((count < length) &&
+                    ((read = is.read(sample, count, length - count)) != -1)) {
+                count += read;
+            }
+        }
+        if (count < length) {
+            byte[] truncated = new byte[count];
+            System.arraycopy(sample, 0, truncated, 0, count);
+            return truncated;
+        }
+        return sample;
+    }
+
+    /**
+     * Internal class holding the result of compressing the sample at a
+     * single level.
+     */
+    private static class Probe {
+
+        /**
+         * Thread CPU time is used where supported so that other work on
+         * the host does not distort the measurement.
+         */
+        private static final ThreadMXBean THREADS =
+                ManagementFactory.getThreadMXBean();
+
+        private final long original;
+        private final long compressed;
+        private final long nanos;
+
+        Probe(byte[] sample, CompressionLevel level) {
+            Deflater deflater = new Deflater(level.getLevel(), true);
+            byte[]   buffer   = new byte[64 * 1024];
+            long     size     = 0;
+            long     start    = cpuTime();
+            try {
+                deflater.setInput(sample);
+                deflater.finish();
+                while (!deflater.finished()) {
+                    size += deflater.deflate(buffer);
+                }
+            }
+            finally {
+                deflater.end();
+            }
+            original   = sample.length;
+            compressed = size;
+            nanos      = Math.max(1, cpuTime() - start);
+        }
+
+        private static long cpuTime() {
+            if (THREADS.isCurrentThreadCpuTimeSupported()) {
+                return THREADS.getCurrentThreadCpuTime();
+            }
+            return System.nanoTime();
+        }
+
+        double ratio() {
+            return (double)compressed / (double)original;
+        }
+
+        double throughput() {
+            return original * 1.0e9 / nanos;
+        }
+    }
+}
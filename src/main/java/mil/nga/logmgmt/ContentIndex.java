@@ -0,0 +1,239 @@
+package mil.nga.logmgmt;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent index of the content of the archives written from this host,
+ * kept in the state directory so that a file whose content has already
+ * been archived (e.g. a rotated file matched again by a re-run with
+ * <code>input.file.delete=false</code>) is recognized without writing it
+ * a second time.
+ *
+ * Content is identified by the size and SHA-256 digest of the original
+ * (uncompressed) file.  The index is keyed by size first, so a candidate
+ * file is only read ahead of archiving when an indexed archive has the
+ * same size; the digest of every other file is calculated while it is
+ * archived.  Each record also lists the source file and modification time
+ * seen with the content, so that the same file seen again can be told
+ * apart from a copy of it.
+ *
+ * The index is a single append-only file (<code>content.idx</code>) read
+ * into memory when opened.  Where a size and digest appear more than once
+ * the last location read wins.  Appends from other processes on the same
+ * host are serialized with a file lock but are not seen until the index is
+ * next opened.
+ */
+public class ContentIndex implements Closeable {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(ContentIndex.class);
+
+    /**
+     * Name of the index file within the state directory.
+     */
+    public static final String INDEX_FILE = "content.idx";
+
+    private static final String DELIMITER = "\t";
+
+    /**
+     * Number of fields in an index record.
+     */
+    private static final int FIELD_COUNT = 5;
+
+    private final Path                           file;
+    private final FileChannel                    channel;
+    private final Map<Long, Map<String, Entry>>  entries =
+            new HashMap<Long, Map<String, Entry>>();
+
+    /**
+     * Constructor.  Use <code>open()</code> to open an index.
+     */
+    private ContentIndex(Path file, FileChannel channel) {
+        this.file    = file;
+        this.channel = channel;
+    }
+
+    /**
+     * Open (creating if necessary) the index kept in the state directory.
+     *
+     * @param stateDir The state directory.
+     * @return The index.
+     * @throws IOException Thrown if the index cannot be read or created.
+     */
+    public static ContentIndex open(Path stateDir) throws IOException {
+
+        Files.createDirectories(stateDir);
+        Path         file  = stateDir.resolve(INDEX_FILE);
+        FileChannel  fc    = FileChannel.open(file,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        ContentIndex index = new ContentIndex(file, fc);
+        try (BufferedReader reader = Files.newBufferedReader(
+                file, StandardCharsets.UTF_8)) {
+            String line = null;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(DELIMITER);
+                if (fields.length != FIELD_COUNT) {
+                    // A torn final record.
+                    continue;
+                }
+                try {
+                    index.put(Long.parseLong(fields[0]), fields[1], fields[2],
+                            fields[3], Long.parseLong(fields[4]));
+                }
+                catch (NumberFormatException nfe) {
+                    continue;
+                }
+            }
+        }
+        catch (IOException ioe) {
+            fc.close();
+            throw ioe;
+        }
+        return index;
+    }
+
+    /**
+     * Determine whether any indexed content has the input size.
+     *
+     * @param size The size of the original content in bytes.
+     * @return True if a file of this size may be a duplicate.
+     */
+    public synchronized boolean contains(long size) {
+        return entries.containsKey(size);
+    }
+
+    /**
+     * Look up the archive holding content.
+     *
+     * @param size The size of the original content in bytes.
+     * @param sha256 The SHA-256 digest of the original content.
+     * @return The entry, or null if the content has not been archived.
+     */
+    public synchronized Entry find(long size, String sha256) {
+        Map<String, Entry> bySize = entries.get(size);
+        return (bySize == null) ? null : bySize.get(sha256);
+    }
+
+    /**
+     * Record that an archive holds content, or that another source file
+     * was found to hold content already archived.  The record is written
+     * to the index before the method returns.
+     *
+     * @param size The size of the original content in bytes.
+     * @param sha256 The SHA-256 digest of the original content.
+     * @param location Key of the archive in the storage backend.
+     * @param source Absolute path of the source file.
+     * @param mtime Last modified time of the source file.
+     * @throws IOException Thrown if the record cannot be written.
+     */
+    public synchronized void add(long size, String sha256, String location,
+            String source, long mtime) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((size
+                + DELIMITER + sha256
+                + DELIMITER + location
+                + DELIMITER + source
+                + DELIMITER + mtime
+                + "\n").getBytes(StandardCharsets.UTF_8));
+        FileLock lock = channel.lock();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        finally {
+            lock.release();
+        }
+        put(size, sha256, location, source, mtime);
+    }
+
+    private void put(long size, String sha256, String location,
+            String source, long mtime) {
+        Map<String, Entry> bySize = entries.get(size);
+        if (bySize == null) {
+            bySize = new HashMap<String, Entry>();
+            entries.put(size, bySize);
+        }
+        Entry entry = bySize.get(sha256);
+        if ((entry == null) || !entry.location.equals(location)) {
+            entry = new Entry(location);
+            bySize.put(sha256, entry);
+        }
+        entry.sources.add(source + DELIMITER + mtime);
+    }
+
+    /**
+     * Release the index file.
+     */
+    @Override
+    public synchronized void close() {
+        String method = "close() - ";
+        try {
+            channel.close();
+        }
+        catch (IOException ioe) {
+            LOGGER.warn(method
+                    + "Unexpected IOException closing index [ "
+                    + file.toString()
+                    + " ].  Error message [ "
+                    + ioe.getMessage()
+                    + " ].");
+        }
+    }
+
+    /**
+     * The archive holding a single piece of content and the source files
+     * it was seen in.
+     */
+    public static class Entry {
+
+        private final String      location;
+        private final Set<String> sources = new HashSet<String>();
+
+        Entry(String location) {
+            this.location = location;
+        }
+
+        /**
+         * Accessor method for the key of the archive in the storage
+         * backend.
+         * @return The key of the archive.
+         */
+        public String getLocation() {
+            return location;
+        }
+
+        /**
+         * Determine whether the content was already seen in the input
+         * source file with the input modification time.
+         *
+         * @param source Absolute path of the source file.
+         * @param mtime Last modified time of the source file.
+         * @return True if the source was already recorded.
+         */
+        public boolean isSource(String source, long mtime) {
+            return sources.contains(source + DELIMITER + mtime);
+        }
+    }
+}
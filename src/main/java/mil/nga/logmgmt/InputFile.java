@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
 
@@ -36,6 +37,12 @@ public class InputFile {
      */
     private String pattern = null;
     
+    /**
+     * Record of the files already archived (null if rotation tracking is
+     * disabled or the state could not be opened).
+     */
+    private RotationTracker tracker = null;
+    
     /**
      * Constructor allowing clients to supply the starting path and pattern
      * via String arguments vice a Properties object.
@@ -55,6 +62,9 @@ public class InputFile {
      * properties object containing the following required properties:
      * <li><code>input.path</code></li>
      * <li><code>input.pattern</code></li>
+     * Rotation tracking is controlled by the optional 
+     * <code>input.track.rotation</code> and <code>state.path</code> 
+     * properties.
      * 
      * @see mil.nga.logmgmt.LogMgmtI
      * @param properties A properties object containing the required input 
@@ -67,6 +77,9 @@ public class InputFile {
         if (properties != null) {
             setInputPath(properties.getProperty(LogMgmtI.INPUT_PATH, null));
             setInputPattern(properties.getProperty(LogMgmtI.INPUT_PATTERN, null));
+            setRotationTracking(
+                    properties.getProperty(LogMgmtI.INPUT_TRACK_ROTATION, null),
+                    properties.getProperty(LogMgmtI.STATE_PATH, null));
         }
         else {
             String msg = method + "The input properties object is null!";
@@ -157,10 +170,88 @@ public class InputFile {
         pattern = value;
     }
     
+    /**
+     * Accessor method for the record of files already archived.
+     * @return The record, or null if rotation tracking is disabled or the
+     * record could not be read.
+     */
+    public RotationTracker getRotationTracker() {
+        return tracker;
+    }
+    
+    /**
+     * Mutator method for rotation tracking.  If enabled, the record of
+     * archived files is read from the state directory.  Failure to read it
+     * is not fatal; candidates are then not checked against it.
+     * 
+     * @param value True or false.  The default setting is false.
+     * @param statePath The state directory (null for the default).
+     */
+    public void setRotationTracking(String value, String statePath) {
+        String method = "setRotationTracking() - ";
+        tracker = null;
+        if ((value == null) || (!Boolean.parseBoolean(value.trim()))) {
+            return;
+        }
+        if ((statePath == null) || (statePath.trim().isEmpty())) {
+            statePath = LogMgmtI.DEFAULT_STATE_PATH;
+        }
+        try {
+            tracker = RotationTracker.open(Paths.get(statePath.trim()));
+        }
+        catch (IOException ioe) {
+            LOGGER.error(method
+                    + "Unable to read the record of archived files in [ "
+                    + statePath
+                    + " ].  Rotated files will not be recognized.  Error "
+                    + "message [ "
+                    + ioe.getMessage()
+                    + " ].");
+        }
+    }
+    
+    /**
+     * Remove the candidates that were already archived under another name
+     * (i.e. renamed or compressed by logrotate since).
+     * 
+     * @param candidates The candidate files.
+     */
+    private void removeArchived(List<Path> candidates) {
+        String          method  = "removeArchived() - ";
+        RotationTracker current = tracker;
+        if ((current == null) || (candidates == null)) {
+            return;
+        }
+        Iterator<Path> iter = candidates.iterator();
+        while (iter.hasNext()) {
+            Path candidate = iter.next();
+            try {
+                if (current.isArchived(candidate)) {
+                    LOGGER.info(method
+                            + "Content of [ "
+                            + candidate.toString()
+                            + " ] was already archived under another "
+                            + "name.  Skipping.");
+                    iter.remove();
+                }
+            }
+            catch (IOException ioe) {
+                LOGGER.warn(method
+                        + "Unable to check [ "
+                        + candidate.toString()
+                        + " ] against the record of archived files.  "
+                        + "Error message [ "
+                        + ioe.getMessage()
+                        + " ].");
+            }
+        }
+    }
+    
     /**
      * Based on the starting path and target file REGEX supplied during 
      * construction, this class will generate a list of candidate files for
-     * archiving.
+     * archiving.  Files already archived under another name are not 
+     * included.
      * 
      * @return A list of candidate files for archival.
      */
@@ -188,6 +279,9 @@ public class InputFile {
                         + pattern
                         + " ].");
             }
+            else {
+                removeArchived(results);
+            }
         }
         catch (IOException ioe) {
             LOGGER.error(method 
@@ -57,6 +57,43 @@ public class LogMgmt {
             String customPrefix,
             String baseOverride) 
                     throws InputException, OutputException {
+        this(propFile, 
+                serverGroup, 
+                customPrefix, 
+                baseOverride, 
+                -1, 
+                SchedulePolicy.WALK, 
+                LogMgmtI.DEFAULT_WORKERS);
+    }
+    
+    /**
+     * Constructor used to load the target properties file and invoke the 
+     * processing specified by the input properties file within a bounded
+     * run budget.
+     * 
+     * @param propFile Full path to the property file defining the target log 
+     * file parameters. 
+     * @param serverGroup Server group used for organizing the output.
+     * @param customPrefix Custom string to prepend to output filenames.
+     * @param baseOverride Override the base starting directory obtained from
+     * the target properties file.
+     * @param maxRuntime Maximum runtime in minutes (less than or equal to 
+     * zero for no limit).
+     * @param schedule The order in which candidate files are processed.
+     * @param workers The number of files to archive concurrently.
+     * @throws InputException Thrown if there are any issues detected with the
+     * required program input data.
+     * @throws OutputException Thrown if there are problems outputting the data.
+     */
+    public LogMgmt (
+            String         propFile, 
+            String         serverGroup, 
+            String         customPrefix,
+            String         baseOverride,
+            long           maxRuntime,
+            SchedulePolicy schedule,
+            int            workers) 
+                    throws InputException, OutputException {
         
         String     method = "Constructor() - ";
         Properties props  = getProperties(propFile);
@@ -93,8 +130,17 @@ public class LogMgmt {
                     props,
                     serverGroup,
                     customPrefix);
+            output.setMaxRuntime(maxRuntime);
+            output.setSchedulePolicy(schedule);
+            output.setWorkers(workers);
+            output.setRotationTracker(input.getRotationTracker());
             
-            output.process(candidates);
+            if (output.getIncremental()) {
+                new TailShipper(output).ship(candidates);
+            }
+            else {
+                output.process(candidates);
+            }
             
         }
     }
@@ -172,6 +218,9 @@ public class LogMgmt {
         String propertiesFile = null;
         String serverGroup    = null;
         String customPrefix   = null;
+        long   maxRuntime     = -1;
+        int    workers        = LogMgmtI.DEFAULT_WORKERS;
+        SchedulePolicy schedule = SchedulePolicy.WALK;
         
         // Set up the command line options
         Options opt = new Options(args, 0);
@@ -195,6 +244,21 @@ public class LogMgmt {
                 Separator.EQUALS, 
                 Multiplicity.ZERO_OR_ONE);
         
+        opt.getSet().addOption(
+                "maxRuntime", 
+                Separator.EQUALS, 
+                Multiplicity.ZERO_OR_ONE);
+        
+        opt.getSet().addOption(
+                "schedule", 
+                Separator.EQUALS, 
+                Multiplicity.ZERO_OR_ONE);
+        
+        opt.getSet().addOption(
+                "workers", 
+                Separator.EQUALS, 
+                Multiplicity.ZERO_OR_ONE);
+        
         opt.getSet().addOption("h", Multiplicity.ZERO_OR_MORE);
         opt.getSet().addOption("help", Multiplicity.ZERO_OR_MORE);
         
@@ -249,14 +313,61 @@ public class LogMgmt {
                     opt.getSet().getOption("baseOverride").getResultValue(0);
         }
         
+        // Get the optional run budget parameters.
+        try {
+            if (opt.getSet().isSet("maxRuntime")) {
+                maxRuntime = Long.parseLong(opt.getSet()
+                        .getOption("maxRuntime").getResultValue(0).trim());
+            }
+            if (opt.getSet().isSet("workers")) {
+                workers = Integer.parseInt(opt.getSet()
+                        .getOption("workers").getResultValue(0).trim());
+            }
+        }
+        catch (NumberFormatException nfe) {
+            LOGGER.error(method 
+                    + "ERROR: -maxRuntime and -workers must be integers.  "
+                    + "Error message [ "
+                    + nfe.getMessage()
+                    + " ].");
+            LogMgmt.printHelp();
+            System.exit(1);
+        }
+        if (opt.getSet().isSet("schedule")) {
+            try {
+                schedule = SchedulePolicy.fromString(
+                        opt.getSet().getOption("schedule").getResultValue(0));
+            }
+            catch (InputException ie) {
+                LOGGER.error(method 
+                        + "ERROR: -schedule must be one of walk, oldest, "
+                        + "largest or lpt.");
+                LogMgmt.printHelp();
+                System.exit(1);
+            }
+        }
+        
         LOGGER.info(method 
                 + "Invoking LogMgmt with properties file [ "
                 + propertiesFile 
                 + " ] and server group [ "
                 + serverGroup 
-                + " ].");
+                + " ], schedule [ "
+                + schedule.name().toLowerCase()
+                + " ], workers [ "
+                + workers
+                + " ], max runtime [ "
+                + maxRuntime 
+                + " ] minutes.");
         
-        new LogMgmt(propertiesFile, serverGroup, customPrefix, baseOverride);
+        new LogMgmt(
+                propertiesFile, 
+                serverGroup, 
+                customPrefix, 
+                baseOverride, 
+                maxRuntime, 
+                schedule, 
+                workers);
     }
     
 }
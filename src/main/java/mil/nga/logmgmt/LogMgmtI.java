@@ -31,12 +31,195 @@ public interface LogMgmtI {
      */
     public static final String INPUT_PATTERN     = "input.pattern";
     
+    /**
+     * OPTIONAL: True/false parameter indicating whether the device, inode,
+     * size and modification time of each archived file are kept in the 
+     * state directory, so that a file renamed or compressed by logrotate
+     * after it was archived (e.g. catalina.out-20260101 and then 
+     * catalina.out-20260101.gz) is not archived a second time.  The 
+     * default is False.
+     */
+    public static final String INPUT_TRACK_ROTATION = "input.track.rotation";
+    
+    /**
+     * OPTIONAL: True/false parameter indicating whether the input files are
+     * live logs (e.g. catalina.out rotated with copytruncate, or never
+     * rotated) that are shipped incrementally.  On each run only the bytes
+     * appended since the offset checkpointed by the previous run are read,
+     * and they are appended as new gzip members to the archive of the 
+     * current day.  Truncation and rotation of the input file are detected
+     * by its inode, its length and a checksum of its first bytes.  The 
+     * input file is never removed and output.delay does not apply.  
+     * Requires the posix backend.  The default is False.
+     */
+    public static final String INPUT_INCREMENTAL = "input.incremental";
+    
     /**
      * True/false parameter indicating whether the output file is to be 
      * compressed.  The default is False.
      */
     public static final String OUTPUT_COMPRESS   = "output.compress";
     
+    /**
+     * OPTIONAL: The format of compressed archives, either zip or gzip.  
+     * Gzip archives are compressed on several threads and are written as a
+     * sequence of independent gzip members, which standard tools read as a
+     * single file.  The default is zip.
+     */
+    public static final String OUTPUT_COMPRESS_FORMAT = "output.compress.format";
+    
+    /**
+     * OPTIONAL: The number of threads used to compress a single file when 
+     * the gzip format is selected.  The default is the number of available
+     * processors.
+     */
+    public static final String OUTPUT_COMPRESS_THREADS = "output.compress.threads";
+    
+    /**
+     * OPTIONAL: The number of KiB of input compressed into each gzip 
+     * member.  The default is 1024.
+     */
+    public static final String OUTPUT_COMPRESS_BLOCK_SIZE = "output.compress.block.size";
+    
+    /**
+     * OPTIONAL: True/false parameter indicating whether gzip archives are 
+     * written with a time index.  Blocks are then cut at line boundaries 
+     * and a hidden sidecar file (.&lt;archive&gt;.tidx) records the range
+     * of log timestamps in each block, so that a time range can be read 
+     * without decompressing the whole archive.  The default is false.
+     */
+    public static final String OUTPUT_COMPRESS_INDEX = "output.compress.index";
+    
+    /**
+     * OPTIONAL: True/false parameter indicating whether a keyword filter 
+     * is written for each archive.  The content is tokenized as it is 
+     * archived and a hidden sidecar file (.&lt;archive&gt;.bloom) holds a 
+     * Bloom filter of the tokens, allowing searches for a token to skip 
+     * archives that do not contain it.  The default is false.
+     */
+    public static final String OUTPUT_KEYWORDS = "output.keywords";
+    
+    /**
+     * OPTIONAL: True/false parameter indicating whether access logs 
+     * (Apache access.log and ssl_access.log, Tomcat localhost_access_log)
+     * are summarized as they are archived.  Each line is parsed once and a
+     * hidden sidecar file (.&lt;archive&gt;.rollup) holds the request 
+     * count, status codes, bytes sent and response times of each hour.  
+     * RollupArchives merges the sidecars into daily or monthly figures.  
+     * The default is false.
+     */
+    public static final String OUTPUT_ROLLUPS = "output.rollups";
+    
+    /**
+     * OPTIONAL: Unit of the response time field (the last field of the 
+     * line, if numeric) of summarized access logs: us (Apache %D), ms 
+     * (Tomcat %D) or s (%T).  The default is us.
+     */
+    public static final String OUTPUT_ROLLUPS_LATENCY_UNIT = "output.rollups.latency.unit";
+    
+    /**
+     * OPTIONAL: True/false parameter indicating whether sketches of access
+     * logs are written as they are archived.  A hidden sidecar file 
+     * (.&lt;archive&gt;.sketch) of a few KiB holds HyperLogLog sketches of 
+     * the client addresses and user agents and a heavy hitter summary of 
+     * the URLs.  SketchArchives merges the sidecars to estimate distinct
+     * clients and top URLs over any range of dates.  The default is false.
+     */
+    public static final String OUTPUT_SKETCHES = "output.sketches";
+    
+    /**
+     * OPTIONAL: True/false parameter indicating whether the Java stack 
+     * traces in server logs (catalina, JBoss and WildFly) are fingerprinted 
+     * as they are archived.  A hidden sidecar file 
+     * (.&lt;archive&gt;.traces) holds the count, first and last times and 
+     * an exemplar of each distinct trace.  TraceArchives merges the 
+     * sidecars to list the most frequent and the newly appeared errors.  
+     * Access logs are not examined.  The default is false.
+     */
+    public static final String OUTPUT_TRACES = "output.traces";
+    
+    /**
+     * OPTIONAL: True/false parameter indicating whether structured logs in
+     * the Extended Log Format (the OpenAM audit and policy server logs, 
+     * which start with a #Fields line) are converted to a columnar file as
+     * they are archived.  The hidden sidecar file 
+     * (.&lt;archive&gt;.columns) holds each field as a separately 
+     * readable column; ColumnArchives counts the values of a column while
+     * reading only that column.  Files without a #Fields line are not 
+     * converted.  The default is false.
+     */
+    public static final String OUTPUT_COLUMNAR = "output.columnar";
+    
+    /**
+     * OPTIONAL: The compression level: store, fast, default, max or auto.
+     * With auto the start of each file is sampled and the level chosen 
+     * according to how well and how quickly it compresses.  The default 
+     * is default.
+     */
+    public static final String OUTPUT_COMPRESS_LEVEL = "output.compress.level";
+    
+    /**
+     * OPTIONAL: The CPU budget used when the compression level is auto, 
+     * expressed as the slowest acceptable compression rate in MiB per CPU
+     * second.  The default is 20.
+     */
+    public static final String OUTPUT_COMPRESS_MIN_THROUGHPUT = 
+            "output.compress.min.throughput";
+    
+    /**
+     * OPTIONAL: Path to a preset dictionary (produced by TrainDictionary) 
+     * used when compressing small files of this application.  Such files
+     * are written as zlib streams with the .zlib extension and the 
+     * dictionary is copied into the archive store alongside them.
+     */
+    public static final String OUTPUT_COMPRESS_DICTIONARY = "output.compress.dictionary";
+    
+    /**
+     * OPTIONAL: Size in KiB of the largest file compressed with the preset
+     * dictionary.  Larger files gain little from a dictionary and use the
+     * configured compression format.  The default is 1024.
+     */
+    public static final String OUTPUT_COMPRESS_DICTIONARY_MAX_SIZE = 
+            "output.compress.dictionary.max.size";
+    
+    /**
+     * OPTIONAL: True/false parameter indicating whether a SHA-256 digest of
+     * each archived file is recorded in the month directory manifest in 
+     * addition to the CRC.  The default is False.
+     */
+    public static final String OUTPUT_CHECKSUM_SHA256 = "output.checksum.sha256";
+
+    /**
+     * OPTIONAL: True/false parameter indicating whether files whose content
+     * has already been archived from this host are recognized and not
+     * archived again.  The size and SHA-256 digest of every archived file
+     * are kept in an index in the state directory; a candidate of the
+     * same size as an indexed archive is digested first and, if its
+     * content matches, recorded in the reference file of the archive's
+     * directory (.references-&lt;host&gt;) instead of being written.  The
+     * default is false.
+     */
+    public static final String OUTPUT_DEDUPE = "output.dedupe";
+
+    /**
+     * OPTIONAL: True/false parameter indicating whether uncompressed files
+     * that cannot simply be renamed into place are copied with 
+     * FileChannel.transferTo (sendfile/copy_file_range on Linux) rather 
+     * than through a user-space buffer.  As the copied bytes never pass 
+     * through the JVM the source must then be read a second time for its 
+     * checksums, so this only pays where the source is likely to be in 
+     * the page cache.  The default is False.
+     */
+    public static final String OUTPUT_TRANSFER_ZEROCOPY = "output.transfer.zerocopy";
+    
+    /**
+     * OPTIONAL: True/false parameter indicating whether a file copied with
+     * FileChannel.transferTo is read back and its size and checksum 
+     * compared with the source before the source is removed.  The default 
+     * is False.
+     */
+    public static final String OUTPUT_TRANSFER_VERIFY = "output.transfer.verify";
+    
     /**
      * The number of days to delay before removing the input file from 
      * the target directory.
@@ -47,6 +230,68 @@ public interface LogMgmtI {
      * Target output location where the input files should be copied/moved.
      */
     public static final String OUTPUT_BASE_PATH  = "output.path";
+
+    /**
+     * OPTIONAL: Where the archives are stored: posix (the default) writes
+     * them under output.path, s3 uploads them to an S3-compatible object
+     * store under the same relative names.  With s3 the manifests and
+     * hidden sidecar files are still written under output.path.
+     */
+    public static final String OUTPUT_BACKEND = "output.backend";
+
+    /**
+     * OPTIONAL: Endpoint of the object store (e.g. http://minio:9000).
+     * The default is the AWS endpoint of output.s3.region.
+     */
+    public static final String OUTPUT_S3_ENDPOINT = "output.s3.endpoint";
+
+    /**
+     * OPTIONAL: Region used to sign requests to the object store.  The
+     * default is us-east-1.
+     */
+    public static final String OUTPUT_S3_REGION = "output.s3.region";
+
+    /**
+     * Bucket the archives are uploaded to.  Required when output.backend
+     * is s3.
+     */
+    public static final String OUTPUT_S3_BUCKET = "output.s3.bucket";
+
+    /**
+     * OPTIONAL: Prefix placed in front of the key of every archive.
+     */
+    public static final String OUTPUT_S3_PREFIX = "output.s3.prefix";
+
+    /**
+     * OPTIONAL: Access key used to sign requests.  The default is the
+     * value of the AWS_ACCESS_KEY_ID environment variable.
+     */
+    public static final String OUTPUT_S3_ACCESS_KEY = "output.s3.access.key";
+
+    /**
+     * OPTIONAL: Secret key used to sign requests.  The default is the
+     * value of the AWS_SECRET_ACCESS_KEY environment variable.
+     */
+    public static final String OUTPUT_S3_SECRET_KEY = "output.s3.secret.key";
+
+    /**
+     * OPTIONAL: Size in MiB of the parts of a multipart upload (at least
+     * 5).  Archives smaller than one part are uploaded with a single
+     * request.  The default is 8.
+     */
+    public static final String OUTPUT_S3_PART_SIZE = "output.s3.part.size";
+
+    /**
+     * OPTIONAL: Number of parts uploaded concurrently.  The default is 4.
+     */
+    public static final String OUTPUT_S3_THREADS = "output.s3.threads";
+
+    /**
+     * OPTIONAL: Local directory in which the application keeps state 
+     * between runs (e.g. the run journal).  The default is the .logmgmt 
+     * directory in the home directory of the user running the application.
+     */
+    public static final String STATE_PATH        = "state.path";
     
     /** 
      * String used if the server group is not defined.
@@ -58,6 +303,61 @@ public interface LogMgmtI {
      */
     public static final int DEFAULT_OUTPUT_DELAY = 5;
     
+    /**
+     * If not supplied, keep state in the user's home directory.
+     */
+    public static final String DEFAULT_STATE_PATH = 
+            System.getProperty("user.home") + "/.logmgmt";
+    
+    /**
+     * If not supplied, files up to 1 MiB are compressed with the preset 
+     * dictionary.
+     */
+    public static final int DEFAULT_DICTIONARY_MAX_SIZE_KB = 1024;
+    
+    /**
+     * If not supplied, automatic level selection will not choose a level 
+     * slower than 20 MiB per CPU second.
+     */
+    public static final int DEFAULT_MIN_THROUGHPUT_MB = 20;
+    
+    /**
+     * Largest gzip block size accepted (in KiB).
+     */
+    public static final int MAX_BLOCK_SIZE_KB = 64 * 1024;
+    
+    /**
+     * If not supplied, archive one file at a time.
+     */
+    public static final int DEFAULT_WORKERS = 1;
+
+    /**
+     * Archives are written under output.path unless another backend is
+     * selected.
+     */
+    public static final String DEFAULT_BACKEND = "posix";
+
+    /**
+     * If not supplied, requests to the object store are signed for the
+     * us-east-1 region.
+     */
+    public static final String DEFAULT_S3_REGION = "us-east-1";
+
+    /**
+     * If not supplied, multipart uploads use 8 MiB parts.
+     */
+    public static final int DEFAULT_S3_PART_SIZE_MB = 8;
+
+    /**
+     * Smallest part size accepted by S3 (other than for the last part).
+     */
+    public static final int MIN_S3_PART_SIZE_MB = 5;
+
+    /**
+     * If not supplied, four parts are uploaded concurrently.
+     */
+    public static final int DEFAULT_S3_THREADS = 4;
+    
     /**
      * Usage String printed when incorrect arguments are supplied.
      */
@@ -67,6 +367,9 @@ public interface LogMgmtI {
             + "[ -serverGroup=<server-group> ] " 
             + "[ -customPrefix=<prefix> ] "
             + "[ -baseOverride=<base directory> ] "
+            + "[ -maxRuntime=<minutes> ] "
+            + "[ -schedule=<walk|oldest|largest|lpt> ] "
+            + "[ -workers=<count> ] "
             + "[-h] [-help]");
     
     /**
@@ -88,5 +391,14 @@ public interface LogMgmtI {
             + "associated with the same application. \n"
             + "[ -baseOverride=<base directory> ] Override the base directory "
             + "defined in the target properties file. \n"
+            + "[ -maxRuntime=<minutes> ] Optional time budget for the run.  "
+            + "No file is started that is not expected to finish within the "
+            + "budget.  Files left over are reported and will be picked up "
+            + "by the next run. \n"
+            + "[ -schedule=<walk|oldest|largest|lpt> ] Optional order in "
+            + "which the candidate files are processed.  The default (walk) "
+            + "processes files in the order they were found. \n"
+            + "[ -workers=<count> ] Optional number of files to archive "
+            + "concurrently.  The default is 1. \n"
             + "[-h] [-help]    Prints this help message.\n\n");
 }
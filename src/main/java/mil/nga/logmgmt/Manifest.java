@@ -0,0 +1,239 @@
+package mil.nga.logmgmt;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only manifest kept in each month directory of the archive store.
+ * Each host writes its own manifest file (<code>.manifest-&lt;host&gt;</code>)
+ * so that the many servers sharing an output path never append to the same
+ * file.  Readers merge all of the manifests found in a directory; where a
+ * destination appears more than once the last entry read wins, which
+ * allows later processes (e.g. recompression) to supersede an entry by
+ * simply appending a new one.  As the order in which different manifests
+ * are read is not defined, a superseding entry is always appended to the
+ * manifest holding the entry it replaces.
+ *
+ * Each host may also keep a reference file
+ * (<code>.references-&lt;host&gt;</code>) in the same format, listing source
+ * files that were not archived because their content duplicates an
+ * archive of the directory; the destination of a reference is the archive
+ * holding the content.  References are not returned by <code>read()</code>.
+ */
+public class Manifest {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(Manifest.class);
+
+    /**
+     * Prefix of every manifest file name.
+     */
+    public static final String MANIFEST_PREFIX = ".manifest-";
+
+    /**
+     * Prefix of every reference file name.
+     */
+    public static final String REFERENCES_PREFIX = ".references-";
+
+    /**
+     * Lock used to serialize appends from the workers within this JVM.  A
+     * file lock serializes appends from other processes on the same host.
+     */
+    private static final Object APPEND_LOCK = new Object();
+
+    /**
+     * Calculate the manifest file written by the input host.
+     *
+     * @param dir The month directory.
+     * @param host The host name.
+     * @return The manifest file.
+     */
+    public static Path manifestOf(Path dir, String host) {
+        return dir.resolve(MANIFEST_PREFIX + host);
+    }
+
+    /**
+     * Calculate the reference file written by the input host.
+     *
+     * @param dir The month directory.
+     * @param host The host name.
+     * @return The reference file.
+     */
+    public static Path referencesOf(Path dir, String host) {
+        return dir.resolve(REFERENCES_PREFIX + host);
+    }
+
+    /**
+     * Determine whether the input file is a reference file.
+     *
+     * @param file Any file.
+     * @return True if the file name identifies a reference file.
+     */
+    public static boolean isReferences(Path file) {
+        return (file.getFileName() != null) &&
+                file.getFileName().toString().startsWith(REFERENCES_PREFIX);
+    }
+
+    /**
+     * Extract the host name from the name of a manifest file.
+     *
+     * @param manifest A manifest file.
+     * @return The host that writes the manifest.
+     */
+    public static String hostOf(Path manifest) {
+        return manifest.getFileName().toString().substring(
+                MANIFEST_PREFIX.length());
+    }
+
+    /**
+     * Determine whether the input file is a manifest.
+     *
+     * @param file Any file.
+     * @return True if the file name identifies a manifest.
+     */
+    public static boolean isManifest(Path file) {
+        return (file.getFileName() != null) &&
+                file.getFileName().toString().startsWith(MANIFEST_PREFIX);
+    }
+
+    /**
+     * Append an entry to the manifest owned by the input host, creating
+     * the manifest if necessary.  The entry is forced to disk before the
+     * method returns.
+     *
+     * @param dir The month directory.
+     * @param host The host name.
+     * @param entry The entry to append.
+     * @throws IOException Thrown if the manifest cannot be written.
+     */
+    public static void append(Path dir, String host, ManifestEntry entry)
+            throws IOException {
+        append(manifestOf(dir, host), entry);
+    }
+
+    /**
+     * Append an entry to a specific manifest, creating the manifest if
+     * necessary.  Used to supersede an existing entry (see
+     * <code>ManifestEntry.getManifest()</code>).  The entry is forced to
+     * disk before the method returns.
+     *
+     * @param manifest The manifest file.
+     * @param entry The entry to append.
+     * @throws IOException Thrown if the manifest cannot be written.
+     */
+    public static void append(Path manifest, ManifestEntry entry)
+            throws IOException {
+
+        synchronized (APPEND_LOCK) {
+            try (FileChannel fc = FileChannel.open(manifest,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND)) {
+                FileLock lock = fc.lock();
+                try {
+                    StringBuilder sb = new StringBuilder();
+                    if (fc.size() == 0) {
+                        sb.append(ManifestEntry.HEADER);
+                        sb.append("\n");
+                    }
+                    sb.append(entry.toLine());
+                    sb.append("\n");
+                    ByteBuffer buffer = ByteBuffer.wrap(
+                            sb.toString().getBytes(StandardCharsets.UTF_8));
+                    while (buffer.hasRemaining()) {
+                        fc.write(buffer);
+                    }
+                    fc.force(false);
+                }
+                finally {
+                    lock.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Read every manifest in the input directory.
+     *
+     * @param dir The month directory.
+     * @return The current entry for each destination, keyed by destination
+     * in the order first seen.  The map is empty if the directory holds
+     * no manifests.
+     */
+    public static Map<String, ManifestEntry> read(Path dir) {
+
+        String                     method  = "read() - ";
+        Map<String, ManifestEntry> entries =
+                new LinkedHashMap<String, ManifestEntry>();
+
+        for (Path manifest : list(dir)) {
+            try (BufferedReader reader = Files.newBufferedReader(
+                    manifest, StandardCharsets.UTF_8)) {
+                String line = null;
+                while ((line = reader.readLine()) != null) {
+                    ManifestEntry entry = ManifestEntry.parse(line);
+                    if (entry != null) {
+                        entry.setManifest(manifest);
+                        entries.put(entry.getDestination(), entry);
+                    }
+                }
+            }
+            catch (IOException ioe) {
+                LOGGER.warn(method
+                        + "Unable to read manifest [ "
+                        + manifest.toString()
+                        + " ].  Error message [ "
+                        + ioe.getMessage()
+                        + " ].");
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * List the manifests in the input directory.
+     *
+     * @param dir The month directory.
+     * @return The manifest files found (may be empty).
+     */
+    public static List<Path> list(Path dir) {
+        String     method    = "list() - ";
+        List<Path> manifests = new ArrayList<Path>();
+        if (!Files.isDirectory(dir)) {
+            return manifests;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(
+                dir, MANIFEST_PREFIX + "*")) {
+            for (Path manifest : stream) {
+                manifests.add(manifest);
+            }
+        }
+        catch (IOException ioe) {
+            LOGGER.warn(method
+                    + "Unable to list manifests in [ "
+                    + dir.toString()
+                    + " ].  Error message [ "
+                    + ioe.getMessage()
+                    + " ].");
+        }
+        return manifests;
+    }
+}
@@ -0,0 +1,384 @@
+package mil.nga.logmgmt;
+
+import java.nio.file.Path;
+
+import mil.nga.util.ContentDigest;
+
+/**
+ * A single line in a month directory manifest describing one archive: what
+ * it was made from and the checksums of both the original content and the
+ * bytes actually stored.
+ *
+ * Fields are tab-separated and appear in the following order:
+ *
+ * <li>destination - archive file name relative to the month directory</li>
+ * <li>encoding - how the content was stored (see the ENCODING_ constants)</li>
+ * <li>stored size - size of the archive in bytes</li>
+ * <li>stored crc - CRC of the archive bytes</li>
+ * <li>source - absolute path of the original file</li>
+ * <li>source size - size of the original content in bytes</li>
+ * <li>source mtime - last modified time of the original (epoch millis)</li>
+ * <li>source crc - CRC of the original content</li>
+ * <li>source sha256 - SHA-256 of the original content (or "-")</li>
+ * <li>level - compression level of the stored bytes (or "-").  Lines
+ * written before the level was recorded have only the first nine 
+ * fields.</li>
+ */
+public class ManifestEntry {
+
+    /**
+     * Content stored as an unmodified copy of the source.
+     */
+    public static final String ENCODING_RAW = "raw";
+
+    /**
+     * Content stored as the single entry of a ZIP archive.
+     */
+    public static final String ENCODING_ZIP = "zip";
+
+    /**
+     * Content stored as a gzip file (possibly of several members).
+     */
+    public static final String ENCODING_GZIP = "gzip";
+
+    /**
+     * Content stored as a zlib stream compressed with a preset dictionary
+     * (see <code>PresetDictionary</code>).
+     */
+    public static final String ENCODING_ZLIB = "zlib";
+
+    /**
+     * Encoding of a reference (see <code>Manifest.referencesOf()</code>):
+     * the source was not stored as its content is held by the archive
+     * named as the destination.
+     */
+    public static final String ENCODING_REFERENCE = "ref";
+
+    /**
+     * Field delimiter.
+     */
+    public static final String DELIMITER = "\t";
+
+    /**
+     * Header written at the top of every manifest file.
+     */
+    public static final String HEADER = "# destination\tencoding\tstored.size"
+            + "\tstored.crc\tsource\tsource.size\tsource.mtime\tsource.crc"
+            + "\tsource.sha256\tlevel";
+
+    /**
+     * Number of fields in a manifest line.
+     */
+    private static final int FIELD_COUNT = 10;
+
+    private String destination  = null;
+    private String encoding     = null;
+    private long   storedSize   = -1;
+    private String storedCrc    = ContentDigest.NONE;
+    private String source       = null;
+    private long   sourceSize   = -1;
+    private long   sourceMtime  = -1;
+    private String sourceCrc    = ContentDigest.NONE;
+    private String sourceSha256 = ContentDigest.NONE;
+    private String level        = ContentDigest.NONE;
+
+    /**
+     * The manifest file the entry was read from (not part of the line).
+     */
+    private Path   manifest     = null;
+
+    /**
+     * Default constructor.
+     */
+    public ManifestEntry() { }
+
+    /**
+     * Convenience constructor used when an archive has just been written.
+     *
+     * @param destination Archive file name relative to the month directory.
+     * @param encoding How the content was stored.
+     * @param stored Digest of the bytes written to the archive.
+     * @param source Absolute path of the original file.
+     * @param sourceMtime Last modified time of the original file.
+     * @param content Digest of the original content.
+     */
+    public ManifestEntry(
+            String        destination,
+            String        encoding,
+            ContentDigest stored,
+            String        source,
+            long          sourceMtime,
+            ContentDigest content) {
+        setDestination(destination);
+        setEncoding(encoding);
+        setStoredSize(stored.getSize());
+        setStoredCrc(stored.getCrc());
+        setSource(source);
+        setSourceSize(content.getSize());
+        setSourceMtime(sourceMtime);
+        setSourceCrc(content.getCrc());
+        setSourceSha256(content.getSha256());
+    }
+
+    /**
+     * Parse a single manifest line.
+     *
+     * @param line A line read from a manifest file.
+     * @return The entry, or null if the line is a comment or is malformed
+     * (e.g. torn by a crash part way through an append).
+     */
+    public static ManifestEntry parse(String line) {
+        if ((line == null) || line.isEmpty() || line.startsWith("#")) {
+            return null;
+        }
+        String[] fields = line.split(DELIMITER, -1);
+        if ((fields.length != FIELD_COUNT) && 
+                (fields.length != FIELD_COUNT - 1)) {
+            return null;
+        }
+        try {
+            ManifestEntry entry = new ManifestEntry();
+            entry.setDestination(fields[0]);
+            entry.setEncoding(fields[1]);
+            entry.setStoredSize(Long.parseLong(fields[2]));
+            entry.setStoredCrc(fields[3]);
+            entry.setSource(fields[4]);
+            entry.setSourceSize(Long.parseLong(fields[5]));
+            entry.setSourceMtime(Long.parseLong(fields[6]));
+            entry.setSourceCrc(fields[7]);
+            entry.setSourceSha256(fields[8]);
+            if (fields.length == FIELD_COUNT) {
+                entry.setLevel(fields[9]);
+            }
+            return entry;
+        }
+        catch (NumberFormatException nfe) {
+            return null;
+        }
+    }
+
+    /**
+     * Format the entry as a manifest line (without line terminator).
+     *
+     * @return The manifest line.
+     */
+    public String toLine() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(getDestination());
+        sb.append(DELIMITER);
+        sb.append(getEncoding());
+        sb.append(DELIMITER);
+        sb.append(getStoredSize());
+        sb.append(DELIMITER);
+        sb.append(getStoredCrc());
+        sb.append(DELIMITER);
+        sb.append(getSource());
+        sb.append(DELIMITER);
+        sb.append(getSourceSize());
+        sb.append(DELIMITER);
+        sb.append(getSourceMtime());
+        sb.append(DELIMITER);
+        sb.append(getSourceCrc());
+        sb.append(DELIMITER);
+        sb.append(getSourceSha256());
+        sb.append(DELIMITER);
+        sb.append(getLevel());
+        return sb.toString();
+    }
+
+    /**
+     * Accessor method for the archive file name relative to the month directory.
+     * @return The archive file name relative to the month directory.
+     */
+    public String getDestination() {
+        return destination;
+    }
+
+    /**
+     * Accessor method for the encoding used to store the content.
+     * @return The encoding used to store the content.
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Accessor method for the compression level of the stored bytes.
+     * @return The level name (e.g. <code>fast</code>) or <code>NONE</code>.
+     */
+    public String getLevel() {
+        return level;
+    }
+
+    /**
+     * Accessor method for the manifest file the entry was read from.
+     * @return The manifest file (null if the entry was not read from a 
+     * manifest).
+     */
+    public Path getManifest() {
+        return manifest;
+    }
+
+    /**
+     * Accessor method for the absolute path of the original file.
+     * @return The absolute path of the original file.
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Accessor method for the CRC of the original content.
+     * @return The CRC of the original content.
+     */
+    public String getSourceCrc() {
+        return sourceCrc;
+    }
+
+    /**
+     * Accessor method for the last modified time of the original file.
+     * @return The last modified time of the original file.
+     */
+    public long getSourceMtime() {
+        return sourceMtime;
+    }
+
+    /**
+     * Accessor method for the SHA-256 digest of the original content.
+     * @return The SHA-256 digest of the original content.
+     */
+    public String getSourceSha256() {
+        return sourceSha256;
+    }
+
+    /**
+     * Accessor method for the size of the original content.
+     * @return The size of the original content.
+     */
+    public long getSourceSize() {
+        return sourceSize;
+    }
+
+    /**
+     * Accessor method for the CRC of the archive bytes.
+     * @return The CRC of the archive bytes.
+     */
+    public String getStoredCrc() {
+        return storedCrc;
+    }
+
+    /**
+     * Accessor method for the size of the archive.
+     * @return The size of the archive.
+     */
+    public long getStoredSize() {
+        return storedSize;
+    }
+
+    /**
+     * Mutator method for the archive file name relative to the month directory.
+     * @param value The archive file name relative to the month directory.
+     */
+    public void setDestination(String value) {
+        destination = clean(value);
+    }
+
+    /**
+     * Mutator method for the encoding used to store the content.
+     * @param value The encoding used to store the content.
+     */
+    public void setEncoding(String value) {
+        encoding = clean(value);
+    }
+
+    /**
+     * Mutator method for the compression level of the stored bytes.
+     * @param value The level name.
+     */
+    public void setLevel(String value) {
+        level = clean(value);
+    }
+
+    /**
+     * Mutator method for the manifest file the entry was read from.
+     * @param value The manifest file.
+     */
+    public void setManifest(Path value) {
+        manifest = value;
+    }
+
+    /**
+     * Mutator method for the absolute path of the original file.
+     * @param value The absolute path of the original file.
+     */
+    public void setSource(String value) {
+        source = clean(value);
+    }
+
+    /**
+     * Mutator method for the CRC of the original content.
+     * @param value The CRC of the original content.
+     */
+    public void setSourceCrc(String value) {
+        sourceCrc = clean(value);
+    }
+
+    /**
+     * Mutator method for the last modified time of the original file.
+     * @param value The last modified time of the original file.
+     */
+    public void setSourceMtime(long value) {
+        sourceMtime = value;
+    }
+
+    /**
+     * Mutator method for the SHA-256 digest of the original content.
+     * @param value The SHA-256 digest of the original content.
+     */
+    public void setSourceSha256(String value) {
+        sourceSha256 = clean(value);
+    }
+
+    /**
+     * Mutator method for the size of the original content.
+     * @param value The size of the original content.
+     */
+    public void setSourceSize(long value) {
+        sourceSize = value;
+    }
+
+    /**
+     * Mutator method for the CRC of the archive bytes.
+     * @param value The CRC of the archive bytes.
+     */
+    public void setStoredCrc(String value) {
+        storedCrc = clean(value);
+    }
+
+    /**
+     * Mutator method for the size of the archive.
+     * @param value The size of the archive.
+     */
+    public void setStoredSize(long value) {
+        storedSize = value;
+    }
+
+    /**
+     * Ensure a field value cannot break the line format.
+     *
+     * @param value The raw value.
+     * @return The value with tabs and line terminators replaced, or
+     * <code>NONE</code> if the value is null or empty.
+     */
+    private static String clean(String value) {
+        if ((value == null) || value.isEmpty()) {
+            return ContentDigest.NONE;
+        }
+        return value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    @Override
+    public String toString() {
+        return toLine();
+    }
+}
@@ -1,881 +1,2956 @@
-package mil.nga.logmgmt;
-
-import java.io.File;
-import java.io.IOException;
-import java.net.InetAddress;
-import java.net.URI;
-import java.net.UnknownHostException;
-import java.nio.file.FileSystem;
-import java.nio.file.FileSystems;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.nio.file.attribute.BasicFileAttributeView;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.nio.file.attribute.FileAttribute;
-import java.nio.file.attribute.PosixFilePermission;
-import java.nio.file.attribute.PosixFilePermissions;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Properties;
-import java.util.Set;
-
-import static java.nio.file.StandardCopyOption.*;
-
-import mil.nga.logmgmt.exceptions.OutputException;
-import mil.nga.util.FileUtils;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-
-public class OutputFile {
-
-    /**
-     * Set up the LogBack system for use throughout the class
-     */        
-    private static final Logger LOGGER = 
-            LoggerFactory.getLogger(OutputFile.class);
-    
-    private String  application  = null;
-    private String  customPrefix = null;
-    private int     outputDelay  = -1;
-    private String  outputPath   = null;
-    private String  serverGroup  = null;
-    private boolean compress     = false;
-    
-    /**
-     * Default host name if the host name cannot be determined.
-     */
-    public static final String DEFAULT_HOST = "unknown";
-    
-    /**
-     * Default host name if the host name cannot be determined.
-     */
-    public static final String DEFAULT_APPLICATION = "default";
-    
-    /**
-     * Length of the temporary filename that will be used as an intermediate
-     * file when attempting to perform "move with compression" on Windows 
-     * servers.
-     */
-    public static final int TEMP_FILENAME_LENGTH = 8;
-    
-    /**
-     * When constructing the destination path we always need to utilize the 
-     * forward slash character for both Linux and Windows.  
-     */
-    public static final String PATH_SEPARATOR = "/";
-    
-    /**
-     * Collects the required parameters and invokes processing.
-     * 
-     * @param props
-     * @param serverGroup
-     * @param customPrefix A string that will be added to the output file name.
-     * @throws OutputException
-     */
-    public OutputFile (
-            Properties props,
-            String     serverGroup,
-            String     customPrefix) throws OutputException {
-        
-        setApplication(props.getProperty(LogMgmtI.APPLICATION_NAME, null));
-        setOutputBasePath(props.getProperty(LogMgmtI.OUTPUT_BASE_PATH, null));
-        setOutputDelay(props.getProperty(LogMgmtI.OUTPUT_DELAY, null));
-        setCustomPrefix(customPrefix);
-        setServerGroup(serverGroup);
-        setCompression(props.getProperty(LogMgmtI.OUTPUT_COMPRESS, null));
-        
-    }
-    
-    /**
-     * Using NIO2 get the file attributes and return the last modified date.
-     * 
-     * @param file An on-disk file.
-     * @return The last modified date.
-     * @throws IOException Thrown if there are problems getting the file 
-     * attribute information.
-     */
-    public long getFileDate(Path file) throws IOException {
-        BasicFileAttributes attr = Files.getFileAttributeView(
-                file, BasicFileAttributeView.class).readAttributes();
-        return attr.lastModifiedTime().toMillis();
-    }
-    
-    /**
-     * This class received a list of "candidate" files for archive.  Any logic 
-     * required to make a decision on whether the file should be archived is 
-     * to be added here.
-     * 
-     * @param file Candidate file.
-     * @return True if we should proceed with archiving, false otherwise.
-     * @throws IOException Thrown if there are problems getting the file 
-     * attribute information.
-     */
-    private boolean archive (Path file) throws IOException {
-        
-        String  method   = "archive() - ";
-        boolean archive  = false;
-        long    fileDate = getFileDate(file);
-        long    now      = Calendar.getInstance().getTimeInMillis();
-        long    daysOld  = (now - fileDate) / (24 * 60 * 60 * 1000);
-        
-        if (daysOld >= getOutputDelay()) {
-            archive = true;
-        }
-        else {
-            LOGGER.debug(method 
-                    + "Input file [ "
-                    + file.getFileName().toString() 
-                    + " ] is not old enough to archive.  File must be more "
-                    + "than [ "
-                    + Integer.toString(getOutputDelay()) 
-                    + " ] days old.");
-        }
-        return archive;
-    }
-    
-    /**
-     * Extract the file extension from an input file name.
-     * 
-     * @param fileName The file name.
-     * @return The file extension.
-     */
-    private String getFileExtension(String fileName) {
-        if(fileName.lastIndexOf(".") != -1 && fileName.lastIndexOf(".") != 0) {
-            return stripVersion(fileName.substring(fileName.lastIndexOf(".")+1));
-        }
-        else {
-            return "";
-        }
-    }
-    
-    
-    /**
-     * Remove the extension from a filename.
-     * 
-     * @param value The input filename.
-     * @return The filename without the extension.
-     */
-    static String stripVersion (String value) {
-        if (value == null) return null;
-        int pos = value.lastIndexOf("-");
-        if (pos == -1) return value;
-        return value.substring(0, pos);
-    }
-    
-    /**
-     * Remove the extension from a filename.
-     * 
-     * @param value The input filename.
-     * @return The filename without the extension.
-     */
-    static String stripExtension (String value) {
-        if (value == null) return null;
-        int pos = value.lastIndexOf(".");
-        if (pos == -1) return value;
-        return value.substring(0, pos);
-    }
-    
-    /**
-     * Get the month associated with the input date.
-     * 
-     * @param date The input date extracted from a target file.
-     * @return The month associated with the input Date.
-     */
-    private String getMonth(Date date) {
-        SimpleDateFormat sdf = new SimpleDateFormat("MMM");
-        return sdf.format(date);
-    }
-    
-    /**
-     * Get the year associated with the input date.
-     * 
-     * @param date The input date extracted from a target file.
-     * @return The year associated with the input date.
-     */
-    private String getYear(Date date) {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy");
-        return sdf.format(date);
-    }
-    
-    /**
-     * Get the year/month/day associated with the input date.
-     * 
-     * @param date The input date extracted from a target file.
-     * @return The year/month/day associated with the input Date.
-     */
-    private String getYearMonthDay(Date date) {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd");
-        return sdf.format(date);
-    }
-    
-    /**
-     * If the path doesn't exist, create it.
-     * 
-     * @param path A path string. 
-     */
-    private boolean checkPath (String path) {
-        
-        String  method = "checkPath() - ";
-        boolean pathOK = false;
-        
-        try {
-            
-            Path dir = Paths.get(path);
-            if (!isWindows()) {
-                Set<PosixFilePermission> perms =
-                        PosixFilePermissions.fromString("rwxr-xr-x");
-                FileAttribute<Set<PosixFilePermission>> attr =
-                        PosixFilePermissions.asFileAttribute(perms);
-                Files.createDirectories(dir, attr);
-            }
-            else {
-                Files.createDirectories(dir);
-            }
-            pathOK = true;
-            
-        }
-        catch (IOException ioe) {
-            LOGGER.error(method
-                    + "Unable to determine the state of the requested output "
-                    + "path [ "
-                    + path 
-                    + " ].  An unexpected IOException was encountered.  "
-                    + "Message [ "
-                    + ioe.getMessage()
-                    + " ].");
-        }
-        return pathOK;
-    }
-    
-    /**
-     * Get the host name of the machine on which this code is running.
-     *  
-     * @return The host name (with domain information stripped off) or 
-     * the DEFAULT_HOST string if we're unable to determine the host 
-     * name.
-     */
-    private String getHostName() {
-        
-        String host   = null;
-        String method = "getHostName() - ";
-        
-        try {
-            host = InetAddress.getLocalHost().getCanonicalHostName();
-            if ((host == null) || (host.isEmpty())) {
-                host = DEFAULT_HOST;
-            }
-            else {
-                if (host.indexOf(".") > 0) {
-                    host = host.substring(0, host.indexOf("."));
-                }
-            }
-        }
-        catch (UnknownHostException uhe) {
-            LOGGER.warn(method 
-                    + "Unexpected UnknownHostException encountered.  "
-                    + "Error ["
-                    + uhe.getMessage()
-                    + "].");
-            host = DEFAULT_HOST;
-        }
-        return host;
-    }
-    
-    /**
-     * Accessor method for the optional input string identifying the 
-     * application that generated the log file.
-     * 
-     * @return The application that generated the log file.
-     */
-    public String getApplication() {
-        return application;
-    }
-    
-    /**
-     * Accessor method for the boolean indicating whether or not compression 
-     * should be applied to the output file(s).
-     * @return True or false.
-     */
-    public boolean getCompression() {
-        return compress;
-    }
-    
-    /**
-     * Mutator method for the custom prefix.
-     * @return Custom prefix string.
-     */
-    public String getCustomPrefix() {
-        return customPrefix;
-    }
-    
-    /**
-     * Determine if the target destination file exists.
-     * 
-     * @param destPath The directory path in which the file will be stored.
-     * @param filename The anticipated name of the file.
-     * @param extension The file name extension.
-     * @return True if the target file exists, false otherwise.
-     */
-    private boolean exists(String destPath, String filename, String extension) {
-        StringBuilder sb = new StringBuilder();
-        sb.append(destPath);
-        if (!destPath.endsWith(File.separator)) {
-            sb.append(File.separator);
-        }
-        sb.append(filename);
-        sb.append(extension);
-        Path destination = Paths.get(sb.toString());
-        return Files.exists(destination);
-    }
-    
-    /**
-     * Method implemented to insert a version number in the output file
-     * name if the calculated filename already exists.  This logic was 
-     * implemented because we found that there were audit logs that were 
-     * creating several each day with a version number that was interpreted 
-     * as being part of the extension.
-     * 
-     * @param destPath The path in which the file will be stored.
-     * @param partialFilename The calculated filename.
-     * @param extension The output file extension.
-     * @return A filename guaranteed not to exist.
-     */
-    private String checkVersioning(
-            String destPath, 
-            String partialFilename, 
-            String extension) {
-        
-        String method    = "checkVersioning() - ";
-        String candidate = new String(partialFilename);
-        int    version   = 0;
-        
-        while (exists(destPath, candidate, extension)) {
-            version++;
-            candidate = partialFilename + "-" + Integer.toString(version);
-            LOGGER.debug(method 
-                    + "File exists.  Trying [ "
-                    + candidate + extension 
-                    + " ].");
-        }
-        return (candidate + extension);
-    }
-    
-    /**
-     * The destination file fill consist of the following components: 
-     * 
-     * <li>host name</li>
-     * <li>custom prefix</li>
-     * <li>actual filename</li>
-     * <li>date archived</li>
-     * <li>extension</li>
-     * 
-     * @param destPath the destination path.
-     * @param file The file to be archived.
-     * @return The calculated file name.
-     */
-    public String getDestinationFile(String destPath, Path file) throws IOException {
-        
-        String filename  = file.getFileName().toString();
-        String extension = getFileExtension(filename);
-        filename         = stripExtension(filename);
-        StringBuilder sb = new StringBuilder();
-        
-        // Add the host name
-        sb.append(getHostName());
-        sb.append("_");
-        
-        // Add the custom prefix if provided
-        if (!(getCustomPrefix() == null) && (!getCustomPrefix().isEmpty())) {
-            sb.append(getCustomPrefix());
-            sb.append("_");
-        }
-        
-        sb.append(filename);
-        sb.append("_");
-        
-        // Append the year and month
-        Date date = new Date(getFileDate(file));
-        sb.append(getYearMonthDay(date));
-
-        if (getCompression()) {
-            extension = ".zip";
-        }
-        else {
-            extension = "." + extension;
-        }
-        return checkVersioning(destPath, sb.toString(), extension);
-    }
-
-    
-    /**
-     * The destination path will be made of the following components:
-     * 
-     * <li>base path (value of output.path property)</li>
-     * <li>server group</li>
-     * <li>application</li>
-     * <li>year</li>
-     * <li>month</li>
-     * 
-     * Updated for cross-platform usage.  When working on Windows we found 
-     * that when using UNC path names for remote files you must use "/" for
-     * the path separator or all sorts of problems ensue.  As such this 
-     * method was updated to remove the use of File.separator and just use
-     * a forward slash for both Windows/Linux platorms.
-     * 
-     * @param file The target file that we are going to archive.
-     * @return The target destination path.
-     * @throws IOException  Thrown if there are problems getting the file 
-     * attribute information.
-     * @throws OutputException Thrown if we are unable to create the output
-     * path directory.
-     */
-    public String getDestinationPath(Path file) 
-            throws IOException, OutputException {
-        
-        String        method = "getDestinationPath() - ";
-        StringBuilder sb     = new StringBuilder();
-        
-        // Append the output path
-        sb.append(getOutputBasePath());
-        if (!sb.toString().endsWith(PATH_SEPARATOR)) {
-            sb.append(PATH_SEPARATOR);
-        }
-        sb.append(getServerGroup());
-        sb.append(PATH_SEPARATOR);
-        sb.append(getApplication());
-        sb.append(PATH_SEPARATOR);
-        
-        // Append the year and month
-        Date date = new Date(getFileDate(file));
-        sb.append(getYear(date));
-        sb.append(PATH_SEPARATOR);
-        sb.append(getMonth(date));
-        sb.append(PATH_SEPARATOR);
-        
-        // Now we have the path...make sure it exists.
-        if (!checkPath(sb.toString())) {
-            throw new OutputException(method 
-                    + "Unable to create the full path for the destination. "
-                    + "Target destination was [ "
-                    + sb.toString()
-                    + " ].  See previous messages for more information.");
-        }
-        return sb.toString();
-    }
-    
-    /**
-     * Generate a valid file path containing a random filename on the local 
-     * file system.  This is used on Windows platforms where the zip filesystem
-     * has a bug writing to remote filesystems.
-     *  
-     * @return A file path consisting of the Java temp directory with a random 
-     * 8-character filename appended to it.
-     */
-    public String getIntermediatePath() {
-        StringBuilder sb = new StringBuilder();
-        sb.append(System.getProperty("java.io.tmpdir"));
-        if (!sb.toString().endsWith(File.separator)) {
-            sb.append(File.separator);
-        }
-        sb.append(FileUtils.generateUniqueToken(TEMP_FILENAME_LENGTH));
-        sb.append(".zip");
-        return sb.toString();
-    }
-    
-    /**
-     * Accessor method for the required string identifying the output
-     * base path.
-     * @return The output base path.
-     */
-    public String getOutputBasePath() {
-        return outputPath;
-    }
-    
-    /**
-     * Accessor method for the number of days to wait before archiving 
-     * a matching file.
-     * @return int number of days.
-     */
-    public int getOutputDelay() {
-        return outputDelay;
-    }
-    
-    /**
-     * Accessor method for the required string identifying the server group.
-     * @return The server group name.
-     */
-    public String getServerGroup() {
-        return serverGroup;
-    }
-    
-    /** 
-     * Check to see if the server is windows by determine the type of filesystem.
-     * @return True if the file system is not posix-compliant.
-     */
-    private boolean isWindows() {
-        return !FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
-    }
-    
-    /**
-     * Move the target file to a destination that (hopefully) resides on disk.
-     * @param file The source file to be moved.
-     * @throws OutputException Propogated from internal calls.
-     * @throws IOException Thrown if there is an issue accessing the file.
-     */
-    public void move(Path file) throws IOException, OutputException {
-        
-        String dest        = getDestinationPath(file);
-        String destFile    = getDestinationFile(dest, file);
-        String method      = "move() - ";
-        Path   destination = Paths.get(dest + destFile);
-        
-        LOGGER.info(method 
-                + "Moving [ "
-                + file.toAbsolutePath() 
-                + " ] to [ "
-                + destination.toAbsolutePath()
-                + " ].");
-        
-        Files.move(file, destination, REPLACE_EXISTING);
-        
-    }
-    
-    /**
-     * Move the target file to a destination that (hopefully) resides on disk.
-     * 
-     * @param file The source file to be moved.
-     * @throws OutputException Propogated from internal methods.
-     * @throws IOException Propagated from the the internal methods that access
-     * file attributes.
-     */
-    public void moveWithCompression(Path file) throws IOException, OutputException {
-        
-        String     dest        = getDestinationPath(file);
-        String     destFile    = getDestinationFile(dest, file);
-        String     destination = dest + destFile;
-        String     method      = "moveWithCompression() - ";
-        FileSystem zipFS       = null; 
-        
-        LOGGER.info(method 
-                + "Moving [ "
-                + file.toAbsolutePath() 
-                + " ] to [ "
-                + destination
-                + " ].");
-        
-        try {
-            
-            // Create the output Zip filesystem
-            Map<String, String> env = new HashMap<>();
-            env.put("create", "true");
-            
-            // Ensure the destination is a valid URI
-            File temp = new File(destination);
-            URI zipURI = URI.create(String.format("jar:%s", temp.toURI()));
-            LOGGER.debug("Attempting to create ZIP URI [ "
-                    + zipURI.toString()
-                    + "].");
-            
-            zipFS = FileSystems.newFileSystem(zipURI, env);
-            
-            // The destination file is relative to the Zip FileSystem
-            Path pathInZipFile = zipFS.getPath(file.getFileName().toString());
-            LOGGER.debug(method + "Initiating move into ZIP filesystem...");
-            
-            Files.move(file, pathInZipFile, StandardCopyOption.REPLACE_EXISTING);
-            
-        }
-        catch (IOException ioe) {
-            LOGGER.error(method
-                    + "An unexpected IOException was encountered while moving "
-                    + "file [ "
-                    + file.toAbsolutePath().toString()
-                    + " ] into zip file [ "
-                    + destination
-                    + " ].  Error message [ "
-                    + ioe.getMessage()
-                    + " ].");
-        }
-        finally {
-            if (zipFS != null) { 
-                try { zipFS.close(); } catch (Exception e) {}
-            }
-        }
-    }
-    
-    /**
-     * Move the target file to a destination that (hopefully) resides on disk.
-     * The Windows ZIP filesystem implementation has a bug.  When creating the ZIP 
-     * filesystem on a remote disk, the application throws ReadOnlyFilesystem 
-     * exception.  In order to work around this limitation we create the ZIP 
-     * archive in a temporary (local) directory, then move the created ZIP file to 
-     * the final resting place.
-     * 
-     * @param file The source file to be moved.
-     * @throws OutputException Propogated from internal methods.
-     * @throws IOException Propagated from the the internal methods that access
-     * file attributes.
-     */
-    public void moveWithCompressionWin(Path file) throws IOException, OutputException {
-        
-        String     dest         = getDestinationPath(file);
-        String     intermediate = getIntermediatePath();
-        String     destFile     = getDestinationFile(dest, file);
-        String     destination  = dest + destFile;
-        String     method       = "moveWithCompressionWin() - ";
-        FileSystem zipFS        = null; 
-        
-        LOGGER.info(method 
-                + "Intermediate move [ "
-                + file.toAbsolutePath() 
-                + " ] to [ "
-                + intermediate
-                + " ].");
-        
-        try {
-            
-            // Create the output Zip filesystem
-            Map<String, String> env = new HashMap<>();
-            env.put("create", "true");
-           
-            // Ensure the destination is a valid URI
-            File temp = new File(intermediate);
-            URI zipURI = URI.create(String.format("jar:%s", temp.toURI()));
-            
-            LOGGER.debug("Attempting to create ZIP URI [ "
-                    + zipURI.toString()
-                    + "].");
-            
-            zipFS = FileSystems.newFileSystem(zipURI, env);
-            
-            // The destination file is relative to the Zip FileSystem
-            Path pathInZipFile = zipFS.getPath(file.getFileName().toString());
-           
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug(method + "Moving source file into ZIP archive...");
-            }
-            
-            Files.move(file, pathInZipFile, StandardCopyOption.REPLACE_EXISTING);
-            
-            if (zipFS != null) { 
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug(method 
-                            + "File [ "
-                            + file.getFileName().toString()
-                            + " ] successfully added to intermediate archive [ "
-                            + temp.toURI().toString()
-                            + " ].  Closing the ZIP filesystem.");
-                }
-                try { zipFS.close(); } catch (Exception e) {}
-            }
-            
-            File tempDest = new File(destination);
-            LOGGER.info(method 
-                    + "Moving intermediate archive [ "
-                    + temp.toURI().toString() 
-                    + " ] to [ "
-                    + tempDest.toURI().toString()
-                    + " ].");
-            
-            Files.move(
-                    Paths.get(temp.toURI()), 
-                    Paths.get(tempDest.toURI()), 
-                    StandardCopyOption.REPLACE_EXISTING);
-            
-        }
-        catch (IOException ioe) {
-            LOGGER.error(method
-                    + "An unexpected IOException was encountered while moving "
-                    + "file [ "
-                    + file.toAbsolutePath().toString()
-                    + " ] into zip file [ "
-                    + destination
-                    + " ].  Error message [ "
-                    + ioe.getMessage()
-                    + " ].");
-        }
-        finally {
-            if (zipFS != null) { 
-                try { zipFS.close(); } catch (Exception e) {}
-            }
-        }
-    }
-    
-    
-    /**
-     * Process the input list of candidate files.
-     * 
-     * @param candidates List of candidate files for archive.
-     */
-    public void process(List<Path> candidates) {
-        String method = "process() - ";
-        if ((candidates != null) && (candidates.size() > 0)) {
-            for (Path path : candidates) {
-                try {
-                    if (archive(path)) {
-                        if (getCompression()) {
-                            if (isWindows()) {
-                                moveWithCompressionWin(path);
-                            }
-                            else {
-                                moveWithCompression(path);
-                            }
-                        }
-                        else {
-                            move(path);
-                        }
-                    }
-                }
-                catch (OutputException oe) {
-                    LOGGER.error(method 
-                            + "An unexpected IOException was encountered " 
-                            + "while attempting to create the output "
-                            + "directory associated with file [ "
-                            + path.toAbsolutePath()
-                            + " ].  This file will be skipped.  Error "
-                            + "message [ "
-                            + oe.getMessage()
-                            + " ].");
-                }
-                catch (IOException ioe) {
-                    LOGGER.error(method 
-                            + "An unexpected IOException was encountered " 
-                            + "while retrieving file attributes associated "
-                            + "with file [ "
-                            + path.toAbsolutePath()
-                            + " ].  This file will be skipped.  Error "
-                            + "message [ "
-                            + ioe.getMessage()
-                            + " ].");
-                }
-            }
-        }
-    }
-    
-    /**
-     * Mutator method for the optional input string identifying the 
-     * application that generated the log file.
-     * 
-     * @param value The application that generated the log file.
-     */
-    public void setApplication(String value) {
-        String method = "setApplication() - ";
-        if ((value != null) && (!value.isEmpty())) {
-            application = value.trim().toLowerCase();
-        }
-        else {
-            application = DEFAULT_APPLICATION;
-            LOGGER.warn(method
-                    + "Input application name is null or empty.  Using [ "
-                    + DEFAULT_APPLICATION
-                    + " ].");
-        }
-    }
-    
-    /**
-     * Mutator method for the optional input string identifying whether or not
-     * compression should be applied to the output file.
-     * 
-     * @param value True or false.  The default setting is false.
-     */
-    public void setCompression(String value) {
-        if ((value != null) && (!value.isEmpty())) {
-            compress = Boolean.parseBoolean(value);
-        }
-    }
-    
-    /**
-     * Mutator method for the custom prefix.
-     * @param value Custom prefix string.
-     */
-    public void setCustomPrefix(String value) {
-        customPrefix = value;
-    }
-      
-    /**
-     * Mutator method for the optional input string identifying the 
-     * application that generated the log file.
-     * 
-     * @param value The application that generated the log file.
-     */
-    public void setOutputDelay(String value) {
-        if ((value == null) || (value.isEmpty())) {
-            outputDelay = LogMgmtI.DEFAULT_OUTPUT_DELAY;
-        }
-        else {
-            outputDelay = Integer.parseInt(value);
-        }
-    }
-    
-    /**
-     * Mutator method for the required output path parameter.  This 
-     * parameter will be the starting point for path to the output 
-     * log file.
-     * 
-     * @param value The top-level path where log files are stored.
-     * @throws OutputException Thrown if the required output path is not
-     * supplied.
-     */
-    public void setOutputBasePath(String value) throws OutputException {
-        
-        String method = "setOutputPath() - ";
-        
-        if ((value != null) && (!value.isEmpty())) {
-            outputPath = value.trim().toLowerCase();
-        }
-        else {
-            throw new OutputException(method
-                    + "The required property [ "
-                    + LogMgmtI.OUTPUT_BASE_PATH 
-                    + " ] was not supplied.");
-        }
-    }
-    
-    /**
-     * Mutator method for the 
-     * @param value
-     */
-    public void setServerGroup(String value) {
-        if ((value != null) && (!value.isEmpty())) {
-            serverGroup = value.trim().toLowerCase();
-        }
-        else {
-            serverGroup = LogMgmtI.DEFAULT_SERVER_GROUP;
-        }
-    }
-    
-    /**
-     * Dump the input parameters.
-     */
-    public String toString() {
-        
-        String        newLine = System.getProperty("line.separator");
-        StringBuilder sb      = new StringBuilder();
-        sb.append("Output path  : ");
-        sb.append(getOutputBasePath());
-        sb.append(newLine);
-        sb.append("Application  : ");
-        sb.append(getApplication());
-        sb.append(newLine);
-        sb.append("Server Group : ");
-        sb.append(getServerGroup());
-        sb.append(newLine);
-        sb.append("Compression  : ");
-        sb.append(Boolean.toString(getCompression()));
-        sb.append(newLine);
-        sb.append("Output Delay : ");
-        sb.append(Integer.toString(getOutputDelay()));
-        sb.append(newLine);    
-        
-        return sb.toString();
-    }
-    
-}
+package mil.nga.logmgmt;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static java.nio.file.StandardCopyOption.*;
+
+import mil.nga.logmgmt.exceptions.InputException;
+import mil.nga.logmgmt.exceptions.OutputException;
+import mil.nga.util.AccessLogRollup;
+import mil.nga.util.AccessLogSketches;
+import mil.nga.util.ChecksumOutputStream;
+import mil.nga.util.ColumnarLog;
+import mil.nga.util.ContentDigest;
+import mil.nga.util.FileUtils;
+import mil.nga.util.KeywordFilter;
+import mil.nga.util.LineSink;
+import mil.nga.util.ParallelGzipOutputStream;
+import mil.nga.util.Sidecar;
+import mil.nga.util.StackTraceSummary;
+import mil.nga.util.TimeIndex;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+public class OutputFile {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */        
+    private static final Logger LOGGER = 
+            LoggerFactory.getLogger(OutputFile.class);
+    
+    private String  application  = null;
+    private String  customPrefix = null;
+    private int     outputDelay  = -1;
+    private String  outputPath   = null;
+    private String  serverGroup  = null;
+    private boolean compress     = false;
+    private long    maxRuntime   = -1;
+    private int     workers      = 1;
+    private boolean deleteInput  = true;
+    private boolean sha256       = false;
+    private String  statePath    = null;
+    private boolean zeroCopy     = false;
+    private boolean verify       = false;
+    private boolean timeIndex    = false;
+    private boolean keywords     = false;
+    private boolean rollups      = false;
+    private boolean sketches     = false;
+    private boolean traces       = false;
+    private boolean columnar     = false;
+    private boolean dedupe       = false;
+    private boolean rotation     = false;
+    private boolean incremental  = false;
+    private long    latencyScale = 1L;
+    private String  format       = ManifestEntry.ENCODING_ZIP;
+    private int     threads      = Runtime.getRuntime().availableProcessors();
+    private int     blockSize    = ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE;
+    private long    dictionaryMaxSize = LogMgmtI.DEFAULT_DICTIONARY_MAX_SIZE_KB * 1024L;
+    private double  minThroughput     = LogMgmtI.DEFAULT_MIN_THROUGHPUT_MB * 1024.0 * 1024.0;
+    
+    /**
+     * Compression level applied to every file (null if the level is 
+     * selected per file by sampling).
+     */
+    private CompressionLevel level = CompressionLevel.DEFAULT;
+    
+    /**
+     * Preset dictionary used to compress small files (null if none is 
+     * configured).
+     */
+    private PresetDictionary dictionary = null;
+    
+    /**
+     * Journal for the run currently in progress (null if the journal could 
+     * not be created).
+     */
+    private RunJournal journal = null;
+    
+    /**
+     * Catalog of the archives written from this host (null if the catalog
+     * could not be opened).
+     */
+    private ArchiveCatalog catalog = null;
+
+    /**
+     * Index of the content archived from this host (null if deduplication
+     * is disabled or the index could not be opened).
+     */
+    private ContentIndex index = null;
+
+    /**
+     * Record of the source files archived from this host (null if rotation
+     * tracking is disabled or the record could not be opened).
+     */
+    private RotationTracker tracker = null;
+
+    /**
+     * The order in which candidate files are processed.
+     */
+    private SchedulePolicy schedule = SchedulePolicy.WALK;
+
+    /**
+     * Where the archives are written.  Manifests, sidecar files and the
+     * preset dictionary are always written under the output path.
+     */
+    private StorageBackend backend = null;
+
+    /**
+     * Destination file names handed out during this run.  When multiple 
+     * workers are in use two candidates may map to the same destination 
+     * name before either has been written to disk.
+     */
+    private final Set<String> reserved = new HashSet<String>();
+    
+    /**
+     * Default host name if the host name cannot be determined.
+     */
+    public static final String DEFAULT_HOST = "unknown";
+    
+    /**
+     * Default host name if the host name cannot be determined.
+     */
+    public static final String DEFAULT_APPLICATION = "default";
+    
+    /**
+     * Length of the temporary filename that will be used as an intermediate
+     * file when attempting to perform "move with compression" on Windows 
+     * servers.
+     */
+    public static final int TEMP_FILENAME_LENGTH = 8;
+    
+    /**
+     * When constructing the destination path we always need to utilize the 
+     * forward slash character for both Linux and Windows.  
+     */
+    public static final String PATH_SEPARATOR = "/";
+    
+    /**
+     * Collects the required parameters and invokes processing.
+     * 
+     * @param props
+     * @param serverGroup
+     * @param customPrefix A string that will be added to the output file name.
+     * @throws OutputException
+     */
+    public OutputFile (
+            Properties props,
+            String     serverGroup,
+            String     customPrefix) throws OutputException {
+        
+        setApplication(props.getProperty(LogMgmtI.APPLICATION_NAME, null));
+        setOutputBasePath(props.getProperty(LogMgmtI.OUTPUT_BASE_PATH, null));
+        setStorageBackend(props);
+        setOutputDelay(props.getProperty(LogMgmtI.OUTPUT_DELAY, null));
+        setCustomPrefix(customPrefix);
+        setServerGroup(serverGroup);
+        setCompression(props.getProperty(LogMgmtI.OUTPUT_COMPRESS, null));
+        setDeleteInput(props.getProperty(LogMgmtI.INPUT_FILE_DELETE, null));
+        setStatePath(props.getProperty(LogMgmtI.STATE_PATH, null));
+        setSha256(props.getProperty(LogMgmtI.OUTPUT_CHECKSUM_SHA256, null));
+        setDeduplicate(props.getProperty(LogMgmtI.OUTPUT_DEDUPE, null));
+        setRotationTracking(props.getProperty(LogMgmtI.INPUT_TRACK_ROTATION, null));
+        setIncremental(props.getProperty(LogMgmtI.INPUT_INCREMENTAL, null));
+        setZeroCopy(props.getProperty(LogMgmtI.OUTPUT_TRANSFER_ZEROCOPY, null));
+        setVerifyTransfer(props.getProperty(LogMgmtI.OUTPUT_TRANSFER_VERIFY, null));
+        setCompressionFormat(props.getProperty(LogMgmtI.OUTPUT_COMPRESS_FORMAT, null));
+        setCompressionThreads(props.getProperty(LogMgmtI.OUTPUT_COMPRESS_THREADS, null));
+        setBlockSize(props.getProperty(LogMgmtI.OUTPUT_COMPRESS_BLOCK_SIZE, null));
+        setTimeIndex(props.getProperty(LogMgmtI.OUTPUT_COMPRESS_INDEX, null));
+        setKeywordFilter(props.getProperty(LogMgmtI.OUTPUT_KEYWORDS, null));
+        setRollups(props.getProperty(LogMgmtI.OUTPUT_ROLLUPS, null));
+        setRollupLatencyUnit(props.getProperty(
+                LogMgmtI.OUTPUT_ROLLUPS_LATENCY_UNIT, null));
+        setSketches(props.getProperty(LogMgmtI.OUTPUT_SKETCHES, null));
+        setStackTraces(props.getProperty(LogMgmtI.OUTPUT_TRACES, null));
+        setColumnar(props.getProperty(LogMgmtI.OUTPUT_COLUMNAR, null));
+        setDictionary(props.getProperty(LogMgmtI.OUTPUT_COMPRESS_DICTIONARY, null));
+        setDictionaryMaxSize(props.getProperty(
+                LogMgmtI.OUTPUT_COMPRESS_DICTIONARY_MAX_SIZE, null));
+        setCompressionLevel(props.getProperty(LogMgmtI.OUTPUT_COMPRESS_LEVEL, null));
+        setMinThroughput(props.getProperty(
+                LogMgmtI.OUTPUT_COMPRESS_MIN_THROUGHPUT, null));
+        
+    }
+    
+    /**
+     * Using NIO2 get the file attributes and return the last modified date.
+     * 
+     * @param file An on-disk file.
+     * @return The last modified date.
+     * @throws IOException Thrown if there are problems getting the file 
+     * attribute information.
+     */
+    public long getFileDate(Path file) throws IOException {
+        BasicFileAttributes attr = Files.getFileAttributeView(
+                file, BasicFileAttributeView.class).readAttributes();
+        return attr.lastModifiedTime().toMillis();
+    }
+    
+    /**
+     * This class received a list of "candidate" files for archive.  Any logic 
+     * required to make a decision on whether the file should be archived is 
+     * to be added here.
+     * 
+     * @param file Candidate file.
+     * @return True if we should proceed with archiving, false otherwise.
+     * @throws IOException Thrown if there are problems getting the file 
+     * attribute information.
+     */
+    private boolean archive (Path file) throws IOException {
+        
+        String  method   = "archive() - ";
+        boolean archive  = false;
+        long    fileDate = getFileDate(file);
+        long    now      = Calendar.getInstance().getTimeInMillis();
+        long    daysOld  = (now - fileDate) / (24 * 60 * 60 * 1000);
+        
+        if (daysOld >= getOutputDelay()) {
+            archive = true;
+        }
+        else {
+            LOGGER.debug(method 
+                    + "Input file [ "
+                    + file.getFileName().toString() 
+                    + " ] is not old enough to archive.  File must be more "
+                    + "than [ "
+                    + Integer.toString(getOutputDelay()) 
+                    + " ] days old.");
+        }
+        return archive;
+    }
+    
+    /**
+     * Extract the file extension from an input file name.
+     * 
+     * @param fileName The file name.
+     * @return The file extension.
+     */
+    private String getFileExtension(String fileName) {
+        if(fileName.lastIndexOf(".") != -1 && fileName.lastIndexOf(".") != 0) {
+            return stripVersion(fileName.substring(fileName.lastIndexOf(".")+1));
+        }
+        else {
+            return "";
+        }
+    }
+    
+    
+    /**
+     * Remove the extension from a filename.
+     * 
+     * @param value The input filename.
+     * @return The filename without the extension.
+     */
+    static String stripVersion (String value) {
+        if (value == null) return null;
+        int pos = value.lastIndexOf("-");
+        if (pos == -1) return value;
+        return value.substring(0, pos);
+    }
+    
+    /**
+     * Remove the extension from a filename.
+     * 
+     * @param value The input filename.
+     * @return The filename without the extension.
+     */
+    static String stripExtension (String value) {
+        if (value == null) return null;
+        int pos = value.lastIndexOf(".");
+        if (pos == -1) return value;
+        return value.substring(0, pos);
+    }
+    
+    /**
+     * Get the month associated with the input date.
+     * 
+     * @param date The input date extracted from a target file.
+     * @return The month associated with the input Date.
+     */
+    private String getMonth(Date date) {
+        SimpleDateFormat sdf = new SimpleDateFormat("MMM");
+        return sdf.format(date);
+    }
+    
+    /**
+     * Get the year associated with the input date.
+     * 
+     * @param date The input date extracted from a target file.
+     * @return The year associated with the input date.
+     */
+    private String getYear(Date date) {
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy");
+        return sdf.format(date);
+    }
+    
+    /**
+     * Get the year/month/day associated with the input date.
+     * 
+     * @param date The input date extracted from a target file.
+     * @return The year/month/day associated with the input Date.
+     */
+    String getYearMonthDay(Date date) {
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd");
+        return sdf.format(date);
+    }
+    
+    /**
+     * If the path doesn't exist, create it.
+     * 
+     * @param path A path string. 
+     */
+    private boolean checkPath (String path) {
+        
+        String  method = "checkPath() - ";
+        boolean pathOK = false;
+        
+        try {
+            
+            Path dir = Paths.get(path);
+            if (!isWindows()) {
+                Set<PosixFilePermission> perms =
+                        PosixFilePermissions.fromString("rwxr-xr-x");
+                FileAttribute<Set<PosixFilePermission>> attr =
+                        PosixFilePermissions.asFileAttribute(perms);
+                Files.createDirectories(dir, attr);
+            }
+            else {
+                Files.createDirectories(dir);
+            }
+            pathOK = true;
+            
+        }
+        catch (IOException ioe) {
+            LOGGER.error(method
+                    + "Unable to determine the state of the requested output "
+                    + "path [ "
+                    + path 
+                    + " ].  An unexpected IOException was encountered.  "
+                    + "Message [ "
+                    + ioe.getMessage()
+                    + " ].");
+        }
+        return pathOK;
+    }
+    
+    /**
+     * Get the host name of the machine on which this code is running.
+     *  
+     * @return The host name (with domain information stripped off) or 
+     * the DEFAULT_HOST string if we're unable to determine the host 
+     * name.
+     */
+    String getHostName() {
+        
+        String host   = null;
+        String method = "getHostName() - ";
+        
+        try {
+            host = InetAddress.getLocalHost().getCanonicalHostName();
+            if ((host == null) || (host.isEmpty())) {
+                host = DEFAULT_HOST;
+            }
+            else {
+                if (host.indexOf(".") > 0) {
+                    host = host.substring(0, host.indexOf("."));
+                }
+            }
+        }
+        catch (UnknownHostException uhe) {
+            LOGGER.warn(method 
+                    + "Unexpected UnknownHostException encountered.  "
+                    + "Error ["
+                    + uhe.getMessage()
+                    + "].");
+            host = DEFAULT_HOST;
+        }
+        return host;
+    }
+    
+    /**
+     * Accessor method for the optional input string identifying the 
+     * application that generated the log file.
+     * 
+     * @return The application that generated the log file.
+     */
+    public String getApplication() {
+        return application;
+    }
+    
+    /**
+     * Accessor method for the boolean indicating whether or not compression 
+     * should be applied to the output file(s).
+     * @return True or false.
+     */
+    public boolean getCompression() {
+        return compress;
+    }
+    
+    /**
+     * Accessor method for the format of compressed archives.
+     * @return Either zip or gzip.
+     */
+    public String getCompressionFormat() {
+        return format;
+    }
+    
+    /**
+     * Accessor method for the number of threads used to compress a single
+     * file in the gzip format.
+     * @return The number of compression threads.
+     */
+    public int getCompressionThreads() {
+        return threads;
+    }
+    
+    /**
+     * Accessor method for the number of input bytes compressed into each
+     * member of a gzip archive.
+     * @return The block size in bytes.
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+    
+    /**
+     * Determine the compression level for the input file.  If the level is
+     * configured as auto the file is sampled, otherwise the configured 
+     * level is returned.
+     * 
+     * @param file The file to be compressed.
+     * @return The compression level.
+     */
+    public CompressionLevel getCompressionLevel(Path file) {
+        if (level != null) {
+            return level;
+        }
+        int threads = ManifestEntry.ENCODING_GZIP.equals(getEncoding(file)) ?
+                getCompressionThreads() : 1;
+        return CompressionLevel.select(file, getMinThroughput(), threads);
+    }
+    
+    /**
+     * Accessor method for the slowest acceptable compression rate when the
+     * compression level is selected automatically.
+     * @return The rate in bytes per CPU second.
+     */
+    public double getMinThroughput() {
+        return minThroughput;
+    }
+    
+    /**
+     * Accessor method for the preset dictionary.
+     * @return The preset dictionary (null if none is configured).
+     */
+    public PresetDictionary getDictionary() {
+        return dictionary;
+    }
+    
+    /**
+     * Accessor method for the size of the largest file compressed with the
+     * preset dictionary.
+     * @return The size in bytes.
+     */
+    public long getDictionaryMaxSize() {
+        return dictionaryMaxSize;
+    }
+    
+    /**
+     * Determine how the input file will be stored when compression is 
+     * enabled.  Files no larger than the dictionary size limit are 
+     * compressed with the preset dictionary (if one is configured), 
+     * everything else uses the configured compression format.
+     * 
+     * @param file The file to be archived.
+     * @return One of the ManifestEntry ENCODING_ constants.
+     */
+    private String getEncoding(Path file) {
+        if (getDictionary() != null) {
+            try {
+                if (Files.size(file) <= getDictionaryMaxSize()) {
+                    return ManifestEntry.ENCODING_ZLIB;
+                }
+            }
+            catch (IOException ioe) {
+                // Fall through to the configured format.
+            }
+        }
+        return getCompressionFormat();
+    }
+    
+    /**
+     * Accessor method for the boolean indicating whether or not the input
+     * file is removed once it has been archived.
+     * @return True or false.
+     */
+    public boolean getDeleteInput() {
+        return deleteInput;
+    }
+    
+    /**
+     * Mutator method for the custom prefix.
+     * @return Custom prefix string.
+     */
+    public String getCustomPrefix() {
+        return customPrefix;
+    }
+    
+    /**
+     * Determine if the target destination file exists.
+     * 
+     * @param destPath The directory path in which the file will be stored.
+     * @param filename The anticipated name of the file.
+     * @param extension The file name extension.
+     * @return True if the target file exists (or is held in the monthly
+     * container of this host), false otherwise.
+     * @throws IOException Thrown if the storage backend cannot be queried.
+     */
+    private boolean exists(String destPath, String filename, String extension)
+            throws IOException {
+        String        method = "exists() - ";
+        StringBuilder sb     = new StringBuilder();
+        sb.append(destPath);
+        if (!destPath.endsWith(File.separator)) {
+            sb.append(File.separator);
+        }
+        sb.append(filename);
+        sb.append(extension);
+        Path destination = Paths.get(sb.toString());
+        if (getStorageBackend().exists(keyOf(destination))) {
+            return true;
+        }
+        // Archives of a compacted month are held in this host's container.
+        Path container = ArchiveContainer.containerOf(
+                destination.getParent(), getHostName());
+        if (Files.exists(container)) {
+            try (ArchiveContainer archives = new ArchiveContainer(container)) {
+                return archives.contains(filename + extension);
+            }
+            catch (IOException ioe) {
+                LOGGER.warn(method
+                        + "Unable to read container [ "
+                        + container.toString()
+                        + " ].  Error message [ "
+                        + ioe.getMessage()
+                        + " ].");
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Method implemented to insert a version number in the output file
+     * name if the calculated filename already exists.  This logic was 
+     * implemented because we found that there were audit logs that were 
+     * creating several each day with a version number that was interpreted 
+     * as being part of the extension.
+     * 
+     * Names already recorded in the catalog are skipped without touching 
+     * the file system, so normally only the final candidate is probed.  
+     * The probe catches archives the catalog does not know about (e.g. 
+     * those written by another host).
+     * 
+     * @param destPath The path in which the file will be stored.
+     * @param partialFilename The calculated filename.
+     * @param extension The output file extension.
+     * @param yearMonthDay The yyyyMMdd date used in the filename.
+     * @return A filename guaranteed not to exist.
+     * @throws IOException Thrown if the storage backend cannot be queried.
+     */
+    synchronized String checkVersioning(
+            String destPath,
+            String partialFilename,
+            String extension,
+            String yearMonthDay) throws IOException {
+        
+        String      method    = "checkVersioning() - ";
+        String      candidate = new String(partialFilename);
+        int         version   = 0;
+        Set<String> used      = catalogued(destPath, yearMonthDay);
+        
+        while (used.contains(candidate + extension) || 
+                reserved.contains(destPath + candidate + extension) ||
+                exists(destPath, candidate, extension)) {
+            version++;
+            candidate = partialFilename + "-" + Integer.toString(version);
+            LOGGER.debug(method 
+                    + "File exists.  Trying [ "
+                    + candidate + extension 
+                    + " ].");
+        }
+        reserved.add(destPath + candidate + extension);
+        return (candidate + extension);
+    }
+    
+    /**
+     * Look up the archive names already used in a destination directory 
+     * for a single day.
+     * 
+     * @param destPath The path in which the file will be stored.
+     * @param yearMonthDay The yyyyMMdd date.
+     * @return The file names recorded in the catalog (empty if there is no
+     * catalog).
+     */
+    private Set<String> catalogued(String destPath, String yearMonthDay) {
+        Set<String>    names   = new HashSet<String>();
+        ArchiveCatalog current = catalog;
+        if (current != null) {
+            Path dir = Paths.get(destPath).toAbsolutePath().normalize();
+            for (CatalogEntry entry : current.find(getServerGroup(), 
+                    getApplication(), getHostName(), 
+                    yearMonthDay, yearMonthDay)) {
+                Path location = Paths.get(entry.getLocation());
+                if (dir.equals(location.getParent())) {
+                    names.add(location.getFileName().toString());
+                }
+            }
+        }
+        return names;
+    }
+    
+    /**
+     * The destination file fill consist of the following components: 
+     * 
+     * <li>host name</li>
+     * <li>custom prefix</li>
+     * <li>actual filename</li>
+     * <li>date archived</li>
+     * <li>extension</li>
+     * 
+     * @param destPath the destination path.
+     * @param file The file to be archived.
+     * @return The calculated file name.
+     */
+    public String getDestinationFile(String destPath, Path file) throws IOException {
+        
+        String filename     = file.getFileName().toString();
+        String extension    = getFileExtension(filename);
+        String yearMonthDay = getYearMonthDay(new Date(getFileDate(file)));
+        String name         = getDestinationName(filename, yearMonthDay);
+
+        if (getCompression()) {
+            String encoding = getEncoding(file);
+            if (ManifestEntry.ENCODING_ZLIB.equals(encoding)) {
+                extension = ArchiveDecoder.ZLIB_EXTENSION;
+            }
+            else if (ManifestEntry.ENCODING_GZIP.equals(encoding)) {
+                extension = ArchiveDecoder.GZIP_EXTENSION;
+            }
+            else {
+                extension = ArchiveDecoder.ZIP_EXTENSION;
+            }
+        }
+        else {
+            extension = "." + extension;
+        }
+        return checkVersioning(destPath, name, extension, yearMonthDay);
+    }
+    
+    /**
+     * Build the destination file name, less any version number and 
+     * extension, from the host name, the custom prefix (if provided), the
+     * name of the file and the date.
+     * 
+     * @param filename The name of the file to be archived.
+     * @param yearMonthDay The yyyyMMdd date used in the filename.
+     * @return The file name.
+     */
+    String getDestinationName(String filename, String yearMonthDay) {
+        
+        StringBuilder sb = new StringBuilder();
+        
+        // Add the host name
+        sb.append(getHostName());
+        sb.append("_");
+        
+        // Add the custom prefix if provided
+        if (!(getCustomPrefix() == null) && (!getCustomPrefix().isEmpty())) {
+            sb.append(getCustomPrefix());
+            sb.append("_");
+        }
+        
+        sb.append(stripExtension(filename));
+        sb.append("_");
+        
+        // Append the year, month and day
+        sb.append(yearMonthDay);
+        return sb.toString();
+    }
+
+    
+    /**
+     * The destination path will be made of the following components:
+     * 
+     * <li>base path (value of output.path property)</li>
+     * <li>server group</li>
+     * <li>application</li>
+     * <li>year</li>
+     * <li>month</li>
+     * 
+     * Updated for cross-platform usage.  When working on Windows we found 
+     * that when using UNC path names for remote files you must use "/" for
+     * the path separator or all sorts of problems ensue.  As such this 
+     * method was updated to remove the use of File.separator and just use
+     * a forward slash for both Windows/Linux platorms.
+     * 
+     * @param file The target file that we are going to archive.
+     * @return The target destination path.
+     * @throws IOException  Thrown if there are problems getting the file 
+     * attribute information.
+     * @throws OutputException Thrown if we are unable to create the output
+     * path directory.
+     */
+    public String getDestinationPath(Path file) 
+            throws IOException, OutputException {
+        return getDestinationPath(new Date(getFileDate(file)));
+    }
+    
+    /**
+     * The destination path for the archives of a given date.
+     * 
+     * @param date The date of the archive.
+     * @return The target destination path.
+     * @throws OutputException Thrown if we are unable to create the output
+     * path directory.
+     */
+    String getDestinationPath(Date date) throws OutputException {
+        
+        String        method = "getDestinationPath() - ";
+        StringBuilder sb     = new StringBuilder();
+        
+        // Append the output path
+        sb.append(getOutputBasePath());
+        if (!sb.toString().endsWith(PATH_SEPARATOR)) {
+            sb.append(PATH_SEPARATOR);
+        }
+        sb.append(getServerGroup());
+        sb.append(PATH_SEPARATOR);
+        sb.append(getApplication());
+        sb.append(PATH_SEPARATOR);
+        
+        // Append the year and month
+        sb.append(getYear(date));
+        sb.append(PATH_SEPARATOR);
+        sb.append(getMonth(date));
+        sb.append(PATH_SEPARATOR);
+        
+        // Now we have the path...make sure it exists.
+        if (!checkPath(sb.toString())) {
+            throw new OutputException(method 
+                    + "Unable to create the full path for the destination. "
+                    + "Target destination was [ "
+                    + sb.toString()
+                    + " ].  See previous messages for more information.");
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Generate a valid file path containing a random filename on the local 
+     * file system.  This is used on Windows platforms where the zip filesystem
+     * has a bug writing to remote filesystems.
+     *  
+     * @return A file path consisting of the Java temp directory with a random 
+     * 8-character filename appended to it.
+     */
+    public String getIntermediatePath() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(System.getProperty("java.io.tmpdir"));
+        if (!sb.toString().endsWith(File.separator)) {
+            sb.append(File.separator);
+        }
+        sb.append(FileUtils.generateUniqueToken(TEMP_FILENAME_LENGTH));
+        sb.append(".zip");
+        return sb.toString();
+    }
+    
+    /**
+     * Accessor method for the maximum amount of time the run may take.
+     * @return The maximum runtime in milliseconds (less than or equal to 
+     * zero if the run is unbounded).
+     */
+    public long getMaxRuntime() {
+        return maxRuntime;
+    }
+    
+    /**
+     * Accessor method for the required string identifying the output
+     * base path.
+     * @return The output base path.
+     */
+    public String getOutputBasePath() {
+        return outputPath;
+    }
+    
+    /**
+     * Accessor method for the number of days to wait before archiving 
+     * a matching file.
+     * @return int number of days.
+     */
+    public int getOutputDelay() {
+        return outputDelay;
+    }
+    
+    /**
+     * Accessor method for the policy defining the order in which candidate
+     * files are processed.
+     * @return The schedule policy.
+     */
+    public SchedulePolicy getSchedulePolicy() {
+        return schedule;
+    }
+    
+    /**
+     * Accessor method for the boolean indicating whether or not a SHA-256 
+     * digest is recorded for each archived file.
+     * @return True or false.
+     */
+    public boolean getSha256() {
+        return sha256;
+    }
+    
+    /**
+     * Accessor method for the local directory holding state between runs.
+     * @return The state directory.
+     */
+    public String getStatePath() {
+        return statePath;
+    }
+    
+    /**
+     * Accessor method for the required string identifying the server group.
+     * @return The server group name.
+     */
+    public String getServerGroup() {
+        return serverGroup;
+    }
+    
+    /**
+     * Accessor method for the boolean indicating whether or not files 
+     * copied with FileChannel.transferTo are read back and verified before
+     * the source is removed.
+     * @return True or false.
+     */
+    public boolean getVerifyTransfer() {
+        return verify;
+    }
+    
+    /**
+     * Accessor method for the number of files that will be archived 
+     * concurrently.
+     * @return The number of workers.
+     */
+    public int getWorkers() {
+        return workers;
+    }
+    
+    /**
+     * Accessor method for the boolean indicating whether or not 
+     * uncompressed files are copied with FileChannel.transferTo.
+     * @return True or false.
+     */
+    public boolean getZeroCopy() {
+        return zeroCopy;
+    }
+    
+    /** 
+     * Check to see if the server is windows by determine the type of filesystem.
+     * @return True if the file system is not posix-compliant.
+     */
+    private boolean isWindows() {
+        return !FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    }
+    
+    /**
+     * Move the target file to a destination that (hopefully) resides on disk.
+     * If the source is to be removed and the destination resides on the 
+     * same file store the file is simply renamed into place.  Otherwise
+     * the file is copied to a partial file at the destination (using 
+     * FileChannel.transferTo if zero-copy is enabled), forced to disk 
+     * and renamed, and only then is the source removed.
+     * 
+     * @param file The source file to be moved.
+     * @throws OutputException Propogated from internal calls.
+     * @throws IOException Thrown if there is an issue accessing the file.
+     */
+    public void move(Path file) throws IOException, OutputException {
+        
+        String  dest        = getDestinationPath(file);
+        String  destFile    = getDestinationFile(dest, file);
+        String  method      = "move() - ";
+        Path    destination = Paths.get(dest + destFile);
+        String  key         = keyOf(destination);
+        boolean local       = (getStorageBackend().localPath(key) != null);
+
+        LOGGER.info(method
+                + "Moving [ "
+                + file.toAbsolutePath()
+                + " ] to [ "
+                + (local ? destination.toAbsolutePath().toString() :
+                    getStorageBackend().describe(key))
+                + " ].");
+
+        if (local && getDeleteInput() && isSameFileStore(file, destination)) {
+            
+            // Nothing is streamed when renaming so the checksums are 
+            // calculated from the source before it is moved.
+            ContentDigest content = newDigest(file);
+            long          mtime   = getFileDate(file);
+            copy(file, null, content);
+            
+            long id = journalBegin(file, destination);
+            try {
+                Files.move(file, destination, ATOMIC_MOVE);
+                StagedFile.syncDirectory(destination.getParent());
+                journalCommitted(id);
+                record(file, mtime, destination, 
+                        ManifestEntry.ENCODING_RAW, null, content, content);
+                journalDone(id);
+                return;
+            }
+            catch (AtomicMoveNotSupportedException amnse) {
+                journalAborted(id);
+                LOGGER.debug(method 
+                        + "Rename not supported, copying instead.");
+            }
+        }
+        ContentDigest content = newDigest(file);
+        if (local && getZeroCopy()) {
+            stageAndTransfer(file, destination, content);
+        }
+        else {
+            stageAndCommit(file, destination, copyOf(file, content), 
+                    ManifestEntry.ENCODING_RAW, null, content);
+        }
+    }
+    
+    /**
+     * Move the target file to a destination that (hopefully) resides on disk.
+     * The ZIP (or gzip) archive is written to a partial file at the 
+     * destination, forced to disk and renamed.  The source is only removed 
+     * once the archive exists under its final name.
+     * 
+     * @param file The source file to be moved.
+     * @throws OutputException Propogated from internal methods.
+     * @throws IOException Thrown if the archive could not be created.  The 
+     * source file is left untouched.
+     */
+    public void moveWithCompression(Path file) throws IOException, OutputException {
+        moveWithCompression(file, getCompressionLevel(file));
+    }
+    
+    /**
+     * Move the target file to a destination that (hopefully) resides on disk,
+     * compressing it at the input level.
+     * 
+     * @param file The source file to be moved.
+     * @param level The compression level.
+     * @throws OutputException Propogated from internal methods.
+     * @throws IOException Thrown if the archive could not be created.  The 
+     * source file is left untouched.
+     */
+    public void moveWithCompression(Path file, CompressionLevel level) 
+            throws IOException, OutputException {
+        
+        String dest        = getDestinationPath(file);
+        String destFile    = getDestinationFile(dest, file);
+        Path   destination = Paths.get(dest + destFile);
+        String method      = "moveWithCompression() - ";
+        
+        LOGGER.info(method 
+                + "Moving [ "
+                + file.toAbsolutePath() 
+                + " ] to [ "
+                + getStorageBackend().describe(keyOf(destination))
+                + " ].");
+        
+        ContentDigest content  = newDigest(file);
+        String        encoding = getEncoding(file);
+        if (ManifestEntry.ENCODING_ZLIB.equals(encoding)) {
+            // The dictionary must be in the store before the first archive
+            // that depends on it.
+            getDictionary().publish(destination.getParent());
+            stageAndCommit(file, destination, zlibOf(file, content, level), 
+                    ManifestEntry.ENCODING_ZLIB, level, content);
+        }
+        else if (ManifestEntry.ENCODING_GZIP.equals(encoding)) {
+            stageAndCommit(file, destination, 
+                    gzipOf(file, destination, content, level), 
+                    ManifestEntry.ENCODING_GZIP, level, content);
+        }
+        else {
+            stageAndCommit(file, destination, zipOf(file, content, level), 
+                    ManifestEntry.ENCODING_ZIP, level, content);
+        }
+    }
+    
+    /**
+     * Move the target file to a destination that (hopefully) resides on disk.
+     * The Windows ZIP filesystem implementation has a bug.  When creating the ZIP 
+     * filesystem on a remote disk, the application throws ReadOnlyFilesystem 
+     * exception.  In order to work around this limitation we create the ZIP 
+     * archive in a temporary (local) directory, then copy the created ZIP 
+     * file to the final resting place using the same staged approach as 
+     * the other move methods.
+     * 
+     * @param file The source file to be moved.
+     * @throws OutputException Propogated from internal methods.
+     * @throws IOException Thrown if the archive could not be created.  The 
+     * source file is left untouched.
+     */
+    public void moveWithCompressionWin(Path file) throws IOException, OutputException {
+        moveWithCompressionWin(file, getCompressionLevel(file));
+    }
+    
+    /**
+     * Windows variant of <code>moveWithCompression</code> compressing the 
+     * file at the input level.
+     * 
+     * @param file The source file to be moved.
+     * @param level The compression level.
+     * @throws OutputException Propogated from internal methods.
+     * @throws IOException Thrown if the archive could not be created.  The 
+     * source file is left untouched.
+     */
+    public void moveWithCompressionWin(Path file, CompressionLevel level) 
+            throws IOException, OutputException {
+        
+        String     dest         = getDestinationPath(file);
+        Path       intermediate = Paths.get(getIntermediatePath());
+        String     destFile     = getDestinationFile(dest, file);
+        Path       destination  = Paths.get(dest + destFile);
+        String     method       = "moveWithCompressionWin() - ";
+        StagedFile local        = new StagedFile(intermediate);
+        ContentDigest content   = newDigest(file);
+        
+        LOGGER.info(method 
+                + "Intermediate move [ "
+                + file.toAbsolutePath() 
+                + " ] to [ "
+                + intermediate.toString()
+                + " ].");
+        
+        try {
+            try {
+                zipOf(file, content, level).write(local.getOutputStream());
+                local.commit();
+            }
+            finally {
+                local.close();
+            }
+            
+            LOGGER.info(method 
+                    + "Moving intermediate archive [ "
+                    + intermediate.toString() 
+                    + " ] to [ "
+                    + getStorageBackend().describe(keyOf(destination))
+                    + " ].");
+            
+            stageAndCommit(file, destination, copyOf(intermediate, null), 
+                    ManifestEntry.ENCODING_ZIP, level, content);
+        }
+        finally {
+            Files.deleteIfExists(intermediate);
+        }
+    }
+    
+    /**
+     * Internal interface used to supply the bytes written to a staged 
+     * archive.
+     */
+    private interface Content {
+        
+        /**
+         * Write the content to the output stream.
+         * @param os The stream to write to.
+         * @throws IOException Thrown if the content cannot be written.
+         */
+        void write(OutputStream os) throws IOException;
+    }
+    
+    /**
+     * Content consisting of an unmodified copy of the input file.
+     * 
+     * @param file The file to copy.
+     * @param digest Digest updated with the bytes of the file (may be null).
+     * @return The content.
+     */
+    private Content copyOf(final Path file, final ContentDigest digest) {
+        return new Content() {
+            @Override
+            public void write(OutputStream os) throws IOException {
+                copy(file, os, digest);
+            }
+        };
+    }
+    
+    /**
+     * Content consisting of a ZIP archive containing a single entry holding
+     * the input file.
+     * 
+     * @param file The file to compress.
+     * @param digest Digest updated with the bytes of the file (may be null).
+     * @param level The compression level.
+     * @return The content.
+     */
+    private Content zipOf(
+            final Path             file, 
+            final ContentDigest    digest, 
+            final CompressionLevel level) {
+        return new Content() {
+            @Override
+            public void write(OutputStream os) throws IOException {
+                ZipOutputStream zos   = new ZipOutputStream(os);
+                zos.setLevel(level.getLevel());
+                ZipEntry        entry = new ZipEntry(file.getFileName().toString());
+                entry.setTime(getFileDate(file));
+                zos.putNextEntry(entry);
+                copy(file, zos, digest);
+                zos.closeEntry();
+                zos.close();
+            }
+        };
+    }
+    
+    /**
+     * Content consisting of a gzip file holding the input file.  The file 
+     * is split into blocks that are compressed concurrently and written as
+     * consecutive gzip members, so large files are compressed on all of 
+     * the configured threads.
+     * 
+     * If time indexing is enabled the index sidecar is committed once the
+     * content has been written, ahead of the archive itself.  An index 
+     * left without its archive is harmless and an index that does not 
+     * match its archive is ignored by readers.
+     * 
+     * @param file The file to compress.
+     * @param destination The final location of the archive.
+     * @param digest Digest updated with the bytes of the file (may be null).
+     * @param level The compression level.
+     * @return The content.
+     */
+    private Content gzipOf(
+            final Path             file, 
+            final Path             destination,
+            final ContentDigest    digest, 
+            final CompressionLevel level) {
+        return new Content() {
+            @Override
+            public void write(OutputStream os) throws IOException {
+                TimeIndex                index = null;
+                ParallelGzipOutputStream gos   = new ParallelGzipOutputStream(
+                        os, 
+                        getCompressionThreads(), 
+                        getBlockSize(), 
+                        level.getLevel());
+                if (getTimeIndex()) {
+                    index = new TimeIndex();
+                    gos.setTimeIndex(index);
+                }
+                try {
+                    copy(file, gos, digest);
+                }
+                finally {
+                    gos.close();
+                }
+                if (index != null) {
+                    StagedFile sidecar = new StagedFile(
+                            TimeIndex.sidecarOf(destination));
+                    try {
+                        index.write(sidecar.getOutputStream());
+                        sidecar.commit();
+                    }
+                    finally {
+                        sidecar.close();
+                    }
+                }
+            }
+        };
+    }
+    
+    /**
+     * Content consisting of a zlib stream compressed with the preset 
+     * dictionary.
+     * 
+     * @param file The file to compress.
+     * @param digest Digest updated with the bytes of the file (may be null).
+     * @param level The compression level.
+     * @return The content.
+     */
+    private Content zlibOf(
+            final Path             file, 
+            final ContentDigest    digest, 
+            final CompressionLevel level) {
+        return new Content() {
+            @Override
+            public void write(OutputStream os) throws IOException {
+                OutputStream zos = getDictionary().compress(
+                        os, level.getLevel());
+                try {
+                    copy(file, zos, digest);
+                }
+                finally {
+                    zos.close();
+                }
+            }
+        };
+    }
+    
+    /**
+     * Copy the bytes of the input file to the output stream, feeding the
+     * same buffers to the digest on the way through.
+     * 
+     * @param file The source file.
+     * @param os The destination stream (may be null if the file is only to
+     * be digested).
+     * @param digest Digest updated with the bytes of the file (may be null).
+     * @return The number of bytes copied.
+     * @throws IOException Thrown if the file cannot be read or the stream
+     * cannot be written.
+     */
+    private long copy(Path file, OutputStream os, ContentDigest digest) 
+            throws IOException {
+        long   count  = 0;
+        byte[] buffer = new byte[StagedFile.BUFFER_SIZE];
+        try (InputStream is = Files.newInputStream(file)) {
+            int read = 0;
+            while ((read = is.read(buffer)) != -1) {
+                if (digest != null) {
+                    digest.update(buffer, 0, read);
+                }
+                if (os != null) {
+                    os.write(buffer, 0, read);
+                }
+                count += read;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Create a digest configured according to the input properties for the
+     * content of the input file.  If keyword filters are enabled a filter 
+     * is attached so that the content is tokenized as it is digested.  
+     * Files that are already gzip compressed are not tokenized.  If 
+     * rollups or sketches are enabled and the file is an access log a 
+     * rollup (carrying the sketches) is attached so that the lines are 
+     * summarized as they are digested.  If stack traces are enabled and the
+     * file is not an access log a stack trace summary is attached in the 
+     * same way, as is a columnar conversion if enabled.  The digest of a 
+     * gzip compressed log sees compressed bytes, so its rollup, stack trace
+     * summary and columnar conversion are built here from a single 
+     * separate decompressing read.  The SHA-256 digest is calculated if
+     * configured or if it is needed for the content index.
+     *
+     * @param file The source file.
+     * @return A new digest.
+     * @throws IOException Thrown if the size of the file cannot be read.
+     */
+    private ContentDigest newDigest(Path file) throws IOException {
+        ContentDigest digest = new ContentDigest(getSha256() || getDeduplicate());
+        if (getKeywordFilter() && !ArchiveDecoder.isGzip(file)) {
+            digest.addSink(new KeywordFilter(Files.size(file)));
+        }
+        boolean accessLog = AccessLogRollup.isAccessLog(file);
+        if ((getRollups() || getSketches()) && accessLog) {
+            AccessLogRollup rollup = new AccessLogRollup(latencyScale);
+            if (getSketches()) {
+                rollup.setSketches(new AccessLogSketches());
+            }
+            digest.addSink(rollup);
+        }
+        if (getStackTraces() && !accessLog) {
+            digest.addSink(new StackTraceSummary());
+        }
+        if (getColumnar()) {
+            digest.addSink(new ColumnarLog());
+        }
+        List<LineSink> sinks = digest.getSinks();
+        if (ArchiveDecoder.isGzip(file) && !sinks.isEmpty()) {
+            byte[] buffer = new byte[StagedFile.BUFFER_SIZE];
+            try (InputStream is = new GZIPInputStream(
+                    Files.newInputStream(file), StagedFile.BUFFER_SIZE)) {
+                int read;
+                while ((read = is.read(buffer)) > 0) {
+                    for (LineSink sink : sinks) {
+                        sink.update(buffer, 0, read);
+                    }
+                }
+            }
+            for (LineSink sink : sinks) {
+                sink.finish();
+            }
+        }
+        return digest;
+    }
+    
+    /**
+     * Write the summaries accumulated while the source content was 
+     * digested (keyword filter, rollup and sketches, stack trace summary,
+     * columnar conversion) to the sidecars of the archive.  Logs without 
+     * a #Fields line have nothing to convert to columns.
+     * 
+     * @param destination The archive.
+     * @param content Digest of the original content.
+     */
+    private void writeSidecars(Path destination, ContentDigest content) {
+        String method = "writeSidecars() - ";
+        for (LineSink sink : content.getSinks()) {
+            sink.finish();
+            if (sink instanceof AccessLogRollup) {
+                AccessLogRollup rollup = (AccessLogRollup)sink;
+                if (rollup.getSketches() != null) {
+                    writeSidecar(destination, rollup.getSketches(), content);
+                }
+                if (!getRollups()) {
+                    // Only carries the sketches.
+                    continue;
+                }
+                if (rollup.getUnparsed() > 0) {
+                    LOGGER.warn(method 
+                            + "Unable to parse [ "
+                            + rollup.getUnparsed()
+                            + " ] lines of access log [ "
+                            + destination.toString()
+                            + " ].");
+                }
+            }
+            else if ((sink instanceof StackTraceSummary) && 
+                    (((StackTraceSummary)sink).getDropped() > 0)) {
+                LOGGER.warn(method 
+                        + "Stopped fingerprinting new stack traces after [ "
+                        + StackTraceSummary.MAX_TRACES
+                        + " ] distinct traces; [ "
+                        + ((StackTraceSummary)sink).getDropped()
+                        + " ] traces of [ "
+                        + destination.toString()
+                        + " ] are not counted.");
+            }
+            else if (sink instanceof ColumnarLog) {
+                ColumnarLog columnar = (ColumnarLog)sink;
+                if (columnar.isAbandoned()) {
+                    LOGGER.warn(method 
+                            + "The distinct values of [ "
+                            + destination.toString()
+                            + " ] exceed [ "
+                            + ColumnarLog.MAX_DICTIONARY_BYTES
+                            + " ] bytes.  The log is not converted.");
+                    continue;
+                }
+                if (columnar.getRows() == 0) {
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug(method 
+                                + "No structured records in [ "
+                                + destination.toString()
+                                + " ].");
+                    }
+                    continue;
+                }
+            }
+            writeSidecar(destination, sink, content);
+        }
+    }
+    
+    /**
+     * Stage and commit a single sidecar of an archive.  Sidecars are 
+     * written after the archive is committed, and an archive without one 
+     * is simply left out of whatever the sidecar serves (an archive 
+     * without a keyword filter is always searched), so a failure is only 
+     * logged.
+     * 
+     * @param destination The archive.
+     * @param summary The summary to write.
+     * @param content Digest of the original content.
+     */
+    private void writeSidecar(Path destination, Sidecar summary, 
+            ContentDigest content) {
+        String     method  = "writeSidecar() - ";
+        StagedFile sidecar = new StagedFile(summary.getSidecar(destination));
+        try {
+            summary.write(sidecar.getOutputStream(), content.getCrc());
+            sidecar.commit();
+        }
+        catch (IOException ioe) {
+            LOGGER.warn(method 
+                    + "Unable to write [ "
+                    + summary.getSidecar(destination).toString()
+                    + " ].  Error message [ "
+                    + ioe.getMessage()
+                    + " ].");
+        }
+        finally {
+            sidecar.close();
+        }
+    }
+    
+    /**
+     * Append an entry describing a committed archive to the manifest of 
+     * its month directory.  A failure to update the manifest does not undo
+     * the archive; the scrubber will report the archive as unrecorded.  The 
+     * keyword filter, rollup, sketches, stack trace summary and columnar
+     * conversion of the content (if enabled) are written first, and the
+     * content is added to the content index and the source file to the 
+     * record of archived files (if enabled) last.
+     * 
+     * @param file The source file.
+     * @param mtime The last modified time of the source file.
+     * @param destination The archive.
+     * @param encoding How the content was stored.
+     * @param level The compression level (null if not compressed).
+     * @param stored Digest of the bytes written to the archive.
+     * @param content Digest of the original content.
+     */
+    private void record(
+            Path             file, 
+            long             mtime,
+            Path             destination, 
+            String           encoding, 
+            CompressionLevel level,
+            ContentDigest    stored, 
+            ContentDigest    content) {
+        
+        String method = "record() - ";
+        
+        writeSidecars(destination, content);
+        try {
+            ManifestEntry entry = new ManifestEntry(
+                    destination.getFileName().toString(), 
+                    encoding, 
+                    stored, 
+                    file.toAbsolutePath().toString(), 
+                    mtime, 
+                    content);
+            if (level != null) {
+                entry.setLevel(level.name().toLowerCase());
+            }
+            Manifest.append(destination.getParent(), getHostName(), entry);
+            ArchiveCatalog current = catalog;
+            if (current != null) {
+                current.add(CatalogEntry.of(getServerGroup(), getApplication(),
+                        getHostName(), destination.getParent(), entry));
+            }
+            ContentIndex contents = index;
+            if ((contents != null) &&
+                    !ContentDigest.NONE.equals(content.getSha256())) {
+                contents.add(content.getSize(), content.getSha256(),
+                        keyOf(destination), entry.getSource(), mtime);
+            }
+            RotationTracker rotated = tracker;
+            if (rotated != null) {
+                // A renamed source keeps its inode at the destination.
+                rotated.add(Files.exists(file) ? file : destination, 
+                        content.getSize(), mtime, content.getCrc());
+            }
+        }
+        catch (IOException ioe) {
+            LOGGER.error(method 
+                    + "Unable to record archive [ "
+                    + destination.toString()
+                    + " ] in the manifest.  Error message [ "
+                    + ioe.getMessage()
+                    + " ].");
+        }
+    }
+    
+    /**
+     * Determine whether the content of a candidate file is already held by
+     * an archive written from this host.  Only a candidate of the same
+     * size as an indexed archive is read (to calculate its digest) so the
+     * check costs nothing for most files.  A duplicate is recorded in the
+     * reference file of the directory holding the archive (unless this
+     * very file was recorded before) and the source is removed as if it
+     * had been archived.  An archive that no longer exists (e.g. removed
+     * by retention) does not count, and the file is archived again.
+     *
+     * @param file The candidate file.
+     * @return True if the file was a duplicate and needs no archive.
+     * @throws IOException Thrown if the file cannot be read or the
+     * reference cannot be recorded.
+     */
+    private boolean deduplicate(Path file) throws IOException {
+
+        String       method   = "deduplicate() - ";
+        ContentIndex contents = index;
+        long         size     = Files.size(file);
+
+        if ((contents == null) || !contents.contains(size)) {
+            return false;
+        }
+        long          mtime   = getFileDate(file);
+        ContentDigest content = new ContentDigest(true);
+        copy(file, null, content);
+        if (content.getSize() != size) {
+            // Still being written.
+            return false;
+        }
+        ContentIndex.Entry held = contents.find(size, content.getSha256());
+        if (held == null) {
+            return false;
+        }
+        Path   archive = Paths.get(getOutputBasePath()).resolve(held.getLocation());
+        String source  = file.toAbsolutePath().toString();
+        if (!exists(archive.getParent().toString(),
+                archive.getFileName().toString(), "")) {
+            return false;
+        }
+
+        if (!held.isSource(source, mtime)) {
+            ManifestEntry entry = new ManifestEntry();
+            entry.setDestination(archive.getFileName().toString());
+            entry.setEncoding(ManifestEntry.ENCODING_REFERENCE);
+            entry.setSource(source);
+            entry.setSourceSize(content.getSize());
+            entry.setSourceMtime(mtime);
+            entry.setSourceCrc(content.getCrc());
+            entry.setSourceSha256(content.getSha256());
+            Manifest.append(Manifest.referencesOf(archive.getParent(),
+                    getHostName()), entry);
+            contents.add(size, content.getSha256(), held.getLocation(),
+                    source, mtime);
+        }
+        RotationTracker rotated = tracker;
+        if (rotated != null) {
+            rotated.add(file, size, mtime, content.getCrc());
+        }
+        LOGGER.info(method
+                + "Content of [ "
+                + source
+                + " ] is already held by [ "
+                + getStorageBackend().describe(held.getLocation())
+                + " ].  Not archived again.");
+        removeSource(file);
+        return true;
+    }
+
+    /**
+     * Write the archive to a partial file at the destination, force it to
+     * disk, rename it to its final name and then remove the source file.
+     * With a remote storage backend the archive is uploaded instead and the
+     * source is removed once the upload has completed.
+     * Each step is recorded in the run journal so that a run that dies part
+     * way through can be rolled forward or back by the next run.
+     * 
+     * The checksums of the source content (accumulated by the content as it
+     * reads the source) and of the stored bytes are recorded in the month 
+     * directory manifest before the source is removed.
+     * 
+     * @param file The source file.
+     * @param destination The final location of the archive.
+     * @param content Supplies the bytes of the archive.
+     * @param encoding How the content is stored.
+     * @param level The compression level (null if not compressed).
+     * @param source Digest of the source content, updated by the content.
+     * @throws IOException Thrown if the archive cannot be written or 
+     * committed.  The partial file is removed and the source is left 
+     * untouched.
+     */
+    private void stageAndCommit(
+            Path             file, 
+            Path             destination, 
+            Content          content,
+            String           encoding,
+            CompressionLevel level,
+            ContentDigest    source) throws IOException {
+        
+        StorageUpload staged = getStorageBackend().put(keyOf(destination));
+        ContentDigest stored = new ContentDigest(false);
+        long          mtime  = getFileDate(file);
+        long          id     = journalBegin(file, destination);
+        
+        try {
+            content.write(new ChecksumOutputStream(
+                    staged.getOutputStream(), stored));
+            staged.commit();
+            journalCommitted(id);
+            record(file, mtime, destination, encoding, level, stored, source);
+            removeSource(file);
+            journalDone(id);
+        }
+        finally {
+            if (!staged.isCommitted()) {
+                journalAborted(id);
+            }
+            staged.close();
+        }
+    }
+    
+    /**
+     * Copy the source file to a partial file at the destination using 
+     * FileChannel.transferTo, which lets the kernel move the bytes 
+     * (sendfile/copy_file_range on Linux) without copying them through a 
+     * user-space buffer.  The partial file is forced to disk, its size 
+     * checked against the source and, if configured, read back and its 
+     * checksum compared with the source before it is renamed into place.
+     * The source is only removed after the rename has been forced.
+     * 
+     * As the copied bytes never pass through the JVM the source is read 
+     * once beforehand to calculate the checksums recorded in the manifest,
+     * which is why this path is only taken when zero-copy is enabled.
+     * 
+     * @param file The source file.
+     * @param destination The final location of the archive.
+     * @param content Digest of the source content, calculated here.
+     * @throws IOException Thrown if the copy cannot be written, committed
+     * or verified.  The partial file is removed and the source is left 
+     * untouched.
+     */
+    private void stageAndTransfer(
+            Path          file, 
+            Path          destination, 
+            ContentDigest content) throws IOException {
+        
+        String        method = "stageAndTransfer() - ";
+        StagedFile    staged = new StagedFile(destination);
+        ContentDigest stored = content;
+        long          mtime  = getFileDate(file);
+        
+        copy(file, null, content);
+        
+        long id = journalBegin(file, destination);
+        try {
+            staged.getOutputStream();
+            long count = transfer(file, staged.getChannel());
+            staged.sync();
+            if (count != content.getSize() || 
+                    staged.getChannel().size() != content.getSize()) {
+                throw new IOException("Copied [ "
+                        + staged.getChannel().size()
+                        + " ] bytes of [ "
+                        + content.getSize()
+                        + " ] to [ "
+                        + staged.getPartial().toString()
+                        + " ].");
+            }
+            if (getVerifyTransfer()) {
+                stored = new ContentDigest(false, 
+                        ContentDigest.algorithmOf(content.getCrc()));
+                copy(staged.getPartial(), null, stored);
+                if ((stored.getSize() != content.getSize()) || 
+                        !stored.getCrc().equals(content.getCrc())) {
+                    throw new IOException("Verification of [ "
+                            + staged.getPartial().toString()
+                            + " ] failed.  Expected [ "
+                            + content.getSize()
+                            + " / "
+                            + content.getCrc()
+                            + " ] found [ "
+                            + stored.getSize()
+                            + " / "
+                            + stored.getCrc()
+                            + " ].");
+                }
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug(method 
+                            + "Verified [ "
+                            + staged.getPartial().toString()
+                            + " ].");
+                }
+            }
+            staged.commit();
+            journalCommitted(id);
+            record(file, mtime, destination, 
+                    ManifestEntry.ENCODING_RAW, null, stored, content);
+            removeSource(file);
+            journalDone(id);
+        }
+        finally {
+            if (!staged.isCommitted()) {
+                journalAborted(id);
+            }
+            staged.close();
+        }
+    }
+    
+    /**
+     * Copy the entire source file to the target channel with 
+     * FileChannel.transferTo.  A single call may transfer fewer bytes than
+     * requested so the call is repeated until the end of the source.
+     * 
+     * @param file The source file.
+     * @param target The channel to write to.
+     * @return The number of bytes transferred.
+     * @throws IOException Thrown if the file cannot be read or the channel
+     * cannot be written.
+     */
+    private long transfer(Path file, FileChannel target) throws IOException {
+        long position = 0;
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = source.size();
+            while (position < size) {
+                long count = source.transferTo(position, size - position, target);
+                if (count <= 0) {
+                    // The source was truncated while it was being copied.
+                    break;
+                }
+                position += count;
+            }
+        }
+        return position;
+    }
+    
+    /**
+     * Remove the source file once it has been archived, unless the input 
+     * properties specify that the input file is to be retained.
+     * 
+     * @param file The source file.
+     * @throws IOException Thrown if the file cannot be removed.
+     */
+    private void removeSource(Path file) throws IOException {
+        String method = "removeSource() - ";
+        if (getDeleteInput()) {
+            Files.deleteIfExists(file);
+        }
+        else if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(method 
+                    + "Retaining input file [ "
+                    + file.toAbsolutePath()
+                    + " ].");
+        }
+    }
+    
+    /**
+     * Determine whether the source file and the destination directory 
+     * reside on the same file store (in which case a rename is possible).
+     * 
+     * @param file The source file.
+     * @param destination The destination file.
+     * @return True if both reside on the same file store.
+     */
+    private boolean isSameFileStore(Path file, Path destination) {
+        try {
+            return Files.getFileStore(file).equals(
+                    Files.getFileStore(destination.getParent()));
+        }
+        catch (IOException ioe) {
+            return false;
+        }
+    }
+    
+    /**
+     * Record the start of an archive operation in the run journal.
+     * 
+     * @param file The source file.
+     * @param destination The final location of the archive.
+     * @return The journal identifier (-1 if no journal is available).
+     * @throws IOException Thrown if the journal cannot be written.
+     */
+    private long journalBegin(Path file, Path destination) throws IOException {
+        RunJournal current = journal;
+        if (current == null) {
+            return -1;
+        }
+        return current.begin(file, destination, keyOf(destination),
+                getDeleteInput());
+    }
+    
+    /**
+     * Record that an archive was committed to its final name.
+     * 
+     * @param id The journal identifier.
+     * @throws IOException Thrown if the journal cannot be written.
+     */
+    private void journalCommitted(long id) throws IOException {
+        RunJournal current = journal;
+        if ((current != null) && (id >= 0)) {
+            current.committed(id);
+        }
+    }
+    
+    /**
+     * Record that an archive operation is complete.
+     * 
+     * @param id The journal identifier.
+     * @throws IOException Thrown if the journal cannot be written.
+     */
+    private void journalDone(long id) throws IOException {
+        RunJournal current = journal;
+        if ((current != null) && (id >= 0)) {
+            current.done(id);
+        }
+    }
+    
+    /**
+     * Record that an archive operation was abandoned.
+     * 
+     * @param id The journal identifier.
+     */
+    private void journalAborted(long id) {
+        RunJournal current = journal;
+        if ((current != null) && (id >= 0)) {
+            current.aborted(id);
+        }
+    }
+    
+    /**
+     * Recover journals left by earlier runs and open the journal for this 
+     * run.  Failure to create the journal is not fatal; archives are still
+     * staged, but an interrupted run would have to be cleaned up by hand.
+     */
+    private void openJournal() {
+        String method = "openJournal() - ";
+        try {
+            journal = RunJournal.open(
+                    Paths.get(getStatePath()), 
+                    RunJournal.DEFAULT_GROUP_SIZE,
+                    getStorageBackend());
+        }
+        catch (IOException ioe) {
+            journal = null;
+            LOGGER.error(method 
+                    + "Unable to create the run journal in [ "
+                    + getStatePath()
+                    + " ].  Continuing without a journal.  Error message [ "
+                    + ioe.getMessage()
+                    + " ].");
+        }
+    }
+    
+    /**
+     * Open the archive catalog kept in the state directory.  Failure to 
+     * open the catalog is not fatal; the catalog can be rebuilt from the 
+     * manifests (see <code>CatalogArchives</code>).
+     */
+    private void openCatalog() {
+        String method = "openCatalog() - ";
+        try {
+            catalog = ArchiveCatalog.open(Paths.get(getStatePath()));
+        }
+        catch (IOException ioe) {
+            catalog = null;
+            LOGGER.error(method 
+                    + "Unable to open the archive catalog in [ "
+                    + getStatePath()
+                    + " ].  Continuing without a catalog.  Error message [ "
+                    + ioe.getMessage()
+                    + " ].");
+        }
+    }
+    
+    /**
+     * Open the content index kept in the state directory if deduplication
+     * is enabled.  Failure to open the index is not fatal; files are then
+     * archived without being checked for duplicates.
+     */
+    private void openIndex() {
+        String method = "openIndex() - ";
+        if (!getDeduplicate()) {
+            return;
+        }
+        try {
+            index = ContentIndex.open(Paths.get(getStatePath()));
+        }
+        catch (IOException ioe) {
+            index = null;
+            LOGGER.error(method
+                    + "Unable to open the content index in [ "
+                    + getStatePath()
+                    + " ].  Continuing without deduplication.  Error "
+                    + "message [ "
+                    + ioe.getMessage()
+                    + " ].");
+        }
+    }
+
+    /**
+     * Open the record of archived source files (if rotation tracking is 
+     * enabled).  Failure to open it is not fatal; files are still archived
+     * but are not recorded.
+     */
+    private void openTracker() {
+        String method = "openTracker() - ";
+        if (!getRotationTracking() || (tracker != null)) {
+            return;
+        }
+        try {
+            tracker = RotationTracker.open(Paths.get(getStatePath()));
+        }
+        catch (IOException ioe) {
+            tracker = null;
+            LOGGER.error(method
+                    + "Unable to open the record of archived files in [ "
+                    + getStatePath()
+                    + " ].  Continuing without rotation tracking.  Error "
+                    + "message [ "
+                    + ioe.getMessage()
+                    + " ].");
+        }
+    }
+
+    /**
+     * Process the input list of candidate files.The candidates are 
+     * ordered according to the configured schedule policy and handed out 
+     * to the configured number of workers.  If a maximum runtime was 
+     * supplied, no file is started that is not expected to finish before
+     * the deadline.  Files that are not started are reported as remaining
+     * for the next run.
+     * 
+     * @param candidates List of candidate files for archive.
+     * @return Summary of the run.
+     */
+    public RunReport process(List<Path> candidates) {
+        
+        String          method = "process() - ";
+        final RunReport report = new RunReport(getMaxRuntime());
+        
+        if ((candidates != null) && (candidates.size() > 0)) {
+            
+            openJournal();
+            openCatalog();
+            openIndex();
+            openTracker();
+            try {
+                processAll(candidates, report);
+            }
+            finally {
+                if (journal != null) {
+                    journal.close();
+                    journal = null;
+                }
+                if (catalog != null) {
+                    catalog.close();
+                    catalog = null;
+                }
+                if (index != null) {
+                    index.close();
+                    index = null;
+                }
+                try {
+                    getStorageBackend().close();
+                }
+                catch (IOException ioe) { }
+            }
+        }
+        report.finish();
+        LOGGER.info(method + report.toString());
+        
+        if (LOGGER.isDebugEnabled()) {
+            for (Path path : report.getRemaining()) {
+                LOGGER.debug(method 
+                        + "Deferred to the next run [ "
+                        + path.toAbsolutePath()
+                        + " ].");
+            }
+        }
+        return report;
+    }
+    
+    /**
+     * Order the candidates and hand them out to the configured number of 
+     * workers.  The workers share a single queue unless the schedule 
+     * policy assigns each worker a queue of its own.
+     * 
+     * @param candidates List of candidate files for archive.
+     * @param report The report for the current run.
+     */
+    private void processAll(List<Path> candidates, final RunReport report) {
+        
+        String            method = "processAll() - ";
+        List<Queue<Path>> queues = new ArrayList<Queue<Path>>();
+        
+        for (List<Path> assigned : 
+                getSchedulePolicy().assign(candidates, getWorkers())) {
+            queues.add(new ConcurrentLinkedQueue<Path>(assigned));
+        }
+            
+        if (getWorkers() > 1) {
+            ExecutorService pool = Executors.newFixedThreadPool(getWorkers());
+            for (int i=0; i<getWorkers(); i++) {
+                final Queue<Path> queue = queues.get(i % queues.size());
+                pool.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        drain(queue, report);
+                    }
+                });
+            }
+            pool.shutdown();
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException ie) {
+                LOGGER.warn(method 
+                        + "Interrupted while waiting for the archive "
+                        + "workers to complete.");
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        else {
+            drain(queues.get(0), report);
+        }
+    }
+    
+    /**
+     * Worker loop.  Take files off of the queue until it is empty.
+     * Once the run budget is exhausted the remaining files are recorded
+     * in the report rather than processed.
+     * 
+     * @param queue The ordered queue of candidate files.
+     * @param report The report for the current run.
+     */
+    private void drain(Queue<Path> queue, RunReport report) {
+        Path path = null;
+        while ((path = queue.poll()) != null) {
+            long size = 0;
+            try {
+                size = Files.size(path);
+            }
+            catch (IOException ioe) { 
+                // Reported when the file is processed.
+            }
+            if (report.fits(size)) {
+                processFile(path, size, report);
+            }
+            else {
+                report.deferred(path, size);
+            }
+        }
+    }
+    
+    /**
+     * Archive a single candidate file.
+     * 
+     * @param path The candidate file.
+     * @param size The size of the candidate file in bytes.
+     * @param report The report for the current run.
+     */
+    private void processFile(Path path, long size, RunReport report) {
+        String method = "processFile() - ";
+        try {
+            if (archive(path)) {
+                long start = System.currentTimeMillis();
+                if (deduplicate(path)) {
+                    report.deduplicated();
+                    return;
+                }
+                if (getCompression()) {
+                    CompressionLevel level = getCompressionLevel(path);
+                    if (isWindows() &&
+                            ManifestEntry.ENCODING_ZIP.equals(getEncoding(path))) {
+                        moveWithCompressionWin(path, level);
+                    }
+                    else {
+                        moveWithCompression(path, level);
+                    }
+                    report.compressed(level);
+                }
+                else {
+                    move(path);
+                }
+                report.archived(size, System.currentTimeMillis() - start);
+            }
+            else {
+                report.skipped();
+            }
+        }
+        catch (OutputException oe) {
+            report.failed();
+            LOGGER.error(method 
+                    + "An unexpected IOException was encountered " 
+                    + "while attempting to create the output "
+                    + "directory associated with file [ "
+                    + path.toAbsolutePath()
+                    + " ].  This file will be skipped.  Error "
+                    + "message [ "
+                    + oe.getMessage()
+                    + " ].");
+        }
+        catch (IOException ioe) {
+            report.failed();
+            LOGGER.error(method 
+                    + "An unexpected IOException was encountered " 
+                    + "while archiving file [ "
+                    + path.toAbsolutePath()
+                    + " ].  This file will be skipped.  Error "
+                    + "message [ "
+                    + ioe.getMessage()
+                    + " ].");
+        }
+    }
+    
+    /**
+     * Mutator method for the optional input string identifying the 
+     * application that generated the log file.
+     * 
+     * @param value The application that generated the log file.
+     */
+    public void setApplication(String value) {
+        String method = "setApplication() - ";
+        if ((value != null) && (!value.isEmpty())) {
+            application = value.trim().toLowerCase();
+        }
+        else {
+            application = DEFAULT_APPLICATION;
+            LOGGER.warn(method
+                    + "Input application name is null or empty.  Using [ "
+                    + DEFAULT_APPLICATION
+                    + " ].");
+        }
+    }
+    
+    /**
+     * Mutator method for the compression level.
+     * 
+     * @param value One of store, fast, default, max or auto.  The default 
+     * level is used if null, empty or invalid.
+     */
+    public void setCompressionLevel(String value) {
+        String method = "setCompressionLevel() - ";
+        try {
+            level = CompressionLevel.fromString(value);
+        }
+        catch (InputException ie) {
+            LOGGER.warn(method 
+                    + "Using the default compression level.");
+            level = CompressionLevel.DEFAULT;
+        }
+    }
+    
+    /**
+     * Mutator method for the slowest acceptable compression rate when the 
+     * compression level is selected automatically.
+     * 
+     * @param value The rate in MiB per CPU second.  The default is used if
+     * null, empty or invalid.
+     */
+    public void setMinThroughput(String value) {
+        String method = "setMinThroughput() - ";
+        minThroughput = LogMgmtI.DEFAULT_MIN_THROUGHPUT_MB * 1024.0 * 1024.0;
+        if ((value != null) && (!value.trim().isEmpty())) {
+            try {
+                minThroughput = Double.parseDouble(value.trim()) * 1024.0 * 1024.0;
+            }
+            catch (NumberFormatException nfe) {
+                LOGGER.warn(method 
+                        + "Invalid minimum throughput [ "
+                        + value
+                        + " ] MiB/s.  Using [ "
+                        + LogMgmtI.DEFAULT_MIN_THROUGHPUT_MB
+                        + " ] MiB/s.");
+            }
+        }
+    }
+    
+    /**
+     * Mutator method for the preset dictionary used to compress small 
+     * files.  A dictionary that cannot be read is logged and ignored so 
+     * that archiving continues without it.
+     * 
+     * @param value Path to a dictionary produced by TrainDictionary (may 
+     * be null).
+     */
+    public void setDictionary(String value) {
+        String method = "setDictionary() - ";
+        dictionary = null;
+        if ((value != null) && (!value.trim().isEmpty())) {
+            try {
+                dictionary = PresetDictionary.read(Paths.get(value.trim()));
+            }
+            catch (IOException ioe) {
+                LOGGER.error(method 
+                        + "Unable to read dictionary [ "
+                        + value
+                        + " ].  Files will be compressed without it.  "
+                        + "Error message [ "
+                        + ioe.getMessage()
+                        + " ].");
+            }
+        }
+    }
+    
+    /**
+     * Mutator method for the size of the largest file compressed with the 
+     * preset dictionary.
+     * 
+     * @param value The size in KiB.  The default is used if null, empty or
+     * invalid.
+     */
+    public void setDictionaryMaxSize(String value) {
+        String method = "setDictionaryMaxSize() - ";
+        dictionaryMaxSize = LogMgmtI.DEFAULT_DICTIONARY_MAX_SIZE_KB * 1024L;
+        if ((value != null) && (!value.trim().isEmpty())) {
+            try {
+                dictionaryMaxSize = Long.parseLong(value.trim()) * 1024L;
+            }
+            catch (NumberFormatException nfe) {
+                LOGGER.warn(method 
+                        + "Invalid dictionary size limit [ "
+                        + value
+                        + " ] KiB.  Using [ "
+                        + LogMgmtI.DEFAULT_DICTIONARY_MAX_SIZE_KB
+                        + " ] KiB.");
+            }
+        }
+    }
+    
+    /**
+     * Mutator method for the format of compressed archives.
+     * 
+     * @param value Either zip or gzip.  The default is zip.
+     */
+    public void setCompressionFormat(String value) {
+        if ((value != null) && 
+                value.trim().equalsIgnoreCase(ManifestEntry.ENCODING_GZIP)) {
+            format = ManifestEntry.ENCODING_GZIP;
+        }
+        else {
+            format = ManifestEntry.ENCODING_ZIP;
+        }
+    }
+    
+    /**
+     * Mutator method for the number of threads used to compress a single 
+     * file in the gzip format.
+     * 
+     * @param value The number of threads.  The number of available 
+     * processors is used if null, empty or invalid.
+     */
+    public void setCompressionThreads(String value) {
+        String method = "setCompressionThreads() - ";
+        threads = Runtime.getRuntime().availableProcessors();
+        if ((value != null) && (!value.trim().isEmpty())) {
+            try {
+                threads = Math.max(1, Integer.parseInt(value.trim()));
+            }
+            catch (NumberFormatException nfe) {
+                LOGGER.warn(method 
+                        + "Invalid number of compression threads [ "
+                        + value
+                        + " ].  Using [ "
+                        + threads
+                        + " ].");
+            }
+        }
+    }
+    
+    /**
+     * Mutator method for the number of input bytes compressed into each 
+     * member of a gzip archive.
+     * 
+     * @param value The block size in KiB.  The default is used if null, 
+     * empty or invalid.
+     */
+    public void setBlockSize(String value) {
+        String method = "setBlockSize() - ";
+        blockSize = ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE;
+        if ((value != null) && (!value.trim().isEmpty())) {
+            try {
+                int kb = Integer.parseInt(value.trim());
+                if ((kb > 0) && (kb <= LogMgmtI.MAX_BLOCK_SIZE_KB)) {
+                    blockSize = kb * 1024;
+                }
+                else {
+                    throw new NumberFormatException("Out of range.");
+                }
+            }
+            catch (NumberFormatException nfe) {
+                LOGGER.warn(method 
+                        + "Invalid block size [ "
+                        + value
+                        + " ] KiB.  Using [ "
+                        + (blockSize / 1024)
+                        + " ] KiB.");
+            }
+        }
+    }
+    
+    /**
+     * Mutator method for the optional input string identifying whether or not
+     * compression should be applied to the output file.
+     * 
+     * @param value True or false.  The default setting is false.
+     */
+    public void setCompression(String value) {
+        if ((value != null) && (!value.isEmpty())) {
+            compress = Boolean.parseBoolean(value);
+        }
+    }
+    
+    /**
+     * Mutator method for the custom prefix.
+     * @param value Custom prefix string.
+     */
+    public void setCustomPrefix(String value) {
+        customPrefix = value;
+    }
+      
+    /**
+     * Mutator method for the optional input string identifying whether or 
+     * not the input file is removed once it has been archived.
+     * 
+     * @param value True or false.  The default setting is true.
+     */
+    public void setDeleteInput(String value) {
+        if ((value != null) && (!value.isEmpty())) {
+            deleteInput = Boolean.parseBoolean(value.trim());
+        }
+    }
+    
+    /**
+     * Mutator method for the maximum amount of time the run may take.
+     * 
+     * @param minutes The maximum runtime in minutes.  Values less than or 
+     * equal to zero indicate that the run is unbounded.
+     */
+    public void setMaxRuntime(long minutes) {
+        if (minutes > 0) {
+            maxRuntime = TimeUnit.MINUTES.toMillis(minutes);
+        }
+        else {
+            maxRuntime = -1;
+        }
+    }
+    
+    /**
+     * Mutator method for the optional input string identifying the 
+     * application that generated the log file.
+     * 
+     * @param value The application that generated the log file.
+     */
+    public void setOutputDelay(String value) {
+        if ((value == null) || (value.isEmpty())) {
+            outputDelay = LogMgmtI.DEFAULT_OUTPUT_DELAY;
+        }
+        else {
+            outputDelay = Integer.parseInt(value);
+        }
+    }
+    
+    /**
+     * Mutator method for the required output path parameter.  This 
+     * parameter will be the starting point for path to the output 
+     * log file.
+     * 
+     * @param value The top-level path where log files are stored.
+     * @throws OutputException Thrown if the required output path is not
+     * supplied.
+     */
+    public void setOutputBasePath(String value) throws OutputException {
+        
+        String method = "setOutputPath() - ";
+        
+        if ((value != null) && (!value.isEmpty())) {
+            outputPath = value.trim().toLowerCase();
+            if (backend instanceof PosixStorageBackend) {
+                backend = new PosixStorageBackend(Paths.get(outputPath));
+            }
+        }
+        else {
+            throw new OutputException(method
+                    + "The required property [ "
+                    + LogMgmtI.OUTPUT_BASE_PATH 
+                    + " ] was not supplied.");
+        }
+    }
+    
+    /**
+     * Accessor method for the storage backend the archives are written to.
+     * @return The storage backend.
+     */
+    public StorageBackend getStorageBackend() {
+        return backend;
+    }
+
+    /**
+     * Mutator method for the storage backend the archives are written to.
+     * The posix backend (the default) writes the archives under the output
+     * path.  The s3 backend uploads them to a bucket under the same
+     * relative names.
+     *
+     * @param props The properties naming and configuring the backend.
+     * @throws OutputException Thrown if the backend is unknown or a
+     * required property was not supplied.
+     */
+    public void setStorageBackend(Properties props) throws OutputException {
+
+        String method = "setStorageBackend() - ";
+        String type   = props.getProperty(LogMgmtI.OUTPUT_BACKEND,
+                LogMgmtI.DEFAULT_BACKEND).trim().toLowerCase();
+
+        if (type.isEmpty() || LogMgmtI.DEFAULT_BACKEND.equals(type)) {
+            backend = new PosixStorageBackend(Paths.get(getOutputBasePath()));
+        }
+        else if ("s3".equals(type)) {
+            String region = props.getProperty(LogMgmtI.OUTPUT_S3_REGION,
+                    LogMgmtI.DEFAULT_S3_REGION).trim();
+            String endpoint = props.getProperty(LogMgmtI.OUTPUT_S3_ENDPOINT,
+                    "https://s3." + region + ".amazonaws.com").trim();
+            String bucket = required(props, LogMgmtI.OUTPUT_S3_BUCKET, null);
+            String accessKey = required(props, LogMgmtI.OUTPUT_S3_ACCESS_KEY,
+                    "AWS_ACCESS_KEY_ID");
+            String secretKey = required(props, LogMgmtI.OUTPUT_S3_SECRET_KEY,
+                    "AWS_SECRET_ACCESS_KEY");
+            int partSize = intOf(props, LogMgmtI.OUTPUT_S3_PART_SIZE,
+                    LogMgmtI.DEFAULT_S3_PART_SIZE_MB,
+                    LogMgmtI.MIN_S3_PART_SIZE_MB);
+            int s3Threads = intOf(props, LogMgmtI.OUTPUT_S3_THREADS,
+                    LogMgmtI.DEFAULT_S3_THREADS, 1);
+            try {
+                backend = new S3StorageBackend(endpoint, region, bucket,
+                        props.getProperty(LogMgmtI.OUTPUT_S3_PREFIX),
+                        accessKey, secretKey, partSize * 1024 * 1024, s3Threads);
+            }
+            catch (IOException ioe) {
+                throw new OutputException(method
+                        + "Invalid value [ "
+                        + endpoint
+                        + " ] of property [ "
+                        + LogMgmtI.OUTPUT_S3_ENDPOINT
+                        + " ].  Error message [ "
+                        + ioe.getMessage()
+                        + " ].");
+            }
+        }
+        else {
+            throw new OutputException(method
+                    + "Unsupported value [ "
+                    + type
+                    + " ] of property [ "
+                    + LogMgmtI.OUTPUT_BACKEND
+                    + " ].  Expected posix or s3.");
+        }
+    }
+
+    /**
+     * Look up a required backend property, falling back to an environment
+     * variable.
+     *
+     * @param props The properties.
+     * @param name The property name.
+     * @param variable The environment variable (null if none).
+     * @return The value.
+     * @throws OutputException Thrown if neither is set.
+     */
+    private static String required(Properties props, String name,
+            String variable) throws OutputException {
+        String method = "required() - ";
+        String value  = props.getProperty(name);
+        if (((value == null) || value.trim().isEmpty()) && (variable != null)) {
+            value = System.getenv(variable);
+        }
+        if ((value == null) || value.trim().isEmpty()) {
+            throw new OutputException(method
+                    + "The required property [ "
+                    + name
+                    + " ] was not supplied.");
+        }
+        return value.trim();
+    }
+
+    /**
+     * Parse an optional integer backend property.
+     *
+     * @param props The properties.
+     * @param name The property name.
+     * @param defaultValue Value used if the property is not supplied or
+     * is invalid.
+     * @param min The smallest value accepted.
+     * @return The value.
+     */
+    private static int intOf(Properties props, String name,
+            int defaultValue, int min) {
+        String method = "intOf() - ";
+        String value  = props.getProperty(name);
+        if ((value != null) && (!value.trim().isEmpty())) {
+            try {
+                int parsed = Integer.parseInt(value.trim());
+                if (parsed >= min) {
+                    return parsed;
+                }
+            }
+            catch (NumberFormatException nfe) { }
+            LOGGER.warn(method
+                    + "Invalid value [ "
+                    + value
+                    + " ] of property [ "
+                    + name
+                    + " ].  Using [ "
+                    + defaultValue
+                    + " ].");
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Calculate the storage key of a destination under the output path.
+     *
+     * @param destination The final location of an archive.
+     * @return The '/' separated path of the destination relative to the
+     * output path.
+     */
+    String keyOf(Path destination) {
+        Path          top = Paths.get(getOutputBasePath()).toAbsolutePath().normalize();
+        StringBuilder sb  = new StringBuilder();
+        for (Path name : top.relativize(destination.toAbsolutePath().normalize())) {
+            if (sb.length() > 0) {
+                sb.append(PATH_SEPARATOR);
+            }
+            sb.append(name.toString());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Mutator method for the policy defining the order in which candidate
+     * files are processed.
+     * 
+     * @param value The schedule policy.  WALK is used if null.
+     */
+    public void setSchedulePolicy(SchedulePolicy value) {
+        if (value != null) {
+            schedule = value;
+        }
+        else {
+            schedule = SchedulePolicy.WALK;
+        }
+    }
+    
+    /**
+     * Mutator method for the 
+     * @param value
+     */
+    public void setServerGroup(String value) {
+        if ((value != null) && (!value.isEmpty())) {
+            serverGroup = value.trim().toLowerCase();
+        }
+        else {
+            serverGroup = LogMgmtI.DEFAULT_SERVER_GROUP;
+        }
+    }
+    
+    /**
+     * Mutator method for the optional input string identifying whether or 
+     * not a SHA-256 digest is recorded for each archived file.
+     * 
+     * @param value True or false.  The default setting is false.
+     */
+    public void setSha256(String value) {
+        if ((value != null) && (!value.isEmpty())) {
+            sha256 = Boolean.parseBoolean(value.trim());
+        }
+    }
+    
+    /**
+     * Mutator method for the local directory holding state between runs.
+     * 
+     * @param value The state directory.  The default is used if null or 
+     * empty.
+     */
+    public void setStatePath(String value) {
+        if ((value != null) && (!value.trim().isEmpty())) {
+            statePath = value.trim();
+        }
+        else {
+            statePath = LogMgmtI.DEFAULT_STATE_PATH;
+        }
+    }
+    
+    /**
+     * Mutator method for the number of files that will be archived 
+     * concurrently.
+     * 
+     * @param value The number of workers.  Values less than one are 
+     * treated as one.
+     */
+    public void setWorkers(int value) {
+        workers = (value < 1) ? 1 : value;
+    }
+    
+    /**
+     * Accessor method for whether gzip archives are written with a time 
+     * index.
+     * @return True if a time index is written.
+     */
+    public boolean getTimeIndex() {
+        return timeIndex;
+    }
+    
+    /**
+     * Mutator method for the optional input string identifying whether or
+     * not gzip archives are written with a time index.
+     * 
+     * @param value True or false.  The default setting is false.
+     */
+    public void setTimeIndex(String value) {
+        if ((value != null) && (!value.isEmpty())) {
+            timeIndex = Boolean.parseBoolean(value.trim());
+        }
+    }
+    
+    /**
+     * Accessor method for whether a keyword filter is written for each 
+     * archive.
+     * @return True if keyword filters are written.
+     */
+    public boolean getKeywordFilter() {
+        return keywords;
+    }
+    
+    /**
+     * Mutator method for the optional input string identifying whether or
+     * not a keyword filter is written for each archive.
+     * 
+     * @param value True or false.  The default setting is false.
+     */
+    public void setKeywordFilter(String value) {
+        if ((value != null) && (!value.isEmpty())) {
+            keywords = Boolean.parseBoolean(value.trim());
+        }
+    }
+    
+    /**
+     * Accessor method for whether access logs are summarized as they are 
+     * archived.
+     * @return True if rollups are written.
+     */
+    public boolean getRollups() {
+        return rollups;
+    }
+    
+    /**
+     * Mutator method for the optional input string identifying whether or
+     * not access logs are summarized as they are archived.
+     * 
+     * @param value True or false.  The default setting is false.
+     */
+    public void setRollups(String value) {
+        if ((value != null) && (!value.isEmpty())) {
+            rollups = Boolean.parseBoolean(value.trim());
+        }
+    }
+    
+    /**
+     * Accessor method for whether sketches of access logs are written as 
+     * they are archived.
+     * @return True if sketches are written.
+     */
+    public boolean getSketches() {
+        return sketches;
+    }
+    
+    /**
+     * Mutator method for the optional input string identifying whether or
+     * not sketches of access logs are written as they are archived.
+     * 
+     * @param value True or false.  The default setting is false.
+     */
+    public void setSketches(String value) {
+        if ((value != null) && (!value.isEmpty())) {
+            sketches = Boolean.parseBoolean(value.trim());
+        }
+    }
+    
+    /**
+     * Accessor method for whether the stack traces of server logs are 
+     * fingerprinted as they are archived.
+     * @return True if stack trace summaries are written.
+     */
+    public boolean getStackTraces() {
+        return traces;
+    }
+    
+    /**
+     * Mutator method for the optional input string identifying whether or
+     * not the stack traces of server logs are fingerprinted as they are 
+     * archived.
+     * 
+     * @param value True or false.  The default setting is false.
+     */
+    public void setStackTraces(String value) {
+        if ((value != null) && (!value.isEmpty())) {
+            traces = Boolean.parseBoolean(value.trim());
+        }
+    }
+    
+    /**
+     * Accessor method for whether files whose content was already archived
+     * from this host are skipped.
+     * @return True if duplicates are recorded as references.
+     */
+    public boolean getDeduplicate() {
+        return dedupe;
+    }
+
+    /**
+     * Mutator method for the optional input string identifying whether or
+     * not files whose content was already archived from this host are
+     * recorded as references instead of being archived again.
+     *
+     * @param value True or false.  The default setting is false.
+     */
+    public void setDeduplicate(String value) {
+        if ((value != null) && (!value.isEmpty())) {
+            dedupe = Boolean.parseBoolean(value.trim());
+        }
+    }
+
+    /**
+     * Accessor method for whether archived source files are recorded so
+     * that they are recognized after logrotate renames or compresses them.
+     * @return True if archived source files are recorded.
+     */
+    public boolean getRotationTracking() {
+        return rotation;
+    }
+
+    /**
+     * Mutator method for the optional input string identifying whether or
+     * not archived source files are recorded in the state directory.
+     *
+     * @param value True or false.  The default setting is false.
+     */
+    public void setRotationTracking(String value) {
+        if ((value != null) && (!value.isEmpty())) {
+            rotation = Boolean.parseBoolean(value.trim());
+        }
+    }
+
+    /**
+     * Mutator method for the record of archived source files.  Supplying
+     * the record already read by <code>InputFile</code> avoids reading the
+     * state a second time.  If not supplied (or null) the record is opened
+     * when the run starts, provided rotation tracking is enabled.
+     *
+     * @param value The record of archived source files.
+     */
+    public void setRotationTracker(RotationTracker value) {
+        tracker = value;
+        if (value != null) {
+            rotation = true;
+        }
+    }
+
+    /**
+     * Accessor method for whether the input files are live logs shipped
+     * incrementally.
+     * @return True if only the bytes appended since the last run are 
+     * archived.
+     */
+    public boolean getIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Mutator method for the optional input string identifying whether or
+     * not the input files are shipped incrementally.
+     *
+     * @param value True or false.  The default setting is false.
+     */
+    public void setIncremental(String value) {
+        if ((value != null) && (!value.isEmpty())) {
+            incremental = Boolean.parseBoolean(value.trim());
+        }
+    }
+
+    /**
+     * Accessor method for whether structured logs are converted to a
+     * columnar file as they are archived.
+     * @return True if columnar files are written.
+     */
+    public boolean getColumnar() {
+        return columnar;
+    }
+    
+    /**
+     * Mutator method for the optional input string identifying whether or
+     * not structured logs are converted to a columnar file as they are 
+     * archived.
+     * 
+     * @param value True or false.  The default setting is false.
+     */
+    public void setColumnar(String value) {
+        if ((value != null) && (!value.isEmpty())) {
+            columnar = Boolean.parseBoolean(value.trim());
+        }
+    }
+    
+    /**
+     * Mutator method for the unit of the response time field of access 
+     * logs.
+     * 
+     * @param value us, ms or s.  Microseconds are used if null, empty or
+     * invalid.
+     */
+    public void setRollupLatencyUnit(String value) {
+        String method = "setRollupLatencyUnit() - ";
+        latencyScale = 1L;
+        if ((value != null) && (!value.trim().isEmpty())) {
+            long scale = AccessLogRollup.scaleOf(value.trim().toLowerCase());
+            if (scale > 0) {
+                latencyScale = scale;
+            }
+            else {
+                LOGGER.warn(method 
+                        + "Invalid response time unit [ "
+                        + value
+                        + " ].  Using microseconds.");
+            }
+        }
+    }
+    
+    /**
+     * Mutator method for the optional input string identifying whether or 
+     * not files copied with FileChannel.transferTo are verified before the
+     * source is removed.
+     * 
+     * @param value True or false.  The default setting is false.
+     */
+    public void setVerifyTransfer(String value) {
+        if ((value != null) && (!value.isEmpty())) {
+            verify = Boolean.parseBoolean(value.trim());
+        }
+    }
+    
+    /**
+     * Mutator method for the optional input string identifying whether or 
+     * not uncompressed files are copied with FileChannel.transferTo.
+     * 
+     * @param value True or false.  The default setting is false.
+     */
+    public void setZeroCopy(String value) {
+        if ((value != null) && (!value.isEmpty())) {
+            zeroCopy = Boolean.parseBoolean(value.trim());
+        }
+    }
+    
+    /**
+     * Dump the input parameters.
+     */
+    public String toString() {
+        
+        String        newLine = System.getProperty("line.separator");
+        StringBuilder sb      = new StringBuilder();
+        sb.append("Output path  : ");
+        sb.append(getOutputBasePath());
+        sb.append(newLine);
+        sb.append("Application  : ");
+        sb.append(getApplication());
+        sb.append(newLine);
+        sb.append("Server Group : ");
+        sb.append(getServerGroup());
+        sb.append(newLine);
+        sb.append("Compression  : ");
+        sb.append(Boolean.toString(getCompression()));
+        sb.append(newLine);
+        sb.append("Format       : ");
+        sb.append(getCompressionFormat());
+        sb.append(newLine);
+        sb.append("Threads      : ");
+        sb.append(Integer.toString(getCompressionThreads()));
+        sb.append(newLine);
+        sb.append("Block Size   : ");
+        sb.append(Integer.toString(getBlockSize()));
+        sb.append(newLine);
+        sb.append("Time Index   : ");
+        sb.append(Boolean.toString(getTimeIndex()));
+        sb.append(newLine);
+        sb.append("Keywords     : ");
+        sb.append(Boolean.toString(getKeywordFilter()));
+        sb.append(newLine);
+        sb.append("Rollups      : ");
+        sb.append(Boolean.toString(getRollups()));
+        sb.append(newLine);
+        sb.append("Sketches     : ");
+        sb.append(Boolean.toString(getSketches()));
+        sb.append(newLine);
+        sb.append("Traces       : ");
+        sb.append(Boolean.toString(getStackTraces()));
+        sb.append(newLine);
+        sb.append("Columnar     : ");
+        sb.append(Boolean.toString(getColumnar()));
+        sb.append(newLine);
+        sb.append("Dedupe       : ");
+        sb.append(Boolean.toString(getDeduplicate()));
+        sb.append(newLine);
+        sb.append("Rotation     : ");
+        sb.append(Boolean.toString(getRotationTracking()));
+        sb.append(newLine);
+        sb.append("Incremental  : ");
+        sb.append(Boolean.toString(getIncremental()));
+        sb.append(newLine);
+        sb.append("Backend      : ");
+        sb.append(String.valueOf(getStorageBackend()));
+        sb.append(newLine);
+        sb.append("Level        : ");
+        sb.append((level == null) ? CompressionLevel.AUTO : 
+            level.name().toLowerCase());
+        sb.append(newLine);
+        sb.append("Dictionary   : ");
+        sb.append((getDictionary() == null) ? "none" : 
+            PresetDictionary.fileNameOf(getDictionary().getId()));
+        sb.append(newLine);
+        sb.append("Delete Input : ");
+        sb.append(Boolean.toString(getDeleteInput()));
+        sb.append(newLine);
+        sb.append("State Path   : ");
+        sb.append(getStatePath());
+        sb.append(newLine);
+        sb.append("Zero Copy    : ");
+        sb.append(Boolean.toString(getZeroCopy()));
+        sb.append(newLine);
+        sb.append("Verify Copy  : ");
+        sb.append(Boolean.toString(getVerifyTransfer()));
+        sb.append(newLine);
+        sb.append("Output Delay : ");
+        sb.append(Integer.toString(getOutputDelay()));
+        sb.append(newLine);    
+        sb.append("Schedule     : ");
+        sb.append(getSchedulePolicy().name().toLowerCase());
+        sb.append(newLine);
+        sb.append("Workers      : ");
+        sb.append(Integer.toString(getWorkers()));
+        sb.append(newLine);
+        sb.append("Max Runtime  : ");
+        sb.append(Long.toString(getMaxRuntime()));
+        sb.append(newLine);
+        
+        return sb.toString();
+    }
+    
+}
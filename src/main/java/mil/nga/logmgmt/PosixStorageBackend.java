@@ -0,0 +1,128 @@
+package mil.nga.logmgmt;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Storage backend writing objects as files under a directory on a local
+ * or NFS mounted file system.  A key maps directly onto the relative path
+ * of the file, so the layout is the one the store has always had.  Files
+ * are written with <code>StagedFile</code> and only appear under their
+ * final name once forced to disk.
+ */
+public class PosixStorageBackend implements StorageBackend {
+
+    private final Path root;
+
+    /**
+     * Constructor.
+     *
+     * @param root The top of the store.
+     */
+    public PosixStorageBackend(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * Accessor method for the top of the store.
+     * @return The directory.
+     */
+    public Path getRoot() {
+        return root;
+    }
+
+    @Override
+    public StorageUpload put(String key) throws IOException {
+        Path file = localPath(key);
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        return new StagedFile(file);
+    }
+
+    @Override
+    public List<String> list(final String prefix) throws IOException {
+        final List<String> keys = new ArrayList<String>();
+        // Only walk the deepest directory named by the prefix.
+        int  slash = prefix.lastIndexOf('/');
+        Path start = (slash < 0) ? root : root.resolve(prefix.substring(0, slash));
+        if (!Files.isDirectory(start)) {
+            return keys;
+        }
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && !StagedFile.isPartial(file)) {
+                    String key = keyOf(file);
+                    if (key.startsWith(prefix)) {
+                        keys.add(key);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc)
+                    throws IOException {
+                if (exc instanceof NoSuchFileException) {
+                    return FileVisitResult.CONTINUE;
+                }
+                throw exc;
+            }
+        });
+        Collections.sort(keys);
+        return keys;
+    }
+
+    /**
+     * Calculate the key of a file under the top of the store.
+     *
+     * @param file A file under the top of the store.
+     * @return The key.
+     */
+    public String keyOf(Path file) {
+        StringBuilder sb = new StringBuilder();
+        for (Path name : root.relativize(file)) {
+            if (sb.length() > 0) {
+                sb.append('/');
+            }
+            sb.append(name.toString());
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(localPath(key));
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(localPath(key));
+    }
+
+    @Override
+    public Path localPath(String key) {
+        return root.resolve(key);
+    }
+
+    @Override
+    public String describe(String key) {
+        return localPath(key).toString();
+    }
+
+    @Override
+    public void close() { }
+
+    @Override
+    public String toString() {
+        return "posix:" + root.toString();
+    }
+}
@@ -0,0 +1,275 @@
+package mil.nga.logmgmt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import mil.nga.util.DictionaryTrainer;
+
+/**
+ * A trained preset dictionary used to compress small archives of a single
+ * application.  Archives compressed with a dictionary are plain zlib
+ * streams (RFC 1950) with the FDICT flag set; the header carries the
+ * Adler-32 of the dictionary (the DICTID) which identifies the dictionary
+ * needed to read the archive.
+ *
+ * Dictionaries are stored in the archive store alongside the archives
+ * that use them, in the <code>.dictionaries</code> directory of the
+ * application directory
+ * (<code>&lt;output.path&gt;/&lt;group&gt;/&lt;application&gt;/.dictionaries/&lt;dictid&gt;.dict</code>).
+ * A dictionary file is named by its own checksum so it is never modified
+ * once written; retraining produces a new file and older archives keep
+ * referring to the dictionary they were written with.
+ */
+public class PresetDictionary {
+
+    /**
+     * Name of the directory holding dictionaries within an application
+     * directory.
+     */
+    public static final String DICTIONARY_DIRECTORY = ".dictionaries";
+
+    /**
+     * Extension of every dictionary file.
+     */
+    public static final String DICTIONARY_EXTENSION = ".dict";
+
+    /**
+     * Length of a zlib header carrying a DICTID.
+     */
+    private static final int ZLIB_HEADER_LENGTH = 6;
+
+    /**
+     * Flag set in the second byte of a zlib header when a dictionary is
+     * required.
+     */
+    private static final int FDICT = 0x20;
+
+    private final byte[] bytes;
+    private final int    id;
+
+    /**
+     * Constructor.
+     *
+     * @param bytes The dictionary content.  Only the last 32 KiB can be
+     * used by Deflate so anything before that is discarded.
+     */
+    public PresetDictionary(byte[] bytes) {
+        if (bytes.length > DictionaryTrainer.MAX_DICTIONARY_SIZE) {
+            bytes = Arrays.copyOfRange(bytes,
+                    bytes.length - DictionaryTrainer.MAX_DICTIONARY_SIZE,
+                    bytes.length);
+        }
+        this.bytes = bytes;
+        this.id    = idOf(bytes);
+    }
+
+    /**
+     * Load a dictionary from a file.
+     *
+     * @param file The dictionary file.
+     * @return The dictionary.
+     * @throws IOException Thrown if the file cannot be read.
+     */
+    public static PresetDictionary read(Path file) throws IOException {
+        return new PresetDictionary(Files.readAllBytes(file));
+    }
+
+    /**
+     * Calculate the zlib DICTID (Adler-32) of dictionary content.
+     *
+     * @param bytes The dictionary content.
+     * @return The DICTID.
+     */
+    public static int idOf(byte[] bytes) {
+        Adler32 adler = new Adler32();
+        adler.update(bytes, 0, bytes.length);
+        return (int)adler.getValue();
+    }
+
+    /**
+     * Read the DICTID from the zlib header of a dictionary compressed
+     * archive.
+     *
+     * @param archive The archive.
+     * @return The DICTID.
+     * @throws IOException Thrown if the archive cannot be read or was not
+     * compressed with a dictionary.
+     */
+    public static int idOf(Path archive) throws IOException {
+        byte[] header = new byte[ZLIB_HEADER_LENGTH];
+        try (InputStream is = Files.newInputStream(archive)) {
+            int count = 0;
+            int read  = 0;
+            while ((count < header.length) &&
+                    ((read = is.read(header, count, header.length - count)) != -1)) {
+                count += read;
+            }
+            if ((count < header.length) || ((header[1] & FDICT) == 0)) {
+                throw new ZipException("Archive [ " + archive.toString()
+                        + " ] was not compressed with a dictionary.");
+            }
+        }
+        return ((header[2] & 0xff) << 24) | ((header[3] & 0xff) << 16) |
+                ((header[4] & 0xff) << 8) | (header[5] & 0xff);
+    }
+
+    /**
+     * Accessor method for the dictionary content.
+     * @return The dictionary content.
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Accessor method for the zlib DICTID of the dictionary.
+     * @return The DICTID.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Calculate the directory holding the dictionaries used by archives in
+     * the input month directory.
+     *
+     * @param monthDir A month directory (<code>.../&lt;yyyy&gt;/&lt;MMM&gt;</code>).
+     * @return The dictionary directory of the application.
+     */
+    public static Path directoryOf(Path monthDir) {
+        return monthDir.toAbsolutePath().getParent().getParent()
+                .resolve(DICTIONARY_DIRECTORY);
+    }
+
+    /**
+     * Calculate the file name of the dictionary with the input DICTID.
+     *
+     * @param id The DICTID.
+     * @return The dictionary file name.
+     */
+    public static String fileNameOf(int id) {
+        return String.format("%08x", id) + DICTIONARY_EXTENSION;
+    }
+
+    /**
+     * Ensure the dictionary is present in the archive store for the input
+     * month directory.  Must be called before an archive using the
+     * dictionary is committed so that the archive is never readable
+     * without its dictionary.
+     *
+     * @param monthDir The month directory the archive is written to.
+     * @return The dictionary file.
+     * @throws IOException Thrown if the dictionary cannot be written.
+     */
+    public Path publish(Path monthDir) throws IOException {
+        Path dir  = directoryOf(monthDir);
+        Path file = dir.resolve(fileNameOf(id));
+        if (!Files.exists(file)) {
+            Files.createDirectories(dir);
+            StagedFile staged = new StagedFile(file);
+            try {
+                staged.getOutputStream().write(bytes);
+                staged.commit();
+            }
+            finally {
+                staged.close();
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Locate and load the dictionary with the input DICTID for an archive.
+     *
+     * @param archive The archive being read.
+     * @param id The DICTID from the zlib header of the archive.
+     * @return The dictionary.
+     * @throws IOException Thrown if the dictionary cannot be found or does
+     * not match the DICTID.
+     */
+    public static PresetDictionary find(Path archive, int id)
+            throws IOException {
+        Path file = directoryOf(archive.toAbsolutePath().getParent())
+                .resolve(fileNameOf(id));
+        if (!Files.exists(file)) {
+            throw new ZipException("Dictionary [ " + file.toString()
+                    + " ] required by [ " + archive.toString()
+                    + " ] not found.");
+        }
+        PresetDictionary dictionary = read(file);
+        if (dictionary.getId() != id) {
+            throw new ZipException("Dictionary [ " + file.toString()
+                    + " ] is corrupt.");
+        }
+        return dictionary;
+    }
+
+    /**
+     * Wrap an output stream in a zlib compressor primed with the
+     * dictionary.  Closing the returned stream closes the input stream.
+     *
+     * @param os The stream receiving the compressed data.
+     * @param level Deflate compression level.
+     * @return The compressing stream.
+     */
+    public OutputStream compress(OutputStream os, int level) {
+        final Deflater deflater = new Deflater(level);
+        deflater.setDictionary(bytes);
+        return new DeflaterOutputStream(os, deflater, StagedFile.BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                }
+                finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * Wrap the stored bytes of a dictionary compressed archive in a stream
+     * returning the original content.  The dictionary is located from the
+     * DICTID in the zlib header.  Reading to the end verifies the Adler-32
+     * of the content held in the zlib trailer.
+     *
+     * @param archive The archive (used to locate the dictionary).
+     * @param stored Stream over the stored bytes.
+     * @return Stream over the original content.
+     */
+    public static InputStream decompress(final Path archive, InputStream stored) {
+        final Inflater inflater = new Inflater();
+        return new InflaterInputStream(stored, inflater, StagedFile.BUFFER_SIZE) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int count = super.read(b, off, len);
+                if ((count == -1) && inf.needsDictionary()) {
+                    inf.setDictionary(find(archive, inf.getAdler()).getBytes());
+                    count = super.read(b, off, len);
+                }
+                return count;
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                }
+                finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,555 @@
+package mil.nga.logmgmt;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.logmgmt.exceptions.InputException;
+import mil.nga.util.ChecksumInputStream;
+import mil.nga.util.ChecksumOutputStream;
+import mil.nga.util.ContentDigest;
+import mil.nga.util.DeltaCopy;
+import mil.nga.util.Options;
+import mil.nga.util.Options.Multiplicity;
+import mil.nga.util.Options.Separator;
+import mil.nga.util.RateLimiter;
+import mil.nga.util.ThrottledInputStream;
+
+/**
+ * Brings a mirror of the archive store (e.g. a second copy kept for a
+ * legal hold) up to date while reading and writing as little as possible.
+ *
+ * The manifests are compared first: an archive whose current manifest
+ * entry is the same in the store and the mirror, and whose mirror copy
+ * has the recorded size, is skipped without either copy being read.
+ * Other files (sidecars, manifests, containers, dictionaries) are skipped
+ * if the mirror copy has the same size and modification time.  New files
+ * are copied; files that changed are rebuilt from the mirror's copy with
+ * rsync style rolling checksum deltas (see <code>DeltaCopy</code>), which
+ * for the append-mostly manifests and containers means only the new tail
+ * is taken from the store.
+ *
+ * Every file is written to a partial file and renamed into place once its
+ * checksum matches the one calculated as the source was read.  Archives
+ * are also checked against their own manifest entry so that a corrupt
+ * archive is not copied over a good mirror copy.  Manifests are replicated
+ * after every other file so that the mirror never lists an archive it does
+ * not hold; the manifests of a directory with an archive that could not be
+ * replicated are left as they are until a later run succeeds.  Nothing is
+ * removed from the mirror.
+ */
+public class ReplicateArchives {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(ReplicateArchives.class);
+
+    /**
+     * Number of bytes in a megabyte.
+     */
+    private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+
+    /**
+     * Outcome of replicating a single file.
+     */
+    public enum Result {
+        /** The mirror copy already matched; nothing was written. */
+        UNCHANGED,
+        /** The file was new to the mirror and copied in full. */
+        COPIED,
+        /** The mirror copy was rebuilt from a delta. */
+        PATCHED,
+        /** Archive does not match its manifest entry; not replicated. */
+        CORRUPT,
+        /** The file could not be replicated. */
+        FAILED
+    }
+
+    private final Path        base;
+    private final Path        target;
+    private final int         threads;
+    private final RateLimiter limiter;
+    private final AtomicLong  literal = new AtomicLong();
+    private final AtomicLong  matched = new AtomicLong();
+    private final Map<Result, AtomicLong> counts =
+            new EnumMap<Result, AtomicLong>(Result.class);
+
+    /**
+     * Current manifest entries of the store and the mirror, keyed by the
+     * directory of the store they describe.
+     */
+    private final Map<Path, Map<String, ManifestEntry>> sourceEntries =
+            new HashMap<Path, Map<String, ManifestEntry>>();
+    private final Map<Path, Map<String, ManifestEntry>> mirrorEntries =
+            new HashMap<Path, Map<String, ManifestEntry>>();
+
+    /**
+     * Directories of the store holding a file that was not replicated.
+     */
+    private final Set<Path> incomplete =
+            Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
+
+    /**
+     * Constructor.
+     *
+     * @param path The top of the archive store.
+     * @param target The directory holding the mirror.
+     * @param threads Number of files replicated concurrently.
+     * @param mbPerSecond Limit on the bandwidth read from the store (less
+     * than or equal to zero for unlimited).
+     * @throws InputException Thrown if the archive store does not exist.
+     */
+    public ReplicateArchives(
+            String path,
+            String target,
+            int    threads,
+            double mbPerSecond) throws InputException {
+
+        String method = "Constructor() - ";
+
+        if ((path == null) || (!Files.isDirectory(Paths.get(path)))) {
+            String msg = method
+                    + "The archive store [ "
+                    + path
+                    + " ] does not exist.";
+            LOGGER.error(msg);
+            throw new InputException(msg);
+        }
+        if ((target == null) || target.trim().isEmpty()) {
+            String msg = method + "No mirror directory was supplied.";
+            LOGGER.error(msg);
+            throw new InputException(msg);
+        }
+        this.base    = Paths.get(path).toAbsolutePath().normalize();
+        this.target  = Paths.get(target.trim()).toAbsolutePath().normalize();
+        this.threads = Math.max(1, threads);
+        this.limiter = new RateLimiter(mbPerSecond * BYTES_PER_MB);
+        if (this.target.startsWith(this.base) || this.base.startsWith(this.target)) {
+            String msg = method
+                    + "The mirror [ "
+                    + this.target.toString()
+                    + " ] and the archive store [ "
+                    + this.base.toString()
+                    + " ] may not contain one another.";
+            LOGGER.error(msg);
+            throw new InputException(msg);
+        }
+        for (Result result : Result.values()) {
+            counts.put(result, new AtomicLong());
+        }
+    }
+
+    /**
+     * Replicate every file of the store that the mirror does not hold or
+     * holds a different version of.
+     *
+     * @throws IOException Thrown if the store cannot be walked or the
+     * mirror cannot be created.
+     */
+    public void replicate() throws IOException {
+
+        String           method    = "replicate() - ";
+        long             start     = System.currentTimeMillis();
+        final List<Path> files     = new ArrayList<Path>();
+        final List<Path> manifests = new ArrayList<Path>();
+
+        Files.createDirectories(target);
+        Files.walkFileTree(base, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir,
+                    BasicFileAttributes attrs) {
+                if (!Manifest.list(dir).isEmpty()) {
+                    sourceEntries.put(dir, Manifest.read(dir));
+                    mirrorEntries.put(dir, Manifest.read(mirrorOf(dir)));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && !StagedFile.isPartial(file)) {
+                    if (Manifest.isManifest(file)) {
+                        manifests.add(file);
+                    }
+                    else {
+                        files.add(file);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        LOGGER.info(method
+                + "Found [ "
+                + (files.size() + manifests.size())
+                + " ] files below [ "
+                + base.toString()
+                + " ].  Replicating to [ "
+                + target.toString()
+                + " ].");
+
+        replicateAll(files);
+        replicateAll(manifests);
+
+        LOGGER.info(method
+                + "Replication complete in [ "
+                + (System.currentTimeMillis() - start)
+                + " ] ms.  Sent [ "
+                + literal.get()
+                + " ] bytes, reused [ "
+                + matched.get()
+                + " ] bytes of the mirror.  Results "
+                + counts.toString()
+                + ".");
+    }
+
+    /**
+     * Replicate a list of files on the configured number of threads and
+     * wait for all of them.
+     *
+     * @param files The files of the store.
+     */
+    private void replicateAll(List<Path> files) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (final Path file : files) {
+            pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    Result result = replicate(file);
+                    if ((result == Result.CORRUPT) || (result == Result.FAILED)) {
+                        incomplete.add(file.getParent());
+                    }
+                    counts.get(result).incrementAndGet();
+                }
+            });
+        }
+        pool.shutdown();
+        try {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException ie) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Calculate the location of a file of the store in the mirror.
+     *
+     * @param file A file (or directory) below the top of the store.
+     * @return The location in the mirror.
+     */
+    private Path mirrorOf(Path file) {
+        Path mirror = target;
+        for (Path name : base.relativize(file)) {
+            mirror = mirror.resolve(name.toString());
+        }
+        return mirror;
+    }
+
+    /**
+     * Replicate a single file.
+     *
+     * @param file A file of the store.
+     * @return The outcome.
+     */
+    private Result replicate(Path file) {
+
+        String method = "replicate() - ";
+        Path   mirror = mirrorOf(file);
+
+        if (Manifest.isManifest(file) && incomplete.contains(file.getParent())) {
+            LOGGER.warn(method
+                    + "Not replicating manifest [ "
+                    + file.toString()
+                    + " ] as an archive of its directory was not "
+                    + "replicated.");
+            return Result.FAILED;
+        }
+        try {
+            ManifestEntry entry = entryOf(sourceEntries, file);
+            if (entry != null) {
+                ManifestEntry mirrored = entryOf(mirrorEntries, file);
+                if ((mirrored != null) &&
+                        (mirrored.getStoredSize() == entry.getStoredSize()) &&
+                        mirrored.getStoredCrc().equals(entry.getStoredCrc()) &&
+                        Files.isRegularFile(mirror) &&
+                        (Files.size(mirror) == entry.getStoredSize())) {
+                    return Result.UNCHANGED;
+                }
+            }
+            else if (Files.isRegularFile(mirror) &&
+                    (Files.size(mirror) == Files.size(file)) &&
+                    Files.getLastModifiedTime(mirror).equals(
+                            Files.getLastModifiedTime(file))) {
+                return Result.UNCHANGED;
+            }
+
+            Files.createDirectories(mirror.getParent());
+            boolean patch = Files.isRegularFile(mirror) && (Files.size(mirror) > 0);
+            try {
+                return transfer(file, mirror, entry, patch);
+            }
+            catch (IOException ioe) {
+                if (!patch) {
+                    throw ioe;
+                }
+                LOGGER.warn(method
+                        + "Unable to patch [ "
+                        + mirror.toString()
+                        + " ].  Copying it in full.  Error message [ "
+                        + ioe.getMessage()
+                        + " ].");
+                return transfer(file, mirror, entry, false);
+            }
+        }
+        catch (IOException ioe) {
+            LOGGER.error(method
+                    + "Unable to replicate [ "
+                    + file.toString()
+                    + " ] to [ "
+                    + mirror.toString()
+                    + " ].  Error message [ "
+                    + ioe.getMessage()
+                    + " ].");
+            return Result.FAILED;
+        }
+    }
+
+    /**
+     * Look up the current manifest entry of an archive.
+     *
+     * @return The entry, or null if the file is not a recorded archive.
+     */
+    private static ManifestEntry entryOf(
+            Map<Path, Map<String, ManifestEntry>> entries, Path file) {
+        Map<String, ManifestEntry> dir = entries.get(file.getParent());
+        return (dir == null) ? null : dir.get(file.getFileName().toString());
+    }
+
+    /**
+     * Write the mirror copy of a file to a partial file, either in full or
+     * rebuilt from the existing mirror copy, and rename it into place if
+     * it matches the source.
+     *
+     * @param file The file of the store.
+     * @param mirror The location in the mirror.
+     * @param entry The manifest entry of the file (null if none).
+     * @param patch True to rebuild from the existing mirror copy.
+     * @return The outcome.
+     * @throws IOException Thrown if the file could not be replicated.
+     */
+    private Result transfer(Path file, Path mirror, ManifestEntry entry,
+            boolean patch) throws IOException {
+
+        String        method    = "transfer() - ";
+        String        algorithm = (entry == null) ?
+                ContentDigest.getCrcAlgorithm() :
+                ContentDigest.algorithmOf(entry.getStoredCrc());
+        ContentDigest read      = new ContentDigest(false, algorithm);
+        ContentDigest written   = new ContentDigest(false, algorithm);
+        StagedFile    staged    = new StagedFile(mirror);
+        long          sent      = 0;
+        long          reused    = 0;
+
+        try {
+            try (InputStream is = new ChecksumInputStream(
+                    new ThrottledInputStream(
+                            new BufferedInputStream(Files.newInputStream(file),
+                                    StagedFile.BUFFER_SIZE),
+                            limiter),
+                    read)) {
+                OutputStream os = new ChecksumOutputStream(
+                        staged.getOutputStream(), written);
+                if (patch) {
+                    try (FileChannel basis = FileChannel.open(mirror,
+                            StandardOpenOption.READ)) {
+                        DeltaCopy delta = new DeltaCopy(basis);
+                        delta.copy(is, os);
+                        sent   = delta.getLiteral();
+                        reused = delta.getMatched();
+                    }
+                }
+                else {
+                    byte[] buffer = new byte[StagedFile.BUFFER_SIZE];
+                    int    count  = 0;
+                    while ((count = is.read(buffer)) != -1) {
+                        os.write(buffer, 0, count);
+                        sent += count;
+                    }
+                }
+                os.flush();
+            }
+
+            if ((entry != null) && ((read.getSize() != entry.getStoredSize()) ||
+                    !read.getCrc().equals(entry.getStoredCrc()))) {
+                LOGGER.error(method
+                        + "Archive [ "
+                        + file.toString()
+                        + " ] does not match its manifest entry.  It has "
+                        + "not been replicated.");
+                return Result.CORRUPT;
+            }
+            if ((written.getSize() != read.getSize()) ||
+                    !written.getCrc().equals(read.getCrc())) {
+                throw new IOException("Copy [ " + staged.getPartial().toString()
+                        + " ] does not match the source.");
+            }
+            staged.commit();
+            Files.setLastModifiedTime(mirror, Files.getLastModifiedTime(file));
+            literal.addAndGet(sent);
+            matched.addAndGet(reused);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug(method
+                        + (patch ? "Patched [ " : "Copied [ ")
+                        + mirror.toString()
+                        + " ].  Sent [ "
+                        + sent
+                        + " ] bytes, reused [ "
+                        + reused
+                        + " ] bytes.");
+            }
+            return patch ? Result.PATCHED : Result.COPIED;
+        }
+        finally {
+            staged.close();
+        }
+    }
+
+    /**
+     * Accessor method for the number of files with the input result.
+     *
+     * @param result The result of interest.
+     * @return The number of files.
+     */
+    public long getCount(Result result) {
+        return counts.get(result).get();
+    }
+
+    /**
+     * Accessor method for the number of bytes taken from the store.
+     * @return The number of bytes.
+     */
+    public long getSent() {
+        return literal.get();
+    }
+
+    /**
+     * Accessor method for the number of bytes reused from the mirror.
+     * @return The number of bytes.
+     */
+    public long getReused() {
+        return matched.get();
+    }
+
+    /**
+     * Simple static method to print the help and usage String information.
+     */
+    private static void printHelp() {
+        System.out.println("");
+        System.out.println(ReplicateArchivesI.HELP_STRING);
+        System.out.println("");
+        System.out.println(ReplicateArchivesI.USAGE_STRING);
+    }
+
+    /**
+     * Driver method used to extract the command line parameters and
+     * initiate processing.
+     *
+     * @param args Input command line arguments
+     * @throws InputException Thrown if the input data does not make
+     * sense.
+     * @throws IOException Thrown if the store cannot be walked.
+     */
+    public static void main(String[] args) throws InputException, IOException {
+
+        String method  = "main() - ";
+        String path    = null;
+        String target  = null;
+        int    threads = ReplicateArchivesI.DEFAULT_THREADS;
+        double rate    = 0;
+
+        // Set up the command line options
+        Options opt = new Options(args, 0);
+        opt.getSet().addOption("path", Separator.EQUALS, Multiplicity.ONCE);
+        opt.getSet().addOption("target", Separator.EQUALS, Multiplicity.ONCE);
+        opt.getSet().addOption("threads", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("rate", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("h", Multiplicity.ZERO_OR_MORE);
+        opt.getSet().addOption("help", Multiplicity.ZERO_OR_MORE);
+
+        // Make sure the options make sense
+        if (!opt.check(true, false)) {
+            System.out.println(ReplicateArchivesI.USAGE_STRING);
+            System.exit(1);
+        }
+
+        // See if the user wanted the help message displayed.
+        if (opt.getSet().isSet("h") || opt.getSet().isSet("help")) {
+            ReplicateArchives.printHelp();
+            System.exit(0);
+        }
+
+        path   = opt.getSet().getOption("path").getResultValue(0);
+        target = opt.getSet().getOption("target").getResultValue(0);
+        try {
+            if (opt.getSet().isSet("threads")) {
+                threads = Integer.parseInt(
+                        opt.getSet().getOption("threads").getResultValue(0).trim());
+            }
+            if (opt.getSet().isSet("rate")) {
+                rate = Double.parseDouble(
+                        opt.getSet().getOption("rate").getResultValue(0).trim());
+            }
+        }
+        catch (NumberFormatException nfe) {
+            LOGGER.error(method
+                    + "ERROR: -threads and -rate must be numeric.  Error "
+                    + "message [ "
+                    + nfe.getMessage()
+                    + " ].");
+            ReplicateArchives.printHelp();
+            System.exit(1);
+        }
+
+        LOGGER.info(method
+                + "Replicating [ "
+                + path
+                + " ] to [ "
+                + target
+                + " ] with [ "
+                + threads
+                + " ] threads, rate limit [ "
+                + ((rate > 0) ? rate + " MB/s" : "none")
+                + " ].");
+
+        new ReplicateArchives(path, target, threads, rate).replicate();
+    }
+}
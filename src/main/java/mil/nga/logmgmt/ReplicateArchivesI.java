@@ -0,0 +1,50 @@
+package mil.nga.logmgmt;
+
+/**
+ * Simple interface containing the constants and help text used by the
+ * archive store replicator.
+ */
+public interface ReplicateArchivesI {
+
+    /**
+     * Default number of files replicated concurrently.
+     */
+    public static final int DEFAULT_THREADS = 4;
+
+    /**
+     * Usage String printed when incorrect arguments are supplied.
+     */
+    public static final String USAGE_STRING = new String(
+            "Usage: java mil.nga.logmgmt.ReplicateArchives "
+            + "-path=<archive-store> "
+            + "-target=<mirror> "
+            + "[ -threads=<count> ] "
+            + "[ -rate=<MB-per-second> ] "
+            + "[-h] [-help]");
+
+    /**
+     * Help string printed when -h or -help appear on the command line.
+     */
+    public static final String HELP_STRING = new String(
+            "This application brings a mirror of the archive store up to "
+            + "date.  Archives whose manifest entry and size already match "
+            + "in the mirror are skipped without being read; other files "
+            + "are skipped if their size and modification time match.  New "
+            + "files are copied and changed files (manifests, containers) "
+            + "are rebuilt from the mirror's copy with rolling checksum "
+            + "deltas.  Archives that do not match their own manifest entry "
+            + "are not replicated.  Manifests are replicated last, so the "
+            + "mirror never lists an archive it does not hold.  Nothing is "
+            + "ever removed from the mirror.  Options supported are as "
+            + "follows:\n\n"
+            + "-path=<archive-store>  Required.  The top of the archive "
+            + "store (the output.path property) or any directory below it.\n"
+            + "-target=<mirror>       Required.  The directory holding the "
+            + "mirror.\n"
+            + "[ -threads=<count> ]   Optional number of files replicated "
+            + "concurrently.  The default is 4.\n"
+            + "[ -rate=<MB-per-second> ] Optional limit on the aggregate "
+            + "bandwidth read from the archive store.  The default is "
+            + "unlimited.\n"
+            + "[-h] [-help]    Prints this help message.\n\n");
+}
@@ -0,0 +1,326 @@
+package mil.nga.logmgmt;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.logmgmt.exceptions.InputException;
+import mil.nga.util.AccessLogRollup;
+import mil.nga.util.AccessLogRollup.Interval;
+import mil.nga.util.LatencyHistogram;
+import mil.nga.util.Options;
+import mil.nga.util.Options.Multiplicity;
+import mil.nga.util.Options.Separator;
+
+/**
+ * Report the traffic recorded in archived access logs.  The hourly
+ * rollups written alongside the archives (see <code>AccessLogRollup</code>)
+ * are merged into hours, days or months; the archives themselves are never
+ * opened, so a month of traffic is summarized from a few hundred small
+ * files.  Rollups whose checksum does not match the manifest entry of
+ * their archive are ignored.
+ */
+public class RollupArchives {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(RollupArchives.class);
+
+    private final Path        base;
+    private final String      by;
+    private final long        from;
+    private final long        to;
+    private final PrintStream out;
+    private final Calendar    calendar = Calendar.getInstance();
+    private final Map<Long, Interval> periods = new TreeMap<Long, Interval>();
+    private long rollups  = 0;
+    private long stale    = 0;
+    private long unparsed = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param path The directory to report on (the top of the archive
+     * store or any directory below it).
+     * @param by The interval of each line of the report (hour, day or
+     * month).
+     * @param from Start of the range of interest (inclusive, epoch
+     * milliseconds).
+     * @param to End of the range of interest (exclusive, epoch
+     * milliseconds).
+     * @param out Destination of the report.
+     * @throws InputException Thrown if the directory does not exist or the
+     * interval is not recognized.
+     */
+    public RollupArchives(
+            String      path,
+            String      by,
+            long        from,
+            long        to,
+            PrintStream out) throws InputException {
+
+        String method = "Constructor() - ";
+
+        if ((path == null) || (!Files.isDirectory(Paths.get(path)))) {
+            String msg = method
+                    + "The archive store [ "
+                    + path
+                    + " ] does not exist.";
+            LOGGER.error(msg);
+            throw new InputException(msg);
+        }
+        if (!RollupArchivesI.BY_HOUR.equals(by) &&
+                !RollupArchivesI.BY_DAY.equals(by) &&
+                !RollupArchivesI.BY_MONTH.equals(by)) {
+            String msg = method
+                    + "Invalid interval [ "
+                    + by
+                    + " ].  Expected hour, day or month.";
+            LOGGER.error(msg);
+            throw new InputException(msg);
+        }
+        this.base = Paths.get(path);
+        this.by   = by;
+        this.from = from;
+        this.to   = to;
+        this.out  = out;
+    }
+
+    /**
+     * Merge every rollup below the directory and print the report.
+     *
+     * @throws IOException Thrown if the store cannot be walked.
+     */
+    public void report() throws IOException {
+
+        String method = "report() - ";
+
+        for (Path dir : ArchiveStore.findMonthDirectories(base)) {
+            if ((ArchiveStore.endOf(dir) <= from) ||
+                    (ArchiveStore.startOf(dir) >= to)) {
+                continue;
+            }
+            for (ManifestEntry entry : Manifest.read(dir).values()) {
+                Path sidecar = AccessLogRollup.sidecarOf(
+                        dir.resolve(entry.getDestination()));
+                if (!Files.exists(sidecar)) {
+                    continue;
+                }
+                try {
+                    AccessLogRollup rollup = AccessLogRollup.read(
+                            sidecar, entry.getSourceCrc());
+                    if (rollup == null) {
+                        stale++;
+                        continue;
+                    }
+                    add(rollup);
+                }
+                catch (IOException ioe) {
+                    stale++;
+                    LOGGER.warn(method
+                            + "Unable to read rollup [ "
+                            + sidecar.toString()
+                            + " ].  Error message [ "
+                            + ioe.getMessage()
+                            + " ].");
+                }
+            }
+        }
+        print();
+
+        LOGGER.info(method
+                + "Merged [ "
+                + rollups
+                + " ] rollups, ignored [ "
+                + stale
+                + " ] that no longer match their archive.  [ "
+                + unparsed
+                + " ] lines of the logs could not be parsed.");
+    }
+
+    /**
+     * Merge the hours of a rollup into the periods of the report.
+     */
+    private void add(AccessLogRollup rollup) {
+        rollups++;
+        unparsed += rollup.getUnparsed();
+        for (Interval hour : rollup.getIntervals()) {
+            if ((hour.getStart() < from) || (hour.getStart() >= to)) {
+                continue;
+            }
+            long     start  = periodOf(hour.getStart());
+            Interval period = periods.get(start);
+            if (period == null) {
+                period = new Interval(start);
+                periods.put(start, period);
+            }
+            period.merge(hour);
+        }
+    }
+
+    /**
+     * Calculate the start of the period holding an hour.
+     */
+    private long periodOf(long hour) {
+        if (RollupArchivesI.BY_HOUR.equals(by)) {
+            return hour;
+        }
+        calendar.setTimeInMillis(hour);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        if (RollupArchivesI.BY_MONTH.equals(by)) {
+            calendar.set(Calendar.DAY_OF_MONTH, 1);
+        }
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * Print a line per period.
+     */
+    private void print() {
+        SimpleDateFormat label = new SimpleDateFormat(
+                RollupArchivesI.BY_HOUR.equals(by) ? "yyyy-MM-dd HH:00" :
+                RollupArchivesI.BY_DAY.equals(by) ? "yyyy-MM-dd" : "yyyy-MM");
+        out.println(String.format(
+                "%-16s %12s %16s %10s %10s %10s %10s %9s %9s %9s %9s",
+                "period", "requests", "bytes", "2xx", "3xx", "4xx", "5xx",
+                "p50(ms)", "p90(ms)", "p99(ms)", "max(ms)"));
+        for (Interval period : periods.values()) {
+            LatencyHistogram latency = period.getLatency();
+            out.println(String.format(
+                    "%-16s %12d %16d %10d %10d %10d %10d %9s %9s %9s %9s",
+                    label.format(new Date(period.getStart())),
+                    period.getRequests(),
+                    period.getBytes(),
+                    period.getStatusClassCount(2),
+                    period.getStatusClassCount(3),
+                    period.getStatusClassCount(4),
+                    period.getStatusClassCount(5),
+                    millis(latency, latency.getPercentile(50)),
+                    millis(latency, latency.getPercentile(90)),
+                    millis(latency, latency.getPercentile(99)),
+                    millis(latency, latency.getMax())));
+        }
+        out.flush();
+    }
+
+    /**
+     * Format a response time in microseconds as milliseconds.
+     */
+    private static String millis(LatencyHistogram latency, long micros) {
+        if (latency.getCount() == 0) {
+            return "-";
+        }
+        return String.format("%.1f", micros / 1000.0);
+    }
+
+    /**
+     * Convert a yyyyMMdd date into epoch milliseconds.
+     *
+     * @param date The date.
+     * @param next True for the start of the following day.
+     * @return The start of the day (local time).
+     * @throws InputException Thrown if the date is not valid.
+     */
+    private static long timeOf(String date, boolean next)
+            throws InputException {
+        String           method = "timeOf() - ";
+        SimpleDateFormat sdf    = new SimpleDateFormat("yyyyMMdd");
+        sdf.setLenient(false);
+        try {
+            Calendar cal = Calendar.getInstance();
+            cal.setTime(sdf.parse(date.trim()));
+            if (next) {
+                cal.add(Calendar.DAY_OF_MONTH, 1);
+            }
+            return cal.getTimeInMillis();
+        }
+        catch (ParseException pe) {
+            String msg = method
+                    + "Invalid date [ "
+                    + date
+                    + " ].  Expected yyyyMMdd.";
+            LOGGER.error(msg);
+            throw new InputException(msg);
+        }
+    }
+
+    /**
+     * Simple static method to print the help and usage String information.
+     */
+    private static void printHelp() {
+        System.out.println("");
+        System.out.println(RollupArchivesI.HELP_STRING);
+        System.out.println("");
+        System.out.println(RollupArchivesI.USAGE_STRING);
+    }
+
+    /**
+     * Driver method used to extract the command line parameters and
+     * initiate processing.
+     *
+     * @param args Input command line arguments
+     * @throws InputException Thrown if the input data does not make
+     * sense.
+     * @throws IOException Thrown if the store cannot be walked.
+     */
+    public static void main(String[] args) throws InputException, IOException {
+
+        String path = null;
+        String by   = RollupArchivesI.BY_DAY;
+        long   from = Long.MIN_VALUE;
+        long   to   = Long.MAX_VALUE;
+
+        // Set up the command line options
+        Options opt = new Options(args, 0);
+        opt.getSet().addOption("path", Separator.EQUALS, Multiplicity.ONCE);
+        opt.getSet().addOption("by", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("from", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("to", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("h", Multiplicity.ZERO_OR_MORE);
+        opt.getSet().addOption("help", Multiplicity.ZERO_OR_MORE);
+
+        // Make sure the options make sense
+        if (!opt.check(true, false)) {
+            System.out.println(RollupArchivesI.USAGE_STRING);
+            System.exit(1);
+        }
+
+        // See if the user wanted the help message displayed.
+        if (opt.getSet().isSet("h") || opt.getSet().isSet("help")) {
+            RollupArchives.printHelp();
+            System.exit(0);
+        }
+
+        path = opt.getSet().getOption("path").getResultValue(0);
+        if (opt.getSet().isSet("by")) {
+            by = opt.getSet().getOption("by").getResultValue(0).trim().toLowerCase();
+        }
+        if (opt.getSet().isSet("from")) {
+            from = timeOf(opt.getSet().getOption("from").getResultValue(0), false);
+        }
+        if (opt.getSet().isSet("to")) {
+            to = timeOf(opt.getSet().getOption("to").getResultValue(0), true);
+        }
+
+        new RollupArchives(path, by, from, to, System.out).report();
+    }
+}
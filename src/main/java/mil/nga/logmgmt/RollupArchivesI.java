@@ -0,0 +1,47 @@
+package mil.nga.logmgmt;
+
+/**
+ * Simple interface containing the constants and help text used by the 
+ * access log rollup command.
+ */
+public interface RollupArchivesI {
+    
+    /**
+     * Interval of each line of the report: hour, day or month.
+     */
+    public static final String BY_HOUR  = "hour";
+    public static final String BY_DAY   = "day";
+    public static final String BY_MONTH = "month";
+    
+    /**
+     * Usage String printed when incorrect arguments are supplied.
+     */
+    public static final String USAGE_STRING = new String(
+            "Usage: java mil.nga.logmgmt.RollupArchives "
+            + "-path=<archive-store> "
+            + "[ -by=<hour|day|month> ] "
+            + "[ -from=<yyyyMMdd> ] "
+            + "[ -to=<yyyyMMdd> ] "
+            + "[-h] [-help]");
+    
+    /**
+     * Help string printed when -h or -help appear on the command line.
+     */
+    public static final String HELP_STRING = new String(
+            "This application reports the traffic recorded in archived "
+            + "access logs by merging the hourly rollups written when the "
+            + "logs were archived (output.rollups).  The logs themselves "
+            + "are not read.  For each hour, day or month it prints the "
+            + "number of requests, the bytes sent, the number of 2xx, 3xx, "
+            + "4xx and 5xx responses and the 50th, 90th and 99th percentile "
+            + "and maximum response times in milliseconds (where the logs "
+            + "record them).  Options supported are as follows:\n\n"
+            + "-path=<archive-store>  Required.  The top of the archive "
+            + "store or any directory below it (e.g. a single server "
+            + "group or application).  All rollups below it are merged.\n"
+            + "[ -by=<interval> ]     Optional interval: hour, day or "
+            + "month.  The default is day.\n"
+            + "[ -from=<yyyyMMdd> ]   Optional first date of interest.\n"
+            + "[ -to=<yyyyMMdd> ]     Optional last date of interest.\n"
+            + "[-h] [-help]    Prints this help message.\n\n");
+}
@@ -0,0 +1,388 @@
+package mil.nga.logmgmt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.util.ContentDigest;
+
+/**
+ * Persistent record of the source files archived from this host, kept in
+ * the state directory so that a file is not archived a second time after
+ * logrotate has renamed or compressed it (e.g.
+ * <code>catalina.out-20260101</code> archived with
+ * <code>input.file.delete=false</code>, then found again as
+ * <code>catalina.out-20260101.gz</code>).
+ *
+ * Each archived source is identified by its device and inode together
+ * with its size and last modified time, which a rename preserves.  A
+ * candidate with the same identity, size and time is the same file under
+ * another name and is skipped without being read.  Compressing a file
+ * creates a new inode, so a gzip candidate is matched by content instead:
+ * the trailer of a gzip file holds the size (modulo 2^32) and CRC32 of the
+ * uncompressed data.  Only when that size matches an archived source is the
+ * candidate decompressed to compare its checksum with the one recorded (or
+ * not even then if the recorded checksum is itself a CRC32).
+ *
+ * The state is a single append-only file (<code>rotation.dat</code>) of
+ * fixed length binary records read into memory when opened.  Records for
+ * an identity seen more than once are collapsed (the last one wins) by
+ * rewriting the file in place when opened, so the file stays at roughly one
+ * record per source file.  On platforms that do not expose inode numbers
+ * nothing is tracked.
+ */
+public class RotationTracker {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(RotationTracker.class);
+
+    /**
+     * Name of the state file within the state directory.
+     */
+    public static final String STATE_FILE = "rotation.dat";
+
+    /**
+     * Length of a record: device, inode, size and last modified time
+     * (8 bytes each), the checksum (4 bytes) and the checksum algorithm
+     * (1 byte).
+     */
+    private static final int RECORD_LENGTH = 37;
+
+    /**
+     * Smallest number of records at which the file is compacted.
+     */
+    private static final int COMPACT_THRESHOLD = 1024;
+
+    /**
+     * Length of the gzip trailer and of the smallest gzip file.
+     */
+    private static final int GZIP_TRAILER_LENGTH = 8;
+    private static final int GZIP_MINIMUM_LENGTH = 18;
+
+    private static final byte ALGORITHM_CRC32  = 0;
+    private static final byte ALGORITHM_CRC32C = 1;
+
+    private final Path                file;
+    private final Map<String, Record> byIdentity =
+            new LinkedHashMap<String, Record>();
+    private final Map<Long, List<Record>> bySize =
+            new HashMap<Long, List<Record>>();
+
+    /**
+     * Constructor.  Use <code>open()</code> to open the state.
+     */
+    private RotationTracker(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Open (creating if necessary) the state kept in the state directory.
+     *
+     * @param stateDir The state directory.
+     * @return The tracker.
+     * @throws IOException Thrown if the state cannot be read or created.
+     */
+    public static RotationTracker open(Path stateDir) throws IOException {
+
+        Files.createDirectories(stateDir);
+        RotationTracker tracker = new RotationTracker(
+                stateDir.resolve(STATE_FILE));
+        try (FileChannel channel = FileChannel.open(tracker.file,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            FileLock lock = channel.lock();
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate(
+                        (int)Math.min(channel.size(), Integer.MAX_VALUE));
+                while (buffer.hasRemaining() && (channel.read(buffer) > 0)) { }
+                buffer.flip();
+                int count = 0;
+                // A torn final record is ignored.
+                while (buffer.remaining() >= RECORD_LENGTH) {
+                    tracker.put(new Record(buffer));
+                    count++;
+                }
+                if ((count >= COMPACT_THRESHOLD) &&
+                        (count > 2 * tracker.byIdentity.size())) {
+                    tracker.compact(channel);
+                }
+            }
+            finally {
+                lock.release();
+            }
+        }
+        return tracker;
+    }
+
+    /**
+     * Rewrite the file with one record per identity.  The records are
+     * written in place (under the lock held by the caller) so appends
+     * from other processes are not lost.
+     */
+    private void compact(FileChannel channel) throws IOException {
+        String     method = "compact() - ";
+        ByteBuffer buffer = ByteBuffer.allocate(
+                byIdentity.size() * RECORD_LENGTH);
+        for (Record record : byIdentity.values()) {
+            record.write(buffer);
+        }
+        buffer.flip();
+        long size = buffer.remaining();
+        long position = 0;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        channel.truncate(size);
+        channel.force(false);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(method
+                    + "Compacted [ "
+                    + file.toString()
+                    + " ] to [ "
+                    + byIdentity.size()
+                    + " ] records.");
+        }
+    }
+
+    private void put(Record record) {
+        Record previous = byIdentity.remove(record.identity());
+        if (previous != null) {
+            bySize.get(previous.size & 0xffffffffL).remove(previous);
+        }
+        byIdentity.put(record.identity(), record);
+        Long         key  = record.size & 0xffffffffL;
+        List<Record> list = bySize.get(key);
+        if (list == null) {
+            list = new ArrayList<Record>();
+            bySize.put(key, list);
+        }
+        list.add(record);
+    }
+
+    /**
+     * Determine whether a candidate file was already archived, either
+     * under another name or (for a gzip file) before it was compressed.
+     *
+     * @param candidate The candidate file.
+     * @return True if the content of the file was already archived.
+     * @throws IOException Thrown if the file cannot be read.
+     */
+    public synchronized boolean isArchived(Path candidate) throws IOException {
+
+        String              method = "isArchived() - ";
+        BasicFileAttributes attr   = Files.readAttributes(
+                candidate, BasicFileAttributes.class);
+        if (!attr.isRegularFile()) {
+            return false;
+        }
+        long[] id = identityOf(candidate);
+        if (id != null) {
+            Record record = byIdentity.get(id[0] + ":" + id[1]);
+            if ((record != null) &&
+                    (record.size == attr.size()) &&
+                    (record.mtime == attr.lastModifiedTime().toMillis())) {
+                return true;
+            }
+        }
+        if (attr.size() < GZIP_MINIMUM_LENGTH) {
+            return false;
+        }
+
+        // Read the magic number and the trailer.
+        ByteBuffer header  = ByteBuffer.allocate(2);
+        ByteBuffer trailer = ByteBuffer.allocate(GZIP_TRAILER_LENGTH)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(candidate,
+                StandardOpenOption.READ)) {
+            while (header.hasRemaining() &&
+                    (channel.read(header, header.position()) > 0)) { }
+            long position = attr.size() - GZIP_TRAILER_LENGTH;
+            while (trailer.hasRemaining() && (channel.read(trailer,
+                    position + trailer.position()) > 0)) { }
+        }
+        if (header.hasRemaining() || trailer.hasRemaining() ||
+                (header.get(0) != (byte)0x1f) || (header.get(1) != (byte)0x8b)) {
+            return false;
+        }
+        int          crc32   = trailer.getInt(0);
+        List<Record> matches = bySize.get(trailer.getInt(4) & 0xffffffffL);
+        if ((matches == null) || matches.isEmpty()) {
+            return false;
+        }
+
+        ContentDigest content = null;
+        for (Record record : matches) {
+            if (record.algorithm == ALGORITHM_CRC32) {
+                if (record.crc == crc32) {
+                    return true;
+                }
+                continue;
+            }
+            if (content == null) {
+                content = new ContentDigest(false, ContentDigest.CRC32C);
+                byte[] buffer = new byte[64 * 1024];
+                try (InputStream is = new GZIPInputStream(
+                        Files.newInputStream(candidate))) {
+                    int count;
+                    while ((count = is.read(buffer)) > 0) {
+                        content.update(buffer, 0, count);
+                    }
+                }
+                catch (IOException ioe) {
+                    LOGGER.warn(method
+                            + "Unable to decompress [ "
+                            + candidate.toString()
+                            + " ].  Error message [ "
+                            + ioe.getMessage()
+                            + " ].");
+                    return false;
+                }
+            }
+            if ((record.size == content.getSize()) &&
+                    (record.crc == crcOf(content.getCrc()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Record that a source file was archived.  The record is written to
+     * the state file before the method returns.  Nothing is recorded if
+     * the platform does not expose the inode of the file.
+     *
+     * @param source The source file, or the archive if the source was
+     * renamed into place.
+     * @param size Size of the source file.
+     * @param mtime Last modified time of the source file.
+     * @param crc Checksum of the source content (as returned by
+     * <code>ContentDigest.getCrc()</code>).
+     * @throws IOException Thrown if the record cannot be written.
+     */
+    public synchronized void add(Path source, long size, long mtime,
+            String crc) throws IOException {
+        long[] id = identityOf(source);
+        if (id == null) {
+            return;
+        }
+        Record record = new Record(id[0], id[1], size, mtime, crcOf(crc),
+                ContentDigest.CRC32.equals(ContentDigest.algorithmOf(crc)) ?
+                        ALGORITHM_CRC32 : ALGORITHM_CRC32C);
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_LENGTH);
+        record.write(buffer);
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            FileLock lock = channel.lock();
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+            finally {
+                lock.release();
+            }
+        }
+        put(record);
+    }
+
+    /**
+     * Accessor method for the number of source files tracked.
+     * @return The number of source files tracked.
+     */
+    public synchronized int size() {
+        return byIdentity.size();
+    }
+
+    /**
+     * Get the device and inode of a file.
+     *
+     * @param file The file.
+     * @return The device and inode, or null if the platform does not
+     * expose them.
+     * @throws IOException Thrown if the file cannot be read.
+     */
+    static long[] identityOf(Path file) throws IOException {
+        try {
+            return new long[] {
+                    ((Number)Files.getAttribute(file, "unix:dev")).longValue(),
+                    ((Number)Files.getAttribute(file, "unix:ino")).longValue() };
+        }
+        catch (UnsupportedOperationException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Extract the checksum from a value returned by
+     * <code>ContentDigest.getCrc()</code>.
+     */
+    private static int crcOf(String value) {
+        return (int)Long.parseLong(value.substring(
+                value.indexOf(ContentDigest.ALGORITHM_SEPARATOR) + 1), 16);
+    }
+
+    /**
+     * A single archived source file.
+     */
+    private static class Record {
+
+        private final long dev;
+        private final long ino;
+        private final long size;
+        private final long mtime;
+        private final int  crc;
+        private final byte algorithm;
+
+        Record(long dev, long ino, long size, long mtime, int crc,
+                byte algorithm) {
+            this.dev       = dev;
+            this.ino       = ino;
+            this.size      = size;
+            this.mtime     = mtime;
+            this.crc       = crc;
+            this.algorithm = algorithm;
+        }
+
+        Record(ByteBuffer buffer) {
+            this(buffer.getLong(), buffer.getLong(), buffer.getLong(),
+                    buffer.getLong(), buffer.getInt(), buffer.get());
+        }
+
+        String identity() {
+            return dev + ":" + ino;
+        }
+
+        void write(ByteBuffer buffer) {
+            buffer.putLong(dev)
+                  .putLong(ino)
+                  .putLong(size)
+                  .putLong(mtime)
+                  .putInt(crc)
+                  .put(algorithm);
+        }
+    }
+}
@@ -0,0 +1,445 @@
+package mil.nga.logmgmt;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.util.FileUtils;
+
+/**
+ * Small append-only journal recording the progress of each archive
+ * operation in a run.  Every operation moves through the following states:
+ *
+ * <li><code>B</code> - begun.  The partial file may exist.</li>
+ * <li><code>C</code> - committed.  The archive exists under its final name
+ * and has been forced to disk.</li>
+ * <li><code>D</code> - done.  The source file has been removed (or
+ * retained if so configured).</li>
+ * <li><code>A</code> - aborted.  The partial file was removed and the
+ * source was left untouched.</li>
+ *
+ * Records are written to the journal as they happen (so they survive the
+ * death of the JVM) but are only forced to disk once per group of records,
+ * which keeps the cost of journaling small relative to the cost of the
+ * archive itself.  Each run writes its own journal and holds an exclusive
+ * lock on it.  When a run completes cleanly its journal is deleted.  Any
+ * journal that is found unlocked at the start of the next run belongs to a
+ * run that died, and only the operations listed in it are rolled forward
+ * or back; nothing else in the archive needs to be re-verified.
+ *
+ * Because the <code>C</code> record may not have reached the disk, an
+ * operation without one is also rolled forward if the archive is found in
+ * the storage backend under the key recorded when it began.
+ */
+public class RunJournal implements Closeable {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(RunJournal.class);
+
+    /**
+     * Prefix used for all journal file names.
+     */
+    public static final String JOURNAL_PREFIX = "journal-";
+
+    /**
+     * Extension used for all journal file names.
+     */
+    public static final String JOURNAL_EXTENSION = ".log";
+
+    /**
+     * Number of records written between forcing the journal to disk.
+     */
+    public static final int DEFAULT_GROUP_SIZE = 32;
+
+    /**
+     * Length of the random token used to make the journal name unique.
+     */
+    private static final int TOKEN_LENGTH = 6;
+
+    private static final String BEGIN     = "B";
+    private static final String COMMITTED = "C";
+    private static final String DONE      = "D";
+    private static final String ABORTED   = "A";
+    private static final String DELIMITER = "\t";
+
+    private final Path        journal;
+    private final FileChannel channel;
+    private final FileLock    lock;
+    private final int         groupSize;
+    private final Set<Long>   outstanding = new HashSet<Long>();
+    private long              nextId      = 0;
+    private int               unforced    = 0;
+
+    /**
+     * Constructor.  Use <code>open()</code> to create a journal.
+     */
+    private RunJournal(Path journal, FileChannel channel, FileLock lock,
+            int groupSize) {
+        this.journal   = journal;
+        this.channel   = channel;
+        this.lock      = lock;
+        this.groupSize = (groupSize < 1) ? 1 : groupSize;
+    }
+
+    /**
+     * Recover any journals left behind by runs that died, then create a
+     * new journal for the current run.
+     *
+     * @param stateDir Directory in which the journals are kept.
+     * @param groupSize Number of records written between forcing the
+     * journal to disk.
+     * @param backend The storage backend the archives are written to.
+     * @return The journal for the current run.
+     * @throws IOException Thrown if the journal cannot be created.
+     */
+    public static RunJournal open(Path stateDir, int groupSize,
+            StorageBackend backend) throws IOException {
+
+        Files.createDirectories(stateDir);
+        recover(stateDir, backend);
+
+        Path journal = stateDir.resolve(JOURNAL_PREFIX
+                + System.currentTimeMillis()
+                + "-"
+                + FileUtils.generateUniqueToken(TOKEN_LENGTH)
+                + JOURNAL_EXTENSION);
+        FileChannel channel = FileChannel.open(journal,
+                StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        FileLock lock = channel.tryLock();
+        return new RunJournal(journal, channel, lock, groupSize);
+    }
+
+    /**
+     * Record the start of an archive operation.
+     *
+     * @param source The file being archived.
+     * @param destination The final location of the archive.
+     * @param key The key of the archive in the storage backend.
+     * @param deleteSource True if the source is to be removed once the
+     * archive has been committed.
+     * @return The identifier of the operation.
+     * @throws IOException Thrown if the record cannot be written.
+     */
+    public synchronized long begin(Path source, Path destination, String key,
+            boolean deleteSource) throws IOException {
+        long id = nextId++;
+        write(BEGIN
+                + DELIMITER + id
+                + DELIMITER + deleteSource
+                + DELIMITER + source.toAbsolutePath().toString()
+                + DELIMITER + destination.toAbsolutePath().toString()
+                + DELIMITER + key);
+        outstanding.add(id);
+        return id;
+    }
+
+    /**
+     * Record that the archive is in its final location.
+     *
+     * @param id The identifier of the operation.
+     * @throws IOException Thrown if the record cannot be written.
+     */
+    public synchronized void committed(long id) throws IOException {
+        write(COMMITTED + DELIMITER + id);
+    }
+
+    /**
+     * Record that the operation is complete.
+     *
+     * @param id The identifier of the operation.
+     * @throws IOException Thrown if the record cannot be written.
+     */
+    public synchronized void done(long id) throws IOException {
+        write(DONE + DELIMITER + id);
+        outstanding.remove(id);
+    }
+
+    /**
+     * Record that the operation was abandoned and its partial output
+     * removed.
+     *
+     * @param id The identifier of the operation.
+     */
+    public synchronized void aborted(long id) {
+        String method = "aborted() - ";
+        try {
+            write(ABORTED + DELIMITER + id);
+            outstanding.remove(id);
+        }
+        catch (IOException ioe) {
+            LOGGER.warn(method
+                    + "Unable to record aborted operation [ "
+                    + id
+                    + " ] in journal [ "
+                    + journal.toString()
+                    + " ].  Error message [ "
+                    + ioe.getMessage()
+                    + " ].");
+        }
+    }
+
+    /**
+     * Append a single record to the journal, forcing the journal to disk
+     * once a full group of records has been written.
+     *
+     * @param record The record (without line terminator).
+     * @throws IOException Thrown if the record cannot be written.
+     */
+    private void write(String record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(
+                (record + "\n").getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        if (++unforced >= groupSize) {
+            channel.force(false);
+            unforced = 0;
+        }
+    }
+
+    /**
+     * Force any outstanding records to disk and release the journal.  If
+     * every operation reached a final state the journal is deleted,
+     * otherwise it is left for the next run to recover.
+     */
+    @Override
+    public synchronized void close() {
+        String method = "close() - ";
+        try {
+            channel.force(false);
+            if (lock != null) {
+                lock.release();
+            }
+            channel.close();
+            if (outstanding.isEmpty()) {
+                Files.deleteIfExists(journal);
+            }
+            else {
+                LOGGER.warn(method
+                        + "[ "
+                        + outstanding.size()
+                        + " ] operations did not complete.  Journal [ "
+                        + journal.toString()
+                        + " ] will be recovered by the next run.");
+            }
+        }
+        catch (IOException ioe) {
+            LOGGER.warn(method
+                    + "Unexpected IOException closing journal [ "
+                    + journal.toString()
+                    + " ].  Error message [ "
+                    + ioe.getMessage()
+                    + " ].");
+        }
+    }
+
+    /**
+     * Roll forward or back every operation recorded in journals left
+     * behind by runs that are no longer active.  Journals still locked by
+     * an active run are left alone.
+     *
+     * @param stateDir Directory in which the journals are kept.
+     * @param backend The storage backend the archives were written to.
+     */
+    public static void recover(Path stateDir, StorageBackend backend) {
+
+        String method = "recover() - ";
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(
+                stateDir, JOURNAL_PREFIX + "*" + JOURNAL_EXTENSION)) {
+            for (Path journal : stream) {
+                try {
+                    if (recoverJournal(journal, backend)) {
+                        Files.deleteIfExists(journal);
+                    }
+                }
+                catch (IOException ioe) {
+                    LOGGER.error(method
+                            + "Unable to recover journal [ "
+                            + journal.toString()
+                            + " ].  It will be retried by the next run.  "
+                            + "Error message [ "
+                            + ioe.getMessage()
+                            + " ].");
+                }
+            }
+        }
+        catch (IOException ioe) {
+            LOGGER.error(method
+                    + "Unexpected IOException recovering journals in [ "
+                    + stateDir.toString()
+                    + " ].  Error message [ "
+                    + ioe.getMessage()
+                    + " ].");
+        }
+    }
+
+    /**
+     * Lock and replay a single journal.
+     *
+     * @param journal The journal to recover.
+     * @param backend The storage backend the archives were written to.
+     * @return True if the journal was replayed, false if it is still in
+     * use by an active run.
+     * @throws IOException Thrown if the journal cannot be replayed.
+     */
+    private static boolean recoverJournal(Path journal, StorageBackend backend)
+            throws IOException {
+        String method = "recoverJournal() - ";
+        try (FileChannel fc = FileChannel.open(journal,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            FileLock lock = fc.tryLock();
+            if (lock == null) {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug(method
+                            + "Journal [ "
+                            + journal.toString()
+                            + " ] belongs to an active run.");
+                }
+                return false;
+            }
+            try {
+                LOGGER.warn(method
+                        + "Recovering journal [ "
+                        + journal.toString()
+                        + " ] left behind by an incomplete run.");
+                replay(journal, backend);
+            }
+            finally {
+                lock.release();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read a journal and resolve each operation that did not reach a final
+     * state.
+     *
+     * @param journal The journal to replay.
+     * @param backend The storage backend the archives were written to.
+     * @throws IOException Thrown if the journal cannot be read or an
+     * operation cannot be resolved.
+     */
+    private static void replay(Path journal, StorageBackend backend)
+            throws IOException {
+
+        Map<Long, Operation> operations = new LinkedHashMap<Long, Operation>();
+
+        try (BufferedReader reader = Files.newBufferedReader(
+                journal, StandardCharsets.UTF_8)) {
+            String line = null;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(DELIMITER);
+                try {
+                    if (BEGIN.equals(fields[0]) && (fields.length == 6)) {
+                        Operation op = new Operation(
+                                Boolean.parseBoolean(fields[2]),
+                                Paths.get(fields[3]),
+                                Paths.get(fields[4]),
+                                fields[5]);
+                        operations.put(Long.parseLong(fields[1]), op);
+                    }
+                    else if (fields.length == 2) {
+                        Operation op = operations.get(Long.parseLong(fields[1]));
+                        if (op == null) {
+                            continue;
+                        }
+                        if (COMMITTED.equals(fields[0])) {
+                            op.committed = true;
+                        }
+                        else if (DONE.equals(fields[0]) ||
+                                ABORTED.equals(fields[0])) {
+                            operations.remove(Long.parseLong(fields[1]));
+                        }
+                    }
+                }
+                catch (NumberFormatException nfe) {
+                    // A torn final record.  Ignore it.
+                }
+            }
+        }
+
+        for (Operation op : operations.values()) {
+            op.resolve(backend);
+        }
+    }
+
+    /**
+     * Internal class holding the state of a single recovered operation.
+     */
+    private static class Operation {
+
+        private final boolean deleteSource;
+        private final Path    source;
+        private final Path    destination;
+        private final String  key;
+        private boolean       committed = false;
+
+        Operation(boolean deleteSource, Path source, Path destination,
+                String key) {
+            this.deleteSource = deleteSource;
+            this.source       = source;
+            this.destination  = destination;
+            this.key          = key;
+        }
+
+        /**
+         * Roll the operation forward if the archive made it to its final
+         * name (the rename or upload only completes after the archive is
+         * forced to disk), otherwise roll it back by removing the partial
+         * file.  The source is never touched when rolling back.
+         *
+         * @param backend The storage backend the archive was written to.
+         * @throws IOException Thrown if the backend cannot be queried or
+         * the partial or source file cannot be removed.
+         */
+        void resolve(StorageBackend backend) throws IOException {
+            String method = "resolve() - ";
+            if (committed || backend.exists(key)) {
+                if (deleteSource && Files.exists(source)) {
+                    LOGGER.info(method
+                            + "Rolling forward.  Archive [ "
+                            + destination.toString()
+                            + " ] is complete, removing source [ "
+                            + source.toString()
+                            + " ].");
+                    Files.delete(source);
+                }
+            }
+            else {
+                Path partial = StagedFile.partialOf(destination);
+                if (Files.deleteIfExists(partial)) {
+                    LOGGER.info(method
+                            + "Rolling back.  Removed partial archive [ "
+                            + partial.toString()
+                            + " ].  Source [ "
+                            + source.toString()
+                            + " ] will be archived by a later run.");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package mil.nga.logmgmt;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import mil.nga.util.FileUtils;
+
+/**
+ * Accumulates the outcome of a single archival run and enforces the
+ * optional run budget.  When a maximum runtime is supplied the report
+ * tracks the observed archival throughput so that files which cannot
+ * finish before the deadline are deferred to the next run rather than
+ * being started and left to overlap with it.
+ *
+ * All methods are synchronized as a single report is shared by all of the
+ * workers in a run.
+ */
+public class RunReport {
+
+    /**
+     * Value used for the deadline when the run is not bounded.
+     */
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final long start;
+    private final long deadline;
+    private long       end            = -1;
+    private int        archived       = 0;
+    private long       archivedBytes  = 0;
+    private long       busyMillis     = 0;
+    private int        skipped        = 0;
+    private int        deduplicated   = 0;
+    private int        failed         = 0;
+    private long       remainingBytes = 0;
+    private List<Path> remaining      = new ArrayList<Path>();
+    private Map<CompressionLevel, Integer> levels = 
+            new EnumMap<CompressionLevel, Integer>(CompressionLevel.class);
+
+    /**
+     * Constructor starting the clock for the run.
+     *
+     * @param maxRuntime The maximum amount of time (in milliseconds) that
+     * the run may take.  Values less than or equal to zero indicate that
+     * the run is unbounded.
+     */
+    public RunReport(long maxRuntime) {
+        start = System.currentTimeMillis();
+        if (maxRuntime > 0) {
+            deadline = start + maxRuntime;
+        }
+        else {
+            deadline = NO_DEADLINE;
+        }
+    }
+
+    /**
+     * Record a file that was successfully archived.
+     *
+     * @param size The size of the source file in bytes.
+     * @param millis The time (in milliseconds) spent archiving the file.
+     */
+    public synchronized void archived(long size, long millis) {
+        archived++;
+        archivedBytes += size;
+        busyMillis    += millis;
+    }
+
+    /**
+     * Record the compression level used for an archived file.
+     *
+     * @param level The compression level.
+     */
+    public synchronized void compressed(CompressionLevel level) {
+        Integer count = levels.get(level);
+        levels.put(level, (count == null) ? 1 : count + 1);
+    }
+
+    /**
+     * Record a file that was not archived because its content is already
+     * held by an archive.
+     */
+    public synchronized void deduplicated() {
+        deduplicated++;
+    }
+
+    /**
+     * Record a file that was deferred to the next run because the run
+     * budget was exhausted.
+     *
+     * @param file The deferred file.
+     * @param size The size of the deferred file in bytes.
+     */
+    public synchronized void deferred(Path file, long size) {
+        remaining.add(file);
+        remainingBytes += size;
+    }
+
+    /**
+     * Record a file that could not be archived.
+     */
+    public synchronized void failed() {
+        failed++;
+    }
+
+    /**
+     * Stop the clock on the run.
+     */
+    public synchronized void finish() {
+        end = System.currentTimeMillis();
+    }
+
+    /**
+     * Determine whether a file of the input size can be expected to finish
+     * before the deadline.  The estimate is based on the throughput
+     * observed for the files archived so far in this run.  Until at least
+     * one file has been archived any file is allowed to start as long as
+     * the deadline has not passed.
+     *
+     * @param size The size of the candidate file in bytes.
+     * @return True if the file should be started, false if it should be
+     * deferred to the next run.
+     */
+    public synchronized boolean fits(long size) {
+        long now = System.currentTimeMillis();
+        if (deadline == NO_DEADLINE) {
+            return true;
+        }
+        if (now >= deadline) {
+            return false;
+        }
+        if ((archivedBytes == 0) || (busyMillis == 0)) {
+            return true;
+        }
+        double estimate = (double)size * (double)busyMillis / (double)archivedBytes;
+        return (now + (long)estimate) < deadline;
+    }
+
+    /**
+     * Accessor method for the number of files archived.
+     * @return The number of files archived.
+     */
+    public synchronized int getArchived() {
+        return archived;
+    }
+
+    /**
+     * Accessor method for the number of bytes archived.
+     * @return The number of bytes archived.
+     */
+    public synchronized long getArchivedBytes() {
+        return archivedBytes;
+    }
+
+    /**
+     * Accessor method for the number of files compressed at each level.
+     * @return A copy of the count of files per compression level.
+     */
+    public synchronized Map<CompressionLevel, Integer> getCompressionLevels() {
+        return new EnumMap<CompressionLevel, Integer>(levels);
+    }
+
+    /**
+     * Accessor method for the number of duplicate files.
+     * @return The number of files whose content was already archived.
+     */
+    public synchronized int getDeduplicated() {
+        return deduplicated;
+    }
+
+    /**
+     * Accessor method for the number of files that failed.
+     * @return The number of files that could not be archived.
+     */
+    public synchronized int getFailed() {
+        return failed;
+    }
+
+    /**
+     * Accessor method for the files left for the next run.
+     * @return A copy of the list of deferred files.
+     */
+    public synchronized List<Path> getRemaining() {
+        return new ArrayList<Path>(remaining);
+    }
+
+    /**
+     * Accessor method for the number of bytes left for the next run.
+     * @return The total size of the deferred files.
+     */
+    public synchronized long getRemainingBytes() {
+        return remainingBytes;
+    }
+
+    /**
+     * Accessor method for the number of files skipped because they were
+     * not yet old enough to archive.
+     * @return The number of skipped files.
+     */
+    public synchronized int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Determine whether the deadline for the run has passed.
+     * @return True if the deadline has passed.
+     */
+    public synchronized boolean isExpired() {
+        return System.currentTimeMillis() >= deadline;
+    }
+
+    /**
+     * Record a file that was not yet old enough to archive.
+     */
+    public synchronized void skipped() {
+        skipped++;
+    }
+
+    /**
+     * Summarize the run.
+     */
+    @Override
+    public synchronized String toString() {
+        long          stop = (end > 0) ? end : System.currentTimeMillis();
+        StringBuilder sb   = new StringBuilder();
+        sb.append("Archived [ ");
+        sb.append(archived);
+        sb.append(" ] files ( ");
+        sb.append(FileUtils.humanReadableByteCount(archivedBytes, false));
+        sb.append(" ) in [ ");
+        sb.append(stop - start);
+        sb.append(" ] ms, skipped [ ");
+        sb.append(skipped);
+        sb.append(" ], duplicates [ ");
+        sb.append(deduplicated);
+        sb.append(" ], failed [ ");
+        sb.append(failed);
+        sb.append(" ], remaining for the next run [ ");
+        sb.append(remaining.size());
+        sb.append(" ] files ( ");
+        sb.append(FileUtils.humanReadableByteCount(remainingBytes, false));
+        sb.append(" ).");
+        if (!levels.isEmpty()) {
+            sb.append("  Compression levels [ ");
+            for (Map.Entry<CompressionLevel, Integer> entry : levels.entrySet()) {
+                sb.append(entry.getKey().name().toLowerCase());
+                sb.append("=");
+                sb.append(entry.getValue());
+                sb.append(" ");
+            }
+            sb.append("].");
+        }
+        return sb.toString();
+    }
+}
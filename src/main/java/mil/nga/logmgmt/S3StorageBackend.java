@@ -0,0 +1,775 @@
+package mil.nga.logmgmt;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Storage backend uploading objects to an S3-compatible object store
+ * (AWS S3, MinIO, Ceph RGW, ...) using path-style requests signed with
+ * AWS Signature Version 4.  Only the JDK is used; there is no dependency
+ * on an SDK.
+ *
+ * An object smaller than one part is uploaded with a single PUT.  Larger
+ * objects are uploaded with a multipart upload: each part is handed to a
+ * pool of upload threads as soon as it has been written, so compression
+ * of the next part overlaps the upload of the previous ones.  At most
+ * <code>threads</code> parts of an upload are in flight at once, which
+ * bounds the memory used to (threads + 1) * part size per upload.  The
+ * object only becomes visible when the upload is completed by
+ * <code>commit()</code>; closing an upload that was not committed aborts
+ * it.
+ *
+ * Requests failing with an I/O error or a 5xx status are retried.
+ */
+public class S3StorageBackend implements StorageBackend {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(S3StorageBackend.class);
+
+    /**
+     * Number of times a request is attempted before giving up.
+     */
+    public static final int ATTEMPTS = 3;
+
+    /**
+     * Size of the buffer first allocated for an upload.  The buffer grows
+     * to the part size as the object is written, so small objects do not
+     * hold a whole part.
+     */
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+
+    private static final DateTimeFormatter AMZ_DATE =
+            DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+
+    private static final int CONNECT_TIMEOUT = 30 * 1000;
+    private static final int READ_TIMEOUT    = 5 * 60 * 1000;
+
+    private final URL    endpoint;
+    private final String basePath;
+    private final String region;
+    private final String bucket;
+    private final String prefix;
+    private final String accessKey;
+    private final String secretKey;
+    private final int    partSize;
+    private final int    threads;
+    private ExecutorService executor = null;
+
+    /**
+     * Response to a request.
+     */
+    private static class Response {
+
+        private final int                       status;
+        private final byte[]                    body;
+        private final Map<String, List<String>> headers;
+
+        private Response(int status, byte[] body, Map<String, List<String>> headers) {
+            this.status  = status;
+            this.body    = body;
+            this.headers = headers;
+        }
+
+        private String header(String name) {
+            for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+                if (name.equalsIgnoreCase(entry.getKey()) &&
+                        !entry.getValue().isEmpty()) {
+                    return entry.getValue().get(0);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param endpoint URL of the object store (scheme, host and port).
+     * @param region The region used to sign requests.
+     * @param bucket The bucket.
+     * @param prefix Prefix placed in front of every key (may be null).
+     * @param accessKey The access key.
+     * @param secretKey The secret key.
+     * @param partSize Size in bytes of the parts of a multipart upload.
+     * @param threads Number of parts uploaded concurrently.
+     * @throws IOException Thrown if the endpoint is not a valid URL.
+     */
+    public S3StorageBackend(
+            String endpoint,
+            String region,
+            String bucket,
+            String prefix,
+            String accessKey,
+            String secretKey,
+            int    partSize,
+            int    threads) throws IOException {
+        this.endpoint  = new URL(endpoint);
+        String path    = this.endpoint.getPath();
+        while (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        this.basePath  = path;
+        this.region    = region;
+        this.bucket    = bucket;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.partSize  = Math.max(1, partSize);
+        this.threads   = Math.max(1, threads);
+        String p = (prefix == null) ? "" : prefix.trim();
+        while (p.startsWith("/")) {
+            p = p.substring(1);
+        }
+        if (!p.isEmpty() && !p.endsWith("/")) {
+            p = p + "/";
+        }
+        this.prefix = p;
+    }
+
+    /**
+     * Accessor method for the size of the parts of a multipart upload.
+     * @return The size in bytes.
+     */
+    public int getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * Accessor method for the number of parts uploaded concurrently.
+     * @return The number of threads.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    @Override
+    public StorageUpload put(String key) {
+        return new Upload(key);
+    }
+
+    @Override
+    public List<String> list(String keyPrefix) throws IOException {
+        List<String> keys  = new ArrayList<String>();
+        String       token = null;
+        boolean      truncated;
+        do {
+            Map<String, String> query = new TreeMap<String, String>();
+            query.put("list-type", "2");
+            query.put("prefix", prefix + keyPrefix);
+            if (token != null) {
+                query.put("continuation-token", token);
+            }
+            Response response = request("GET", null, query, null, 0, 0);
+            expect(response, "GET", null, 200);
+            Document doc      = parse(response.body);
+            NodeList contents = doc.getElementsByTagName("Contents");
+            for (int i = 0; i < contents.getLength(); i++) {
+                String key = text((Element)contents.item(i), "Key");
+                if ((key != null) && key.startsWith(prefix)) {
+                    keys.add(key.substring(prefix.length()));
+                }
+            }
+            truncated = "true".equals(text(doc.getDocumentElement(), "IsTruncated"));
+            token     = text(doc.getDocumentElement(), "NextContinuationToken");
+        } while (truncated && (token != null));
+        return keys;
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        Response response = request("HEAD", key, null, null, 0, 0);
+        if (response.status == 404) {
+            return false;
+        }
+        expect(response, "HEAD", key, 200);
+        return true;
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Response response = request("DELETE", key, null, null, 0, 0);
+        if (response.status != 404) {
+            expect(response, "DELETE", key, 204, 200);
+        }
+    }
+
+    @Override
+    public Path localPath(String key) {
+        return null;
+    }
+
+    @Override
+    public String describe(String key) {
+        return "s3://" + bucket + "/" + prefix + key;
+    }
+
+    /**
+     * Stop the upload threads.  They are started again if another object
+     * is uploaded.
+     */
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "s3:" + endpoint.toString() + " bucket [ " + bucket
+                + " ] prefix [ " + prefix + " ] part size [ "
+                + partSize + " ] threads [ " + threads + " ]";
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            final AtomicInteger count = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "s3-upload-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * An object being uploaded.  The bytes written are collected into
+     * parts; the multipart upload is only started once the object turns
+     * out to be larger than one part.
+     */
+    private class Upload implements StorageUpload {
+
+        private final String               key;
+        private final List<Future<String>> parts     = new ArrayList<Future<String>>();
+        private String                     uploadId  = null;
+        private byte[]                     buffer    = null;
+        private int                        filled    = 0;
+        private int                        waited    = 0;
+        private OutputStream               stream    = null;
+        private boolean                    committed = false;
+
+        private Upload(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            if (stream == null) {
+                buffer = new byte[Math.min(partSize, INITIAL_BUFFER_SIZE)];
+                stream = new OutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        write(new byte[] { (byte)b }, 0, 1);
+                    }
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        while (len > 0) {
+                            if (filled == buffer.length) {
+                                if (buffer.length < partSize) {
+                                    buffer = Arrays.copyOf(buffer,
+                                            (int)Math.min(partSize, 2L * buffer.length));
+                                }
+                                else {
+                                    submitPart();
+                                }
+                            }
+                            int count = Math.min(len, buffer.length - filled);
+                            System.arraycopy(b, off, buffer, filled, count);
+                            filled += count;
+                            off    += count;
+                            len    -= count;
+                        }
+                    }
+                };
+            }
+            return stream;
+        }
+
+        /**
+         * Hand the buffered part to the upload threads, first waiting for
+         * the oldest part in flight if the limit has been reached.
+         */
+        private void submitPart() throws IOException {
+            if (uploadId == null) {
+                uploadId = initiate(key);
+            }
+            if (parts.size() - waited >= threads) {
+                await(parts.get(waited++));
+            }
+            final byte[] data   = buffer;
+            final int    length = filled;
+            final int    number = parts.size() + 1;
+            parts.add(getExecutor().submit(new Callable<String>() {
+                @Override
+                public String call() throws IOException {
+                    return uploadPart(key, uploadId, number, data, length);
+                }
+            }));
+            buffer = new byte[partSize];
+            filled = 0;
+        }
+
+        @Override
+        public void commit() throws IOException {
+            getOutputStream();
+            if (uploadId == null) {
+                Response response = request("PUT", key, null, buffer, 0, filled);
+                expect(response, "PUT", key, 200);
+            }
+            else {
+                if (filled > 0) {
+                    submitPart();
+                }
+                List<String> etags = new ArrayList<String>(parts.size());
+                for (Future<String> part : parts) {
+                    etags.add(await(part));
+                }
+                complete(key, uploadId, etags);
+            }
+            buffer    = null;
+            committed = true;
+        }
+
+        @Override
+        public boolean isCommitted() {
+            return committed;
+        }
+
+        @Override
+        public void close() {
+            String method = "close() - ";
+            buffer = null;
+            if (!committed && (uploadId != null)) {
+                // Let the parts in flight finish so that none arrives
+                // after the upload has been aborted.
+                for (Future<String> part : parts) {
+                    try {
+                        await(part);
+                    }
+                    catch (IOException ioe) { }
+                }
+                try {
+                    abort(key, uploadId);
+                }
+                catch (IOException ioe) {
+                    LOGGER.warn(method
+                            + "Unable to abort the upload of [ "
+                            + describe(key)
+                            + " ].  The parts remain until removed by the "
+                            + "bucket lifecycle rules.  Error message [ "
+                            + ioe.getMessage()
+                            + " ].");
+                }
+                uploadId = null;
+            }
+        }
+    }
+
+    /**
+     * Wait for a part to be uploaded.
+     *
+     * @return The ETag of the part.
+     */
+    private static String await(Future<String> part) throws IOException {
+        try {
+            return part.get();
+        }
+        catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while uploading.", ie);
+        }
+        catch (ExecutionException ee) {
+            if (ee.getCause() instanceof IOException) {
+                throw (IOException)ee.getCause();
+            }
+            throw new IOException(ee.getCause());
+        }
+    }
+
+    private String initiate(String key) throws IOException {
+        Map<String, String> query = new TreeMap<String, String>();
+        query.put("uploads", "");
+        Response response = request("POST", key, query, null, 0, 0);
+        expect(response, "POST", key, 200);
+        String uploadId = text(parse(response.body).getDocumentElement(), "UploadId");
+        if (uploadId == null) {
+            throw new IOException("No upload ID returned for [ "
+                    + describe(key) + " ].");
+        }
+        return uploadId;
+    }
+
+    private String uploadPart(String key, String uploadId, int number,
+            byte[] data, int length) throws IOException {
+        Map<String, String> query = new TreeMap<String, String>();
+        query.put("partNumber", Integer.toString(number));
+        query.put("uploadId", uploadId);
+        Response response = request("PUT", key, query, data, 0, length);
+        expect(response, "PUT", key, 200);
+        String etag = response.header("ETag");
+        if (etag == null) {
+            throw new IOException("No ETag returned for part [ " + number
+                    + " ] of [ " + describe(key) + " ].");
+        }
+        return etag;
+    }
+
+    private void complete(String key, String uploadId, List<String> etags)
+            throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<CompleteMultipartUpload>");
+        for (int i = 0; i < etags.size(); i++) {
+            sb.append("<Part><PartNumber>").append(i + 1)
+                    .append("</PartNumber><ETag>").append(escape(etags.get(i)))
+                    .append("</ETag></Part>");
+        }
+        sb.append("</CompleteMultipartUpload>");
+        byte[] body = sb.toString().getBytes(StandardCharsets.UTF_8);
+        Map<String, String> query = new TreeMap<String, String>();
+        query.put("uploadId", uploadId);
+        for (int attempt = 1; ; attempt++) {
+            Response response = request("POST", key, query, body, 0, body.length);
+            expect(response, "POST", key, 200);
+            // The store may report a failure after it has sent the status.
+            String text = new String(response.body, StandardCharsets.UTF_8);
+            if (!text.contains("<Error>")) {
+                return;
+            }
+            if (attempt >= ATTEMPTS) {
+                throw new IOException("Unable to complete the upload of [ "
+                        + describe(key) + " ].  Error code [ "
+                        + errorCode(response.body) + " ].");
+            }
+            backoff(attempt);
+        }
+    }
+
+    private void abort(String key, String uploadId) throws IOException {
+        Map<String, String> query = new TreeMap<String, String>();
+        query.put("uploadId", uploadId);
+        Response response = request("DELETE", key, query, null, 0, 0);
+        if (response.status != 404) {
+            expect(response, "DELETE", key, 204, 200);
+        }
+    }
+
+    /**
+     * Throw an exception unless the response has one of the expected
+     * status codes.
+     */
+    private void expect(Response response, String verb, String key, int... status)
+            throws IOException {
+        for (int s : status) {
+            if (response.status == s) {
+                return;
+            }
+        }
+        throw new IOException("Request [ " + verb + " "
+                + ((key == null) ? "s3://" + bucket + "/" + prefix : describe(key))
+                + " ] failed with status [ " + response.status
+                + " ] error code [ " + errorCode(response.body) + " ].");
+    }
+
+    /**
+     * Send a request, retrying it if it fails with an I/O error or a 5xx
+     * status.
+     *
+     * @param verb The HTTP method.
+     * @param key The key of the object (null for a request on the bucket).
+     * @param query The query parameters (may be null).
+     * @param body The request body (may be null).
+     * @param offset The offset of the body in the array.
+     * @param length The length of the body.
+     * @return The response to the last attempt.
+     * @throws IOException Thrown if every attempt failed with an I/O error.
+     */
+    private Response request(String verb, String key, Map<String, String> query,
+            byte[] body, int offset, int length) throws IOException {
+        String method = "request() - ";
+        String hash   = hex(sha256(body, offset, length));
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Response response = send(verb, key, query, body, offset, length, hash);
+                if ((response.status < 500) || (attempt >= ATTEMPTS)) {
+                    return response;
+                }
+                LOGGER.warn(method
+                        + "Request [ " + verb + " "
+                        + ((key == null) ? bucket : describe(key))
+                        + " ] failed with status [ " + response.status
+                        + " ].  Retrying.");
+            }
+            catch (IOException ioe) {
+                if (attempt >= ATTEMPTS) {
+                    throw ioe;
+                }
+                LOGGER.warn(method
+                        + "Request [ " + verb + " "
+                        + ((key == null) ? bucket : describe(key))
+                        + " ] failed.  Retrying.  Error message [ "
+                        + ioe.getMessage()
+                        + " ].");
+            }
+            backoff(attempt);
+        }
+    }
+
+    private static void backoff(int attempt) throws IOException {
+        try {
+            Thread.sleep(250L << attempt);
+        }
+        catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while uploading.", ie);
+        }
+    }
+
+    private Response send(String verb, String key, Map<String, String> query,
+            byte[] body, int offset, int length, String hash) throws IOException {
+
+        String path = basePath + "/" + encode(bucket, false);
+        if (key != null) {
+            path = path + "/" + encode(prefix + key, false);
+        }
+        StringBuilder canonicalQuery = new StringBuilder();
+        if (query != null) {
+            // Sorted by key, as the signature requires.
+            for (Map.Entry<String, String> entry : query.entrySet()) {
+                if (canonicalQuery.length() > 0) {
+                    canonicalQuery.append('&');
+                }
+                canonicalQuery.append(encode(entry.getKey(), true))
+                        .append('=')
+                        .append(encode(entry.getValue(), true));
+            }
+        }
+        int    port = endpoint.getPort();
+        String host = endpoint.getHost();
+        if ((port != -1) && (port != endpoint.getDefaultPort())) {
+            host = host + ":" + port;
+        }
+        ZonedDateTime now     = ZonedDateTime.now(ZoneOffset.UTC);
+        String        amzDate = AMZ_DATE.format(now);
+        String        day     = amzDate.substring(0, 8);
+        String        scope   = day + "/" + region + "/s3/aws4_request";
+        String        signed  = "host;x-amz-content-sha256;x-amz-date";
+        String canonical = verb + "\n"
+                + path + "\n"
+                + canonicalQuery + "\n"
+                + "host:" + host + "\n"
+                + "x-amz-content-sha256:" + hash + "\n"
+                + "x-amz-date:" + amzDate + "\n"
+                + "\n"
+                + signed + "\n"
+                + hash;
+        byte[] canonicalBytes = canonical.getBytes(StandardCharsets.UTF_8);
+        String toSign = ALGORITHM + "\n"
+                + amzDate + "\n"
+                + scope + "\n"
+                + hex(sha256(canonicalBytes, 0, canonicalBytes.length));
+        byte[] signingKey = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), day);
+        signingKey = hmac(signingKey, region);
+        signingKey = hmac(signingKey, "s3");
+        signingKey = hmac(signingKey, "aws4_request");
+        String signature = hex(hmac(signingKey, toSign));
+
+        URL url = new URL(endpoint.getProtocol(), endpoint.getHost(), port,
+                path + ((canonicalQuery.length() > 0) ? "?" + canonicalQuery : ""));
+        HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+        try {
+            connection.setConnectTimeout(CONNECT_TIMEOUT);
+            connection.setReadTimeout(READ_TIMEOUT);
+            connection.setRequestMethod(verb);
+            connection.setRequestProperty("x-amz-date", amzDate);
+            connection.setRequestProperty("x-amz-content-sha256", hash);
+            connection.setRequestProperty("Authorization", ALGORITHM
+                    + " Credential=" + accessKey + "/" + scope
+                    + ", SignedHeaders=" + signed
+                    + ", Signature=" + signature);
+            if ("PUT".equals(verb) || "POST".equals(verb)) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type",
+                        "POST".equals(verb) ? "application/xml" : "application/octet-stream");
+                connection.setFixedLengthStreamingMode(length);
+                try (OutputStream os = connection.getOutputStream()) {
+                    if (length > 0) {
+                        os.write(body, offset, length);
+                    }
+                }
+            }
+            int    status = connection.getResponseCode();
+            byte[] bytes  = new byte[0];
+            if (!"HEAD".equals(verb)) {
+                InputStream is = (status >= 400) ?
+                        connection.getErrorStream() : connection.getInputStream();
+                if (is != null) {
+                    try {
+                        bytes = readAll(is);
+                    }
+                    finally {
+                        is.close();
+                    }
+                }
+            }
+            return new Response(status, bytes, connection.getHeaderFields());
+        }
+        catch (IOException ioe) {
+            connection.disconnect();
+            throw ioe;
+        }
+    }
+
+    private static byte[] readAll(InputStream is) throws IOException {
+        ByteArrayOutputStream baos   = new ByteArrayOutputStream();
+        byte[]                buffer = new byte[8192];
+        int                   count;
+        while ((count = is.read(buffer)) != -1) {
+            baos.write(buffer, 0, count);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * URI encode a value as required by the signature: every byte other
+     * than the unreserved characters is percent encoded.
+     *
+     * @param value The value.
+     * @param slash True if '/' is to be encoded as well (query values).
+     * @return The encoded value.
+     */
+    static String encode(String value, boolean slash) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char)(b & 0xff);
+            if (((c >= 'A') && (c <= 'Z')) || ((c >= 'a') && (c <= 'z')) ||
+                    ((c >= '0') && (c <= '9')) ||
+                    (c == '-') || (c == '_') || (c == '.') || (c == '~') ||
+                    ((c == '/') && !slash)) {
+                sb.append(c);
+            }
+            else {
+                sb.append('%').append(Character.toUpperCase(
+                        Character.forDigit((c >> 4) & 0xf, 16)))
+                        .append(Character.toUpperCase(
+                        Character.forDigit(c & 0xf, 16)));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static byte[] sha256(byte[] b, int offset, int length) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            if (b != null) {
+                digest.update(b, offset, length);
+            }
+            return digest.digest();
+        }
+        catch (GeneralSecurityException gse) {
+            throw new IOException(gse);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String data) throws IOException {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        }
+        catch (GeneralSecurityException gse) {
+            throw new IOException(gse);
+        }
+    }
+
+    private static String hex(byte[] b) {
+        StringBuilder sb = new StringBuilder(b.length * 2);
+        for (byte value : b) {
+            sb.append(Character.forDigit((value >> 4) & 0xf, 16))
+                    .append(Character.forDigit(value & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;")
+                .replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static Document parse(byte[] xml) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature(
+                    "http://apache.org/xml/features/disallow-doctype-decl", true);
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            return builder.parse(new ByteArrayInputStream(xml));
+        }
+        catch (Exception e) {
+            throw new IOException("Unable to parse the response of the object store.", e);
+        }
+    }
+
+    /**
+     * Text of the first descendant element with a name (null if none).
+     */
+    private static String text(Element parent, String name) {
+        NodeList nodes = parent.getElementsByTagName(name);
+        return (nodes.getLength() == 0) ? null : nodes.item(0).getTextContent();
+    }
+
+    /**
+     * The S3 error code of a response body (e.g. SignatureDoesNotMatch).
+     */
+    private static String errorCode(byte[] body) {
+        String text  = new String(body, StandardCharsets.UTF_8);
+        int    start = text.indexOf("<Code>");
+        int    end   = text.indexOf("</Code>");
+        if ((start < 0) || (end < start)) {
+            return "none";
+        }
+        return text.substring(start + "<Code>".length(), end);
+    }
+}
@@ -0,0 +1,217 @@
+package mil.nga.logmgmt;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.logmgmt.exceptions.InputException;
+
+/**
+ * Policies controlling the order in which candidate files are handed to the
+ * archival process.  When a run is bounded by a maximum runtime the order
+ * determines which files make it into the current window and which are
+ * left for the next one.
+ */
+public enum SchedulePolicy {
+
+    /**
+     * Process the candidates in the order returned by the file tree walk.
+     * This was the only behavior available prior to the introduction of
+     * the run budget.
+     */
+    WALK,
+
+    /**
+     * Process the candidates with the oldest last modified date first.
+     */
+    OLDEST,
+
+    /**
+     * Process the largest candidates first.
+     */
+    LARGEST,
+
+    /**
+     * Longest-processing-time first.  Each worker is given its own queue
+     * up front: the candidates are taken largest first and each is added
+     * to the queue with the fewest bytes assigned so far, which is the
+     * classic LPT heuristic for balancing work across a fixed number of
+     * workers.  With a single worker this is identical to LARGEST.
+     */
+    LPT;
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(SchedulePolicy.class);
+
+    /**
+     * Convert the (case insensitive) input String into a schedule policy.
+     *
+     * @param value The policy name supplied by the caller.
+     * @return The matching policy.  WALK is returned if the input is null
+     * or empty.
+     * @throws InputException Thrown if the input does not match any of the
+     * known policies.
+     */
+    public static SchedulePolicy fromString(String value)
+            throws InputException {
+
+        String method = "fromString() - ";
+
+        if ((value == null) || (value.trim().isEmpty())) {
+            return WALK;
+        }
+        for (SchedulePolicy policy : SchedulePolicy.values()) {
+            if (policy.name().equalsIgnoreCase(value.trim())) {
+                return policy;
+            }
+        }
+        String msg = method
+                + "Unknown schedule policy [ "
+                + value
+                + " ].  Expected one of walk, oldest, largest or lpt.";
+        LOGGER.error(msg);
+        throw new InputException(msg);
+    }
+
+    /**
+     * Order the input list of candidate files according to this policy.
+     * The file attributes are read exactly once per candidate.  Files for
+     * which the attributes cannot be read are placed at the end of the
+     * list; the archival process will report on them individually.
+     *
+     * @param candidates The candidate files in walk order.
+     * @return A new list containing the candidates in processing order.
+     */
+    public List<Path> order(List<Path> candidates) {
+        List<Path> results = new ArrayList<Path>();
+        for (Candidate candidate : sort(candidates)) {
+            results.add(candidate.path);
+        }
+        return results;
+    }
+
+    /**
+     * Assign the input list of candidate files to the workers.  LPT gives
+     * each worker its own queue, balanced by the number of bytes assigned.
+     * Every other policy returns a single queue, in the order given by
+     * <code>order()</code>, shared by all of the workers.
+     *
+     * @param candidates The candidate files in walk order.
+     * @param workers The number of workers.
+     * @return The queues in processing order (one per worker for LPT,
+     * otherwise a single queue).
+     */
+    public List<List<Path>> assign(List<Path> candidates, int workers) {
+
+        List<List<Path>> queues = new ArrayList<List<Path>>();
+
+        if ((this != LPT) || (workers <= 1)) {
+            queues.add(order(candidates));
+            return queues;
+        }
+
+        long[] loads = new long[workers];
+        for (int i=0; i<workers; i++) {
+            queues.add(new ArrayList<Path>());
+        }
+        for (Candidate candidate : sort(candidates)) {
+            int least = 0;
+            for (int i=1; i<workers; i++) {
+                if (loads[i] < loads[least]) {
+                    least = i;
+                }
+            }
+            queues.get(least).add(candidate.path);
+            loads[least] += candidate.size;
+        }
+        return queues;
+    }
+
+    /**
+     * Read the attributes of the candidates and sort them according to
+     * this policy.
+     *
+     * @param candidates The candidate files in walk order.
+     * @return The candidates in processing order.
+     */
+    private List<Candidate> sort(List<Path> candidates) {
+
+        String          method = "sort() - ";
+        List<Candidate> sorted = new ArrayList<Candidate>();
+
+        if ((candidates == null) || (candidates.isEmpty())) {
+            return sorted;
+        }
+        if (this == WALK) {
+            for (Path path : candidates) {
+                sorted.add(new Candidate(path, 0, 0, true));
+            }
+            return sorted;
+        }
+
+        for (Path path : candidates) {
+            try {
+                BasicFileAttributes attr = Files.readAttributes(
+                        path,
+                        BasicFileAttributes.class);
+                sorted.add(new Candidate(
+                        path,
+                        attr.size(),
+                        attr.lastModifiedTime().toMillis(),
+                        true));
+            }
+            catch (IOException ioe) {
+                LOGGER.warn(method
+                        + "Unable to read the attributes of file [ "
+                        + path.toAbsolutePath()
+                        + " ].  It will be scheduled last.  Error message [ "
+                        + ioe.getMessage()
+                        + " ].");
+                sorted.add(new Candidate(path, 0, Long.MAX_VALUE, false));
+            }
+        }
+
+        Collections.sort(sorted, new Comparator<Candidate>() {
+            @Override
+            public int compare(Candidate o1, Candidate o2) {
+                if (o1.known != o2.known) {
+                    return o1.known ? -1 : 1;
+                }
+                if (SchedulePolicy.this == OLDEST) {
+                    return Long.compare(o1.modified, o2.modified);
+                }
+                return Long.compare(o2.size, o1.size);
+            }
+        });
+        return sorted;
+    }
+
+    /**
+     * Simple holder for the attributes used in ordering the candidates.
+     */
+    private static class Candidate {
+
+        private final Path    path;
+        private final long    size;
+        private final long    modified;
+        private final boolean known;
+
+        Candidate(Path path, long size, long modified, boolean known) {
+            this.path     = path;
+            this.size     = size;
+            this.modified = modified;
+            this.known    = known;
+        }
+    }
+}
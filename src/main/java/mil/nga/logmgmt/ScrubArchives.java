@@ -0,0 +1,628 @@
+package mil.nga.logmgmt;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.logmgmt.exceptions.InputException;
+import mil.nga.util.ChecksumInputStream;
+import mil.nga.util.ContentDigest;
+import mil.nga.util.Options;
+import mil.nga.util.Options.Multiplicity;
+import mil.nga.util.Options.Separator;
+import mil.nga.util.RateLimiter;
+import mil.nga.util.ThrottledInputStream;
+
+/**
+ * Walks the archive store verifying every archive against the checksums
+ * recorded when it was written.  Month directories are scrubbed in
+ * parallel, the aggregate read bandwidth is held to a configurable budget
+ * so that the scrub can run alongside production traffic, and each
+ * completed month directory is recorded in a checkpoint file so that a
+ * multi-day scrub can be stopped and resumed.  A directory whose scrub
+ * is interrupted is not checkpointed, and reads cut short by the interrupt
+ * are not reported as corrupt archives.
+ *
+ * Each archive is read exactly once.  The stored bytes are checksummed on
+ * the way in and the same stream is decompressed to verify the CRC held in
+ * the archive itself (ZIP entry or gzip trailer) and the checksum of the
+ * original content.
+ */
+public class ScrubArchives {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(ScrubArchives.class);
+
+    /**
+     * Number of bytes in a megabyte.
+     */
+    private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+
+    /**
+     * Outcome of the verification of a single file.
+     */
+    public enum Result {
+        /** Archive verified against its manifest entry. */
+        OK,
+        /** Archive is unreadable or does not match its manifest entry. */
+        CORRUPT,
+        /** Manifest entry exists but the archive does not. */
+        MISSING,
+        /** Archive is internally consistent but has no manifest entry. */
+        UNRECORDED,
+        /** Checksum recorded with an algorithm not available here. */
+        UNVERIFIABLE,
+        /** Partial file left behind by an interrupted write. */
+        PARTIAL
+    }
+
+    private final Path         base;
+    private final int          threads;
+    private final RateLimiter  limiter;
+    private final Path         checkpoint;
+    private final boolean      sha256;
+    private final AtomicLong   bytes  = new AtomicLong();
+    private final Map<Result, AtomicLong> counts =
+            new EnumMap<Result, AtomicLong>(Result.class);
+
+    /**
+     * Constructor.
+     *
+     * @param path The top of the archive store.
+     * @param threads Number of month directories scrubbed concurrently.
+     * @param mbPerSecond Aggregate read budget (less than or equal to zero
+     * for unlimited).
+     * @param checkpoint The checkpoint file.
+     * @param sha256 True if SHA-256 digests are to be verified.
+     * @throws InputException Thrown if the archive store does not exist.
+     */
+    public ScrubArchives(
+            String  path,
+            int     threads,
+            double  mbPerSecond,
+            String  checkpoint,
+            boolean sha256) throws InputException {
+
+        String method = "Constructor() - ";
+
+        if ((path == null) || (!Files.isDirectory(Paths.get(path)))) {
+            String msg = method
+                    + "The archive store [ "
+                    + path
+                    + " ] does not exist.";
+            LOGGER.error(msg);
+            throw new InputException(msg);
+        }
+        this.base       = Paths.get(path);
+        this.threads    = (threads < 1) ? 1 : threads;
+        this.limiter    = new RateLimiter(mbPerSecond * BYTES_PER_MB);
+        this.checkpoint = Paths.get(checkpoint);
+        this.sha256     = sha256;
+        for (Result result : Result.values()) {
+            counts.put(result, new AtomicLong());
+        }
+    }
+
+    /**
+     * Scrub every month directory not already listed in the checkpoint.
+     * The checkpoint is removed once a full pass completes.  If the calling
+     * thread is interrupted the directories being scrubbed are abandoned,
+     * the checkpoint is kept and the interrupt status is restored.
+     *
+     * @return True if no problems were found (false if interrupted).
+     * @throws IOException Thrown if the store cannot be walked or the
+     * checkpoint cannot be written.
+     */
+    public boolean scrub() throws IOException {
+
+        String      method = "scrub() - ";
+        long        start  = System.currentTimeMillis();
+        Set<String> done   = readCheckpoint();
+        List<Path>  dirs   = ArchiveStore.findMonthDirectories(base);
+
+        LOGGER.info(method
+                + "Found [ "
+                + dirs.size()
+                + " ] month directories below [ "
+                + base.toString()
+                + " ], [ "
+                + done.size()
+                + " ] already scrubbed according to checkpoint [ "
+                + checkpoint.toString()
+                + " ].");
+
+        Files.createDirectories(checkpoint.toAbsolutePath().getParent());
+        try (final FileChannel fc = FileChannel.open(checkpoint,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            for (final Path dir : dirs) {
+                if (done.contains(dir.toAbsolutePath().toString())) {
+                    continue;
+                }
+                pool.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (scrubDirectory(dir)) {
+                            markDone(fc, dir);
+                        }
+                    }
+                });
+            }
+            pool.shutdown();
+
+            // The checkpoint stays open until every worker has stopped.
+            boolean interrupted = false;
+            while (!pool.isTerminated()) {
+                try {
+                    pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                }
+                catch (InterruptedException ie) {
+                    pool.shutdownNow();
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+                LOGGER.warn(method
+                        + "Interrupted.  Progress has been checkpointed.");
+                return false;
+            }
+        }
+        Files.deleteIfExists(checkpoint);
+
+        LOGGER.info(method
+                + "Scrub complete in [ "
+                + (System.currentTimeMillis() - start)
+                + " ] ms.  Read [ "
+                + bytes.get()
+                + " ] bytes.  Results "
+                + counts.toString()
+                + ".");
+
+        return (counts.get(Result.CORRUPT).get() == 0) &&
+                (counts.get(Result.MISSING).get() == 0);
+    }
+
+    /**
+     * Read the set of month directories already scrubbed.
+     *
+     * @return The absolute paths of the completed directories.
+     * @throws IOException Thrown if the checkpoint cannot be read.
+     */
+    private Set<String> readCheckpoint() throws IOException {
+        Set<String> done = new HashSet<String>();
+        if (Files.exists(checkpoint)) {
+            try (BufferedReader reader = Files.newBufferedReader(
+                    checkpoint, StandardCharsets.UTF_8)) {
+                String line = null;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isEmpty()) {
+                        done.add(line);
+                    }
+                }
+            }
+        }
+        return done;
+    }
+
+    /**
+     * Record a completed month directory in the checkpoint.
+     *
+     * @param fc The checkpoint file.
+     * @param dir The completed month directory.
+     */
+    private void markDone(FileChannel fc, Path dir) {
+        String method = "markDone() - ";
+        try {
+            synchronized (fc) {
+                ByteBuffer buffer = ByteBuffer.wrap(
+                        (dir.toAbsolutePath().toString() + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    fc.write(buffer);
+                }
+                fc.force(false);
+            }
+        }
+        catch (IOException ioe) {
+            LOGGER.warn(method
+                    + "Unable to checkpoint directory [ "
+                    + dir.toString()
+                    + " ].  Error message [ "
+                    + ioe.getMessage()
+                    + " ].");
+        }
+    }
+
+    /**
+     * Scrub a single month directory.
+     *
+     * @param dir The month directory.
+     * @return True if the directory was scrubbed, false if the scrub was
+     * interrupted.
+     */
+    private boolean scrubDirectory(Path dir) {
+
+        String                     method  = "scrubDirectory() - ";
+        Map<String, ManifestEntry> entries = Manifest.read(dir);
+
+        try {
+            for (Path partial : ArchiveStore.listPartials(dir)) {
+                report(partial, Result.PARTIAL, "Partial file left by an "
+                        + "interrupted write.");
+            }
+            for (Path archive : ArchiveStore.listArchives(dir)) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return false;
+                }
+                ManifestEntry entry = entries.remove(
+                        archive.getFileName().toString());
+                InputStream source = null;
+                try {
+                    source = Files.newInputStream(archive);
+                }
+                catch (IOException ioe) {
+                    report(archive, Result.CORRUPT, "Unable to open.  "
+                            + "Error message [ " + ioe.getMessage() + " ].");
+                    continue;
+                }
+                verify(archive, source, entry);
+            }
+            for (Path file : ArchiveContainer.list(dir)) {
+                scrubContainer(dir, file, entries);
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+        }
+        catch (IOException ioe) {
+            LOGGER.error(method
+                    + "Unable to list directory [ "
+                    + dir.toString()
+                    + " ].  Error message [ "
+                    + ioe.getMessage()
+                    + " ].");
+        }
+        for (ManifestEntry entry : entries.values()) {
+            report(dir.resolve(entry.getDestination()), Result.MISSING,
+                    "Recorded in the manifest but not found.");
+        }
+        return true;
+    }
+
+    /**
+     * Verify the archives held in a monthly container.  An archive present
+     * both in the month directory and in the container (left by an
+     * interrupted compaction) has already been verified, in which case the
+     * member is skipped.
+     *
+     * @param dir The month directory.
+     * @param file The container.
+     * @param entries The manifest entries not yet matched to an archive.
+     */
+    private void scrubContainer(Path dir, Path file,
+            Map<String, ManifestEntry> entries) {
+        try (ArchiveContainer container = new ArchiveContainer(file)) {
+            for (String name : container.names()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                if (Files.exists(dir.resolve(name))) {
+                    continue;
+                }
+                ManifestEntry entry  = entries.remove(name);
+                InputStream   source = null;
+                try {
+                    source = container.open(name);
+                }
+                catch (IOException ioe) {
+                    report(dir.resolve(name), Result.CORRUPT, "Unable to "
+                            + "open in container [ " + file.toString()
+                            + " ].  Error message [ " + ioe.getMessage()
+                            + " ].");
+                    continue;
+                }
+                verify(dir.resolve(name), source, entry);
+            }
+        }
+        catch (IOException ioe) {
+            report(file, Result.CORRUPT, "Unable to read the container "
+                    + "index.  Error message [ " + ioe.getMessage() + " ].");
+        }
+    }
+
+    /**
+     * Verify a single archive.
+     *
+     * @param archive The archive (or the path it had before it was moved
+     * into a container).
+     * @param source Stream over the stored bytes of the archive, closed by
+     * this method.
+     * @param entry The manifest entry for the archive (null if none).
+     */
+    private void verify(Path archive, InputStream source, ManifestEntry entry) {
+
+        String        encoding = (entry != null) ? entry.getEncoding() :
+                                    ArchiveDecoder.encodingOf(archive);
+        ContentDigest stored   = digestFor(entry == null ? null :
+                                    entry.getStoredCrc(), false);
+        ContentDigest content  = digestFor(entry == null ? null :
+                                    entry.getSourceCrc(),
+                                    sha256 && (entry != null) &&
+                                    !ContentDigest.NONE.equals(
+                                            entry.getSourceSha256()));
+        byte[]        buffer   = new byte[StagedFile.BUFFER_SIZE];
+
+        try (InputStream raw = new ChecksumInputStream(
+                new ThrottledInputStream(
+                        new BufferedInputStream(source,
+                                StagedFile.BUFFER_SIZE),
+                        limiter),
+                stored)) {
+
+            if (ManifestEntry.ENCODING_RAW.equals(encoding)) {
+                // The original content is the stored content.  Compressed
+                // logs are decompressed to verify the gzip trailer.
+                InputStream decoded = new ChecksumInputStream(raw, content);
+                InputStream is      = ArchiveDecoder.isGzip(archive) ?
+                        new GZIPInputStream(decoded, StagedFile.BUFFER_SIZE) :
+                        decoded;
+                while (is.read(buffer) != -1) { }
+                while (decoded.read(buffer) != -1) { }
+            }
+            else {
+                InputStream is = ArchiveDecoder.openContent(archive, raw, encoding);
+                int count = 0;
+                while ((count = is.read(buffer)) != -1) {
+                    content.update(buffer, 0, count);
+                }
+            }
+            while (raw.read(buffer) != -1) { }
+        }
+        catch (IOException ioe) {
+            if ((ioe instanceof InterruptedIOException) ||
+                    (ioe instanceof ClosedByInterruptException)) {
+                // Abandoned, not corrupt.
+                return;
+            }
+            report(archive, Result.CORRUPT, "Unable to read or decompress.  "
+                    + "Error message [ " + ioe.getMessage() + " ].");
+            return;
+        }
+        finally {
+            bytes.addAndGet(stored.getSize());
+        }
+
+        if (entry == null) {
+            report(archive, Result.UNRECORDED, "Archive is readable but has "
+                    + "no manifest entry.");
+        }
+        else if (!comparable(entry.getStoredCrc(), stored) ||
+                !comparable(entry.getSourceCrc(), content)) {
+            report(archive, Result.UNVERIFIABLE, "Checksum algorithm not "
+                    + "available on this JVM.");
+        }
+        else if ((stored.getSize() != entry.getStoredSize()) ||
+                (!stored.getCrc().equals(entry.getStoredCrc()))) {
+            report(archive, Result.CORRUPT, "Stored bytes do not match the "
+                    + "manifest.  Expected [ " + entry.getStoredSize() + " / "
+                    + entry.getStoredCrc() + " ] found [ " + stored.getSize()
+                    + " / " + stored.getCrc() + " ].");
+        }
+        else if ((content.getSize() != entry.getSourceSize()) ||
+                (!content.getCrc().equals(entry.getSourceCrc()))) {
+            report(archive, Result.CORRUPT, "Content does not match the "
+                    + "manifest.  Expected [ " + entry.getSourceSize() + " / "
+                    + entry.getSourceCrc() + " ] found [ " + content.getSize()
+                    + " / " + content.getCrc() + " ].");
+        }
+        else if (sha256 && !ContentDigest.NONE.equals(entry.getSourceSha256()) &&
+                !content.getSha256().equals(entry.getSourceSha256())) {
+            report(archive, Result.CORRUPT, "Content does not match the "
+                    + "SHA-256 recorded in the manifest.");
+        }
+        else {
+            report(archive, Result.OK, null);
+        }
+    }
+
+    /**
+     * Create a digest using the algorithm of a recorded checksum.
+     *
+     * @param recorded The recorded checksum (may be null).
+     * @param computeSha256 True if SHA-256 is also required.
+     * @return The digest.
+     */
+    private ContentDigest digestFor(String recorded, boolean computeSha256) {
+        String algorithm = ContentDigest.algorithmOf(recorded);
+        if (algorithm == null) {
+            algorithm = ContentDigest.CRC32C;
+        }
+        return new ContentDigest(computeSha256, algorithm);
+    }
+
+    /**
+     * Determine whether a computed digest used the same algorithm as the
+     * recorded checksum.
+     *
+     * @param recorded The recorded checksum.
+     * @param digest The computed digest.
+     * @return True if the two can be compared.
+     */
+    private boolean comparable(String recorded, ContentDigest digest) {
+        String algorithm = ContentDigest.algorithmOf(recorded);
+        return (algorithm != null) &&
+                algorithm.equals(ContentDigest.algorithmOf(digest.getCrc()));
+    }
+
+    /**
+     * Count (and log where appropriate) the result for a single file.
+     *
+     * @param file The file.
+     * @param result The result.
+     * @param message Additional information (may be null).
+     */
+    private void report(Path file, Result result, String message) {
+        String method = "report() - ";
+        counts.get(result).incrementAndGet();
+        switch (result) {
+            case OK:
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug(method + "OK [ " + file.toString() + " ].");
+                }
+                break;
+            case CORRUPT:
+            case MISSING:
+                LOGGER.error(method + result + " [ " + file.toString()
+                        + " ].  " + message);
+                break;
+            default:
+                LOGGER.warn(method + result + " [ " + file.toString()
+                        + " ].  " + message);
+        }
+    }
+
+    /**
+     * Accessor method for the number of files with the input result.
+     *
+     * @param result The result of interest.
+     * @return The number of files.
+     */
+    public long getCount(Result result) {
+        return counts.get(result).get();
+    }
+
+    /**
+     * Simple static method to print the help and usage String information.
+     */
+    private static void printHelp() {
+        System.out.println("");
+        System.out.println(ScrubArchivesI.HELP_STRING);
+        System.out.println("");
+        System.out.println(ScrubArchivesI.USAGE_STRING);
+    }
+
+    /**
+     * Driver method used to extract the command line parameters and
+     * initiate processing.  The process exits with status 2 if any
+     * corrupt or missing archives were found.
+     *
+     * @param args Input command line arguments
+     * @throws InputException Thrown if the input data does not make
+     * sense.
+     * @throws IOException Thrown if the store cannot be walked.
+     */
+    public static void main(String[] args) throws InputException, IOException {
+
+        String  method     = "main() - ";
+        String  path       = null;
+        String  checkpoint = LogMgmtI.DEFAULT_STATE_PATH + "/"
+                                + ScrubArchivesI.DEFAULT_CHECKPOINT;
+        int     threads    = ScrubArchivesI.DEFAULT_THREADS;
+        double  rate       = 0;
+        boolean restart    = false;
+        boolean sha256     = false;
+
+        // Set up the command line options
+        Options opt = new Options(args, 0);
+        opt.getSet().addOption("path", Separator.EQUALS, Multiplicity.ONCE);
+        opt.getSet().addOption("threads", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("rate", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("checkpoint", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("restart", Multiplicity.ZERO_OR_MORE);
+        opt.getSet().addOption("sha256", Multiplicity.ZERO_OR_MORE);
+        opt.getSet().addOption("h", Multiplicity.ZERO_OR_MORE);
+        opt.getSet().addOption("help", Multiplicity.ZERO_OR_MORE);
+
+        // Make sure the options make sense
+        if (!opt.check(true, false)) {
+            System.out.println(ScrubArchivesI.USAGE_STRING);
+            System.exit(1);
+        }
+
+        // See if the user wanted the help message displayed.
+        if (opt.getSet().isSet("h") || opt.getSet().isSet("help")) {
+            ScrubArchives.printHelp();
+            System.exit(0);
+        }
+
+        path = opt.getSet().getOption("path").getResultValue(0);
+        try {
+            if (opt.getSet().isSet("threads")) {
+                threads = Integer.parseInt(
+                        opt.getSet().getOption("threads").getResultValue(0).trim());
+            }
+            if (opt.getSet().isSet("rate")) {
+                rate = Double.parseDouble(
+                        opt.getSet().getOption("rate").getResultValue(0).trim());
+            }
+        }
+        catch (NumberFormatException nfe) {
+            LOGGER.error(method
+                    + "ERROR: -threads and -rate must be numeric.  Error "
+                    + "message [ "
+                    + nfe.getMessage()
+                    + " ].");
+            ScrubArchives.printHelp();
+            System.exit(1);
+        }
+        if (opt.getSet().isSet("checkpoint")) {
+            checkpoint = opt.getSet().getOption("checkpoint").getResultValue(0);
+        }
+        restart = opt.getSet().isSet("restart");
+        sha256  = opt.getSet().isSet("sha256");
+
+        if (restart) {
+            Files.deleteIfExists(Paths.get(checkpoint));
+        }
+
+        LOGGER.info(method
+                + "Scrubbing [ "
+                + path
+                + " ] with [ "
+                + threads
+                + " ] threads, rate limit [ "
+                + ((rate > 0) ? rate + " MB/s" : "none")
+                + " ], checkpoint [ "
+                + checkpoint
+                + " ].");
+
+        ScrubArchives scrubber = new ScrubArchives(
+                path, threads, rate, checkpoint, sha256);
+        if (!scrubber.scrub()) {
+            System.exit(2);
+        }
+    }
+}
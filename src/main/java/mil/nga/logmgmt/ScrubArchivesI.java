@@ -0,0 +1,58 @@
+package mil.nga.logmgmt;
+
+/**
+ * Simple interface containing the constants and help text used by the
+ * archive integrity scrubber.
+ */
+public interface ScrubArchivesI {
+
+    /**
+     * Default number of month directories scrubbed concurrently.
+     */
+    public static final int DEFAULT_THREADS = 4;
+
+    /**
+     * Name of the default checkpoint file (kept in the default state
+     * directory).
+     */
+    public static final String DEFAULT_CHECKPOINT = "scrub.checkpoint";
+
+    /**
+     * Usage String printed when incorrect arguments are supplied.
+     */
+    public static final String USAGE_STRING = new String(
+            "Usage: java mil.nga.logmgmt.ScrubArchives "
+            + "-path=<archive-store> "
+            + "[ -threads=<count> ] "
+            + "[ -rate=<MB-per-second> ] "
+            + "[ -checkpoint=<file> ] "
+            + "[ -restart ] "
+            + "[ -sha256 ] "
+            + "[-h] [-help]");
+
+    /**
+     * Help string printed when -h or -help appear on the command line.
+     */
+    public static final String HELP_STRING = new String(
+            "This application verifies the integrity of the archive store "
+            + "by reading every archive, checking the CRCs held in the "
+            + "archive itself and comparing the stored and original content "
+            + "against the checksums recorded in the month directory "
+            + "manifests.  Options supported are as follows:\n\n"
+            + "-path=<archive-store>  Required.  The top of the archive "
+            + "store (the output.path property) or any directory below it.\n"
+            + "[ -threads=<count> ]   Optional number of month directories "
+            + "to scrub concurrently.  The default is 4.\n"
+            + "[ -rate=<MB-per-second> ] Optional limit on the aggregate "
+            + "read bandwidth.  The default is unlimited.\n"
+            + "[ -checkpoint=<file> ] Optional file recording the month "
+            + "directories already scrubbed so that an interrupted scrub "
+            + "resumes where it stopped.  The default is "
+            + DEFAULT_CHECKPOINT 
+            + " in the default state directory.\n"
+            + "[ -restart ]           Ignore any existing checkpoint and "
+            + "start from the beginning.\n"
+            + "[ -sha256 ]            Also verify SHA-256 digests where they "
+            + "were recorded.\n"
+            + "[-h] [-help]    Prints this help message.\n\n");
+}
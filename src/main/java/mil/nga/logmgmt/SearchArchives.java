@@ -0,0 +1,591 @@
+package mil.nga.logmgmt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.zip.GZIPInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.logmgmt.exceptions.InputException;
+import mil.nga.util.AhoCorasick;
+import mil.nga.util.KeywordFilter;
+import mil.nga.util.LineScanner;
+import mil.nga.util.Options;
+import mil.nga.util.Options.Multiplicity;
+import mil.nga.util.Options.Separator;
+
+/**
+ * Search the archived logs below a directory of the archive store for
+ * lines containing any of a set of keywords and/or matching a regular
+ * expression.  Archives are decompressed as a stream (nothing is
+ * extracted to disk) and several archives are searched at once.  Each
+ * worker collects its matches in a small buffer that is written out
+ * whenever it fills, so the results are never held in memory as a whole.
+ *
+ * Keywords are matched with an Aho-Corasick automaton over the raw bytes
+ * of each line, so the cost does not grow with the number of keywords and
+ * lines are only decoded into characters when a regular expression has to
+ * be applied.
+ *
+ * When a date range is supplied the layout of the store is used to skip
+ * work: month directories outside the range are not listed, and archives
+ * whose source was last modified before the range began (and so hold no
+ * later content) are not opened.
+ *
+ * Tokens (see <code>KeywordFilter</code>) are matched as whole tokens 
+ * rather than substrings.  Archives written with a keyword filter that 
+ * rules out every token are skipped without being opened; the filter 
+ * applies the same definition of a token as the line matching, so the 
+ * results do not depend on whether an archive has a filter.
+ */
+public class SearchArchives {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(SearchArchives.class);
+
+    private final Path         base;
+    private final AhoCorasick  keywords;
+    private final Pattern      pattern;
+    private final String[]     tokens;
+    private final byte[][]     tokenBytes;
+    private final AhoCorasick  tokenPrefilter;
+    private final long         from;
+    private final long         to;
+    private final int          threads;
+    private final OutputStream out;
+    private final AtomicLong   searched = new AtomicLong(0);
+    private final AtomicLong   skipped  = new AtomicLong(0);
+    private final AtomicLong   filtered = new AtomicLong(0);
+    private final AtomicLong   failed   = new AtomicLong(0);
+    private final AtomicLong   matches  = new AtomicLong(0);
+
+    /**
+     * Constructor.
+     *
+     * @param path The directory to search (the top of the archive store or
+     * any directory below it).
+     * @param keywords Literal keywords (may be empty).
+     * @param tokens Whole tokens (may be empty).
+     * @param regex Regular expression (may be null).
+     * @param ignoreCase True if matching should ignore case.
+     * @param from Start of the range of interest (inclusive, epoch
+     * milliseconds).
+     * @param to End of the range of interest (exclusive, epoch
+     * milliseconds).
+     * @param threads Number of archives searched at once.
+     * @param out Destination of the matching lines.
+     * @throws InputException Thrown if the directory does not exist,
+     * nothing was supplied to search for, a token is not a single token or
+     * the expression is invalid.
+     */
+    public SearchArchives(
+            String       path,
+            List<String> keywords,
+            List<String> tokens,
+            String       regex,
+            boolean      ignoreCase,
+            long         from,
+            long         to,
+            int          threads,
+            OutputStream out) throws InputException {
+
+        String method = "Constructor() - ";
+
+        if ((path == null) || (!Files.isDirectory(Paths.get(path)))) {
+            String msg = method
+                    + "The archive store [ "
+                    + path
+                    + " ] does not exist.";
+            LOGGER.error(msg);
+            throw new InputException(msg);
+        }
+        List<String> normalized = new ArrayList<String>();
+        for (String token : tokens) {
+            String value = KeywordFilter.normalize(token);
+            if (value == null) {
+                String msg = method
+                        + "Token [ "
+                        + token
+                        + " ] is not a single token.";
+                LOGGER.error(msg);
+                throw new InputException(msg);
+            }
+            normalized.add(value);
+        }
+        AhoCorasick automaton = new AhoCorasick(keywords, ignoreCase);
+        if ((automaton.size() == 0) && normalized.isEmpty() && 
+                ((regex == null) || regex.isEmpty())) {
+            String msg = method
+                    + "At least one keyword, token or a regular expression "
+                    + "must be supplied.";
+            LOGGER.error(msg);
+            throw new InputException(msg);
+        }
+        try {
+            this.pattern = ((regex == null) || regex.isEmpty()) ? null :
+                    Pattern.compile(regex,
+                            ignoreCase ? Pattern.CASE_INSENSITIVE : 0);
+        }
+        catch (PatternSyntaxException pse) {
+            String msg = method
+                    + "Invalid regular expression [ "
+                    + regex
+                    + " ].  Error message [ "
+                    + pse.getMessage()
+                    + " ].";
+            LOGGER.error(msg);
+            throw new InputException(msg);
+        }
+        this.base           = Paths.get(path);
+        this.keywords       = (automaton.size() > 0) ? automaton : null;
+        this.tokens         = normalized.toArray(new String[normalized.size()]);
+        this.tokenBytes     = new byte[tokens.size()][];
+        this.tokenPrefilter = normalized.isEmpty() ? null :
+                new AhoCorasick(normalized, true);
+        this.from           = from;
+        this.to             = to;
+        this.threads        = Math.max(1, threads);
+        this.out            = out;
+        for (int i = 0; i < tokenBytes.length; i++) {
+            tokenBytes[i] = normalized.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Search every archive that may hold content from the range of
+     * interest.
+     *
+     * @return The number of matching lines.
+     * @throws IOException Thrown if the store cannot be walked.
+     */
+    public long search() throws IOException {
+
+        String method = "search() - ";
+        long   start  = System.currentTimeMillis();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (final Path dir : ArchiveStore.findMonthDirectories(base)) {
+                if ((ArchiveStore.endOf(dir) <= from) ||
+                        (ArchiveStore.startOf(dir) >= to)) {
+                    continue;
+                }
+                Map<String, ManifestEntry> entries = Manifest.read(dir);
+                for (final ManifestEntry entry : entries.values()) {
+                    if (entry.getSourceMtime() < from) {
+                        skipped.incrementAndGet();
+                        continue;
+                    }
+                    if (!mayContainTokens(dir, entry)) {
+                        filtered.incrementAndGet();
+                        continue;
+                    }
+                    pool.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            searchArchive(dir, entry.getDestination(),
+                                    entry.getEncoding());
+                        }
+                    });
+                }
+                // Archives written before manifests were kept.
+                for (final Path archive : ArchiveStore.listArchives(dir)) {
+                    final String name = archive.getFileName().toString();
+                    if (!entries.containsKey(name)) {
+                        pool.submit(new Runnable() {
+                            @Override
+                            public void run() {
+                                searchArchive(dir, name,
+                                        ArchiveDecoder.encodingOf(archive));
+                            }
+                        });
+                    }
+                }
+            }
+        }
+        finally {
+            pool.shutdown();
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException ie) {
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            synchronized (out) {
+                out.flush();
+            }
+        }
+
+        LOGGER.info(method
+                + "Searched [ "
+                + searched.get()
+                + " ] archives in [ "
+                + (System.currentTimeMillis() - start)
+                + " ] ms, skipped [ "
+                + skipped.get()
+                + " ] outside the date range and [ "
+                + filtered.get()
+                + " ] ruled out by keyword filters, failed [ "
+                + failed.get()
+                + " ].  Found [ "
+                + matches.get()
+                + " ] matching lines.");
+        return matches.get();
+    }
+
+    /**
+     * Consult the keyword filter of an archive (if it has one) to find out
+     * whether the archive may contain any of the tokens.
+     *
+     * @param dir The month directory.
+     * @param entry The manifest entry of the archive.
+     * @return False if the archive certainly contains none of the tokens.
+     */
+    private boolean mayContainTokens(Path dir, ManifestEntry entry) {
+        String method = "mayContainTokens() - ";
+        if (tokens.length == 0) {
+            return true;
+        }
+        Path sidecar = KeywordFilter.sidecarOf(dir.resolve(entry.getDestination()));
+        if (!Files.exists(sidecar)) {
+            return true;
+        }
+        try {
+            KeywordFilter filter = KeywordFilter.read(sidecar, 
+                    entry.getSourceCrc());
+            if (filter == null) {
+                return true;
+            }
+            for (String token : tokens) {
+                if (filter.mightContain(token)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        catch (IOException ioe) {
+            LOGGER.warn(method
+                    + "Unable to read keyword filter [ "
+                    + sidecar.toString()
+                    + " ].  Error message [ "
+                    + ioe.getMessage()
+                    + " ].");
+            return true;
+        }
+    }
+
+    /**
+     * Search a single archive, writing out the matching lines.
+     *
+     * @param dir The month directory.
+     * @param destination The archive file name.
+     * @param encoding How the content is stored.
+     */
+    private void searchArchive(Path dir, String destination, String encoding) {
+
+        String                method  = "searchArchive() - ";
+        Path                  archive = dir.resolve(destination);
+        byte[]                label   = (archive.toString() + ":")
+                .getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream results = new ByteArrayOutputStream(
+                SearchArchivesI.OUTPUT_BUFFER_SIZE);
+
+        InputStream stored = null;
+        try {
+            stored = ArchiveContainer.openStored(dir, destination);
+            if (stored == null) {
+                throw new IOException("Archive not found.");
+            }
+            InputStream content = ArchiveDecoder.openContent(
+                    archive, stored, encoding);
+            if (ManifestEntry.ENCODING_RAW.equals(encoding) &&
+                    ArchiveDecoder.isGzip(archive)) {
+                // A log compressed by logrotate and archived as is.
+                content = new GZIPInputStream(content, StagedFile.BUFFER_SIZE);
+            }
+            searchContent(content, label, results);
+            searched.incrementAndGet();
+        }
+        catch (IOException ioe) {
+            failed.incrementAndGet();
+            LOGGER.warn(method
+                    + "Unable to search archive [ "
+                    + archive.toString()
+                    + " ].  Error message [ "
+                    + ioe.getMessage()
+                    + " ].");
+        }
+        finally {
+            if (stored != null) {
+                try { stored.close(); } catch (IOException e) {}
+            }
+        }
+        flush(results);
+    }
+
+    /**
+     * Split content into lines and test each line.  Lines may be of any
+     * length; the buffer grows to hold the longest line.
+     *
+     * @param content The decoded content.
+     * @param label Prefix written before the line number of every match.
+     * @param results Buffer collecting the matches.
+     * @throws IOException Thrown if the content cannot be read.
+     */
+    private void searchContent(
+            InputStream           content,
+            byte[]                label,
+            ByteArrayOutputStream results) throws IOException {
+        LineScanner scanner = new LineScanner(StagedFile.BUFFER_SIZE).reset(content);
+        while (scanner.next()) {
+            test(scanner.array(), scanner.start(), scanner.end(),
+                    scanner.getLineNumber(), label, results);
+        }
+    }
+
+    /**
+     * Test a single line, recording it if it matches.
+     *
+     * @param buffer Buffer holding the line.
+     * @param start Start of the line.
+     * @param end End of the line (exclusive, excluding the line terminator).
+     * @param line The line number.
+     * @param label Prefix written before the line number.
+     * @param results Buffer collecting the matches.
+     */
+    private void test(
+            byte[]                buffer,
+            int                   start,
+            int                   end,
+            long                  line,
+            byte[]                label,
+            ByteArrayOutputStream results) {
+        int length = end - start;
+        if ((tokenPrefilter != null) && 
+                (!containsToken(buffer, start, length))) {
+            return;
+        }
+        if ((keywords != null) && (!keywords.matches(buffer, start, length))) {
+            return;
+        }
+        if ((pattern != null) && (!pattern.matcher(new String(
+                buffer, start, length, StandardCharsets.UTF_8)).find())) {
+            return;
+        }
+        matches.incrementAndGet();
+        results.write(label, 0, label.length);
+        byte[] number = (Long.toString(line) + ":").getBytes(
+                StandardCharsets.US_ASCII);
+        results.write(number, 0, number.length);
+        results.write(buffer, start, length);
+        results.write('\n');
+        if (results.size() >= SearchArchivesI.OUTPUT_BUFFER_SIZE) {
+            flush(results);
+        }
+    }
+
+    /**
+     * Determine whether a line contains any of the tokens.
+     *
+     * @param buffer Buffer holding the line.
+     * @param start Start of the line.
+     * @param length Length of the line.
+     * @return True if at least one token occurs as a whole token.
+     */
+    private boolean containsToken(byte[] buffer, int start, int length) {
+        if (!tokenPrefilter.matches(buffer, start, length)) {
+            return false;
+        }
+        for (byte[] token : tokenBytes) {
+            if (KeywordFilter.containsToken(buffer, start, length, token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Write out and clear a buffer of matches.  Buffers are written whole
+     * so lines from different archives are never interleaved.
+     *
+     * @param results Buffer collecting the matches.
+     */
+    private void flush(ByteArrayOutputStream results) {
+        String method = "flush() - ";
+        if (results.size() == 0) {
+            return;
+        }
+        synchronized (out) {
+            try {
+                results.writeTo(out);
+            }
+            catch (IOException ioe) {
+                LOGGER.error(method
+                        + "Unable to write results.  Error message [ "
+                        + ioe.getMessage()
+                        + " ].");
+            }
+        }
+        results.reset();
+    }
+
+    /**
+     * Convert a yyyyMMdd date into epoch milliseconds.
+     *
+     * @param date The date.
+     * @param next True for the start of the following day (the exclusive
+     * end of a range), false for the start of the day itself.
+     * @return The time.
+     * @throws InputException Thrown if the date is not valid.
+     */
+    private static long timeOf(String date, boolean next)
+            throws InputException {
+        String           method = "timeOf() - ";
+        SimpleDateFormat sdf    = new SimpleDateFormat("yyyyMMdd");
+        sdf.setLenient(false);
+        try {
+            Calendar cal = Calendar.getInstance();
+            cal.setTime(sdf.parse(date.trim()));
+            if (next) {
+                cal.add(Calendar.DAY_OF_MONTH, 1);
+            }
+            return cal.getTimeInMillis();
+        }
+        catch (ParseException pe) {
+            String msg = method
+                    + "Invalid date [ "
+                    + date
+                    + " ].  Expected yyyyMMdd.";
+            LOGGER.error(msg);
+            throw new InputException(msg);
+        }
+    }
+
+    /**
+     * Simple static method to print the help and usage String information.
+     */
+    private static void printHelp() {
+        System.out.println("");
+        System.out.println(SearchArchivesI.HELP_STRING);
+        System.out.println("");
+        System.out.println(SearchArchivesI.USAGE_STRING);
+    }
+
+    /**
+     * Driver method used to extract the command line parameters and
+     * initiate processing.
+     *
+     * @param args Input command line arguments
+     * @throws InputException Thrown if the input data does not make
+     * sense.
+     * @throws IOException Thrown if the store cannot be walked.
+     */
+    public static void main(String[] args) throws InputException, IOException {
+
+        String       method   = "main() - ";
+        String       path     = null;
+        String       regex    = null;
+        List<String> keywords = new ArrayList<String>();
+        List<String> tokens   = new ArrayList<String>();
+        long         from     = Long.MIN_VALUE;
+        long         to       = Long.MAX_VALUE;
+        int          threads  = Runtime.getRuntime().availableProcessors();
+
+        // Set up the command line options
+        Options opt = new Options(args, 0);
+        opt.getSet().addOption("path", Separator.EQUALS, Multiplicity.ONCE);
+        opt.getSet().addOption("keyword", Separator.EQUALS,
+                Multiplicity.ZERO_OR_MORE);
+        opt.getSet().addOption("token", Separator.EQUALS,
+                Multiplicity.ZERO_OR_MORE);
+        opt.getSet().addOption("regex", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("ignoreCase", Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("from", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("to", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("threads", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("h", Multiplicity.ZERO_OR_MORE);
+        opt.getSet().addOption("help", Multiplicity.ZERO_OR_MORE);
+
+        // Make sure the options make sense
+        if (!opt.check(true, false)) {
+            System.out.println(SearchArchivesI.USAGE_STRING);
+            System.exit(1);
+        }
+
+        // See if the user wanted the help message displayed.
+        if (opt.getSet().isSet("h") || opt.getSet().isSet("help")) {
+            SearchArchives.printHelp();
+            System.exit(0);
+        }
+
+        path = opt.getSet().getOption("path").getResultValue(0);
+        if (opt.getSet().isSet("keyword")) {
+            for (int i = 0;
+                    i < opt.getSet().getOption("keyword").getResultCount();
+                    i++) {
+                keywords.add(opt.getSet().getOption("keyword").getResultValue(i));
+            }
+        }
+        if (opt.getSet().isSet("token")) {
+            for (int i = 0;
+                    i < opt.getSet().getOption("token").getResultCount();
+                    i++) {
+                tokens.add(opt.getSet().getOption("token").getResultValue(i));
+            }
+        }
+        if (opt.getSet().isSet("regex")) {
+            regex = opt.getSet().getOption("regex").getResultValue(0);
+        }
+        if (opt.getSet().isSet("from")) {
+            from = timeOf(opt.getSet().getOption("from").getResultValue(0), false);
+        }
+        if (opt.getSet().isSet("to")) {
+            to = timeOf(opt.getSet().getOption("to").getResultValue(0), true);
+        }
+        try {
+            if (opt.getSet().isSet("threads")) {
+                threads = Integer.parseInt(
+                        opt.getSet().getOption("threads").getResultValue(0).trim());
+            }
+        }
+        catch (NumberFormatException nfe) {
+            LOGGER.error(method
+                    + "ERROR: -threads must be numeric.  Error message [ "
+                    + nfe.getMessage()
+                    + " ].");
+            SearchArchives.printHelp();
+            System.exit(1);
+        }
+
+        new SearchArchives(path, keywords, tokens, regex,
+                opt.getSet().isSet("ignoreCase"), from, to, threads,
+                System.out).search();
+    }
+}
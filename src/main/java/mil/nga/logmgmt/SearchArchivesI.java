@@ -0,0 +1,69 @@
+package mil.nga.logmgmt;
+
+/**
+ * Simple interface containing the constants and help text used by the 
+ * archive search command.
+ */
+public interface SearchArchivesI {
+    
+    /**
+     * Size of the buffer in which each worker collects matching lines 
+     * before writing them out.
+     */
+    public static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+    
+    /**
+     * Usage String printed when incorrect arguments are supplied.
+     */
+    public static final String USAGE_STRING = new String(
+            "Usage: java mil.nga.logmgmt.SearchArchives "
+            + "-path=<archive-store> "
+            + "[ -keyword=<text> ... ] "
+            + "[ -token=<token> ... ] "
+            + "[ -regex=<pattern> ] "
+            + "[ -ignoreCase ] "
+            + "[ -from=<yyyyMMdd> ] "
+            + "[ -to=<yyyyMMdd> ] "
+            + "[ -threads=<count> ] "
+            + "[-h] [-help]");
+    
+    /**
+     * Help string printed when -h or -help appear on the command line.
+     */
+    public static final String HELP_STRING = new String(
+            "This application searches the archived logs below a directory "
+            + "of the archive store without extracting them, printing each "
+            + "matching line as <archive>:<line-number>:<line>.  Archives "
+            + "are decompressed as they are read, several at a time, and "
+            + "results are written as they are found (the order between "
+            + "archives is not defined).  Archives held in monthly "
+            + "containers are searched in place.  Month directories and "
+            + "archives that cannot hold content from the requested dates "
+            + "are skipped without being opened.  Options supported are as "
+            + "follows:\n\n"
+            + "-path=<archive-store>  Required.  The top of the archive "
+            + "store or any directory below it (e.g. a single server "
+            + "group or application).\n"
+            + "[ -keyword=<text> ]    A literal to search for.  May be "
+            + "repeated; a line matches if it contains any of the "
+            + "keywords.  Any number of keywords is matched in a single "
+            + "pass.\n"
+            + "[ -token=<token> ]     A whole token to search for (e.g. a "
+            + "session ID, client IP or user name), ignoring case.  May be "
+            + "repeated; a line must contain one of the tokens.  A token is "
+            + "a run of letters and digits, or of letters, digits and "
+            + "\". - _ : / @\" with no leading or trailing punctuation.  "
+            + "Archives written with keyword filters (output.keywords) "
+            + "that do not contain any of the tokens are not read.\n"
+            + "[ -regex=<pattern> ]   A Java regular expression to search "
+            + "for.  If keywords are also supplied, a line must contain a "
+            + "keyword and match the expression, so keywords taken from "
+            + "the expression make the search much faster.\n"
+            + "[ -ignoreCase ]        Match keywords and the expression "
+            + "regardless of case.\n"
+            + "[ -from=<yyyyMMdd> ]   Optional first date of interest.\n"
+            + "[ -to=<yyyyMMdd> ]     Optional last date of interest.\n"
+            + "[ -threads=<count> ]   Optional number of archives searched "
+            + "at once.  The default is the number of processors.\n"
+            + "[-h] [-help]    Prints this help message.\n\n");
+}
@@ -0,0 +1,284 @@
+package mil.nga.logmgmt;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.logmgmt.exceptions.InputException;
+import mil.nga.util.AccessLogSketches;
+import mil.nga.util.HeavyHitters;
+import mil.nga.util.Options;
+import mil.nga.util.Options.Multiplicity;
+import mil.nga.util.Options.Separator;
+
+/**
+ * Estimate distinct client addresses, distinct user agents and the most
+ * requested URLs of archived access logs by merging the sketches written
+ * alongside the archives (see <code>AccessLogSketches</code>).  The
+ * archives themselves are never opened.  Sketches whose checksum does not
+ * match the manifest entry of their archive are ignored.
+ */
+public class SketchArchives {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(SketchArchives.class);
+
+    private final Path        base;
+    private final long        from;
+    private final long        to;
+    private final int         top;
+    private final PrintStream out;
+    private AccessLogSketches merged = null;
+    private long sketches = 0;
+    private long stale    = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param path The directory to report on (the top of the archive
+     * store or any directory below it).
+     * @param from Start of the range of interest (inclusive, epoch
+     * milliseconds).
+     * @param to End of the range of interest (exclusive, epoch
+     * milliseconds).
+     * @param top The number of URLs listed.
+     * @param out Destination of the report.
+     * @throws InputException Thrown if the directory does not exist.
+     */
+    public SketchArchives(
+            String      path,
+            long        from,
+            long        to,
+            int         top,
+            PrintStream out) throws InputException {
+
+        String method = "Constructor() - ";
+
+        if ((path == null) || (!Files.isDirectory(Paths.get(path)))) {
+            String msg = method
+                    + "The archive store [ "
+                    + path
+                    + " ] does not exist.";
+            LOGGER.error(msg);
+            throw new InputException(msg);
+        }
+        this.base = Paths.get(path);
+        this.from = from;
+        this.to   = to;
+        this.top  = Math.max(1, top);
+        this.out  = out;
+    }
+
+    /**
+     * Merge every sketch below the directory covering the range of
+     * interest and print the report.
+     *
+     * @return The merged sketches, or null if there were none.
+     * @throws IOException Thrown if the store cannot be walked.
+     */
+    public AccessLogSketches report() throws IOException {
+
+        String method = "report() - ";
+
+        for (Path dir : ArchiveStore.findMonthDirectories(base)) {
+            if ((ArchiveStore.endOf(dir) <= from) ||
+                    (ArchiveStore.startOf(dir) >= to)) {
+                continue;
+            }
+            for (ManifestEntry entry : Manifest.read(dir).values()) {
+                if (entry.getSourceMtime() < from) {
+                    continue;
+                }
+                Path sidecar = AccessLogSketches.sidecarOf(
+                        dir.resolve(entry.getDestination()));
+                if (!Files.exists(sidecar)) {
+                    continue;
+                }
+                try {
+                    AccessLogSketches sketch = AccessLogSketches.read(
+                            sidecar, entry.getSourceCrc());
+                    if (sketch == null) {
+                        stale++;
+                    }
+                    else if ((sketch.getLast() >= from) && (sketch.getFirst() < to)) {
+                        add(sketch);
+                    }
+                }
+                catch (IOException ioe) {
+                    stale++;
+                    LOGGER.warn(method
+                            + "Unable to read sketches [ "
+                            + sidecar.toString()
+                            + " ].  Error message [ "
+                            + ioe.getMessage()
+                            + " ].");
+                }
+            }
+        }
+        print();
+
+        LOGGER.info(method
+                + "Merged [ "
+                + sketches
+                + " ] sketches, ignored [ "
+                + stale
+                + " ] that no longer match their archive.");
+        return merged;
+    }
+
+    private void add(AccessLogSketches sketch) {
+        sketches++;
+        if (merged == null) {
+            merged = sketch;
+        }
+        else {
+            merged.merge(sketch);
+        }
+    }
+
+    /**
+     * Print the estimates.
+     */
+    private void print() {
+        if (merged == null) {
+            out.println("No access log sketches found.");
+            out.flush();
+            return;
+        }
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        out.println("Sketches         : " + sketches);
+        out.println("First request    : " + sdf.format(new Date(merged.getFirst())));
+        out.println("Last request     : " + sdf.format(new Date(merged.getLast())));
+        out.println("Requests         : " + merged.getUrls().getTotal());
+        out.println("Distinct clients : " + merged.getClients().cardinality());
+        out.println("Distinct agents  : " + merged.getAgents().cardinality());
+        out.println("");
+        out.println(String.format("%5s %12s %12s  %s",
+                "rank", "requests", "guaranteed", "url"));
+        int rank = 0;
+        for (HeavyHitters.Item item : merged.getUrls().getTop(top)) {
+            out.println(String.format("%5d %12d %12d  %s", ++rank,
+                    item.getEstimate(), item.getGuaranteed(), item.getValue()));
+        }
+        out.flush();
+    }
+
+    /**
+     * Convert a yyyyMMdd date into epoch milliseconds.
+     *
+     * @param date The date.
+     * @param next True for the start of the following day.
+     * @return The start of the day (local time).
+     * @throws InputException Thrown if the date is not valid.
+     */
+    private static long timeOf(String date, boolean next)
+            throws InputException {
+        String           method = "timeOf() - ";
+        SimpleDateFormat sdf    = new SimpleDateFormat("yyyyMMdd");
+        sdf.setLenient(false);
+        try {
+            Calendar cal = Calendar.getInstance();
+            cal.setTime(sdf.parse(date.trim()));
+            if (next) {
+                cal.add(Calendar.DAY_OF_MONTH, 1);
+            }
+            return cal.getTimeInMillis();
+        }
+        catch (ParseException pe) {
+            String msg = method
+                    + "Invalid date [ "
+                    + date
+                    + " ].  Expected yyyyMMdd.";
+            LOGGER.error(msg);
+            throw new InputException(msg);
+        }
+    }
+
+    /**
+     * Simple static method to print the help and usage String information.
+     */
+    private static void printHelp() {
+        System.out.println("");
+        System.out.println(SketchArchivesI.HELP_STRING);
+        System.out.println("");
+        System.out.println(SketchArchivesI.USAGE_STRING);
+    }
+
+    /**
+     * Driver method used to extract the command line parameters and
+     * initiate processing.
+     *
+     * @param args Input command line arguments
+     * @throws InputException Thrown if the input data does not make
+     * sense.
+     * @throws IOException Thrown if the store cannot be walked.
+     */
+    public static void main(String[] args) throws InputException, IOException {
+
+        String method = "main() - ";
+        String path   = null;
+        long   from   = Long.MIN_VALUE;
+        long   to     = Long.MAX_VALUE;
+        int    top    = SketchArchivesI.DEFAULT_TOP;
+
+        // Set up the command line options
+        Options opt = new Options(args, 0);
+        opt.getSet().addOption("path", Separator.EQUALS, Multiplicity.ONCE);
+        opt.getSet().addOption("from", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("to", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("top", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("h", Multiplicity.ZERO_OR_MORE);
+        opt.getSet().addOption("help", Multiplicity.ZERO_OR_MORE);
+
+        // Make sure the options make sense
+        if (!opt.check(true, false)) {
+            System.out.println(SketchArchivesI.USAGE_STRING);
+            System.exit(1);
+        }
+
+        // See if the user wanted the help message displayed.
+        if (opt.getSet().isSet("h") || opt.getSet().isSet("help")) {
+            SketchArchives.printHelp();
+            System.exit(0);
+        }
+
+        path = opt.getSet().getOption("path").getResultValue(0);
+        if (opt.getSet().isSet("from")) {
+            from = timeOf(opt.getSet().getOption("from").getResultValue(0), false);
+        }
+        if (opt.getSet().isSet("to")) {
+            to = timeOf(opt.getSet().getOption("to").getResultValue(0), true);
+        }
+        try {
+            if (opt.getSet().isSet("top")) {
+                top = Integer.parseInt(
+                        opt.getSet().getOption("top").getResultValue(0).trim());
+            }
+        }
+        catch (NumberFormatException nfe) {
+            LOGGER.error(method
+                    + "ERROR: -top must be numeric.  Error message [ "
+                    + nfe.getMessage()
+                    + " ].");
+            SketchArchives.printHelp();
+            System.exit(1);
+        }
+
+        new SketchArchives(path, from, to, top, System.out).report();
+    }
+}
@@ -0,0 +1,48 @@
+package mil.nga.logmgmt;
+
+/**
+ * Simple interface containing the constants and help text used by the 
+ * access log sketch command.
+ */
+public interface SketchArchivesI {
+    
+    /**
+     * Default number of URLs listed.
+     */
+    public static final int DEFAULT_TOP = 100;
+    
+    /**
+     * Usage String printed when incorrect arguments are supplied.
+     */
+    public static final String USAGE_STRING = new String(
+            "Usage: java mil.nga.logmgmt.SketchArchives "
+            + "-path=<archive-store> "
+            + "[ -from=<yyyyMMdd> ] "
+            + "[ -to=<yyyyMMdd> ] "
+            + "[ -top=<count> ] "
+            + "[-h] [-help]");
+    
+    /**
+     * Help string printed when -h or -help appear on the command line.
+     */
+    public static final String HELP_STRING = new String(
+            "This application estimates the number of distinct client "
+            + "addresses and user agents, and the most requested URLs, "
+            + "recorded in archived access logs by merging the sketches "
+            + "written when the logs were archived (output.sketches).  The "
+            + "logs themselves are not read.  Distinct counts are accurate "
+            + "to about 2%.  For each URL the estimated number of requests "
+            + "is printed with the number guaranteed; URLs requested more "
+            + "often than the total divided by 256 are never missed.  "
+            + "Sketches cover whole archives, so an archive holding any "
+            + "request in the date range is counted in full.  Options "
+            + "supported are as follows:\n\n"
+            + "-path=<archive-store>  Required.  The top of the archive "
+            + "store or any directory below it (e.g. a single server "
+            + "group or application).  All sketches below it are merged.\n"
+            + "[ -from=<yyyyMMdd> ]   Optional first date of interest.\n"
+            + "[ -to=<yyyyMMdd> ]     Optional last date of interest.\n"
+            + "[ -top=<count> ]       Optional number of URLs listed.  The "
+            + "default is 100.\n"
+            + "[-h] [-help]    Prints this help message.\n\n");
+}
@@ -0,0 +1,250 @@
+package mil.nga.logmgmt;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An output file that is written under a temporary <code>.partial</code>
+ * name and only appears under its final name once every byte has been
+ * forced to disk.  A reader (or a subsequent run) will therefore never see
+ * a half-written archive under the final name.
+ *
+ * Usage:
+ * <pre>
+ * StagedFile staged = new StagedFile(destination);
+ * try {
+ *     OutputStream os = staged.getOutputStream();
+ *     ... write ...
+ *     staged.commit();
+ * }
+ * finally {
+ *     staged.close();
+ * }
+ * </pre>
+ * If <code>close()</code> is called before <code>commit()</code> the
+ * partial file is removed.
+ */
+public class StagedFile implements StorageUpload {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(StagedFile.class);
+
+    /**
+     * Extension appended to the final file name while the file is being
+     * written.
+     */
+    public static final String PARTIAL_EXTENSION = ".partial";
+
+    /**
+     * Size of the buffer placed in front of the file channel.
+     */
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path   destination;
+    private final Path   partial;
+    private FileChannel  channel   = null;
+    private OutputStream stream    = null;
+    private boolean      committed = false;
+
+    /**
+     * Constructor.
+     *
+     * @param destination The final location of the file.
+     */
+    public StagedFile(Path destination) {
+        this.destination = destination;
+        this.partial     = partialOf(destination);
+    }
+
+    /**
+     * Calculate the name of the partial file associated with a final
+     * destination.
+     *
+     * @param destination The final location of a file.
+     * @return The location of the file while it is being written.
+     */
+    public static Path partialOf(Path destination) {
+        return destination.resolveSibling(
+                destination.getFileName().toString() + PARTIAL_EXTENSION);
+    }
+
+    /**
+     * Force the directory entry for a newly created or renamed file to
+     * disk.  Not all platforms allow a directory to be opened (Windows for
+     * one) so this is done on a best-effort basis.
+     *
+     * @param dir The directory to synchronize.
+     */
+    public static void syncDirectory(Path dir) {
+        String method = "syncDirectory() - ";
+        if (dir == null) {
+            return;
+        }
+        try (FileChannel fc = FileChannel.open(dir, StandardOpenOption.READ)) {
+            fc.force(true);
+        }
+        catch (IOException ioe) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug(method
+                        + "Unable to synchronize directory [ "
+                        + dir.toString()
+                        + " ].  Error message [ "
+                        + ioe.getMessage()
+                        + " ].");
+            }
+        }
+    }
+
+    /**
+     * Accessor method for the final destination of the file.
+     * @return The final destination.
+     */
+    public Path getDestination() {
+        return destination;
+    }
+
+    /**
+     * Accessor method for the name under which the file is written.
+     * @return The partial file.
+     */
+    public Path getPartial() {
+        return partial;
+    }
+
+    /**
+     * Open (creating or truncating) the partial file.  Closing the
+     * returned stream only flushes it; the underlying file is closed by
+     * <code>commit()</code> or <code>close()</code>.
+     *
+     * @return A buffered stream writing to the partial file.
+     * @throws IOException Thrown if the partial file cannot be created.
+     */
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        if (stream == null) {
+            channel = FileChannel.open(partial,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            stream = new BufferedOutputStream(
+                    Channels.newOutputStream(channel), BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+        }
+        return stream;
+    }
+
+    /**
+     * Accessor method for the channel backing the partial file.
+     * <code>getOutputStream()</code> must be called first.  Any data
+     * written through the stream must be flushed before the channel is
+     * used directly.
+     *
+     * @return The channel backing the partial file.
+     */
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Flush and force the partial file to disk without renaming it.  Used
+     * when the partial file is to be verified before it is committed.
+     *
+     * @throws IOException Thrown if the file cannot be forced.
+     */
+    public void sync() throws IOException {
+        getOutputStream().flush();
+        channel.force(true);
+    }
+
+    /**
+     * Flush and force the partial file to disk, then atomically rename it
+     * to its final name and force the directory entry.
+     *
+     * @throws IOException Thrown if any step fails.  The partial file is
+     * left in place and will be removed by <code>close()</code>.
+     */
+    @Override
+    public void commit() throws IOException {
+        String method = "commit() - ";
+        getOutputStream().flush();
+        channel.force(true);
+        channel.close();
+        try {
+            Files.move(partial, destination, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException amnse) {
+            LOGGER.warn(method
+                    + "Atomic rename not supported for [ "
+                    + destination.toString()
+                    + " ].  Falling back to a plain rename.");
+            Files.move(partial, destination);
+        }
+        syncDirectory(destination.getParent());
+        committed = true;
+    }
+
+    /**
+     * Accessor method indicating whether the file was committed.
+     * @return True if the file exists under its final name.
+     */
+    @Override
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    /**
+     * Release the underlying file.  If the file was not committed the
+     * partial file is deleted.
+     */
+    @Override
+    public void close() {
+        String method = "close() - ";
+        if (channel != null) {
+            try { channel.close(); } catch (IOException e) {}
+        }
+        if (!committed) {
+            try {
+                Files.deleteIfExists(partial);
+            }
+            catch (IOException ioe) {
+                LOGGER.warn(method
+                        + "Unable to remove partial file [ "
+                        + partial.toString()
+                        + " ].  Error message [ "
+                        + ioe.getMessage()
+                        + " ].");
+            }
+        }
+    }
+
+    /**
+     * Convenience method used to determine whether a file name refers to a
+     * partial file.
+     *
+     * @param file Any file.
+     * @return True if the file name ends with the partial extension.
+     */
+    public static boolean isPartial(Path file) {
+        return (file.getFileName() != null) &&
+                file.getFileName().toString().endsWith(PARTIAL_EXTENSION);
+    }
+}
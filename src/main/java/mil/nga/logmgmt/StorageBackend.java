@@ -0,0 +1,69 @@
+package mil.nga.logmgmt;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Where archived files are stored.  Objects are named by keys relative to
+ * the top of the store, with '/' separating the components (e.g.
+ * gateway/openam/2026/Feb/host_audit_20260203.zip).  How the keys are
+ * chosen (naming, versioning, compression) is decided by
+ * <code>OutputFile</code> and does not depend on the backend.
+ */
+public interface StorageBackend extends Closeable {
+
+    /**
+     * Start writing an object.  An existing object under the key is
+     * replaced when the upload is committed.
+     *
+     * @param key The key of the object.
+     * @return The upload.
+     * @throws IOException Thrown if the upload cannot be started.
+     */
+    StorageUpload put(String key) throws IOException;
+
+    /**
+     * List the keys of the stored objects starting with a prefix.
+     *
+     * @param prefix The prefix (empty for every object).
+     * @return The keys in lexicographic order.
+     * @throws IOException Thrown if the store cannot be listed.
+     */
+    List<String> list(String prefix) throws IOException;
+
+    /**
+     * Determine whether an object is stored under a key.
+     *
+     * @param key The key.
+     * @return True if the object exists.
+     * @throws IOException Thrown if the store cannot be queried.
+     */
+    boolean exists(String key) throws IOException;
+
+    /**
+     * Remove the object stored under a key (if any).
+     *
+     * @param key The key.
+     * @throws IOException Thrown if the object cannot be removed.
+     */
+    void delete(String key) throws IOException;
+
+    /**
+     * Accessor method for the local file holding an object.
+     *
+     * @param key The key.
+     * @return The file, or null if the backend does not store objects in
+     * the local file system.
+     */
+    Path localPath(String key);
+
+    /**
+     * Describe the location of an object (for log messages).
+     *
+     * @param key The key.
+     * @return A path or URL.
+     */
+    String describe(String key);
+}
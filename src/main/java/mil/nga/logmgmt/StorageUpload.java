@@ -0,0 +1,56 @@
+package mil.nga.logmgmt;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An object being written to a <code>StorageBackend</code>.  Nothing is
+ * visible under the key until <code>commit()</code> returns; closing an
+ * upload that was not committed discards whatever was written.
+ *
+ * Usage:
+ * <pre>
+ * StorageUpload upload = backend.put(key);
+ * try {
+ *     OutputStream os = upload.getOutputStream();
+ *     ... write ...
+ *     upload.commit();
+ * }
+ * finally {
+ *     upload.close();
+ * }
+ * </pre>
+ */
+public interface StorageUpload extends Closeable {
+
+    /**
+     * Accessor method for the stream the object is written to.  Closing
+     * the returned stream only flushes it.
+     *
+     * @return The stream.
+     * @throws IOException Thrown if the upload cannot be started.
+     */
+    OutputStream getOutputStream() throws IOException;
+
+    /**
+     * Make the object visible under its key.
+     *
+     * @throws IOException Thrown if the object could not be stored.  The
+     * upload is discarded by <code>close()</code>.
+     */
+    void commit() throws IOException;
+
+    /**
+     * Accessor method indicating whether the upload was committed.
+     * @return True if the object exists under its key.
+     */
+    boolean isCommitted();
+
+    /**
+     * Release the resources held by the upload, discarding it if it was
+     * not committed.
+     */
+    @Override
+    void close();
+}
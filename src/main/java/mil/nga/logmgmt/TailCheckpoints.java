@@ -0,0 +1,260 @@
+package mil.nga.logmgmt;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.util.ContentDigest;
+
+/**
+ * Checkpoints of the live log files shipped incrementally, kept in the
+ * state directory.  For each source file the checkpoint records the device
+ * and inode of the file that was read, the offset up to which it has been
+ * shipped, a checksum of the first bytes shipped, and the archive of the day it was shipped to together with the
+ * manifest entry describing that archive as it stood after the last append
+ * (its length and checksum, and the length and checksum of the content it
+ * holds).
+ *
+ * The checkpoints of every source are held in a single small file
+ * (<code>tail.ckpt</code>) which is rewritten through a temporary file and
+ * an atomic rename after every append, so that it always describes a
+ * complete append.  An exclusive lock (<code>tail.lock</code>) is held from
+ * <code>open()</code> until <code>close()</code> so that two runs never
+ * ship from the same checkpoints at once.
+ */
+public class TailCheckpoints implements Closeable {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(TailCheckpoints.class);
+
+    /**
+     * Name of the checkpoint file within the state directory.
+     */
+    public static final String STATE_FILE = "tail.ckpt";
+
+    /**
+     * Name of the lock file within the state directory.
+     */
+    public static final String LOCK_FILE = "tail.lock";
+
+    private static final String DELIMITER = "\t";
+
+    /**
+     * Number of fields preceding the manifest entry in a checkpoint line.
+     */
+    private static final int FIELD_COUNT = 7;
+
+    private final Path                    file;
+    private final FileChannel             channel;
+    private final FileLock                lock;
+    private final Map<String, Checkpoint> checkpoints =
+            new LinkedHashMap<String, Checkpoint>();
+
+    /**
+     * Constructor.  Use <code>open()</code> to open the checkpoints.
+     */
+    private TailCheckpoints(Path file, FileChannel channel, FileLock lock) {
+        this.file    = file;
+        this.channel = channel;
+        this.lock    = lock;
+    }
+
+    /**
+     * Lock and read the checkpoints kept in the state directory, waiting
+     * for any other run holding them.
+     *
+     * @param stateDir The state directory.
+     * @return The checkpoints.
+     * @throws IOException Thrown if the checkpoints cannot be locked or
+     * read.
+     */
+    public static TailCheckpoints open(Path stateDir) throws IOException {
+
+        Files.createDirectories(stateDir);
+        FileChannel fc = FileChannel.open(stateDir.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        TailCheckpoints checkpoints = null;
+        try {
+            checkpoints = new TailCheckpoints(stateDir.resolve(STATE_FILE),
+                    fc, fc.lock());
+            checkpoints.read();
+        }
+        catch (IOException ioe) {
+            fc.close();
+            throw ioe;
+        }
+        return checkpoints;
+    }
+
+    private void read() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(
+                file, StandardCharsets.UTF_8)) {
+            String line = null;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(DELIMITER, FIELD_COUNT + 1);
+                if (fields.length != FIELD_COUNT + 1) {
+                    continue;
+                }
+                ManifestEntry entry = ManifestEntry.parse(fields[FIELD_COUNT]);
+                if (entry == null) {
+                    continue;
+                }
+                try {
+                    Checkpoint checkpoint = new Checkpoint(fields[0]);
+                    checkpoint.dev         = Long.parseLong(fields[1]);
+                    checkpoint.ino         = Long.parseLong(fields[2]);
+                    checkpoint.offset      = Long.parseLong(fields[3]);
+                    checkpoint.fingerprint = fields[4];
+                    checkpoint.day         = fields[5];
+                    checkpoint.archive     = fields[6];
+                    checkpoint.entry       = entry;
+                    checkpoints.put(checkpoint.source, checkpoint);
+                }
+                catch (NumberFormatException nfe) {
+                    continue;
+                }
+            }
+        }
+    }
+
+    /**
+     * Look up the checkpoint of a source file.
+     *
+     * @param source Absolute path of the source file.
+     * @return The checkpoint, or null if the file was never shipped.
+     */
+    public Checkpoint get(String source) {
+        return checkpoints.get(source);
+    }
+
+    /**
+     * Record a checkpoint.  The checkpoint file has been replaced (and
+     * forced to disk) when the method returns.
+     *
+     * @param checkpoint The checkpoint.
+     * @throws IOException Thrown if the checkpoint file cannot be written.
+     */
+    public void save(Checkpoint checkpoint) throws IOException {
+        checkpoints.put(checkpoint.source, checkpoint);
+        StringBuilder sb = new StringBuilder();
+        for (Checkpoint current : checkpoints.values()) {
+            sb.append(current.source);
+            sb.append(DELIMITER);
+            sb.append(current.dev);
+            sb.append(DELIMITER);
+            sb.append(current.ino);
+            sb.append(DELIMITER);
+            sb.append(current.offset);
+            sb.append(DELIMITER);
+            sb.append(current.fingerprint);
+            sb.append(DELIMITER);
+            sb.append(current.day);
+            sb.append(DELIMITER);
+            sb.append(current.archive);
+            sb.append(DELIMITER);
+            sb.append(current.entry.toLine());
+            sb.append("\n");
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel fc = FileChannel.open(temp,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream os = Channels.newOutputStream(fc);
+            os.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+            fc.force(false);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+        StagedFile.syncDirectory(file.getParent());
+    }
+
+    /**
+     * Release the lock on the checkpoints.
+     */
+    @Override
+    public void close() {
+        String method = "close() - ";
+        try {
+            lock.release();
+            channel.close();
+        }
+        catch (IOException ioe) {
+            LOGGER.warn(method
+                    + "Unexpected IOException releasing [ "
+                    + file.toString()
+                    + " ].  Error message [ "
+                    + ioe.getMessage()
+                    + " ].");
+        }
+    }
+
+    /**
+     * The shipping position of a single source file.
+     */
+    public static class Checkpoint {
+
+        /**
+         * Absolute path of the source file.
+         */
+        final String source;
+
+        /**
+         * Device and inode of the file last read under that path.
+         */
+        long dev;
+        long ino;
+
+        /**
+         * Number of bytes of that file already shipped.
+         */
+        long offset;
+
+        /**
+         * Checksum of the first bytes of that file (up to
+         * <code>TailShipper.FINGERPRINT_LENGTH</code>, and no further than
+         * the offset), or <code>ContentDigest.NONE</code> if nothing was
+         * shipped.
+         */
+        String fingerprint = ContentDigest.NONE;
+
+        /**
+         * The yyyyMMdd date of the archive last appended to.
+         */
+        String day;
+
+        /**
+         * Absolute path of the archive last appended to.
+         */
+        String archive;
+
+        /**
+         * Manifest entry describing the archive after the last append.
+         */
+        ManifestEntry entry;
+
+        Checkpoint(String source) {
+            this.source = source;
+        }
+    }
+}
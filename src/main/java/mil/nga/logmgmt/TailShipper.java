@@ -0,0 +1,508 @@
+package mil.nga.logmgmt;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.logmgmt.exceptions.OutputException;
+import mil.nga.util.ChecksumOutputStream;
+import mil.nga.util.ContentDigest;
+import mil.nga.util.ParallelGzipOutputStream;
+
+/**
+ * Ships live log files (<code>input.incremental=true</code>) a piece at a 
+ * time instead of archiving them whole.  The archive naming, compression 
+ * and storage settings are those of the <code>OutputFile</code> the 
+ * shipper is created from, and the shipping position of each file is kept
+ * in <code>TailCheckpoints</code>.
+ */
+public class TailShipper {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER = 
+            LoggerFactory.getLogger(TailShipper.class);
+    
+    /**
+     * Number of leading bytes of a file checksummed to detect that it was
+     * truncated and written again past its checkpoint.
+     */
+    public static final int FINGERPRINT_LENGTH = 4096;
+    
+    private final OutputFile output;
+    
+    /**
+     * Constructor.
+     * 
+     * @param output The output settings (archive store, naming, 
+     * compression and state directory).
+     */
+    public TailShipper(OutputFile output) {
+        this.output = output;
+    }
+    
+    /**
+     * Ship the bytes appended to each of the input (live) log files since
+     * the previous run.  The offset up to which each file was shipped is 
+     * checkpointed in the state directory, along with the device and inode
+     * of the file and a checksum of its first bytes:
+     * 
+     * <li>If the file has the same inode and has grown, only the bytes 
+     * past the checkpoint are read.</li>
+     * <li>If the file has the same inode but is shorter than the 
+     * checkpoint, or its first bytes no longer match the checkpoint, it 
+     * was truncated (copytruncate) and is shipped from the start.  
+     * Anything written between the last run and the truncation is only in
+     * the copy logrotate made.</li>
+     * <li>If the inode has changed the file was rotated by renaming.  The 
+     * old file is looked for in the same directory, by inode, and the rest
+     * of it is shipped before the new file is shipped from the start.</li>
+     * 
+     * The bytes are compressed as new gzip members and appended to the 
+     * archive of the current day, so that archival I/O is spread over the
+     * day instead of coming in one burst when the file is finally rotated.
+     * The files are never removed.
+     * 
+     * @param candidates The live log files.
+     * @return Summary of the run.
+     */
+    public RunReport ship(List<Path> candidates) {
+        
+        String    method = "ship() - ";
+        RunReport report = new RunReport(output.getMaxRuntime());
+        
+        if ((candidates != null) && (candidates.size() > 0)) {
+            TailCheckpoints checkpoints = null;
+            try {
+                checkpoints = TailCheckpoints.open(
+                        Paths.get(output.getStatePath()));
+                for (Path file : candidates) {
+                    if (report.isExpired()) {
+                        report.deferred(file, 0);
+                        continue;
+                    }
+                    try {
+                        long start = System.currentTimeMillis();
+                        long count = shipFile(file, checkpoints);
+                        if (count > 0) {
+                            report.archived(count, 
+                                    System.currentTimeMillis() - start);
+                        }
+                        else {
+                            report.skipped();
+                        }
+                    }
+                    catch (OutputException oe) {
+                        report.failed();
+                        LOGGER.error(method 
+                                + "Unable to ship [ "
+                                + file.toAbsolutePath()
+                                + " ].  Error message [ "
+                                + oe.getMessage()
+                                + " ].");
+                    }
+                    catch (IOException ioe) {
+                        report.failed();
+                        LOGGER.error(method 
+                                + "Unexpected IOException encountered while "
+                                + "shipping [ "
+                                + file.toAbsolutePath()
+                                + " ].  Error message [ "
+                                + ioe.getMessage()
+                                + " ].");
+                    }
+                }
+            }
+            catch (IOException ioe) {
+                LOGGER.error(method
+                        + "Unable to open the checkpoints in [ "
+                        + output.getStatePath()
+                        + " ].  Nothing was shipped.  Error message [ "
+                        + ioe.getMessage()
+                        + " ].");
+            }
+            finally {
+                if (checkpoints != null) {
+                    checkpoints.close();
+                }
+            }
+        }
+        report.finish();
+        LOGGER.info(method + report.toString());
+        return report;
+    }
+    
+    /**
+     * Ship the bytes appended to a single live log file since its 
+     * checkpoint.
+     * 
+     * @param file The live log file.
+     * @param checkpoints The checkpoints of every live log file.
+     * @return The number of bytes shipped.
+     * @throws IOException Thrown if the file cannot be read or the archive
+     * cannot be written.
+     * @throws OutputException Thrown if the archive directory cannot be 
+     * created.
+     */
+    private long shipFile(Path file, TailCheckpoints checkpoints) 
+            throws IOException, OutputException {
+        
+        String                     method     = "shipFile() - ";
+        String                     source     = file.toAbsolutePath().toString();
+        long[]                     id         = identityOf(file);
+        long                       size       = Files.size(file);
+        long                       offset     = 0;
+        long                       count      = 0;
+        TailCheckpoints.Checkpoint checkpoint = checkpoints.get(source);
+        
+        if (checkpoint != null) {
+            if ((checkpoint.dev != id[0]) || (checkpoint.ino != id[1])) {
+                Path rotated = findRotated(file, checkpoint);
+                if (rotated != null) {
+                    LOGGER.info(method 
+                            + "[ "
+                            + source
+                            + " ] was rotated to [ "
+                            + rotated.toString()
+                            + " ].  Shipping the rest of it.");
+                    count += append(rotated, source, checkpoint.dev, 
+                            checkpoint.ino, checkpoint.offset, 
+                            Files.size(rotated), checkpoints);
+                    checkpoint = checkpoints.get(source);
+                }
+                else {
+                    LOGGER.warn(method 
+                            + "[ "
+                            + source
+                            + " ] was rotated and the previous file was not "
+                            + "found.  Anything written to it after offset [ "
+                            + checkpoint.offset
+                            + " ] was not shipped.");
+                }
+            }
+            else if (size < checkpoint.offset) {
+                LOGGER.warn(method 
+                        + "[ "
+                        + source
+                        + " ] was truncated from [ "
+                        + checkpoint.offset
+                        + " ] to [ "
+                        + size
+                        + " ] bytes.  Shipping it from the start.");
+            }
+            else if (!checkpoint.fingerprint.equals(fingerprintOf(file, 
+                    checkpoint.offset, 
+                    ContentDigest.algorithmOf(checkpoint.fingerprint)))) {
+                LOGGER.warn(method 
+                        + "[ "
+                        + source
+                        + " ] was truncated and has grown past [ "
+                        + checkpoint.offset
+                        + " ] bytes since.  Shipping it from the start.");
+            }
+            else {
+                offset = checkpoint.offset;
+            }
+        }
+        count += append(file, source, id[0], id[1], offset, size, checkpoints);
+        return count;
+    }
+    
+    /**
+     * Get the device and inode of a file.
+     * 
+     * @param file The file.
+     * @return The device and inode (both zero if the platform does not 
+     * expose them, in which case rotation by renaming is not detected).
+     * @throws IOException Thrown if the file cannot be read.
+     */
+    private long[] identityOf(Path file) throws IOException {
+        long[] id = RotationTracker.identityOf(file);
+        return (id == null) ? new long[] { 0L, 0L } : id;
+    }
+    
+    /**
+     * Calculate the checksum of the first bytes of a file, up to 
+     * <code>FINGERPRINT_LENGTH</code> bytes and no further than the offset 
+     * shipped.  As a log file is only ever appended to, the checksum 
+     * changes only if the file was truncated and written again.
+     * 
+     * @param file The file.
+     * @param offset Number of bytes of the file shipped.
+     * @param algorithm The checksum algorithm (null for the default).
+     * @return The checksum, or <code>ContentDigest.NONE</code> if nothing 
+     * was shipped.
+     * @throws IOException Thrown if the file cannot be read.
+     */
+    private String fingerprintOf(Path file, long offset, String algorithm) 
+            throws IOException {
+        long length = Math.min(offset, FINGERPRINT_LENGTH);
+        if (length <= 0) {
+            return ContentDigest.NONE;
+        }
+        ContentDigest digest = new ContentDigest(false, 
+                (algorithm == null) ? ContentDigest.CRC32C : algorithm);
+        copyRange(file, 0, length, null, digest);
+        return digest.getCrc();
+    }
+    
+    /**
+     * Look for the file a live log file was rotated to (by inode) in the 
+     * directory of the live log file.
+     * 
+     * @param file The live log file.
+     * @param checkpoint The checkpoint of the live log file.
+     * @return The rotated file, or null if it was not found.
+     * @throws IOException Thrown if the directory cannot be read.
+     */
+    private Path findRotated(Path file, TailCheckpoints.Checkpoint checkpoint) 
+            throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path candidate : stream) {
+                if (Files.isRegularFile(candidate)) {
+                    long[] id = identityOf(candidate);
+                    if ((id[0] == checkpoint.dev) && 
+                            (id[1] == checkpoint.ino)) {
+                        return candidate;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Compress a range of a live log file and append it to the archive of 
+     * the current day as new gzip members.  The archive is forced to disk,
+     * the manifest entry describing the whole archive is appended to the 
+     * month directory manifest and only then is the checkpoint, which 
+     * records the new length and checksums of the archive, replaced.  A run
+     * that dies part way through an append leaves the archive longer than 
+     * its checkpoint and the next run truncates it back before appending 
+     * again; the entry appended then supersedes any entry describing the 
+     * abandoned bytes, as the last entry for an archive wins.  The manifest
+     * therefore never lags the checkpoint.  The checksums of the whole 
+     * archive and of its whole content are combined from those of each 
+     * append, so the archive is never read back.  A SHA-256 digest cannot 
+     * be combined this way and is not recorded.
+     * 
+     * A new archive (with a version number if need be) is started each 
+     * day, and whenever the archive last appended to no longer holds what
+     * its checkpoint says (e.g. it was moved by the aggregator).
+     * 
+     * @param file The file to read.
+     * @param source Absolute path of the live log file.
+     * @param dev Device of the file to read.
+     * @param ino Inode of the file to read.
+     * @param start Offset of the first byte to ship.
+     * @param end Offset of the last byte to ship, plus one.
+     * @param checkpoints The checkpoints of every live log file.
+     * @return The number of bytes shipped.
+     * @throws IOException Thrown if the file cannot be read or the archive
+     * cannot be written.
+     * @throws OutputException Thrown if the archive directory cannot be 
+     * created or the archive store is not on the local file system.
+     */
+    private long append(
+            Path            file, 
+            String          source, 
+            long            dev, 
+            long            ino, 
+            long            start, 
+            long            end, 
+            TailCheckpoints checkpoints) throws IOException, OutputException {
+        
+        String                     method   = "append() - ";
+        TailCheckpoints.Checkpoint previous = checkpoints.get(source);
+        Date                       now      = new Date();
+        String                     day      = output.getYearMonthDay(now);
+        TailCheckpoints.Checkpoint next     = new TailCheckpoints.Checkpoint(source);
+        
+        next.dev         = dev;
+        next.ino         = ino;
+        next.offset      = start;
+        next.fingerprint = fingerprintOf(file, start, null);
+        if (end <= start) {
+            if ((previous != null) && ((previous.dev != dev) || 
+                    (previous.ino != ino) || (previous.offset != start) || 
+                    !previous.fingerprint.equals(next.fingerprint))) {
+                next.day     = previous.day;
+                next.archive = previous.archive;
+                next.entry   = previous.entry;
+                checkpoints.save(next);
+            }
+            return 0;
+        }
+        
+        if ((previous != null) && day.equals(previous.day)) {
+            Path archive = Paths.get(previous.archive);
+            long length  = Files.exists(archive) ? Files.size(archive) : 0;
+            if (length >= previous.entry.getStoredSize()) {
+                next.day     = previous.day;
+                next.archive = previous.archive;
+                next.entry   = previous.entry;
+            }
+            else {
+                LOGGER.warn(method
+                        + "Archive [ "
+                        + archive.toString()
+                        + " ] holds [ "
+                        + length
+                        + " ] bytes, not [ "
+                        + previous.entry.getStoredSize()
+                        + " ].  Starting a new archive.");
+            }
+        }
+        if (next.archive == null) {
+            // Record the new archive before writing to it, so that an 
+            // append that dies part way through can be undone.
+            String dest    = output.getDestinationPath(now);
+            String name    = output.checkVersioning(dest, 
+                    output.getDestinationName(file.getFileName().toString(), day),
+                    ArchiveDecoder.GZIP_EXTENSION, day);
+            Path   archive = Paths.get(dest + name);
+            if (output.getStorageBackend().localPath(output.keyOf(archive)) == null) {
+                throw new OutputException(method 
+                        + "Incremental shipping requires the archive store "
+                        + "to be on the local file system.");
+            }
+            next.day     = day;
+            next.archive = archive.toAbsolutePath().toString();
+            next.entry   = new ManifestEntry(name, 
+                    ManifestEntry.ENCODING_GZIP, new ContentDigest(false), 
+                    source, 0L, new ContentDigest(false));
+            checkpoints.save(next);
+        }
+        
+        Path             archive = Paths.get(next.archive);
+        ManifestEntry    entry   = next.entry;
+        CompressionLevel level   = output.getCompressionLevel(file);
+        ContentDigest    stored  = new ContentDigest(false, 
+                ContentDigest.algorithmOf(entry.getStoredCrc()));
+        ContentDigest    content = new ContentDigest(false, 
+                ContentDigest.algorithmOf(entry.getSourceCrc()));
+        
+        LOGGER.info(method
+                + "Shipping bytes [ "
+                + start
+                + " ] to [ "
+                + end
+                + " ] of [ "
+                + file.toAbsolutePath()
+                + " ] to [ "
+                + archive.toString()
+                + " ].");
+        
+        try (FileChannel channel = FileChannel.open(archive, 
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (channel.size() > entry.getStoredSize()) {
+                LOGGER.warn(method
+                        + "Removing [ "
+                        + (channel.size() - entry.getStoredSize())
+                        + " ] bytes left by an incomplete append from [ "
+                        + archive.toString()
+                        + " ].");
+                channel.truncate(entry.getStoredSize());
+            }
+            channel.position(entry.getStoredSize());
+            // The channel is forced before it is closed.
+            OutputStream os = new FilterOutputStream(
+                    Channels.newOutputStream(channel)) {
+                @Override
+                public void write(byte[] b, int off, int len) 
+                        throws IOException {
+                    out.write(b, off, len);
+                }
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+            ParallelGzipOutputStream gos = new ParallelGzipOutputStream(
+                    new ChecksumOutputStream(os, stored), 
+                    output.getCompressionThreads(), 
+                    output.getBlockSize(), 
+                    level.getLevel());
+            try {
+                copyRange(file, start, end, gos, content);
+            }
+            finally {
+                gos.close();
+            }
+            channel.force(true);
+        }
+        StagedFile.syncDirectory(archive.getParent());
+        
+        ManifestEntry updated = new ManifestEntry();
+        updated.setDestination(entry.getDestination());
+        updated.setEncoding(ManifestEntry.ENCODING_GZIP);
+        updated.setLevel(level.name().toLowerCase());
+        updated.setStoredSize(entry.getStoredSize() + stored.getSize());
+        updated.setStoredCrc(ContentDigest.combine(entry.getStoredCrc(), 
+                stored.getCrc(), stored.getSize()));
+        updated.setSource(source);
+        updated.setSourceSize(entry.getSourceSize() + content.getSize());
+        updated.setSourceMtime(output.getFileDate(file));
+        updated.setSourceCrc(ContentDigest.combine(entry.getSourceCrc(), 
+                content.getCrc(), content.getSize()));
+        updated.setSourceSha256(ContentDigest.NONE);
+        
+        next.offset      = start + content.getSize();
+        next.fingerprint = fingerprintOf(file, next.offset, null);
+        next.entry       = updated;
+        Manifest.append(archive.getParent(), output.getHostName(), updated);
+        checkpoints.save(next);
+        return content.getSize();
+    }
+    
+    /**
+     * Copy a range of a file to the output stream, feeding the bytes to 
+     * the digest.  The copy stops early if the file is shorter than the 
+     * range.
+     * 
+     * @param file The file to read.
+     * @param start Offset of the first byte to copy.
+     * @param end Offset of the last byte to copy, plus one.
+     * @param os The stream to write to (may be null if the range is only
+     * to be digested).
+     * @param digest Digest of the bytes copied.
+     * @throws IOException Thrown if the file cannot be read or the stream
+     * cannot be written.
+     */
+    private void copyRange(Path file, long start, long end, OutputStream os, 
+            ContentDigest digest) throws IOException {
+        byte[]     buffer = new byte[64 * 1024];
+        ByteBuffer wrap   = ByteBuffer.wrap(buffer);
+        long       position = start;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (position < end) {
+                wrap.clear();
+                wrap.limit((int)Math.min(buffer.length, end - position));
+                int count = channel.read(wrap, position);
+                if (count <= 0) {
+                    break;
+                }
+                if (os != null) {
+                    os.write(buffer, 0, count);
+                }
+                digest.update(buffer, 0, count);
+                position += count;
+            }
+        }
+    }
+}
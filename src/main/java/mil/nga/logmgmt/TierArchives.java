@@ -0,0 +1,715 @@
+package mil.nga.logmgmt;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.logmgmt.exceptions.InputException;
+import mil.nga.util.ChecksumInputStream;
+import mil.nga.util.ChecksumOutputStream;
+import mil.nga.util.ContentDigest;
+import mil.nga.util.CpuThrottle;
+import mil.nga.util.Options;
+import mil.nga.util.Options.Multiplicity;
+import mil.nga.util.Options.Separator;
+import mil.nga.util.ParallelGzipOutputStream;
+import mil.nga.util.RateLimiter;
+import mil.nga.util.ThrottledInputStream;
+import mil.nga.util.TimeIndex;
+
+/**
+ * Background job moving aging archives to a colder tier by recompressing 
+ * them at the maximum compression level.  Fresh archives are written at a
+ * fast level to keep the nightly window short; once a month directory has
+ * been closed for a number of months its archives are rarely read and are
+ * worth the extra CPU.
+ *
+ * Each archive is read once: the stored bytes are checksummed and decoded
+ * and the content is checksummed and re-encoded into a partial file in 
+ * the same pass.  The replacement is only renamed over the original if the
+ * original matched its manifest entry, the replacement is smaller and the
+ * replacement decodes to the same content.  A superseding manifest entry
+ * is then appended to the manifest holding the original entry.  The rename
+ * and the manifest append are journaled so that a run that dies between 
+ * the two is completed by the next run.
+ *
+ * The job runs under a CPU budget (a share of a CPU per thread) and an 
+ * I/O budget (aggregate bytes read and written per second).
+ */
+public class TierArchives {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(TierArchives.class);
+
+    /**
+     * Number of bytes in a megabyte.
+     */
+    private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+
+    private static final String PREPARED  = "P";
+    private static final String DONE      = "D";
+    private static final String DELIMITER = "\t";
+
+    /**
+     * Outcome of tiering a single archive.
+     */
+    public enum Result {
+        /** Archive replaced by a smaller one at the maximum level. */
+        TIERED,
+        /** Recompression gained nothing; the archive was left alone. */
+        UNCHANGED,
+        /** Archive not eligible (uncompressed, already tiered, missing). */
+        SKIPPED,
+        /** Archive does not match its manifest entry; left alone. */
+        CORRUPT,
+        /** Archive could not be processed; left alone. */
+        FAILED
+    }
+
+    private final Path         base;
+    private final int          ageMonths;
+    private final int          threads;
+    private final RateLimiter  limiter;
+    private final CpuThrottle  throttle;
+    private final Path         journal;
+    private final long         deadline;
+    private final AtomicLong   saved = new AtomicLong();
+    private final Map<Result, AtomicLong> counts =
+            new EnumMap<Result, AtomicLong>(Result.class);
+    private FileChannel        channel = null;
+
+    /**
+     * Constructor.
+     *
+     * @param path The top of the archive store.
+     * @param ageMonths Months since the end of a month before its archives
+     * are recompressed.
+     * @param threads Number of archives recompressed concurrently.
+     * @param cpuPercent Share of a CPU each thread may use.
+     * @param mbPerSecond Aggregate I/O budget (less than or equal to zero 
+     * for unlimited).
+     * @param maxRuntime Time budget in minutes (less than or equal to zero
+     * for unlimited).
+     * @param stateDir Directory holding the journal.
+     * @throws InputException Thrown if the archive store does not exist.
+     */
+    public TierArchives(
+            String path,
+            int    ageMonths,
+            int    threads,
+            int    cpuPercent,
+            double mbPerSecond,
+            long   maxRuntime,
+            String stateDir) throws InputException {
+
+        String method = "Constructor() - ";
+
+        if ((path == null) || (!Files.isDirectory(Paths.get(path)))) {
+            String msg = method
+                    + "The archive store [ "
+                    + path
+                    + " ] does not exist.";
+            LOGGER.error(msg);
+            throw new InputException(msg);
+        }
+        this.base      = Paths.get(path);
+        this.ageMonths = Math.max(0, ageMonths);
+        this.threads   = Math.max(1, threads);
+        this.limiter   = new RateLimiter(mbPerSecond * BYTES_PER_MB);
+        this.throttle  = new CpuThrottle(cpuPercent / 100.0);
+        this.journal   = Paths.get(stateDir).resolve(TierArchivesI.JOURNAL_NAME);
+        this.deadline  = (maxRuntime > 0) ?
+                System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(maxRuntime) :
+                Long.MAX_VALUE;
+        for (Result result : Result.values()) {
+            counts.put(result, new AtomicLong());
+        }
+    }
+
+    /**
+     * Calculate the time before which a month directory must have closed 
+     * to be eligible.
+     *
+     * @return The cutoff in epoch milliseconds.
+     */
+    private long cutoff() {
+        Calendar cal = Calendar.getInstance();
+        cal.add(Calendar.MONTH, -ageMonths);
+        return cal.getTimeInMillis();
+    }
+
+    /**
+     * Recompress every eligible archive.
+     *
+     * @throws IOException Thrown if the store cannot be walked or the 
+     * journal cannot be opened.
+     */
+    public void tier() throws IOException {
+
+        String     method = "tier() - ";
+        long       start  = System.currentTimeMillis();
+        long       cutoff = cutoff();
+        List<Path> dirs   = new ArrayList<Path>();
+
+        Files.createDirectories(journal.getParent());
+        channel = FileChannel.open(journal,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        FileLock lock = channel.tryLock();
+        if (lock == null) {
+            channel.close();
+            LOGGER.warn(method
+                    + "Another tiering run holds journal [ "
+                    + journal.toString()
+                    + " ].  Exiting.");
+            return;
+        }
+        try {
+            recover();
+
+            for (Path dir : ArchiveStore.findMonthDirectories(base)) {
+                if (ArchiveStore.endOf(dir) <= cutoff) {
+                    dirs.add(dir);
+                }
+            }
+            LOGGER.info(method
+                    + "Found [ "
+                    + dirs.size()
+                    + " ] month directories closed more than [ "
+                    + ageMonths
+                    + " ] months ago below [ "
+                    + base.toString()
+                    + " ].");
+
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            for (final Path dir : dirs) {
+                for (final ManifestEntry entry : Manifest.read(dir).values()) {
+                    pool.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (System.currentTimeMillis() < deadline) {
+                                tierArchive(dir.resolve(entry.getDestination()),
+                                        entry);
+                            }
+                        }
+                    });
+                }
+            }
+            pool.shutdown();
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException ie) {
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            channel.truncate(0);
+        }
+        finally {
+            lock.release();
+            channel.close();
+        }
+
+        LOGGER.info(method
+                + "Tiering complete in [ "
+                + (System.currentTimeMillis() - start)
+                + " ] ms.  Saved [ "
+                + saved.get()
+                + " ] bytes.  Results "
+                + counts.toString()
+                + ".");
+    }
+
+    /**
+     * Recompress a single archive.
+     *
+     * @param archive The archive.
+     * @param entry The current manifest entry of the archive.
+     */
+    private void tierArchive(Path archive, ManifestEntry entry) {
+
+        String        method   = "tierArchive() - ";
+        String        encoding = entry.getEncoding();
+        String        max      = CompressionLevel.MAX.name().toLowerCase();
+
+        if (ManifestEntry.ENCODING_RAW.equals(encoding) ||
+                max.equals(entry.getLevel()) ||
+                !Files.exists(archive)) {
+            counts.get(Result.SKIPPED).incrementAndGet();
+            return;
+        }
+
+        StagedFile    staged   = new StagedFile(archive);
+        ContentDigest stored   = new ContentDigest(false,
+                ContentDigest.algorithmOf(entry.getStoredCrc()));
+        ContentDigest content  = new ContentDigest(false,
+                ContentDigest.algorithmOf(entry.getSourceCrc()));
+        ContentDigest restored = new ContentDigest(false);
+        TimeIndex     index    = null;
+        if (ManifestEntry.ENCODING_GZIP.equals(encoding) &&
+                Files.exists(TimeIndex.sidecarOf(archive))) {
+            index = new TimeIndex();
+        }
+
+        try {
+            recompress(archive, entry, staged, stored, content, restored, 
+                    index);
+
+            if ((stored.getSize() != entry.getStoredSize()) ||
+                    !stored.getCrc().equals(entry.getStoredCrc()) ||
+                    (content.getSize() != entry.getSourceSize()) ||
+                    !content.getCrc().equals(entry.getSourceCrc())) {
+                counts.get(Result.CORRUPT).incrementAndGet();
+                LOGGER.error(method
+                        + "Archive [ "
+                        + archive.toString()
+                        + " ] does not match its manifest entry.  It has "
+                        + "not been recompressed.");
+                return;
+            }
+
+            ManifestEntry updated = ManifestEntry.parse(entry.toLine());
+            updated.setLevel(max);
+            if (restored.getSize() >= entry.getStoredSize()) {
+                // Record that the archive has been evaluated so that it is
+                // not recompressed again.
+                Manifest.append(entry.getManifest(), updated);
+                counts.get(Result.UNCHANGED).incrementAndGet();
+                return;
+            }
+
+            staged.sync();
+            verify(staged.getPartial(), archive, encoding, content);
+            if (index != null) {
+                // Readers ignore the new index until the replacement is in
+                // place as it records the replacement's size.
+                writeIndex(archive, index);
+            }
+
+            updated.setStoredSize(restored.getSize());
+            updated.setStoredCrc(restored.getCrc());
+            prepared(archive, entry.getManifest(), updated);
+            staged.commit();
+            Manifest.append(entry.getManifest(), updated);
+            done(archive);
+
+            saved.addAndGet(entry.getStoredSize() - restored.getSize());
+            counts.get(Result.TIERED).incrementAndGet();
+            LOGGER.info(method
+                    + "Recompressed [ "
+                    + archive.toString()
+                    + " ] from [ "
+                    + entry.getStoredSize()
+                    + " ] to [ "
+                    + restored.getSize()
+                    + " ] bytes.");
+        }
+        catch (IOException ioe) {
+            counts.get(Result.FAILED).incrementAndGet();
+            LOGGER.error(method
+                    + "Unable to recompress [ "
+                    + archive.toString()
+                    + " ].  The original is unchanged.  Error message [ "
+                    + ioe.getMessage()
+                    + " ].");
+        }
+        finally {
+            staged.close();
+        }
+    }
+
+    /**
+     * Decode the archive and re-encode its content at the maximum level 
+     * into the partial file, checksumming the stored bytes, the content 
+     * and the new stored bytes on the way through.
+     *
+     * @throws IOException Thrown if the archive cannot be read or the 
+     * partial file cannot be written.
+     */
+    private void recompress(
+            Path          archive,
+            ManifestEntry entry,
+            StagedFile    staged,
+            ContentDigest stored,
+            ContentDigest content,
+            ContentDigest restored,
+            TimeIndex     index) throws IOException {
+
+        byte[] buffer  = new byte[StagedFile.BUFFER_SIZE];
+        long   charged = 0;
+
+        try (InputStream raw = new ChecksumInputStream(
+                new ThrottledInputStream(
+                        new BufferedInputStream(Files.newInputStream(archive),
+                                StagedFile.BUFFER_SIZE),
+                        limiter),
+                stored)) {
+
+            InputStream  is = ArchiveDecoder.openContent(
+                    archive, raw, entry.getEncoding());
+            OutputStream os = encoderOf(archive, entry, new ChecksumOutputStream(
+                    staged.getOutputStream(), restored), index);
+            int count = 0;
+            while ((count = is.read(buffer)) != -1) {
+                content.update(buffer, 0, count);
+                os.write(buffer, 0, count);
+                charged = pace(restored.getSize(), charged);
+            }
+            os.close();
+            pace(restored.getSize(), charged);
+            // Trailing stored bytes (e.g. the ZIP central directory) are
+            // part of the stored checksum.
+            while (raw.read(buffer) != -1) { }
+            is.close();
+        }
+    }
+
+    /**
+     * Charge newly written bytes to the I/O budget and give up the CPU if
+     * this thread has used its share.
+     *
+     * @param written Bytes written so far.
+     * @param charged Bytes already charged.
+     * @return Bytes charged after this call.
+     * @throws InterruptedIOException Thrown if interrupted while waiting.
+     */
+    private long pace(long written, long charged) throws InterruptedIOException {
+        try {
+            limiter.acquire(written - charged);
+            throttle.pace();
+        }
+        catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while throttled.");
+        }
+        return written;
+    }
+
+    /**
+     * Create the encoder writing the archive's encoding at the maximum 
+     * level.  ZIP entries are named and dated exactly as OutputFile names
+     * and dates them.  Gzip archives that had a time index are written 
+     * with line aligned blocks and a new index.
+     *
+     * @throws IOException Thrown if the dictionary of a dictionary 
+     * compressed archive cannot be loaded.
+     */
+    private OutputStream encoderOf(Path archive, ManifestEntry entry, 
+            OutputStream os, TimeIndex index) throws IOException {
+        int level = CompressionLevel.MAX.getLevel();
+        if (ManifestEntry.ENCODING_GZIP.equals(entry.getEncoding())) {
+            ParallelGzipOutputStream gos = new ParallelGzipOutputStream(os, 1, 
+                    ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE, level);
+            if (index != null) {
+                gos.setTimeIndex(index);
+            }
+            return gos;
+        }
+        if (ManifestEntry.ENCODING_ZLIB.equals(entry.getEncoding())) {
+            return PresetDictionary.find(archive, PresetDictionary.idOf(archive))
+                    .compress(os, level);
+        }
+        ZipOutputStream zos = new ZipOutputStream(os);
+        zos.setLevel(level);
+        ZipEntry zipEntry = new ZipEntry(
+                Paths.get(entry.getSource()).getFileName().toString());
+        zipEntry.setTime(entry.getSourceMtime());
+        zos.putNextEntry(zipEntry);
+        return zos;
+    }
+
+    /**
+     * Read back the replacement and confirm it decodes to the original 
+     * content.
+     *
+     * @throws IOException Thrown if the replacement cannot be read or does
+     * not match.
+     */
+    private void verify(Path partial, Path archive, String encoding, 
+            ContentDigest content) throws IOException {
+        ContentDigest check  = new ContentDigest(false,
+                ContentDigest.algorithmOf(content.getCrc()));
+        byte[]        buffer = new byte[StagedFile.BUFFER_SIZE];
+        // The dictionary is located relative to the archive, which shares
+        // the partial file's directory.
+        try (InputStream is = ArchiveDecoder.openContent(archive,
+                new ThrottledInputStream(
+                        new BufferedInputStream(Files.newInputStream(partial),
+                                StagedFile.BUFFER_SIZE),
+                        limiter),
+                encoding)) {
+            int count = 0;
+            while ((count = is.read(buffer)) != -1) {
+                check.update(buffer, 0, count);
+            }
+        }
+        if ((check.getSize() != content.getSize()) ||
+                !check.getCrc().equals(content.getCrc())) {
+            throw new IOException("Replacement [ " + partial.toString()
+                    + " ] does not decode to the original content.");
+        }
+    }
+
+    /**
+     * Replace the time index sidecar of an archive.
+     *
+     * @throws IOException Thrown if the index cannot be written.
+     */
+    private void writeIndex(Path archive, TimeIndex index) throws IOException {
+        StagedFile sidecar = new StagedFile(TimeIndex.sidecarOf(archive));
+        try {
+            index.write(sidecar.getOutputStream());
+            sidecar.commit();
+        }
+        finally {
+            sidecar.close();
+        }
+    }
+
+    /**
+     * Journal a replacement that is about to be renamed into place.
+     */
+    private void prepared(Path archive, Path manifest, ManifestEntry updated) 
+            throws IOException {
+        write(PREPARED 
+                + DELIMITER + archive.toAbsolutePath().toString()
+                + DELIMITER + manifest.toAbsolutePath().toString()
+                + DELIMITER + updated.toLine());
+    }
+
+    /**
+     * Journal a replacement whose manifest entry has been appended.
+     */
+    private void done(Path archive) throws IOException {
+        write(DONE + DELIMITER + archive.toAbsolutePath().toString());
+    }
+
+    /**
+     * Append a record to the journal and force it to disk.
+     */
+    private void write(String record) throws IOException {
+        synchronized (channel) {
+            ByteBuffer buffer = ByteBuffer.wrap(
+                    (record + "\n").getBytes(StandardCharsets.UTF_8));
+            channel.position(channel.size());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Complete any replacement left unfinished by a run that died.  If the
+     * archive on disk is the replacement its manifest entry is appended,
+     * otherwise the partial file is removed.
+     *
+     * @throws IOException Thrown if the journal cannot be read.
+     */
+    private void recover() throws IOException {
+
+        String method = "recover() - ";
+        Map<String, String[]> pending = new LinkedHashMap<String, String[]>();
+
+        try (BufferedReader reader = Files.newBufferedReader(
+                journal, StandardCharsets.UTF_8)) {
+            String line = null;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(DELIMITER, 4);
+                if (PREPARED.equals(fields[0]) && (fields.length == 4)) {
+                    pending.put(fields[1], fields);
+                }
+                else if (DONE.equals(fields[0]) && (fields.length == 2)) {
+                    pending.remove(fields[1]);
+                }
+            }
+        }
+
+        for (String[] fields : pending.values()) {
+            Path          archive = Paths.get(fields[1]);
+            ManifestEntry entry   = ManifestEntry.parse(fields[3]);
+            if (entry == null) {
+                continue;
+            }
+            ContentDigest digest = new ContentDigest(false,
+                    ContentDigest.algorithmOf(entry.getStoredCrc()));
+            if (Files.exists(archive)) {
+                byte[] buffer = new byte[StagedFile.BUFFER_SIZE];
+                try (InputStream is = Files.newInputStream(archive)) {
+                    int count = 0;
+                    while ((count = is.read(buffer)) != -1) {
+                        digest.update(buffer, 0, count);
+                    }
+                }
+            }
+            if (digest.getCrc().equals(entry.getStoredCrc()) &&
+                    (digest.getSize() == entry.getStoredSize())) {
+                LOGGER.info(method
+                        + "Rolling forward.  Recording replacement [ "
+                        + archive.toString()
+                        + " ].");
+                Manifest.append(Paths.get(fields[2]), entry);
+            }
+            else if (Files.deleteIfExists(StagedFile.partialOf(archive))) {
+                LOGGER.info(method
+                        + "Rolling back.  Removed partial replacement of [ "
+                        + archive.toString()
+                        + " ].");
+            }
+        }
+        channel.truncate(0);
+        channel.force(false);
+    }
+
+    /**
+     * Accessor method for the number of archives with the input result.
+     *
+     * @param result The result of interest.
+     * @return The number of archives.
+     */
+    public long getCount(Result result) {
+        return counts.get(result).get();
+    }
+
+    /**
+     * Simple static method to print the help and usage String information.
+     */
+    private static void printHelp() {
+        System.out.println("");
+        System.out.println(TierArchivesI.HELP_STRING);
+        System.out.println("");
+        System.out.println(TierArchivesI.USAGE_STRING);
+    }
+
+    /**
+     * Driver method used to extract the command line parameters and
+     * initiate processing.
+     *
+     * @param args Input command line arguments
+     * @throws InputException Thrown if the input data does not make
+     * sense.
+     * @throws IOException Thrown if the store cannot be walked.
+     */
+    public static void main(String[] args) throws InputException, IOException {
+
+        String method     = "main() - ";
+        String path       = null;
+        String state      = LogMgmtI.DEFAULT_STATE_PATH;
+        int    age        = TierArchivesI.DEFAULT_AGE_MONTHS;
+        int    threads    = TierArchivesI.DEFAULT_THREADS;
+        int    cpu        = TierArchivesI.DEFAULT_CPU_PERCENT;
+        double rate       = 0;
+        long   maxRuntime = -1;
+
+        // Set up the command line options
+        Options opt = new Options(args, 0);
+        opt.getSet().addOption("path", Separator.EQUALS, Multiplicity.ONCE);
+        opt.getSet().addOption("age", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("threads", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("cpu", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("rate", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("maxRuntime", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("state", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("h", Multiplicity.ZERO_OR_MORE);
+        opt.getSet().addOption("help", Multiplicity.ZERO_OR_MORE);
+
+        // Make sure the options make sense
+        if (!opt.check(true, false)) {
+            System.out.println(TierArchivesI.USAGE_STRING);
+            System.exit(1);
+        }
+
+        // See if the user wanted the help message displayed.
+        if (opt.getSet().isSet("h") || opt.getSet().isSet("help")) {
+            TierArchives.printHelp();
+            System.exit(0);
+        }
+
+        path = opt.getSet().getOption("path").getResultValue(0);
+        if (opt.getSet().isSet("state")) {
+            state = opt.getSet().getOption("state").getResultValue(0);
+        }
+        try {
+            if (opt.getSet().isSet("age")) {
+                age = Integer.parseInt(
+                        opt.getSet().getOption("age").getResultValue(0).trim());
+            }
+            if (opt.getSet().isSet("threads")) {
+                threads = Integer.parseInt(
+                        opt.getSet().getOption("threads").getResultValue(0).trim());
+            }
+            if (opt.getSet().isSet("cpu")) {
+                cpu = Integer.parseInt(
+                        opt.getSet().getOption("cpu").getResultValue(0).trim());
+            }
+            if (opt.getSet().isSet("rate")) {
+                rate = Double.parseDouble(
+                        opt.getSet().getOption("rate").getResultValue(0).trim());
+            }
+            if (opt.getSet().isSet("maxRuntime")) {
+                maxRuntime = Long.parseLong(
+                        opt.getSet().getOption("maxRuntime").getResultValue(0).trim());
+            }
+        }
+        catch (NumberFormatException nfe) {
+            LOGGER.error(method
+                    + "ERROR: -age, -threads, -cpu, -rate and -maxRuntime "
+                    + "must be numeric.  Error message [ "
+                    + nfe.getMessage()
+                    + " ].");
+            TierArchives.printHelp();
+            System.exit(1);
+        }
+
+        LOGGER.info(method
+                + "Tiering [ "
+                + path
+                + " ] archives older than [ "
+                + age
+                + " ] months with [ "
+                + threads
+                + " ] threads at [ "
+                + cpu
+                + "% ] CPU, rate limit [ "
+                + ((rate > 0) ? rate + " MB/s" : "none")
+                + " ].");
+
+        new TierArchives(path, age, threads, cpu, rate, maxRuntime, state).tier();
+    }
+}
@@ -0,0 +1,70 @@
+package mil.nga.logmgmt;
+
+/**
+ * Simple interface containing the constants and help text used by the 
+ * recompression tiering job.
+ */
+public interface TierArchivesI {
+    
+    /**
+     * Default age (in whole months since the end of the month) at which 
+     * archives are recompressed.
+     */
+    public static final int DEFAULT_AGE_MONTHS = 3;
+    
+    /**
+     * Default number of archives recompressed concurrently.
+     */
+    public static final int DEFAULT_THREADS = 1;
+    
+    /**
+     * Default share of a CPU used by each thread (in percent).
+     */
+    public static final int DEFAULT_CPU_PERCENT = 50;
+    
+    /**
+     * Name of the journal kept in the state directory.
+     */
+    public static final String JOURNAL_NAME = "tier-journal.log";
+    
+    /**
+     * Usage String printed when incorrect arguments are supplied.
+     */
+    public static final String USAGE_STRING = new String(
+            "Usage: java mil.nga.logmgmt.TierArchives "
+            + "-path=<archive-store> "
+            + "[ -age=<months> ] "
+            + "[ -threads=<count> ] "
+            + "[ -cpu=<percent> ] "
+            + "[ -rate=<MB-per-second> ] "
+            + "[ -maxRuntime=<minutes> ] "
+            + "[ -state=<directory> ] "
+            + "[-h] [-help]");
+    
+    /**
+     * Help string printed when -h or -help appear on the command line.
+     */
+    public static final String HELP_STRING = new String(
+            "This application recompresses aging archives at the maximum "
+            + "compression level.  Only archives in month directories that "
+            + "closed more than the given number of months ago are "
+            + "considered.  Each archive is verified against its manifest "
+            + "entry while it is read and the replacement is verified "
+            + "before it is renamed over the original.  Options supported "
+            + "are as follows:\n\n"
+            + "-path=<archive-store>  Required.  The top of the archive "
+            + "store (the output.path property) or any directory below it.\n"
+            + "[ -age=<months> ]      Optional age threshold.  The default "
+            + "is 3.\n"
+            + "[ -threads=<count> ]   Optional number of archives "
+            + "recompressed concurrently.  The default is 1.\n"
+            + "[ -cpu=<percent> ]     Optional share of a CPU each thread "
+            + "may use.  The default is 50.\n"
+            + "[ -rate=<MB-per-second> ] Optional limit on the aggregate "
+            + "read and write bandwidth.  The default is unlimited.\n"
+            + "[ -maxRuntime=<minutes> ] Optional time budget.  No archive "
+            + "is started after the budget is exhausted.\n"
+            + "[ -state=<directory> ] Optional directory holding the "
+            + "journal used to recover an interrupted run.\n"
+            + "[-h] [-help]    Prints this help message.\n\n");
+}
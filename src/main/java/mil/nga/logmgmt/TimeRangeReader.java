@@ -0,0 +1,225 @@
+package mil.nga.logmgmt;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.util.TimeIndex;
+
+/**
+ * Reads the part of an archived log covering a time range.  Gzip archives
+ * written with a time index (<code>output.compress.index</code>) are read
+ * block by block: only the blocks whose timestamp range overlaps the 
+ * requested range are read from disk and decompressed.  Any other archive
+ * (or one whose index is missing or out of date) is decompressed in full.
+ *
+ * The content returned is block granular: it holds every line in the 
+ * range but may also hold lines either side of it.  Callers wanting exact
+ * bounds filter the lines by timestamp.  Archives that have been moved 
+ * into a monthly container are read from the container.
+ */
+public class TimeRangeReader {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(TimeRangeReader.class);
+
+    /**
+     * Open the content of an archive that may fall within a time range.
+     *
+     * @param dir The month directory holding the archive.
+     * @param entry The manifest entry of the archive.
+     * @param from Start of the range (inclusive, epoch milliseconds).
+     * @param to End of the range (exclusive, epoch milliseconds).
+     * @return Stream over the selected content.
+     * @throws IOException Thrown if the archive cannot be found or read.
+     */
+    public static InputStream open(
+            Path          dir, 
+            ManifestEntry entry, 
+            long          from, 
+            long          to) throws IOException {
+
+        Path      archive = dir.resolve(entry.getDestination());
+        TimeIndex index   = indexOf(archive, entry);
+        if (index == null) {
+            InputStream stored = ArchiveContainer.openStored(
+                    dir, entry.getDestination());
+            if (stored == null) {
+                throw new IOException("Archive [ " + archive.toString() 
+                        + " ] not found.");
+            }
+            return ArchiveDecoder.openContent(archive, stored, 
+                    entry.getEncoding());
+        }
+
+        // Merge adjacent blocks so that each run of selected blocks is 
+        // read with a single open and seek.
+        final List<long[]> ranges = new ArrayList<long[]>();
+        for (TimeIndex.Block block : index.overlapping(from, to)) {
+            long[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+            if ((last != null) && (last[0] + last[1] == block.getStoredOffset())) {
+                last[1] += block.getStoredLength();
+            }
+            else {
+                ranges.add(new long[] { 
+                        block.getStoredOffset(), block.getStoredLength() });
+            }
+        }
+        if (ranges.isEmpty()) {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        
+        final Path             monthDir    = dir;
+        final String           destination = entry.getDestination();
+        final Iterator<long[]> iterator    = ranges.iterator();
+        return new SequenceInputStream(new Enumeration<InputStream>() {
+            @Override
+            public boolean hasMoreElements() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                long[] range = iterator.next();
+                try {
+                    return new GZIPInputStream(openRange(monthDir, 
+                            destination, range[0], range[1]),
+                            StagedFile.BUFFER_SIZE);
+                }
+                catch (IOException ioe) {
+                    return failed(ioe);
+                }
+            }
+        });
+    }
+
+    /**
+     * Load the time index of an archive if it has one that describes the
+     * archive as it is now.
+     *
+     * @param archive The archive.
+     * @param entry The manifest entry of the archive.
+     * @return The index, or null if the archive must be read in full.
+     */
+    public static TimeIndex indexOf(Path archive, ManifestEntry entry) {
+        String method  = "indexOf() - ";
+        Path   sidecar = TimeIndex.sidecarOf(archive);
+        if (!ManifestEntry.ENCODING_GZIP.equals(entry.getEncoding()) || 
+                !Files.exists(sidecar)) {
+            return null;
+        }
+        try {
+            TimeIndex index = TimeIndex.read(sidecar);
+            if (index.getStoredSize() == entry.getStoredSize()) {
+                return index;
+            }
+            LOGGER.warn(method
+                    + "Time index [ "
+                    + sidecar.toString()
+                    + " ] does not match its archive.  Reading the whole "
+                    + "archive.");
+        }
+        catch (IOException ioe) {
+            LOGGER.warn(method
+                    + "Unable to read time index [ "
+                    + sidecar.toString()
+                    + " ].  Reading the whole archive.  Error message [ "
+                    + ioe.getMessage()
+                    + " ].");
+        }
+        return null;
+    }
+
+    /**
+     * Open a range of the stored bytes of an archive.
+     *
+     * @throws IOException Thrown if the archive cannot be opened or is 
+     * shorter than expected.
+     */
+    private static InputStream openRange(Path dir, String destination,
+            long offset, final long length) throws IOException {
+        InputStream stored = ArchiveContainer.openStored(dir, destination);
+        if (stored == null) {
+            throw new IOException("Archive [ " + destination + " ] not found.");
+        }
+        long skipped = 0;
+        while (skipped < offset) {
+            long n = stored.skip(offset - skipped);
+            if (n <= 0) {
+                stored.close();
+                throw new IOException("Archive [ " + destination 
+                        + " ] is shorter than its time index.");
+            }
+            skipped += n;
+        }
+        return new FilterInputStream(stored) {
+            private long remaining = length;
+
+            @Override
+            public int read() throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int b = super.read();
+                if (b >= 0) {
+                    remaining--;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int n = super.read(b, off, (int)Math.min(len, remaining));
+                if (n > 0) {
+                    remaining -= n;
+                }
+                return n;
+            }
+
+            // GZIPInputStream only looks for a further member if bytes are
+            // reported as available.
+            @Override
+            public int available() {
+                return (int)Math.min(Integer.MAX_VALUE, remaining);
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = super.skip(Math.min(n, remaining));
+                remaining -= skipped;
+                return skipped;
+            }
+        };
+    }
+
+    /**
+     * Stream that reports an error raised while opening a range when it is
+     * first read (Enumeration cannot throw checked exceptions).
+     */
+    private static InputStream failed(final IOException ioe) {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw ioe;
+            }
+        };
+    }
+}
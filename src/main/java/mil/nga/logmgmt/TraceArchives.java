@@ -0,0 +1,326 @@
+package mil.nga.logmgmt;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.logmgmt.exceptions.InputException;
+import mil.nga.util.LogTimestamps;
+import mil.nga.util.Options;
+import mil.nga.util.Options.Multiplicity;
+import mil.nga.util.Options.Separator;
+import mil.nga.util.StackTraceSummary;
+
+/**
+ * List the distinct stack traces of archived server logs by merging the
+ * summaries written alongside the archives (see
+ * <code>StackTraceSummary</code>).  The archives themselves are never
+ * opened.  Summaries whose checksum does not match the manifest entry of
+ * their archive are ignored.  With a "new since" date every summary up to
+ * the end of the range is merged, so that a trace is only reported as new
+ * if it was never seen before the date.
+ */
+public class TraceArchives {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(TraceArchives.class);
+
+    private final Path        base;
+    private final long        from;
+    private final long        to;
+    private final long        newSince;
+    private final int         top;
+    private final boolean     exemplar;
+    private final PrintStream out;
+    private StackTraceSummary merged = null;
+    private long summaries = 0;
+    private long stale     = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param path The directory to report on (the top of the archive
+     * store or any directory below it).
+     * @param from Start of the range of interest (inclusive, epoch
+     * milliseconds).  Ignored if newSince is set.
+     * @param to End of the range of interest (exclusive, epoch
+     * milliseconds).
+     * @param newSince List only traces first seen at or after this time
+     * (epoch milliseconds), or Long.MIN_VALUE to list every trace.
+     * @param top The number of traces listed.
+     * @param exemplar True to print the first occurrence of each trace.
+     * @param out Destination of the report.
+     * @throws InputException Thrown if the directory does not exist.
+     */
+    public TraceArchives(
+            String      path,
+            long        from,
+            long        to,
+            long        newSince,
+            int         top,
+            boolean     exemplar,
+            PrintStream out) throws InputException {
+
+        String method = "Constructor() - ";
+
+        if ((path == null) || (!Files.isDirectory(Paths.get(path)))) {
+            String msg = method
+                    + "The archive store [ "
+                    + path
+                    + " ] does not exist.";
+            LOGGER.error(msg);
+            throw new InputException(msg);
+        }
+        this.base     = Paths.get(path);
+        this.from     = (newSince == Long.MIN_VALUE) ? from : Long.MIN_VALUE;
+        this.to       = to;
+        this.newSince = newSince;
+        this.top      = Math.max(1, top);
+        this.exemplar = exemplar;
+        this.out      = out;
+    }
+
+    /**
+     * Merge every summary below the directory covering the range of
+     * interest and print the report.
+     *
+     * @return The merged summary, or null if there were none.
+     * @throws IOException Thrown if the store cannot be walked.
+     */
+    public StackTraceSummary report() throws IOException {
+
+        String method = "report() - ";
+
+        for (Path dir : ArchiveStore.findMonthDirectories(base)) {
+            if ((ArchiveStore.endOf(dir) <= from) ||
+                    (ArchiveStore.startOf(dir) >= to)) {
+                continue;
+            }
+            for (ManifestEntry entry : Manifest.read(dir).values()) {
+                if (entry.getSourceMtime() < from) {
+                    continue;
+                }
+                Path sidecar = StackTraceSummary.sidecarOf(
+                        dir.resolve(entry.getDestination()));
+                if (!Files.exists(sidecar)) {
+                    continue;
+                }
+                try {
+                    StackTraceSummary summary = StackTraceSummary.read(
+                            sidecar, entry.getSourceCrc());
+                    if (summary == null) {
+                        stale++;
+                    }
+                    else {
+                        add(summary);
+                    }
+                }
+                catch (IOException ioe) {
+                    stale++;
+                    LOGGER.warn(method
+                            + "Unable to read stack trace summary [ "
+                            + sidecar.toString()
+                            + " ].  Error message [ "
+                            + ioe.getMessage()
+                            + " ].");
+                }
+            }
+        }
+        print();
+
+        LOGGER.info(method
+                + "Merged [ "
+                + summaries
+                + " ] stack trace summaries, ignored [ "
+                + stale
+                + " ] that no longer match their archive.");
+        return merged;
+    }
+
+    private void add(StackTraceSummary summary) {
+        summaries++;
+        if (merged == null) {
+            merged = summary;
+        }
+        else {
+            merged.merge(summary);
+        }
+    }
+
+    /**
+     * Print the traces, most frequent first.
+     */
+    private void print() {
+        if (merged == null) {
+            out.println("No stack trace summaries found.");
+            out.flush();
+            return;
+        }
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        out.println("Summaries       : " + summaries);
+        out.println("Traces          : " + merged.getTotal());
+        out.println("Distinct traces : " + merged.getTraces().size());
+        if (merged.getDropped() > 0) {
+            out.println("Not counted     : " + merged.getDropped());
+        }
+        if (newSince != Long.MIN_VALUE) {
+            out.println("New since       : " + sdf.format(new Date(newSince)));
+        }
+        out.println("");
+        out.println(String.format("%5s %10s %-19s %-19s %-16s  %s",
+                "rank", "count", "first", "last", "fingerprint", "exception"));
+        int rank = 0;
+        for (StackTraceSummary.Trace trace : merged.getTracesByCount()) {
+            if ((newSince != Long.MIN_VALUE) && 
+                    ((trace.getFirst() == LogTimestamps.NONE) || 
+                            (trace.getFirst() < newSince))) {
+                continue;
+            }
+            out.println(String.format("%5d %10d %-19s %-19s %-16s  %s",
+                    ++rank, trace.getCount(), format(sdf, trace.getFirst()),
+                    format(sdf, trace.getLast()), trace.getId(),
+                    trace.getException().isEmpty() ? "-" : trace.getException()));
+            out.println(String.format("%56s  at %s", "", trace.getFrame()));
+            if (exemplar) {
+                out.println("");
+                out.print(trace.getExemplar());
+                out.println("");
+            }
+            if (rank >= top) {
+                break;
+            }
+        }
+        out.flush();
+    }
+
+    private static String format(SimpleDateFormat sdf, long time) {
+        return (time == LogTimestamps.NONE) ? "-" : sdf.format(new Date(time));
+    }
+
+    /**
+     * Convert a yyyyMMdd date into epoch milliseconds.
+     *
+     * @param date The date.
+     * @param next True for the start of the following day.
+     * @return The start of the day (local time).
+     * @throws InputException Thrown if the date is not valid.
+     */
+    private static long timeOf(String date, boolean next)
+            throws InputException {
+        String           method = "timeOf() - ";
+        SimpleDateFormat sdf    = new SimpleDateFormat("yyyyMMdd");
+        sdf.setLenient(false);
+        try {
+            Calendar cal = Calendar.getInstance();
+            cal.setTime(sdf.parse(date.trim()));
+            if (next) {
+                cal.add(Calendar.DAY_OF_MONTH, 1);
+            }
+            return cal.getTimeInMillis();
+        }
+        catch (ParseException pe) {
+            String msg = method
+                    + "Invalid date [ "
+                    + date
+                    + " ].  Expected yyyyMMdd.";
+            LOGGER.error(msg);
+            throw new InputException(msg);
+        }
+    }
+
+    /**
+     * Simple static method to print the help and usage String information.
+     */
+    private static void printHelp() {
+        System.out.println("");
+        System.out.println(TraceArchivesI.HELP_STRING);
+        System.out.println("");
+        System.out.println(TraceArchivesI.USAGE_STRING);
+    }
+
+    /**
+     * Driver method used to extract the command line parameters and
+     * initiate processing.
+     *
+     * @param args Input command line arguments
+     * @throws InputException Thrown if the input data does not make
+     * sense.
+     * @throws IOException Thrown if the store cannot be walked.
+     */
+    public static void main(String[] args) throws InputException, IOException {
+
+        String method = "main() - ";
+        String path   = null;
+        long   from   = Long.MIN_VALUE;
+        long   to     = Long.MAX_VALUE;
+        long   since  = Long.MIN_VALUE;
+        int    top    = TraceArchivesI.DEFAULT_TOP;
+
+        // Set up the command line options
+        Options opt = new Options(args, 0);
+        opt.getSet().addOption("path", Separator.EQUALS, Multiplicity.ONCE);
+        opt.getSet().addOption("from", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("to", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("newSince", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("top", Separator.EQUALS,
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("exemplar", Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("h", Multiplicity.ZERO_OR_MORE);
+        opt.getSet().addOption("help", Multiplicity.ZERO_OR_MORE);
+
+        // Make sure the options make sense
+        if (!opt.check(true, false)) {
+            System.out.println(TraceArchivesI.USAGE_STRING);
+            System.exit(1);
+        }
+
+        // See if the user wanted the help message displayed.
+        if (opt.getSet().isSet("h") || opt.getSet().isSet("help")) {
+            TraceArchives.printHelp();
+            System.exit(0);
+        }
+
+        path = opt.getSet().getOption("path").getResultValue(0);
+        if (opt.getSet().isSet("from")) {
+            from = timeOf(opt.getSet().getOption("from").getResultValue(0), false);
+        }
+        if (opt.getSet().isSet("to")) {
+            to = timeOf(opt.getSet().getOption("to").getResultValue(0), true);
+        }
+        if (opt.getSet().isSet("newSince")) {
+            since = timeOf(opt.getSet().getOption("newSince").getResultValue(0), false);
+        }
+        try {
+            if (opt.getSet().isSet("top")) {
+                top = Integer.parseInt(
+                        opt.getSet().getOption("top").getResultValue(0).trim());
+            }
+        }
+        catch (NumberFormatException nfe) {
+            LOGGER.error(method
+                    + "ERROR: -top must be numeric.  Error message [ "
+                    + nfe.getMessage()
+                    + " ].");
+            TraceArchives.printHelp();
+            System.exit(1);
+        }
+
+        new TraceArchives(path, from, to, since, top,
+                opt.getSet().isSet("exemplar"), System.out).report();
+    }
+}
@@ -0,0 +1,56 @@
+package mil.nga.logmgmt;
+
+/**
+ * Simple interface containing the constants and help text used by the 
+ * stack trace report command.
+ */
+public interface TraceArchivesI {
+    
+    /**
+     * Default number of traces listed.
+     */
+    public static final int DEFAULT_TOP = 50;
+    
+    /**
+     * Usage String printed when incorrect arguments are supplied.
+     */
+    public static final String USAGE_STRING = new String(
+            "Usage: java mil.nga.logmgmt.TraceArchives "
+            + "-path=<archive-store> "
+            + "[ -from=<yyyyMMdd> ] "
+            + "[ -to=<yyyyMMdd> ] "
+            + "[ -newSince=<yyyyMMdd> ] "
+            + "[ -top=<count> ] "
+            + "[ -exemplar ] "
+            + "[-h] [-help]");
+    
+    /**
+     * Help string printed when -h or -help appear on the command line.
+     */
+    public static final String HELP_STRING = new String(
+            "This application lists the distinct Java stack traces found "
+            + "in archived server logs, most frequent first, by merging "
+            + "the summaries written when the logs were archived "
+            + "(output.traces).  The logs themselves are not read.  Traces "
+            + "are identified by a fingerprint of their exception classes "
+            + "and frames, ignoring messages and line numbers.  For each "
+            + "fingerprint the number of occurrences, the times of the "
+            + "first and last occurrence, the exception and the top frame "
+            + "are printed.  Summaries cover whole archives, so an archive "
+            + "holding any trace in the date range is counted in full.  "
+            + "Options supported are as follows:\n\n"
+            + "-path=<archive-store>   Required.  The top of the archive "
+            + "store or any directory below it (e.g. a single server "
+            + "group or application).  All summaries below it are merged.\n"
+            + "[ -from=<yyyyMMdd> ]    Optional first date of interest.  "
+            + "Ignored with -newSince.\n"
+            + "[ -to=<yyyyMMdd> ]      Optional last date of interest.\n"
+            + "[ -newSince=<yyyyMMdd>] Optional.  List only the traces "
+            + "first seen on or after the date.  Every earlier summary is "
+            + "merged to establish when each trace was first seen.\n"
+            + "[ -top=<count> ]        Optional number of traces listed.  "
+            + "The default is 50.\n"
+            + "[ -exemplar ]           Optional.  Print the text of the "
+            + "first occurrence of each trace listed.\n"
+            + "[-h] [-help]    Prints this help message.\n\n");
+}
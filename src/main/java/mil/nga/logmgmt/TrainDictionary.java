@@ -0,0 +1,302 @@
+package mil.nga.logmgmt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.logmgmt.exceptions.InputException;
+import mil.nga.util.DictionaryTrainer;
+import mil.nga.util.Options;
+import mil.nga.util.Options.Multiplicity;
+import mil.nga.util.Options.Separator;
+
+/**
+ * Builds a preset dictionary for an application from a sample of its logs
+ * and reports the compression achieved on the samples with and without 
+ * the dictionary.
+ */
+public class TrainDictionary {
+
+    /**
+     * Set up the LogBack system for use throughout the class
+     */        
+    private static final Logger LOGGER = 
+            LoggerFactory.getLogger(TrainDictionary.class);
+    
+    private final int sampleSize;
+    private final int dictionarySize;
+    
+    /**
+     * Constructor.
+     * 
+     * @param dictionarySize Requested dictionary size in bytes.
+     * @param sampleSize Number of bytes read from the start of each sample.
+     */
+    public TrainDictionary(int dictionarySize, int sampleSize) {
+        this.dictionarySize = dictionarySize;
+        this.sampleSize     = sampleSize;
+    }
+    
+    /**
+     * Read the samples from the files found below the input directory.
+     * 
+     * @param path The directory to search.
+     * @param pattern Glob selecting the sample files.
+     * @return The samples.
+     * @throws InputException Thrown if no samples could be read.
+     */
+    public List<byte[]> readSamples(String path, String pattern) 
+            throws InputException {
+        
+        String       method  = "readSamples() - ";
+        List<byte[]> samples = new ArrayList<byte[]>();
+        List<Path>   files   = null;
+        long         total   = 0;
+        
+        try {
+            files = FileFinder.find(path, pattern);
+        }
+        catch (IOException ioe) {
+            LOGGER.error(method 
+                    + "Unable to search [ "
+                    + path
+                    + " ].  Error message [ "
+                    + ioe.getMessage()
+                    + " ].");
+        }
+        if (files != null) {
+            for (Path file : files) {
+                if (!ArchiveStore.isArchive(file)) {
+                    continue;
+                }
+                try {
+                    byte[] sample = sampleOf(file);
+                    if (sample.length > 0) {
+                        samples.add(sample);
+                        total += sample.length;
+                    }
+                }
+                catch (IOException ioe) {
+                    LOGGER.warn(method 
+                            + "Skipping unreadable sample [ "
+                            + file.toString()
+                            + " ].  Error message [ "
+                            + ioe.getMessage()
+                            + " ].");
+                }
+                if (total >= TrainDictionaryI.MAX_TOTAL_SAMPLE) {
+                    break;
+                }
+            }
+        }
+        if (samples.isEmpty()) {
+            String msg = method 
+                    + "No samples found below [ "
+                    + path
+                    + " ] matching [ "
+                    + pattern
+                    + " ].";
+            LOGGER.error(msg);
+            throw new InputException(msg);
+        }
+        LOGGER.info(method 
+                + "Read [ "
+                + samples.size()
+                + " ] samples totalling [ "
+                + total
+                + " ] bytes.");
+        return samples;
+    }
+    
+    /**
+     * Read the start of a single sample, decompressing it if necessary.
+     * 
+     * @param file The sample file.
+     * @return Up to <code>sampleSize</code> bytes of content.
+     * @throws IOException Thrown if the file cannot be read.
+     */
+    private byte[] sampleOf(Path file) throws IOException {
+        String encoding = ArchiveDecoder.encodingOf(file);
+        try (InputStream stored = Files.newInputStream(file)) {
+            InputStream is = null;
+            if (ManifestEntry.ENCODING_RAW.equals(encoding) && 
+                    ArchiveDecoder.isGzip(file)) {
+                is = new GZIPInputStream(stored);
+            }
+            else {
+                is = ArchiveDecoder.openContent(file, stored, encoding);
+            }
+            byte[] buffer = new byte[sampleSize];
+            int    count  = 0;
+            int    read   = 0;
+            while ((count < sampleSize) && 
+                    ((read = is.read(buffer, count, sampleSize - count)) != -1)) {
+                count += read;
+            }
+            return Arrays.copyOf(buffer, count);
+        }
+    }
+    
+    /**
+     * Build the dictionary from the samples.
+     * 
+     * @param samples The samples.
+     * @return The dictionary.
+     */
+    public PresetDictionary train(List<byte[]> samples) {
+        return new PresetDictionary(
+                DictionaryTrainer.train(samples, dictionarySize));
+    }
+    
+    /**
+     * Compress each sample individually and total the compressed sizes.
+     * 
+     * @param samples The samples.
+     * @param dictionary The dictionary to use (may be null).
+     * @return The total compressed size in bytes.
+     * @throws IOException Should not happen as the output is in memory.
+     */
+    public long compressedSize(List<byte[]> samples, PresetDictionary dictionary) 
+            throws IOException {
+        long total = 0;
+        for (byte[] sample : samples) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            OutputStream os = null;
+            if (dictionary != null) {
+                os = dictionary.compress(bos, Deflater.DEFAULT_COMPRESSION);
+            }
+            else {
+                os = new DeflaterOutputStream(bos);
+            }
+            os.write(sample);
+            os.close();
+            total += bos.size();
+        }
+        return total;
+    }
+    
+    /**
+     * Simple static method to print the help and usage String information.
+     */
+    private static void printHelp() {
+        System.out.println("");
+        System.out.println(TrainDictionaryI.HELP_STRING);
+        System.out.println("");
+        System.out.println(TrainDictionaryI.USAGE_STRING);
+    }
+    
+    /**
+     * Driver method used to extract the command line parameters and 
+     * initiate processing.
+     * 
+     * @param args Input command line arguments
+     * @throws InputException Thrown if the input data does not make 
+     * sense.
+     * @throws IOException Thrown if the dictionary cannot be written.
+     */
+    public static void main(String[] args) throws InputException, IOException {
+        
+        String method  = "main() - ";
+        String path    = null;
+        String output  = null;
+        String pattern = FileFinder.DEFAULT_PATTERN;
+        int    size    = TrainDictionaryI.DEFAULT_SIZE_KB;
+        int    sample  = TrainDictionaryI.DEFAULT_SAMPLE_KB;
+        
+        // Set up the command line options
+        Options opt = new Options(args, 0);
+        opt.getSet().addOption("path", Separator.EQUALS, Multiplicity.ONCE);
+        opt.getSet().addOption("output", Separator.EQUALS, Multiplicity.ONCE);
+        opt.getSet().addOption("pattern", Separator.EQUALS, 
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("size", Separator.EQUALS, 
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("sample", Separator.EQUALS, 
+                Multiplicity.ZERO_OR_ONE);
+        opt.getSet().addOption("h", Multiplicity.ZERO_OR_MORE);
+        opt.getSet().addOption("help", Multiplicity.ZERO_OR_MORE);
+        
+        // Make sure the options make sense
+        if (!opt.check(true, false)) {
+            System.out.println(TrainDictionaryI.USAGE_STRING);
+            System.exit(1);
+        }
+        
+        // See if the user wanted the help message displayed.
+        if (opt.getSet().isSet("h") || opt.getSet().isSet("help")) {
+            TrainDictionary.printHelp();
+            System.exit(0);
+        }
+        
+        path   = opt.getSet().getOption("path").getResultValue(0);
+        output = opt.getSet().getOption("output").getResultValue(0);
+        if (opt.getSet().isSet("pattern")) {
+            pattern = opt.getSet().getOption("pattern").getResultValue(0);
+        }
+        try {
+            if (opt.getSet().isSet("size")) {
+                size = Integer.parseInt(
+                        opt.getSet().getOption("size").getResultValue(0).trim());
+            }
+            if (opt.getSet().isSet("sample")) {
+                sample = Integer.parseInt(
+                        opt.getSet().getOption("sample").getResultValue(0).trim());
+            }
+        }
+        catch (NumberFormatException nfe) {
+            LOGGER.error(method 
+                    + "ERROR: -size and -sample must be integers.  Error "
+                    + "message [ "
+                    + nfe.getMessage()
+                    + " ].");
+            TrainDictionary.printHelp();
+            System.exit(1);
+        }
+        
+        TrainDictionary  trainer    = new TrainDictionary(
+                size * 1024, Math.max(1, sample) * 1024);
+        List<byte[]>     samples    = trainer.readSamples(path, pattern);
+        PresetDictionary dictionary = trainer.train(samples);
+        
+        Path file = Paths.get(output);
+        if (file.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        StagedFile staged = new StagedFile(file);
+        try {
+            staged.getOutputStream().write(dictionary.getBytes());
+            staged.commit();
+        }
+        finally {
+            staged.close();
+        }
+        
+        long plain   = trainer.compressedSize(samples, null);
+        long primed  = trainer.compressedSize(samples, dictionary);
+        LOGGER.info(method 
+                + "Wrote dictionary [ "
+                + file.toString()
+                + " ] of [ "
+                + dictionary.getBytes().length
+                + " ] bytes (id [ "
+                + PresetDictionary.fileNameOf(dictionary.getId())
+                + " ]).  Samples compress to [ "
+                + plain
+                + " ] bytes without the dictionary and [ "
+                + primed
+                + " ] bytes with it.");
+    }
+}
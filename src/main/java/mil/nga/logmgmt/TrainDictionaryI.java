@@ -0,0 +1,57 @@
+package mil.nga.logmgmt;
+
+/**
+ * Simple interface containing the constants and help text used by the 
+ * preset dictionary trainer.
+ */
+public interface TrainDictionaryI {
+    
+    /**
+     * Default dictionary size in KiB.
+     */
+    public static final int DEFAULT_SIZE_KB = 32;
+    
+    /**
+     * Default number of KiB sampled from the start of each file.
+     */
+    public static final int DEFAULT_SAMPLE_KB = 64;
+    
+    /**
+     * Upper bound on the total amount of sample content (in bytes).
+     */
+    public static final long MAX_TOTAL_SAMPLE = 64L * 1024 * 1024;
+    
+    /**
+     * Usage String printed when incorrect arguments are supplied.
+     */
+    public static final String USAGE_STRING = new String(
+            "Usage: java mil.nga.logmgmt.TrainDictionary "
+            + "-path=<directory> "
+            + "-output=<dictionary-file> "
+            + "[ -pattern=<glob> ] "
+            + "[ -size=<KiB> ] "
+            + "[ -sample=<KiB> ] "
+            + "[-h] [-help]");
+    
+    /**
+     * Help string printed when -h or -help appear on the command line.
+     */
+    public static final String HELP_STRING = new String(
+            "This application builds a preset compression dictionary from "
+            + "sample logs of a single application.  Point the "
+            + "output.compress.dictionary property of the application at "
+            + "the result.  Options supported are as follows:\n\n"
+            + "-path=<directory>   Required.  Directory searched (recursively) "
+            + "for sample files.  Either the live log directory or the "
+            + "application directory in the archive store may be used; "
+            + "compressed samples are decompressed.\n"
+            + "-output=<dictionary-file>  Required.  File to write the "
+            + "dictionary to.\n"
+            + "[ -pattern=<glob> ] Optional file name pattern selecting the "
+            + "samples.  The default is all files.\n"
+            + "[ -size=<KiB> ]     Optional dictionary size.  The default "
+            + "(and maximum) is 32.\n"
+            + "[ -sample=<KiB> ]   Optional amount read from the start of "
+            + "each sample.  The default is 64.\n"
+            + "[-h] [-help]    Prints this help message.\n\n");
+}
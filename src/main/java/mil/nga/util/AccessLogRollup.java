@@ -0,0 +1,534 @@
+package mil.nga.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Per-hour traffic summary of an access log: request count, status code
+ * mix, bytes sent and a response time histogram for each hour in which
+ * the log holds requests.  The summary is built while the log is
+ * archived, from the same buffers that are checksummed (see
+ * <code>ContentDigest.addSink()</code>), and is kept in a hidden sidecar
+ * file (.&lt;archive&gt;.rollup) next to the archive.
+ *
+ * Lines are expected in the Common Log Format written by Apache and the
+ * Tomcat AccessLogValve, optionally followed by further fields (e.g. the
+ * combined format):
+ * <pre>
+ * 10.0.0.1 - user [31/Jan/2026:23:59:59 -0500] "GET / HTTP/1.1" 200 512 ...
+ * </pre>
+ * If the last field of a line is a number following the bytes sent, it
+ * is taken as the response time (<code>%D</code>), in the unit supplied
+ * to the constructor.  Response times are recorded in microseconds.
+ *
+ * All counters are primitives and every interval (see
+ * <code>Interval</code>) merges exactly with another, so summaries of
+ * days, months or several hosts are built by merging sidecars rather than
+ * by reading the logs again.  Lines that cannot be parsed are counted but
+ * otherwise ignored, as are lines longer than
+ * <code>LineSink.MAX_LINE_LENGTH</code> split between buffers.  Sketches of the clients, URLs and user agents (see
+ * <code>AccessLogSketches</code>) may be attached and are fed from the
+ * same parse.
+ */
+public class AccessLogRollup extends LineSink {
+
+    /**
+     * Identifies a rollup file (and its layout version).
+     */
+    private static final byte[] MAGIC =
+            new byte[] { 'L', 'M', 'R', 'O', 'L', 'L', '0', '1' };
+
+    /**
+     * Length of an interval in the sidecar.
+     */
+    public static final long MILLIS_PER_HOUR = 60L * 60L * 1000L;
+
+    /**
+     * Names of the access logs summarized: Apache access.log and
+     * ssl_access.log, and the Tomcat localhost_access_log files.
+     */
+    private static final Pattern ACCESS_LOG = Pattern.compile(".*access[._]log.*");
+
+    /**
+     * Status codes counted individually; others are counted as 0.
+     */
+    private static final int STATUS_CODES = 600;
+
+    /**
+     * Counters of a single interval.
+     */
+    public static class Interval {
+
+        private final long             start;
+        private final long[]           statuses = new long[STATUS_CODES];
+        private final LatencyHistogram latency;
+        private long requests = 0;
+        private long bytes    = 0;
+
+        /**
+         * Constructor.
+         *
+         * @param start Start of the interval (epoch milliseconds).
+         */
+        public Interval(long start) {
+            this(start, new LatencyHistogram());
+        }
+
+        private Interval(long start, LatencyHistogram latency) {
+            this.start   = start;
+            this.latency = latency;
+        }
+
+        /**
+         * Add the counters of another interval to this one.
+         *
+         * @param other The interval to merge.
+         */
+        public void merge(Interval other) {
+            requests += other.requests;
+            bytes    += other.bytes;
+            for (int i = 0; i < STATUS_CODES; i++) {
+                statuses[i] += other.statuses[i];
+            }
+            latency.merge(other.latency);
+        }
+
+        /**
+         * Accessor method for the start of the interval.
+         * @return The start of the interval (epoch milliseconds).
+         */
+        public long getStart() {
+            return start;
+        }
+
+        /**
+         * Accessor method for the number of requests.
+         * @return The number of requests.
+         */
+        public long getRequests() {
+            return requests;
+        }
+
+        /**
+         * Accessor method for the number of bytes sent.
+         * @return The number of bytes sent.
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Accessor method for the number of requests with a status code.
+         * @param status The status code (0 for codes outside 100-599).
+         * @return The number of requests.
+         */
+        public long getStatusCount(int status) {
+            return ((status >= 0) && (status < STATUS_CODES)) ? statuses[status] : 0;
+        }
+
+        /**
+         * Accessor method for the number of requests with a class of
+         * status code.
+         * @param digit The class (e.g. 5 for 5xx).
+         * @return The number of requests.
+         */
+        public long getStatusClassCount(int digit) {
+            long count = 0;
+            for (int i = digit * 100; (i < (digit + 1) * 100) && (i < STATUS_CODES); i++) {
+                count += statuses[i];
+            }
+            return count;
+        }
+
+        /**
+         * Accessor method for the response time histogram.
+         * @return Response times in microseconds.
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        private void write(DataOutputStream dos) throws IOException {
+            int used = 0;
+            for (long count : statuses) {
+                if (count != 0) {
+                    used++;
+                }
+            }
+            dos.writeLong(start);
+            dos.writeLong(requests);
+            dos.writeLong(bytes);
+            dos.writeShort(used);
+            for (int i = 0; i < STATUS_CODES; i++) {
+                if (statuses[i] != 0) {
+                    dos.writeShort(i);
+                    dos.writeLong(statuses[i]);
+                }
+            }
+            latency.write(dos);
+        }
+
+        private static Interval read(DataInputStream dis) throws IOException {
+            long start    = dis.readLong();
+            long requests = dis.readLong();
+            long bytes    = dis.readLong();
+            long[] statuses = new long[STATUS_CODES];
+            int used = dis.readUnsignedShort();
+            for (int i = 0; i < used; i++) {
+                int status = dis.readUnsignedShort();
+                if (status >= STATUS_CODES) {
+                    throw new IOException("Invalid status code [ " + status + " ].");
+                }
+                statuses[status] = dis.readLong();
+            }
+            Interval interval = new Interval(start, LatencyHistogram.read(dis));
+            interval.requests = requests;
+            interval.bytes    = bytes;
+            System.arraycopy(statuses, 0, interval.statuses, 0, STATUS_CODES);
+            return interval;
+        }
+    }
+
+    private final TreeMap<Long, Interval> intervals = new TreeMap<Long, Interval>();
+    private final LogTimestamps parser = new LogTimestamps();
+    private final long latencyScale;
+    private Interval          current  = null;
+    private AccessLogSketches sketches = null;
+    private long              unparsed = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param latencyScale Microseconds per unit of the response time
+     * field (see <code>scaleOf()</code>).
+     */
+    public AccessLogRollup(long latencyScale) {
+        this.latencyScale = latencyScale;
+    }
+
+    /**
+     * Determine whether a file is an access log to be summarized.
+     *
+     * @param file The log file.
+     * @return True for Apache and Tomcat access logs.
+     */
+    public static boolean isAccessLog(Path file) {
+        return ACCESS_LOG.matcher(file.getFileName().toString()).matches();
+    }
+
+    /**
+     * Convert the name of a response time unit.
+     *
+     * @param unit us (Apache %D), ms (Tomcat %D) or s (%T).
+     * @return Microseconds per unit, or -1 if the unit is not recognized.
+     */
+    public static long scaleOf(String unit) {
+        if ("us".equals(unit)) {
+            return 1L;
+        }
+        if ("ms".equals(unit)) {
+            return 1000L;
+        }
+        if ("s".equals(unit)) {
+            return 1000L * 1000L;
+        }
+        return -1L;
+    }
+
+    /**
+     * Calculate the sidecar file holding the rollup of an archive.  The
+     * name starts with a dot so that the archive store treats it as
+     * bookkeeping rather than as an archive.
+     *
+     * @param archive The archive.
+     * @return The rollup file.
+     */
+    public static Path sidecarOf(Path archive) {
+        return archive.resolveSibling("." + archive.getFileName().toString()
+                + ".rollup");
+    }
+
+    /**
+     * Calculate the sidecar file holding the rollup of an archive.
+     *
+     * @param archive The archive.
+     * @return The rollup file.
+     */
+    @Override
+    public Path getSidecar(Path archive) {
+        return sidecarOf(archive);
+    }
+
+    @Override
+    protected void line(byte[] b, int offset, int length) {
+        add(b, offset, length);
+    }
+
+    @Override
+    protected void oversized() {
+        unparsed++;
+    }
+
+    /**
+     * Parse a single line and count it.
+     *
+     * @param b Buffer holding the line.
+     * @param offset Start of the line.
+     * @param length Length of the line (without the line terminator).
+     */
+    public void add(byte[] b, int offset, int length) {
+        int end = offset + length;
+        if ((end > offset) && (b[end - 1] == '\r')) {
+            end--;
+        }
+        if (end == offset) {
+            return;
+        }
+        int  open = indexOf(b, '[', offset, end);
+        long time = (open < 0) ? LogTimestamps.NONE : parser.parse(b, open, end - open);
+        int  p    = (open < 0) ? -1 : indexOf(b, '"', open, end);
+        if ((time == LogTimestamps.NONE) || (p < 0)) {
+            unparsed++;
+            return;
+        }
+        // The request, in which quotes are escaped.
+        int request = p + 1;
+        for (p++; (p < end) && (b[p] != '"'); p++) {
+            if (b[p] == '\\') {
+                p++;
+            }
+        }
+        int requestEnd = Math.min(p, end);
+        p++;
+        while ((p < end) && (b[p] == ' ')) {
+            p++;
+        }
+        if ((p + 3 > end) || !isDigit(b[p]) || !isDigit(b[p + 1]) ||
+                !isDigit(b[p + 2]) || ((p + 3 < end) && (b[p + 3] != ' '))) {
+            unparsed++;
+            return;
+        }
+        int status = (b[p] - '0') * 100 + (b[p + 1] - '0') * 10 + (b[p + 2] - '0');
+        p += 3;
+        while ((p < end) && (b[p] == ' ')) {
+            p++;
+        }
+        long sent = 0;
+        for (; (p < end) && isDigit(b[p]); p++) {
+            sent = sent * 10 + (b[p] - '0');
+        }
+        if ((p < end) && (b[p] == '-')) {
+            p++;
+        }
+
+        Interval interval = intervalOf(time);
+        interval.requests++;
+        interval.bytes += sent;
+        interval.statuses[(status >= 100) && (status < STATUS_CODES) ? status : 0]++;
+
+        // The response time is the last field, if numeric.
+        int last = end;
+        while ((last > p) && isDigit(b[last - 1])) {
+            last--;
+        }
+        if ((last < end) && (last > p) && (b[last - 1] == ' ') && (end - last <= 15)) {
+            long value = 0;
+            for (int i = last; i < end; i++) {
+                value = value * 10 + (b[i] - '0');
+            }
+            interval.latency.record(value * latencyScale);
+        }
+        if (sketches != null) {
+            sketch(time, b, offset, request, requestEnd, p, end);
+        }
+    }
+
+    /**
+     * Locate the client, URL and user agent of a request for the
+     * sketches.
+     *
+     * @param after Position following the bytes sent field.
+     */
+    private void sketch(long time, byte[] b, int offset, int request,
+            int requestEnd, int after, int end) {
+        int clientEnd = indexOf(b, ' ', offset, end);
+        // The URL follows the method, up to the query string.
+        int url    = indexOf(b, ' ', request, requestEnd);
+        int urlEnd = -1;
+        if (url >= 0) {
+            url++;
+            for (urlEnd = url; (urlEnd < requestEnd) && (b[urlEnd] != ' ') &&
+                    (b[urlEnd] != '?'); urlEnd++) {
+            }
+        }
+        // The user agent is the second quoted field after the bytes sent
+        // (combined format).
+        int agent    = -1;
+        int agentEnd = -1;
+        int p        = after;
+        for (int field = 0; field < 2; field++) {
+            int quote = indexOf(b, '"', p, end);
+            if (quote < 0) {
+                agent = -1;
+                break;
+            }
+            agent = quote + 1;
+            for (p = agent; (p < end) && (b[p] != '"'); p++) {
+                if (b[p] == '\\') {
+                    p++;
+                }
+            }
+            agentEnd = Math.min(p, end);
+            p++;
+        }
+        sketches.add(time, b, offset, (clientEnd < 0) ? end : clientEnd,
+                url, urlEnd, agent, agentEnd);
+    }
+
+    /**
+     * Attach sketches to be fed the client, URL and user agent of every
+     * request parsed.
+     *
+     * @param sketches The sketches (null to detach).
+     */
+    public void setSketches(AccessLogSketches sketches) {
+        this.sketches = sketches;
+    }
+
+    /**
+     * Accessor method for the attached sketches.
+     * @return The sketches, or null if none are attached.
+     */
+    public AccessLogSketches getSketches() {
+        return sketches;
+    }
+
+    private Interval intervalOf(long time) {
+        long start = (time / MILLIS_PER_HOUR) * MILLIS_PER_HOUR;
+        if ((current == null) || (current.start != start)) {
+            current = intervals.get(start);
+            if (current == null) {
+                current = new Interval(start);
+                intervals.put(start, current);
+            }
+        }
+        return current;
+    }
+
+    private static int indexOf(byte[] b, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (b[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isDigit(byte b) {
+        return (b >= '0') && (b <= '9');
+    }
+
+    /**
+     * Add the counters of another rollup to this one.
+     *
+     * @param other The rollup to merge.
+     */
+    public void merge(AccessLogRollup other) {
+        for (Interval interval : other.intervals.values()) {
+            Interval mine = intervals.get(interval.start);
+            if (mine == null) {
+                mine = new Interval(interval.start);
+                intervals.put(interval.start, mine);
+            }
+            mine.merge(interval);
+        }
+        unparsed += other.unparsed;
+    }
+
+    /**
+     * Accessor method for the hourly intervals.
+     * @return The intervals in time order.
+     */
+    public Collection<Interval> getIntervals() {
+        return intervals.values();
+    }
+
+    /**
+     * Accessor method for the number of lines that could not be parsed.
+     * @return The number of lines.
+     */
+    public long getUnparsed() {
+        return unparsed;
+    }
+
+    /**
+     * Write the rollup.
+     *
+     * @param os The destination (not closed).
+     * @param checksum The checksum of the content summarized, recorded so
+     * that a stale rollup is detected.
+     * @throws IOException Thrown if the rollup cannot be written.
+     */
+    @Override
+    public void write(OutputStream os, String checksum) throws IOException {
+        finish();
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(os));
+        dos.write(MAGIC);
+        dos.writeUTF(checksum);
+        dos.writeLong(unparsed);
+        dos.writeInt(intervals.size());
+        for (Interval interval : intervals.values()) {
+            interval.write(dos);
+        }
+        dos.flush();
+    }
+
+    /**
+     * Read a rollup written by <code>write()</code>.
+     *
+     * @param file The rollup file.
+     * @param checksum The checksum of the content the rollup is expected
+     * to summarize, or null to accept any.
+     * @return The rollup (finished), or null if it summarizes other
+     * content.
+     * @throws IOException Thrown if the file cannot be read or is not a
+     * rollup.
+     */
+    public static AccessLogRollup read(Path file, String checksum)
+            throws IOException {
+        try (InputStream is = Files.newInputStream(file)) {
+            DataInputStream dis   = new DataInputStream(
+                    new BufferedInputStream(is));
+            byte[]          magic = new byte[MAGIC.length];
+            dis.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("File [ " + file.toString()
+                        + " ] is not an access log rollup.");
+            }
+            String recorded = dis.readUTF();
+            if ((checksum != null) && !recorded.equals(checksum)) {
+                return null;
+            }
+            AccessLogRollup rollup = new AccessLogRollup(1L);
+            rollup.unparsed = dis.readLong();
+            int count = dis.readInt();
+            for (int i = 0; i < count; i++) {
+                Interval interval = Interval.read(dis);
+                rollup.intervals.put(interval.start, interval);
+            }
+            rollup.markFinished();
+            return rollup;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package mil.nga.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Sketches of an access log answering questions about distinct and
+ * frequent values without reading the log again:
+ *
+ * <li>HyperLogLog sketches of the client addresses and of the user agents
+ * (distinct counts)</li>
+ * <li>a heavy hitter summary of the requested URLs, without their query
+ * strings (most frequent values)</li>
+ *
+ * The fields of each line are located by <code>AccessLogRollup</code>,
+ * which parses the line for its own counters and hands them on, so each
+ * line is parsed once.  The sketches of an archive are kept in a hidden
+ * sidecar file (.&lt;archive&gt;.sketch) of a few KiB; every sketch
+ * merges, so the distinct clients of a quarter or the top URLs of a month
+ * are found by merging sidecars.
+ */
+public class AccessLogSketches implements Sidecar {
+
+    /**
+     * Identifies a sketch file (and its layout version).
+     */
+    private static final byte[] MAGIC =
+            new byte[] { 'L', 'M', 'S', 'K', 'T', 'C', '0', '1' };
+
+    private final HyperLogLog  clients;
+    private final HyperLogLog  agents;
+    private final HeavyHitters urls;
+    private long first = Long.MAX_VALUE;
+    private long last  = Long.MIN_VALUE;
+
+    /**
+     * Constructor.
+     */
+    public AccessLogSketches() {
+        this(new HyperLogLog(), new HyperLogLog(), new HeavyHitters());
+    }
+
+    private AccessLogSketches(HyperLogLog clients, HyperLogLog agents,
+            HeavyHitters urls) {
+        this.clients = clients;
+        this.agents  = agents;
+        this.urls    = urls;
+    }
+
+    /**
+     * Calculate the sidecar file holding the sketches of an archive.  The
+     * name starts with a dot so that the archive store treats it as
+     * bookkeeping rather than as an archive.
+     *
+     * @param archive The archive.
+     * @return The sketch file.
+     */
+    public static Path sidecarOf(Path archive) {
+        return archive.resolveSibling("." + archive.getFileName().toString()
+                + ".sketch");
+    }
+
+    /**
+     * Calculate the sidecar file holding the sketches of an archive.
+     *
+     * @param archive The archive.
+     * @return The sketch file.
+     */
+    @Override
+    public Path getSidecar(Path archive) {
+        return sidecarOf(archive);
+    }
+
+    /**
+     * Add the fields of a request.  Fields are given as ranges of the
+     * buffer holding the line.
+     *
+     * @param time The time of the request (epoch milliseconds).
+     * @param b Buffer holding the line.
+     * @param client Start of the client address.
+     * @param clientEnd End of the client address.
+     * @param url Start of the URL (-1 if there is none).
+     * @param urlEnd End of the URL (excluding any query string).
+     * @param agent Start of the user agent (-1 if there is none).
+     * @param agentEnd End of the user agent.
+     */
+    public void add(long time, byte[] b, int client, int clientEnd,
+            int url, int urlEnd, int agent, int agentEnd) {
+        first = Math.min(first, time);
+        last  = Math.max(last, time);
+        clients.offer(b, client, clientEnd - client);
+        if (url >= 0) {
+            urls.offer(b, url, urlEnd - url);
+        }
+        if (agent >= 0) {
+            agents.offer(b, agent, agentEnd - agent);
+        }
+    }
+
+    /**
+     * Add the values of other sketches to these.
+     *
+     * @param other The sketches to merge.
+     */
+    public void merge(AccessLogSketches other) {
+        clients.merge(other.clients);
+        agents.merge(other.agents);
+        urls.merge(other.urls);
+        first = Math.min(first, other.first);
+        last  = Math.max(last, other.last);
+    }
+
+    /**
+     * Accessor method for the client address sketch.
+     * @return The distinct client addresses.
+     */
+    public HyperLogLog getClients() {
+        return clients;
+    }
+
+    /**
+     * Accessor method for the user agent sketch.
+     * @return The distinct user agents.
+     */
+    public HyperLogLog getAgents() {
+        return agents;
+    }
+
+    /**
+     * Accessor method for the URL summary.
+     * @return The most frequent URLs.
+     */
+    public HeavyHitters getUrls() {
+        return urls;
+    }
+
+    /**
+     * Accessor method for the time of the earliest request.
+     * @return Epoch milliseconds (Long.MAX_VALUE if there were none).
+     */
+    public long getFirst() {
+        return first;
+    }
+
+    /**
+     * Accessor method for the time of the latest request.
+     * @return Epoch milliseconds (Long.MIN_VALUE if there were none).
+     */
+    public long getLast() {
+        return last;
+    }
+
+    /**
+     * Write the sketches, compressed.
+     *
+     * @param os The destination (not closed).
+     * @param checksum The checksum of the content sketched, recorded so
+     * that a stale sidecar is detected.
+     * @throws IOException Thrown if the sketches cannot be written.
+     */
+    @Override
+    public void write(OutputStream os, String checksum) throws IOException {
+        os.write(MAGIC);
+        DataOutputStream dos = new DataOutputStream(os);
+        dos.writeUTF(checksum);
+        dos.flush();
+        Deflater             deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        DeflaterOutputStream dfos     = new DeflaterOutputStream(os, deflater);
+        try {
+            DataOutputStream body = new DataOutputStream(
+                    new BufferedOutputStream(dfos));
+            body.writeLong(first);
+            body.writeLong(last);
+            clients.write(body);
+            agents.write(body);
+            urls.write(body);
+            body.flush();
+            dfos.finish();
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Read sketches written by <code>write()</code>.
+     *
+     * @param file The sketch file.
+     * @param checksum The checksum of the content the sketches are expected
+     * to describe, or null to accept any.
+     * @return The sketches, or null if they describe other content.
+     * @throws IOException Thrown if the file cannot be read or does not
+     * hold sketches.
+     */
+    public static AccessLogSketches read(Path file, String checksum)
+            throws IOException {
+        try (InputStream is = new BufferedInputStream(Files.newInputStream(file))) {
+            DataInputStream dis   = new DataInputStream(is);
+            byte[]          magic = new byte[MAGIC.length];
+            dis.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("File [ " + file.toString()
+                        + " ] does not hold access log sketches.");
+            }
+            String recorded = dis.readUTF();
+            if ((checksum != null) && !recorded.equals(checksum)) {
+                return null;
+            }
+            Inflater inflater = new Inflater();
+            try {
+                DataInputStream body = new DataInputStream(
+                        new BufferedInputStream(new InflaterInputStream(is, inflater)));
+                long first = body.readLong();
+                long last  = body.readLong();
+                AccessLogSketches sketches = new AccessLogSketches(
+                        HyperLogLog.read(body), HyperLogLog.read(body),
+                        HeavyHitters.read(body));
+                sketches.first = first;
+                sketches.last  = last;
+                return sketches;
+            }
+            finally {
+                inflater.end();
+            }
+        }
+    }
+}
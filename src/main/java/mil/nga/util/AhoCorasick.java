@@ -0,0 +1,166 @@
+package mil.nga.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Multi-pattern matcher (Aho-Corasick) used to find any of a set of 
+ * literal keywords in a single pass over the input, however many keywords
+ * there are.  Keywords are matched as UTF-8 bytes so that log content can 
+ * be searched without decoding it into characters.
+ *
+ * The automaton is built as a full transition table (256 entries per 
+ * state), trading memory for a single table lookup per input byte.  Case
+ * insensitive matching folds ASCII letters only.
+ *
+ * Instances are immutable once built and may be shared between threads.
+ */
+public class AhoCorasick {
+
+    /**
+     * Number of distinct input symbols.
+     */
+    private static final int ALPHABET = 256;
+
+    private final String[] keywords;
+    private final byte[]   fold = new byte[ALPHABET];
+    private final int[][]  next;
+    private final int[]    match;
+
+    /**
+     * Constructor.
+     *
+     * @param keywords The keywords (empty keywords are ignored).
+     * @param ignoreCase True if ASCII letters should match in either case.
+     */
+    public AhoCorasick(Collection<String> keywords, boolean ignoreCase) {
+
+        for (int i = 0; i < ALPHABET; i++) {
+            fold[i] = (byte)(((i >= 'A') && (i <= 'Z') && ignoreCase) ? 
+                    i + ('a' - 'A') : i);
+        }
+
+        // Build the trie.
+        List<String> accepted = new ArrayList<String>();
+        List<int[]>  trie     = new ArrayList<int[]>();
+        List<Integer> output  = new ArrayList<Integer>();
+        trie.add(emptyState());
+        output.add(-1);
+        for (String keyword : keywords) {
+            if ((keyword == null) || keyword.isEmpty()) {
+                continue;
+            }
+            int state = 0;
+            for (byte b : keyword.getBytes(StandardCharsets.UTF_8)) {
+                int c = fold[b & 0xff] & 0xff;
+                if (trie.get(state)[c] < 0) {
+                    trie.get(state)[c] = trie.size();
+                    trie.add(emptyState());
+                    output.add(-1);
+                }
+                state = trie.get(state)[c];
+            }
+            if (output.get(state) < 0) {
+                output.set(state, accepted.size());
+            }
+            accepted.add(keyword);
+        }
+        this.keywords = accepted.toArray(new String[accepted.size()]);
+        this.next     = trie.toArray(new int[trie.size()][]);
+        this.match    = new int[next.length];
+        for (int i = 0; i < match.length; i++) {
+            match[i] = output.get(i);
+        }
+
+        // Breadth first pass computing the failure links and turning them
+        // into direct transitions.
+        int[] fail  = new int[next.length];
+        int[] queue = new int[next.length];
+        int   head  = 0;
+        int   tail  = 0;
+        for (int c = 0; c < ALPHABET; c++) {
+            if (next[0][c] < 0) {
+                next[0][c] = 0;
+            }
+            else {
+                fail[next[0][c]] = 0;
+                queue[tail++]    = next[0][c];
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            if (match[state] < 0) {
+                match[state] = match[fail[state]];
+            }
+            for (int c = 0; c < ALPHABET; c++) {
+                int child = next[state][c];
+                if (child < 0) {
+                    next[state][c] = next[fail[state]][c];
+                }
+                else {
+                    fail[child]   = next[fail[state]][c];
+                    queue[tail++] = child;
+                }
+            }
+        }
+    }
+
+    private static int[] emptyState() {
+        int[] state = new int[ALPHABET];
+        Arrays.fill(state, -1);
+        return state;
+    }
+
+    /**
+     * Find the first keyword occurring in a range of bytes.
+     *
+     * @param b The input.
+     * @param off Start of the range.
+     * @param len Length of the range.
+     * @return The index (in the order supplied to the constructor, 
+     * ignoring empty keywords) of a keyword ending at the earliest 
+     * possible position, or -1 if none occurs.
+     */
+    public int find(byte[] b, int off, int len) {
+        int state = 0;
+        int end   = off + len;
+        for (int i = off; i < end; i++) {
+            state = next[state][fold[b[i] & 0xff] & 0xff];
+            if (match[state] >= 0) {
+                return match[state];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Determine whether any keyword occurs in a range of bytes.
+     *
+     * @param b The input.
+     * @param off Start of the range.
+     * @param len Length of the range.
+     * @return True if at least one keyword occurs.
+     */
+    public boolean matches(byte[] b, int off, int len) {
+        return find(b, off, len) >= 0;
+    }
+
+    /**
+     * Accessor method for the keywords.
+     * @return The keywords in index order.
+     */
+    public String[] getKeywords() {
+        return keywords.clone();
+    }
+
+    /**
+     * Accessor method for the number of keywords.
+     * @return The number of (non-empty) keywords.
+     */
+    public int size() {
+        return keywords.length;
+    }
+}
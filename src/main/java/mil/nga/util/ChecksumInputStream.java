@@ -0,0 +1,72 @@
+package mil.nga.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream filter that feeds every byte read through it into a
+ * <code>ContentDigest</code>.  Skipped bytes are read (and digested)
+ * rather than skipped so that the digest always covers every byte
+ * consumed.
+ */
+public class ChecksumInputStream extends FilterInputStream {
+
+    private final ContentDigest digest;
+
+    /**
+     * Constructor.
+     *
+     * @param in The underlying stream.
+     * @param digest The digest to update.
+     */
+    public ChecksumInputStream(InputStream in, ContentDigest digest) {
+        super(in);
+        this.digest = digest;
+    }
+
+    /**
+     * Accessor method for the digest.
+     * @return The digest being updated.
+     */
+    public ContentDigest getDigest() {
+        return digest;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int value = in.read();
+        if (value != -1) {
+            digest.update(new byte[] { (byte)value }, 0, 1);
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int count = in.read(b, off, len);
+        if (count > 0) {
+            digest.update(b, off, count);
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buffer  = new byte[(int)Math.min(n, 8192)];
+        long   skipped = 0;
+        while (skipped < n) {
+            int count = read(buffer, 0, (int)Math.min(buffer.length, n - skipped));
+            if (count < 0) {
+                break;
+            }
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
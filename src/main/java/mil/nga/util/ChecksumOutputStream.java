@@ -0,0 +1,45 @@
+package mil.nga.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream filter that feeds every byte written through it into a
+ * <code>ContentDigest</code> on the way to the underlying stream.
+ */
+public class ChecksumOutputStream extends FilterOutputStream {
+
+    private final ContentDigest digest;
+
+    /**
+     * Constructor.
+     *
+     * @param out The underlying stream.
+     * @param digest The digest to update.
+     */
+    public ChecksumOutputStream(OutputStream out, ContentDigest digest) {
+        super(out);
+        this.digest = digest;
+    }
+
+    /**
+     * Accessor method for the digest.
+     * @return The digest being updated.
+     */
+    public ContentDigest getDigest() {
+        return digest;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        digest.update(new byte[] { (byte)b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        digest.update(b, off, len);
+    }
+}
@@ -0,0 +1,444 @@
+package mil.nga.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Random access reader of the columnar files written by
+ * <code>ColumnarLog</code>.  Opening a file reads only its footer; the
+ * dictionary and blocks of a column are read when asked for, so a scan of
+ * one column reads a fraction of the file.  The number of bytes read is
+ * counted (see <code>getBytesRead()</code>).  Instances are not thread
+ * safe.
+ */
+public class ColumnarFile implements Closeable {
+
+    /**
+     * Location and range of values of a block of a column.
+     */
+    public static class Block {
+
+        private final long   offset;
+        private final int    length;
+        private final int    rows;
+        private final long   min;
+        private final long   max;
+        private final byte[] minValue;
+        private final byte[] maxValue;
+
+        private Block(long offset, int length, int rows, long min, long max,
+                byte[] minValue, byte[] maxValue) {
+            this.offset   = offset;
+            this.length   = length;
+            this.rows     = rows;
+            this.min      = min;
+            this.max      = max;
+            this.minValue = minValue;
+            this.maxValue = maxValue;
+        }
+
+        /**
+         * Accessor method for the number of rows of the block.
+         * @return The number of rows.
+         */
+        public int getRows() {
+            return rows;
+        }
+
+        /**
+         * Accessor method for the compressed size of the block.
+         * @return The size in bytes.
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * Accessor method for the earliest time of a time column block.
+         * @return Epoch milliseconds (Long.MAX_VALUE if no row of the
+         * block holds a time).
+         */
+        public long getMinTime() {
+            return min;
+        }
+
+        /**
+         * Accessor method for the latest time of a time column block.
+         * @return Epoch milliseconds (Long.MIN_VALUE if no row of the
+         * block holds a time).
+         */
+        public long getMaxTime() {
+            return max;
+        }
+
+        /**
+         * Determine whether a block of a string column may hold a value.
+         *
+         * @param value The value.
+         * @return False if the value lies outside the range of values of
+         * the block.
+         */
+        public boolean mayContain(String value) {
+            if (minValue == null) {
+                return true;
+            }
+            byte[] b = value.getBytes(StandardCharsets.UTF_8);
+            return (ColumnarLog.compare(b, 0, b.length, minValue, 0, minValue.length) >= 0) &&
+                    (ColumnarLog.compare(b, 0, b.length, maxValue, 0, maxValue.length) <= 0);
+        }
+    }
+
+    /**
+     * Description of a column.
+     */
+    public static class Column {
+
+        private final String      name;
+        private final byte        type;
+        private final long        dictionaryOffset;
+        private final int         dictionaryLength;
+        private final int         dictionarySize;
+        private final List<Block> blocks;
+
+        private Column(String name, byte type, long dictionaryOffset,
+                int dictionaryLength, int dictionarySize, List<Block> blocks) {
+            this.name             = name;
+            this.type             = type;
+            this.dictionaryOffset = dictionaryOffset;
+            this.dictionaryLength = dictionaryLength;
+            this.dictionarySize   = dictionarySize;
+            this.blocks           = blocks;
+        }
+
+        /**
+         * Accessor method for the name of the column.
+         * @return The name from the #Fields line.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Accessor method for whether the column holds times.
+         * @return True for the time column, false for a string column.
+         */
+        public boolean isTime() {
+            return type == ColumnarLog.TYPE_TIME;
+        }
+
+        /**
+         * Accessor method for the number of distinct values of a string
+         * column.
+         * @return The number of values (0 for the time column).
+         */
+        public int getDictionarySize() {
+            return dictionarySize;
+        }
+
+        /**
+         * Accessor method for the blocks of the column.
+         * @return The blocks in row order.
+         */
+        public List<Block> getBlocks() {
+            return blocks;
+        }
+    }
+
+    private final FileChannel  channel;
+    private final long         size;
+    private final long         rows;
+    private final List<Column> columns;
+    private long bytesRead = 0;
+
+    private ColumnarFile(FileChannel channel, long size, long rows,
+            List<Column> columns) {
+        this.channel = channel;
+        this.size    = size;
+        this.rows    = rows;
+        this.columns = columns;
+    }
+
+    /**
+     * Open a columnar file written by <code>ColumnarLog.write()</code>.
+     *
+     * @param file The columnar file.
+     * @param checksum The checksum of the content the file is expected to
+     * hold, or null to accept any.
+     * @return The open file, or null if it holds other content.
+     * @throws IOException Thrown if the file cannot be read or is not a
+     * columnar file.
+     */
+    public static ColumnarFile open(Path file, String checksum)
+            throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        boolean     opened  = false;
+        try {
+            long   size  = channel.size();
+            int    magic = ColumnarLog.MAGIC.length;
+            byte[] tail  = new byte[4 + magic];
+            if (size < magic + tail.length) {
+                throw new IOException("File [ " + file.toString()
+                        + " ] is not a columnar file.");
+            }
+            readFully(channel, size - tail.length, tail);
+            int footer = ByteBuffer.wrap(tail).getInt();
+            if (!Arrays.equals(Arrays.copyOfRange(tail, 4, tail.length), ColumnarLog.MAGIC) ||
+                    (footer < 0) || (footer > size - magic - tail.length)) {
+                throw new IOException("File [ " + file.toString()
+                        + " ] is not a columnar file.");
+            }
+            byte[] bytes = new byte[footer];
+            readFully(channel, size - tail.length - footer, bytes);
+            DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bytes));
+            String recorded = dis.readUTF();
+            if ((checksum != null) && !recorded.equals(checksum)) {
+                return null;
+            }
+            long rows = dis.readLong();
+            dis.readLong();
+            int          count   = dis.readInt();
+            List<Column> columns = new ArrayList<Column>(count);
+            for (int c = 0; c < count; c++) {
+                String name             = dis.readUTF();
+                byte   type             = dis.readByte();
+                long   dictionaryOffset = dis.readLong();
+                int    dictionaryLength = dis.readInt();
+                int    dictionarySize   = dis.readInt();
+                int    blocks           = dis.readInt();
+                List<Block> list = new ArrayList<Block>(blocks);
+                for (int i = 0; i < blocks; i++) {
+                    long offset = dis.readLong();
+                    int  length = dis.readInt();
+                    int  rowsOf = dis.readInt();
+                    if (type == ColumnarLog.TYPE_TIME) {
+                        list.add(new Block(offset, length, rowsOf,
+                                dis.readLong(), dis.readLong(), null, null));
+                    }
+                    else {
+                        list.add(new Block(offset, length, rowsOf, 0L, 0L,
+                                readValue(dis), readValue(dis)));
+                    }
+                }
+                columns.add(new Column(name, type, dictionaryOffset,
+                        dictionaryLength, dictionarySize,
+                        Collections.unmodifiableList(list)));
+            }
+            ColumnarFile result = new ColumnarFile(channel, size, rows,
+                    Collections.unmodifiableList(columns));
+            result.bytesRead = tail.length + footer;
+            opened = true;
+            return result;
+        }
+        finally {
+            if (!opened) {
+                channel.close();
+            }
+        }
+    }
+
+    private static byte[] readValue(DataInputStream dis) throws IOException {
+        byte[] value = new byte[dis.readInt()];
+        dis.readFully(value);
+        return value;
+    }
+
+    private static void readFully(FileChannel channel, long position, byte[] b)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(b);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of columnar file.");
+            }
+        }
+    }
+
+    /**
+     * Read and decompress a range of the file.
+     */
+    private byte[] inflate(long offset, int length) throws IOException {
+        byte[] compressed = new byte[length];
+        readFully(channel, offset, compressed);
+        bytesRead += length;
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] out   = new byte[Math.max(1024, length * 4)];
+            int    count = 0;
+            while (!inflater.finished()) {
+                if (count == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                int inflated = inflater.inflate(out, count, out.length - count);
+                if ((inflated == 0) && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated block in columnar file.");
+                }
+                count += inflated;
+            }
+            return Arrays.copyOf(out, count);
+        }
+        catch (DataFormatException dfe) {
+            throw new IOException("Corrupt block in columnar file.", dfe);
+        }
+        finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Accessor method for the number of rows.
+     * @return The number of rows.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Accessor method for the size of the file.
+     * @return The size in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Accessor method for the number of bytes read so far.
+     * @return The number of bytes.
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Accessor method for the columns.
+     * @return The columns in the order of the #Fields line.
+     */
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Find a column by name.
+     *
+     * @param name The name from the #Fields line.
+     * @return The column, or null if the file has no such column.
+     */
+    public Column getColumn(String name) {
+        for (Column column : columns) {
+            if (column.name.equals(name)) {
+                return column;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Accessor method for the time column.
+     * @return The time column, or null if the file has none.
+     */
+    public Column getTimeColumn() {
+        for (Column column : columns) {
+            if (column.isTime()) {
+                return column;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read the distinct values of a string column.
+     *
+     * @param column The column.
+     * @return The values, indexed as in <code>readIds()</code>.
+     * @throws IOException Thrown if the file cannot be read.
+     */
+    public String[] readDictionary(Column column) throws IOException {
+        if (column.isTime()) {
+            return new String[0];
+        }
+        byte[]   b      = inflate(column.dictionaryOffset, column.dictionaryLength);
+        int[]    p      = new int[1];
+        int      count  = (int)readVarLong(b, p);
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            int length = (int)readVarLong(b, p);
+            values[i] = new String(b, p[0], length, StandardCharsets.UTF_8);
+            p[0] += length;
+        }
+        return values;
+    }
+
+    /**
+     * Read the value indexes of a block of a string column.
+     *
+     * @param block The block.
+     * @return An index into the dictionary for every row of the block.
+     * @throws IOException Thrown if the file cannot be read.
+     */
+    public int[] readIds(Block block) throws IOException {
+        byte[] b   = inflate(block.offset, block.length);
+        int[]  p   = new int[1];
+        int[]  ids = new int[block.rows];
+        for (int i = 0; i < block.rows; i++) {
+            ids[i] = (int)readVarLong(b, p);
+        }
+        return ids;
+    }
+
+    /**
+     * Read the times of a block of the time column.
+     *
+     * @param block The block.
+     * @return Epoch milliseconds for every row of the block
+     * (<code>LogTimestamps.NONE</code> if the row holds no valid time).
+     * @throws IOException Thrown if the file cannot be read.
+     */
+    public long[] readTimes(Block block) throws IOException {
+        byte[] b        = inflate(block.offset, block.length);
+        int[]  p        = new int[1];
+        long[] times    = new long[block.rows];
+        long   previous = 0;
+        for (int i = 0; i < block.rows; i++) {
+            long zigzag = readVarLong(b, p);
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            times[i] = previous;
+        }
+        return times;
+    }
+
+    private static long readVarLong(byte[] b, int[] position) throws IOException {
+        long value = 0;
+        int  shift = 0;
+        int  p     = position[0];
+        while (true) {
+            if ((p >= b.length) || (shift > 63)) {
+                throw new IOException("Corrupt block in columnar file.");
+            }
+            byte next = b[p++];
+            value |= (long)(next & 0x7f) << shift;
+            if ((next & 0x80) == 0) {
+                break;
+            }
+            shift += 7;
+        }
+        position[0] = p;
+        return value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,688 @@
+package mil.nga.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Columnar copy of a structured log in the Extended Log Format written by
+ * OpenAM (the audit logs of the policy agents and the access and error
+ * logs of the server):
+ * <pre>
+ * #Version: 1.0
+ * #Fields: time	Data	LoginID	ContextID	IPAddr	LogLevel	...
+ * "2026-01-31 23:59:59"	"Login Success"	id=amadmin,ou=user,...	...
+ * </pre>
+ * Fields are separated by tabs (or by spaces if the <code>#Fields</code>
+ * line holds no tab) and may be quoted.  Lines before the
+ * <code>#Fields</code> line are not converted.
+ *
+ * Each column is stored in blocks of <code>BLOCK_ROWS</code> rows so that a
+ * scan of a single column reads only that column:
+ *
+ * <li>the time column (the field named time, date or timestamp) holds
+ * epoch milliseconds, delta encoded</li>
+ * <li>every other column is dictionary encoded: the distinct values are
+ * stored once and each row holds the index of its value</li>
+ *
+ * Every block is deflated and its minimum and maximum values are kept in
+ * the footer (see <code>ColumnarFile</code>), so blocks outside a time
+ * range, or that cannot hold a value, are skipped without being read.  The
+ * conversion is built while the log is archived, from the same buffers
+ * that are checksummed, and is kept in a hidden sidecar file
+ * (.&lt;archive&gt;.columns).  The distinct values of a log are held in
+ * memory until the log has been read; a log whose values exceed
+ * <code>MAX_DICTIONARY_BYTES</code> is not converted.
+ */
+public class ColumnarLog extends LineSink {
+
+    /**
+     * Identifies a columnar file (and its layout version).  It appears at
+     * the start and at the end of the file.
+     */
+    static final byte[] MAGIC =
+            new byte[] { 'L', 'M', 'C', 'O', 'L', 'S', '0', '1' };
+
+    /**
+     * Column of epoch milliseconds.
+     */
+    public static final byte TYPE_TIME = 1;
+
+    /**
+     * Dictionary encoded column of strings.
+     */
+    public static final byte TYPE_STRING = 2;
+
+    /**
+     * Rows per block.
+     */
+    public static final int BLOCK_ROWS = 8192;
+
+    /**
+     * Largest total size of the distinct values of all columns.
+     */
+    public static final long MAX_DICTIONARY_BYTES = 64L * 1024L * 1024L;
+
+    /**
+     * Names of the field holding the time of a record.
+     */
+    private static final String[] TIME_FIELDS =
+            new String[] { "time", "date", "timestamp" };
+
+    private static final byte[] FIELDS = "#Fields:".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Distinct values of a column, assigned indexes in order of first
+     * appearance.  Values are kept in a single arena so that looking up a
+     * value allocates nothing.
+     */
+    static class Dictionary {
+
+        private int[]  table   = new int[1024];
+        private byte[] arena   = new byte[4096];
+        private int[]  offsets = new int[256];
+        private int[]  lengths = new int[256];
+        private int    size    = 0;
+        private int    used    = 0;
+
+        /**
+         * Find the index of a value, adding the value if it is new.
+         */
+        int indexOf(byte[] b, int offset, int length) {
+            int mask = table.length - 1;
+            int slot = (int)HyperLogLog.hash(b, offset, length) & mask;
+            while (table[slot] != 0) {
+                int id = table[slot] - 1;
+                if (equals(id, b, offset, length)) {
+                    return id;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+                lengths = Arrays.copyOf(lengths, size * 2);
+            }
+            if (used + length > arena.length) {
+                arena = Arrays.copyOf(arena, Math.max(arena.length * 2, used + length));
+            }
+            System.arraycopy(b, offset, arena, used, length);
+            offsets[size] = used;
+            lengths[size] = length;
+            used += length;
+            table[slot] = ++size;
+            if (size * 2 > table.length) {
+                rehash();
+            }
+            return size - 1;
+        }
+
+        private boolean equals(int id, byte[] b, int offset, int length) {
+            if (lengths[id] != length) {
+                return false;
+            }
+            int start = offsets[id];
+            for (int i = 0; i < length; i++) {
+                if (arena[start + i] != b[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void rehash() {
+            table = new int[table.length * 2];
+            int mask = table.length - 1;
+            for (int id = 0; id < size; id++) {
+                int slot = (int)HyperLogLog.hash(arena, offsets[id], lengths[id]) & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = id + 1;
+            }
+        }
+
+        /**
+         * Compare two values as unsigned bytes.
+         */
+        int compare(int a, int b) {
+            return ColumnarLog.compare(arena, offsets[a], lengths[a],
+                    arena, offsets[b], lengths[b]);
+        }
+
+        int size() {
+            return size;
+        }
+
+        long bytes() {
+            return used;
+        }
+
+        void writeValue(DataOutputStream dos, int id) throws IOException {
+            dos.writeInt(lengths[id]);
+            dos.write(arena, offsets[id], lengths[id]);
+        }
+
+        void write(VarBuffer buffer) {
+            buffer.putVarLong(size);
+            for (int id = 0; id < size; id++) {
+                buffer.putVarLong(lengths[id]);
+                buffer.put(arena, offsets[id], lengths[id]);
+            }
+        }
+    }
+
+    /**
+     * Growable buffer of variable length integers.
+     */
+    static class VarBuffer {
+
+        byte[] bytes  = new byte[64 * 1024];
+        int    length = 0;
+
+        void putVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7fL) != 0) {
+                bytes[length++] = (byte)((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte)value;
+        }
+
+        void put(byte[] b, int offset, int count) {
+            ensure(count);
+            System.arraycopy(b, offset, bytes, length, count);
+            length += count;
+        }
+
+        private void ensure(int count) {
+            if (length + count > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + count));
+            }
+        }
+    }
+
+    /**
+     * A column being built: the values of the current block, and the
+     * compressed blocks already complete.
+     */
+    private static class Column {
+
+        private final String                name;
+        private final byte                  type;
+        private final Dictionary            dictionary;
+        private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        private final long[] times;
+        private final int[]  ids;
+        private int[]  marks;
+        private int    min;
+        private int    max;
+
+        // Footer entries, one per complete block.
+        private int    blocks    = 0;
+        private long[] offsets   = new long[16];
+        private int[]  lengths   = new int[16];
+        private int[]  rows      = new int[16];
+        private long[] minimums  = new long[16];
+        private long[] maximums  = new long[16];
+
+        private Column(String name, byte type) {
+            this.name = name;
+            this.type = type;
+            if (type == TYPE_TIME) {
+                times      = new long[BLOCK_ROWS];
+                ids        = null;
+                dictionary = null;
+            }
+            else {
+                times      = null;
+                ids        = new int[BLOCK_ROWS];
+                dictionary = new Dictionary();
+                marks      = new int[256];
+            }
+        }
+    }
+
+    private final LogTimestamps parser = new LogTimestamps();
+    private final Deflater      deflater = new Deflater();
+    private final VarBuffer     scratch  = new VarBuffer();
+    private Column[] columns   = null;
+    private byte     separator = '\t';
+    private int[]    starts    = null;
+    private int[]    ends      = null;
+    private int      pending   = 0;
+    private long     rows      = 0;
+    private long     skipped   = 0;
+    private boolean  abandoned = false;
+    private byte[]   deflated  = new byte[64 * 1024];
+
+    /**
+     * Constructor.
+     */
+    public ColumnarLog() {
+    }
+
+    /**
+     * Calculate the sidecar file holding the columnar copy of an archive.
+     * The name starts with a dot so that the archive store treats it as
+     * bookkeeping rather than as an archive.
+     *
+     * @param archive The archive.
+     * @return The columnar file.
+     */
+    public static Path sidecarOf(Path archive) {
+        return archive.resolveSibling("." + archive.getFileName().toString()
+                + ".columns");
+    }
+
+    /**
+     * Calculate the sidecar file holding the columnar copy of an archive.
+     *
+     * @param archive The archive.
+     * @return The columnar file.
+     */
+    @Override
+    public Path getSidecar(Path archive) {
+        return sidecarOf(archive);
+    }
+
+    @Override
+    protected void line(byte[] b, int offset, int length) {
+        if (abandoned) {
+            return;
+        }
+        int end = offset + length;
+        if ((end > offset) && (b[end - 1] == '\r')) {
+            end--;
+        }
+        if (end == offset) {
+            return;
+        }
+        if (b[offset] == '#') {
+            if ((columns == null) && (end - offset > FIELDS.length) &&
+                    startsWith(b, offset, FIELDS)) {
+                header(b, offset + FIELDS.length, end);
+            }
+            return;
+        }
+        if (columns == null) {
+            skipped++;
+            return;
+        }
+        split(b, offset, end);
+        int row = pending;
+        for (int c = 0; c < columns.length; c++) {
+            Column column = columns[c];
+            int    start  = starts[c];
+            int    stop   = ends[c];
+            if (column.type == TYPE_TIME) {
+                column.times[row] = (stop > start) ?
+                        parser.parse(b, start, stop - start) : LogTimestamps.NONE;
+            }
+            else {
+                int id = column.dictionary.indexOf(b, start, stop - start);
+                column.ids[row] = id;
+                track(column, id);
+            }
+        }
+        rows++;
+        if (++pending == BLOCK_ROWS) {
+            flush();
+        }
+        if (rows % 1024 == 0) {
+            checkSize();
+        }
+    }
+
+    @Override
+    protected void finished() {
+        if (!abandoned && (pending > 0)) {
+            flush();
+        }
+        checkSize();
+        deflater.end();
+    }
+
+    /**
+     * Read the names of the columns from the #Fields line.
+     */
+    private void header(byte[] b, int start, int end) {
+        separator = ' ';
+        for (int i = start; i < end; i++) {
+            if (b[i] == '\t') {
+                separator = '\t';
+                break;
+            }
+        }
+        int[] first = new int[256];
+        int[] last  = new int[256];
+        int   count = 0;
+        int   p     = start;
+        while (count < first.length) {
+            while ((p < end) && (b[p] == ' ')) {
+                p++;
+            }
+            if (p >= end) {
+                break;
+            }
+            p = field(b, p, end, first, last, count) + 1;
+            while ((last[count] > first[count]) && (b[last[count] - 1] == ' ')) {
+                last[count]--;
+            }
+            if (last[count] > first[count]) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        columns = new Column[count];
+        boolean timed = false;
+        for (int c = 0; c < count; c++) {
+            String name = new String(b, first[c], last[c] - first[c],
+                    StandardCharsets.UTF_8);
+            byte   type = TYPE_STRING;
+            if (!timed) {
+                for (String time : TIME_FIELDS) {
+                    if (time.equalsIgnoreCase(name)) {
+                        type  = TYPE_TIME;
+                        timed = true;
+                    }
+                }
+            }
+            columns[c] = new Column(name, type);
+        }
+        starts = new int[count];
+        ends   = new int[count];
+    }
+
+    /**
+     * Locate the fields of a record.  Missing fields are empty and extra
+     * fields are ignored.
+     */
+    private void split(byte[] b, int start, int end) {
+        int p = start;
+        for (int c = 0; c < columns.length; c++) {
+            if (p > end) {
+                starts[c] = end;
+                ends[c]   = end;
+                continue;
+            }
+            p = field(b, p, end, starts, ends, c) + 1;
+            if (separator == ' ') {
+                while ((p < end) && (b[p] == ' ')) {
+                    p++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Locate a single field starting at a position, removing any quotes.
+     *
+     * @return The position of the separator following the field (or the
+     * end of the line).
+     */
+    private int field(byte[] b, int p, int end, int[] first, int[] last, int index) {
+        if ((p < end) && (b[p] == '"')) {
+            int close = p + 1;
+            while ((close < end) && !((b[close] == '"') &&
+                    ((close + 1 == end) || (b[close + 1] == separator)))) {
+                close++;
+            }
+            if (close < end) {
+                first[index] = p + 1;
+                last[index]  = close;
+                return close + 1;
+            }
+        }
+        int stop = p;
+        while ((stop < end) && (b[stop] != separator)) {
+            stop++;
+        }
+        first[index] = p;
+        last[index]  = stop;
+        return stop;
+    }
+
+    /**
+     * Track the smallest and largest value of the current block.  Each
+     * distinct value is compared once per block.
+     */
+    private void track(Column column, int id) {
+        if (id >= column.marks.length) {
+            column.marks = Arrays.copyOf(column.marks,
+                    Math.max(column.marks.length * 2, id + 1));
+        }
+        int mark = column.blocks + 1;
+        if (column.marks[id] == mark) {
+            return;
+        }
+        column.marks[id] = mark;
+        if ((pending == 0) || (column.dictionary.compare(id, column.min) < 0)) {
+            column.min = id;
+        }
+        if ((pending == 0) || (column.dictionary.compare(id, column.max) > 0)) {
+            column.max = id;
+        }
+    }
+
+    /**
+     * Encode and compress the pending rows of every column.
+     */
+    private void flush() {
+        for (Column column : columns) {
+            scratch.length = 0;
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            if (column.type == TYPE_TIME) {
+                long previous = 0;
+                for (int i = 0; i < pending; i++) {
+                    long time = column.times[i];
+                    scratch.putVarLong(zigzag(time - previous));
+                    previous = time;
+                    if (time != LogTimestamps.NONE) {
+                        min = Math.min(min, time);
+                        max = Math.max(max, time);
+                    }
+                }
+            }
+            else {
+                for (int i = 0; i < pending; i++) {
+                    scratch.putVarLong(column.ids[i]);
+                }
+                min = column.min;
+                max = column.max;
+            }
+            int block = column.blocks;
+            if (block == column.offsets.length) {
+                int size = block * 2;
+                column.offsets  = Arrays.copyOf(column.offsets, size);
+                column.lengths  = Arrays.copyOf(column.lengths, size);
+                column.rows     = Arrays.copyOf(column.rows, size);
+                column.minimums = Arrays.copyOf(column.minimums, size);
+                column.maximums = Arrays.copyOf(column.maximums, size);
+            }
+            column.offsets[block]  = column.data.size();
+            column.lengths[block]  = deflate(scratch.bytes, 0, scratch.length, column.data);
+            column.rows[block]     = pending;
+            column.minimums[block] = min;
+            column.maximums[block] = max;
+            column.blocks++;
+        }
+        pending = 0;
+    }
+
+    private int deflate(byte[] b, int offset, int length, ByteArrayOutputStream out) {
+        deflater.reset();
+        deflater.setInput(b, offset, length);
+        deflater.finish();
+        int total = 0;
+        while (!deflater.finished()) {
+            int count = deflater.deflate(deflated);
+            out.write(deflated, 0, count);
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Give up on a log whose distinct values would take too much memory.
+     */
+    private void checkSize() {
+        if ((columns == null) || abandoned) {
+            return;
+        }
+        long bytes = 0;
+        for (Column column : columns) {
+            if (column.dictionary != null) {
+                bytes += column.dictionary.bytes();
+            }
+            bytes += column.data.size();
+        }
+        if (bytes > MAX_DICTIONARY_BYTES) {
+            abandoned = true;
+            columns   = null;
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static boolean startsWith(byte[] b, int offset, byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if (b[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compare two byte ranges as unsigned bytes (the order of UTF-8
+     * encoded strings by code point).
+     */
+    static int compare(byte[] a, int aOffset, int aLength,
+            byte[] b, int bOffset, int bLength) {
+        int length = Math.min(aLength, bLength);
+        for (int i = 0; i < length; i++) {
+            int x = a[aOffset + i] & 0xff;
+            int y = b[bOffset + i] & 0xff;
+            if (x != y) {
+                return x - y;
+            }
+        }
+        return aLength - bLength;
+    }
+
+    /**
+     * Accessor method for the number of records converted.
+     * @return The number of rows.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Accessor method for the number of lines preceding the
+     * <code>#Fields</code> line, which are not converted.
+     * @return The number of lines.
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Accessor method for whether the conversion was given up because the
+     * distinct values exceeded <code>MAX_DICTIONARY_BYTES</code>.
+     * @return True if the log was not converted.
+     */
+    public boolean isAbandoned() {
+        return abandoned;
+    }
+
+    /**
+     * Write the columnar file: the column data followed by a footer
+     * locating every block.
+     *
+     * @param os The destination (not closed).
+     * @param checksum The checksum of the content converted, recorded so
+     * that a stale conversion is detected.
+     * @throws IOException Thrown if the file cannot be written, or if
+     * there is nothing to write (no rows, or the conversion was
+     * abandoned).
+     */
+    @Override
+    public void write(OutputStream os, String checksum) throws IOException {
+        finish();
+        if ((columns == null) || (rows == 0)) {
+            throw new IOException("No records were converted.");
+        }
+        DataOutputStream dos = new DataOutputStream(os);
+        dos.write(MAGIC);
+        long[] dictionaries = new long[columns.length];
+        int[]  sizes        = new int[columns.length];
+        long[] bases        = new long[columns.length];
+        Deflater local = new Deflater();
+        try {
+            for (int c = 0; c < columns.length; c++) {
+                Column column = columns[c];
+                if (column.dictionary != null) {
+                    scratch.length = 0;
+                    column.dictionary.write(scratch);
+                    ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+                    local.reset();
+                    local.setInput(scratch.bytes, 0, scratch.length);
+                    local.finish();
+                    while (!local.finished()) {
+                        int count = local.deflate(deflated);
+                        chunk.write(deflated, 0, count);
+                    }
+                    dictionaries[c] = dos.size();
+                    sizes[c]        = chunk.size();
+                    chunk.writeTo(dos);
+                }
+                bases[c] = dos.size();
+                column.data.writeTo(dos);
+            }
+        }
+        finally {
+            local.end();
+        }
+        int footer = dos.size();
+        dos.writeUTF(checksum);
+        dos.writeLong(rows);
+        dos.writeLong(skipped);
+        dos.writeInt(columns.length);
+        for (int c = 0; c < columns.length; c++) {
+            Column column = columns[c];
+            dos.writeUTF(column.name);
+            dos.writeByte(column.type);
+            dos.writeLong(dictionaries[c]);
+            dos.writeInt(sizes[c]);
+            dos.writeInt((column.dictionary == null) ? 0 : column.dictionary.size());
+            dos.writeInt(column.blocks);
+            for (int i = 0; i < column.blocks; i++) {
+                dos.writeLong(bases[c] + column.offsets[i]);
+                dos.writeInt(column.lengths[i]);
+                dos.writeInt(column.rows[i]);
+                if (column.type == TYPE_TIME) {
+                    dos.writeLong(column.minimums[i]);
+                    dos.writeLong(column.maximums[i]);
+                }
+                else {
+                    column.dictionary.writeValue(dos, (int)column.minimums[i]);
+                    column.dictionary.writeValue(dos, (int)column.maximums[i]);
+                }
+            }
+        }
+        dos.writeInt(dos.size() - footer);
+        dos.write(MAGIC);
+        dos.flush();
+    }
+}
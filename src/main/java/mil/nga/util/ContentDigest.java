@@ -0,0 +1,289 @@
+package mil.nga.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.Checksum;
+
+/**
+ * Accumulates the size and checksums of a stream of bytes as the bytes are
+ * handed to it.  The intent is that callers feed the same buffers they are
+ * already copying or compressing so that the checksums cost no additional
+ * I/O.
+ *
+ * The primary checksum is CRC32C, which is hardware accelerated on modern
+ * processors.  CRC32C was added to the JDK in Java 9; when running on an
+ * older JVM the implementation falls back to CRC32.  The algorithm name is
+ * therefore always recorded alongside the value (e.g.
+ * <code>crc32c:1a2b3c4d</code>) so that values computed by different JVMs
+ * are never confused.  SHA-256 is optional as it is considerably more
+ * expensive.
+ */
+public class ContentDigest {
+
+    /**
+     * Name of the CRC32C implementation added in Java 9.
+     */
+    private static final String CRC32C_CLASS = "java.util.zip.CRC32C";
+
+    /**
+     * Name of the CRC32C algorithm.
+     */
+    public static final String CRC32C = "crc32c";
+
+    /**
+     * Name of the CRC32 algorithm.
+     */
+    public static final String CRC32 = "crc32";
+
+    /**
+     * Separator between the algorithm name and the checksum value.
+     */
+    public static final String ALGORITHM_SEPARATOR = ":";
+
+    /**
+     * Value recorded when a checksum was not computed.
+     */
+    public static final String NONE = "-";
+
+    private final Checksum       crc;
+    private final String         crcAlgorithm;
+    private final MessageDigest  sha256;
+    private final List<LineSink> sinks       = new ArrayList<LineSink>();
+    private long                 size        = 0;
+    private String               sha256Value = null;
+
+    /**
+     * Constructor using CRC32C where available.
+     *
+     * @param computeSha256 True if the SHA-256 digest is to be computed in
+     * addition to the CRC.
+     */
+    public ContentDigest(boolean computeSha256) {
+        this(computeSha256, CRC32C);
+    }
+
+    /**
+     * Constructor allowing the caller to select the CRC algorithm, which
+     * is required when verifying a previously recorded value.
+     *
+     * @param computeSha256 True if the SHA-256 digest is to be computed in
+     * addition to the CRC.
+     * @param algorithm The CRC algorithm (crc32c or crc32).  CRC32 is used
+     * if CRC32C is requested but not available on this JVM.
+     */
+    public ContentDigest(boolean computeSha256, String algorithm) {
+        Checksum checksum = null;
+        if (CRC32C.equals(algorithm)) {
+            try {
+                checksum  = (Checksum)Class.forName(CRC32C_CLASS)
+                        .getDeclaredConstructor().newInstance();
+            }
+            catch (Exception e) {
+                algorithm = CRC32;
+            }
+        }
+        else {
+            algorithm = CRC32;
+        }
+        if (checksum == null) {
+            checksum = new java.util.zip.CRC32();
+        }
+        crc          = checksum;
+        crcAlgorithm = algorithm;
+
+        MessageDigest digest = null;
+        if (computeSha256) {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            }
+            catch (NoSuchAlgorithmException nsae) {
+                // Every JVM is required to support SHA-256.
+            }
+        }
+        sha256 = digest;
+    }
+
+    /**
+     * Name of the CRC algorithm that will be used on this JVM.
+     *
+     * @return Either crc32c or crc32.
+     */
+    public static String getCrcAlgorithm() {
+        return new ContentDigest(false, CRC32C).crcAlgorithm;
+    }
+
+    /**
+     * Extract the algorithm name from a recorded checksum value.
+     *
+     * @param value A value as returned by <code>getCrc()</code>.
+     * @return The algorithm name, or null if the value carries none.
+     */
+    public static String algorithmOf(String value) {
+        if ((value == null) || (value.indexOf(ALGORITHM_SEPARATOR) <= 0)) {
+            return null;
+        }
+        return value.substring(0, value.indexOf(ALGORITHM_SEPARATOR));
+    }
+
+    /**
+     * Add bytes to the digest.
+     *
+     * @param buffer The data.
+     * @param offset The offset of the first byte.
+     * @param length The number of bytes.
+     */
+    public void update(byte[] buffer, int offset, int length) {
+        crc.update(buffer, offset, length);
+        if (sha256 != null) {
+            sha256.update(buffer, offset, length);
+        }
+        for (LineSink sink : sinks) {
+            sink.update(buffer, offset, length);
+        }
+        size += length;
+    }
+
+    /**
+     * Attach a summary (keyword filter, rollup, stack trace summary,
+     * columnar conversion) to
+     * be fed the same bytes as the digest, so that the content is
+     * summarized on the pass that checksums it.
+     *
+     * @param sink The summary.
+     */
+    public void addSink(LineSink sink) {
+        sinks.add(sink);
+    }
+
+    /**
+     * Accessor method for the attached summaries.
+     * @return The summaries, in the order they were attached.
+     */
+    public List<LineSink> getSinks() {
+        return Collections.unmodifiableList(sinks);
+    }
+
+    /**
+     * Accessor method for the number of bytes added to the digest.
+     * @return The number of bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Accessor method for the CRC (prefixed by the algorithm name).
+     * @return The CRC, e.g. <code>crc32c:1a2b3c4d</code>.
+     */
+    public String getCrc() {
+        return crcAlgorithm + ALGORITHM_SEPARATOR
+                + String.format("%08x", crc.getValue());
+    }
+
+    /**
+     * Accessor method for the SHA-256 digest (prefixed by the algorithm
+     * name).  Once retrieved no further bytes may be added to the digest.
+     * @return The digest, or <code>NONE</code> if it was not computed.
+     */
+    public String getSha256() {
+        if (sha256 == null) {
+            return NONE;
+        }
+        if (sha256Value == null) {
+            sha256Value = "sha256" + ALGORITHM_SEPARATOR + toHex(sha256.digest());
+        }
+        return sha256Value;
+    }
+
+    /**
+     * Calculate the CRC of the concatenation of two byte sequences from the
+     * CRCs of each (as zlib's <code>crc32_combine()</code> does), so that a
+     * file that is appended to can be checksummed without being read again.
+     *
+     * @param first CRC of the first sequence (as returned by
+     * <code>getCrc()</code>).
+     * @param second CRC of the second sequence.
+     * @param secondLength Length of the second sequence in bytes.
+     * @return The CRC of the concatenation.
+     * @throws IllegalArgumentException Thrown if the two values were not
+     * calculated with the same algorithm.
+     */
+    public static String combine(String first, String second, long secondLength) {
+        String algorithm = algorithmOf(first);
+        if ((algorithm == null) || !algorithm.equals(algorithmOf(second))) {
+            throw new IllegalArgumentException("Unable to combine [ "
+                    + first
+                    + " ] with [ "
+                    + second
+                    + " ].");
+        }
+        long crc1 = Long.parseLong(first.substring(algorithm.length() + 1), 16);
+        long crc2 = Long.parseLong(second.substring(algorithm.length() + 1), 16);
+        if (secondLength > 0) {
+            // Operator advancing a CRC over one zero bit, then over two.
+            long[] odd  = new long[32];
+            long[] even = new long[32];
+            odd[0] = CRC32C.equals(algorithm) ? 0x82f63b78L : 0xedb88320L;
+            long row = 1;
+            for (int n = 1; n < 32; n++) {
+                odd[n] = row;
+                row  <<= 1;
+            }
+            gf2Square(even, odd);
+            gf2Square(odd, even);
+            // Apply the operator for each set bit of the length (in bytes).
+            long length = secondLength;
+            do {
+                gf2Square(even, odd);
+                if ((length & 1) != 0) {
+                    crc1 = gf2Times(even, crc1);
+                }
+                length >>= 1;
+                if (length == 0) {
+                    break;
+                }
+                gf2Square(odd, even);
+                if ((length & 1) != 0) {
+                    crc1 = gf2Times(odd, crc1);
+                }
+                length >>= 1;
+            } while (length != 0);
+        }
+        return algorithm + ALGORITHM_SEPARATOR
+                + String.format("%08x", crc1 ^ crc2);
+    }
+
+    private static long gf2Times(long[] matrix, long vector) {
+        long sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void gf2Square(long[] square, long[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = gf2Times(matrix, matrix[n]);
+        }
+    }
+
+    /**
+     * Convert a byte array into a lower case hex string.
+     *
+     * @param bytes The bytes to convert.
+     * @return The hex string.
+     */
+    public static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0x0f, 16));
+            sb.append(Character.forDigit(b & 0x0f, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,82 @@
+package mil.nga.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds each calling thread to a fraction of one CPU.  Threads call
+ * <code>pace()</code> regularly while doing CPU-bound work; once a thread
+ * has used a slice of CPU time it is put to sleep for long enough that
+ * its CPU time is the configured fraction of the elapsed time.  Where the
+ * JVM does not support thread CPU time the throttle does nothing.
+ */
+public class CpuThrottle {
+
+    /**
+     * CPU time a thread may use between sleeps.
+     */
+    private static final long SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    /**
+     * Source of the per-thread CPU time.
+     */
+    private static final ThreadMXBean THREADS =
+            ManagementFactory.getThreadMXBean();
+
+    private final double fraction;
+
+    /**
+     * CPU time of each thread when it last slept.
+     */
+    private final ThreadLocal<long[]> last = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[] { cpuTime() };
+        }
+    };
+
+    /**
+     * Constructor.
+     *
+     * @param fraction The fraction of a CPU each thread may use (e.g. 0.25).
+     * Values of one or more (or less than or equal to zero) disable the
+     * throttle.
+     */
+    public CpuThrottle(double fraction) {
+        this.fraction = fraction;
+    }
+
+    /**
+     * Sleep if the calling thread has used its share of CPU.
+     *
+     * @throws InterruptedException Thrown if the thread is interrupted
+     * while sleeping.
+     */
+    public void pace() throws InterruptedException {
+        if ((fraction <= 0) || (fraction >= 1) ||
+                !THREADS.isCurrentThreadCpuTimeSupported()) {
+            return;
+        }
+        long[] state = last.get();
+        long   now   = cpuTime();
+        long   used  = now - state[0];
+        if (used >= SLICE_NANOS) {
+            state[0] = now;
+            TimeUnit.NANOSECONDS.sleep((long)(used * (1.0 - fraction) / fraction));
+        }
+    }
+
+    /**
+     * Accessor method for the fraction of a CPU allowed per thread.
+     * @return The fraction.
+     */
+    public double getFraction() {
+        return fraction;
+    }
+
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ?
+                THREADS.getCurrentThreadCpuTime() : 0;
+    }
+}
@@ -0,0 +1,302 @@
+package mil.nga.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Rebuilds a new version of a file from an old version (the basis) and
+ * the new content using the rsync algorithm.  The basis is cut into
+ * fixed size blocks and a weak rolling checksum and a strong (MD5)
+ * checksum of every block is recorded.  The new content is then scanned
+ * with a window of one block: wherever the rolling checksum of the window
+ * and then its strong checksum match a block of the basis, the block is
+ * copied from the basis, otherwise the byte under the window is a literal.
+ * Content appended to a file, or inserted into it, therefore costs only
+ * the new bytes plus at most a block.
+ *
+ * The caller should compare a checksum of the rebuilt file with one of
+ * the new content; the strong checksum makes a false block match
+ * vanishingly unlikely, but not impossible.  Instances are not thread
+ * safe.
+ */
+public class DeltaCopy {
+
+    /**
+     * Smallest block size used.
+     */
+    public static final int MIN_BLOCK_SIZE = 2 * 1024;
+
+    /**
+     * Largest block size used.
+     */
+    public static final int MAX_BLOCK_SIZE = 64 * 1024;
+
+    /**
+     * Size of the buffer through which the new content is scanned.
+     */
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private static final int STRONG_LENGTH = 16;
+
+    private final FileChannel   basis;
+    private final int           blockSize;
+    private final int           blocks;
+    private final int[]         weak;
+    private final byte[]        strong;
+    private final int[]         heads;
+    private final int[]         next;
+    private final MessageDigest md5;
+    private long matched = 0;
+    private long literal = 0;
+
+    /**
+     * Constructor.  Reads the basis once to build its block signatures.
+     *
+     * @param basis The old version of the file.
+     * @throws IOException Thrown if the basis cannot be read.
+     */
+    public DeltaCopy(FileChannel basis) throws IOException {
+        this(basis, blockSizeOf(basis.size()));
+    }
+
+    /**
+     * Constructor.  Reads the basis once to build its block signatures.
+     *
+     * @param basis The old version of the file.
+     * @param blockSize The block size.
+     * @throws IOException Thrown if the basis cannot be read.
+     */
+    public DeltaCopy(FileChannel basis, int blockSize) throws IOException {
+        this.basis     = basis;
+        this.blockSize = blockSize;
+        this.md5       = newMd5();
+        long count     = basis.size() / blockSize;
+        if (count > Integer.MAX_VALUE / STRONG_LENGTH) {
+            throw new IOException("Basis of [ " + basis.size()
+                    + " ] bytes is too large for a block size of [ "
+                    + blockSize + " ].");
+        }
+        this.blocks = (int)count;
+        this.weak   = new int[blocks];
+        this.strong = new byte[blocks * STRONG_LENGTH];
+        this.heads  = new int[Math.max(16, Integer.highestOneBit(Math.max(1, blocks)) * 2)];
+        this.next   = new int[blocks];
+        Arrays.fill(heads, -1);
+
+        ByteBuffer buffer = ByteBuffer.allocate(blockSize);
+        for (int i = 0; i < blocks; i++) {
+            buffer.clear();
+            while (buffer.hasRemaining()) {
+                if (basis.read(buffer, (long)i * blockSize + buffer.position()) < 0) {
+                    throw new IOException("Basis truncated while it was read.");
+                }
+            }
+            byte[] b = buffer.array();
+            weak[i] = weakOf(b, 0, blockSize);
+            md5.update(b, 0, blockSize);
+            digest(strong, i * STRONG_LENGTH);
+            int slot = slotOf(weak[i]);
+            next[i]     = heads[slot];
+            heads[slot] = i;
+        }
+    }
+
+    /**
+     * Choose a block size for a basis: about the square root of its size,
+     * as rsync does, so that both the number of signatures and the bytes
+     * resent around a change stay small.
+     *
+     * @param size The size of the basis.
+     * @return The block size.
+     */
+    public static int blockSizeOf(long size) {
+        long root = (long)Math.sqrt((double)size);
+        return (int)Math.max(MIN_BLOCK_SIZE, Math.min(MAX_BLOCK_SIZE,
+                Long.highestOneBit(Math.max(1, root))));
+    }
+
+    private static MessageDigest newMd5() throws IOException {
+        try {
+            return MessageDigest.getInstance("MD5");
+        }
+        catch (NoSuchAlgorithmException nsae) {
+            throw new IOException(nsae);
+        }
+    }
+
+    private void digest(byte[] out, int offset) throws IOException {
+        try {
+            md5.digest(out, offset, STRONG_LENGTH);
+        }
+        catch (DigestException de) {
+            throw new IOException(de);
+        }
+    }
+
+    private int slotOf(int weakSum) {
+        int h = weakSum * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (heads.length - 1);
+    }
+
+    /**
+     * The rsync weak checksum: the sum of the bytes (a) and the sum of
+     * the running sums (b), each modulo 2^16.
+     */
+    private static int weakOf(byte[] b, int offset, int length) {
+        int a = 0;
+        int s = 0;
+        for (int i = 0; i < length; i++) {
+            a += b[offset + i] & 0xff;
+            s += a;
+        }
+        return (a & 0xffff) | (s << 16);
+    }
+
+    /**
+     * Write the new content, copying the blocks it shares with the basis
+     * from the basis.
+     *
+     * @param source The new content.
+     * @param out Receives the rebuilt file.
+     * @throws IOException Thrown if any of the streams fails.
+     */
+    public void copy(InputStream source, OutputStream out) throws IOException {
+
+        byte[]  buf      = new byte[Math.max(BUFFER_SIZE, 4 * blockSize)];
+        byte[]  window   = new byte[STRONG_LENGTH];
+        byte[]  block    = new byte[blockSize];
+        int     length   = 0;
+        int     pos      = 0;
+        int     lit      = 0;
+        boolean eof      = false;
+        boolean rolling  = false;
+        int     a        = 0;
+        int     s        = 0;
+
+        while (true) {
+            if (!eof && (length - pos <= blockSize)) {
+                // Send the pending literal and slide the window to the
+                // front of the buffer; the rolling sums are unaffected.
+                write(out, buf, lit, pos - lit);
+                System.arraycopy(buf, pos, buf, 0, length - pos);
+                length -= pos;
+                pos     = 0;
+                lit     = 0;
+                while (length < buf.length) {
+                    int count = source.read(buf, length, buf.length - length);
+                    if (count < 0) {
+                        eof = true;
+                        break;
+                    }
+                    length += count;
+                }
+            }
+            if (length - pos < blockSize) {
+                break;
+            }
+            if (!rolling) {
+                int sums = weakOf(buf, pos, blockSize);
+                a       = sums & 0xffff;
+                s       = sums >>> 16;
+                rolling = true;
+            }
+            int match = find((a & 0xffff) | (s << 16), buf, pos, window);
+            if (match >= 0) {
+                write(out, buf, lit, pos - lit);
+                ByteBuffer target = ByteBuffer.wrap(block);
+                while (target.hasRemaining()) {
+                    if (basis.read(target, (long)match * blockSize + target.position()) < 0) {
+                        throw new IOException("Basis truncated while it was copied.");
+                    }
+                }
+                out.write(block);
+                matched += blockSize;
+                pos     += blockSize;
+                lit      = pos;
+                rolling  = false;
+            }
+            else if (pos + blockSize < length) {
+                int outgoing = buf[pos] & 0xff;
+                int incoming = buf[pos + blockSize] & 0xff;
+                a = (a - outgoing + incoming) & 0xffff;
+                s = (s - blockSize * outgoing + a) & 0xffff;
+                pos++;
+            }
+            else {
+                // End of the content: the remainder is literal.
+                break;
+            }
+        }
+        write(out, buf, lit, length - lit);
+    }
+
+    /**
+     * Look up the block of the basis matching the window.
+     *
+     * @return The index of the block, or -1 if none matches.
+     */
+    private int find(int weakSum, byte[] buf, int pos, byte[] window) throws IOException {
+        boolean digested = false;
+        for (int i = heads[slotOf(weakSum)]; i >= 0; i = next[i]) {
+            if (weak[i] != weakSum) {
+                continue;
+            }
+            if (!digested) {
+                md5.update(buf, pos, blockSize);
+                digest(window, 0);
+                digested = true;
+            }
+            boolean equal = true;
+            for (int j = 0; j < STRONG_LENGTH; j++) {
+                if (strong[i * STRONG_LENGTH + j] != window[j]) {
+                    equal = false;
+                    break;
+                }
+            }
+            if (equal) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void write(OutputStream out, byte[] b, int offset, int count)
+            throws IOException {
+        if (count > 0) {
+            out.write(b, offset, count);
+            literal += count;
+        }
+    }
+
+    /**
+     * Accessor method for the block size.
+     * @return The block size in bytes.
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Accessor method for the number of bytes copied from the basis.
+     * @return The number of bytes.
+     */
+    public long getMatched() {
+        return matched;
+    }
+
+    /**
+     * Accessor method for the number of bytes taken from the new content
+     * (those that would cross the network to a remote copy).
+     * @return The number of bytes.
+     */
+    public long getLiteral() {
+        return literal;
+    }
+}
@@ -0,0 +1,265 @@
+package mil.nga.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Builds a preset dictionary for Deflate from a set of sample files.  The
+ * approach is a simplified form of the "cover" algorithm used by zstd:
+ *
+ * <li>Every 8 byte substring (k-mer) of the samples is counted once per
+ * sample in which it appears, so content common to many files scores
+ * higher than content repeated within one file (which Deflate already
+ * handles without help).</li>
+ * <li>The samples are divided into one epoch per dictionary segment and
+ * the best scoring segment of each epoch is selected.  The k-mers of a
+ * selected segment are then zeroed so that later segments cover different
+ * content.</li>
+ * <li>Segments are concatenated with the highest scoring segments last,
+ * as Deflate encodes short distances (the end of the dictionary) more
+ * cheaply.</li>
+ *
+ * Training runs in time linear in the total sample size.
+ */
+public class DictionaryTrainer {
+
+    /**
+     * Largest useful dictionary.  Deflate can only reference the last 32
+     * KiB of history.
+     */
+    public static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+    /**
+     * Length of each k-mer.
+     */
+    private static final int K = 8;
+
+    /**
+     * Length of each dictionary segment.
+     */
+    public static final int SEGMENT_SIZE = 64;
+
+    /**
+     * Build a dictionary.
+     *
+     * @param samples The sample content (typically the start of each of a
+     * number of files).
+     * @param size The requested dictionary size (at most 32 KiB).
+     * @return The dictionary, which may be smaller than requested if the
+     * samples hold little common content.
+     */
+    public static byte[] train(List<byte[]> samples, int size) {
+
+        size = Math.max(SEGMENT_SIZE, Math.min(size, MAX_DICTIONARY_SIZE));
+
+        long total = 0;
+        for (byte[] sample : samples) {
+            total += sample.length;
+        }
+        if (total == 0) {
+            return new byte[0];
+        }
+
+        KmerCounts counts = new KmerCounts((int)Math.min(total, 1 << 24));
+        for (int s = 0; s < samples.size(); s++) {
+            byte[] sample = samples.get(s);
+            for (int i = 0; i + K <= sample.length; i++) {
+                counts.increment(kmer(sample, i), s);
+            }
+        }
+
+        // Divide the samples into epochs and take the best segment from
+        // each.
+        int            epochs    = Math.max(1, size / SEGMENT_SIZE);
+        long           epochSize = Math.max(SEGMENT_SIZE, total / epochs);
+        List<Segment>  selected  = new ArrayList<Segment>();
+        int            sample    = 0;
+        int            offset    = 0;
+        for (int e = 0; (e < epochs) && (sample < samples.size()); e++) {
+            Segment best      = null;
+            long    remaining = epochSize;
+            while ((remaining > 0) && (sample < samples.size())) {
+                byte[] data = samples.get(sample);
+                int    end  = (int)Math.min(data.length, offset + remaining);
+                Segment candidate = bestSegment(data, offset, end, counts);
+                if ((candidate != null) &&
+                        ((best == null) || (candidate.score > best.score))) {
+                    candidate.sample = sample;
+                    best = candidate;
+                }
+                remaining -= (end - offset);
+                if (end >= data.length) {
+                    sample++;
+                    offset = 0;
+                }
+                else {
+                    offset = end;
+                }
+            }
+            if ((best != null) && (best.score > 0)) {
+                byte[] data = samples.get(best.sample);
+                best.bytes = Arrays.copyOfRange(data, best.start,
+                        Math.min(data.length, best.start + SEGMENT_SIZE));
+                for (int i = best.start; i + K <= best.start + best.bytes.length; i++) {
+                    counts.clear(kmer(data, i));
+                }
+                selected.add(best);
+            }
+        }
+
+        Collections.sort(selected, new Comparator<Segment>() {
+            @Override
+            public int compare(Segment a, Segment b) {
+                return Long.compare(a.score, b.score);
+            }
+        });
+        byte[] dictionary = new byte[Math.min(size, selected.size() * SEGMENT_SIZE)];
+        int    pos        = dictionary.length;
+        for (int i = selected.size() - 1; (i >= 0) && (pos > 0); i--) {
+            byte[] bytes = selected.get(i).bytes;
+            int    n     = Math.min(pos, bytes.length);
+            pos -= n;
+            System.arraycopy(bytes, bytes.length - n, dictionary, pos, n);
+        }
+        return Arrays.copyOfRange(dictionary, pos, dictionary.length);
+    }
+
+    /**
+     * Find the segment starting within <code>[start, end)</code> whose
+     * k-mers have the highest total count.
+     *
+     * @return The best segment, or null if the sample is too short.
+     */
+    private static Segment bestSegment(byte[] data, int start, int end,
+            KmerCounts counts) {
+        int last = Math.min(end, data.length - SEGMENT_SIZE);
+        if (last < start) {
+            return null;
+        }
+        // Sliding sum over the k-mers wholly contained in the segment.
+        int  window = SEGMENT_SIZE - K + 1;
+        long score  = 0;
+        for (int i = start; i < start + window; i++) {
+            score += counts.get(kmer(data, i));
+        }
+        Segment best = new Segment(start, score);
+        for (int i = start + 1; i <= last; i++) {
+            score -= counts.get(kmer(data, i - 1));
+            score += counts.get(kmer(data, i + window - 1));
+            if (score > best.score) {
+                best.start = i;
+                best.score = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Pack the 8 bytes at the input position into a long.
+     */
+    private static long kmer(byte[] data, int pos) {
+        long value = 0;
+        for (int i = 0; i < K; i++) {
+            value = (value << 8) | (data[pos + i] & 0xff);
+        }
+        return value;
+    }
+
+    /**
+     * Internal class describing a candidate dictionary segment.
+     */
+    private static class Segment {
+        int    sample;
+        int    start;
+        long   score;
+        byte[] bytes;
+
+        Segment(int start, long score) {
+            this.start = start;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Open addressing hash table counting, for each k-mer, the number of
+     * samples in which it appears.  Avoids boxing millions of keys.
+     */
+    private static class KmerCounts {
+
+        private long[] keys;
+        private int[]  counts;
+        private int[]  lastSample;
+        private boolean[] used;
+        private int    size = 0;
+
+        KmerCounts(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(16, expected)) << 1;
+            keys       = new long[capacity];
+            counts     = new int[capacity];
+            lastSample = new int[capacity];
+            used       = new boolean[capacity];
+        }
+
+        private int slot(long key) {
+            long h    = key * 0x9E3779B97F4A7C15L;
+            int  mask = keys.length - 1;
+            int  i    = (int)(h >>> 32) & mask;
+            while (used[i] && (keys[i] != key)) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        void increment(long key, int sample) {
+            int i = slot(key);
+            if (!used[i]) {
+                used[i]       = true;
+                keys[i]       = key;
+                lastSample[i] = -1;
+                if (++size * 2 > keys.length) {
+                    grow();
+                    i = slot(key);
+                }
+            }
+            if (lastSample[i] != sample) {
+                lastSample[i] = sample;
+                counts[i]++;
+            }
+        }
+
+        int get(long key) {
+            int i = slot(key);
+            return used[i] ? counts[i] : 0;
+        }
+
+        void clear(long key) {
+            int i = slot(key);
+            if (used[i]) {
+                counts[i] = 0;
+            }
+        }
+
+        private void grow() {
+            long[]    oldKeys   = keys;
+            int[]     oldCounts = counts;
+            int[]     oldLast   = lastSample;
+            boolean[] oldUsed   = used;
+            keys       = new long[oldKeys.length * 2];
+            counts     = new int[keys.length];
+            lastSample = new int[keys.length];
+            used       = new boolean[keys.length];
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldUsed[j]) {
+                    int i = slot(oldKeys[j]);
+                    used[i]       = true;
+                    keys[i]       = oldKeys[j];
+                    counts[i]     = oldCounts[j];
+                    lastSample[i] = oldLast[j];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,455 @@
+package mil.nga.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Summary of the most frequent values (e.g. URLs) of a stream in a fixed
+ * amount of memory, combining two sketches:
+ *
+ * <li>Space-Saving keeps <code>capacity</code> counters.  A value without
+ * a counter takes over the smallest one, inheriting its count as the
+ * possible overestimate (error) of the new value.  Every value occurring
+ * more than total/capacity times is guaranteed to hold a counter.</li>
+ * <li>Count-Min counts every value in a small table of counters (4 rows of
+ * 512), giving an independent upper bound of the count of any value within
+ * about 0.5% of the total.</li>
+ *
+ * The estimate reported for a value is the lower of the two.  Both merge:
+ * Count-Min tables by adding them, Space-Saving summaries by adding the
+ * counters of values held in both and keeping the largest (Agarwal et
+ * al., "Mergeable Summaries"), so the top URLs of a month are found from
+ * the summaries of its archives.
+ *
+ * Values are handled as bytes and identified by a 64 bit hash; bytes are
+ * only copied when a value takes over a counter.
+ */
+public class HeavyHitters {
+
+    /**
+     * Default number of Space-Saving counters.
+     */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * Longest value kept; longer values are truncated.
+     */
+    public static final int MAX_VALUE_LENGTH = 512;
+
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 512;
+
+    /**
+     * A value and its counts.
+     */
+    public static class Item {
+
+        private final String value;
+        private final long   count;
+        private final long   error;
+        private final long   estimate;
+
+        private Item(String value, long count, long error, long estimate) {
+            this.value    = value;
+            this.count    = count;
+            this.error    = error;
+            this.estimate = estimate;
+        }
+
+        /**
+         * Accessor method for the value.
+         * @return The value.
+         */
+        public String getValue() {
+            return value;
+        }
+
+        /**
+         * Accessor method for the Space-Saving count.
+         * @return An upper bound of the number of occurrences.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Accessor method for the largest possible overestimate.
+         * @return The maximum error of the count.
+         */
+        public long getError() {
+            return error;
+        }
+
+        /**
+         * Accessor method for the guaranteed number of occurrences.
+         * @return A lower bound of the number of occurrences.
+         */
+        public long getGuaranteed() {
+            return count - error;
+        }
+
+        /**
+         * Accessor method for the best estimate.
+         * @return The lower of the Space-Saving and Count-Min counts.
+         */
+        public long getEstimate() {
+            return estimate;
+        }
+    }
+
+    private final int      capacity;
+    private final long[][] sketch = new long[DEPTH][WIDTH];
+    private final byte[][] values;
+    private final int[]    lengths;
+    private final long[]   hashes;
+    private final long[]   counts;
+    private final long[]   errors;
+    private final int[]    heap;
+    private final int[]    positions;
+    private final int[]    table;
+    private int  size  = 0;
+    private long total = 0;
+
+    /**
+     * Constructor using the default capacity.
+     */
+    public HeavyHitters() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param capacity The number of Space-Saving counters.
+     */
+    public HeavyHitters(int capacity) {
+        this.capacity  = Math.max(1, capacity);
+        this.values    = new byte[this.capacity][];
+        this.lengths   = new int[this.capacity];
+        this.hashes    = new long[this.capacity];
+        this.counts    = new long[this.capacity];
+        this.errors    = new long[this.capacity];
+        this.heap      = new int[this.capacity];
+        this.positions = new int[this.capacity];
+        this.table     = new int[Integer.highestOneBit(this.capacity * 2 - 1) << 1];
+        Arrays.fill(table, -1);
+    }
+
+    /**
+     * Count an occurrence of a value.
+     *
+     * @param b Buffer holding the value.
+     * @param offset Start of the value.
+     * @param length Length of the value.
+     */
+    public void offer(byte[] b, int offset, int length) {
+        length = Math.min(length, MAX_VALUE_LENGTH);
+        long hash = HyperLogLog.hash(b, offset, length);
+        total++;
+        int h1 = (int)hash;
+        int h2 = (int)(hash >>> 32) | 1;
+        for (int d = 0; d < DEPTH; d++) {
+            sketch[d][(h1 + d * h2) & (WIDTH - 1)]++;
+        }
+
+        int slot = find(hash);
+        if (slot >= 0) {
+            counts[slot]++;
+            siftDown(positions[slot]);
+            return;
+        }
+        if (size < capacity) {
+            slot = size;
+            counts[slot] = 1;
+            errors[slot] = 0;
+            heap[size] = slot;
+            positions[slot] = size;
+            size++;
+            siftUp(positions[slot]);
+        }
+        else {
+            // Take over the smallest counter.
+            slot = heap[0];
+            remove(hashes[slot]);
+            errors[slot] = counts[slot];
+            counts[slot]++;
+            siftDown(0);
+        }
+        if ((values[slot] == null) || (values[slot].length < length)) {
+            values[slot] = new byte[Math.max(length, 32)];
+        }
+        System.arraycopy(b, offset, values[slot], 0, length);
+        lengths[slot] = length;
+        hashes[slot]  = hash;
+        insert(hash, slot);
+    }
+
+    /**
+     * Add the counts of another summary to this one.
+     *
+     * @param other The summary to merge.
+     */
+    public void merge(HeavyHitters other) {
+        for (int d = 0; d < DEPTH; d++) {
+            for (int w = 0; w < WIDTH; w++) {
+                sketch[d][w] += other.sketch[d][w];
+            }
+        }
+        // A value missing from a full summary may have occurred as often
+        // as its smallest counter.
+        long mine   = (size == capacity) ? counts[heap[0]] : 0;
+        long theirs = (other.size == other.capacity) ? other.counts[other.heap[0]] : 0;
+
+        List<Object[]> merged = new ArrayList<Object[]>();
+        for (int slot = 0; slot < size; slot++) {
+            int  match = other.find(hashes[slot]);
+            long count = counts[slot] + ((match >= 0) ? other.counts[match] : theirs);
+            long error = errors[slot] + ((match >= 0) ? other.errors[match] : theirs);
+            merged.add(new Object[] {
+                    Arrays.copyOf(values[slot], lengths[slot]), count, error });
+        }
+        for (int slot = 0; slot < other.size; slot++) {
+            if (find(other.hashes[slot]) < 0) {
+                merged.add(new Object[] {
+                        Arrays.copyOf(other.values[slot], other.lengths[slot]),
+                        other.counts[slot] + mine, other.errors[slot] + mine });
+            }
+        }
+        Collections.sort(merged, new Comparator<Object[]>() {
+            @Override
+            public int compare(Object[] a, Object[] b) {
+                return Long.compare((Long)b[1], (Long)a[1]);
+            }
+        });
+        clearCounters();
+        for (int i = 0; (i < merged.size()) && (i < capacity); i++) {
+            Object[] item = merged.get(i);
+            put((byte[])item[0], (Long)item[1], (Long)item[2]);
+        }
+        total += other.total;
+    }
+
+    /**
+     * Find the most frequent values.
+     *
+     * @param n The number of values.
+     * @return Up to n values, most frequent first.
+     */
+    public List<Item> getTop(int n) {
+        List<Item> items = new ArrayList<Item>(size);
+        for (int slot = 0; slot < size; slot++) {
+            long hash = hashes[slot];
+            int  h1   = (int)hash;
+            int  h2   = (int)(hash >>> 32) | 1;
+            long min  = Long.MAX_VALUE;
+            for (int d = 0; d < DEPTH; d++) {
+                min = Math.min(min, sketch[d][(h1 + d * h2) & (WIDTH - 1)]);
+            }
+            items.add(new Item(
+                    new String(values[slot], 0, lengths[slot], StandardCharsets.UTF_8),
+                    counts[slot], errors[slot], Math.min(counts[slot], min)));
+        }
+        Collections.sort(items, new Comparator<Item>() {
+            @Override
+            public int compare(Item a, Item b) {
+                if (a.estimate != b.estimate) {
+                    return Long.compare(b.estimate, a.estimate);
+                }
+                return Long.compare(b.count, a.count);
+            }
+        });
+        return (items.size() > n) ? items.subList(0, n) : items;
+    }
+
+    /**
+     * Accessor method for the number of values counted.
+     * @return The number of occurrences of all values.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Write the summary.
+     *
+     * @param dos The destination.
+     * @throws IOException Thrown if the summary cannot be written.
+     */
+    public void write(DataOutputStream dos) throws IOException {
+        dos.writeInt(capacity);
+        dos.writeLong(total);
+        dos.writeShort(DEPTH);
+        dos.writeShort(WIDTH);
+        for (long[] row : sketch) {
+            for (long count : row) {
+                dos.writeLong(count);
+            }
+        }
+        dos.writeInt(size);
+        for (int slot = 0; slot < size; slot++) {
+            dos.writeShort(lengths[slot]);
+            dos.write(values[slot], 0, lengths[slot]);
+            dos.writeLong(counts[slot]);
+            dos.writeLong(errors[slot]);
+        }
+    }
+
+    /**
+     * Read a summary written by <code>write()</code>.
+     *
+     * @param dis The source.
+     * @return The summary.
+     * @throws IOException Thrown if the summary cannot be read or is not
+     * valid.
+     */
+    public static HeavyHitters read(DataInputStream dis) throws IOException {
+        int capacity = dis.readInt();
+        if ((capacity < 1) || (capacity > 1 << 20)) {
+            throw new IOException("Invalid heavy hitter capacity [ " + capacity + " ].");
+        }
+        HeavyHitters summary = new HeavyHitters(capacity);
+        summary.total = dis.readLong();
+        if ((dis.readShort() != DEPTH) || (dis.readShort() != WIDTH)) {
+            throw new IOException("Unsupported Count-Min layout.");
+        }
+        for (long[] row : summary.sketch) {
+            for (int w = 0; w < WIDTH; w++) {
+                row[w] = dis.readLong();
+            }
+        }
+        int size = dis.readInt();
+        if ((size < 0) || (size > capacity)) {
+            throw new IOException("Invalid heavy hitter count [ " + size + " ].");
+        }
+        for (int i = 0; i < size; i++) {
+            int length = dis.readUnsignedShort();
+            if (length > MAX_VALUE_LENGTH) {
+                throw new IOException("Invalid heavy hitter length [ " + length + " ].");
+            }
+            byte[] value = new byte[length];
+            dis.readFully(value);
+            long count = dis.readLong();
+            long error = dis.readLong();
+            summary.put(value, count, error);
+        }
+        return summary;
+    }
+
+    /**
+     * Add a counter (the summary must not be full).
+     */
+    private void put(byte[] value, long count, long error) {
+        int slot = size;
+        values[slot]  = value;
+        lengths[slot] = value.length;
+        hashes[slot]  = HyperLogLog.hash(value, 0, value.length);
+        counts[slot]  = count;
+        errors[slot]  = error;
+        heap[size]      = slot;
+        positions[slot] = size;
+        size++;
+        siftUp(positions[slot]);
+        insert(hashes[slot], slot);
+    }
+
+    private void clearCounters() {
+        size = 0;
+        Arrays.fill(table, -1);
+    }
+
+    /*
+     * Open addressing table from hash to slot, with linear probing.
+     */
+
+    private int find(long hash) {
+        int mask = table.length - 1;
+        for (int i = (int)hash & mask; table[i] >= 0; i = (i + 1) & mask) {
+            if (hashes[table[i]] == hash) {
+                return table[i];
+            }
+        }
+        return -1;
+    }
+
+    private void insert(long hash, int slot) {
+        int mask = table.length - 1;
+        int i    = (int)hash & mask;
+        while (table[i] >= 0) {
+            i = (i + 1) & mask;
+        }
+        table[i] = slot;
+    }
+
+    private void remove(long hash) {
+        int mask = table.length - 1;
+        int i    = (int)hash & mask;
+        while (hashes[table[i]] != hash) {
+            i = (i + 1) & mask;
+        }
+        // Shift back the entries that probed past the removed one.
+        int j = i;
+        while (true) {
+            table[i] = -1;
+            while (true) {
+                j = (j + 1) & mask;
+                if (table[j] < 0) {
+                    return;
+                }
+                int home = (int)hashes[table[j]] & mask;
+                if ((i <= j) ? ((i < home) && (home <= j)) : ((i < home) || (home <= j))) {
+                    continue;
+                }
+                break;
+            }
+            table[i] = table[j];
+            i = j;
+        }
+    }
+
+    /*
+     * Binary min-heap of slots ordered by count.
+     */
+
+    private void siftUp(int index) {
+        int slot = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[slot]) {
+                break;
+            }
+            heap[index] = heap[parent];
+            positions[heap[index]] = index;
+            index = parent;
+        }
+        heap[index] = slot;
+        positions[slot] = index;
+    }
+
+    private void siftDown(int index) {
+        int slot = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if ((child + 1 < size) && (counts[heap[child + 1]] < counts[heap[child]])) {
+                child++;
+            }
+            if (counts[slot] <= counts[heap[child]]) {
+                break;
+            }
+            heap[index] = heap[child];
+            positions[heap[index]] = index;
+            index = child;
+        }
+        heap[index] = slot;
+        positions[slot] = index;
+    }
+}
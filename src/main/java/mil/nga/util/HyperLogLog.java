@@ -0,0 +1,145 @@
+package mil.nga.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * HyperLogLog estimate of the number of distinct values (e.g. client IP
+ * addresses) in a stream.  Each value is hashed to 64 bits; the first
+ * <code>PRECISION</code> bits select one of 4096 registers, which keeps
+ * the longest run of leading zeros seen in the remaining bits.  The
+ * estimate has a standard error of about 1.6% regardless of the number of
+ * values, in 4 KiB.
+ *
+ * Two sketches merge exactly by taking the larger of each register, so the
+ * distinct count of a quarter is estimated from the sketches of its
+ * archives without double counting values seen in several of them.
+ */
+public class HyperLogLog {
+
+    /**
+     * Number of hash bits selecting the register.
+     */
+    public static final int PRECISION = 12;
+
+    private static final int REGISTERS = 1 << PRECISION;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME  = 0x100000001b3L;
+
+    private final byte[] registers = new byte[REGISTERS];
+
+    /**
+     * Hash a value to 64 bits (FNV-1a followed by the final mixing step of
+     * MurmurHash3, which spreads the hash over all of the bits).
+     *
+     * @param b Buffer holding the value.
+     * @param offset Start of the value.
+     * @param length Length of the value.
+     * @return The hash.
+     */
+    public static long hash(byte[] b, int offset, int length) {
+        long h = FNV_OFFSET;
+        for (int i = offset; i < offset + length; i++) {
+            h = (h ^ (b[i] & 0xff)) * FNV_PRIME;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Add a value.
+     *
+     * @param b Buffer holding the value.
+     * @param offset Start of the value.
+     * @param length Length of the value.
+     */
+    public void offer(byte[] b, int offset, int length) {
+        offerHash(hash(b, offset, length));
+    }
+
+    /**
+     * Add a value by its hash.
+     *
+     * @param hash The 64 bit hash of the value.
+     */
+    public void offerHash(long hash) {
+        int  index = (int)(hash >>> (64 - PRECISION));
+        long rest  = (hash << PRECISION) | (1L << (PRECISION - 1));
+        byte rank  = (byte)(Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * Add the values of another sketch to this one.
+     *
+     * @param other The sketch to merge.
+     */
+    public void merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTERS; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * Estimate the number of distinct values added.
+     *
+     * @return The estimate.
+     */
+    public long cardinality() {
+        double sum   = 0;
+        int    zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha    = 0.7213 / (1.0 + 1.079 / REGISTERS);
+        double estimate = alpha * REGISTERS * REGISTERS / sum;
+        if ((estimate <= 2.5 * REGISTERS) && (zeros > 0)) {
+            // Small range correction (linear counting).
+            estimate = REGISTERS * Math.log((double)REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Write the sketch.
+     *
+     * @param dos The destination.
+     * @throws IOException Thrown if the sketch cannot be written.
+     */
+    public void write(DataOutputStream dos) throws IOException {
+        dos.writeByte(PRECISION);
+        dos.write(registers);
+    }
+
+    /**
+     * Read a sketch written by <code>write()</code>.
+     *
+     * @param dis The source.
+     * @return The sketch.
+     * @throws IOException Thrown if the sketch cannot be read or has a
+     * different precision.
+     */
+    public static HyperLogLog read(DataInputStream dis) throws IOException {
+        int precision = dis.readUnsignedByte();
+        if (precision != PRECISION) {
+            throw new IOException("Unsupported HyperLogLog precision [ "
+                    + precision + " ].");
+        }
+        HyperLogLog sketch = new HyperLogLog();
+        dis.readFully(sketch.registers);
+        return sketch;
+    }
+}
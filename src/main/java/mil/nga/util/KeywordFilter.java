@@ -0,0 +1,487 @@
+package mil.nga.util;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Bloom filter of the tokens found in a log, kept as a sidecar of the
+ * archive so that a search for a rare token (a session ID, a client IP)
+ * can skip every archive that certainly does not contain it.
+ *
+ * Content is tokenized as it streams through <code>update()</code>, byte
+ * by byte rather than line by line, so that no line is too long to be
+ * tokenized.  Two
+ * kinds of token are recorded, both compared without regard to (ASCII)
+ * case:
+ * <li>words - runs of letters and digits (any byte above 0x7f counts as a
+ * letter so UTF-8 text is kept together)</li>
+ * <li>compound tokens - runs of letters, digits and the characters
+ * <code>. - _ : / @</code>, with leading and trailing punctuation removed,
+ * which keeps IP addresses, host names, UUIDs and paths whole</li>
+ * Tokens shorter than MIN_TOKEN_LENGTH or longer than MAX_TOKEN_LENGTH are
+ * not recorded, so a query for such a token never rules an archive out.
+ *
+ * The size of the content is not known in advance, so the filter is
+ * created with roughly one bit per byte of content and folded in half
+ * (OR-ing the two halves, which keeps every recorded token) as long as
+ * the expected false positive rate stays within FALSE_POSITIVE_RATE.
+ *
+ * Sidecar layout (big-endian):
+ * <pre>
+ * magic (8 bytes) | content checksum (UTF) | hashes (4) | log2 bits (4) |
+ * tokens (8) | bits (8 per 64)
+ * </pre>
+ * The content checksum ties the sidecar to the archive content; a sidecar
+ * whose checksum does not match the manifest entry must be ignored.
+ */
+public class KeywordFilter extends LineSink {
+
+    /**
+     * Shortest token recorded.
+     */
+    public static final int MIN_TOKEN_LENGTH = 3;
+
+    /**
+     * Longest token recorded.
+     */
+    public static final int MAX_TOKEN_LENGTH = 128;
+
+    /**
+     * Target false positive rate of a finished filter.
+     */
+    public static final double FALSE_POSITIVE_RATE = 0.01;
+
+    /**
+     * Number of hash functions (optimal for a 1% false positive rate).
+     */
+    public static final int HASHES = 7;
+
+    /**
+     * Smallest filter (in log2 bits).
+     */
+    private static final int MIN_LOG2_BITS = 10;
+
+    /**
+     * Largest filter (in log2 bits, 16 MiB).
+     */
+    private static final int MAX_LOG2_BITS = 27;
+
+    private static final byte[] MAGIC =
+            "LMBLOOM1".getBytes(StandardCharsets.US_ASCII);
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME  = 0x100000001b3L;
+
+    /**
+     * Character classes used by the tokenizer.
+     */
+    private static final byte SEPARATOR   = 0;
+    private static final byte LETTER      = 1;
+    private static final byte PUNCTUATION = 2;
+    private static final byte[] CLASSES   = new byte[256];
+    static {
+        for (int c = 0; c < 256; c++) {
+            if (((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')) ||
+                    ((c >= '0') && (c <= '9')) || (c >= 0x80)) {
+                CLASSES[c] = LETTER;
+            }
+        }
+        for (char c : ".-_:/@".toCharArray()) {
+            CLASSES[c] = PUNCTUATION;
+        }
+    }
+
+    private long[] bits;
+    private int    log2Bits;
+    private long   tokens = 0;
+
+    // Tokenizer state carried between calls to update().
+    private long    wordHash       = FNV_OFFSET;
+    private int     wordLength     = 0;
+    private long    compoundHash   = FNV_OFFSET;
+    private int     compoundLength = 0;
+    private long    trimmedHash    = FNV_OFFSET;
+    private int     trimmedLength  = 0;
+    private boolean pending        = false;
+    private boolean compound       = false;
+
+    /**
+     * Constructor.
+     *
+     * @param expectedSize The expected size of the content in bytes (used
+     * to size the filter before it is folded).
+     */
+    public KeywordFilter(long expectedSize) {
+        this(Math.max(MIN_LOG2_BITS, Math.min(MAX_LOG2_BITS,
+                64 - Long.numberOfLeadingZeros(Math.max(1, expectedSize)))));
+    }
+
+    private KeywordFilter(int log2Bits) {
+        this.log2Bits = log2Bits;
+        this.bits     = new long[1 << (log2Bits - 6)];
+    }
+
+    /**
+     * Calculate the location of the sidecar of an archive.
+     *
+     * @param archive The archive.
+     * @return The sidecar (hidden, in the same directory).
+     */
+    public static Path sidecarOf(Path archive) {
+        return archive.resolveSibling("." + archive.getFileName().toString()
+                + ".bloom");
+    }
+
+    /**
+     * Calculate the sidecar file holding the keyword filter of an archive.
+     *
+     * @param archive The archive.
+     * @return The filter file.
+     */
+    @Override
+    public Path getSidecar(Path archive) {
+        return sidecarOf(archive);
+    }
+
+    /**
+     * Tokenize more content.  Content handed to a finished filter is
+     * ignored.
+     *
+     * @param buffer The data.
+     * @param offset The offset of the first byte.
+     * @param length The number of bytes.
+     */
+    @Override
+    public void update(byte[] buffer, int offset, int length) {
+        if (isFinished()) {
+            return;
+        }
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            int  c     = buffer[i] & 0xff;
+            byte type  = CLASSES[c];
+            if (type == LETTER) {
+                int lower = ((c >= 'A') && (c <= 'Z')) ? c + ('a' - 'A') : c;
+                wordHash = (wordHash ^ lower) * FNV_PRIME;
+                wordLength++;
+                if (compoundLength > 0) {
+                    compound |= pending;
+                }
+                compoundHash = (compoundHash ^ lower) * FNV_PRIME;
+                compoundLength++;
+                trimmedHash   = compoundHash;
+                trimmedLength = compoundLength;
+                pending       = false;
+            }
+            else {
+                endWord();
+                if ((type == PUNCTUATION) && (compoundLength > 0)) {
+                    compoundHash = (compoundHash ^ c) * FNV_PRIME;
+                    compoundLength++;
+                    pending = true;
+                }
+                else if (type == SEPARATOR) {
+                    endCompound();
+                }
+            }
+        }
+    }
+
+    /**
+     * Not called, as <code>update()</code> tokenizes the content without
+     * splitting it into lines.
+     */
+    @Override
+    protected void line(byte[] b, int offset, int length) {
+    }
+
+    /**
+     * Record any token left at the end of the content.
+     */
+    @Override
+    protected void finished() {
+        endWord();
+        endCompound();
+    }
+
+    private void endWord() {
+        if ((wordLength >= MIN_TOKEN_LENGTH) && (wordLength <= MAX_TOKEN_LENGTH)) {
+            add(wordHash);
+        }
+        wordHash   = FNV_OFFSET;
+        wordLength = 0;
+    }
+
+    private void endCompound() {
+        // A compound token without inner punctuation is a word and has
+        // already been recorded.
+        if (compound && (trimmedLength >= MIN_TOKEN_LENGTH) &&
+                (trimmedLength <= MAX_TOKEN_LENGTH)) {
+            add(trimmedHash);
+        }
+        compoundHash   = FNV_OFFSET;
+        compoundLength = 0;
+        trimmedHash    = FNV_OFFSET;
+        trimmedLength  = 0;
+        pending        = false;
+        compound       = false;
+    }
+
+    /**
+     * Normalize a search token to the form recorded in the filter.
+     *
+     * @param token The token as supplied by the user.
+     * @return The token with leading and trailing punctuation removed and
+     * ASCII letters in lower case, or null if it is not a single token
+     * (it is empty or contains a separator).
+     */
+    public static String normalize(String token) {
+        if (token == null) {
+            return null;
+        }
+        byte[] bytes = token.getBytes(StandardCharsets.UTF_8);
+        int    start = 0;
+        int    end   = bytes.length;
+        while ((start < end) && (CLASSES[bytes[start] & 0xff] == PUNCTUATION)) {
+            start++;
+        }
+        while ((end > start) && (CLASSES[bytes[end - 1] & 0xff] == PUNCTUATION)) {
+            end--;
+        }
+        if (start == end) {
+            return null;
+        }
+        for (int i = start; i < end; i++) {
+            int c = bytes[i] & 0xff;
+            if (CLASSES[c] == SEPARATOR) {
+                return null;
+            }
+            if ((c >= 'A') && (c <= 'Z')) {
+                bytes[i] = (byte)(c + ('a' - 'A'));
+            }
+        }
+        return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Determine whether a token may occur in the content.
+     *
+     * @param token A token normalized with <code>normalize()</code>.
+     * @return False if the token certainly does not occur; true if it may.
+     */
+    public boolean mightContain(String token) {
+        byte[] bytes = token.getBytes(StandardCharsets.UTF_8);
+        if ((bytes.length < MIN_TOKEN_LENGTH) || (bytes.length > MAX_TOKEN_LENGTH)) {
+            return true;
+        }
+        long hash = FNV_OFFSET;
+        for (byte b : bytes) {
+            hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+        }
+        long mask = (1L << log2Bits) - 1;
+        long h1   = mix(hash);
+        long h2   = mix(hash ^ FNV_PRIME) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            long bit = (h1 + i * h2) & mask;
+            if ((bits[(int)(bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determine whether a line contains a token (as defined for the
+     * filter, so the result agrees with <code>mightContain()</code>).
+     *
+     * @param line Buffer holding the line.
+     * @param offset Start of the line.
+     * @param length Length of the line.
+     * @param token A token normalized with <code>normalize()</code>, as
+     * UTF-8 bytes.
+     * @return True if the line contains the token.
+     */
+    public static boolean containsToken(byte[] line, int offset, int length,
+            byte[] token) {
+        boolean word = true;
+        for (byte b : token) {
+            word &= (CLASSES[b & 0xff] == LETTER);
+        }
+        int end = offset + length;
+        for (int i = offset; i + token.length <= end; i++) {
+            if (!regionMatches(line, i, token)) {
+                continue;
+            }
+            int after = i + token.length;
+            if (word && ((i == offset) || (CLASSES[line[i - 1] & 0xff] != LETTER)) &&
+                    ((after == end) || (CLASSES[line[after] & 0xff] != LETTER))) {
+                return true;
+            }
+            // Otherwise the token must span a whole compound token.
+            int left = i - 1;
+            while ((left >= offset) && (CLASSES[line[left] & 0xff] == PUNCTUATION)) {
+                left--;
+            }
+            int right = after;
+            while ((right < end) && (CLASSES[line[right] & 0xff] == PUNCTUATION)) {
+                right++;
+            }
+            if (((left < offset) || (CLASSES[line[left] & 0xff] == SEPARATOR)) &&
+                    ((right == end) || (CLASSES[line[right] & 0xff] == SEPARATOR))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean regionMatches(byte[] line, int start, byte[] token) {
+        for (int j = 0; j < token.length; j++) {
+            int c = line[start + j] & 0xff;
+            if ((c >= 'A') && (c <= 'Z')) {
+                c += 'a' - 'A';
+            }
+            if (c != (token[j] & 0xff)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Record a token hash.
+     */
+    private void add(long hash) {
+        long mask = (1L << log2Bits) - 1;
+        long h1   = mix(hash);
+        long h2   = mix(hash ^ FNV_PRIME) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            long bit = (h1 + i * h2) & mask;
+            bits[(int)(bit >>> 6)] |= (1L << bit);
+        }
+        tokens++;
+    }
+
+    /**
+     * Final mixing step of MurmurHash3, spreading the FNV hash over all
+     * 64 bits.
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb34fe1a85a53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Fold the filter in half for as long as the expected false positive
+     * rate allows.
+     */
+    private void fold() {
+        while (log2Bits > MIN_LOG2_BITS) {
+            int  half  = bits.length / 2;
+            long count = 0;
+            for (int i = 0; i < half; i++) {
+                count += Long.bitCount(bits[i] | bits[i + half]);
+            }
+            double fill = (double)count / ((long)half * 64);
+            if (Math.pow(fill, HASHES) > FALSE_POSITIVE_RATE) {
+                break;
+            }
+            long[] folded = new long[half];
+            for (int i = 0; i < half; i++) {
+                folded[i] = bits[i] | bits[i + half];
+            }
+            bits = folded;
+            log2Bits--;
+        }
+    }
+
+    /**
+     * Accessor method for the number of tokens recorded (including
+     * repeats).
+     * @return The number of tokens recorded.
+     */
+    public long getTokens() {
+        return tokens;
+    }
+
+    /**
+     * Accessor method for the size of the filter.
+     * @return The size of the filter in bytes.
+     */
+    public int getSize() {
+        return bits.length * 8;
+    }
+
+    /**
+     * Fold the filter to its final size and write it out.
+     *
+     * @param os The stream to write to (not closed).
+     * @param checksum The checksum of the content.
+     * @throws IOException Thrown if the stream cannot be written.
+     */
+    @Override
+    public void write(OutputStream os, String checksum) throws IOException {
+        fold();
+        DataOutputStream dos = new DataOutputStream(os);
+        dos.write(MAGIC);
+        dos.writeUTF(checksum);
+        dos.writeInt(HASHES);
+        dos.writeInt(log2Bits);
+        dos.writeLong(tokens);
+        for (long word : bits) {
+            dos.writeLong(word);
+        }
+        dos.flush();
+    }
+
+    /**
+     * Read a filter from a sidecar.
+     *
+     * @param file The sidecar.
+     * @param checksum The checksum of the archive content.
+     * @return The filter, or null if the sidecar was written for other
+     * content.
+     * @throws IOException Thrown if the sidecar cannot be read or is not a
+     * keyword filter.
+     */
+    public static KeywordFilter read(Path file, String checksum)
+            throws IOException {
+        try (InputStream is = Files.newInputStream(file)) {
+            DataInputStream dis   = new DataInputStream(
+                    new BufferedInputStream(is));
+            byte[]          magic = new byte[MAGIC.length];
+            dis.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("File [ " + file.toString()
+                        + " ] is not a keyword filter.");
+            }
+            if (!dis.readUTF().equals(checksum)) {
+                return null;
+            }
+            int hashes   = dis.readInt();
+            int log2Bits = dis.readInt();
+            if ((hashes != HASHES) || (log2Bits < 6) || (log2Bits > MAX_LOG2_BITS)) {
+                throw new IOException("Keyword filter [ " + file.toString()
+                        + " ] has an unsupported layout.");
+            }
+            KeywordFilter filter = new KeywordFilter(log2Bits);
+            filter.tokens = dis.readLong();
+            for (int i = 0; i < filter.bits.length; i++) {
+                filter.bits[i] = dis.readLong();
+            }
+            filter.markFinished();
+            return filter;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package mil.nga.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Histogram of response times with a fixed relative precision, from which
+ * percentiles can be estimated.  Values below 32 are counted exactly;
+ * above that each power of two is split into 16 buckets, so an estimated
+ * percentile is within 1/16 (6.25%) of the true value.  Values are capped
+ * at 2^40 - 1 (about 12 days in microseconds).
+ *
+ * The buckets are a fixed array of counters, so histograms recorded
+ * separately (per hour, per archive, per host) merge exactly by adding
+ * their counters: a percentile of the merged histogram is the percentile
+ * of all of the values, which averaging the percentiles of the parts is
+ * not.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Values below this are counted exactly.
+     */
+    private static final int LINEAR = 32;
+
+    /**
+     * log2 of the number of buckets per power of two.
+     */
+    private static final int SUB_BITS = 4;
+
+    /**
+     * Largest value recorded; larger values are counted as this value.
+     */
+    public static final long MAX_VALUE = (1L << 40) - 1;
+
+    private static final int BUCKETS = indexOf(MAX_VALUE) + 1;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count = 0;
+    private long sum   = 0;
+    private long min   = Long.MAX_VALUE;
+    private long max   = 0;
+
+    /**
+     * Calculate the bucket of a value.
+     */
+    private static int indexOf(long value) {
+        if (value < LINEAR) {
+            return (int)value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int mantissa = (int)(value >>> (exponent - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+        return LINEAR + ((exponent - 5) << SUB_BITS) + mantissa;
+    }
+
+    /**
+     * Calculate the largest value counted in a bucket.
+     */
+    private static long highestOf(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int  exponent = ((index - LINEAR) >>> SUB_BITS) + 5;
+        long mantissa = (index - LINEAR) & ((1 << SUB_BITS) - 1);
+        long width    = 1L << (exponent - SUB_BITS);
+        return ((1L << SUB_BITS) + mantissa) * width + width - 1;
+    }
+
+    /**
+     * Record a value.
+     *
+     * @param value The value (negative values are ignored).
+     */
+    public void record(long value) {
+        if (value < 0) {
+            return;
+        }
+        if (value > MAX_VALUE) {
+            value = MAX_VALUE;
+        }
+        counts[indexOf(value)]++;
+        count++;
+        sum += value;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Add the values of another histogram to this one.
+     *
+     * @param other The histogram to merge.
+     */
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum   += other.sum;
+        min    = Math.min(min, other.min);
+        max    = Math.max(max, other.max);
+    }
+
+    /**
+     * Estimate a percentile.
+     *
+     * @param percent The percentile (0-100).
+     * @return The estimated value (never more than the largest value
+     * recorded), or 0 if the histogram is empty.
+     */
+    public long getPercentile(double percent) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long)Math.ceil(count * percent / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.max(min, Math.min(max, highestOf(i)));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Accessor method for the number of values recorded.
+     * @return The number of values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Accessor method for the sum of the values recorded.
+     * @return The sum of the values.
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * Accessor method for the smallest value recorded.
+     * @return The smallest value, or 0 if the histogram is empty.
+     */
+    public long getMin() {
+        return (count == 0) ? 0 : min;
+    }
+
+    /**
+     * Accessor method for the largest value recorded.
+     * @return The largest value.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Write the histogram.  Only buckets holding values are written.
+     *
+     * @param dos The destination.
+     * @throws IOException Thrown if the histogram cannot be written.
+     */
+    public void write(DataOutputStream dos) throws IOException {
+        int used = 0;
+        for (long c : counts) {
+            if (c != 0) {
+                used++;
+            }
+        }
+        dos.writeLong(count);
+        dos.writeLong(sum);
+        dos.writeLong(getMin());
+        dos.writeLong(max);
+        dos.writeShort(used);
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] != 0) {
+                dos.writeShort(i);
+                dos.writeLong(counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Read a histogram written by <code>write()</code>.
+     *
+     * @param dis The source.
+     * @return The histogram.
+     * @throws IOException Thrown if the histogram cannot be read or is not
+     * valid.
+     */
+    public static LatencyHistogram read(DataInputStream dis) throws IOException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.count = dis.readLong();
+        histogram.sum   = dis.readLong();
+        histogram.min   = dis.readLong();
+        histogram.max   = dis.readLong();
+        if (histogram.count == 0) {
+            histogram.min = Long.MAX_VALUE;
+        }
+        int used = dis.readUnsignedShort();
+        for (int i = 0; i < used; i++) {
+            int index = dis.readUnsignedShort();
+            if (index >= BUCKETS) {
+                throw new IOException("Invalid histogram bucket [ " + index + " ].");
+            }
+            histogram.counts[index] = dis.readLong();
+        }
+        return histogram;
+    }
+}
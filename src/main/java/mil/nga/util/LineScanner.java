@@ -0,0 +1,241 @@
+package mil.nga.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Splits content into lines without allocating per line.  Lines are
+ * located directly in a reusable buffer and exposed as a range of the
+ * backing array (<code>array()</code>, <code>start()</code>,
+ * <code>length()</code>), valid until the next call to
+ * <code>next()</code>.  The buffer only grows if a line longer than the
+ * buffer is found.
+ *
+ * Line ends are found eight bytes at a time: each word is XOR-ed with a
+ * word of new lines and tested for a zero byte with the usual SWAR
+ * arithmetic, so the cost per byte is a fraction of a byte-by-byte loop.
+ *
+ * A trailing carriage return is excluded from the line, and a final line
+ * without a line terminator is returned.  Instances are not thread safe
+ * but may be reused for any number of inputs via <code>reset()</code>.
+ *
+ * <pre>
+ * LineScanner scanner = new LineScanner().reset(in);
+ * while (scanner.next()) {
+ *     process(scanner.array(), scanner.start(), scanner.length());
+ * }
+ * </pre>
+ */
+public class LineScanner {
+
+    /**
+     * Default size of the buffer.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final long NEW_LINES = 0x0a0a0a0a0a0a0a0aL;
+    private static final long LOW_BITS  = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private byte[]      owned;
+    private byte[]      array;
+    private ByteBuffer  words;
+    private InputStream in       = null;
+    private int         position = 0;
+    private int         limit    = 0;
+    private int         start    = 0;
+    private int         end      = 0;
+    private long        line     = 0;
+
+    /**
+     * Constructor using the default buffer size.
+     */
+    public LineScanner() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param bufferSize The initial size of the buffer.
+     */
+    public LineScanner(int bufferSize) {
+        owned = new byte[Math.max(16, bufferSize)];
+        setArray(owned);
+    }
+
+    private void setArray(byte[] array) {
+        this.array = array;
+        this.words = ByteBuffer.wrap(array).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Start scanning a stream.  The stream is not closed by the scanner.
+     *
+     * @param in The content.
+     * @return This scanner.
+     */
+    public LineScanner reset(InputStream in) {
+        if (array != owned) {
+            // The previous input was content wrapped in place.
+            setArray(owned);
+        }
+        this.in       = in;
+        this.position = 0;
+        this.limit    = 0;
+        this.line     = 0;
+        return this;
+    }
+
+    /**
+     * Start scanning content already in memory.  The content is scanned in
+     * place and must not be modified while it is scanned.
+     *
+     * @param data The content.
+     * @param offset Start of the content.
+     * @param length Length of the content.
+     * @return This scanner.
+     */
+    public LineScanner reset(byte[] data, int offset, int length) {
+        if (data != array) {
+            setArray(data);
+        }
+        this.in       = null;
+        this.position = offset;
+        this.limit    = offset + length;
+        this.line     = 0;
+        return this;
+    }
+
+    /**
+     * Advance to the next line.
+     *
+     * @return True if a line is available, false at the end of the input.
+     * @throws IOException Thrown if the stream cannot be read.
+     */
+    public boolean next() throws IOException {
+        int scanned = position;
+        while (true) {
+            int index = indexOf(scanned, limit);
+            if (index >= 0) {
+                return found(position, index, index + 1);
+            }
+            int searched = limit - position;
+            if ((in == null) || !fill()) {
+                if (position < limit) {
+                    return found(position, limit, limit);
+                }
+                return false;
+            }
+            // fill() may have moved the unread bytes to the start.
+            scanned = position + searched;
+        }
+    }
+
+    /**
+     * Record the line just found.
+     */
+    private boolean found(int from, int to, int next) {
+        if ((to > from) && (array[to - 1] == '\r')) {
+            to--;
+        }
+        start    = from;
+        end      = to;
+        position = next;
+        line++;
+        return true;
+    }
+
+    /**
+     * Move the unread bytes to the start of the buffer (growing it if it
+     * is full) and read more.
+     *
+     * @return False at the end of the stream.
+     */
+    private boolean fill() throws IOException {
+        if (position > 0) {
+            System.arraycopy(array, position, array, 0, limit - position);
+            limit   -= position;
+            position = 0;
+        }
+        else if (limit == array.length) {
+            owned = new byte[array.length * 2];
+            System.arraycopy(array, 0, owned, 0, limit);
+            setArray(owned);
+        }
+        int read = in.read(array, limit, array.length - limit);
+        if (read <= 0) {
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+
+    /**
+     * Find the next new line in a range of the buffer.
+     *
+     * @param from Start of the range.
+     * @param to End of the range (exclusive).
+     * @return The index of the new line, or -1 if there is none.
+     */
+    private int indexOf(int from, int to) {
+        int i = from;
+        for (; i + 8 <= to; i += 8) {
+            long x = words.getLong(i) ^ NEW_LINES;
+            long t = (x - LOW_BITS) & ~x & HIGH_BITS;
+            if (t != 0) {
+                return i + (Long.numberOfTrailingZeros(t) >>> 3);
+            }
+        }
+        for (; i < to; i++) {
+            if (array[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Accessor method for the array holding the current line.
+     * @return The array (which may change after <code>next()</code>).
+     */
+    public byte[] array() {
+        return array;
+    }
+
+    /**
+     * Accessor method for the start of the current line.
+     * @return The index of the first byte of the line.
+     */
+    public int start() {
+        return start;
+    }
+
+    /**
+     * Accessor method for the end of the current line.
+     * @return The index after the last byte of the line (excluding the
+     * line terminator).
+     */
+    public int end() {
+        return end;
+    }
+
+    /**
+     * Accessor method for the length of the current line.
+     * @return The number of bytes in the line (excluding the line
+     * terminator).
+     */
+    public int length() {
+        return end - start;
+    }
+
+    /**
+     * Accessor method for the number of the current line.
+     * @return The line number, counting from one.
+     */
+    public long getLineNumber() {
+        return line;
+    }
+}
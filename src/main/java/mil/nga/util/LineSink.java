@@ -0,0 +1,136 @@
+package mil.nga.util;
+
+import java.util.Arrays;
+
+/**
+ * Base class of the summaries built from the lines of a log as it is
+ * archived.  Content arrives in arbitrary buffers (see
+ * <code>ContentDigest</code>); complete lines are handed to
+ * <code>line()</code> in place, and only a line split between two buffers
+ * is copied.  Subclasses are not thread safe.
+ *
+ * Each summary is kept in a sidecar of the archive, written once the
+ * archive has been committed.
+ */
+public abstract class LineSink implements Sidecar {
+
+    /**
+     * Longest partial line carried between buffers.  Longer lines are
+     * handed to <code>oversized()</code> instead.
+     */
+    public static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    private byte[]  carry    = new byte[1024];
+    private int     carried  = 0;
+    private boolean overflow = false;
+    private boolean finished = false;
+
+    /**
+     * Process a single line.
+     *
+     * @param b Buffer holding the line.
+     * @param offset Start of the line.
+     * @param length Length of the line (without the new line, but with a
+     * carriage return if the line had one).
+     */
+    protected abstract void line(byte[] b, int offset, int length);
+
+    /**
+     * Called for a line too long to be carried between buffers.
+     */
+    protected void oversized() {
+    }
+
+    /**
+     * Called once the final line has been processed.
+     */
+    protected void finished() {
+    }
+
+    /**
+     * Add content.  Lines may span calls.  Content handed to a finished
+     * sink is ignored.
+     *
+     * @param buffer The data.
+     * @param offset The offset of the first byte.
+     * @param length The number of bytes.
+     */
+    public void update(byte[] buffer, int offset, int length) {
+        if (finished) {
+            return;
+        }
+        int end   = offset + length;
+        int start = offset;
+        for (int i = offset; i < end; i++) {
+            if (buffer[i] == '\n') {
+                if ((carried > 0) || overflow) {
+                    append(buffer, start, i - start);
+                    flushCarry();
+                }
+                else {
+                    line(buffer, start, i - start);
+                }
+                start = i + 1;
+            }
+        }
+        if (start < end) {
+            append(buffer, start, end - start);
+        }
+    }
+
+    /**
+     * Process a final line without a line terminator.  No further content
+     * is added.
+     */
+    public void finish() {
+        if (!finished) {
+            if ((carried > 0) || overflow) {
+                flushCarry();
+            }
+            finished = true;
+            finished();
+        }
+    }
+
+    /**
+     * Accessor method for whether the final line has been processed.
+     * @return True once <code>finish()</code> has been called.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Mark the sink as finished without processing a pending line, for
+     * summaries read back from a sidecar.
+     */
+    protected void markFinished() {
+        finished = true;
+    }
+
+    private void flushCarry() {
+        if (overflow) {
+            oversized();
+        }
+        else {
+            line(carry, 0, carried);
+        }
+        carried  = 0;
+        overflow = false;
+    }
+
+    /**
+     * Keep the start of a line continued in the next buffer.
+     */
+    private void append(byte[] buffer, int offset, int length) {
+        if (overflow || (carried + length > MAX_LINE_LENGTH)) {
+            overflow = true;
+            return;
+        }
+        if (carried + length > carry.length) {
+            carry = Arrays.copyOf(carry, Math.max(carry.length * 2, carried + length));
+        }
+        System.arraycopy(buffer, offset, carry, carried, length);
+        carried += length;
+    }
+}
@@ -0,0 +1,370 @@
+package mil.nga.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.TimeZone;
+
+/**
+ * Extracts the timestamp from a log line.  The layouts written by the
+ * servers whose logs are managed here are recognized:
+ *
+ * <li>ISO 8601 style timestamps written by log4j/logback, the OpenAM
+ * audit logs and most application logs (<code>2026-01-31 23:59:59,123</code>,
+ * also with a <code>T</code> separator or a <code>.</code> before the
+ * milliseconds).</li>
+ * <li>Common Log Format timestamps written by Apache, Tomcat and other
+ * access logs (<code>[31/Jan/2026:23:59:59 +0000]</code>).  These are the
+ * only timestamps carrying a zone.</li>
+ * <li>Tomcat (JULI) console and catalina logs
+ * (<code>31-Jan-2026 23:59:59.123</code>) and the older Java logging
+ * layout (<code>Jan 31, 2026 11:59:59 PM</code>).</li>
+ * <li>OpenAM debug logs (<code>01/31/2026 11:59:59:123 PM EST</code>).  The
+ * zone abbreviation is ambiguous and is ignored.</li>
+ *
+ * Timestamps without a zone are interpreted in the time zone of the
+ * parser (the local time zone by default).  Only the start of the line is
+ * searched as the timestamp is always near the beginning and log messages
+ * may themselves contain dates.
+ *
+ * Parsing works directly on the bytes of the line and allocates nothing:
+ * the date is converted with integer arithmetic and the zone offset is
+ * cached for the hour last seen, which log lines rarely leave.  Instances
+ * are therefore not thread safe; <code>forThread()</code> supplies one
+ * per thread.
+ */
+public class LogTimestamps {
+
+    /**
+     * Number of bytes at the start of a line searched for a timestamp.
+     */
+    public static final int SEARCH_LENGTH = 64;
+
+    /**
+     * Value returned when a line holds no timestamp.
+     */
+    public static final long NONE = -1L;
+
+    private static final long MILLIS_PER_HOUR = 60L * 60L * 1000L;
+
+    private static final byte[] MONTHS =
+            "JanFebMarAprMayJunJulAugSepOctNovDec".getBytes(StandardCharsets.US_ASCII);
+
+    private static final ThreadLocal<LogTimestamps> PARSERS =
+            new ThreadLocal<LogTimestamps>() {
+                @Override
+                protected LogTimestamps initialValue() {
+                    return new LogTimestamps();
+                }
+            };
+
+    private final TimeZone zone;
+    private long cachedHour   = Long.MIN_VALUE;
+    private long cachedOffset = 0;
+
+    // Fields of the timestamp being parsed.
+    private int year;
+    private int month;
+    private int day;
+    private int hour;
+    private int minute;
+    private int second;
+    private int millis;
+
+    /**
+     * Constructor using the local time zone.
+     */
+    public LogTimestamps() {
+        this(TimeZone.getDefault());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param zone The zone of timestamps that do not carry one.
+     */
+    public LogTimestamps(TimeZone zone) {
+        this.zone = (TimeZone)zone.clone();
+    }
+
+    /**
+     * Accessor method for the parser of the calling thread.
+     * @return A parser using the local time zone.
+     */
+    public static LogTimestamps forThread() {
+        return PARSERS.get();
+    }
+
+    /**
+     * Extract the timestamp from a log line.  Convenience method for
+     * callers holding the line as characters; it allocates a copy of the
+     * start of the line.
+     *
+     * @param line The line (without the line terminator).
+     * @return The time in epoch milliseconds, or NONE if the start of the
+     * line holds no recognized timestamp.
+     */
+    public static long parse(CharSequence line) {
+        int    length = Math.min(line.length(), SEARCH_LENGTH);
+        byte[] bytes  = new byte[length];
+        for (int i = 0; i < length; i++) {
+            char c = line.charAt(i);
+            bytes[i] = (c < 0x80) ? (byte)c : (byte)'?';
+        }
+        return forThread().parse(bytes, 0, length);
+    }
+
+    /**
+     * Extract the timestamp from a log line.
+     *
+     * @param line Buffer holding the line.
+     * @param offset Start of the line.
+     * @param length Length of the line (without the line terminator).
+     * @return The time in epoch milliseconds, or NONE if the start of the
+     * line holds no recognized timestamp.
+     */
+    public long parse(byte[] line, int offset, int length) {
+        int end = offset + Math.min(length, SEARCH_LENGTH);
+        for (int i = offset; i < end; i++) {
+            byte b = line[i];
+            if ((b >= '0') && (b <= '9')) {
+                if (((i == offset) || !isDigit(line[i - 1]))) {
+                    long time = parseNumeric(line, i, end);
+                    if (time != NONE) {
+                        return time;
+                    }
+                }
+            }
+            else if ((b >= 'A') && (b <= 'Z')) {
+                long time = parseJava(line, i, end);
+                if (time != NONE) {
+                    return time;
+                }
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Try the layouts starting with a digit at the input position.
+     */
+    private long parseNumeric(byte[] b, int i, int end) {
+        // yyyy-MM-dd[ T]HH:mm:ss[.,SSS]
+        if ((i + 19 <= end) && (b[i + 4] == '-') && (b[i + 7] == '-') &&
+                ((b[i + 10] == ' ') || (b[i + 10] == 'T')) &&
+                (b[i + 13] == ':') && (b[i + 16] == ':')) {
+            year   = number(b, i, 4);
+            month  = number(b, i + 5, 2);
+            day    = number(b, i + 8, 2);
+            hour   = number(b, i + 11, 2);
+            minute = number(b, i + 14, 2);
+            second = number(b, i + 17, 2);
+            millis = fraction(b, i + 19, end, '.', ',');
+            return local();
+        }
+        // dd/MMM/yyyy:HH:mm:ss +hhmm
+        if ((i + 26 <= end) && (b[i + 2] == '/') && (b[i + 6] == '/') &&
+                (b[i + 11] == ':') && (b[i + 14] == ':') &&
+                (b[i + 17] == ':') && (b[i + 20] == ' ') &&
+                ((b[i + 21] == '+') || (b[i + 21] == '-'))) {
+            day    = number(b, i, 2);
+            month  = month(b, i + 3);
+            year   = number(b, i + 7, 4);
+            hour   = number(b, i + 12, 2);
+            minute = number(b, i + 15, 2);
+            second = number(b, i + 18, 2);
+            millis = 0;
+            int hh = number(b, i + 22, 2);
+            int mm = number(b, i + 24, 2);
+            if (!valid(false) || (hh < 0) || (mm < 0)) {
+                return NONE;
+            }
+            long offset = (hh * 60L + mm) * 60L * 1000L;
+            return utc() - ((b[i + 21] == '-') ? -offset : offset);
+        }
+        // dd-MMM-yyyy HH:mm:ss[.SSS]
+        if ((i + 20 <= end) && (b[i + 2] == '-') && (b[i + 6] == '-') &&
+                (b[i + 11] == ' ') && (b[i + 14] == ':') && (b[i + 17] == ':')) {
+            day    = number(b, i, 2);
+            month  = month(b, i + 3);
+            year   = number(b, i + 7, 4);
+            hour   = number(b, i + 12, 2);
+            minute = number(b, i + 15, 2);
+            second = number(b, i + 18, 2);
+            millis = fraction(b, i + 20, end, '.', '.');
+            return local();
+        }
+        // MM/dd/yyyy hh:mm:ss:SSS AM
+        if ((i + 26 <= end) && (b[i + 2] == '/') && (b[i + 5] == '/') &&
+                (b[i + 10] == ' ') && (b[i + 13] == ':') &&
+                (b[i + 16] == ':') && (b[i + 19] == ':') && (b[i + 23] == ' ')) {
+            month  = number(b, i, 2);
+            day    = number(b, i + 3, 2);
+            year   = number(b, i + 6, 4);
+            hour   = halfDay(number(b, i + 11, 2), b, i + 24, end);
+            minute = number(b, i + 14, 2);
+            second = number(b, i + 17, 2);
+            millis = number(b, i + 20, 3);
+            return local();
+        }
+        return NONE;
+    }
+
+    /**
+     * Try the Java logging layout (<code>MMM d, yyyy h:mm:ss a</code>)
+     * at the input position.
+     */
+    private long parseJava(byte[] b, int i, int end) {
+        if ((i + 4 >= end) || (b[i + 3] != ' ') || ((month = month(b, i)) < 0)) {
+            return NONE;
+        }
+        int p = i + 4;
+        int digits = digits(b, p, end, 2);
+        day = number(b, p, digits);
+        p += digits;
+        if ((digits == 0) || (p + 7 > end) || (b[p] != ',') || (b[p + 1] != ' ')) {
+            return NONE;
+        }
+        year = number(b, p + 2, 4);
+        p += 6;
+        if ((p >= end) || (b[p] != ' ')) {
+            return NONE;
+        }
+        p++;
+        digits = digits(b, p, end, 2);
+        int h  = number(b, p, digits);
+        p += digits;
+        if ((digits == 0) || (p + 9 > end) || (b[p] != ':') || (b[p + 3] != ':') ||
+                (b[p + 6] != ' ')) {
+            return NONE;
+        }
+        minute = number(b, p + 1, 2);
+        second = number(b, p + 4, 2);
+        hour   = halfDay(h, b, p + 7, end);
+        millis = 0;
+        return local();
+    }
+
+    /**
+     * Convert a 12 hour clock hour using the AM/PM marker.
+     *
+     * @return The 24 hour clock hour, or -1 if the marker is missing.
+     */
+    private static int halfDay(int h, byte[] b, int p, int end) {
+        if ((p + 2 > end) || (b[p + 1] != 'M') || (h < 1) || (h > 12)) {
+            return -1;
+        }
+        if (b[p] == 'A') {
+            return (h == 12) ? 0 : h;
+        }
+        if (b[p] == 'P') {
+            return (h == 12) ? 12 : h + 12;
+        }
+        return -1;
+    }
+
+    /**
+     * Convert the parsed fields in the zone of the parser.
+     */
+    private long local() {
+        if (!valid(true)) {
+            return NONE;
+        }
+        long wall = utc();
+        long hourOf = wall / MILLIS_PER_HOUR;
+        if (hourOf != cachedHour) {
+            // The offset in force at the wall clock time (checked again
+            // at the resulting instant to handle DST changes).
+            long offset = zone.getOffset(wall - zone.getRawOffset());
+            long actual = zone.getOffset(wall - offset);
+            cachedHour   = hourOf;
+            cachedOffset = actual;
+        }
+        return wall - cachedOffset;
+    }
+
+    /**
+     * Convert the parsed fields as UTC using the days-from-civil algorithm
+     * (proleptic Gregorian calendar, years after 1970 only).
+     */
+    private long utc() {
+        int  y   = (month <= 2) ? year - 1 : year;
+        int  era = y / 400;
+        int  yoe = y - era * 400;
+        int  doy = (153 * (month + ((month > 2) ? -3 : 9)) + 2) / 5 + day - 1;
+        int  doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        long days = era * 146097L + doe - 719468L;
+        return ((days * 24L + hour) * 60L + minute) * 60000L + second * 1000L + millis;
+    }
+
+    private boolean valid(boolean checkMillis) {
+        return (year >= 1970) && (month >= 1) && (month <= 12) &&
+                (day >= 1) && (day <= 31) && (hour >= 0) && (hour <= 23) &&
+                (minute >= 0) && (minute <= 59) && (second >= 0) &&
+                (second <= 60) && (!checkMillis || (millis >= 0));
+    }
+
+    private static boolean isDigit(byte b) {
+        return (b >= '0') && (b <= '9');
+    }
+
+    /**
+     * Count the digits (up to a maximum) at a position.
+     */
+    private static int digits(byte[] b, int p, int end, int max) {
+        int count = 0;
+        while ((count < max) && (p + count < end) && isDigit(b[p + count])) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Parse a fixed number of digits.
+     *
+     * @return The value, or -1 if any of the bytes is not a digit.
+     */
+    private static int number(byte[] b, int p, int digits) {
+        int value = 0;
+        for (int i = p; i < p + digits; i++) {
+            if (!isDigit(b[i])) {
+                return -1;
+            }
+            value = value * 10 + (b[i] - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Parse optional milliseconds introduced by either separator.
+     *
+     * @return The milliseconds (0 if there are none).
+     */
+    private static int fraction(byte[] b, int p, int end, char a, char c) {
+        if ((p >= end) || ((b[p] != a) && (b[p] != c))) {
+            return 0;
+        }
+        int digits = digits(b, p + 1, end, 3);
+        if (digits == 0) {
+            return 0;
+        }
+        int value = number(b, p + 1, digits);
+        for (int i = digits; i < 3; i++) {
+            value *= 10;
+        }
+        return value;
+    }
+
+    /**
+     * Parse an abbreviated English month name.
+     *
+     * @return The month (1-12), or -1 if the bytes are not a month name.
+     */
+    private static int month(byte[] b, int p) {
+        for (int m = 0; m < 12; m++) {
+            if ((b[p] == MONTHS[m * 3]) && (b[p + 1] == MONTHS[m * 3 + 1]) &&
+                    (b[p + 2] == MONTHS[m * 3 + 2])) {
+                return m + 1;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,315 @@
+package mil.nga.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Output stream producing gzip data in the style of pigz.  The input is
+ * split into fixed size blocks, each block is compressed on a pool of
+ * threads into an independent gzip member, and the members are written to
+ * the underlying stream in input order.  The concatenation of gzip members
+ * is itself a valid gzip file (RFC 1952) so the result can be read by
+ * gzip, zcat, java.util.zip.GZIPInputStream and friends.
+ *
+ * Compressing each block independently costs a little compression ratio
+ * (each block starts with an empty window) in exchange for throughput that
+ * scales with the number of threads.  At most two blocks per thread are
+ * held in memory at any time.
+ *
+ * As every member can be decompressed on its own the output can also be 
+ * read from the middle, in the manner of BGZF.  When a time index is 
+ * attached (see <code>setTimeIndex()</code>) blocks are cut at line 
+ * boundaries and the position and timestamp range of every block is 
+ * recorded in the index.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+    /**
+     * Default size of each independently compressed block.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    /**
+     * Fixed gzip member header: magic, CM=deflate, no flags, no mtime, no
+     * extra flags, OS=unknown.
+     */
+    private static final byte[] HEADER = new byte[] {
+        (byte)0x1f, (byte)0x8b, 8, 0, 0, 0, 0, 0, 0, (byte)0xff
+    };
+
+    /**
+     * Length of the gzip member trailer (CRC32 and ISIZE).
+     */
+    private static final int TRAILER_LENGTH = 8;
+
+    private final OutputStream         out;
+    private final ExecutorService      pool;
+    private final int                  blockSize;
+    private final int                  level;
+    private final int                  maxPending;
+    private final Deque<Future<Member>> pending =
+            new ArrayDeque<Future<Member>>();
+    private byte[]                     block;
+    private int                        count  = 0;
+    private boolean                    closed = false;
+    private TimeIndex                  index  = null;
+    private long                       offset = 0;
+    private long                       storedOffset = 0;
+
+    /**
+     * Constructor using the default block size and compression level.
+     *
+     * @param out The underlying stream.
+     * @param threads Number of compression threads.
+     */
+    public ParallelGzipOutputStream(OutputStream out, int threads) {
+        this(out, threads, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param out The underlying stream.
+     * @param threads Number of compression threads.
+     * @param blockSize Number of input bytes in each gzip member.
+     * @param level Deflate compression level (0-9, or -1 for the default).
+     */
+    public ParallelGzipOutputStream(
+            OutputStream out,
+            int          threads,
+            int          blockSize,
+            int          level) {
+        this.out        = out;
+        this.blockSize  = (blockSize < 1) ? DEFAULT_BLOCK_SIZE : blockSize;
+        this.level      = level;
+        this.maxPending = 2 * ((threads < 1) ? 1 : threads);
+        this.block      = new byte[this.blockSize];
+        this.pool       = Executors.newFixedThreadPool(
+                (threads < 1) ? 1 : threads,
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "gzip-block");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+    }
+
+    /**
+     * Attach a time index to be filled in as blocks are written.  Must be
+     * called before any data is written.  Each block then ends at the last
+     * line terminator it holds (a block holding no line terminator is cut
+     * at the block size) so that no line spans two blocks.
+     *
+     * @param index The index.
+     */
+    public void setTimeIndex(TimeIndex index) {
+        this.index = index;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte)b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed.");
+        }
+        while (len > 0) {
+            int n = Math.min(len, blockSize - count);
+            System.arraycopy(b, off, block, count, n);
+            count += n;
+            off   += n;
+            len   -= n;
+            if (count == blockSize) {
+                submit(false);
+            }
+        }
+    }
+
+    /**
+     * Hand the current block to the pool, first writing completed members
+     * if too many blocks are outstanding.
+     *
+     * @param last True if this is the final block.
+     * @throws IOException Thrown if a completed member cannot be written.
+     */
+    private void submit(boolean last) throws IOException {
+        while (pending.size() >= maxPending) {
+            writeNext();
+        }
+        int end = count;
+        if ((index != null) && !last) {
+            int newline = count - 1;
+            while ((newline >= 0) && (block[newline] != '\n')) {
+                newline--;
+            }
+            if (newline >= 0) {
+                end = newline + 1;
+            }
+        }
+        final byte[]    data    = block;
+        final int       length  = end;
+        final boolean   indexed = (index != null);
+        pending.add(pool.submit(new Callable<Member>() {
+            @Override
+            public Member call() {
+                long[] range = indexed ? TimeIndex.scan(data, length) : null;
+                return new Member(compress(data, length, level), length, range);
+            }
+        }));
+        block = new byte[blockSize];
+        System.arraycopy(data, end, block, 0, count - end);
+        count = count - end;
+    }
+
+    /**
+     * Wait for the oldest outstanding member and write it.
+     *
+     * @throws IOException Thrown if compression failed or the member
+     * cannot be written.
+     */
+    private void writeNext() throws IOException {
+        Future<Member> next = pending.removeFirst();
+        try {
+            Member member = next.get();
+            out.write(member.bytes);
+            if (member.range != null) {
+                index.add(new TimeIndex.Block(offset, member.length, 
+                        storedOffset, member.bytes.length, 
+                        member.range[0], member.range[1]));
+            }
+            offset       += member.length;
+            storedOffset += member.bytes.length;
+        }
+        catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(
+                    "Interrupted waiting for compressed block.");
+        }
+        catch (ExecutionException ee) {
+            throw new IOException("Unable to compress block.", ee.getCause());
+        }
+    }
+
+    /**
+     * Write every outstanding member.  Any partial block is not written
+     * until the stream is closed, so that every member other than the
+     * last holds exactly one full block.
+     */
+    @Override
+    public void flush() throws IOException {
+        while (!pending.isEmpty()) {
+            writeNext();
+        }
+        out.flush();
+    }
+
+    /**
+     * Compress the final block, write every outstanding member and close
+     * the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            // An empty input still produces one (empty) member so that the
+            // output is a valid gzip file.
+            if ((count > 0) || pending.isEmpty()) {
+                submit(true);
+            }
+            flush();
+        }
+        finally {
+            closed = true;
+            pool.shutdownNow();
+            out.close();
+        }
+    }
+
+    /**
+     * Internal class holding a compressed block and, when indexing, the 
+     * timestamp range of its lines.
+     */
+    private static class Member {
+        final byte[] bytes;
+        final int    length;
+        final long[] range;
+
+        Member(byte[] bytes, int length, long[] range) {
+            this.bytes  = bytes;
+            this.length = length;
+            this.range  = range;
+        }
+    }
+
+    /**
+     * Compress a block into a complete gzip member.
+     *
+     * @param data The block.
+     * @param length The number of bytes of the block in use.
+     * @param level Deflate compression level.
+     * @return The gzip member.
+     */
+    static byte[] compress(byte[] data, int length, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, length);
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+
+            // Incompressible data grows by a few bytes per 16K stored block.
+            byte[] member = new byte[HEADER.length + length + (length >> 12)
+                                      + 64 + TRAILER_LENGTH];
+            System.arraycopy(HEADER, 0, member, 0, HEADER.length);
+            int pos = HEADER.length;
+            while (!deflater.finished()) {
+                if (pos == member.length - TRAILER_LENGTH) {
+                    member = Arrays.copyOf(member, member.length * 2);
+                }
+                pos += deflater.deflate(member, pos,
+                        member.length - TRAILER_LENGTH - pos);
+            }
+            pos = writeInt(member, pos, (int)crc.getValue());
+            pos = writeInt(member, pos, length);
+            return Arrays.copyOf(member, pos);
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Write a little-endian 32 bit value.
+     *
+     * @param buffer The target buffer.
+     * @param pos The offset at which to write.
+     * @param value The value.
+     * @return The offset following the value.
+     */
+    private static int writeInt(byte[] buffer, int pos, int value) {
+        buffer[pos++] = (byte)value;
+        buffer[pos++] = (byte)(value >> 8);
+        buffer[pos++] = (byte)(value >> 16);
+        buffer[pos++] = (byte)(value >> 24);
+        return pos;
+    }
+}
@@ -0,0 +1,66 @@
+package mil.nga.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simple token bucket used to hold a group of threads to an aggregate
+ * throughput budget (e.g. bytes per second).  Callers request permits
+ * after (or before) doing work and are put to sleep for as long as it
+ * takes the bucket to refill.  Up to one second of unused budget may be
+ * banked so that short pauses do not waste the budget entirely.
+ */
+public class RateLimiter {
+
+    /**
+     * Number of nanoseconds in a second.
+     */
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final double permitsPerSecond;
+    private long         nextFree = System.nanoTime();
+
+    /**
+     * Constructor.
+     *
+     * @param permitsPerSecond The budget.  Values less than or equal to
+     * zero disable the limiter.
+     */
+    public RateLimiter(double permitsPerSecond) {
+        this.permitsPerSecond = permitsPerSecond;
+    }
+
+    /**
+     * Acquire the requested number of permits, sleeping if the budget has
+     * been exhausted.
+     *
+     * @param permits The number of permits (e.g. bytes) consumed.
+     * @throws InterruptedException Thrown if the thread is interrupted
+     * while waiting.
+     */
+    public void acquire(long permits) throws InterruptedException {
+        if ((permitsPerSecond <= 0) || (permits <= 0)) {
+            return;
+        }
+        long wait = 0;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (nextFree < (now - NANOS_PER_SECOND)) {
+                nextFree = now - NANOS_PER_SECOND;
+            }
+            nextFree += (long)(permits * NANOS_PER_SECOND / permitsPerSecond);
+            wait = nextFree - now;
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * Accessor method for the budget.
+     * @return The number of permits allowed per second (less than or
+     * equal to zero if unlimited).
+     */
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+}
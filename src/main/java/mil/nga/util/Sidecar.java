@@ -0,0 +1,32 @@
+package mil.nga.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+/**
+ * A summary of the content of an archive kept in a hidden sidecar file
+ * next to the archive.  The sidecar records the checksum of the content
+ * it was built from, so that a sidecar left behind by other content is
+ * recognized and ignored.
+ */
+public interface Sidecar {
+
+    /**
+     * Calculate the sidecar file holding this kind of summary for an
+     * archive.
+     *
+     * @param archive The archive.
+     * @return The sidecar file.
+     */
+    Path getSidecar(Path archive);
+
+    /**
+     * Write the summary out.
+     *
+     * @param os The stream to write to (not closed).
+     * @param checksum The checksum of the content.
+     * @throws IOException Thrown if the stream cannot be written.
+     */
+    void write(OutputStream os, String checksum) throws IOException;
+}
@@ -0,0 +1,628 @@
+package mil.nga.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Summary of the Java stack traces written to a server log (Tomcat
+ * catalina, JBoss and WildFly server logs).  Traces are found in the
+ * stream of lines as it is archived: a trace starts at the line preceding
+ * the first <code>at ...</code> frame and continues through its frames,
+ * <code>... n more</code> lines and any <code>Caused by:</code> and
+ * <code>Suppressed:</code> sections.
+ *
+ * Each trace is fingerprinted by the exception classes of its sections and
+ * by the first <code>MAX_FRAMES</code> frames of each section, normalized
+ * so that the same failure always has the same fingerprint: the file and
+ * line number are dropped, as are digits and hex addresses (generated
+ * accessors, proxies and lambdas are numbered differently by every JVM).
+ * Messages are not part of the fingerprint.  For every fingerprint the
+ * number of occurrences, the times of the first and last (the time of the
+ * most recent timestamped line before the trace) and the text of the first
+ * occurrence are kept in a hidden sidecar file (.&lt;archive&gt;.traces).
+ * Summaries merge, so the errors first seen this week are found by
+ * merging the sidecars of the store.
+ */
+public class StackTraceSummary extends LineSink {
+
+    /**
+     * Identifies a trace summary file (and its layout version).
+     */
+    private static final byte[] MAGIC =
+            new byte[] { 'L', 'M', 'T', 'R', 'A', 'C', '0', '1' };
+
+    /**
+     * Frames of each section included in the fingerprint.  Deeper frames
+     * vary with the call path into the failing code rather than with the
+     * failure.
+     */
+    public static final int MAX_FRAMES = 16;
+
+    /**
+     * Fingerprints kept per summary.  Occurrences of further fingerprints
+     * are counted in <code>getDropped()</code>.
+     */
+    public static final int MAX_TRACES = 10000;
+
+    /**
+     * Longest exemplar kept (bytes of the original text).
+     */
+    public static final int MAX_EXEMPLAR_LENGTH = 8 * 1024;
+
+    /**
+     * Longest line kept as the header of a possible trace.
+     */
+    private static final int MAX_HEADER_LENGTH = 1024;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME  = 0x100000001b3L;
+
+    /**
+     * Occurrences of a single fingerprint.
+     */
+    public static class Trace {
+
+        private final long   fingerprint;
+        private final String exception;
+        private final String frame;
+        private final String exemplar;
+        private long count = 0;
+        private long first = LogTimestamps.NONE;
+        private long last  = LogTimestamps.NONE;
+
+        private Trace(long fingerprint, String exception, String frame,
+                String exemplar) {
+            this.fingerprint = fingerprint;
+            this.exception   = exception;
+            this.frame       = frame;
+            this.exemplar    = exemplar;
+        }
+
+        private void seen(long time) {
+            count++;
+            if (time != LogTimestamps.NONE) {
+                first = (first == LogTimestamps.NONE) ? time : Math.min(first, time);
+                last  = Math.max(last, time);
+            }
+        }
+
+        private void merge(Trace other) {
+            count += other.count;
+            if (other.first != LogTimestamps.NONE) {
+                first = (first == LogTimestamps.NONE) ?
+                        other.first : Math.min(first, other.first);
+                last  = Math.max(last, other.last);
+            }
+        }
+
+        /**
+         * Accessor method for the fingerprint.
+         * @return The fingerprint.
+         */
+        public long getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * Accessor method for the fingerprint as text.
+         * @return 16 hex digits.
+         */
+        public String getId() {
+            return String.format("%016x", fingerprint);
+        }
+
+        /**
+         * Accessor method for the exception class of the outermost section.
+         * @return The class name (empty if it could not be determined).
+         */
+        public String getException() {
+            return exception;
+        }
+
+        /**
+         * Accessor method for the first frame of the outermost section.
+         * @return The frame, without the leading "at ".
+         */
+        public String getFrame() {
+            return frame;
+        }
+
+        /**
+         * Accessor method for the text of the first occurrence.
+         * @return The trace, truncated at
+         * <code>MAX_EXEMPLAR_LENGTH</code> bytes.
+         */
+        public String getExemplar() {
+            return exemplar;
+        }
+
+        /**
+         * Accessor method for the number of occurrences.
+         * @return The number of occurrences.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Accessor method for the time of the first occurrence.
+         * @return Epoch milliseconds, or <code>LogTimestamps.NONE</code> if
+         * no occurrence followed a timestamped line.
+         */
+        public long getFirst() {
+            return first;
+        }
+
+        /**
+         * Accessor method for the time of the last occurrence.
+         * @return Epoch milliseconds, or <code>LogTimestamps.NONE</code> if
+         * no occurrence followed a timestamped line.
+         */
+        public long getLast() {
+            return last;
+        }
+
+        private void write(DataOutputStream dos) throws IOException {
+            dos.writeLong(fingerprint);
+            dos.writeLong(count);
+            dos.writeLong(first);
+            dos.writeLong(last);
+            dos.writeUTF(exception);
+            dos.writeUTF(frame);
+            dos.writeUTF(exemplar);
+        }
+
+        private static Trace read(DataInputStream dis) throws IOException {
+            long  fingerprint = dis.readLong();
+            long  count       = dis.readLong();
+            long  first       = dis.readLong();
+            long  last        = dis.readLong();
+            Trace trace = new Trace(fingerprint, dis.readUTF(), dis.readUTF(),
+                    dis.readUTF());
+            trace.count = count;
+            trace.first = first;
+            trace.last  = last;
+            return trace;
+        }
+    }
+
+    private final HashMap<Long, Trace> traces = new HashMap<Long, Trace>();
+    private final LogTimestamps parser = new LogTimestamps();
+    private long total   = 0;
+    private long dropped = 0;
+    private long time    = LogTimestamps.NONE;
+
+    // The previous line, which is the header if a trace follows.
+    private byte[] header       = new byte[MAX_HEADER_LENGTH];
+    private int    headerLength = 0;
+
+    // The trace being read.
+    private boolean open         = false;
+    private long    hash         = FNV_OFFSET;
+    private int     frames       = 0;
+    private String  exception    = null;
+    private String  frame        = null;
+    private byte[]  text         = new byte[1024];
+    private int     textLength   = 0;
+
+    /**
+     * Constructor.
+     */
+    public StackTraceSummary() {
+    }
+
+    /**
+     * Calculate the sidecar file holding the trace summary of an archive.
+     * The name starts with a dot so that the archive store treats it as
+     * bookkeeping rather than as an archive.
+     *
+     * @param archive The archive.
+     * @return The trace summary file.
+     */
+    public static Path sidecarOf(Path archive) {
+        return archive.resolveSibling("." + archive.getFileName().toString()
+                + ".traces");
+    }
+
+    /**
+     * Calculate the sidecar file holding the trace summary of an archive.
+     *
+     * @param archive The archive.
+     * @return The trace summary file.
+     */
+    @Override
+    public Path getSidecar(Path archive) {
+        return sidecarOf(archive);
+    }
+
+    @Override
+    protected void line(byte[] b, int offset, int length) {
+        int end = offset + length;
+        if ((end > offset) && (b[end - 1] == '\r')) {
+            end--;
+        }
+        int p = offset;
+        while ((p < end) && ((b[p] == ' ') || (b[p] == '\t'))) {
+            p++;
+        }
+        boolean indented = (p > offset);
+        if (indented && startsWith(b, p, end, "at ")) {
+            if (!open) {
+                open();
+            }
+            frame(b, p + 3, end);
+            appendText(b, offset, end);
+            return;
+        }
+        if (open) {
+            if (indented && startsWith(b, p, end, "...")) {
+                appendText(b, offset, end);
+                return;
+            }
+            if (startsWith(b, p, end, "Caused by: ")) {
+                section(b, p + 11, end);
+                appendText(b, offset, end);
+                return;
+            }
+            if (indented && startsWith(b, p, end, "Suppressed: ")) {
+                section(b, p + 12, end);
+                appendText(b, offset, end);
+                return;
+            }
+            close();
+        }
+        if (!indented && (end > offset)) {
+            long parsed = parser.parse(b, offset, end - offset);
+            if (parsed != LogTimestamps.NONE) {
+                time = parsed;
+            }
+        }
+        headerLength = Math.min(end - offset, MAX_HEADER_LENGTH);
+        System.arraycopy(b, offset, header, 0, headerLength);
+    }
+
+    @Override
+    protected void finished() {
+        if (open) {
+            close();
+        }
+    }
+
+    /**
+     * Start a trace at the first frame, taking the previous line as its
+     * header.
+     */
+    private void open() {
+        open       = true;
+        hash       = FNV_OFFSET;
+        frames     = 0;
+        frame      = null;
+        textLength = 0;
+        exception  = exceptionOf(header, 0, headerLength);
+        hash(exception);
+        appendText(header, 0, headerLength);
+    }
+
+    /**
+     * Start a Caused by: or Suppressed: section.
+     */
+    private void section(byte[] b, int start, int end) {
+        int p = start;
+        while ((p < end) && (b[p] != ':') && (b[p] != ' ')) {
+            p++;
+        }
+        hash = (hash ^ '|') * FNV_PRIME;
+        hash(new String(b, start, p - start, StandardCharsets.ISO_8859_1));
+        frames = 0;
+    }
+
+    /**
+     * Add a frame (the text following "at ") to the fingerprint.
+     */
+    private void frame(byte[] b, int start, int end) {
+        int close = start;
+        while ((close < end) && (b[close] != '(')) {
+            close++;
+        }
+        if (frame == null) {
+            frame = new String(b, start, Math.min(end - start, MAX_HEADER_LENGTH),
+                    StandardCharsets.UTF_8);
+        }
+        if (frames++ >= MAX_FRAMES) {
+            return;
+        }
+        long h = (hash ^ '\n') * FNV_PRIME;
+        for (int i = start; i < close; i++) {
+            byte c = b[i];
+            if ((c >= '0') && (c <= '9')) {
+                // Drop numbers, and hex addresses with them.
+                if ((c == '0') && (i + 1 < close) && (b[i + 1] == 'x')) {
+                    i++;
+                    while ((i + 1 < close) && isHexDigit(b[i + 1])) {
+                        i++;
+                    }
+                }
+                continue;
+            }
+            h = (h ^ (c & 0xff)) * FNV_PRIME;
+        }
+        hash = h;
+    }
+
+    private void hash(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ (value.charAt(i) & 0xff)) * FNV_PRIME;
+        }
+    }
+
+    /**
+     * Count the trace that was being read.
+     */
+    private void close() {
+        open = false;
+        total++;
+        long  fingerprint = mix(hash);
+        Trace trace       = traces.get(fingerprint);
+        if (trace == null) {
+            if (traces.size() >= MAX_TRACES) {
+                dropped++;
+                return;
+            }
+            trace = new Trace(fingerprint, exception,
+                    (frame == null) ? "" : frame,
+                    new String(text, 0, textLength, StandardCharsets.UTF_8));
+            traces.put(fingerprint, trace);
+        }
+        trace.seen(time);
+    }
+
+    private void appendText(byte[] b, int offset, int end) {
+        int length = Math.min(end - offset, MAX_EXEMPLAR_LENGTH - textLength - 1);
+        if (length < 0) {
+            return;
+        }
+        if (textLength + length + 1 > text.length) {
+            text = Arrays.copyOf(text, Math.min(MAX_EXEMPLAR_LENGTH,
+                    Math.max(text.length * 2, textLength + length + 1)));
+        }
+        System.arraycopy(b, offset, text, textLength, length);
+        textLength += length;
+        text[textLength++] = '\n';
+    }
+
+    /**
+     * Find the exception class named in the header of a trace: the last
+     * qualified name whose simple name ends in Exception, Error or
+     * Throwable.  Tomcat writes the exception on a line of its own; JBoss
+     * and WildFly append it to the message.
+     *
+     * @return The class name, or an empty string.
+     */
+    static String exceptionOf(byte[] b, int offset, int length) {
+        int    end    = offset + length;
+        String result = "";
+        int    i      = offset;
+        while (i < end) {
+            if (!isNameStart(b[i])) {
+                i++;
+                continue;
+            }
+            int start = i;
+            int dot   = -1;
+            while ((i < end) && (isNamePart(b[i]) || (b[i] == '.'))) {
+                if (b[i] == '.') {
+                    dot = i;
+                }
+                i++;
+            }
+            if ((dot > start) && (dot < i - 1) && ((i == end) || (b[i] == ':'))) {
+                String name = new String(b, start, i - start,
+                        StandardCharsets.ISO_8859_1);
+                if (name.endsWith("Exception") || name.endsWith("Error") ||
+                        name.endsWith("Throwable")) {
+                    result = name;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean isNameStart(byte c) {
+        return ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')) ||
+                (c == '_') || (c == '$');
+    }
+
+    private static boolean isNamePart(byte c) {
+        return isNameStart(c) || ((c >= '0') && (c <= '9'));
+    }
+
+    private static boolean isHexDigit(byte c) {
+        return ((c >= '0') && (c <= '9')) || ((c >= 'a') && (c <= 'f')) ||
+                ((c >= 'A') && (c <= 'F'));
+    }
+
+    private static boolean startsWith(byte[] b, int p, int end, String prefix) {
+        if (end - p < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (b[p + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The final mixing step of MurmurHash3 (see
+     * <code>HyperLogLog.hash()</code>).
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Add the occurrences of another summary to this one.  The exemplar of
+     * a fingerprint seen by both is the one already held.
+     *
+     * @param other The summary to merge.
+     */
+    public void merge(StackTraceSummary other) {
+        for (Trace trace : other.traces.values()) {
+            Trace mine = traces.get(trace.fingerprint);
+            if (mine == null) {
+                mine = new Trace(trace.fingerprint, trace.exception,
+                        trace.frame, trace.exemplar);
+                traces.put(trace.fingerprint, mine);
+            }
+            mine.merge(trace);
+        }
+        total   += other.total;
+        dropped += other.dropped;
+    }
+
+    /**
+     * Accessor method for the fingerprints found.
+     * @return The traces, in no particular order.
+     */
+    public Collection<Trace> getTraces() {
+        return traces.values();
+    }
+
+    /**
+     * Accessor method for the fingerprints found, most frequent first.
+     * @return The traces.
+     */
+    public List<Trace> getTracesByCount() {
+        List<Trace> list = new ArrayList<Trace>(traces.values());
+        Collections.sort(list, new Comparator<Trace>() {
+            @Override
+            public int compare(Trace a, Trace b) {
+                return (a.count != b.count) ? Long.compare(b.count, a.count) :
+                        Long.compare(a.fingerprint, b.fingerprint);
+            }
+        });
+        return list;
+    }
+
+    /**
+     * Accessor method for the number of traces found.
+     * @return The number of traces, including those dropped.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Accessor method for the number of traces not counted because the
+     * summary already held <code>MAX_TRACES</code> fingerprints.
+     * @return The number of traces.
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Write the summary, compressed.
+     *
+     * @param os The destination (not closed).
+     * @param checksum The checksum of the content summarized, recorded so
+     * that a stale summary is detected.
+     * @throws IOException Thrown if the summary cannot be written.
+     */
+    @Override
+    public void write(OutputStream os, String checksum) throws IOException {
+        finish();
+        os.write(MAGIC);
+        DataOutputStream dos = new DataOutputStream(os);
+        dos.writeUTF(checksum);
+        dos.flush();
+        Deflater             deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        DeflaterOutputStream dfos     = new DeflaterOutputStream(os, deflater);
+        try {
+            DataOutputStream body = new DataOutputStream(
+                    new BufferedOutputStream(dfos));
+            body.writeLong(total);
+            body.writeLong(dropped);
+            body.writeInt(traces.size());
+            for (Trace trace : traces.values()) {
+                trace.write(body);
+            }
+            body.flush();
+            dfos.finish();
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Read a summary written by <code>write()</code>.
+     *
+     * @param file The trace summary file.
+     * @param checksum The checksum of the content the summary is expected
+     * to describe, or null to accept any.
+     * @return The summary (finished), or null if it describes other
+     * content.
+     * @throws IOException Thrown if the file cannot be read or does not
+     * hold a trace summary.
+     */
+    public static StackTraceSummary read(Path file, String checksum)
+            throws IOException {
+        try (InputStream is = new BufferedInputStream(Files.newInputStream(file))) {
+            DataInputStream dis   = new DataInputStream(is);
+            byte[]          magic = new byte[MAGIC.length];
+            dis.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("File [ " + file.toString()
+                        + " ] does not hold a stack trace summary.");
+            }
+            String recorded = dis.readUTF();
+            if ((checksum != null) && !recorded.equals(checksum)) {
+                return null;
+            }
+            Inflater inflater = new Inflater();
+            try {
+                DataInputStream body = new DataInputStream(
+                        new BufferedInputStream(new InflaterInputStream(is, inflater)));
+                StackTraceSummary summary = new StackTraceSummary();
+                summary.total   = body.readLong();
+                summary.dropped = body.readLong();
+                int count = body.readInt();
+                for (int i = 0; i < count; i++) {
+                    Trace trace = Trace.read(body);
+                    summary.traces.put(trace.fingerprint, trace);
+                }
+                summary.markFinished();
+                return summary;
+            }
+            finally {
+                inflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package mil.nga.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * Input stream filter charging every byte read against a shared
+ * <code>RateLimiter</code>.
+ */
+public class ThrottledInputStream extends FilterInputStream {
+
+    private final RateLimiter limiter;
+
+    /**
+     * Constructor.
+     *
+     * @param in The underlying stream.
+     * @param limiter The limiter (may be null, in which case reads are not
+     * throttled).
+     */
+    public ThrottledInputStream(InputStream in, RateLimiter limiter) {
+        super(in);
+        this.limiter = limiter;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int value = in.read();
+        if (value != -1) {
+            charge(1);
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int count = in.read(b, off, len);
+        if (count > 0) {
+            charge(count);
+        }
+        return count;
+    }
+
+    /**
+     * Charge the bytes read against the limiter.
+     *
+     * @param count The number of bytes read.
+     * @throws InterruptedIOException Thrown if interrupted while waiting.
+     */
+    private void charge(long count) throws InterruptedIOException {
+        if (limiter == null) {
+            return;
+        }
+        try {
+            limiter.acquire(count);
+        }
+        catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(
+                    "Interrupted while waiting on the rate limiter.");
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package mil.nga.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Index of a block compressed log (see 
+ * <code>ParallelGzipOutputStream.setTimeIndex()</code>) mapping the range 
+ * of log timestamps found in each block to the position of the block in 
+ * the compressed file.  A reader interested in a time range decompresses
+ * only the blocks whose range overlaps it.
+ *
+ * The index is a small text file:
+ * <pre>
+ * # stored.size &lt;size of the compressed file&gt;
+ * &lt;offset&gt;\t&lt;length&gt;\t&lt;stored offset&gt;\t&lt;stored length&gt;\t&lt;first&gt;\t&lt;last&gt;
+ * ...
+ * </pre>
+ * with one line per block, where first and last are the earliest and 
+ * latest timestamps (epoch milliseconds) in the block or -1 if the block 
+ * holds none.  The size of the compressed file is recorded so that an 
+ * index that no longer describes its file (e.g. after the file has been 
+ * rewritten) is detected and ignored.
+ */
+public class TimeIndex {
+
+    /**
+     * Prefix of the stored size line.
+     */
+    private static final String STORED_SIZE = "# stored.size ";
+
+    private static final String DELIMITER = "\t";
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private static final ThreadLocal<LineScanner> SCANNERS = 
+            new ThreadLocal<LineScanner>() {
+                @Override
+                protected LineScanner initialValue() {
+                    // Blocks are scanned in place, the buffer is not used.
+                    return new LineScanner(0);
+                }
+            };
+
+    private final List<Block> blocks = new ArrayList<Block>();
+    private long storedSize = 0;
+
+    /**
+     * A single independently decodable block.
+     */
+    public static class Block {
+        
+        private final long offset;
+        private final int  length;
+        private final long storedOffset;
+        private final int  storedLength;
+        private final long first;
+        private final long last;
+
+        /**
+         * Constructor.
+         *
+         * @param offset Offset of the block in the original content.
+         * @param length Length of the block in the original content.
+         * @param storedOffset Offset of the block in the compressed file.
+         * @param storedLength Length of the block in the compressed file.
+         * @param first Earliest timestamp in the block (-1 if none).
+         * @param last Latest timestamp in the block (-1 if none).
+         */
+        public Block(long offset, int length, long storedOffset, 
+                int storedLength, long first, long last) {
+            this.offset       = offset;
+            this.length       = length;
+            this.storedOffset = storedOffset;
+            this.storedLength = storedLength;
+            this.first        = first;
+            this.last         = last;
+        }
+
+        public long getOffset()       { return offset; }
+        public int  getLength()       { return length; }
+        public long getStoredOffset() { return storedOffset; }
+        public int  getStoredLength() { return storedLength; }
+        public long getFirst()        { return first; }
+        public long getLast()         { return last; }
+
+        /**
+         * Determine whether the block may hold lines in the input range.
+         * A block holding no timestamps (e.g. the middle of a long stack 
+         * trace) always may.
+         *
+         * @param from Start of the range (inclusive, epoch milliseconds).
+         * @param to End of the range (exclusive, epoch milliseconds).
+         * @return True if the block is to be read.
+         */
+        public boolean overlaps(long from, long to) {
+            if (first == LogTimestamps.NONE) {
+                return true;
+            }
+            return (first < to) && (last >= from);
+        }
+    }
+
+    /**
+     * Calculate the earliest and latest timestamps of the lines in a block.
+     *
+     * @param data The block.
+     * @param length The number of bytes of the block in use.
+     * @return The earliest and latest timestamps, both -1 if there are 
+     * none.
+     */
+    public static long[] scan(byte[] data, int length) {
+        LineScanner   scanner = SCANNERS.get().reset(data, 0, length);
+        LogTimestamps parser  = LogTimestamps.forThread();
+        long first = Long.MAX_VALUE;
+        long last  = Long.MIN_VALUE;
+        try {
+            while (scanner.next()) {
+                long time = parser.parse(scanner.array(), scanner.start(), 
+                        scanner.length());
+                if (time != LogTimestamps.NONE) {
+                    first = Math.min(first, time);
+                    last  = Math.max(last, time);
+                }
+            }
+        }
+        catch (IOException ioe) {
+            // Not possible, the block is scanned in memory.
+            throw new IllegalStateException(ioe);
+        }
+        finally {
+            // Release the block.
+            scanner.reset(EMPTY, 0, 0);
+        }
+        if (first == Long.MAX_VALUE) {
+            return new long[] { LogTimestamps.NONE, LogTimestamps.NONE };
+        }
+        return new long[] { first, last };
+    }
+
+    /**
+     * Calculate the sidecar file holding the index of an archive.  The 
+     * name starts with a dot so that the archive store treats it as 
+     * bookkeeping rather than as an archive.
+     *
+     * @param archive The archive.
+     * @return The index file.
+     */
+    public static Path sidecarOf(Path archive) {
+        return archive.resolveSibling("." + archive.getFileName().toString() 
+                + ".tidx");
+    }
+
+    /**
+     * Add the next block.  Blocks must be added in file order.
+     *
+     * @param block The block.
+     */
+    public synchronized void add(Block block) {
+        blocks.add(block);
+        storedSize = block.getStoredOffset() + block.getStoredLength();
+    }
+
+    /**
+     * Accessor method for the blocks in file order.
+     * @return The blocks.
+     */
+    public synchronized List<Block> getBlocks() {
+        return Collections.unmodifiableList(new ArrayList<Block>(blocks));
+    }
+
+    /**
+     * Accessor method for the size of the compressed file described.
+     * @return The size in bytes.
+     */
+    public synchronized long getStoredSize() {
+        return storedSize;
+    }
+
+    /**
+     * Mutator method for the size of the compressed file described, which 
+     * may exceed the end of the last block.
+     * @param value The size in bytes.
+     */
+    public synchronized void setStoredSize(long value) {
+        storedSize = value;
+    }
+
+    /**
+     * Select the blocks that may hold lines in the input range.
+     *
+     * @param from Start of the range (inclusive, epoch milliseconds).
+     * @param to End of the range (exclusive, epoch milliseconds).
+     * @return The blocks in file order.
+     */
+    public synchronized List<Block> overlapping(long from, long to) {
+        List<Block> selected = new ArrayList<Block>();
+        for (Block block : blocks) {
+            if (block.overlaps(from, to)) {
+                selected.add(block);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Write the index.
+     *
+     * @param os The stream to write to (not closed).
+     * @throws IOException Thrown if the index cannot be written.
+     */
+    public synchronized void write(OutputStream os) throws IOException {
+        Writer writer = new OutputStreamWriter(os, StandardCharsets.UTF_8);
+        writer.write(STORED_SIZE + storedSize + "\n");
+        for (Block block : blocks) {
+            writer.write(block.getOffset() + DELIMITER 
+                    + block.getLength() + DELIMITER
+                    + block.getStoredOffset() + DELIMITER
+                    + block.getStoredLength() + DELIMITER
+                    + block.getFirst() + DELIMITER
+                    + block.getLast() + "\n");
+        }
+        writer.flush();
+    }
+
+    /**
+     * Read an index.
+     *
+     * @param file The index file.
+     * @return The index.
+     * @throws IOException Thrown if the file cannot be read or is not an
+     * index.
+     */
+    public static TimeIndex read(Path file) throws IOException {
+        TimeIndex index = new TimeIndex();
+        try (BufferedReader reader = Files.newBufferedReader(
+                file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            if ((line == null) || !line.startsWith(STORED_SIZE)) {
+                throw new IOException("File [ " + file.toString() 
+                        + " ] is not a time index.");
+            }
+            long size = Long.parseLong(line.substring(STORED_SIZE.length()).trim());
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(DELIMITER);
+                if (fields.length != 6) {
+                    throw new IOException("Malformed line in time index [ " 
+                            + file.toString() + " ].");
+                }
+                index.add(new Block(
+                        Long.parseLong(fields[0]), 
+                        Integer.parseInt(fields[1]),
+                        Long.parseLong(fields[2]), 
+                        Integer.parseInt(fields[3]),
+                        Long.parseLong(fields[4]), 
+                        Long.parseLong(fields[5])));
+            }
+            index.setStoredSize(size);
+        }
+        catch (NumberFormatException nfe) {
+            throw new IOException("Malformed time index [ " 
+                    + file.toString() + " ].", nfe);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,138 @@
+package mil.nga.log.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import mil.nga.util.AccessLogRollup;
+import mil.nga.util.AccessLogRollup.Interval;
+import mil.nga.util.LatencyHistogram;
+
+public class AccessLogRollupTest {
+
+	private static final long HOUR = AccessLogRollup.MILLIS_PER_HOUR;
+
+	/**
+	 * 2026-01-01 05:00:00 UTC.
+	 */
+	private static final long START = 1767243600000L;
+
+	private byte[] log(int lines, int firstHour) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < lines; i++) {
+			int hour = firstHour + (i % 3);
+			sb.append("10.0.0.").append(i % 256)
+					.append(" - - [01/Jan/2026:").append(hour).append(":15:00 +0000] ")
+					.append("\"GET /x?q=\\\"").append(i).append("\\\" HTTP/1.1\" ")
+					.append(i % 10 == 0 ? "500" : "200").append(' ')
+					.append(i % 7 == 0 ? "-" : "100")
+					.append(" \"-\" \"agent\" ").append(i % 100 + 1).append("\r\n");
+		}
+		sb.append("not an access log line\n");
+		return sb.toString().getBytes(StandardCharsets.US_ASCII);
+	}
+
+	@Test
+	public void testChunkedInputAndMerge() throws IOException {
+		byte[] data = log(3000, 10);
+		AccessLogRollup whole = new AccessLogRollup(1000L);
+		whole.update(data, 0, data.length);
+		whole.finish();
+
+		// Lines split across buffers of every size give the same result.
+		Random random = new Random(7);
+		AccessLogRollup chunked = new AccessLogRollup(1000L);
+		int off = 0;
+		while (off < data.length) {
+			int len = Math.min(1 + random.nextInt(200), data.length - off);
+			chunked.update(data, off, len);
+			off += len;
+		}
+		chunked.finish();
+
+		assertEquals(1, whole.getUnparsed());
+		assertEquals(3, whole.getIntervals().size());
+		List<Interval> a = new ArrayList<Interval>(whole.getIntervals());
+		List<Interval> b = new ArrayList<Interval>(chunked.getIntervals());
+		for (int i = 0; i < 3; i++) {
+			assertEquals(START + (5 + i) * HOUR, a.get(i).getStart());
+			assertEquals(1000, a.get(i).getRequests());
+			assertEquals(a.get(i).getRequests(), b.get(i).getRequests());
+			assertEquals(a.get(i).getBytes(), b.get(i).getBytes());
+			assertEquals(a.get(i).getStatusCount(500), b.get(i).getStatusCount(500));
+			assertEquals(1000, a.get(i).getLatency().getCount());
+		}
+		assertEquals(100, a.get(0).getStatusClassCount(5));
+
+		// Merging two rollups adds their counters hour by hour.
+		whole.merge(chunked);
+		Interval first = whole.getIntervals().iterator().next();
+		assertEquals(2000, first.getRequests());
+		assertEquals(2, whole.getUnparsed());
+	}
+
+	@Test
+	public void testSidecarRoundTrip() throws IOException {
+		byte[] data = log(500, 20);
+		AccessLogRollup rollup = new AccessLogRollup(1L);
+		rollup.update(data, 0, data.length);
+
+		Path file = Files.createTempFile("rollup", ".tmp");
+		try {
+			try (OutputStream os = Files.newOutputStream(file)) {
+				rollup.write(os, "crc32c:01234567");
+			}
+			assertNull(AccessLogRollup.read(file, "crc32c:76543210"));
+			AccessLogRollup read = AccessLogRollup.read(file, "crc32c:01234567");
+			assertEquals(rollup.getIntervals().size(), read.getIntervals().size());
+			assertEquals(rollup.getUnparsed(), read.getUnparsed());
+			Interval x = rollup.getIntervals().iterator().next();
+			Interval y = read.getIntervals().iterator().next();
+			assertEquals(x.getStart(), y.getStart());
+			assertEquals(x.getBytes(), y.getBytes());
+			assertEquals(x.getStatusCount(200), y.getStatusCount(200));
+			assertEquals(x.getLatency().getPercentile(99), y.getLatency().getPercentile(99));
+
+			ByteArrayOutputStream again = new ByteArrayOutputStream();
+			read.write(again, "crc32c:01234567");
+			assertEquals(Files.size(file), again.size());
+		}
+		finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	public void testHistogramPrecision() {
+		Random random = new Random(3);
+		LatencyHistogram left  = new LatencyHistogram();
+		LatencyHistogram right = new LatencyHistogram();
+		long[] values = new long[100000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = (long)Math.exp(random.nextDouble() * 20);
+			(i % 2 == 0 ? left : right).record(values[i]);
+		}
+		left.merge(right);
+		Arrays.sort(values);
+		for (double p : new double[] { 50, 90, 99, 99.9 }) {
+			long exact    = values[(int)Math.ceil(values.length * p / 100) - 1];
+			long estimate = left.getPercentile(p);
+			assertTrue(p + ": " + exact + " " + estimate,
+					(estimate >= exact) && (estimate <= exact + exact / 16 + 1));
+		}
+		assertEquals(values[values.length - 1], left.getMax());
+	}
+}
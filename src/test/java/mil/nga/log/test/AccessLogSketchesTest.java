@@ -0,0 +1,113 @@
+package mil.nga.log.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import mil.nga.util.AccessLogRollup;
+import mil.nga.util.AccessLogSketches;
+import mil.nga.util.HeavyHitters;
+import mil.nga.util.HyperLogLog;
+
+public class AccessLogSketchesTest {
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	@Test
+	public void testDistinctCountMerges() {
+		HyperLogLog whole = new HyperLogLog();
+		HyperLogLog left  = new HyperLogLog();
+		HyperLogLog right = new HyperLogLog();
+		for (int i = 0; i < 200000; i++) {
+			// Every value occurs twice.
+			byte[] value = bytes("10.0." + (i % 100000));
+			whole.offer(value, 0, value.length);
+			(i % 2 == 0 ? left : right).offer(value, 0, value.length);
+		}
+		left.merge(right);
+		assertEquals(whole.cardinality(), left.cardinality());
+		long exact = 100000;
+		assertTrue(Math.abs(whole.cardinality() - exact) < exact * 0.05);
+
+		HyperLogLog small = new HyperLogLog();
+		for (int i = 0; i < 100; i++) {
+			byte[] value = bytes("agent " + i);
+			small.offer(value, 0, value.length);
+			small.offer(value, 0, value.length);
+		}
+		assertTrue(Math.abs(small.cardinality() - 100) <= 2);
+	}
+
+	@Test
+	public void testHeavyHittersMerge() {
+		// Zipf distributed values over a long tail, in two halves.
+		Random       random = new Random(11);
+		HeavyHitters left   = new HeavyHitters(64);
+		HeavyHitters right  = new HeavyHitters(64);
+		long[]       exact  = new long[5000];
+		for (int i = 0; i < 200000; i++) {
+			int rank = (int)Math.min(exact.length - 1,
+					Math.floor(Math.pow(exact.length, random.nextDouble())) - 1);
+			exact[rank]++;
+			byte[] value = bytes("/url/" + rank);
+			(i % 2 == 0 ? left : right).offer(value, 0, value.length);
+		}
+		left.merge(right);
+		assertEquals(200000, left.getTotal());
+		List<HeavyHitters.Item> top = left.getTop(5);
+		for (int i = 0; i < 5; i++) {
+			HeavyHitters.Item item = top.get(i);
+			assertEquals("/url/" + i, item.getValue());
+			assertTrue(item.getGuaranteed() <= exact[i]);
+			assertTrue(item.getEstimate() >= exact[i]);
+			assertTrue(item.getEstimate() - exact[i] <= 200000 / 64);
+		}
+	}
+
+	@Test
+	public void testSketchesFromAccessLog() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			sb.append("10.1.").append(i % 50).append(".1 - - [02/Jan/2026:10:00:00 +0000] ")
+					.append("\"GET /page/").append(i % 3).append("?session=").append(i)
+					.append(" HTTP/1.1\" 200 10 \"http://referer/\" \"Agent \\\"")
+					.append(i % 4).append("\\\"\"\n");
+		}
+		byte[] data = bytes(sb.toString());
+		AccessLogRollup   rollup   = new AccessLogRollup(1L);
+		AccessLogSketches sketches = new AccessLogSketches();
+		rollup.setSketches(sketches);
+		rollup.update(data, 0, data.length);
+		rollup.finish();
+
+		Path file = Files.createTempFile("sketch", ".tmp");
+		try {
+			try (OutputStream os = Files.newOutputStream(file)) {
+				sketches.write(os, "crc32c:00000000");
+			}
+			AccessLogSketches read = AccessLogSketches.read(file, "crc32c:00000000");
+			assertEquals(50, read.getClients().cardinality());
+			assertEquals(4, read.getAgents().cardinality());
+			assertEquals(1000, read.getUrls().getTotal());
+			List<HeavyHitters.Item> top = read.getUrls().getTop(10);
+			assertEquals(3, top.size());
+			assertEquals("/page/0", top.get(0).getValue());
+			assertEquals(334, top.get(0).getEstimate());
+			assertEquals(sketches.getFirst(), read.getFirst());
+		}
+		finally {
+			Files.deleteIfExists(file);
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package mil.nga.log.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import mil.nga.logmgmt.AggregateArchives;
+import mil.nga.logmgmt.AggregateArchives.Result;
+import mil.nga.logmgmt.Manifest;
+import mil.nga.logmgmt.ManifestEntry;
+import mil.nga.logmgmt.StagedFile;
+import mil.nga.logmgmt.exceptions.InputException;
+import mil.nga.util.ContentDigest;
+
+public class AggregateArchivesTest {
+
+	private static final String MONTH = "gateway/app/2026/Jan";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path spool;
+	private Path store;
+
+	@Before
+	public void setUp() throws IOException {
+		spool = folder.newFolder("spool").toPath();
+		store = folder.newFolder("store").toPath();
+	}
+
+	/**
+	 * Write an archive to a host's spool as LogMgmt would, with its
+	 * manifest entry and a sidecar.
+	 */
+	private Path spoolArchive(String host, String name, byte[] content,
+			boolean corrupt) throws IOException {
+		Path dir = spool.resolve(host).resolve(MONTH);
+		Files.createDirectories(dir);
+		Path archive = dir.resolve(name);
+		Files.write(archive, content);
+		Files.write(dir.resolve("." + name + ".bloom"),
+				name.getBytes(StandardCharsets.UTF_8));
+		ContentDigest digest = new ContentDigest(false);
+		digest.update(content, 0, corrupt ? content.length - 1 : content.length);
+		Manifest.append(dir, host,
+				new ManifestEntry(name, ManifestEntry.ENCODING_ZIP, digest,
+						"/var/log/" + name, 0L, digest));
+		return archive;
+	}
+
+	private AggregateArchives aggregate() throws InputException, IOException {
+		AggregateArchives aggregator = new AggregateArchives(spool.toString(),
+				store.toString(), 4, 1, 0);
+		aggregator.aggregate();
+		return aggregator;
+	}
+
+	@Test
+	public void testConsolidatesAndDeduplicates() throws Exception {
+		byte[] one = "first archive".getBytes(StandardCharsets.UTF_8);
+		byte[] two = "second archive".getBytes(StandardCharsets.UTF_8);
+		Path   a   = spoolArchive("hosta", "hosta_app_20260101.zip", one, false);
+		Path   b   = spoolArchive("hostb", "hostb_app_20260101.zip", two, false);
+		Path   bad = spoolArchive("hostb", "hostb_app_20260102.zip", two, true);
+		ManifestEntry reference = new ManifestEntry();
+		reference.setDestination(a.getFileName().toString());
+		reference.setEncoding(ManifestEntry.ENCODING_REFERENCE);
+		reference.setSource("/var/log/copy-of-a");
+		Path references = Manifest.referencesOf(a.getParent(), "hosta");
+		Manifest.append(references, reference);
+
+		AggregateArchives aggregator = aggregate();
+		assertEquals(4, aggregator.getCount(Result.AGGREGATED));
+		assertEquals(1, aggregator.getCount(Result.CORRUPT));
+
+		Path central = store.resolve(MONTH);
+		assertArrayEquals(one, Files.readAllBytes(central.resolve(a.getFileName())));
+		assertArrayEquals(two, Files.readAllBytes(central.resolve(b.getFileName())));
+		assertTrue(Files.exists(central.resolve(".hosta_app_20260101.zip.bloom")));
+		assertTrue(Files.exists(Manifest.manifestOf(central, "hosta")));
+		Map<String, ManifestEntry> entries = Manifest.read(central);
+		assertEquals(2, entries.size());
+		Path merged = Manifest.referencesOf(central, "hosta");
+		assertEquals(2, Files.readAllLines(merged, StandardCharsets.UTF_8).size());
+		// Servers keep appending to their reference files.
+		assertTrue(Files.exists(references));
+
+		// Consolidated files leave the spool; the corrupt one and its
+		// sidecar stay.
+		assertFalse(Files.exists(a));
+		assertFalse(Files.exists(b));
+		assertTrue(Files.exists(bad));
+		assertTrue(Files.exists(bad.resolveSibling(".hostb_app_20260102.zip.bloom")));
+		assertFalse(Files.exists(central.resolve(bad.getFileName())));
+
+		// The same content pushed again under another name is dropped.
+		Files.delete(bad);
+		Path again = spoolArchive("hosta", "hosta_app_20260101-1.zip", one, false);
+		aggregator = aggregate();
+		assertEquals(2, aggregator.getCount(Result.DUPLICATE));
+		assertEquals(0, aggregator.getCount(Result.AGGREGATED));
+		assertFalse(Files.exists(again));
+		assertFalse(Files.exists(central.resolve(again.getFileName())));
+		assertEquals(2, Manifest.read(central).size());
+		assertEquals(2, Files.readAllLines(merged, StandardCharsets.UTF_8).size());
+	}
+
+	@Test
+	public void testKeepsChecksumCollisions() throws Exception {
+		byte[] one = "first archive".getBytes(StandardCharsets.UTF_8);
+		spoolArchive("hosta", "hosta_app_20260101.zip", one, false);
+		aggregate();
+
+		// Same stored size and checksum in the manifest, different bytes.
+		Path other = spoolArchive("hosta", "hosta_app_20260101-1.zip", one, false);
+		Files.write(other, "other archive".getBytes(StandardCharsets.UTF_8));
+		AggregateArchives aggregator = aggregate();
+		assertEquals(0, aggregator.getCount(Result.DUPLICATE));
+		assertEquals(1, aggregator.getCount(Result.CORRUPT));
+		assertTrue(Files.exists(other));
+	}
+
+	@Test
+	public void testRecoversBatches() throws Exception {
+		Path central = store.resolve(MONTH);
+		Files.createDirectories(central);
+		Path state = spool.resolve(AggregateArchives.STATE_DIR);
+		Files.createDirectories(state);
+
+		// A batch that died before it was committed is rolled back.
+		Path orphan = StagedFile.partialOf(central.resolve("hosta_app_20260101.zip"));
+		Files.write(orphan, new byte[10]);
+		Files.write(state.resolve(AggregateArchives.JOURNAL_PREFIX + "hosta-1"
+				+ AggregateArchives.JOURNAL_EXTENSION),
+				("P\t" + orphan + "\n").getBytes(StandardCharsets.UTF_8));
+
+		// A committed batch is rolled forward.
+		Path spooled = spool.resolve("hostb").resolve(MONTH).resolve("hostb_app_20260101.zip");
+		Files.createDirectories(spooled.getParent());
+		Files.write(spooled, new byte[20]);
+		Path destination = central.resolve("hostb_app_20260101.zip");
+		Path partial     = StagedFile.partialOf(destination);
+		Files.write(partial, new byte[20]);
+		Files.write(state.resolve(AggregateArchives.JOURNAL_PREFIX + "hostb-1"
+				+ AggregateArchives.JOURNAL_EXTENSION),
+				("P\t" + partial + "\nR\t" + partial + "\t" + destination
+						+ "\nS\t" + spooled + "\nC\n").getBytes(StandardCharsets.UTF_8));
+
+		aggregate();
+		assertFalse(Files.exists(orphan));
+		assertFalse(Files.exists(partial));
+		assertTrue(Files.exists(destination));
+		assertFalse(Files.exists(spooled));
+		try (DirectoryStream<Path> journals = Files.newDirectoryStream(state,
+				AggregateArchives.JOURNAL_PREFIX + "*")) {
+			assertFalse(journals.iterator().hasNext());
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package mil.nga.log.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import mil.nga.util.AhoCorasick;
+
+public class AhoCorasickTest {
+
+	private static int find(AhoCorasick matcher, String text) {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		return matcher.find(bytes, 0, bytes.length);
+	}
+
+	private static boolean matches(AhoCorasick matcher, String text) {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		return matcher.matches(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Overlapping keywords are all found, and the keyword ending first
+	 * is reported.
+	 */
+	@Test
+	public void testOverlappingKeywords() {
+		AhoCorasick matcher = new AhoCorasick(
+				Arrays.asList("she", "he", "hers", "his"), false);
+		assertEquals(0, find(matcher, "ushers"));
+		assertEquals(1, find(matcher, "the"));
+		// "he" ends before "hers".
+		assertEquals(1, find(matcher, "xhers"));
+		assertEquals(3, find(matcher, "hhis"));
+		assertEquals(-1, find(matcher, "shh hi s"));
+
+		// A partial match that fails must not hide a match that started
+		// inside it.
+		AhoCorasick nested = new AhoCorasick(
+				Arrays.asList("abcdx", "bcde"), false);
+		assertEquals(1, find(nested, "abcde"));
+		assertEquals(0, find(nested, "abcdx"));
+	}
+
+	/**
+	 * A keyword that is a suffix of another (or found inside another) is
+	 * reported where the longer keyword does not occur.
+	 */
+	@Test
+	public void testSuffixKeywords() {
+		AhoCorasick matcher = new AhoCorasick(
+				Arrays.asList("fatal error", "error", "timeout", "out"), false);
+		assertEquals(0, find(matcher, "a fatal error occurred"));
+		assertEquals(1, find(matcher, "an error occurred"));
+		assertEquals(1, find(matcher, "fatal  error"));
+		assertEquals(2, find(matcher, "read timeout"));
+		assertEquals(-1, find(matcher, "read timeou"));
+		assertEquals(3, find(matcher, "logged out"));
+
+		// "cd" is only reached by the failure link from "abcd".
+		AhoCorasick inner = new AhoCorasick(Arrays.asList("abcde", "cd"), false);
+		assertEquals(1, find(inner, "abcdx"));
+		assertEquals(-1, find(inner, "abcx"));
+	}
+
+	/**
+	 * ASCII letters match in either case only when asked; other bytes are
+	 * never folded.
+	 */
+	@Test
+	public void testCaseFolding() {
+		AhoCorasick folded    = new AhoCorasick(
+				Arrays.asList("ERROR", "café"), true);
+		AhoCorasick sensitive = new AhoCorasick(
+				Arrays.asList("ERROR", "café"), false);
+		assertTrue(matches(folded, "an error"));
+		assertTrue(matches(folded, "an ErRoR"));
+		assertTrue(matches(folded, "CAFé"));
+		assertFalse(matches(folded, "CAFÉ"));
+		assertTrue(matches(sensitive, "an ERROR"));
+		assertFalse(matches(sensitive, "an error"));
+		assertFalse(matches(sensitive, "CAFé"));
+	}
+
+	/**
+	 * Only the requested range is searched; empty keywords are ignored.
+	 */
+	@Test
+	public void testRangeAndEmptyKeywords() {
+		AhoCorasick matcher = new AhoCorasick(
+				Arrays.asList("", "needle", null), false);
+		assertEquals(1, matcher.size());
+		byte[] bytes = "hayneedlehay".getBytes(StandardCharsets.UTF_8);
+		assertEquals(0, matcher.find(bytes, 3, 6));
+		assertEquals(-1, matcher.find(bytes, 4, 8));
+		assertEquals(-1, matcher.find(bytes, 0, 8));
+	}
+
+	/**
+	 * Agrees with a naive search over random input drawn from a small
+	 * alphabet, where overlaps are frequent.
+	 */
+	@Test
+	public void testAgreesWithNaiveSearch() {
+		Random   random   = new Random(3);
+		String[] keywords = new String[20];
+		for (int i = 0; i < keywords.length; i++) {
+			keywords[i] = randomString(random, 1 + random.nextInt(5));
+		}
+		AhoCorasick matcher = new AhoCorasick(Arrays.asList(keywords), true);
+		for (int n = 0; n < 1000; n++) {
+			String text  = randomString(random, random.nextInt(30));
+			String lower = text.toLowerCase();
+			boolean expected = false;
+			for (String keyword : keywords) {
+				expected |= lower.contains(keyword.toLowerCase());
+			}
+			assertEquals(text, expected, matches(matcher, text));
+		}
+	}
+
+	private static String randomString(Random random, int length) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			sb.append("abcAB".charAt(random.nextInt(5)));
+		}
+		return sb.toString();
+	}
+}
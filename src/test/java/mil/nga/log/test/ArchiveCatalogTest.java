@@ -0,0 +1,179 @@
+package mil.nga.log.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import mil.nga.logmgmt.ArchiveCatalog;
+import mil.nga.logmgmt.CatalogEntry;
+
+public class ArchiveCatalogTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path state;
+
+	@Before
+	public void setUp() throws IOException {
+		state = folder.newFolder("state").toPath();
+	}
+
+	private static CatalogEntry entry(String group, String app, String host,
+			String date) {
+		String name = "server.log-" + date;
+		return new CatalogEntry(group, app, host, date, name,
+				"/store/" + group + "/" + app + "/" + name + ".zip",
+				100L, "crc32c:0000abcd");
+	}
+
+	private static List<String> names(List<CatalogEntry> entries) {
+		List<String> names = new ArrayList<String>();
+		for (CatalogEntry entry : entries) {
+			names.add(entry.getHost() + "/" + entry.getDate());
+		}
+		return names;
+	}
+
+	private Path catalogDir() {
+		return state.resolve(ArchiveCatalog.CATALOG_DIRECTORY);
+	}
+
+	private int dataFiles() throws IOException {
+		int count = 0;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(catalogDir(),
+				ArchiveCatalog.DATA_PREFIX + "*" + ArchiveCatalog.DATA_EXTENSION)) {
+			for (@SuppressWarnings("unused") Path file : stream) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private void populate(ArchiveCatalog catalog) throws IOException {
+		catalog.add(entry("gateway", "app", "host1", "20260101"));
+		catalog.add(entry("gateway", "app", "host1", "20260102"));
+		catalog.add(entry("gateway", "app", "host1", "20260105"));
+		catalog.add(entry("gateway", "app", "host2", "20260103"));
+		catalog.add(entry("gateway", "web", "host1", "20260101"));
+		catalog.add(entry("gatewayx", "app", "host1", "20260101"));
+	}
+
+	/**
+	 * Leading key fields select a prefix; a group that is a prefix of
+	 * another group's name does not match it.  Records are found whether
+	 * they are in the log or in the data file.
+	 */
+	@Test
+	public void testFindByPrefix() throws IOException {
+		for (boolean merged : new boolean[] { false, true }) {
+			state = folder.newFolder().toPath();
+			try (ArchiveCatalog catalog = ArchiveCatalog.open(state)) {
+				populate(catalog);
+				if (merged) {
+					catalog.merge();
+				}
+				assertEquals(5, catalog.find("gateway", null, null, null, null).size());
+				assertEquals(4, catalog.find("gateway", "app", null, null, null).size());
+				assertEquals(Arrays.asList("host2/20260103"),
+						names(catalog.find("gateway", "app", "host2", null, null)));
+				assertEquals(1, catalog.find(null, null, "host2", null, null).size());
+				assertEquals(1, catalog.find(null, "web", null, null, null).size());
+				assertEquals(6, catalog.find(null, null, null, null, null).size());
+			}
+		}
+	}
+
+	/**
+	 * Dates are matched as an inclusive range, with or without the
+	 * leading key fields.
+	 */
+	@Test
+	public void testFindByDateRange() throws IOException {
+		try (ArchiveCatalog catalog = ArchiveCatalog.open(state)) {
+			populate(catalog);
+			catalog.merge();
+			catalog.add(entry("gateway", "app", "host1", "20260103"));
+			assertEquals(Arrays.asList("host1/20260102", "host1/20260103"),
+					names(catalog.find("gateway", "app", "host1",
+							"20260102", "20260104")));
+			assertEquals(Arrays.asList("host1/20260103", "host1/20260105"),
+					names(catalog.find("gateway", "app", "host1", "20260103", null)));
+			assertEquals(Arrays.asList("host1/20260101"),
+					names(catalog.find("gateway", "app", "host1", null, "20260101")));
+			assertEquals(Arrays.asList("host1/20260103", "host2/20260103"),
+					names(catalog.find("gateway", "app", null,
+							"20260103", "20260103")));
+		}
+	}
+
+	/**
+	 * A record added twice, or present in both the data file and the log,
+	 * is kept once by a merge, and the data file replaced by the merge is
+	 * removed.
+	 */
+	@Test
+	public void testMergeDropsDuplicates() throws IOException {
+		try (ArchiveCatalog catalog = ArchiveCatalog.open(state)) {
+			populate(catalog);
+			catalog.add(entry("gateway", "app", "host1", "20260101"));
+			catalog.merge();
+			assertEquals(6, catalog.size());
+			populate(catalog);
+			catalog.merge();
+			assertEquals(6, catalog.size());
+			assertEquals(6, catalog.find(null, null, null, null, null).size());
+			assertEquals(1, dataFiles());
+		}
+		try (ArchiveCatalog catalog = ArchiveCatalog.open(state)) {
+			assertEquals(6, catalog.size());
+		}
+		ArchiveCatalog.rebuild(state, Arrays.asList(
+				entry("gateway", "app", "host1", "20260101"),
+				entry("gateway", "app", "host1", "20260101"),
+				entry("gateway", "app", "host2", "20260101")));
+		try (ArchiveCatalog catalog = ArchiveCatalog.open(state)) {
+			assertEquals(2, catalog.size());
+			assertEquals(1, dataFiles());
+		}
+	}
+
+	/**
+	 * A torn final line in the log is ignored and removed when the catalog
+	 * is opened, so that the next record is not appended to it.
+	 */
+	@Test
+	public void testTornLogLine() throws IOException {
+		try (ArchiveCatalog catalog = ArchiveCatalog.open(state)) {
+			catalog.add(entry("gateway", "app", "host1", "20260101"));
+		}
+		// A record cut short within its last field still has every field.
+		String torn = new String(entry("gateway", "app", "host1", "20260102")
+				.toBytes(), StandardCharsets.UTF_8);
+		Files.write(catalogDir().resolve(ArchiveCatalog.LOG_FILE),
+				torn.substring(0, torn.length() - 2).getBytes(StandardCharsets.UTF_8),
+				StandardOpenOption.APPEND);
+		try (ArchiveCatalog catalog = ArchiveCatalog.open(state)) {
+			assertEquals(Arrays.asList("host1/20260101"),
+					names(catalog.find(null, null, null, null, null)));
+			catalog.add(entry("gateway", "app", "host1", "20260103"));
+		}
+		try (ArchiveCatalog catalog = ArchiveCatalog.open(state)) {
+			assertEquals(Arrays.asList("host1/20260101", "host1/20260103"),
+					names(catalog.find(null, null, null, null, null)));
+		}
+	}
+}
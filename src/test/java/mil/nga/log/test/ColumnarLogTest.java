@@ -0,0 +1,107 @@
+package mil.nga.log.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import mil.nga.util.ColumnarFile;
+import mil.nga.util.ColumnarLog;
+import mil.nga.util.LogTimestamps;
+
+public class ColumnarLogTest {
+
+	private static final int ROWS = 20000;
+
+	private static String log() {
+		Random        random = new Random(5);
+		StringBuilder sb     = new StringBuilder();
+		sb.append("Not part of the log\n");
+		sb.append("#Version: 1.0\n");
+		sb.append("#Fields: time\tData\tLoginID\tContextID\tIPAddr\tMessageID\t\n");
+		for (int i = 0; i < ROWS; i++) {
+			sb.append(String.format("\"2026-01-02 %02d:%02d:%02d\"\t", i / 3600, (i / 60) % 60, i % 60))
+					.append("\"Login Success\"\t")
+					.append("id=user").append(i % 7).append(",ou=user\t")
+					.append(Long.toHexString(random.nextLong())).append('\t')
+					.append("10.0.0.").append(i % 250).append('\t')
+					.append((i < 10000) ? "AUTHENTICATION-100" : "AUTHENTICATION-200")
+					.append("\t\r\n");
+		}
+		return sb.toString();
+	}
+
+	@Test
+	public void testConvertAndRead() throws IOException {
+		byte[]      data     = log().getBytes(StandardCharsets.UTF_8);
+		ColumnarLog columnar = new ColumnarLog();
+		for (int i = 0; i < data.length; i += 1000) {
+			columnar.update(data, i, Math.min(1000, data.length - i));
+		}
+		columnar.finish();
+		assertEquals(ROWS, columnar.getRows());
+		assertEquals(1, columnar.getSkipped());
+
+		Path file = Files.createTempFile("columns", ".tmp");
+		try {
+			try (OutputStream os = Files.newOutputStream(file)) {
+				columnar.write(os, "crc32c:00000001");
+			}
+			assertNull(ColumnarFile.open(file, "crc32c:00000002"));
+			try (ColumnarFile read = ColumnarFile.open(file, "crc32c:00000001")) {
+				assertEquals(ROWS, read.getRows());
+				assertEquals(6, read.getColumns().size());
+				assertTrue(read.getColumn("time").isTime());
+
+				ColumnarFile.Column login = read.getColumn("LoginID");
+				assertEquals(7, login.getDictionarySize());
+				String[] values = read.readDictionary(login);
+				List<ColumnarFile.Block> blocks = login.getBlocks();
+				assertEquals((ROWS + ColumnarLog.BLOCK_ROWS - 1) / ColumnarLog.BLOCK_ROWS,
+						blocks.size());
+				int[] ids = read.readIds(blocks.get(1));
+				assertEquals("id=user" + (ColumnarLog.BLOCK_ROWS % 7) + ",ou=user",
+						values[ids[0]]);
+				// A single column is a small fraction of the file.
+				assertTrue(read.getBytesRead() * 4 < read.getSize());
+
+				ColumnarFile.Column time = read.getTimeColumn();
+				long[] times = read.readTimes(time.getBlocks().get(0));
+				assertEquals(LogTimestamps.parse("2026-01-02 00:00:01"), times[1]);
+				assertEquals(times[0], time.getBlocks().get(0).getMinTime());
+				assertEquals(times[ColumnarLog.BLOCK_ROWS - 1],
+						time.getBlocks().get(0).getMaxTime());
+
+				ColumnarFile.Column message = read.getColumn("MessageID");
+				assertFalse(message.getBlocks().get(0).mayContain("AUTHENTICATION-200"));
+				assertTrue(message.getBlocks().get(1).mayContain("AUTHENTICATION-200"));
+				assertFalse(message.getBlocks().get(2).mayContain("AUTHENTICATION-100"));
+				assertEquals("Login Success",
+						read.readDictionary(read.getColumn("Data"))[0]);
+			}
+		}
+		finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	public void testLogWithoutFieldsIsNotConverted() {
+		byte[]      data     = "plain text\nmore text\n".getBytes(StandardCharsets.UTF_8);
+		ColumnarLog columnar = new ColumnarLog();
+		columnar.update(data, 0, data.length);
+		columnar.finish();
+		assertEquals(0, columnar.getRows());
+		assertEquals(2, columnar.getSkipped());
+	}
+}
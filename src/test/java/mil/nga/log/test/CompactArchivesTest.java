@@ -0,0 +1,160 @@
+package mil.nga.log.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import mil.nga.logmgmt.ArchiveContainer;
+import mil.nga.logmgmt.CompactArchives;
+import mil.nga.logmgmt.CompactArchives.Result;
+import mil.nga.logmgmt.Manifest;
+import mil.nga.logmgmt.ManifestEntry;
+import mil.nga.logmgmt.exceptions.InputException;
+import mil.nga.util.ContentDigest;
+
+public class CompactArchivesTest {
+
+	private static final String HOST = "host";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path store;
+	private Path state;
+	private Path month;
+
+	@Before
+	public void setUp() throws IOException {
+		store = folder.newFolder("store").toPath();
+		state = folder.newFolder("state").toPath();
+		month = store.resolve("gateway/app/2025/Jan");
+		Files.createDirectories(month);
+	}
+
+	/**
+	 * Write an archive with its manifest entry.  The content of the
+	 * archive is its own name.
+	 */
+	private Path archive(String name) throws IOException {
+		byte[] bytes   = bytesOf(name);
+		Path   archive = Files.write(month.resolve(name), bytes);
+		ContentDigest digest = new ContentDigest(false);
+		digest.update(bytes, 0, bytes.length);
+		Manifest.append(month, HOST, new ManifestEntry(name,
+				ManifestEntry.ENCODING_RAW, digest, "/var/log/" + name, 0L,
+				digest));
+		return archive;
+	}
+
+	private static byte[] bytesOf(String name) {
+		return ("content of " + name + "\n").getBytes(StandardCharsets.UTF_8);
+	}
+
+	private CompactArchives compact() throws InputException, IOException {
+		CompactArchives compact = new CompactArchives(store.toString(), 0, 0,
+				state.toString());
+		compact.compact();
+		return compact;
+	}
+
+	private byte[] stored(String name) throws IOException {
+		try (InputStream is = ArchiveContainer.openStored(month, name)) {
+			if (is == null) {
+				return null;
+			}
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int count;
+			while ((count = is.read(buffer)) > 0) {
+				bytes.write(buffer, 0, count);
+			}
+			return bytes.toByteArray();
+		}
+	}
+
+	private Path container() {
+		return ArchiveContainer.containerOf(month, HOST);
+	}
+
+	/**
+	 * An archive is read from the month directory until it is compacted
+	 * and from its container afterwards.
+	 */
+	@Test
+	public void testOpenStoredLooseAndContained() throws Exception {
+		Path first  = archive("host_app_20250101.log");
+		Path second = archive("host_app_20250102.log");
+		assertArrayEquals(bytesOf("host_app_20250101.log"),
+				stored("host_app_20250101.log"));
+		assertNull(stored("host_app_20250103.log"));
+
+		CompactArchives compact = compact();
+		assertEquals(2, compact.getCount(Result.COMPACTED));
+		assertFalse(Files.exists(first));
+		assertFalse(Files.exists(second));
+		assertTrue(Files.exists(container()));
+		assertArrayEquals(bytesOf("host_app_20250101.log"),
+				stored("host_app_20250101.log"));
+		assertArrayEquals(bytesOf("host_app_20250102.log"),
+				stored("host_app_20250102.log"));
+		assertNull(stored("host_app_20250103.log"));
+	}
+
+	/**
+	 * An archive left behind by a run interrupted after the container was
+	 * renamed into place is matched with its member and removed.
+	 */
+	@Test
+	public void testRerunAfterInterruptedCompaction() throws Exception {
+		Path archive = archive("host_app_20250101.log");
+		compact();
+		Files.write(archive, bytesOf("host_app_20250101.log"));
+
+		CompactArchives compact = compact();
+		assertEquals(1, compact.getCount(Result.DUPLICATE));
+		assertEquals(0, compact.getCount(Result.COMPACTED));
+		assertFalse(Files.exists(archive));
+		try (ArchiveContainer container = new ArchiveContainer(container())) {
+			assertEquals(Arrays.asList("host_app_20250101.log"),
+					container.names());
+		}
+	}
+
+	/**
+	 * An archive arriving after the month was compacted is appended to the
+	 * existing container, which keeps its earlier members.
+	 */
+	@Test
+	public void testLateArrivalAppended() throws Exception {
+		archive("host_app_20250101.log");
+		compact();
+		Path late = archive("host_app_20250131.log");
+
+		CompactArchives compact = compact();
+		assertEquals(1, compact.getCount(Result.COMPACTED));
+		assertFalse(Files.exists(late));
+		try (ArchiveContainer container = new ArchiveContainer(container())) {
+			assertEquals(Arrays.asList("host_app_20250101.log",
+					"host_app_20250131.log"), container.names());
+		}
+		assertArrayEquals(bytesOf("host_app_20250101.log"),
+				stored("host_app_20250101.log"));
+		assertArrayEquals(bytesOf("host_app_20250131.log"),
+				stored("host_app_20250131.log"));
+	}
+}
@@ -0,0 +1,124 @@
+package mil.nga.log.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import mil.nga.logmgmt.CompressionLevel;
+import mil.nga.logmgmt.LogMgmtI;
+import mil.nga.logmgmt.OutputFile;
+import mil.nga.logmgmt.RunReport;
+import mil.nga.logmgmt.exceptions.InputException;
+
+public class CompressionLevelTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path store;
+	private Path logs;
+
+	@Before
+	public void setUp() throws IOException {
+		store = folder.newFolder("store").toPath();
+		logs  = folder.newFolder("logs").toPath();
+	}
+
+	private Path random(String name, int size) throws IOException {
+		byte[] bytes = new byte[size];
+		new Random(17).nextBytes(bytes);
+		return Files.write(logs.resolve(name), bytes);
+	}
+
+	private Path text(String name, int size) throws IOException {
+		StringBuilder sb     = new StringBuilder();
+		Random        random = new Random(19);
+		while (sb.length() < size) {
+			sb.append("2026-01-01 INFO [worker-")
+			  .append(random.nextInt(16))
+			  .append("] Request ")
+			  .append(random.nextInt(100000))
+			  .append(" completed in ")
+			  .append(random.nextInt(1000))
+			  .append(" ms\n");
+		}
+		return Files.write(logs.resolve(name),
+				sb.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testFromString() throws InputException {
+		assertEquals(CompressionLevel.DEFAULT, CompressionLevel.fromString(null));
+		assertEquals(CompressionLevel.DEFAULT, CompressionLevel.fromString(" "));
+		assertNull(CompressionLevel.fromString("auto"));
+		assertNull(CompressionLevel.fromString(" AUTO "));
+		assertEquals(CompressionLevel.STORE, CompressionLevel.fromString("store"));
+		assertEquals(CompressionLevel.FAST, CompressionLevel.fromString("Fast"));
+		assertEquals(CompressionLevel.MAX, CompressionLevel.fromString(" max "));
+	}
+
+	@Test(expected = InputException.class)
+	public void testFromStringRejectsUnknownLevel() throws InputException {
+		CompressionLevel.fromString("fastest");
+	}
+
+	/**
+	 * Files that cannot be sampled, or are too small to be worth sampling,
+	 * use the default level; incompressible data is stored; and a level
+	 * too slow for the throughput budget is never chosen.
+	 */
+	@Test
+	public void testSelectFallback() throws IOException {
+		assertEquals(CompressionLevel.DEFAULT, CompressionLevel.select(
+				logs.resolve("missing.log"), 0, 1));
+		assertEquals(CompressionLevel.DEFAULT, CompressionLevel.select(
+				text("small.log", CompressionLevel.MIN_SAMPLE_SIZE / 2), 0, 1));
+		assertEquals(CompressionLevel.STORE, CompressionLevel.select(
+				random("random.log", 512 * 1024), 0, 1));
+
+		Path large = text("large.log", 512 * 1024);
+		assertEquals(CompressionLevel.FAST, CompressionLevel.select(
+				large, Double.MAX_VALUE, 1));
+		assertTrue(CompressionLevel.select(large, 0, 1) != CompressionLevel.STORE);
+	}
+
+	/**
+	 * The run report counts the level each archived file was compressed
+	 * at.
+	 */
+	@Test
+	public void testRunReportLevelCounts() throws Exception {
+		Properties props = new Properties();
+		props.setProperty(LogMgmtI.APPLICATION_NAME, "app");
+		props.setProperty(LogMgmtI.OUTPUT_BASE_PATH, store.toString());
+		props.setProperty(LogMgmtI.STATE_PATH, logs.resolve("state").toString());
+		props.setProperty(LogMgmtI.OUTPUT_DELAY, "0");
+		props.setProperty(LogMgmtI.OUTPUT_COMPRESS, "true");
+		props.setProperty(LogMgmtI.OUTPUT_COMPRESS_LEVEL, "auto");
+		RunReport report = new OutputFile(props, "gateway", null).process(
+				Arrays.asList(
+						random("random.log-20260101", 256 * 1024),
+						random("random.log-20260102", 128 * 1024),
+						text("small.log-20260101", 1024)));
+		assertEquals(3, report.getArchived());
+		Map<CompressionLevel, Integer> levels = report.getCompressionLevels();
+		assertEquals(Integer.valueOf(2), levels.get(CompressionLevel.STORE));
+		assertEquals(Integer.valueOf(1), levels.get(CompressionLevel.DEFAULT));
+		assertEquals(2, levels.size());
+		assertTrue(report.toString().contains("store=2 default=1"));
+	}
+}
@@ -0,0 +1,44 @@
+package mil.nga.log.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import mil.nga.util.ContentDigest;
+
+public class ContentDigestTest {
+
+	private static String crcOf(byte[] bytes, int off, int len, String algorithm) {
+		ContentDigest digest = new ContentDigest(false, algorithm);
+		digest.update(bytes, off, len);
+		return digest.getCrc();
+	}
+
+	/**
+	 * The CRC combined from two pieces is the CRC of the whole, for
+	 * either algorithm and for pieces of any length (including empty).
+	 */
+	@Test
+	public void testCombine() {
+		byte[] bytes = new byte[100000];
+		new Random(7).nextBytes(bytes);
+		for (String algorithm : new String[] {
+				ContentDigest.CRC32, ContentDigest.CRC32C }) {
+			for (int split : new int[] { 0, 1, 4096, 65537, bytes.length }) {
+				String first  = crcOf(bytes, 0, split, algorithm);
+				String second = crcOf(bytes, split, bytes.length - split, algorithm);
+				assertEquals(crcOf(bytes, 0, bytes.length, algorithm),
+						ContentDigest.combine(first, second, bytes.length - split));
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCombineDifferentAlgorithms() {
+		byte[] bytes = new byte[] { 1, 2, 3 };
+		ContentDigest.combine(crcOf(bytes, 0, 3, ContentDigest.CRC32),
+				"crc32c:00000000", 3);
+	}
+}
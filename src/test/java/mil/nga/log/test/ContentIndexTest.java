@@ -0,0 +1,184 @@
+package mil.nga.log.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import mil.nga.logmgmt.ContentIndex;
+import mil.nga.logmgmt.LogMgmtI;
+import mil.nga.logmgmt.Manifest;
+import mil.nga.logmgmt.ManifestEntry;
+import mil.nga.logmgmt.OutputFile;
+import mil.nga.logmgmt.RunReport;
+
+public class ContentIndexTest {
+
+	private static final byte[] CONTENT =
+			"the same rotated content\n".getBytes(StandardCharsets.UTF_8);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path state;
+	private Path store;
+	private Path logs;
+
+	@Before
+	public void setUp() throws IOException {
+		state = folder.newFolder("state").toPath();
+		store = folder.newFolder("store").toPath();
+		logs  = folder.newFolder("logs").toPath();
+	}
+
+	/**
+	 * Archive a file with deduplication enabled, leaving the source in
+	 * place as a re-run with <code>input.file.delete=false</code> would.
+	 */
+	private RunReport process(Path file) throws Exception {
+		Properties props = new Properties();
+		props.setProperty(LogMgmtI.APPLICATION_NAME, "app");
+		props.setProperty(LogMgmtI.OUTPUT_BASE_PATH, store.toString());
+		props.setProperty(LogMgmtI.STATE_PATH, state.toString());
+		props.setProperty(LogMgmtI.OUTPUT_DELAY, "0");
+		props.setProperty(LogMgmtI.OUTPUT_DEDUPE, "true");
+		props.setProperty(LogMgmtI.INPUT_FILE_DELETE, "false");
+		return new OutputFile(props, "gateway", null)
+				.process(Collections.singletonList(file));
+	}
+
+	/**
+	 * The archives in the store (manifests, references and sidecars are
+	 * hidden files).
+	 */
+	private List<Path> archives() throws IOException {
+		final List<Path> archives = new ArrayList<Path>();
+		Files.walkFileTree(store, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file,
+					BasicFileAttributes attrs) {
+				if (!file.getFileName().toString().startsWith(".")) {
+					archives.add(file);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return archives;
+	}
+
+	/**
+	 * The references recorded in the directory of an archive.
+	 */
+	private static List<ManifestEntry> references(Path archive)
+			throws IOException {
+		List<ManifestEntry> references = new ArrayList<ManifestEntry>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(
+				archive.getParent(), Manifest.REFERENCES_PREFIX + "*")) {
+			for (Path file : stream) {
+				for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+					ManifestEntry entry = ManifestEntry.parse(line);
+					if (entry != null) {
+						references.add(entry);
+					}
+				}
+			}
+		}
+		return references;
+	}
+
+	private Path write(String name) throws IOException {
+		return Files.write(logs.resolve(name), CONTENT);
+	}
+
+	/**
+	 * A copy of content already archived is recorded as a reference to
+	 * the archive holding it and not written again.
+	 */
+	@Test
+	public void testDuplicateRecordedAsReference() throws Exception {
+		Path original = write("server.log-20260101");
+		assertEquals(1, process(original).getArchived());
+		List<Path> archives = archives();
+		assertEquals(1, archives.size());
+
+		Path copy = write("server.log-20260102");
+		RunReport report = process(copy);
+		assertEquals(0, report.getArchived());
+		assertEquals(1, report.getDeduplicated());
+		assertEquals(archives, archives());
+
+		List<ManifestEntry> references = references(archives.get(0));
+		assertEquals(1, references.size());
+		assertEquals(ManifestEntry.ENCODING_REFERENCE,
+				references.get(0).getEncoding());
+		assertEquals(copy.toAbsolutePath().toString(),
+				references.get(0).getSource());
+		assertEquals(archives.get(0).getFileName().toString(),
+				references.get(0).getDestination());
+	}
+
+	/**
+	 * The same source file with the same modification time seen again
+	 * adds no second reference, whether it was archived or referenced.
+	 */
+	@Test
+	public void testSameSourceNotReferencedTwice() throws Exception {
+		Path original = write("server.log-20260101");
+		Path copy     = write("server.log-20260102");
+		process(original);
+		process(copy);
+		assertEquals(1, process(copy).getDeduplicated());
+		assertEquals(1, process(original).getDeduplicated());
+		assertEquals(1, archives().size());
+		assertEquals(1, references(archives().get(0)).size());
+
+		ContentIndex index = ContentIndex.open(state);
+		try {
+			ContentIndex.Entry entry = index.find(CONTENT.length,
+					Manifest.read(archives().get(0).getParent()).values()
+							.iterator().next().getSourceSha256());
+			long mtime = Files.getLastModifiedTime(copy).toMillis();
+			assertTrue(entry.isSource(copy.toAbsolutePath().toString(), mtime));
+			assertFalse(entry.isSource(copy.toAbsolutePath().toString(),
+					mtime + 1000));
+		}
+		finally {
+			index.close();
+		}
+	}
+
+	/**
+	 * Content whose archive no longer exists (e.g. removed by retention)
+	 * is archived again.
+	 */
+	@Test
+	public void testMissingArchiveArchivedAgain() throws Exception {
+		process(write("server.log-20260101"));
+		List<Path> archives = archives();
+		assertEquals(1, archives.size());
+		Files.delete(archives.get(0));
+
+		RunReport report = process(write("server.log-20260102"));
+		assertEquals(1, report.getArchived());
+		assertEquals(0, report.getDeduplicated());
+		assertEquals(1, archives().size());
+		assertTrue(references(archives().get(0)).isEmpty());
+	}
+}
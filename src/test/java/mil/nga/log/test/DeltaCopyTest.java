@@ -0,0 +1,80 @@
+package mil.nga.log.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import mil.nga.util.DeltaCopy;
+
+public class DeltaCopyTest {
+
+	private static DeltaCopy copy(byte[] basis, byte[] content, ByteArrayOutputStream out)
+			throws IOException {
+		Path file = Files.createTempFile("basis", ".tmp");
+		try {
+			Files.write(file, basis);
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				DeltaCopy delta = new DeltaCopy(channel);
+				delta.copy(new ByteArrayInputStream(content), out);
+				return delta;
+			}
+		}
+		finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	public void testAppendedFileSendsOnlyTheTail() throws IOException {
+		byte[] basis = new byte[3 * 1024 * 1024 + 77];
+		new Random(1).nextBytes(basis);
+		byte[] content = Arrays.copyOf(basis, basis.length + 5000);
+		for (int i = basis.length; i < content.length; i++) {
+			content[i] = (byte)i;
+		}
+		ByteArrayOutputStream out   = new ByteArrayOutputStream();
+		DeltaCopy             delta = copy(basis, content, out);
+		assertArrayEquals(content, out.toByteArray());
+		assertEquals(content.length, delta.getMatched() + delta.getLiteral());
+		// The partial last block of the basis and the new tail.
+		assertTrue(delta.getLiteral() < 5000 + delta.getBlockSize());
+	}
+
+	@Test
+	public void testInsertedAndChangedBytes() throws IOException {
+		Random random = new Random(3);
+		byte[] basis  = new byte[1024 * 1024];
+		random.nextBytes(basis);
+		ByteArrayOutputStream changed = new ByteArrayOutputStream();
+		changed.write(basis, 0, 300000);
+		changed.write(new byte[] { 1, 2, 3, 4, 5, 6, 7 });     // insertion
+		changed.write(basis, 300000, 400000);
+		changed.write(new byte[1000]);                          // replacement
+		changed.write(basis, 701000, basis.length - 701000);
+		byte[] content = changed.toByteArray();
+
+		ByteArrayOutputStream out   = new ByteArrayOutputStream();
+		DeltaCopy             delta = copy(basis, content, out);
+		assertArrayEquals(content, out.toByteArray());
+		// Each change costs at most a couple of blocks.
+		assertTrue(delta.getLiteral() < 1007 + 4 * delta.getBlockSize());
+
+		// An empty basis sends everything.
+		out   = new ByteArrayOutputStream();
+		delta = copy(new byte[0], content, out);
+		assertArrayEquals(content, out.toByteArray());
+		assertEquals(content.length, delta.getLiteral());
+	}
+}
@@ -0,0 +1,307 @@
+package mil.nga.log.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-memory stand-in for an S3-compatible object store, implementing just
+ * the path-style requests used by S3StorageBackend: object PUT, GET, HEAD
+ * and DELETE, ListObjectsV2 and the multipart upload calls.  Requests are
+ * rejected unless they carry a SigV4 Authorization header and the
+ * x-amz-content-sha256 header matches the body.
+ */
+public class FakeS3Server implements HttpHandler {
+
+	private static final Pattern PART =
+			Pattern.compile("<PartNumber>(\\d+)</PartNumber><ETag>([^<]*)</ETag>");
+
+	private final HttpServer server;
+	private final String     bucket;
+	private final SortedMap<String, byte[]> objects =
+			new TreeMap<String, byte[]>();
+	private final Map<String, SortedMap<Integer, byte[]>> uploads =
+			new ConcurrentHashMap<String, SortedMap<Integer, byte[]>>();
+	private final AtomicInteger nextUpload  = new AtomicInteger();
+	private final AtomicInteger active      = new AtomicInteger();
+	private final AtomicInteger maxActive   = new AtomicInteger();
+	private final AtomicInteger parts       = new AtomicInteger();
+	private final AtomicInteger failures    = new AtomicInteger();
+	private volatile int        maxKeys     = 1000;
+	private volatile long       partDelay   = 0;
+
+	public FakeS3Server(String bucket) throws IOException {
+		this.bucket = bucket;
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", this);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.start();
+	}
+
+	public String getEndpoint() {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	public void stop() {
+		server.stop(0);
+	}
+
+	public synchronized byte[] getObject(String key) {
+		return objects.get(key);
+	}
+
+	public int getOpenUploads() {
+		return uploads.size();
+	}
+
+	public int getParts() {
+		return parts.get();
+	}
+
+	public int getMaxConcurrentParts() {
+		return maxActive.get();
+	}
+
+	public void setMaxKeys(int value) {
+		maxKeys = value;
+	}
+
+	public void setPartDelay(long millis) {
+		partDelay = millis;
+	}
+
+	/**
+	 * Answer the next requests with 500 Internal Error.
+	 */
+	public void failNext(int count) {
+		failures.set(count);
+	}
+
+	@Override
+	public void handle(HttpExchange exchange) throws IOException {
+		try {
+			byte[] body = read(exchange.getRequestBody());
+			String auth = exchange.getRequestHeaders().getFirst("Authorization");
+			String hash = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+			if ((auth == null) || !auth.startsWith("AWS4-HMAC-SHA256 Credential=") ||
+					!auth.contains("Signature=") || !sha256(body).equals(hash)) {
+				respond(exchange, 403, error("SignatureDoesNotMatch"), null);
+				return;
+			}
+			if (failures.getAndDecrement() > 0) {
+				respond(exchange, 500, error("InternalError"), null);
+				return;
+			}
+			String path = exchange.getRequestURI().getPath();
+			if (!path.startsWith("/" + bucket)) {
+				respond(exchange, 404, error("NoSuchBucket"), null);
+				return;
+			}
+			String              key    = path.substring(bucket.length() + 1);
+			Map<String, String> query  = query(exchange.getRequestURI().getRawQuery());
+			String              method = exchange.getRequestMethod();
+			if (key.isEmpty() || key.equals("/")) {
+				list(exchange, query);
+				return;
+			}
+			key = key.substring(1);
+			if (method.equals("POST") && query.containsKey("uploads")) {
+				String id = "upload-" + nextUpload.incrementAndGet();
+				uploads.put(id, new TreeMap<Integer, byte[]>());
+				respond(exchange, 200, ("<InitiateMultipartUploadResult><Bucket>" + bucket
+						+ "</Bucket><Key>" + key + "</Key><UploadId>" + id
+						+ "</UploadId></InitiateMultipartUploadResult>")
+						.getBytes(StandardCharsets.UTF_8), null);
+			}
+			else if (method.equals("PUT") && query.containsKey("uploadId")) {
+				SortedMap<Integer, byte[]> upload = uploads.get(query.get("uploadId"));
+				if (upload == null) {
+					respond(exchange, 404, error("NoSuchUpload"), null);
+					return;
+				}
+				int now = active.incrementAndGet();
+				try {
+					synchronized (maxActive) {
+						maxActive.set(Math.max(maxActive.get(), now));
+					}
+					if (partDelay > 0) {
+						Thread.sleep(partDelay);
+					}
+				}
+				finally {
+					active.decrementAndGet();
+				}
+				synchronized (upload) {
+					upload.put(Integer.parseInt(query.get("partNumber")), body);
+				}
+				parts.incrementAndGet();
+				respond(exchange, 200, new byte[0], "\"" + md5(body) + "\"");
+			}
+			else if (method.equals("POST") && query.containsKey("uploadId")) {
+				SortedMap<Integer, byte[]> upload = uploads.remove(query.get("uploadId"));
+				if (upload == null) {
+					respond(exchange, 404, error("NoSuchUpload"), null);
+					return;
+				}
+				ByteArrayOutputStream object = new ByteArrayOutputStream();
+				Matcher matcher  = PART.matcher(new String(body, StandardCharsets.UTF_8));
+				int     expected = 1;
+				while (matcher.find()) {
+					byte[] part = upload.get(Integer.parseInt(matcher.group(1)));
+					if ((part == null) || (Integer.parseInt(matcher.group(1)) != expected++) ||
+							!matcher.group(2).replace("&quot;", "\"").equals("\"" + md5(part) + "\"")) {
+						respond(exchange, 400, error("InvalidPart"), null);
+						return;
+					}
+					object.write(part);
+				}
+				synchronized (this) {
+					objects.put(key, object.toByteArray());
+				}
+				respond(exchange, 200, "<CompleteMultipartUploadResult/>"
+						.getBytes(StandardCharsets.UTF_8), null);
+			}
+			else if (method.equals("DELETE") && query.containsKey("uploadId")) {
+				uploads.remove(query.get("uploadId"));
+				respond(exchange, 204, null, null);
+			}
+			else if (method.equals("PUT")) {
+				synchronized (this) {
+					objects.put(key, body);
+				}
+				respond(exchange, 200, new byte[0], "\"" + md5(body) + "\"");
+			}
+			else if (method.equals("GET") || method.equals("HEAD")) {
+				byte[] object = getObject(key);
+				if (object == null) {
+					respond(exchange, 404, method.equals("HEAD") ? null : error("NoSuchKey"), null);
+				}
+				else {
+					respond(exchange, 200, method.equals("HEAD") ? null : object, null);
+				}
+			}
+			else if (method.equals("DELETE")) {
+				synchronized (this) {
+					objects.remove(key);
+				}
+				respond(exchange, 204, null, null);
+			}
+			else {
+				respond(exchange, 405, error("MethodNotAllowed"), null);
+			}
+		}
+		catch (Exception e) {
+			respond(exchange, 500, error("InternalError"), null);
+		}
+	}
+
+	private synchronized void list(HttpExchange exchange, Map<String, String> query)
+			throws IOException {
+		String prefix = query.containsKey("prefix") ? query.get("prefix") : "";
+		String after  = query.get("continuation-token");
+		StringBuilder sb = new StringBuilder("<ListBucketResult>");
+		int     count     = 0;
+		String  last      = null;
+		boolean truncated = false;
+		for (String key : objects.keySet()) {
+			if (!key.startsWith(prefix) || ((after != null) && (key.compareTo(after) <= 0))) {
+				continue;
+			}
+			if (count == maxKeys) {
+				truncated = true;
+				break;
+			}
+			sb.append("<Contents><Key>").append(key).append("</Key><Size>")
+					.append(objects.get(key).length).append("</Size></Contents>");
+			last = key;
+			count++;
+		}
+		sb.append("<IsTruncated>").append(truncated).append("</IsTruncated>");
+		if (truncated) {
+			sb.append("<NextContinuationToken>").append(last)
+					.append("</NextContinuationToken>");
+		}
+		sb.append("</ListBucketResult>");
+		respond(exchange, 200, sb.toString().getBytes(StandardCharsets.UTF_8), null);
+	}
+
+	private static Map<String, String> query(String raw) throws IOException {
+		Map<String, String> query = new HashMap<String, String>();
+		if (raw != null) {
+			for (String pair : raw.split("&")) {
+				int equals = pair.indexOf('=');
+				String name  = (equals < 0) ? pair : pair.substring(0, equals);
+				String value = (equals < 0) ? "" : pair.substring(equals + 1);
+				query.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+			}
+		}
+		return query;
+	}
+
+	private static void respond(HttpExchange exchange, int status, byte[] body,
+			String etag) throws IOException {
+		if (etag != null) {
+			exchange.getResponseHeaders().add("ETag", etag);
+		}
+		if ((body == null) || (body.length == 0) ||
+				exchange.getRequestMethod().equals("HEAD")) {
+			exchange.sendResponseHeaders(status, -1);
+		}
+		else {
+			exchange.sendResponseHeaders(status, body.length);
+			try (OutputStream os = exchange.getResponseBody()) {
+				os.write(body);
+			}
+		}
+		exchange.close();
+	}
+
+	private static byte[] error(String code) {
+		return ("<Error><Code>" + code + "</Code></Error>").getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static byte[] read(InputStream is) throws IOException {
+		ByteArrayOutputStream baos   = new ByteArrayOutputStream();
+		byte[]                buffer = new byte[8192];
+		int                   count;
+		while ((count = is.read(buffer)) != -1) {
+			baos.write(buffer, 0, count);
+		}
+		return baos.toByteArray();
+	}
+
+	private static String sha256(byte[] b) throws NoSuchAlgorithmException {
+		return hex(MessageDigest.getInstance("SHA-256").digest(b));
+	}
+
+	private static String md5(byte[] b) throws NoSuchAlgorithmException {
+		return hex(MessageDigest.getInstance("MD5").digest(b));
+	}
+
+	private static String hex(byte[] b) {
+		StringBuilder sb = new StringBuilder();
+		for (byte value : b) {
+			sb.append(String.format("%02x", value & 0xff));
+		}
+		return sb.toString();
+	}
+}
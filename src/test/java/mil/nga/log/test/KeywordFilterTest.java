@@ -0,0 +1,174 @@
+package mil.nga.log.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import mil.nga.util.KeywordFilter;
+
+public class KeywordFilterTest {
+
+	private static final String LINE =
+			"2026-01-01 INFO GET /api/v1/Users from 10.0.0.1 "
+			+ "session=ABC-123-def! --verbose <admin@Example.com>.\n";
+
+	private Path sidecar;
+
+	@Before
+	public void setUp() throws IOException {
+		sidecar = Files.createTempFile("filter", ".bloom");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(sidecar);
+	}
+
+	private static KeywordFilter filterOf(byte[] content, int chunk) {
+		KeywordFilter filter = new KeywordFilter(content.length);
+		for (int i = 0; i < content.length; i += chunk) {
+			filter.update(content, i, Math.min(chunk, content.length - i));
+		}
+		filter.finish();
+		return filter;
+	}
+
+	private KeywordFilter roundTrip(KeywordFilter filter, String checksum)
+			throws IOException {
+		try (OutputStream os = Files.newOutputStream(sidecar)) {
+			filter.write(os, checksum);
+		}
+		return KeywordFilter.read(sidecar, checksum);
+	}
+
+	private static boolean contains(String line, String token) {
+		byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+		return KeywordFilter.containsToken(bytes, 0, bytes.length,
+				KeywordFilter.normalize(token).getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Words and compound tokens are recorded without surrounding
+	 * punctuation, whichever chunks the content arrives in, and a line is
+	 * found to contain exactly those tokens.
+	 */
+	@Test
+	public void testTokenization() throws IOException {
+		String[] present = { "10.0.0.1", "/api/v1/users", "api", "USERS",
+				"abc-123-def", "ABC", "verbose", "admin@example.com",
+				"example", "2026-01-01", "info", "session" };
+		String[] absent  = { "api/v1", "abc-123", "123-def", "xample",
+				"admin@example", "10.0.0" };
+		byte[] content = LINE.getBytes(StandardCharsets.UTF_8);
+		for (int chunk : new int[] { 1, 3, 7, content.length }) {
+			KeywordFilter filter = filterOf(content, chunk);
+			for (String token : present) {
+				assertTrue(token, filter.mightContain(KeywordFilter.normalize(token)));
+				assertTrue(token, contains(LINE, token));
+			}
+			for (String token : absent) {
+				assertFalse(token, filter.mightContain(KeywordFilter.normalize(token)));
+				assertFalse(token, contains(LINE, token));
+			}
+		}
+	}
+
+	/**
+	 * Queries are trimmed and folded to the recorded form; a query that
+	 * is not a single token cannot be answered.
+	 */
+	@Test
+	public void testNormalize() {
+		assertEquals("foo.bar", KeywordFilter.normalize("--Foo.Bar--"));
+		assertEquals("10.0.0.1", KeywordFilter.normalize("10.0.0.1."));
+		assertEquals("café", KeywordFilter.normalize("Café"));
+		assertNull(KeywordFilter.normalize("two words"));
+		assertNull(KeywordFilter.normalize("..."));
+		assertNull(KeywordFilter.normalize(""));
+
+		// Tokens outside the recorded lengths never rule an archive out.
+		KeywordFilter filter = filterOf(new byte[0], 1);
+		assertTrue(filter.mightContain("ab"));
+		assertFalse(filter.mightContain("abc"));
+	}
+
+	/**
+	 * Every token recorded is still found once the filter has been folded
+	 * and read back from its sidecar, in whatever case it is queried.
+	 */
+	@Test
+	public void testNoFalseNegativesAfterFolding() throws IOException {
+		Random                random = new Random(5);
+		List<String>          words  = new ArrayList<String>();
+		ByteArrayOutputStream bytes  = new ByteArrayOutputStream();
+		for (int i = 0; i < 20000; i++) {
+			String word = Long.toString(random.nextLong() & Long.MAX_VALUE, 36)
+					+ "-" + Integer.toString(random.nextInt(1000));
+			words.add(word);
+			bytes.write((i + " Request " + word.toUpperCase() + " done\n")
+					.getBytes(StandardCharsets.UTF_8));
+		}
+		// Sized for far more content than it receives, so it is folded.
+		KeywordFilter filter = new KeywordFilter(64L * 1024 * 1024);
+		int unfolded = filter.getSize();
+		byte[] content = bytes.toByteArray();
+		for (int i = 0; i < content.length; i += 4093) {
+			filter.update(content, i, Math.min(4093, content.length - i));
+		}
+		filter.finish();
+
+		KeywordFilter read = roundTrip(filter, "crc32c:0000beef");
+		assertTrue(read.getSize() < unfolded);
+		for (String word : words) {
+			assertTrue(word, read.mightContain(KeywordFilter.normalize(word)));
+		}
+		int falsePositives = 0;
+		for (int i = 0; i < 10000; i++) {
+			if (read.mightContain("absent" + i)) {
+				falsePositives++;
+			}
+		}
+		assertTrue("false positives " + falsePositives, falsePositives < 300);
+	}
+
+	/**
+	 * A sidecar written for other content (e.g. left behind when the
+	 * archive was replaced) is ignored, and a file that is not a filter
+	 * is rejected.
+	 */
+	@Test
+	public void testSidecarChecksum() throws IOException {
+		KeywordFilter filter = filterOf(LINE.getBytes(StandardCharsets.UTF_8), 64);
+		assertNotNull(roundTrip(filter, "crc32c:00001234"));
+		assertNull(KeywordFilter.read(sidecar, "crc32c:00005678"));
+		KeywordFilter read = KeywordFilter.read(sidecar, "crc32c:00001234");
+		assertTrue(read.isFinished());
+		assertEquals(filter.getTokens(), read.getTokens());
+
+		Files.write(sidecar, "not a filter".getBytes(StandardCharsets.UTF_8));
+		try {
+			KeywordFilter.read(sidecar, "crc32c:00001234");
+			fail("expected an IOException");
+		}
+		catch (IOException ioe) {
+			assertTrue(ioe.getMessage().contains("is not a keyword filter"));
+		}
+	}
+}
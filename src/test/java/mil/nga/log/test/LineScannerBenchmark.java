@@ -0,0 +1,112 @@
+package mil.nga.log.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import mil.nga.util.LineScanner;
+import mil.nga.util.LogTimestamps;
+
+/**
+ * Single threaded throughput of the line scanner alone and of the line
+ * scanner feeding the timestamp parser, over generated Apache access,
+ * Tomcat and OpenAM debug lines.  Not run as part of the build:
+ *
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes mil.nga.log.test.LineScannerBenchmark [MB]
+ * </pre>
+ */
+public class LineScannerBenchmark {
+
+	private static final String[] MONTHS = {
+			"Jan", "Feb", "Mar", "Apr", "May", "Jun",
+			"Jul", "Aug", "Sep", "Oct", "Nov", "Dec" };
+
+	private static byte[] generate(int size) {
+		Random random = new Random(1);
+		ByteArrayOutputStream os = new ByteArrayOutputStream(size + 1024);
+		StringBuilder sb = new StringBuilder();
+		// Lines are in time order, as in a real log.
+		long clock = 0;
+		while (os.size() < size) {
+			sb.setLength(0);
+			clock += random.nextInt(200);
+			int day    = 1 + (int)((clock / 86400000L) % 28);
+			String month = MONTHS[(int)((clock / (28 * 86400000L)) % 12)];
+			int hour   = (int)((clock / 3600000L) % 24);
+			int minute = (int)((clock / 60000L) % 60);
+			int second = (int)((clock / 1000L) % 60);
+			int millis = (int)(clock % 1000L);
+			switch (random.nextInt(4)) {
+			case 0:
+			case 1:
+				sb.append(String.format("10.%d.%d.%d - - [%02d/%s/2026:%02d:%02d:%02d -0500] "
+						+ "\"GET /openam/json/sessions?_action=validate&id=%08x HTTP/1.1\" 200 %d\n",
+						random.nextInt(256), random.nextInt(256), random.nextInt(256),
+						day, month, hour, minute, second,
+						random.nextInt(), random.nextInt(100000)));
+				break;
+			case 2:
+				sb.append(String.format("%02d-%s-2026 %02d:%02d:%02d.%03d INFO [http-nio-8443-exec-%d] "
+						+ "org.apache.catalina.core.StandardContext.reload Reloading context\n",
+						day, month, hour, minute, second,
+						millis, random.nextInt(200)));
+				break;
+			default:
+				sb.append(String.format("amSession:%02d/%02d/2026 %02d:%02d:%02d:%03d %s EST: "
+						+ "Thread[http-nio-8443-exec-%d,5,main]\nSessionService.validate: token %08x\n",
+						1 + (int)((clock / (28 * 86400000L)) % 12), day,
+						(hour % 12 == 0) ? 12 : hour % 12, minute, second, millis,
+						(hour < 12) ? "AM" : "PM", random.nextInt(200),
+						random.nextInt()));
+			}
+			byte[] line = sb.toString().getBytes(StandardCharsets.US_ASCII);
+			os.write(line, 0, line.length);
+		}
+		return os.toByteArray();
+	}
+
+	private static long scan(LineScanner scanner, byte[] data) throws IOException {
+		long bytes = 0;
+		scanner.reset(new ByteArrayInputStream(data));
+		while (scanner.next()) {
+			bytes += scanner.length();
+		}
+		return bytes;
+	}
+
+	private static long parse(LineScanner scanner, LogTimestamps parser, byte[] data)
+			throws IOException {
+		long sum = 0;
+		scanner.reset(new ByteArrayInputStream(data));
+		while (scanner.next()) {
+			sum += parser.parse(scanner.array(), scanner.start(), scanner.length());
+		}
+		return sum;
+	}
+
+	private static void report(String name, long bytes, long nanos) {
+		System.out.println(String.format("%-20s %8.2f GB/s", name,
+				(bytes / (double)nanos)));
+	}
+
+	public static void main(String[] args) throws IOException {
+		int megabytes = (args.length > 0) ? Integer.parseInt(args[0]) : 256;
+		byte[] data = generate(megabytes << 20);
+		LineScanner   scanner = new LineScanner();
+		LogTimestamps parser  = new LogTimestamps();
+		long check = 0;
+		for (int round = 0; round < 5; round++) {
+			long start = System.nanoTime();
+			check += scan(scanner, data);
+			report("scan", data.length, System.nanoTime() - start);
+			start = System.nanoTime();
+			check += parse(scanner, parser, data);
+			report("scan + timestamps", data.length, System.nanoTime() - start);
+		}
+		System.out.println("(check " + check + ")");
+	}
+}
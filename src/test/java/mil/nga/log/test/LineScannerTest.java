@@ -0,0 +1,158 @@
+package mil.nga.log.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import mil.nga.util.LineScanner;
+import mil.nga.util.LogTimestamps;
+
+public class LineScannerTest {
+
+	/**
+	 * Stream returning at most a few bytes per read.
+	 */
+	private static class TrickleInputStream extends ByteArrayInputStream {
+		public TrickleInputStream(byte[] buf) {
+			super(buf);
+		}
+		@Override
+		public synchronized int read(byte[] b, int off, int len) {
+			return super.read(b, off, Math.min(len, 3));
+		}
+	}
+
+	private List<String> lines(LineScanner scanner) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		while (scanner.next()) {
+			lines.add(new String(scanner.array(), scanner.start(),
+					scanner.length(), StandardCharsets.UTF_8));
+			assertEquals(lines.size(), scanner.getLineNumber());
+		}
+		return lines;
+	}
+
+	/**
+	 * Split the input the way String.split() would, dropping a trailing
+	 * empty line and carriage returns.
+	 */
+	private List<String> expected(String input) {
+		List<String> lines = new ArrayList<String>();
+		for (String line : input.split("\n", -1)) {
+			lines.add(line.endsWith("\r") ?
+					line.substring(0, line.length() - 1) : line);
+		}
+		if (input.endsWith("\n") || input.isEmpty()) {
+			lines.remove(lines.size() - 1);
+		}
+		return lines;
+	}
+
+	@Test
+	public void testLineTerminators() throws IOException {
+		String[] inputs = {
+				"", "\n", "a", "a\n", "a\r\nb\r\n", "a\n\nb", "\r\n\r\n",
+				"first line\nsecond\r\nno terminator" };
+		for (String input : inputs) {
+			byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+			assertEquals(input, expected(input),
+					lines(new LineScanner().reset(new ByteArrayInputStream(bytes))));
+			assertEquals(input, expected(input),
+					lines(new LineScanner().reset(bytes, 0, bytes.length)));
+		}
+	}
+
+	@Test
+	public void testSmallBufferAndLongLines() throws IOException {
+		Random random = new Random(42);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 500; i++) {
+			int length = random.nextInt(i % 50 == 0 ? 5000 : 40);
+			for (int j = 0; j < length; j++) {
+				sb.append((char)('a' + random.nextInt(26)));
+			}
+			sb.append(random.nextBoolean() ? "\n" : "\r\n");
+		}
+		sb.append("last");
+		String input = sb.toString();
+		byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+
+		LineScanner scanner = new LineScanner(16);
+		assertEquals(expected(input), lines(scanner.reset(
+				new TrickleInputStream(bytes))));
+		// Reuse for content in memory, then for a stream again.
+		assertEquals(expected(input), lines(scanner.reset(bytes, 0, bytes.length)));
+		assertEquals(expected(input), lines(scanner.reset(
+				new ByteArrayInputStream(bytes))));
+		assertFalse(scanner.next());
+	}
+
+	private long expectedTime(String pattern, String text) throws Exception {
+		SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+		return format.parse(text).getTime();
+	}
+
+	private long parse(String line) {
+		byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+		return new LogTimestamps().parse(bytes, 0, bytes.length);
+	}
+
+	@Test
+	public void testTimestampFormats() throws Exception {
+		assertEquals(expectedTime("yyyy-MM-dd HH:mm:ss,SSS", "2026-01-31 23:59:59,123"),
+				parse("2026-01-31 23:59:59,123 INFO [main] Started"));
+		assertEquals(expectedTime("yyyy-MM-dd HH:mm:ss.SSS", "2026-07-04 12:00:01.500"),
+				parse("2026-07-04T12:00:01.5 DEBUG message"));
+		assertEquals(expectedTime("yyyy-MM-dd HH:mm:ss", "2026-03-08 02:30:00"),
+				parse("\"2026-03-08 02:30:00\",\"AM-ACCESS-ATTEMPT\""));
+		assertEquals(expectedTime("dd/MMM/yyyy:HH:mm:ss Z", "31/Jan/2026:23:59:59 -0500"),
+				parse("10.0.0.1 - - [31/Jan/2026:23:59:59 -0500] \"GET / HTTP/1.1\" 200 512"));
+		assertEquals(expectedTime("dd-MMM-yyyy HH:mm:ss.SSS", "05-Nov-2026 01:30:00.042"),
+				parse("05-Nov-2026 01:30:00.042 INFO [main] org.apache.catalina.startup"));
+		assertEquals(expectedTime("MMM d, yyyy h:mm:ss a", "Feb 3, 2026 1:02:03 PM"),
+				parse("Feb 3, 2026 1:02:03 PM org.apache.catalina.startup.Catalina start"));
+		assertEquals(expectedTime("MMM d, yyyy h:mm:ss a", "Dec 25, 2026 12:00:00 AM"),
+				parse("Dec 25, 2026 12:00:00 AM org.apache.coyote.AbstractProtocol"));
+		assertEquals(expectedTime("MM/dd/yyyy hh:mm:ss:SSS a", "10/18/2026 09:15:30:250 PM"),
+				parse("amSession:10/18/2026 09:15:30:250 PM EDT: Thread[main]"));
+
+		assertEquals(LogTimestamps.NONE, parse(""));
+		assertEquals(LogTimestamps.NONE, parse("\tat java.lang.Thread.run(Thread.java:748)"));
+		assertEquals(LogTimestamps.NONE, parse("2026-13-01 00:00:00 invalid month"));
+		assertEquals(LogTimestamps.NONE, parse("Caused by: java.io.IOException: Jan 2026"));
+	}
+
+	@Test
+	public void testTimestampZones() throws Exception {
+		// Every hour over a year in a zone with daylight saving time.
+		TimeZone zone = TimeZone.getTimeZone("America/New_York");
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+		format.setTimeZone(zone);
+		LogTimestamps parser = new LogTimestamps(zone);
+		long start = format.parse("2026-01-01 00:00:00").getTime();
+		for (long time = start; time < start + 366L * 24 * 3600 * 1000; time += 3600 * 1000 + 1000) {
+			String text = format.format(time);
+			byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+			assertEquals(text, format.parse(text).getTime(),
+					parser.parse(bytes, 0, bytes.length));
+		}
+	}
+
+	@Test
+	public void testCharSequenceParse() throws Exception {
+		assertEquals(expectedTime("yyyy-MM-dd HH:mm:ss", "2026-01-01 10:00:00"),
+				LogTimestamps.parse("2026-01-01 10:00:00 INFO"));
+		assertEquals(LogTimestamps.NONE, LogTimestamps.parse("no timestamp"));
+	}
+}
@@ -0,0 +1,121 @@
+package mil.nga.log.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+import mil.nga.util.LogTimestamps;
+import mil.nga.util.ParallelGzipOutputStream;
+import mil.nga.util.TimeIndex;
+
+public class ParallelGzipOutputStreamTest {
+
+	/**
+	 * Compress the input with small blocks and read it back with the 
+	 * standard JDK gzip reader.
+	 */
+	private byte[] roundTrip(byte[] input, int threads, int blockSize) 
+			throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		ParallelGzipOutputStream os = new ParallelGzipOutputStream(
+				compressed, threads, blockSize, -1);
+		// Write in odd sized pieces so that writes straddle blocks.
+		int off = 0;
+		while (off < input.length) {
+			int len = Math.min(777, input.length - off);
+			os.write(input, off, len);
+			off += len;
+		}
+		os.close();
+		
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		InputStream is = new GZIPInputStream(
+				new ByteArrayInputStream(compressed.toByteArray()));
+		byte[] buffer = new byte[4096];
+		int count = 0;
+		while ((count = is.read(buffer)) != -1) {
+			result.write(buffer, 0, count);
+		}
+		return result.toByteArray();
+	}
+	
+	@Test
+	public void testMultipleMembers() throws IOException {
+		byte[] input = new byte[100000];
+		Random random = new Random(42);
+		for (int i = 0; i < input.length; i++) {
+			input[i] = (byte)('a' + random.nextInt(8));
+		}
+		assertArrayEquals(input, roundTrip(input, 4, 4096));
+	}
+	
+	@Test
+	public void testIncompressible() throws IOException {
+		byte[] input = new byte[50000];
+		new Random(7).nextBytes(input);
+		assertArrayEquals(input, roundTrip(input, 2, 1000));
+	}
+	
+	@Test
+	public void testEmpty() throws IOException {
+		assertArrayEquals(new byte[0], roundTrip(new byte[0], 2, 1024));
+	}
+	
+	@Test
+	public void testTimeIndexedBlocks() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			sb.append(String.format(
+					"2026-01-01 10:%02d:%02d,000 INFO [main] message %d%n", 
+					i / 60 % 60, i % 60, i));
+		}
+		byte[] input = sb.toString().getBytes(StandardCharsets.UTF_8);
+		
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		ParallelGzipOutputStream os = new ParallelGzipOutputStream(
+				compressed, 2, 4096, -1);
+		TimeIndex index = new TimeIndex();
+		os.setTimeIndex(index);
+		os.write(input, 0, input.length);
+		os.close();
+		byte[] stored = compressed.toByteArray();
+		
+		List<TimeIndex.Block> blocks = index.getBlocks();
+		assertTrue(blocks.size() > 10);
+		assertEquals(stored.length, index.getStoredSize());
+		long previous = -1;
+		for (TimeIndex.Block block : blocks) {
+			// Every block decompresses on its own to whole lines.
+			InputStream is = new GZIPInputStream(new ByteArrayInputStream(
+					stored, (int)block.getStoredOffset(), block.getStoredLength()));
+			byte[] content = new byte[block.getLength()];
+			int off = 0;
+			int count = 0;
+			while ((count = is.read(content, off, content.length - off)) > 0) {
+				off += count;
+			}
+			assertArrayEquals(Arrays.copyOfRange(input, (int)block.getOffset(), 
+					(int)block.getOffset() + block.getLength()), content);
+			assertEquals('\n', content[content.length - 1]);
+			assertTrue(block.getFirst() > previous);
+			assertTrue(block.getLast() >= block.getFirst());
+			previous = block.getLast();
+		}
+		long first = LogTimestamps.parse("2026-01-01 10:00:00,000 INFO");
+		assertEquals(first, blocks.get(0).getFirst());
+		assertEquals(1, index.overlapping(first, first + 1).size());
+		assertArrayEquals(input, roundTrip(input, 2, 4096));
+	}
+}
@@ -0,0 +1,222 @@
+package mil.nga.log.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import mil.nga.logmgmt.ArchiveDecoder;
+import mil.nga.logmgmt.LogMgmtI;
+import mil.nga.logmgmt.Manifest;
+import mil.nga.logmgmt.ManifestEntry;
+import mil.nga.logmgmt.OutputFile;
+import mil.nga.logmgmt.PresetDictionary;
+import mil.nga.util.DictionaryTrainer;
+
+public class PresetDictionaryTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path store;
+	private Path logs;
+	private Path month;
+
+	@Before
+	public void setUp() throws IOException {
+		store = folder.newFolder("store").toPath();
+		logs  = folder.newFolder("logs").toPath();
+		month = store.resolve("gateway/app/2026/Jan");
+		Files.createDirectories(month);
+	}
+
+	/**
+	 * A small log of the kind the dictionary is trained on.
+	 */
+	private static byte[] sample(Random random) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 20; i++) {
+			sb.append("2026-01-01 12:00:00,000 INFO  [org.apache.catalina.core.")
+			  .append("StandardService] Request ")
+			  .append(random.nextInt(100000))
+			  .append(" from client ")
+			  .append(random.nextInt(256))
+			  .append(" completed with status 200\n");
+		}
+		return sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static PresetDictionary train() {
+		Random       random  = new Random(9);
+		List<byte[]> samples = new ArrayList<byte[]>();
+		for (int i = 0; i < 50; i++) {
+			samples.add(sample(random));
+		}
+		return new PresetDictionary(DictionaryTrainer.train(samples, 4096));
+	}
+
+	private static byte[] decode(Path archive) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (InputStream is = ArchiveDecoder.openContent(archive,
+				Files.newInputStream(archive), ManifestEntry.ENCODING_ZLIB)) {
+			byte[] buffer = new byte[4096];
+			int count;
+			while ((count = is.read(buffer)) > 0) {
+				bytes.write(buffer, 0, count);
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	private static int deflatedSize(byte[] content) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (OutputStream os = new DeflaterOutputStream(bytes)) {
+			os.write(content);
+		}
+		return bytes.size();
+	}
+
+	/**
+	 * The trainer keeps to the requested size and selects content common
+	 * to the samples.
+	 */
+	@Test
+	public void testTrain() {
+		PresetDictionary dictionary = train();
+		assertTrue(dictionary.getBytes().length > 0);
+		assertTrue(dictionary.getBytes().length <= 4096);
+		assertTrue(new String(dictionary.getBytes(), StandardCharsets.UTF_8)
+				.contains("completed with status"));
+		assertEquals(0, DictionaryTrainer.train(
+				Collections.<byte[]>emptyList(), 4096).length);
+	}
+
+	/**
+	 * Content compressed with a published dictionary names it in its
+	 * header, decodes through ArchiveDecoder and is smaller than without
+	 * the dictionary.
+	 */
+	@Test
+	public void testRoundTrip() throws IOException {
+		PresetDictionary dictionary = train();
+		byte[]           content    = sample(new Random(1));
+		Path             archive    = month.resolve("host_app_20260101.log.zlib");
+		Path             published  = dictionary.publish(month);
+		assertEquals(PresetDictionary.fileNameOf(dictionary.getId()),
+				published.getFileName().toString());
+		try (OutputStream os = dictionary.compress(
+				Files.newOutputStream(archive), Deflater.DEFAULT_COMPRESSION)) {
+			os.write(content);
+		}
+		assertEquals(dictionary.getId(), PresetDictionary.idOf(archive));
+		assertEquals(dictionary.getId(),
+				PresetDictionary.find(archive, dictionary.getId()).getId());
+		assertArrayEquals(content, decode(archive));
+		assertTrue(Files.size(archive) < deflatedSize(content));
+
+		// The archive cannot be read once its dictionary is gone.
+		Files.delete(published);
+		try {
+			decode(archive);
+			fail("expected a missing dictionary");
+		}
+		catch (ZipException ze) {
+			assertTrue(ze.getMessage().contains("not found"));
+		}
+	}
+
+	/**
+	 * A zlib stream compressed without a dictionary (or too short to hold
+	 * a header) has no DICTID.
+	 */
+	@Test
+	public void testIdOfRejectsStreamWithoutDictionary() throws IOException {
+		Path plain = month.resolve("plain.zlib");
+		try (OutputStream os = new DeflaterOutputStream(
+				Files.newOutputStream(plain))) {
+			os.write(sample(new Random(2)));
+		}
+		Path truncated = Files.write(month.resolve("truncated.zlib"),
+				new byte[] { 0x78, (byte)0xbb, 0 });
+		for (Path archive : new Path[] { plain, truncated }) {
+			try {
+				PresetDictionary.idOf(archive);
+				fail("expected no DICTID in " + archive);
+			}
+			catch (ZipException ze) {
+				assertTrue(ze.getMessage().contains("not compressed with a dictionary"));
+			}
+		}
+	}
+
+	/**
+	 * OutputFile compresses a small file with the configured dictionary,
+	 * publishes the dictionary beside the archive and records the zlib
+	 * encoding.
+	 */
+	@Test
+	public void testArchivedWithDictionary() throws Exception {
+		PresetDictionary dictionary = train();
+		Path dictionaryFile = Files.write(logs.resolve("trained.dict"),
+				dictionary.getBytes());
+		byte[] content = sample(new Random(3));
+		Path   file    = Files.write(logs.resolve("server.log-20260101"), content);
+
+		Properties props = new Properties();
+		props.setProperty(LogMgmtI.APPLICATION_NAME, "app");
+		props.setProperty(LogMgmtI.OUTPUT_BASE_PATH, store.toString());
+		props.setProperty(LogMgmtI.STATE_PATH, logs.resolve("state").toString());
+		props.setProperty(LogMgmtI.OUTPUT_DELAY, "0");
+		props.setProperty(LogMgmtI.OUTPUT_COMPRESS, "true");
+		props.setProperty(LogMgmtI.OUTPUT_COMPRESS_DICTIONARY,
+				dictionaryFile.toString());
+		assertEquals(1, new OutputFile(props, "gateway", null)
+				.process(Collections.singletonList(file)).getArchived());
+
+		List<Path> months = new ArrayList<Path>();
+		try (DirectoryStream<Path> years = Files.newDirectoryStream(
+				store.resolve("gateway/app"), "[0-9]*")) {
+			for (Path year : years) {
+				try (DirectoryStream<Path> stream = Files.newDirectoryStream(year)) {
+					for (Path dir : stream) {
+						if (!Manifest.read(dir).isEmpty()) {
+							months.add(dir);
+						}
+					}
+				}
+			}
+		}
+		assertEquals(1, months.size());
+		Map<String, ManifestEntry> entries = Manifest.read(months.get(0));
+		ManifestEntry entry   = entries.values().iterator().next();
+		Path          archive = months.get(0).resolve(entry.getDestination());
+		assertEquals(ManifestEntry.ENCODING_ZLIB, entry.getEncoding());
+		assertEquals(dictionary.getId(), PresetDictionary.idOf(archive));
+		assertTrue(Files.exists(PresetDictionary.directoryOf(months.get(0))
+				.resolve(PresetDictionary.fileNameOf(dictionary.getId()))));
+		assertArrayEquals(content, decode(archive));
+	}
+}
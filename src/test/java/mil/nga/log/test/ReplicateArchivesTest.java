@@ -0,0 +1,160 @@
+package mil.nga.log.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import mil.nga.logmgmt.Manifest;
+import mil.nga.logmgmt.ManifestEntry;
+import mil.nga.logmgmt.ReplicateArchives;
+import mil.nga.logmgmt.ReplicateArchives.Result;
+import mil.nga.logmgmt.StagedFile;
+import mil.nga.util.ContentDigest;
+
+public class ReplicateArchivesTest {
+
+	private static final String RELATIVE = "gateway/app/2026/Jan";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path store;
+	private Path mirror;
+	private Path dir;
+
+	@Before
+	public void setUp() throws IOException {
+		store  = folder.newFolder("store").toPath();
+		mirror = folder.newFolder("mirror").toPath();
+		dir    = Files.createDirectories(store.resolve(RELATIVE));
+	}
+
+	private static byte[] random(int size, long seed) {
+		byte[] bytes = new byte[size];
+		new Random(seed).nextBytes(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Write an archive to the store and record it in the manifest.
+	 */
+	private ManifestEntry archive(String name, byte[] content) throws IOException {
+		Files.write(dir.resolve(name), content);
+		ContentDigest digest = new ContentDigest(false);
+		digest.update(content, 0, content.length);
+		ManifestEntry entry = new ManifestEntry(name, ManifestEntry.ENCODING_RAW,
+				digest, "/var/log/" + name, 0L, digest);
+		Manifest.append(dir, "host", entry);
+		return entry;
+	}
+
+	private ReplicateArchives replicate() throws Exception {
+		ReplicateArchives replicator = new ReplicateArchives(store.toString(),
+				mirror.toString(), 2, 0);
+		replicator.replicate();
+		return replicator;
+	}
+
+	private Path mirrorOf(String name) {
+		return mirror.resolve(RELATIVE).resolve(name);
+	}
+
+	/**
+	 * Archives the manifests say are the same are skipped without being
+	 * read, new archives are copied, and a changed archive is rebuilt from
+	 * the mirror copy and matches its manifest entry.
+	 */
+	@Test
+	public void testSkipCopyAndPatch() throws Exception {
+		byte[] same    = random(64 * 1024, 1);
+		byte[] changed = random(512 * 1024, 2);
+		archive("host_app_20260101.log", same);
+		archive("host_app_20260102.log", changed);
+
+		ReplicateArchives replicator = replicate();
+		assertEquals(3, replicator.getCount(Result.COPIED));
+		assertArrayEquals(same, Files.readAllBytes(mirrorOf("host_app_20260101.log")));
+		assertArrayEquals(changed, Files.readAllBytes(mirrorOf("host_app_20260102.log")));
+
+		// Damage the store copy of the unchanged archive without changing its
+		// size.  The manifests still agree so it is not read.
+		byte[] damaged = same.clone();
+		damaged[100] ^= 0x01;
+		Files.write(dir.resolve("host_app_20260101.log"), damaged);
+
+		byte[] added = random(1000, 3);
+		archive("host_app_20260103.log", added);
+		byte[] patched = changed.clone();
+		System.arraycopy(random(500, 4), 0, patched, 200000, 500);
+		ManifestEntry entry = archive("host_app_20260102.log", patched);
+
+		replicator = replicate();
+		assertEquals(1, replicator.getCount(Result.UNCHANGED));
+		assertEquals(1, replicator.getCount(Result.COPIED));
+		// The archive and the appended manifest.
+		assertEquals(2, replicator.getCount(Result.PATCHED));
+		assertEquals(0, replicator.getCount(Result.CORRUPT));
+		assertEquals(0, replicator.getCount(Result.FAILED));
+		assertTrue(replicator.getReused() > patched.length / 2);
+		assertTrue(replicator.getSent() < patched.length / 4);
+
+		assertArrayEquals(same, Files.readAllBytes(mirrorOf("host_app_20260101.log")));
+		assertArrayEquals(added, Files.readAllBytes(mirrorOf("host_app_20260103.log")));
+		byte[] replica = Files.readAllBytes(mirrorOf("host_app_20260102.log"));
+		assertArrayEquals(patched, replica);
+		ContentDigest digest = new ContentDigest(false,
+				ContentDigest.algorithmOf(entry.getStoredCrc()));
+		digest.update(replica, 0, replica.length);
+		assertEquals(entry.getStoredCrc(), digest.getCrc());
+		assertEquals(entry.getStoredCrc(), Manifest.read(mirror.resolve(RELATIVE))
+				.get("host_app_20260102.log").getStoredCrc());
+	}
+
+	/**
+	 * An archive that no longer matches its manifest entry is not copied
+	 * over the mirror copy, no partial file is left behind, and the mirror
+	 * manifest keeps describing the copy the mirror holds.
+	 */
+	@Test
+	public void testFailedVerifyLeavesReplica() throws Exception {
+		byte[] content = random(256 * 1024, 5);
+		archive("host_app_20260101.log", content);
+		replicate();
+
+		// A new version is recorded but the store copy is corrupt.
+		byte[] updated = content.clone();
+		updated[1000] ^= 0x01;
+		archive("host_app_20260101.log", updated);
+		byte[] corrupt = updated.clone();
+		corrupt[2000] ^= 0x01;
+		Files.write(dir.resolve("host_app_20260101.log"), corrupt);
+
+		Path          replica = mirrorOf("host_app_20260101.log");
+		ManifestEntry held    = Manifest.read(replica.getParent())
+				.get("host_app_20260101.log");
+		ReplicateArchives replicator = replicate();
+		assertEquals(1, replicator.getCount(Result.CORRUPT));
+		assertEquals(1, replicator.getCount(Result.FAILED));
+		assertArrayEquals(content, Files.readAllBytes(replica));
+		assertFalse(Files.exists(StagedFile.partialOf(replica)));
+		assertEquals(held.getStoredCrc(), Manifest.read(replica.getParent())
+				.get("host_app_20260101.log").getStoredCrc());
+
+		// Once the store copy is repaired both are replicated.
+		Files.write(dir.resolve("host_app_20260101.log"), updated);
+		replicator = replicate();
+		assertEquals(2, replicator.getCount(Result.PATCHED));
+		assertArrayEquals(updated, Files.readAllBytes(replica));
+	}
+}
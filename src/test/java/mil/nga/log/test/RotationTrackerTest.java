@@ -0,0 +1,132 @@
+package mil.nga.log.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import mil.nga.logmgmt.InputFile;
+import mil.nga.logmgmt.LogMgmtI;
+import mil.nga.logmgmt.OutputFile;
+import mil.nga.logmgmt.RotationTracker;
+import mil.nga.util.ContentDigest;
+
+public class RotationTrackerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path state;
+	private Path logs;
+
+	@Before
+	public void setUp() throws IOException {
+		state = folder.newFolder("state").toPath();
+		logs  = folder.newFolder("logs").toPath();
+	}
+
+	/**
+	 * Properties selecting the rotated files in the test log directory,
+	 * with the record of archived files kept in the test state directory.
+	 */
+	private Properties createProperties() {
+		Properties props = new Properties();
+		props.setProperty(LogMgmtI.INPUT_PATH, logs.toString());
+		props.setProperty(LogMgmtI.INPUT_PATTERN, "*-2026*");
+		props.setProperty(LogMgmtI.STATE_PATH, state.toString());
+		props.setProperty(LogMgmtI.INPUT_TRACK_ROTATION, "true");
+		return props;
+	}
+
+	/**
+	 * Record a file as archived, as OutputFile does.
+	 */
+	private void archived(Path file, String algorithm) throws IOException {
+		byte[]        content = Files.readAllBytes(file);
+		ContentDigest digest  = new ContentDigest(false, algorithm);
+		digest.update(content, 0, content.length);
+		RotationTracker.open(state).add(file, content.length,
+				Files.getLastModifiedTime(file).toMillis(), digest.getCrc());
+	}
+
+	private void gzip(Path file) throws IOException {
+		try (OutputStream os = new GZIPOutputStream(Files.newOutputStream(
+				file.resolveSibling(file.getFileName() + ".gz")))) {
+			os.write(Files.readAllBytes(file));
+		}
+		Files.delete(file);
+	}
+
+	@Test
+	public void testSkipsRotatedFiles() throws Exception {
+		Path renamed = logs.resolve("catalina.out");
+		Path crc32   = logs.resolve("access.log-20260101");
+		Path crc32c  = logs.resolve("server.log-20260101");
+		Path fresh   = logs.resolve("catalina.out-20260102");
+		Files.write(renamed, "renamed".getBytes(StandardCharsets.UTF_8));
+		Files.write(crc32, "compressed after archive".getBytes(StandardCharsets.UTF_8));
+		Files.write(crc32c, "compressed and checked".getBytes(StandardCharsets.UTF_8));
+		Files.write(fresh, "not archived".getBytes(StandardCharsets.UTF_8));
+		archived(renamed, ContentDigest.CRC32C);
+		archived(crc32, ContentDigest.CRC32);
+		archived(crc32c, ContentDigest.CRC32C);
+
+		// logrotate renames one file and compresses the others.
+		Files.move(renamed, logs.resolve("catalina.out-20260101"));
+		gzip(crc32);
+		gzip(crc32c);
+
+		Properties props = createProperties();
+		List<Path> candidates = new InputFile(props).getCandidates();
+		assertEquals(1, candidates.size());
+		assertEquals(fresh, candidates.get(0));
+
+		props.setProperty(LogMgmtI.INPUT_TRACK_ROTATION, "false");
+		assertEquals(4, new InputFile(props).getCandidates().size());
+
+		// Tracking is off unless asked for.
+		props.remove(LogMgmtI.INPUT_TRACK_ROTATION);
+		InputFile input = new InputFile(props);
+		assertNull(input.getRotationTracker());
+		assertEquals(4, input.getCandidates().size());
+	}
+
+	/**
+	 * The record read by InputFile is the one OutputFile adds to, so a
+	 * file archived in a run is recognized under its rotated name without
+	 * the state being read again.
+	 */
+	@Test
+	public void testTrackerSharedWithOutput() throws Exception {
+		Path file = Files.write(logs.resolve("catalina.out-20260101"),
+				"archived in this run".getBytes(StandardCharsets.UTF_8));
+		Properties props = createProperties();
+		props.setProperty(LogMgmtI.APPLICATION_NAME, "app");
+		props.setProperty(LogMgmtI.OUTPUT_BASE_PATH,
+				folder.newFolder("store").toString());
+		props.setProperty(LogMgmtI.OUTPUT_DELAY, "0");
+		props.setProperty(LogMgmtI.INPUT_FILE_DELETE, "false");
+
+		InputFile  input  = new InputFile(props);
+		OutputFile output = new OutputFile(props, "gateway", null);
+		output.setRotationTracker(input.getRotationTracker());
+		assertEquals(1, output.process(input.getCandidates()).getArchived());
+
+		Files.delete(state.resolve(RotationTracker.STATE_FILE));
+		gzip(file);
+		assertTrue(input.getCandidates().isEmpty());
+	}
+}
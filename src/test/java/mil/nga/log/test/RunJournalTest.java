@@ -0,0 +1,246 @@
+package mil.nga.log.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import mil.nga.logmgmt.PosixStorageBackend;
+import mil.nga.logmgmt.RunJournal;
+import mil.nga.logmgmt.S3StorageBackend;
+import mil.nga.logmgmt.StagedFile;
+import mil.nga.logmgmt.StorageBackend;
+import mil.nga.logmgmt.StorageUpload;
+
+public class RunJournalTest {
+
+	private static final byte[] CONTENT =
+			"archived content\n".getBytes(StandardCharsets.UTF_8);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path           state;
+	private Path           store;
+	private Path           logs;
+	private StorageBackend backend;
+
+	@Before
+	public void setUp() throws IOException {
+		state   = folder.newFolder("state").toPath();
+		store   = folder.newFolder("store").toPath();
+		logs    = folder.newFolder("logs").toPath();
+		backend = new PosixStorageBackend(store);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		backend.close();
+	}
+
+	private Path source(String name) throws IOException {
+		return Files.write(logs.resolve(name), CONTENT);
+	}
+
+	private int journals() throws IOException {
+		int count = 0;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(state,
+				RunJournal.JOURNAL_PREFIX + "*" + RunJournal.JOURNAL_EXTENSION)) {
+			for (@SuppressWarnings("unused") Path journal : stream) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * A run that dies after recording the start of an archive leaves its
+	 * partial file behind.  Recovery removes the partial file and leaves
+	 * the source to be archived again.
+	 */
+	@Test
+	public void testRollBackBegun() throws IOException {
+		Path source      = source("server.log-20260101");
+		Path destination = store.resolve("host_app_20260101.log");
+		Path partial     = Files.write(StagedFile.partialOf(destination),
+				"half an arch".getBytes(StandardCharsets.UTF_8));
+
+		RunJournal journal = RunJournal.open(state, 1, backend);
+		journal.begin(source, destination, "host_app_20260101.log", true);
+		journal.close();
+		assertEquals(1, journals());
+
+		RunJournal.recover(state, backend);
+		assertFalse(Files.exists(partial));
+		assertFalse(Files.exists(destination));
+		assertArrayEquals(CONTENT, Files.readAllBytes(source));
+		assertEquals(0, journals());
+	}
+
+	/**
+	 * A run that dies after committing an archive but before removing its
+	 * source is rolled forward: the source is removed only if the run was
+	 * configured to remove it.  A torn final record is ignored.
+	 */
+	@Test
+	public void testRollForwardCommitted() throws IOException {
+		Path deleted  = source("server.log-20260101");
+		Path retained = source("server.log-20260102");
+		Path first    = Files.write(store.resolve("host_app_20260101.log"), CONTENT);
+		Path second   = Files.write(store.resolve("host_app_20260102.log"), CONTENT);
+
+		RunJournal journal = RunJournal.open(state, 1, backend);
+		journal.committed(journal.begin(deleted, first,
+				"host_app_20260101.log", true));
+		journal.committed(journal.begin(retained, second,
+				"host_app_20260102.log", false));
+		journal.close();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(state)) {
+			for (Path file : stream) {
+				Files.write(file, "D\t1x".getBytes(StandardCharsets.UTF_8),
+						StandardOpenOption.APPEND);
+			}
+		}
+
+		RunJournal.recover(state, backend);
+		assertFalse(Files.exists(deleted));
+		assertTrue(Files.exists(retained));
+		assertArrayEquals(CONTENT, Files.readAllBytes(first));
+		assertArrayEquals(CONTENT, Files.readAllBytes(second));
+		assertEquals(0, journals());
+	}
+
+	/**
+	 * Records are only forced once per group, so the commit record of an
+	 * archive that reached its final name may be lost.  The operation is
+	 * still rolled forward.
+	 */
+	@Test
+	public void testRollForwardLostCommitRecord() throws IOException {
+		Path source      = source("server.log-20260101");
+		Path destination = Files.write(store.resolve("host_app_20260101.log"),
+				CONTENT);
+
+		RunJournal journal = RunJournal.open(state, RunJournal.DEFAULT_GROUP_SIZE,
+				backend);
+		journal.begin(source, destination, "host_app_20260101.log", true);
+		journal.close();
+
+		RunJournal.recover(state, backend);
+		assertFalse(Files.exists(source));
+		assertTrue(Files.exists(destination));
+	}
+
+	/**
+	 * With a remote backend the archive never exists locally; whether an
+	 * upload without a commit record completed is decided by the backend.
+	 */
+	@Test
+	public void testRollForwardRemote() throws IOException {
+		FakeS3Server server = new FakeS3Server("logs");
+		try (S3StorageBackend s3 = new S3StorageBackend(server.getEndpoint(),
+				"us-east-1", "logs", "archive", "AKIDEXAMPLE", "secret",
+				64 * 1024, 1)) {
+			Path uploaded = source("server.log-20260101");
+			Path lost     = source("server.log-20260102");
+			StorageUpload upload = s3.put("gateway/app/host_app_20260101.log");
+			try {
+				upload.getOutputStream().write(CONTENT);
+				upload.commit();
+			}
+			finally {
+				upload.close();
+			}
+
+			RunJournal journal = RunJournal.open(state, 1, s3);
+			journal.begin(uploaded, store.resolve("gateway/app/host_app_20260101.log"),
+					"gateway/app/host_app_20260101.log", true);
+			journal.begin(lost, store.resolve("gateway/app/host_app_20260102.log"),
+					"gateway/app/host_app_20260102.log", true);
+			journal.close();
+
+			RunJournal.recover(state, s3);
+			assertFalse(Files.exists(uploaded));
+			assertArrayEquals(CONTENT, Files.readAllBytes(lost));
+			assertEquals(0, journals());
+		}
+		finally {
+			server.stop();
+		}
+	}
+
+	/**
+	 * A journal whose operations all completed or were aborted is removed
+	 * when the run closes it, and a later recovery touches nothing.
+	 */
+	@Test
+	public void testCompletedJournalRemoved() throws IOException {
+		Path done    = source("server.log-20260101");
+		Path aborted = source("server.log-20260102");
+		Path archive = Files.write(store.resolve("host_app_20260101.log"), CONTENT);
+
+		RunJournal journal = RunJournal.open(state, 1, backend);
+		long id = journal.begin(done, archive, "host_app_20260101.log", true);
+		journal.committed(id);
+		journal.done(id);
+		journal.aborted(journal.begin(aborted,
+				store.resolve("host_app_20260102.log"),
+				"host_app_20260102.log", true));
+		journal.close();
+		assertEquals(0, journals());
+
+		RunJournal.recover(state, backend);
+		assertTrue(Files.exists(done));
+		assertTrue(Files.exists(aborted));
+		assertTrue(Files.exists(archive));
+	}
+
+	/**
+	 * A staged file only appears under its final name once committed, and
+	 * is removed if it is closed without being committed.
+	 */
+	@Test
+	public void testStagedFile() throws IOException {
+		Path       destination = store.resolve("host_app_20260101.log");
+		StagedFile staged      = new StagedFile(destination);
+		try {
+			staged.getOutputStream().write(CONTENT);
+			staged.sync();
+			assertTrue(Files.exists(staged.getPartial()));
+			assertFalse(Files.exists(destination));
+			staged.commit();
+		}
+		finally {
+			staged.close();
+		}
+		assertTrue(staged.isCommitted());
+		assertFalse(Files.exists(staged.getPartial()));
+		assertArrayEquals(CONTENT, Files.readAllBytes(destination));
+
+		Path       abandoned = store.resolve("host_app_20260102.log");
+		StagedFile partial   = new StagedFile(abandoned);
+		try {
+			partial.getOutputStream().write(CONTENT);
+			partial.sync();
+		}
+		finally {
+			partial.close();
+		}
+		assertFalse(partial.isCommitted());
+		assertFalse(Files.exists(partial.getPartial()));
+		assertFalse(Files.exists(abandoned));
+	}
+}
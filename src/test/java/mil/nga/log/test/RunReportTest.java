@@ -0,0 +1,123 @@
+package mil.nga.log.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import mil.nga.logmgmt.LogMgmtI;
+import mil.nga.logmgmt.OutputFile;
+import mil.nga.logmgmt.RunReport;
+import mil.nga.logmgmt.SchedulePolicy;
+
+public class RunReportTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * An unbounded run fits every file and never expires.
+	 */
+	@Test
+	public void testUnbounded() {
+		RunReport report = new RunReport(0);
+		report.archived(1000, 60L * 60 * 1000);
+		assertTrue(report.fits(Long.MAX_VALUE / 2));
+		assertFalse(report.isExpired());
+	}
+
+	/**
+	 * Until a file has been archived any file fits; afterwards a file fits
+	 * only if the observed throughput lets it finish before the deadline.
+	 */
+	@Test
+	public void testFitsObservedThroughput() {
+		RunReport report = new RunReport(60L * 1000);
+		assertTrue(report.fits(Long.MAX_VALUE / 2));
+
+		// 1 MB per second leaves room for roughly 60 MB.
+		report.archived(1024 * 1024, 1000);
+		assertTrue(report.fits(10L * 1024 * 1024));
+		assertFalse(report.fits(100L * 1024 * 1024));
+		assertFalse(report.isExpired());
+	}
+
+	/**
+	 * Nothing fits once the deadline has passed.
+	 */
+	@Test
+	public void testExpired() throws InterruptedException {
+		RunReport report = new RunReport(1);
+		Thread.sleep(20);
+		assertTrue(report.isExpired());
+		assertFalse(report.fits(0));
+	}
+
+	/**
+	 * A file not expected to finish within the run budget is deferred and
+	 * left in place for the next run, while later files that fit are
+	 * still archived.
+	 */
+	@Test
+	public void testMaxRuntimeDeferral() throws Exception {
+		Path logs  = folder.newFolder("logs").toPath();
+		long now   = System.currentTimeMillis();
+
+		// Enough content that archiving it takes measurable time.
+		StringBuilder sb     = new StringBuilder();
+		Random        random = new Random(23);
+		while (sb.length() < 2 * 1024 * 1024) {
+			sb.append("2026-01-01 INFO Request ")
+			  .append(random.nextInt(1000000))
+			  .append(" completed\n");
+		}
+		Path first = Files.write(logs.resolve("server.log-20260101"),
+				sb.toString().getBytes(StandardCharsets.UTF_8));
+		Files.setLastModifiedTime(first, FileTime.fromMillis(now - 30000));
+
+		// A sparse file far too large to compress within a minute.
+		Path huge = logs.resolve("server.log-20260102");
+		try (RandomAccessFile raf = new RandomAccessFile(huge.toFile(), "rw")) {
+			raf.setLength(64L * 1024 * 1024 * 1024);
+		}
+		Files.setLastModifiedTime(huge, FileTime.fromMillis(now - 20000));
+
+		Path last = Files.write(logs.resolve("server.log-20260103"),
+				"small\n".getBytes(StandardCharsets.UTF_8));
+		Files.setLastModifiedTime(last, FileTime.fromMillis(now - 10000));
+
+		Properties props = new Properties();
+		props.setProperty(LogMgmtI.APPLICATION_NAME, "app");
+		props.setProperty(LogMgmtI.OUTPUT_BASE_PATH,
+				folder.newFolder("store").toString());
+		props.setProperty(LogMgmtI.STATE_PATH,
+				folder.newFolder("state").toString());
+		props.setProperty(LogMgmtI.OUTPUT_DELAY, "0");
+		props.setProperty(LogMgmtI.OUTPUT_COMPRESS, "true");
+		OutputFile output = new OutputFile(props, "gateway", null);
+		output.setMaxRuntime(1);
+		output.setSchedulePolicy(SchedulePolicy.OLDEST);
+
+		RunReport report = output.process(Arrays.asList(last, huge, first));
+		assertEquals(2, report.getArchived());
+		assertEquals(Collections.singletonList(huge), report.getRemaining());
+		assertEquals(Files.size(huge), report.getRemainingBytes());
+		assertFalse(Files.exists(first));
+		assertTrue(Files.exists(huge));
+		assertFalse(Files.exists(last));
+	}
+}
@@ -0,0 +1,107 @@
+package mil.nga.log.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import mil.nga.logmgmt.SchedulePolicy;
+import mil.nga.logmgmt.exceptions.InputException;
+
+public class SchedulePolicyTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path logs;
+
+	@Before
+	public void setUp() throws IOException {
+		logs = folder.newFolder("logs").toPath();
+	}
+
+	/**
+	 * Write a file of the input size, last modified the input number of
+	 * days ago.
+	 */
+	private Path file(String name, int size, int age) throws IOException {
+		Path file = Files.write(logs.resolve(name), new byte[size]);
+		Files.setLastModifiedTime(file, FileTime.fromMillis(
+				System.currentTimeMillis() - age * 24L * 60 * 60 * 1000));
+		return file;
+	}
+
+	@Test
+	public void testFromString() throws InputException {
+		assertEquals(SchedulePolicy.WALK, SchedulePolicy.fromString(null));
+		assertEquals(SchedulePolicy.WALK, SchedulePolicy.fromString(" "));
+		assertEquals(SchedulePolicy.OLDEST, SchedulePolicy.fromString("Oldest"));
+		assertEquals(SchedulePolicy.LPT, SchedulePolicy.fromString(" lpt "));
+	}
+
+	@Test(expected = InputException.class)
+	public void testFromStringRejectsUnknownPolicy() throws InputException {
+		SchedulePolicy.fromString("smallest");
+	}
+
+	/**
+	 * Candidates are ordered by age or size; a file whose attributes
+	 * cannot be read is scheduled last.
+	 */
+	@Test
+	public void testOrder() throws IOException {
+		Path small   = file("small.log", 10, 1);
+		Path large   = file("large.log", 30, 3);
+		Path medium  = file("medium.log", 20, 2);
+		Path missing = logs.resolve("missing.log");
+		List<Path> walk = Arrays.asList(missing, small, large, medium);
+
+		assertEquals(walk, SchedulePolicy.WALK.order(walk));
+		assertEquals(Arrays.asList(large, medium, small, missing),
+				SchedulePolicy.OLDEST.order(walk));
+		assertEquals(Arrays.asList(large, medium, small, missing),
+				SchedulePolicy.LARGEST.order(walk));
+		assertEquals(Arrays.asList(large, medium, small, missing),
+				SchedulePolicy.LPT.order(walk));
+	}
+
+	/**
+	 * LPT gives each worker its own queue, adding each file (largest
+	 * first) to the queue with the fewest bytes; every other policy
+	 * shares one queue.
+	 */
+	@Test
+	public void testAssign() throws IOException {
+		Path seven = file("seven.log", 7000, 0);
+		Path six   = file("six.log", 6000, 0);
+		Path five  = file("five.log", 5000, 0);
+		Path four  = file("four.log", 4000, 0);
+		Path three = file("three.log", 3000, 0);
+		List<Path> walk = Arrays.asList(three, four, five, six, seven);
+
+		List<List<Path>> queues = SchedulePolicy.LPT.assign(walk, 2);
+		assertEquals(2, queues.size());
+		assertEquals(Arrays.asList(seven, four, three), queues.get(0));
+		assertEquals(Arrays.asList(six, five), queues.get(1));
+
+		queues = SchedulePolicy.LPT.assign(walk, 3);
+		assertEquals(Arrays.asList(seven), queues.get(0));
+		assertEquals(Arrays.asList(six, three), queues.get(1));
+		assertEquals(Arrays.asList(five, four), queues.get(2));
+
+		assertEquals(Arrays.asList(Arrays.asList(seven, six, five, four, three)),
+				SchedulePolicy.LPT.assign(walk, 1));
+		assertEquals(Arrays.asList(Arrays.asList(seven, six, five, four, three)),
+				SchedulePolicy.LARGEST.assign(walk, 2));
+		assertEquals(Arrays.asList(walk), SchedulePolicy.WALK.assign(walk, 4));
+	}
+}
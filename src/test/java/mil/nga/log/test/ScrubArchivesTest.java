@@ -0,0 +1,204 @@
+package mil.nga.log.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import mil.nga.logmgmt.Manifest;
+import mil.nga.logmgmt.ManifestEntry;
+import mil.nga.logmgmt.ScrubArchives;
+import mil.nga.logmgmt.ScrubArchives.Result;
+import mil.nga.util.ContentDigest;
+
+public class ScrubArchivesTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final String[] MONTHS =
+			{ "Jan", "Feb", "Mar", "Apr", "May", "Jun" };
+
+	private Path store;
+	private Path checkpoint;
+
+	@Before
+	public void setUp() throws IOException {
+		store      = folder.newFolder("store").toPath();
+		checkpoint = store.resolve("scrub.ckpt");
+	}
+
+	private ScrubArchives scrub() throws Exception {
+		ScrubArchives scrubber = new ScrubArchives(store.toString(), 1, 0,
+				checkpoint.toString(), true);
+		scrubber.scrub();
+		return scrubber;
+	}
+
+	/**
+	 * Write a raw archive of random content and record it in the manifest
+	 * of its directory.
+	 */
+	private Path archive(Path dir, String name, int size, long seed)
+			throws IOException {
+		byte[] content = new byte[size];
+		new Random(seed).nextBytes(content);
+		Files.createDirectories(dir);
+		Path archive = Files.write(dir.resolve(name), content);
+		ContentDigest digest = new ContentDigest(false);
+		digest.update(content, 0, content.length);
+		Manifest.append(dir, "host", new ManifestEntry(name,
+				ManifestEntry.ENCODING_RAW, digest, "/var/log/app.log", 0L, digest));
+		return archive;
+	}
+
+	/**
+	 * Flip a byte of a file without changing its size.
+	 */
+	private static void damage(Path file) throws IOException {
+		byte[] bytes = Files.readAllBytes(file);
+		bytes[bytes.length / 2] ^= 0x01;
+		Files.write(file, bytes);
+	}
+
+	private List<String> checkpointed() throws IOException {
+		return Files.readAllLines(checkpoint, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * An archive whose bytes no longer match the manifest, one cut short
+	 * and one that has disappeared are all reported; the pass still
+	 * completes and removes its checkpoint.
+	 */
+	@Test
+	public void testReportsCorruptArchives() throws Exception {
+		Path dir = store.resolve("gateway/app/2026/Jan");
+		archive(dir, "host_app_20260101.log", 64 * 1024, 1);
+		damage(archive(dir, "host_app_20260102.log", 64 * 1024, 2));
+		Path truncated = archive(dir, "host_app_20260103.log", 64 * 1024, 3);
+		Files.write(truncated, new byte[1000]);
+		Files.delete(archive(dir, "host_app_20260104.log", 64 * 1024, 4));
+
+		ScrubArchives scrubber = new ScrubArchives(store.toString(), 1, 0,
+				checkpoint.toString(), false);
+		assertFalse(scrubber.scrub());
+		assertEquals(1, scrubber.getCount(Result.OK));
+		assertEquals(2, scrubber.getCount(Result.CORRUPT));
+		assertEquals(1, scrubber.getCount(Result.MISSING));
+		assertFalse(Files.exists(checkpoint));
+	}
+
+	/**
+	 * Interrupting a scrub abandons the directory in progress without
+	 * reporting it and keeps the checkpoint.  The next scrub resumes from
+	 * the checkpoint and does not read the directories already finished.
+	 */
+	@Test
+	public void testInterruptAndResume() throws Exception {
+		for (int i = 0; i < MONTHS.length; i++) {
+			Path dir = store.resolve("gateway/app/2026/" + MONTHS[i]);
+			archive(dir, "host_app_2026010" + i + ".log", 256 * 1024, 2 * i);
+			archive(dir, "host_app_2026011" + i + ".log", 256 * 1024, 2 * i + 1);
+		}
+
+		// Held to 1 MB/s a directory takes about half a second once the
+		// first second's allowance is used.
+		final ScrubArchives             scrubber    = new ScrubArchives(
+				store.toString(), 1, 1, checkpoint.toString(), false);
+		final AtomicBoolean             clean       = new AtomicBoolean(true);
+		final AtomicBoolean             interrupted = new AtomicBoolean();
+		final AtomicReference<Exception> error      =
+				new AtomicReference<Exception>();
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					clean.set(scrubber.scrub());
+					interrupted.set(Thread.currentThread().isInterrupted());
+				}
+				catch (Exception e) {
+					error.set(e);
+				}
+			}
+		};
+		thread.start();
+		long deadline = System.currentTimeMillis() + 30000;
+		while ((!Files.exists(checkpoint) || (checkpointed().size() < 2)) &&
+				(System.currentTimeMillis() < deadline)) {
+			Thread.sleep(10);
+		}
+		thread.interrupt();
+		thread.join(30000);
+		assertFalse(thread.isAlive());
+		assertEquals(null, error.get());
+		assertFalse(clean.get());
+		assertTrue(interrupted.get());
+		assertEquals(0, scrubber.getCount(Result.CORRUPT));
+
+		List<String> done = checkpointed();
+		assertTrue(done.size() >= 2);
+		assertTrue(done.size() < MONTHS.length);
+		assertTrue(scrubber.getCount(Result.OK) < 2 * MONTHS.length);
+
+		// Damage a directory that was finished: the resumed scrub never
+		// reads it.
+		try (DirectoryStream<Path> stream =
+				Files.newDirectoryStream(Paths.get(done.get(0)), "host_*")) {
+			for (Path file : stream) {
+				damage(file);
+			}
+		}
+
+		ScrubArchives resumed = scrub();
+		assertEquals(2 * (MONTHS.length - done.size()),
+				resumed.getCount(Result.OK));
+		assertEquals(0, resumed.getCount(Result.CORRUPT));
+		assertFalse(Files.exists(checkpoint));
+
+		// A fresh pass reads everything again.
+		assertEquals(2, scrub().getCount(Result.CORRUPT));
+	}
+
+	/**
+	 * The SHA-256 recorded for an archive stored raw is checked like that
+	 * of any other archive.
+	 */
+	@Test
+	public void testVerifiesSha256OfRawArchives() throws Exception {
+		Path   dir     = store.resolve("gateway/app/2026/Jan");
+		byte[] content = "raw log content".getBytes(StandardCharsets.UTF_8);
+		Files.createDirectories(dir);
+		Files.write(dir.resolve("host_app_20260101.log"), content);
+		ContentDigest digest = new ContentDigest(true);
+		digest.update(content, 0, content.length);
+		ManifestEntry entry = new ManifestEntry("host_app_20260101.log",
+				ManifestEntry.ENCODING_RAW, digest, "/var/log/app.log", 0L, digest);
+		Manifest.append(dir, "host", entry);
+
+		ScrubArchives scrubber = scrub();
+		assertEquals(1, scrubber.getCount(Result.OK));
+		assertEquals(0, scrubber.getCount(Result.CORRUPT));
+
+		// Last entry wins.
+		entry.setSourceSha256(ContentDigest.toHex(new byte[32]));
+		Manifest.append(dir, "host", entry);
+		scrubber = scrub();
+		assertEquals(0, scrubber.getCount(Result.OK));
+		assertEquals(1, scrubber.getCount(Result.CORRUPT));
+	}
+}
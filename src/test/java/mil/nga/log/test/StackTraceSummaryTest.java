@@ -0,0 +1,108 @@
+package mil.nga.log.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Test;
+
+import mil.nga.util.StackTraceSummary;
+
+public class StackTraceSummaryTest {
+
+	private static String catalina(int minute, int line, String message) {
+		return "02-Jan-2026 10:" + minute + ":00.000 SEVERE [http-nio-8080-exec-" + line
+				+ "] org.apache.catalina.core.StandardWrapperValve.invoke Servlet failed\n"
+				+ "java.lang.IllegalStateException: " + message + "\n"
+				+ "\tat com.example.Service.load(Service.java:" + line + ")\n"
+				+ "\tat sun.reflect.GeneratedMethodAccessor" + line + ".invoke(Unknown Source)\n"
+				+ "\tat com.example.Servlet.doGet(Servlet.java:" + (line * 2) + ")\n"
+				+ "Caused by: java.io.FileNotFoundException: /data/" + message + "\n"
+				+ "\tat java.io.FileInputStream.open0(Native Method)\n"
+				+ "\t... 2 more\n";
+	}
+
+	private static StackTraceSummary summarize(String log, int chunk) {
+		byte[]            data    = log.getBytes(StandardCharsets.UTF_8);
+		StackTraceSummary summary = new StackTraceSummary();
+		for (int i = 0; i < data.length; i += chunk) {
+			summary.update(data, i, Math.min(chunk, data.length - i));
+		}
+		summary.finish();
+		return summary;
+	}
+
+	@Test
+	public void testFingerprintIgnoresMessagesAndLineNumbers() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 10; i < 40; i++) {
+			sb.append(catalina(i, i, "file" + i));
+			sb.append("02-Jan-2026 10:" + i + ":30.000 INFO [main] Started\n");
+		}
+		// A JBoss trace, appended to the message.
+		sb.append("2026-01-02 11:00:00,000 ERROR [org.jboss.as] (MSC service thread 1-2) ")
+				.append("MSC000001: Failed to start: org.jboss.msc.service.StartException: oops\r\n")
+				.append("\tat org.jboss.as.server.Deployer.start(Deployer.java:99)\r\n");
+		String log = sb.toString();
+
+		StackTraceSummary summary = summarize(log, 7);
+		assertEquals(31, summary.getTotal());
+		List<StackTraceSummary.Trace> traces = summary.getTracesByCount();
+		assertEquals(2, traces.size());
+
+		StackTraceSummary.Trace first = traces.get(0);
+		assertEquals(30, first.getCount());
+		assertEquals("java.lang.IllegalStateException", first.getException());
+		assertEquals("com.example.Service.load(Service.java:10)", first.getFrame());
+		assertTrue(first.getExemplar().startsWith("java.lang.IllegalStateException: file10\n"));
+		assertTrue(first.getExemplar().endsWith("\t... 2 more\n"));
+		assertTrue(first.getFirst() < first.getLast());
+
+		StackTraceSummary.Trace second = traces.get(1);
+		assertEquals(1, second.getCount());
+		assertEquals("org.jboss.msc.service.StartException", second.getException());
+		assertNotEquals(first.getFingerprint(), second.getFingerprint());
+
+		// Buffer boundaries make no difference.
+		assertEquals(first.getFingerprint(),
+				summarize(log, 64 * 1024).getTracesByCount().get(0).getFingerprint());
+	}
+
+	@Test
+	public void testDifferentCauseIsDifferentTrace() {
+		StackTraceSummary summary = summarize(catalina(10, 1, "a")
+				+ catalina(11, 1, "a").replace("FileNotFoundException", "EOFException"), 100);
+		assertEquals(2, summary.getTraces().size());
+	}
+
+	@Test
+	public void testWriteReadAndMerge() throws IOException {
+		StackTraceSummary older = summarize(catalina(10, 5, "a"), 4096);
+		StackTraceSummary newer = summarize(catalina(20, 6, "b") + catalina(21, 7, "c"), 4096);
+		Path file = Files.createTempFile("traces", ".tmp");
+		try {
+			try (OutputStream os = Files.newOutputStream(file)) {
+				older.write(os, "crc32c:00000001");
+			}
+			assertEquals(null, StackTraceSummary.read(file, "crc32c:00000002"));
+			StackTraceSummary read = StackTraceSummary.read(file, "crc32c:00000001");
+			read.merge(newer);
+			assertEquals(3, read.getTotal());
+			StackTraceSummary.Trace trace = read.getTracesByCount().get(0);
+			assertEquals(3, trace.getCount());
+			assertEquals(older.getTracesByCount().get(0).getFirst(), trace.getFirst());
+			assertEquals(newer.getTracesByCount().get(0).getLast(), trace.getLast());
+			assertTrue(trace.getExemplar().startsWith("java.lang.IllegalStateException: a\n"));
+		}
+		finally {
+			Files.deleteIfExists(file);
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package mil.nga.log.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import mil.nga.logmgmt.PosixStorageBackend;
+import mil.nga.logmgmt.S3StorageBackend;
+import mil.nga.logmgmt.StorageBackend;
+import mil.nga.logmgmt.StorageUpload;
+
+public class StorageBackendTest {
+
+	private static final int PART_SIZE = 64 * 1024;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private FakeS3Server server;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new FakeS3Server("logs");
+	}
+
+	@After
+	public void tearDown() {
+		server.stop();
+	}
+
+	private S3StorageBackend s3(int threads) throws IOException {
+		return new S3StorageBackend(server.getEndpoint(), "us-east-1", "logs",
+				"archive", "AKIDEXAMPLE", "secret", PART_SIZE, threads);
+	}
+
+	private static void put(StorageBackend backend, String key, byte[] data)
+			throws IOException {
+		StorageUpload upload = backend.put(key);
+		try {
+			OutputStream os = upload.getOutputStream();
+			// Odd sized writes so that parts are cut mid-write.
+			for (int i = 0; i < data.length; i += 1000) {
+				os.write(data, i, Math.min(1000, data.length - i));
+			}
+			upload.commit();
+		}
+		finally {
+			upload.close();
+		}
+	}
+
+	@Test
+	public void testSmallObjectAndListing() throws IOException {
+		try (S3StorageBackend backend = s3(2)) {
+			byte[] data = "one line\n".getBytes(StandardCharsets.UTF_8);
+			put(backend, "gateway/app/2026/Feb/host_a_20260203.log", data);
+			put(backend, "gateway/app/2026/Feb/host b+c_20260204.log", data);
+			put(backend, "gateway/app/2026/Mar/host_a_20260301.log", data);
+			assertEquals(0, server.getParts());
+			assertArrayEquals(data,
+					server.getObject("archive/gateway/app/2026/Feb/host_a_20260203.log"));
+
+			server.setMaxKeys(1);
+			assertEquals(Arrays.asList(
+					"gateway/app/2026/Feb/host b+c_20260204.log",
+					"gateway/app/2026/Feb/host_a_20260203.log"),
+					backend.list("gateway/app/2026/Feb/"));
+			assertEquals(3, backend.list("").size());
+
+			assertTrue(backend.exists("gateway/app/2026/Feb/host b+c_20260204.log"));
+			backend.delete("gateway/app/2026/Feb/host b+c_20260204.log");
+			assertFalse(backend.exists("gateway/app/2026/Feb/host b+c_20260204.log"));
+
+			// Server errors are retried.
+			server.failNext(1);
+			assertTrue(backend.exists("gateway/app/2026/Mar/host_a_20260301.log"));
+			assertNull(backend.localPath("gateway/app/2026/Mar/host_a_20260301.log"));
+		}
+	}
+
+	@Test
+	public void testParallelMultipartUpload() throws IOException {
+		byte[] data = new byte[16 * PART_SIZE + 12345];
+		new Random(7).nextBytes(data);
+		server.setPartDelay(50);
+		try (S3StorageBackend backend = s3(4)) {
+			put(backend, "gateway/app/2026/Feb/big.gz", data);
+		}
+		assertEquals(17, server.getParts());
+		assertTrue(server.getMaxConcurrentParts() > 1);
+		assertTrue(server.getMaxConcurrentParts() <= 4);
+		assertArrayEquals(data, server.getObject("archive/gateway/app/2026/Feb/big.gz"));
+		assertEquals(0, server.getOpenUploads());
+	}
+
+	@Test
+	public void testUncommittedUploadIsAborted() throws IOException {
+		byte[] data = new byte[3 * PART_SIZE];
+		try (S3StorageBackend backend = s3(2)) {
+			StorageUpload upload = backend.put("gateway/app/2026/Feb/partial.gz");
+			upload.getOutputStream().write(data);
+			assertEquals(1, server.getOpenUploads());
+			upload.close();
+			assertFalse(upload.isCommitted());
+		}
+		assertEquals(0, server.getOpenUploads());
+		assertNull(server.getObject("archive/gateway/app/2026/Feb/partial.gz"));
+	}
+
+	@Test
+	public void testPosixBackend() throws IOException {
+		Path root = folder.newFolder("store").toPath();
+		try (PosixStorageBackend backend = new PosixStorageBackend(root)) {
+			byte[] data = "one line\n".getBytes(StandardCharsets.UTF_8);
+			put(backend, "gateway/app/2026/Feb/host_a_20260203.log", data);
+			assertArrayEquals(data, Files.readAllBytes(
+					root.resolve("gateway/app/2026/Feb/host_a_20260203.log")));
+
+			StorageUpload upload = backend.put("gateway/app/2026/Feb/host_b_20260203.log");
+			upload.getOutputStream().write(data);
+			upload.close();
+			assertEquals(Arrays.asList("gateway/app/2026/Feb/host_a_20260203.log"),
+					backend.list("gateway/app/"));
+			assertTrue(backend.list("other/").isEmpty());
+
+			backend.delete("gateway/app/2026/Feb/host_a_20260203.log");
+			assertFalse(backend.exists("gateway/app/2026/Feb/host_a_20260203.log"));
+		}
+	}
+}
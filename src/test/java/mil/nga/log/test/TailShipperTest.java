@@ -0,0 +1,179 @@
+package mil.nga.log.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import mil.nga.logmgmt.LogMgmtI;
+import mil.nga.logmgmt.Manifest;
+import mil.nga.logmgmt.ManifestEntry;
+import mil.nga.logmgmt.OutputFile;
+import mil.nga.logmgmt.TailCheckpoints;
+import mil.nga.logmgmt.TailShipper;
+
+public class TailShipperTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path state;
+	private Path store;
+	private Path logs;
+	private Path live;
+
+	@Before
+	public void setUp() throws IOException {
+		state = folder.newFolder("state").toPath();
+		store = folder.newFolder("store").toPath();
+		logs  = folder.newFolder("logs").toPath();
+		live  = logs.resolve("catalina.out");
+	}
+
+	private void ship() throws Exception {
+		Properties props = new Properties();
+		props.setProperty(LogMgmtI.APPLICATION_NAME, "app");
+		props.setProperty(LogMgmtI.OUTPUT_BASE_PATH, store.toString());
+		props.setProperty(LogMgmtI.STATE_PATH, state.toString());
+		props.setProperty(LogMgmtI.INPUT_INCREMENTAL, "true");
+		new TailShipper(new OutputFile(props, "gateway", null))
+				.ship(Collections.singletonList(live));
+	}
+
+	private static void append(Path file, String text) throws IOException {
+		Files.write(file, text.getBytes(StandardCharsets.UTF_8),
+				StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+	}
+
+	private List<Path> archives() throws IOException {
+		final List<Path> archives = new ArrayList<Path>();
+		Files.walkFileTree(store, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file,
+					BasicFileAttributes attrs) {
+				if (file.getFileName().toString().endsWith(".gz")) {
+					archives.add(file);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return archives;
+	}
+
+	/**
+	 * The content of the single archive written, checked against its
+	 * manifest entry.
+	 */
+	private String shipped() throws IOException {
+		List<Path> archives = archives();
+		assertEquals(1, archives.size());
+		Path archive = archives.get(0);
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		try (InputStream is = new GZIPInputStream(Files.newInputStream(archive))) {
+			byte[] buffer = new byte[4096];
+			int count;
+			while ((count = is.read(buffer)) > 0) {
+				content.write(buffer, 0, count);
+			}
+		}
+		ManifestEntry entry = Manifest.read(archive.getParent())
+				.get(archive.getFileName().toString());
+		assertEquals(Files.size(archive), entry.getStoredSize());
+		assertEquals(content.size(), entry.getSourceSize());
+		return new String(content.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testShipsAppendedBytes() throws Exception {
+		append(live, "one\n");
+		ship();
+		assertEquals("one\n", shipped());
+		ship();
+		assertEquals("one\n", shipped());
+		append(live, "two\n");
+		ship();
+		assertEquals("one\ntwo\n", shipped());
+	}
+
+	@Test
+	public void testShipsTruncatedFileFromStart() throws Exception {
+		append(live, "first line\n");
+		ship();
+
+		// copytruncate, then fewer bytes written than were shipped.
+		Files.write(live, "new\n".getBytes(StandardCharsets.UTF_8));
+		ship();
+		assertEquals("first line\nnew\n", shipped());
+
+		// copytruncate, then more bytes written than were shipped.
+		Files.write(live, "replaced entirely\n".getBytes(StandardCharsets.UTF_8));
+		ship();
+		assertEquals("first line\nnew\nreplaced entirely\n", shipped());
+	}
+
+	@Test
+	public void testShipsRestOfRotatedFile() throws Exception {
+		append(live, "one\n");
+		ship();
+		append(live, "two\n");
+		Files.move(live, logs.resolve("catalina.out.1"));
+		append(live, "three\n");
+		ship();
+		assertEquals("one\ntwo\nthree\n", shipped());
+	}
+
+	@Test
+	public void testRecoversTornAppend() throws Exception {
+		append(live, "one\n");
+		ship();
+
+		// A run that died part way through an append.
+		Path archive = archives().get(0);
+		Files.write(archive, new byte[] { 0x1f, (byte)0x8b, 8, 0 },
+				StandardOpenOption.APPEND);
+		append(live, "two\n");
+		ship();
+		assertEquals("one\ntwo\n", shipped());
+	}
+
+	@Test
+	public void testRecoversLostCheckpoint() throws Exception {
+		append(live, "one\n");
+		ship();
+		Path   checkpoint = state.resolve(TailCheckpoints.STATE_FILE);
+		byte[] saved      = Files.readAllBytes(checkpoint);
+
+		// A run that died after recording the append in the manifest but
+		// before saving its checkpoint.  The manifest already describes
+		// the archive.
+		append(live, "two\n");
+		ship();
+		Files.write(checkpoint, saved);
+		assertEquals("one\ntwo\n", shipped());
+
+		// The append is repeated and recorded again.
+		ship();
+		assertEquals("one\ntwo\n", shipped());
+		append(live, "three\n");
+		ship();
+		assertEquals("one\ntwo\nthree\n", shipped());
+	}
+}
@@ -0,0 +1,268 @@
+package mil.nga.log.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import mil.nga.logmgmt.ArchiveDecoder;
+import mil.nga.logmgmt.Manifest;
+import mil.nga.logmgmt.ManifestEntry;
+import mil.nga.logmgmt.PresetDictionary;
+import mil.nga.logmgmt.StagedFile;
+import mil.nga.logmgmt.TierArchives;
+import mil.nga.logmgmt.TierArchives.Result;
+import mil.nga.logmgmt.TierArchivesI;
+import mil.nga.logmgmt.exceptions.InputException;
+import mil.nga.util.ContentDigest;
+import mil.nga.util.CpuThrottle;
+
+public class TierArchivesTest {
+
+	private static final String HOST = "host";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path store;
+	private Path state;
+	private Path month;
+	private byte[] content;
+
+	@Before
+	public void setUp() throws IOException {
+		store = folder.newFolder("store").toPath();
+		state = folder.newFolder("state").toPath();
+		month = store.resolve("gateway/app/2025/Jan");
+		Files.createDirectories(month);
+
+		// Log-like content that compresses better at the maximum level.
+		StringBuilder sb     = new StringBuilder();
+		Random        random = new Random(11);
+		for (int i = 0; i < 5000; i++) {
+			sb.append("2025-01-01 00:00:")
+			  .append(i % 60)
+			  .append(" INFO  [worker-")
+			  .append(random.nextInt(8))
+			  .append("] Request ")
+			  .append(random.nextInt(1000))
+			  .append(" completed in ")
+			  .append(random.nextInt(500))
+			  .append(" ms\n");
+		}
+		content = sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Write an archive at the fastest level with its manifest entry, as
+	 * LogMgmt would.
+	 */
+	private Path archive(String name, String encoding) throws IOException {
+		Path archive = month.resolve(name);
+		ByteArrayOutputStream stored = new ByteArrayOutputStream();
+		if (ManifestEntry.ENCODING_GZIP.equals(encoding)) {
+			try (OutputStream os = new GZIPOutputStream(stored) {
+				{
+					def.setLevel(Deflater.BEST_SPEED);
+				}
+			}) {
+				os.write(content);
+			}
+		}
+		else if (ManifestEntry.ENCODING_ZIP.equals(encoding)) {
+			try (ZipOutputStream zos = new ZipOutputStream(stored)) {
+				zos.setLevel(Deflater.BEST_SPEED);
+				zos.putNextEntry(new ZipEntry("server.log"));
+				zos.write(content);
+			}
+		}
+		else {
+			PresetDictionary dictionary = new PresetDictionary(
+					"INFO  [worker- completed in  ms\n".getBytes(StandardCharsets.UTF_8));
+			dictionary.publish(month);
+			try (OutputStream os = dictionary.compress(stored, Deflater.BEST_SPEED)) {
+				os.write(content);
+			}
+		}
+		Files.write(archive, stored.toByteArray());
+
+		ContentDigest storedDigest  = new ContentDigest(false);
+		ContentDigest contentDigest = new ContentDigest(false);
+		storedDigest.update(stored.toByteArray(), 0, stored.size());
+		contentDigest.update(content, 0, content.length);
+		ManifestEntry entry = new ManifestEntry(name, encoding, storedDigest,
+				"/var/log/server.log", 0L, contentDigest);
+		entry.setLevel("fast");
+		Manifest.append(month, HOST, entry);
+		return archive;
+	}
+
+	private TierArchives tier() throws InputException, IOException {
+		TierArchives tier = new TierArchives(store.toString(), 0, 2, 100, 0, -1,
+				state.toString());
+		tier.tier();
+		return tier;
+	}
+
+	private static byte[] decode(Path archive, String encoding)
+			throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (InputStream is = ArchiveDecoder.openContent(archive,
+				Files.newInputStream(archive), encoding)) {
+			byte[] buffer = new byte[4096];
+			int count;
+			while ((count = is.read(buffer)) > 0) {
+				bytes.write(buffer, 0, count);
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * The manifest entry of an archive matches the archive on disk.
+	 */
+	private static void assertMatches(Path archive, ManifestEntry entry)
+			throws IOException {
+		byte[]        stored = Files.readAllBytes(archive);
+		ContentDigest digest = new ContentDigest(false,
+				ContentDigest.algorithmOf(entry.getStoredCrc()));
+		digest.update(stored, 0, stored.length);
+		assertEquals(stored.length, entry.getStoredSize());
+		assertEquals(digest.getCrc(), entry.getStoredCrc());
+	}
+
+	/**
+	 * Each encoding is recompressed to a smaller archive that decodes to
+	 * the same content, and the superseding manifest entry describes it.
+	 * A second run leaves the tiered archives alone.
+	 */
+	@Test
+	public void testRecompressesEachEncoding() throws Exception {
+		String[] encodings = { ManifestEntry.ENCODING_GZIP,
+				ManifestEntry.ENCODING_ZIP, ManifestEntry.ENCODING_ZLIB };
+		String[] names     = { "server.log.gz", "server.log.zip",
+				"server.log.zlib" };
+		long[]   sizes     = new long[encodings.length];
+		for (int i = 0; i < encodings.length; i++) {
+			sizes[i] = Files.size(archive(names[i], encodings[i]));
+		}
+
+		assertEquals(3, tier().getCount(Result.TIERED));
+		for (int i = 0; i < encodings.length; i++) {
+			Path          archive = month.resolve(names[i]);
+			ManifestEntry entry   = Manifest.read(month).get(names[i]);
+			assertTrue(Files.size(archive) < sizes[i]);
+			assertArrayEquals(content, decode(archive, encodings[i]));
+			assertEquals("max", entry.getLevel());
+			assertMatches(archive, entry);
+			assertFalse(Files.exists(StagedFile.partialOf(archive)));
+		}
+
+		TierArchives again = tier();
+		assertEquals(0, again.getCount(Result.TIERED));
+		assertEquals(3, again.getCount(Result.SKIPPED));
+	}
+
+	/**
+	 * A run that died after renaming a replacement into place, but before
+	 * appending its manifest entry, is rolled forward from the journal.
+	 */
+	@Test
+	public void testRecoverRollsForward() throws Exception {
+		Path archive = archive("server.log.gz", ManifestEntry.ENCODING_GZIP);
+		tier();
+		Path         manifest = Manifest.manifestOf(month, HOST);
+		List<String> lines    = Files.readAllLines(manifest, StandardCharsets.UTF_8);
+		String       updated  = lines.remove(lines.size() - 1);
+		Files.write(manifest, lines, StandardCharsets.UTF_8);
+		assertEquals("fast", Manifest.read(month).get("server.log.gz").getLevel());
+		Files.write(state.resolve(TierArchivesI.JOURNAL_NAME),
+				("P\t" + archive.toAbsolutePath() + "\t"
+						+ manifest.toAbsolutePath() + "\t" + updated + "\n")
+						.getBytes(StandardCharsets.UTF_8));
+
+		TierArchives tier = tier();
+		ManifestEntry entry = Manifest.read(month).get("server.log.gz");
+		assertEquals("max", entry.getLevel());
+		assertMatches(archive, entry);
+		assertEquals(0, tier.getCount(Result.TIERED));
+		assertEquals(0, tier.getCount(Result.CORRUPT));
+		assertEquals(0, Files.size(state.resolve(TierArchivesI.JOURNAL_NAME)));
+	}
+
+	/**
+	 * A run that died before renaming a replacement into place is rolled
+	 * back: the partial replacement is removed and the original (still
+	 * described by its manifest entry) is tiered again.
+	 */
+	@Test
+	public void testRecoverRollsBack() throws Exception {
+		Path          archive  = archive("server.log.gz", ManifestEntry.ENCODING_GZIP);
+		ManifestEntry original = Manifest.read(month).get("server.log.gz");
+		ManifestEntry updated  = ManifestEntry.parse(original.toLine());
+		updated.setLevel("max");
+		updated.setStoredSize(original.getStoredSize() / 2);
+		Path partial = StagedFile.partialOf(archive);
+		Files.write(partial, new byte[] { 1, 2, 3 });
+		Files.write(state.resolve(TierArchivesI.JOURNAL_NAME),
+				("P\t" + archive.toAbsolutePath() + "\t"
+						+ Manifest.manifestOf(month, HOST).toAbsolutePath()
+						+ "\t" + updated.toLine() + "\n")
+						.getBytes(StandardCharsets.UTF_8));
+
+		TierArchives tier = tier();
+		assertFalse(Files.exists(partial));
+		assertEquals(1, tier.getCount(Result.TIERED));
+		assertEquals(0, tier.getCount(Result.CORRUPT));
+		assertArrayEquals(content, decode(archive, ManifestEntry.ENCODING_GZIP));
+		assertMatches(archive, Manifest.read(month).get("server.log.gz"));
+	}
+
+	/**
+	 * A thread held to a quarter of a CPU takes at least (roughly) four
+	 * times as long as the CPU time it uses.
+	 */
+	@Test
+	public void testCpuThrottle() throws Exception {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threads.isCurrentThreadCpuTimeSupported());
+
+		CpuThrottle throttle = new CpuThrottle(0.25);
+		long cpuStart  = threads.getCurrentThreadCpuTime();
+		long wallStart = System.nanoTime();
+		long busy      = TimeUnit.MILLISECONDS.toNanos(200);
+		long sink      = 0;
+		while (threads.getCurrentThreadCpuTime() - cpuStart < busy) {
+			for (int i = 0; i < 10000; i++) {
+				sink += i * 31;
+			}
+			throttle.pace();
+		}
+		long wall = System.nanoTime() - wallStart;
+		assertTrue("sink " + sink + " wall " + wall,
+				wall >= TimeUnit.MILLISECONDS.toNanos(600));
+	}
+}
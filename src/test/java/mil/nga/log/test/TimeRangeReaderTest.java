@@ -0,0 +1,196 @@
+package mil.nga.log.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import mil.nga.logmgmt.ManifestEntry;
+import mil.nga.logmgmt.TimeRangeReader;
+import mil.nga.util.ContentDigest;
+import mil.nga.util.LogTimestamps;
+import mil.nga.util.ParallelGzipOutputStream;
+import mil.nga.util.TimeIndex;
+
+public class TimeRangeReaderTest {
+
+	private static final int    LINES = 3000;
+	private static final String NAME  = "host_app_20260101.log.gz";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path          month;
+	private byte[]        content;
+	private TimeIndex     index;
+	private ManifestEntry entry;
+
+	/**
+	 * Write a block compressed archive of one line per second, with its
+	 * time index and manifest entry, as LogMgmt would.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		month = folder.newFolder("gateway", "app", "2026", "Jan").toPath();
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < LINES; i++) {
+			sb.append(line(i)).append('\n');
+		}
+		content = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+		index = new TimeIndex();
+		Path archive = month.resolve(NAME);
+		try (OutputStream os = new ParallelGzipOutputStream(
+				Files.newOutputStream(archive), 2, 4096, -1)) {
+			((ParallelGzipOutputStream)os).setTimeIndex(index);
+			os.write(content);
+		}
+		try (OutputStream os = Files.newOutputStream(
+				TimeIndex.sidecarOf(archive))) {
+			index.write(os);
+		}
+
+		byte[]        stored = Files.readAllBytes(archive);
+		ContentDigest digest = new ContentDigest(false);
+		digest.update(stored, 0, stored.length);
+		ContentDigest source = new ContentDigest(false);
+		source.update(content, 0, content.length);
+		entry = new ManifestEntry(NAME, ManifestEntry.ENCODING_GZIP, digest,
+				"/var/log/server.log-20260101", 0L, source);
+	}
+
+	private static String line(int i) {
+		return String.format("2026-01-01 %02d:%02d:%02d,000 INFO [main] message %d",
+				i / 3600, i / 60 % 60, i % 60, i);
+	}
+
+	private static long time(int i) {
+		return LogTimestamps.parse(line(i));
+	}
+
+	private byte[] read(long from, long to) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (InputStream is = TimeRangeReader.open(month, entry, from, to)) {
+			byte[] buffer = new byte[1000];
+			int count;
+			while ((count = is.read(buffer)) != -1) {
+				bytes.write(buffer, 0, count);
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * The lines of the content whose timestamp falls in the range.
+	 */
+	private static List<String> filter(byte[] bytes, long from, long to)
+			throws IOException {
+		List<String> lines = new ArrayList<String>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new ByteArrayInputStream(bytes), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				long time = LogTimestamps.parse(line);
+				if ((time >= from) && (time < to)) {
+					lines.add(line);
+				}
+			}
+		}
+		return lines;
+	}
+
+	/**
+	 * A range starting and ending part way through blocks is read from the
+	 * blocks covering it and nothing else, and holds every line in the
+	 * range.
+	 */
+	@Test
+	public void testRangeWithinBlocks() throws IOException {
+		long from = time(1234);
+		long to   = time(1801);
+		List<TimeIndex.Block> selected = index.overlapping(from, to);
+		TimeIndex.Block       first    = selected.get(0);
+		TimeIndex.Block       last     = selected.get(selected.size() - 1);
+		assertTrue(selected.size() > 1);
+		assertTrue(selected.size() < index.getBlocks().size() / 2);
+		assertTrue(first.getFirst() < from);
+		assertTrue(last.getLast() >= to);
+
+		byte[] bytes = read(from, to);
+		assertArrayEquals(Arrays.copyOfRange(content, (int)first.getOffset(),
+				(int)(last.getOffset() + last.getLength())), bytes);
+
+		List<String> expected = new ArrayList<String>();
+		for (int i = 1234; i < 1801; i++) {
+			expected.add(line(i));
+		}
+		assertEquals(expected, filter(bytes, from, to));
+	}
+
+	/**
+	 * A range held by a single block, and ranges covering the first and
+	 * last lines, select the right blocks.
+	 */
+	@Test
+	public void testSingleBlockAndEnds() throws IOException {
+		long from = time(700);
+		long to   = time(701);
+		assertEquals(1, index.overlapping(from, to).size());
+		assertEquals(Arrays.asList(line(700)), filter(read(from, to), from, to));
+
+		byte[] head = read(time(0) - 1000, time(2));
+		assertEquals(Arrays.asList(line(0), line(1)),
+				filter(head, time(0) - 1000, time(2)));
+		assertEquals(index.getBlocks().get(0).getLength(), head.length);
+
+		byte[] tail = read(time(LINES - 1), time(LINES - 1) + 1000);
+		assertEquals(Arrays.asList(line(LINES - 1)),
+				filter(tail, time(LINES - 1), time(LINES - 1) + 1000));
+		TimeIndex.Block end = index.getBlocks().get(index.getBlocks().size() - 1);
+		assertEquals(end.getLength(), tail.length);
+	}
+
+	/**
+	 * A range outside the archive reads nothing.
+	 */
+	@Test
+	public void testRangeOutsideArchive() throws IOException {
+		assertEquals(0, read(time(0) - 10000, time(0)).length);
+		assertEquals(0, read(time(LINES), time(LINES) + 10000).length);
+	}
+
+	/**
+	 * An index that no longer describes its archive is ignored and the
+	 * whole archive is read.
+	 */
+	@Test
+	public void testStaleIndexReadsWholeArchive() throws IOException {
+		Path sidecar = TimeIndex.sidecarOf(month.resolve(NAME));
+		index.setStoredSize(index.getStoredSize() + 1);
+		try (OutputStream os = Files.newOutputStream(sidecar)) {
+			index.write(os);
+		}
+		assertArrayEquals(content, read(time(1234), time(1235)));
+
+		Files.delete(sidecar);
+		assertArrayEquals(content, read(time(1234), time(1235)));
+	}
+}
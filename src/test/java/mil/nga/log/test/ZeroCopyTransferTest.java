@@ -0,0 +1,187 @@
+package mil.nga.log.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import mil.nga.logmgmt.LogMgmtI;
+import mil.nga.logmgmt.Manifest;
+import mil.nga.logmgmt.ManifestEntry;
+import mil.nga.logmgmt.OutputFile;
+import mil.nga.logmgmt.RunReport;
+import mil.nga.logmgmt.StagedFile;
+import mil.nga.util.ContentDigest;
+
+public class ZeroCopyTransferTest {
+
+	/**
+	 * Usually a separate (tmpfs) file store, so that archiving a file there
+	 * copies it rather than renaming it.
+	 */
+	private static final File SHM = new File("/dev/shm");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Rule
+	public TemporaryFolder remote = new TemporaryFolder(
+			SHM.isDirectory() && SHM.canWrite() ? SHM : null);
+
+	private Path   store;
+	private byte[] content;
+
+	@Before
+	public void setUp() throws IOException {
+		store = folder.newFolder("store").toPath();
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			sb.append("2026-01-01 00:00:00,000 INFO [main] message ").append(i).append('\n');
+		}
+		content = sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private Properties createProperties(boolean delete) throws IOException {
+		Properties props = new Properties();
+		props.setProperty(LogMgmtI.APPLICATION_NAME, "app");
+		props.setProperty(LogMgmtI.OUTPUT_BASE_PATH, store.toString());
+		props.setProperty(LogMgmtI.STATE_PATH, folder.newFolder().toString());
+		props.setProperty(LogMgmtI.OUTPUT_DELAY, "0");
+		props.setProperty(LogMgmtI.OUTPUT_COMPRESS, "false");
+		props.setProperty(LogMgmtI.OUTPUT_TRANSFER_ZEROCOPY, "true");
+		props.setProperty(LogMgmtI.OUTPUT_TRANSFER_VERIFY, "true");
+		props.setProperty(LogMgmtI.INPUT_FILE_DELETE, Boolean.toString(delete));
+		return props;
+	}
+
+	/**
+	 * Every file below the store other than manifests.
+	 */
+	private List<Path> stored() throws IOException {
+		final List<Path> files = new ArrayList<Path>();
+		Files.walkFileTree(store, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				if (!Manifest.isManifest(file)) {
+					files.add(file);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return files;
+	}
+
+	/**
+	 * Check that the only file of the store is an archive identical to the
+	 * source and that its manifest entry records the source digest.
+	 */
+	private void assertArchived() throws IOException {
+		List<Path> files = stored();
+		assertEquals(1, files.size());
+		Path archive = files.get(0);
+		assertArrayEquals(content, Files.readAllBytes(archive));
+
+		ContentDigest digest = new ContentDigest(false);
+		digest.update(content, 0, content.length);
+		ManifestEntry entry = Manifest.read(archive.getParent())
+				.get(archive.getFileName().toString());
+		assertEquals(ManifestEntry.ENCODING_RAW, entry.getEncoding());
+		assertEquals(content.length, entry.getStoredSize());
+		assertEquals(digest.getCrc(), entry.getStoredCrc());
+		assertEquals(digest.getCrc(), entry.getSourceCrc());
+	}
+
+	/**
+	 * A retained source is copied with transferTo, verified and recorded.
+	 */
+	@Test
+	public void testTransferRetainedSource() throws Exception {
+		Path source = Files.write(folder.newFolder("logs").toPath()
+				.resolve("server.log-20260101"), content);
+
+		OutputFile output = new OutputFile(createProperties(false), "gateway", null);
+		assertTrue(output.getZeroCopy());
+		RunReport report = output.process(Collections.singletonList(source));
+		assertEquals(1, report.getArchived());
+		assertArchived();
+		assertArrayEquals(content, Files.readAllBytes(source));
+	}
+
+	/**
+	 * A source on another file store is copied with transferTo, verified
+	 * and only then removed.
+	 */
+	@Test
+	public void testTransferFromOtherFileStore() throws Exception {
+		Path logs = remote.newFolder("logs").toPath();
+		assumeFalse(Files.getFileStore(logs).equals(Files.getFileStore(store)));
+		Path source = Files.write(logs.resolve("server.log-20260101"), content);
+
+		RunReport report = new OutputFile(createProperties(true), "gateway", null)
+				.process(Collections.singletonList(source));
+		assertEquals(1, report.getArchived());
+		assertArchived();
+		assertFalse(Files.exists(source));
+	}
+
+	/**
+	 * A copy that does not read back as the source is discarded: nothing
+	 * is recorded, no partial file is left and the source stays in place.
+	 */
+	@Test
+	public void testVerifyFailureKeepsSource() throws Exception {
+		Path logs = remote.newFolder("logs").toPath();
+		assumeFalse(Files.getFileStore(logs).equals(Files.getFileStore(store)));
+		Path source = Files.write(logs.resolve("server.log-20260101"), content);
+
+		// Damage the partial copy just before it is read back, as a write
+		// that reached the disk incorrectly would.
+		OutputFile output = new OutputFile(createProperties(true), "gateway", null) {
+			@Override
+			public boolean getVerifyTransfer() {
+				try {
+					for (Path file : stored()) {
+						if (StagedFile.isPartial(file)) {
+							try (FileChannel channel = FileChannel.open(file,
+									StandardOpenOption.WRITE)) {
+								channel.write(ByteBuffer.wrap(new byte[] { 'X' }), 100);
+							}
+						}
+					}
+				}
+				catch (IOException ioe) {
+					throw new UncheckedIOException(ioe);
+				}
+				return super.getVerifyTransfer();
+			}
+		};
+		RunReport report = output.process(Collections.singletonList(source));
+		assertEquals(0, report.getArchived());
+		assertEquals(1, report.getFailed());
+		assertTrue(stored().isEmpty());
+		assertArrayEquals(content, Files.readAllBytes(source));
+	}
+}